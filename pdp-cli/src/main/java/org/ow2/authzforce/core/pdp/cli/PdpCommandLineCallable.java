@@ -23,6 +23,7 @@ package org.ow2.authzforce.core.pdp.cli;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.concurrent.Callable;
 
 import javax.xml.bind.Marshaller;
@@ -56,9 +57,12 @@ import picocli.CommandLine.Parameters;
  * TODO: implement tests: 1) with xacml-xml 2) with xacml-json 3/4) with/without catalog and with/without extension XSD.
  *
  */
-@Command(name = "authzforce-ce-core-pdp-cli", description = "Evaluates a XACML Request against a XACML Policy(Set) using AuthzForce PDP engine")
+@Command(name = "authzforce-ce-core-pdp-cli", description = "Evaluates a XACML Request against a XACML Policy(Set) using AuthzForce PDP engine. Use 'compile' as first argument to create a policy snapshot instead, or 'store' to create a policy store.")
 public final class PdpCommandLineCallable implements Callable<Void>
 {
+	private static final String COMPILE_COMMAND = "compile";
+	private static final String STORE_COMMAND = "store";
+
 	private static enum RequestType
 	{
 		XACML_XML, XACML_JSON;
@@ -141,13 +145,26 @@ public final class PdpCommandLineCallable implements Callable<Void>
 	}
 
 	/**
-	 * Method used for the command-line
+	 * Method used for the command-line. If the first argument is 'compile', the other arguments are passed to {@link PolicySnapshotCompilerCallable} (policy snapshot creation); if it is 'store',
+	 * to {@link PolicyStoreBuilderCallable} (policy store creation); else all arguments are passed to {@link PdpCommandLineCallable} (request evaluation).
 	 * 
 	 * @param args
 	 *            CLI args
 	 */
 	public static void main(final String[] args)
 	{
+		if (args.length > 0 && args[0].equals(COMPILE_COMMAND))
+		{
+			CommandLine.call(new PolicySnapshotCompilerCallable(), System.out, Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals(STORE_COMMAND))
+		{
+			CommandLine.call(new PolicyStoreBuilderCallable(), System.out, Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+
 		CommandLine.call(new PdpCommandLineCallable(), System.out, args);
 	}
 
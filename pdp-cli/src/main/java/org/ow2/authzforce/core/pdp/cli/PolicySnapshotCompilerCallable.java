@@ -0,0 +1,83 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.cli;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Callable;
+
+import org.ow2.authzforce.core.pdp.impl.policy.PolicySnapshot;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * {@link Callable} creating a binary policy snapshot (see {@link PolicySnapshot}) from the policies of a PDP configuration, from the command-line ('compile' command)
+ *
+ */
+@Command(name = "compile", description = "Compiles the policies of a PDP configuration into a binary policy snapshot, to be loaded with the PolicySnapshotRootPolicyProvider for faster PDP startup. Any existing snapshot file is replaced atomically.")
+public final class PolicySnapshotCompilerCallable implements Callable<Void>
+{
+	/*
+	 * WARNING: do not make picocli-annoated fields final here! Known issue: https://github.com/remkop/picocli/issues/68. Planned to be fixed in release 2.1.0.
+	 */
+	@Parameters(index = "0", description = "Path to PDP configuration file using the StaticRootPolicyProvider or StaticRefBasedRootPolicyProvider, and optionally the StaticRefPolicyProvider")
+	private File confFile;
+
+	@Option(names = { "-c", "--catalog" }, description = "Path to XML catalog for resolving schemas used in extensions XSD specified by -e option, required only if -e specified")
+	private final String catalogLocation = null;
+
+	@Option(names = { "-e",
+	        "--extensions" }, description = "Path to extensions XSD (contains XSD namespace imports for all extensions used in the PDP configuration), required only if using any extension in the PDP configuration file")
+	private final String extensionXsdLocation = null;
+
+	@Parameters(index = "1", description = "Path to policy snapshot file to be created (replaced if it exists)")
+	private File snapshotFile;
+
+	@Override
+	public Void call() throws Exception
+	{
+		/*
+		 * Written to a temporary file first, so that no partial snapshot is left if the compilation fails
+		 */
+		final Path snapshotPath = snapshotFile.getAbsoluteFile().toPath();
+		final Path tmpSnapshotPath = Files.createTempFile(snapshotPath.getParent(), snapshotPath.getFileName().toString(), ".tmp");
+		try
+		{
+			try (final OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmpSnapshotPath)))
+			{
+				PolicySnapshot.write(confFile, catalogLocation, extensionXsdLocation, out);
+			}
+
+			Files.move(tmpSnapshotPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally
+		{
+			Files.deleteIfExists(tmpSnapshotPath);
+		}
+
+		System.out.println("Policy snapshot created: " + snapshotFile);
+		return null;
+	}
+
+}
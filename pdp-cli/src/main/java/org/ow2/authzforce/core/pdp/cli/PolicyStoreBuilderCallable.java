@@ -0,0 +1,76 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.cli;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.ow2.authzforce.core.pdp.impl.policy.PolicyStore;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * {@link Callable} creating a policy store (see {@link PolicyStore}) from a policy directory or XML policy files, from the command-line ('store' command)
+ *
+ */
+@Command(name = "store", description = "Packs XML policy files into a policy store, to be loaded with the PolicyStoreRefPolicyProvider. Any existing store file is replaced atomically.")
+public final class PolicyStoreBuilderCallable implements Callable<Void>
+{
+	/*
+	 * WARNING: do not make picocli-annoated fields final here! Known issue: https://github.com/remkop/picocli/issues/68. Planned to be fixed in release 2.1.0.
+	 */
+	@Option(names = { "-x", "--xpath" }, description = "Enable XPath support (AttributeSelectors, xpathExpression datatype) in the policies")
+	private boolean enableXPath = false;
+
+	@Parameters(index = "0", description = "Path to policy store file to be created (replaced if it exists)")
+	private File storeFile;
+
+	@Parameters(index = "1..*", arity = "1..*", description = "Policy directories (all '.xml' files in the directory), XML policy files, or file path patterns as in the 'policyLocation' of the StaticRefPolicyProvider (e.g. 'file:///path/to/policies/**.xml')")
+	private List<String> policyLocations;
+
+	@Override
+	public Void call() throws Exception
+	{
+		final List<String> resolvedPolicyLocations = new ArrayList<>(policyLocations.size());
+		for (final String policyLocation : policyLocations)
+		{
+			final File policyFile = new File(policyLocation);
+			if (policyFile.isDirectory())
+			{
+				resolvedPolicyLocations.add(policyFile.getAbsoluteFile().toURI() + "*.xml");
+			}
+			else if (policyFile.isFile())
+			{
+				resolvedPolicyLocations.add(policyFile.getAbsoluteFile().toURI().toString());
+			}
+			else
+			{
+				resolvedPolicyLocations.add(policyLocation);
+			}
+		}
+
+		PolicyStore.write(resolvedPolicyLocations, enableXPath, storeFile);
+		System.out.println("Policy store created: " + storeFile);
+		return null;
+	}
+
+}
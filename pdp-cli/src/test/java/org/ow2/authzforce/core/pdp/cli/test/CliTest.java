@@ -19,8 +19,17 @@ package org.ow2.authzforce.core.pdp.cli.test;
 
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.ow2.authzforce.core.pdp.cli.PdpCommandLineCallable;
+import org.ow2.authzforce.core.pdp.cli.PolicySnapshotCompilerCallable;
+import org.ow2.authzforce.core.pdp.cli.PolicyStoreBuilderCallable;
+import org.ow2.authzforce.core.pdp.impl.policy.PolicyStore;
 
 import picocli.CommandLine;
 
@@ -29,6 +38,9 @@ public class CliTest
 
 	private static final String TEST_DATA_DIR = "src/test/resources/conformance/xacml-3.0-core/mandatory";
 
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
 	@Test
 	public void test()
 	{
@@ -61,4 +73,39 @@ public class CliTest
 		}
 	}
 
+	/**
+	 * Test of the 'compile' command creating a policy snapshot
+	 */
+	@Test
+	public void testCompile()
+	{
+		final File snapshotFile = new File("target/policy-snapshot.bin");
+		snapshotFile.delete();
+		CommandLine.call(new PolicySnapshotCompilerCallable(), System.out, TEST_DATA_DIR + "/pdp.xml", snapshotFile.getPath());
+		assertTrue(snapshotFile.length() > 0);
+	}
+
+	/**
+	 * Test of the 'store' command creating a policy store, from a policy file or a policy directory
+	 * 
+	 * @throws IOException
+	 *             error creating the policy directory or opening the created store
+	 */
+	@Test
+	public void testStore() throws IOException
+	{
+		final File policyFile = new File(TEST_DATA_DIR + "/IIA001/Policy.xml");
+		final File policyDirectory = tmpFolder.newFolder("policies");
+		Files.copy(policyFile.toPath(), new File(policyDirectory, policyFile.getName()).toPath());
+		for (final String policyLocation : new String[] { policyFile.getPath(), policyDirectory.getPath() })
+		{
+			final File storeFile = new File("target/policies.store");
+			storeFile.delete();
+			CommandLine.call(new PolicyStoreBuilderCallable(), System.out, storeFile.getPath(), policyLocation);
+			assertTrue(storeFile.length() > 0);
+			// fails if the store is invalid
+			PolicyStore.open(storeFile);
+		}
+	}
+
 }
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluation order of the children of an element where the children may be evaluated in any order and the evaluation stops at the first child with a decisive result, e.g. the Rules with the
+ * overriding Effect in a deny-overrides/permit-overrides Policy, or the arguments of the function 'and' (resp. 'or') where the first False (resp. True) decides. The order is adapted to the children's
+ * statistics: the evaluation time and number of decisive results of each child are recorded, and the children are periodically reordered by increasing evaluation time per decisive result, so that
+ * cheap, frequently decisive children are evaluated first. Children not evaluated since the last reordering (no statistics) are tried first, children never decisive are evaluated last, in order
+ * of declaration.
+ * <p>
+ * Thread-safe: the statistics are shared by all evaluations (concurrent or not) of the same element, and the order is replaced atomically.
+ */
+public final class AdaptiveEvaluationOrder
+{
+	/**
+	 * Number of evaluations between two reorderings
+	 */
+	public static final int REORDERING_PERIOD = 256;
+
+	private final LongAdder[] evaluationCounts;
+	private final LongAdder[] decisiveCounts;
+	private final LongAdder[] evaluationNanos;
+
+	/*
+	 * Statistics since the first evaluation, halved at each reordering to adapt to changes in the request pattern. Only accessed by reorder().
+	 */
+	private final double[] smoothedEvaluationCounts;
+	private final double[] smoothedDecisiveCounts;
+	private final double[] smoothedEvaluationNanos;
+
+	private final AtomicLong evaluationCount = new AtomicLong();
+
+	/*
+	 * Indexes of the children in order of evaluation
+	 */
+	private volatile int[] order;
+
+	/**
+	 * Creates the initial evaluation order: order of declaration
+	 *
+	 * @param childCount
+	 *            number of children
+	 */
+	public AdaptiveEvaluationOrder(final int childCount)
+	{
+		this.evaluationCounts = newLongAdders(childCount);
+		this.decisiveCounts = newLongAdders(childCount);
+		this.evaluationNanos = newLongAdders(childCount);
+		this.smoothedEvaluationCounts = new double[childCount];
+		this.smoothedDecisiveCounts = new double[childCount];
+		this.smoothedEvaluationNanos = new double[childCount];
+		this.order = IntStream.range(0, childCount).toArray();
+	}
+
+	private static LongAdder[] newLongAdders(final int count)
+	{
+		final LongAdder[] adders = new LongAdder[count];
+		for (int i = 0; i < count; i++)
+		{
+			adders[i] = new LongAdder();
+		}
+
+		return adders;
+	}
+
+	/**
+	 * Gets the current evaluation order
+	 *
+	 * @return indexes of the children (in order of declaration) in order of evaluation; must not be modified
+	 */
+	public int[] getOrder()
+	{
+		return order;
+	}
+
+	/**
+	 * Records the evaluation of a child
+	 *
+	 * @param childIndex
+	 *            index of the child in order of declaration
+	 * @param startNanos
+	 *            {@link System#nanoTime()} before the evaluation of the child
+	 * @param isDecisive
+	 *            true iff the child result decided the result of the parent element, i.e. stopped the evaluation
+	 */
+	public void recordChildEvaluation(final int childIndex, final long startNanos, final boolean isDecisive)
+	{
+		evaluationNanos[childIndex].add(System.nanoTime() - startNanos);
+		evaluationCounts[childIndex].increment();
+		if (isDecisive)
+		{
+			decisiveCounts[childIndex].increment();
+		}
+	}
+
+	/**
+	 * Records the end of an evaluation of the parent element, and reorders the children every {@value #REORDERING_PERIOD} evaluations
+	 */
+	public void endEvaluation()
+	{
+		if (evaluationCount.incrementAndGet() % REORDERING_PERIOD == 0)
+		{
+			reorder();
+		}
+	}
+
+	private synchronized void reorder()
+	{
+		final double[] scores = new double[order.length];
+		for (int i = 0; i < scores.length; i++)
+		{
+			smoothedEvaluationCounts[i] = smoothedEvaluationCounts[i] / 2 + evaluationCounts[i].sumThenReset();
+			smoothedDecisiveCounts[i] = smoothedDecisiveCounts[i] / 2 + decisiveCounts[i].sumThenReset();
+			smoothedEvaluationNanos[i] = smoothedEvaluationNanos[i] / 2 + evaluationNanos[i].sumThenReset();
+			/*
+			 * Evaluation time per decisive result = average evaluation time / probability of decisive result
+			 */
+			scores[i] = smoothedEvaluationCounts[i] < 1 ? 0 : smoothedDecisiveCounts[i] == 0 ? Double.POSITIVE_INFINITY : smoothedEvaluationNanos[i] / smoothedDecisiveCounts[i];
+		}
+
+		// stable sort: same score -> order of declaration
+		final Integer[] newOrder = IntStream.range(0, scores.length).boxed().toArray(Integer[]::new);
+		Arrays.sort(newOrder, Comparator.comparingDouble(i -> scores[i]));
+		this.order = Arrays.stream(newOrder).mapToInt(Integer::intValue).toArray();
+	}
+}
@@ -18,11 +18,15 @@
 package org.ow2.authzforce.core.pdp.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
 import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualEvaluationContext;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualPredicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +50,8 @@ public final class AllOfEvaluator
 	// during evaluation
 	private final transient List<MatchEvaluator> evaluatableMatchList;
 
+	private final transient Optional<Boolean> constantResult;
+
 	/**
 	 * Instantiates AllOf (evaluator) from XACML-Schema-derived
 	 * <code>AllOf</code>.
@@ -87,6 +93,49 @@ public final class AllOfEvaluator
 			evaluatableMatchList.add(matchEvaluator);
 			matchIndex++;
 		}
+
+		/*
+		 * Partial evaluation: a constant False Match makes the AllOf False; constant True Matches have no effect (if all are, the AllOf is True)
+		 */
+		if (PartialEvaluation.isEnabled(expFactory))
+		{
+			if (evaluatableMatchList.stream().anyMatch(matchEvaluator -> matchEvaluator.getConstantResult().equals(Optional.of(Boolean.FALSE))))
+			{
+				this.constantResult = Optional.of(Boolean.FALSE);
+			}
+			else
+			{
+				final int matchCount = evaluatableMatchList.size();
+				evaluatableMatchList.removeIf(matchEvaluator -> matchEvaluator.getConstantResult().isPresent());
+				PartialEvaluation.countEliminatedNodes(expFactory, matchCount - evaluatableMatchList.size());
+				this.constantResult = evaluatableMatchList.isEmpty() ? Optional.of(Boolean.TRUE) : Optional.empty();
+			}
+		}
+		else
+		{
+			this.constantResult = Optional.empty();
+		}
+	}
+
+	/**
+	 * Gets the constant result of this AllOf, if partial evaluation is enabled (see {@link PartialEvaluation}) and the AllOf always evaluates to the same value. (Unless the AllOf is constant False, the constant True
+	 * Matches are removed from it.)
+	 *
+	 * @return constant result; empty if not constant (or partial evaluation disabled)
+	 */
+	public Optional<Boolean> getConstantResult()
+	{
+		return constantResult;
+	}
+
+	/**
+	 * Gets the Match evaluators of this AllOf
+	 *
+	 * @return Match evaluators, in order of declaration (immutable)
+	 */
+	public List<MatchEvaluator> getMatchEvaluators()
+	{
+		return Collections.unmodifiableList(evaluatableMatchList);
 	}
 
 	/**
@@ -170,4 +219,27 @@ public final class AllOfEvaluator
 		throw new IndeterminateEvaluationException("Error evaluating <AllOf>'s <Match>#" + lastIndeterminateChildIndex,
 				lastIndeterminate.getStatusCode(), lastIndeterminate);
 	}
+
+	/**
+	 * Evaluates this AllOf partially, i.e. with some attribute categories unknown
+	 *
+	 * @param context
+	 *            the representation of the partial request
+	 * @return conjunction of the residual Matches
+	 */
+	public ResidualPredicate evaluatePartially(final ResidualEvaluationContext context)
+	{
+		if (constantResult.isPresent())
+		{
+			return ResidualPredicate.valueOf(constantResult.get());
+		}
+
+		final List<ResidualPredicate> residualMatches = new ArrayList<>(evaluatableMatchList.size());
+		for (final MatchEvaluator matchEvaluator : evaluatableMatchList)
+		{
+			residualMatches.add(matchEvaluator.evaluatePartially(context));
+		}
+
+		return ResidualPredicate.and(residualMatches);
+	}
 }
@@ -21,11 +21,21 @@
 package org.ow2.authzforce.core.pdp.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeDesignatorExpression;
 import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualEvaluationContext;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualPredicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,11 +54,31 @@ public final class AnyOfEvaluator
 	private static final IllegalArgumentException NO_ALL_OF_EXCEPTION = new IllegalArgumentException(
 			"<AnyOf> empty. Must contain at least one <AllOf>");
 
+	/**
+	 * Minimum number of AllOfs made of a single equality Match (e.g. {@code string-equal}) on the same attribute, for them to be replaced with a single hash-set test of the attribute values
+	 */
+	static final int MIN_HASH_SET_ALL_OF_COUNT = 2;
+
+	private static final String HASH_SET_MATCH_ERROR_MESSAGE = "Error evaluating Match (with equivalent 'any-of' function)";
+
 	// Store the list of AllOf as evaluatable AllOf types to avoid casting from
 	// JAXB AllOfType
 	// during evaluation
 	private final transient List<AllOfEvaluator> evaluatableAllOfList;
 
+	/*
+	 * What is actually evaluated: the AllOf evaluators, except the AllOfs made of a single equality Match on the same attribute, which are replaced with a single hash-set test (at the position of
+	 * the last one)
+	 */
+	private final transient BooleanEvaluator[] childEvaluators;
+
+	/*
+	 * Index of the (last) AllOf corresponding to each of childEvaluators, for error messages
+	 */
+	private final transient int[] childAllOfIndexes;
+
+	private final transient Optional<Boolean> constantResult;
+
 	/**
 	 * Constructor that creates a new <code>AnyOf</code> evaluator based on the
 	 * given XACML-schema-derived JAXB AnyOf.
@@ -90,6 +120,112 @@ public final class AnyOfEvaluator
 			evaluatableAllOfList.add(allOfEvaluator);
 			matchIndex++;
 		}
+
+		/*
+		 * Partial evaluation: a constant True AllOf makes the AnyOf True; constant False AllOfs have no effect (if all are, the AnyOf is False)
+		 */
+		if (PartialEvaluation.isEnabled(expFactory))
+		{
+			if (evaluatableAllOfList.stream().anyMatch(allOfEvaluator -> allOfEvaluator.getConstantResult().equals(Optional.of(Boolean.TRUE))))
+			{
+				this.constantResult = Optional.of(Boolean.TRUE);
+			}
+			else
+			{
+				final int allOfCount = evaluatableAllOfList.size();
+				evaluatableAllOfList.removeIf(allOfEvaluator -> allOfEvaluator.getConstantResult().isPresent());
+				PartialEvaluation.countEliminatedNodes(expFactory, allOfCount - evaluatableAllOfList.size());
+				this.constantResult = evaluatableAllOfList.isEmpty() ? Optional.of(Boolean.FALSE) : Optional.empty();
+			}
+		}
+		else
+		{
+			this.constantResult = Optional.empty();
+		}
+
+		/*
+		 * Group the AllOfs made of a single equality Match by attribute
+		 */
+		final Map<TargetEqualityConstraint.AttributeKey, List<Integer>> singleEqualityMatchAllOfIndexesByAttribute = new LinkedHashMap<>();
+		int allOfIndex = 0;
+		for (final AllOfEvaluator allOfEvaluator : evaluatableAllOfList)
+		{
+			final List<MatchEvaluator> matchEvaluators = allOfEvaluator.getMatchEvaluators();
+			final AttributeDesignatorExpression<?> designator = matchEvaluators.size() == 1 ? matchEvaluators.get(0).getEqualityMatchDesignator() : null;
+			if (designator != null)
+			{
+				singleEqualityMatchAllOfIndexesByAttribute.computeIfAbsent(new TargetEqualityConstraint.AttributeKey(designator), k -> new ArrayList<>()).add(allOfIndex);
+			}
+
+			allOfIndex++;
+		}
+
+		final BooleanEvaluator[] mutableChildEvaluators = new BooleanEvaluator[evaluatableAllOfList.size()];
+		allOfIndex = 0;
+		for (final AllOfEvaluator allOfEvaluator : evaluatableAllOfList)
+		{
+			mutableChildEvaluators[allOfIndex] = allOfEvaluator::match;
+			allOfIndex++;
+		}
+
+		int childCount = mutableChildEvaluators.length;
+		for (final List<Integer> allOfIndexes : singleEqualityMatchAllOfIndexesByAttribute.values())
+		{
+			if (allOfIndexes.size() < MIN_HASH_SET_ALL_OF_COUNT)
+			{
+				continue;
+			}
+
+			final Set<AttributeValue> values = new HashSet<>();
+			for (final int index : allOfIndexes)
+			{
+				values.add(evaluatableAllOfList.get(index).getMatchEvaluators().get(0).getEqualityMatchValue());
+				mutableChildEvaluators[index] = null;
+			}
+
+			/*
+			 * Replace the group with a single test at the position of the last one, so that the last Indeterminate AllOf - that gives the status code of the result - is the same
+			 */
+			final int lastIndex = allOfIndexes.get(allOfIndexes.size() - 1);
+			final MatchEvaluator lastMatchEvaluator = evaluatableAllOfList.get(lastIndex).getMatchEvaluators().get(0);
+			mutableChildEvaluators[lastIndex] = CompiledEvaluators.newDesignatorContainsAnyEvaluator(lastMatchEvaluator.getEqualityMatchDesignator(), values, HASH_SET_MATCH_ERROR_MESSAGE);
+			childCount -= allOfIndexes.size() - 1;
+			LOGGER.debug("AnyOf: {} AllOfs with a single equality Match on attribute {} replaced with a single hash-set test", allOfIndexes.size(), lastMatchEvaluator.getEqualityMatchDesignator());
+		}
+
+		this.childEvaluators = new BooleanEvaluator[childCount];
+		this.childAllOfIndexes = new int[childCount];
+		int childIndex = 0;
+		for (allOfIndex = 0; allOfIndex < mutableChildEvaluators.length; allOfIndex++)
+		{
+			if (mutableChildEvaluators[allOfIndex] != null)
+			{
+				childEvaluators[childIndex] = mutableChildEvaluators[allOfIndex];
+				childAllOfIndexes[childIndex] = allOfIndex;
+				childIndex++;
+			}
+		}
+	}
+
+	/**
+	 * Gets the constant result of this AnyOf, if partial evaluation is enabled (see {@link PartialEvaluation}) and the AnyOf always evaluates to the same value. (Unless the AnyOf is constant True,
+	 * the constant False AllOfs are removed from it.)
+	 *
+	 * @return constant result; empty if not constant (or partial evaluation disabled)
+	 */
+	public Optional<Boolean> getConstantResult()
+	{
+		return constantResult;
+	}
+
+	/**
+	 * Gets the AllOf evaluators of this AnyOf
+	 *
+	 * @return AllOf evaluators, in order of declaration (immutable)
+	 */
+	public List<AllOfEvaluator> getAllOfEvaluators()
+	{
+		return Collections.unmodifiableList(evaluatableAllOfList);
 	}
 
 	/**
@@ -117,26 +253,23 @@ public final class AnyOfEvaluator
 		// atLeastOneIndeterminate = true iff lastIndeterminate != null
 		IndeterminateEvaluationException lastIndeterminate = null;
 
-		// index of the current AllOf in this AnyOf
-		int childIndex = 0;
-
 		// index of last Indeterminate for enhanced error message
 		int lastIndeterminateChildIndex = -1;
 
 		/*
 		 * By construction, there must be at least one AllOf
 		 */
-		for (final AllOfEvaluator allOfEvaluator : evaluatableAllOfList)
+		for (int childIndex = 0; childIndex < childEvaluators.length; childIndex++)
 		{
 			final boolean isMatched;
 			try
 			{
-				isMatched = allOfEvaluator.match(context);
+				isMatched = childEvaluators[childIndex].evaluate(context);
 				if (LOGGER.isDebugEnabled())
 				{
 					// Beware of autoboxing which causes call to
 					// Boolean.valueOf(...), Integer.valueOf(...)
-					LOGGER.debug("AnyOf/AllOf#{} -> {}", childIndex, isMatched);
+					LOGGER.debug("AnyOf/AllOf#{} -> {}", childAllOfIndexes[childIndex], isMatched);
 				}
 			}
 			catch (final IndeterminateEvaluationException e)
@@ -145,10 +278,10 @@ public final class AnyOfEvaluator
 				{
 					// Beware of autoboxing which causes call to
 					// Integer.valueOf(...)
-					LOGGER.debug("AnyOf/AllOf#{} -> Indeterminate", childIndex, e);
+					LOGGER.debug("AnyOf/AllOf#{} -> Indeterminate", childAllOfIndexes[childIndex], e);
 				}
 				lastIndeterminate = e;
-				lastIndeterminateChildIndex = childIndex;
+				lastIndeterminateChildIndex = childAllOfIndexes[childIndex];
 				continue;
 			}
 
@@ -159,9 +292,6 @@ public final class AnyOfEvaluator
 			{
 				return true;
 			}
-
-			// No Match -> continue, all must be true to match
-			childIndex += 1;
 		}
 
 		// No True (Match) occurred
@@ -178,4 +308,26 @@ public final class AnyOfEvaluator
 				lastIndeterminate.getStatusCode(), lastIndeterminate);
 	}
 
+	/**
+	 * Evaluates this AnyOf partially, i.e. with some attribute categories unknown
+	 *
+	 * @param context
+	 *            the representation of the partial request
+	 * @return disjunction of the residual AllOfs
+	 */
+	public ResidualPredicate evaluatePartially(final ResidualEvaluationContext context)
+	{
+		if (constantResult.isPresent())
+		{
+			return ResidualPredicate.valueOf(constantResult.get());
+		}
+
+		final List<ResidualPredicate> residualAllOfs = new ArrayList<>(evaluatableAllOfList.size());
+		for (final AllOfEvaluator allOfEvaluator : evaluatableAllOfList)
+		{
+			residualAllOfs.add(allOfEvaluator.evaluatePartially(context));
+		}
+
+		return ResidualPredicate.or(residualAllOfs);
+	}
 }
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Bounded executor for asynchronous decision evaluation, owned by a PDP engine. Tasks are queued up to a fixed capacity; beyond that, new tasks are rejected immediately (backpressure) instead of
+ * blocking the caller, i.e. the returned {@link CompletableFuture} is completed exceptionally with a {@link RejectedExecutionException}. Therefore callers on event-loop threads never block on
+ * submission. Rejections are counted and exposed with queue metrics for monitoring.
+ * <p>
+ * Worker threads are daemon threads, created on demand and terminated after {@value #KEEP_ALIVE_SECONDS} seconds of inactivity.
+ *
+ * @version $Id: $
+ */
+public final class AsyncEvaluationExecutor implements Closeable
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(AsyncEvaluationExecutor.class);
+
+	/**
+	 * Default capacity of the task queue
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	private static final AtomicInteger POOL_COUNTER = new AtomicInteger(0);
+
+	private static final class DaemonThreadFactory implements ThreadFactory
+	{
+		private final String threadNamePrefix;
+		private final AtomicInteger threadCounter = new AtomicInteger(0);
+
+		private DaemonThreadFactory(final String threadNamePrefix)
+		{
+			this.threadNamePrefix = threadNamePrefix;
+		}
+
+		@Override
+		public Thread newThread(final Runnable r)
+		{
+			final Thread thread = new Thread(r, threadNamePrefix + threadCounter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	private final ThreadPoolExecutor executor;
+	private final int queueCapacity;
+	private final LongAdder submittedTaskCount = new LongAdder();
+	private final LongAdder rejectedTaskCount = new LongAdder();
+
+	/**
+	 * Creates executor
+	 *
+	 * @param threadCount
+	 *            maximum number of worker threads. If 0, the number of available processors ({@link Runtime#availableProcessors()}) is used.
+	 * @param queueCapacity
+	 *            maximum number of tasks waiting for a worker thread, beyond which new tasks are rejected
+	 * @throws IllegalArgumentException
+	 *             if {@code threadCount < 0 || queueCapacity <= 0}
+	 */
+	public AsyncEvaluationExecutor(final int threadCount, final int queueCapacity) throws IllegalArgumentException
+	{
+		checkArguments(threadCount, queueCapacity);
+		final int actualThreadCount = threadCount == 0 ? Runtime.getRuntime().availableProcessors() : threadCount;
+		this.queueCapacity = queueCapacity;
+		this.executor = new ThreadPoolExecutor(actualThreadCount, actualThreadCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+				new DaemonThreadFactory("authzforce-pdp-async-" + POOL_COUNTER.incrementAndGet() + "-thread-"), new ThreadPoolExecutor.AbortPolicy());
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Checks the arguments of {@link #AsyncEvaluationExecutor(int, int)}, e.g. before creating the executor on demand
+	 *
+	 * @param threadCount
+	 *            maximum number of worker threads
+	 * @param queueCapacity
+	 *            maximum number of tasks waiting for a worker thread
+	 * @throws IllegalArgumentException
+	 *             if {@code threadCount < 0 || queueCapacity <= 0}
+	 */
+	static void checkArguments(final int threadCount, final int queueCapacity) throws IllegalArgumentException
+	{
+		Preconditions.checkArgument(threadCount >= 0, "Invalid async evaluation thread count (< 0): %s", threadCount);
+		Preconditions.checkArgument(queueCapacity > 0, "Invalid async evaluation queue capacity (<= 0): %s", queueCapacity);
+	}
+
+	/**
+	 * Submits a task for asynchronous execution. This method never blocks.
+	 *
+	 * @param task
+	 *            task to be executed
+	 * @return future task result, completed exceptionally with {@link RejectedExecutionException} if the queue is full or this executor is closed
+	 */
+	public <T> CompletableFuture<T> submit(final Supplier<T> task)
+	{
+		submittedTaskCount.increment();
+		try
+		{
+			return CompletableFuture.supplyAsync(task, executor);
+		}
+		catch (final RejectedExecutionException e)
+		{
+			rejectedTaskCount.increment();
+			LOGGER.debug("Async evaluation task rejected (queue capacity = {})", queueCapacity, e);
+			final CompletableFuture<T> rejectedResult = new CompletableFuture<>();
+			rejectedResult.completeExceptionally(e);
+			return rejectedResult;
+		}
+	}
+
+	/**
+	 * Returns the maximum number of worker threads
+	 *
+	 * @return max thread count
+	 */
+	public int getThreadCount()
+	{
+		return executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * Returns the capacity of the task queue, i.e. max number of tasks waiting for a worker thread
+	 *
+	 * @return queue capacity
+	 */
+	public int getQueueCapacity()
+	{
+		return queueCapacity;
+	}
+
+	/**
+	 * Returns the current number of tasks waiting for a worker thread
+	 *
+	 * @return current queue depth
+	 */
+	public int getQueueDepth()
+	{
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Returns the approximate number of tasks being executed
+	 *
+	 * @return active task count
+	 */
+	public int getActiveTaskCount()
+	{
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * Returns the total number of tasks submitted since this executor was created, including rejected ones
+	 *
+	 * @return submitted task count
+	 */
+	public long getSubmittedTaskCount()
+	{
+		return submittedTaskCount.sum();
+	}
+
+	/**
+	 * Returns the total number of tasks rejected since this executor was created, because the queue was full or this executor closed
+	 *
+	 * @return rejected task count
+	 */
+	public long getRejectedTaskCount()
+	{
+		return rejectedTaskCount.sum();
+	}
+
+	/**
+	 * Shuts down this executor: previously submitted tasks are executed, but new ones are rejected.
+	 */
+	@Override
+	public void close()
+	{
+		executor.shutdown();
+	}
+
+}
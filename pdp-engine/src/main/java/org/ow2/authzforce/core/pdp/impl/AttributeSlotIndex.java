@@ -0,0 +1,193 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
+
+/**
+ * Index of the named attributes (AttributeFqn and datatype) referenced by AttributeDesignators in policies, assigning each one a dense integer slot when the policies are loaded. At evaluation time,
+ * {@link IndividualDecisionRequestContext} stores the values of these attributes in a flat array indexed by slot, so that AttributeDesignators get their values by array access instead of hashing the
+ * AttributeFqn and checking the datatype. Attributes without slot (not referenced by any AttributeDesignator, e.g. only used by attribute providers) are still stored in a map.
+ * <p>
+ * Slots are registered at load time, but may also be registered later if policies are loaded dynamically (dynamic policy provider): evaluation contexts created before such registration just do not
+ * have these slots and fall back to the map.
+ * <p>
+ * Thread-safe.
+ */
+public final class AttributeSlotIndex
+{
+	private static final class SlotKey
+	{
+		private final AttributeFqn attributeFqn;
+		private final Datatype<?> datatype;
+		private final int hashCode;
+
+		private SlotKey(final AttributeFqn attributeFqn, final Datatype<?> datatype)
+		{
+			this.attributeFqn = attributeFqn;
+			this.datatype = datatype;
+			this.hashCode = Objects.hash(attributeFqn, datatype);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+
+			if (!(obj instanceof SlotKey))
+			{
+				return false;
+			}
+
+			final SlotKey other = (SlotKey) obj;
+			return attributeFqn.equals(other.attributeFqn) && datatype.equals(other.datatype);
+		}
+	}
+
+	private final ConcurrentMap<SlotKey, Integer> slotsByKey = new ConcurrentHashMap<>();
+
+	/*
+	 * Attribute name and datatype by slot (copy-on-write on registration)
+	 */
+	private volatile SlotKey[] keysBySlot = new SlotKey[0];
+
+	/**
+	 * Registers an attribute (if not already registered) and returns its slot
+	 *
+	 * @param attributeFqn
+	 *            attribute name
+	 * @param datatype
+	 *            attribute datatype
+	 * @return slot
+	 */
+	public int register(final AttributeFqn attributeFqn, final Datatype<?> datatype)
+	{
+		assert attributeFqn != null && datatype != null;
+		final SlotKey key = new SlotKey(attributeFqn, datatype);
+		final Integer existingSlot = slotsByKey.get(key);
+		if (existingSlot != null)
+		{
+			return existingSlot;
+		}
+
+		synchronized (this)
+		{
+			final Integer slot = slotsByKey.get(key);
+			if (slot != null)
+			{
+				return slot;
+			}
+
+			final int newSlot = keysBySlot.length;
+			final SlotKey[] newKeysBySlot = Arrays.copyOf(keysBySlot, newSlot + 1);
+			newKeysBySlot[newSlot] = key;
+			keysBySlot = newKeysBySlot;
+			slotsByKey.put(key, newSlot);
+			return newSlot;
+		}
+	}
+
+	/**
+	 * Gets the slot of an attribute
+	 *
+	 * @param attributeFqn
+	 *            attribute name
+	 * @param datatype
+	 *            attribute datatype
+	 * @return slot; or -1 if not registered
+	 */
+	public int getSlot(final AttributeFqn attributeFqn, final Datatype<?> datatype)
+	{
+		final Integer slot = slotsByKey.get(new SlotKey(attributeFqn, datatype));
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * Tells whether an attribute is registered, with any datatype. This is a linear search, meant for load-time checks only.
+	 *
+	 * @param attributeFqn
+	 *            attribute name
+	 * @return true iff at least one slot is registered for {@code attributeFqn}
+	 */
+	public boolean isRegistered(final AttributeFqn attributeFqn)
+	{
+		for (final SlotKey key : keysBySlot)
+		{
+			if (key.attributeFqn.equals(attributeFqn))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Gets the attribute name registered for a given slot
+	 *
+	 * @param slot
+	 *            attribute slot
+	 * @return attribute name
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if the slot is not registered
+	 */
+	public AttributeFqn getAttributeFqn(final int slot) throws ArrayIndexOutOfBoundsException
+	{
+		return keysBySlot[slot].attributeFqn;
+	}
+
+	/**
+	 * Gets the attribute datatype registered for a given slot
+	 *
+	 * @param slot
+	 *            attribute slot
+	 * @return attribute datatype
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if the slot is not registered
+	 */
+	public Datatype<?> getDatatype(final int slot) throws ArrayIndexOutOfBoundsException
+	{
+		return keysBySlot[slot].datatype;
+	}
+
+	/**
+	 * Gets the number of registered slots
+	 *
+	 * @return slot count
+	 */
+	public int size()
+	{
+		return keysBySlot.length;
+	}
+
+}
@@ -18,15 +18,29 @@
 package org.ow2.authzforce.core.pdp.impl;
 
 import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.AbstractMap;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.xml.datatype.XMLGregorianCalendar;
 
@@ -43,6 +57,7 @@ import org.ow2.authzforce.core.pdp.api.HashCollections;
 import org.ow2.authzforce.core.pdp.api.ImmutableDecisionRequest;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
 import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.policy.CloseableRefPolicyProvider;
 import org.ow2.authzforce.core.pdp.api.policy.PrimaryPolicyMetadata;
 import org.ow2.authzforce.core.pdp.api.policy.RootPolicyProvider;
 import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
@@ -52,8 +67,12 @@ import org.ow2.authzforce.core.pdp.api.value.DateTimeValue;
 import org.ow2.authzforce.core.pdp.api.value.DateValue;
 import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
 import org.ow2.authzforce.core.pdp.api.value.TimeValue;
+import org.ow2.authzforce.core.pdp.impl.cache.InvalidatableDecisionCache;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
 import org.ow2.authzforce.core.pdp.impl.policy.RootPolicyEvaluator;
 import org.ow2.authzforce.core.pdp.impl.policy.RootPolicyEvaluators;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualEvaluationContext;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualPolicy;
 import org.ow2.authzforce.core.xmlns.pdp.StandardEnvironmentAttributeSource;
 import org.ow2.authzforce.xacml.identifiers.XacmlStatusCode;
 import org.slf4j.Logger;
@@ -72,7 +91,15 @@ public final class BasePdpEngine implements CloseablePdpEngine
 {
 	private static final String NULL_STD_ENV_ATTRIBUTE_SOURCE_ARG = "Undefined stdEnvAttributeSource arg (source of standard curent-* environment attributes)";
 
+	private static final String NULL_STD_ENV_ATTRIBUTE_CLOCK_ARG = "Undefined stdEnvAttributeClock arg (clock for standard curent-* environment attributes)";
+
 	private static final IllegalArgumentException NULL_REQUEST_ARGUMENT_EXCEPTION = new IllegalArgumentException("No input Decision Request");
+	private static final IllegalArgumentException NULL_UNKNOWN_CATEGORIES_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined unknown attribute categories");
+
+	private static final IllegalArgumentException NULL_PARALLEL_EVAL_EXECUTOR_ARGUMENT_EXCEPTION = new IllegalArgumentException(
+			"Undefined parallelEvaluationExecutor arg although parallel evaluation is enabled (parallelEvaluationThreshold > 0)");
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BasePdpEngine.class);
 
 	private interface StandardEnvironmentAttributeIssuer
 	{
@@ -89,30 +116,158 @@ public final class BasePdpEngine implements CloseablePdpEngine
 		}
 	};
 
-	private static final StandardEnvironmentAttributeIssuer DEFAULT_TZ_BASED_STD_ENV_ATTRIBUTE_ISSUER = new StandardEnvironmentAttributeIssuer()
+	/*
+	 * Immutable values of the standard environment attributes at a given instant
+	 */
+	private static Map<AttributeFqn, AttributeBag<?>> newStdEnvAttributes(final long epochMillis, final ZoneId zone)
 	{
+		/*
+		 * Set the standard current date/time attribute according to XACML core spec:
+		 * "This identifier indicates the current time at the context handler. In practice it is the time at which the request context was created." (§B.7). XACML standard (§10.2.5) says: "If values
+		 * for these attributes are not present in the decision request, then their values MUST be supplied by the context handler".
+		 */
+		// current datetime in the clock's timezone
+		final DateTimeValue currentDateTimeValue = new DateTimeValue(GregorianCalendar.from(ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone)));
+		return HashCollections.<AttributeFqn, AttributeBag<?>>newImmutableMap(
+				// current date-time
+				StandardEnvironmentAttribute.CURRENT_DATETIME.getFQN(), Bags.singletonAttributeBag(StandardDatatypes.DATETIME, currentDateTimeValue, AttributeSources.PDP),
+				// current date
+				StandardEnvironmentAttribute.CURRENT_DATE.getFQN(),
+				Bags.singletonAttributeBag(StandardDatatypes.DATE, DateValue.getInstance((XMLGregorianCalendar) currentDateTimeValue.getUnderlyingValue().clone()), AttributeSources.PDP),
+				// current time
+				StandardEnvironmentAttribute.CURRENT_TIME.getFQN(),
+				Bags.singletonAttributeBag(StandardDatatypes.TIME, TimeValue.getInstance((XMLGregorianCalendar) currentDateTimeValue.getUnderlyingValue().clone()), AttributeSources.PDP));
+	}
 
-		@Override
-		public Map<AttributeFqn, AttributeBag<?>> get()
+	/**
+	 * Issues the standard environment attributes from a clock, reusing the same values within a clock tick. The values are materialized only when first read in the evaluation context.
+	 */
+	private static final class ClockBasedStdEnvAttributeIssuer implements StandardEnvironmentAttributeIssuer
+	{
+		private static final class TickValues
+		{
+			private final long tick;
+			private final Map<AttributeFqn, AttributeBag<?>> attributes;
+
+			private TickValues(final long tick, final Map<AttributeFqn, AttributeBag<?>> attributes)
+			{
+				this.tick = tick;
+				this.attributes = attributes;
+			}
+		}
+
+		private final Clock clock;
+		/*
+		 * Values not reused if tickMillis <= 0
+		 */
+		private final long tickMillis;
+		private volatile TickValues lastTickValues = null;
+
+		private ClockBasedStdEnvAttributeIssuer(final Clock clock, final long tickMillis)
+		{
+			assert clock != null;
+			this.clock = clock;
+			this.tickMillis = tickMillis;
+		}
+
+		private Map<AttributeFqn, AttributeBag<?>> getCurrentValues()
 		{
+			final long now = clock.millis();
+			if (tickMillis <= 0)
+			{
+				return newStdEnvAttributes(now, clock.getZone());
+			}
+
+			final long tick = Math.floorDiv(now, tickMillis);
+			final TickValues lastValues = lastTickValues;
+			if (lastValues != null && lastValues.tick == tick)
+			{
+				return lastValues.attributes;
+			}
+
 			/*
-			 * Set the standard current date/time attribute according to XACML core spec:
-			 * "This identifier indicates the current time at the context handler. In practice it is the time at which the request context was created." (§B.7). XACML standard (§10.2.5) says: "If
-			 * values for these attributes are not present in the decision request, then their values MUST be supplied by the context handler".
+			 * Concurrent requests starting a new tick may issue their own values; the last one wins, and all are valid for this tick
 			 */
-			// current datetime in default timezone
-			final DateTimeValue currentDateTimeValue = new DateTimeValue(new GregorianCalendar());
-			return HashCollections.<AttributeFqn, AttributeBag<?>>newImmutableMap(
-					// current date-time
-					StandardEnvironmentAttribute.CURRENT_DATETIME.getFQN(), Bags.singletonAttributeBag(StandardDatatypes.DATETIME, currentDateTimeValue, AttributeSources.PDP),
-					// current date
-					StandardEnvironmentAttribute.CURRENT_DATE.getFQN(),
-					Bags.singletonAttributeBag(StandardDatatypes.DATE, DateValue.getInstance((XMLGregorianCalendar) currentDateTimeValue.getUnderlyingValue().clone()), AttributeSources.PDP),
-					// current time
-					StandardEnvironmentAttribute.CURRENT_TIME.getFQN(),
-					Bags.singletonAttributeBag(StandardDatatypes.TIME, TimeValue.getInstance((XMLGregorianCalendar) currentDateTimeValue.getUnderlyingValue().clone()), AttributeSources.PDP));
+			final Map<AttributeFqn, AttributeBag<?>> newValues = newStdEnvAttributes(now, clock.getZone());
+			lastTickValues = new TickValues(tick, newValues);
+			return newValues;
 		}
-	};
+
+		@Override
+		public Map<AttributeFqn, AttributeBag<?>> get()
+		{
+			return new LazyStdEnvAttributeMap(this);
+		}
+	}
+
+	/**
+	 * Standard environment attributes issued by the PDP, materialized on first read of any of them. The same instance may be shared by all Individual Decision Requests of a Multiple Decision Request,
+	 * possibly evaluated in parallel, therefore materialization is thread-safe so that they all get the same values.
+	 */
+	private static final class LazyStdEnvAttributeMap extends AbstractMap<AttributeFqn, AttributeBag<?>>
+	{
+		private final ClockBasedStdEnvAttributeIssuer issuer;
+		private volatile Map<AttributeFqn, AttributeBag<?>> values = null;
+
+		private LazyStdEnvAttributeMap(final ClockBasedStdEnvAttributeIssuer issuer)
+		{
+			this.issuer = issuer;
+		}
+
+		private Map<AttributeFqn, AttributeBag<?>> materialize()
+		{
+			Map<AttributeFqn, AttributeBag<?>> result = values;
+			if (result == null)
+			{
+				synchronized (this)
+				{
+					result = values;
+					if (result == null)
+					{
+						result = issuer.getCurrentValues();
+						values = result;
+					}
+				}
+			}
+
+			return result;
+		}
+
+		private static boolean isStdEnvAttribute(final Object key)
+		{
+			return key instanceof AttributeFqn && StandardEnvironmentAttribute.getInstance((AttributeFqn) key) != null;
+		}
+
+		@Override
+		public AttributeBag<?> get(final Object key)
+		{
+			return isStdEnvAttribute(key) ? materialize().get(key) : null;
+		}
+
+		@Override
+		public boolean containsKey(final Object key)
+		{
+			return isStdEnvAttribute(key);
+		}
+
+		@Override
+		public int size()
+		{
+			return StandardEnvironmentAttribute.values().length;
+		}
+
+		@Override
+		public boolean isEmpty()
+		{
+			return false;
+		}
+
+		@Override
+		public Set<Entry<AttributeFqn, AttributeBag<?>>> entrySet()
+		{
+			return materialize().entrySet();
+		}
+	}
 
 	private static class NonIssuedLikeIssuedAttributeHandlingRequestBuilder implements DecisionRequestBuilder<ImmutableDecisionRequest>
 	{
@@ -186,13 +341,14 @@ public final class BasePdpEngine implements CloseablePdpEngine
 		private interface RequestAndPdpIssuedNamedAttributesMerger
 		{
 			/**
-			 * Return an updatable map after merging {@code pdpIssuedAttributes} and {@code requestAttributes} or one of each into it, depending on the implementation
+			 * Return a layered view of {@code pdpIssuedAttributes} and {@code requestAttributes} or one of each, in order of priority depending on the implementation. Neither map is copied nor
+			 * modified: values resolved during evaluation go to the top (writable) layer of the view.
 			 * 
 			 * @param pdpIssuedAttributes
 			 * @param requestAttributes
-			 * @return updatable map resulting from merger, or null if nothing merged
+			 * @return layered view resulting from merger (empty if nothing merged)
 			 */
-			Map<AttributeFqn, AttributeBag<?>> merge(final Map<AttributeFqn, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFqn, AttributeBag<?>> requestAttributes);
+			LayeredAttributeMap merge(final Map<AttributeFqn, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFqn, AttributeBag<?>> requestAttributes);
 		}
 
 		private static final IndeterminateEvaluationException newReqMissingStdEnvAttrException(final AttributeFqn attrGUID)
@@ -215,21 +371,14 @@ public final class BasePdpEngine implements CloseablePdpEngine
 		{
 
 			@Override
-			public Map<AttributeFqn, AttributeBag<?>> merge(final Map<AttributeFqn, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFqn, AttributeBag<?>> requestAttributes)
+			public LayeredAttributeMap merge(final Map<AttributeFqn, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFqn, AttributeBag<?>> requestAttributes)
 			{
 				/*
-				 * Request attribute values override PDP issued ones. Do not modify pdpIssuedAttributes directly as this may be used for other requests (Multiple Decision Profile) as well. so we must
-				 * not modify it but clone it before individual decision request processing.
+				 * Request attribute values override PDP issued ones. pdpIssuedAttributes may be used for other requests (Multiple Decision Profile) as well, but the layered view never modifies it.
 				 */
-				if (pdpIssuedAttributes == null)
+				if (pdpIssuedAttributes == null || requestAttributes == null)
 				{
-					return requestAttributes == null ? null : HashCollections.newUpdatableMap(requestAttributes);
-				}
-
-				// pdpIssuedAttributes != null
-				if (requestAttributes == null)
-				{
-					return HashCollections.newUpdatableMap(pdpIssuedAttributes);
+					return LayeredAttributeMap.of(requestAttributes == null ? pdpIssuedAttributes : requestAttributes);
 				}
 				// requestAttributes != null
 
@@ -250,12 +399,12 @@ public final class BasePdpEngine implements CloseablePdpEngine
 					 * Request has at least one standard env attribute -> make sure all PDP values are ignored (overridden by STD_ENV_RESET_MAP no matter whether requestAttributes contains all of them
 					 * or not)
 					 */
-					// mappings in order of increasing priority
-					return HashCollections.newUpdatableMap(pdpIssuedAttributes, STD_ENV_RESET_MAP, requestAttributes);
+					// layers in order of decreasing priority
+					return LayeredAttributeMap.of(requestAttributes, STD_ENV_RESET_MAP, pdpIssuedAttributes);
 				}
 
-				// mappings in order of increasing priority
-				return HashCollections.newUpdatableMap(pdpIssuedAttributes, requestAttributes);
+				// layers in order of decreasing priority
+				return LayeredAttributeMap.of(requestAttributes, pdpIssuedAttributes);
 			}
 
 		};
@@ -264,28 +413,15 @@ public final class BasePdpEngine implements CloseablePdpEngine
 		{
 
 			@Override
-			public Map<AttributeFqn, AttributeBag<?>> merge(final Map<AttributeFqn, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFqn, AttributeBag<?>> requestAttributes)
+			public LayeredAttributeMap merge(final Map<AttributeFqn, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFqn, AttributeBag<?>> requestAttributes)
 			{
 
 				// PDP issued attribute values override request attribute values
 				/*
-				 * Do not modify pdpIssuedAttributes directly as this may be used for other requests (Multiple Decision Profile) as well. so we must not modify it but clone it before individual
-				 * decision request processing.
+				 * pdpIssuedAttributes may be used for other requests (Multiple Decision Profile) as well, but the layered view never modifies it.
 				 */
-				if (pdpIssuedAttributes == null)
-				{
-					return requestAttributes == null ? null : HashCollections.newUpdatableMap(requestAttributes);
-				}
-
-				// pdpIssuedAttributes != null
-				if (requestAttributes == null)
-				{
-					return HashCollections.newUpdatableMap(pdpIssuedAttributes);
-				}
-				// requestAttributes != null
-
-				// mappings of pdpIssuedAttributes have priority
-				return HashCollections.newUpdatableMap(requestAttributes, pdpIssuedAttributes);
+				// layers in order of decreasing priority
+				return LayeredAttributeMap.of(pdpIssuedAttributes, requestAttributes);
 
 			}
 
@@ -295,16 +431,17 @@ public final class BasePdpEngine implements CloseablePdpEngine
 		{
 
 			@Override
-			public Map<AttributeFqn, AttributeBag<?>> merge(final Map<AttributeFqn, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFqn, AttributeBag<?>> requestAttributes)
+			public LayeredAttributeMap merge(final Map<AttributeFqn, AttributeBag<?>> pdpIssuedAttributes, final Map<AttributeFqn, AttributeBag<?>> requestAttributes)
 			{
 				// PDP values completely ignored
-				return requestAttributes == null ? null : HashCollections.newUpdatableMap(requestAttributes);
+				return LayeredAttributeMap.of(requestAttributes);
 			}
 
 		};
 
 		private final RootPolicyEvaluator rootPolicyEvaluator;
 		private final RequestAndPdpIssuedNamedAttributesMerger reqAndPdpIssuedAttributesMerger;
+		private final AttributeSlotIndex attributeSlotIndex;
 
 		/**
 		 * Creates an evaluator
@@ -327,13 +464,17 @@ public final class BasePdpEngine implements CloseablePdpEngine
 		 *            these attributes are not present in the decision request, then their values MUST be supplied by the context handler " but it does NOT say "If AND ONLY IF values..." So this
 		 *            option could still be considered XACML compliant in a strict sense.</li>
 		 *            </ul>
+		 * @param attributeSlotIndex
+		 *            slots of attributes referenced by AttributeDesignators in policies, used by evaluation contexts to store these attributes in a flat array; null if none
 		 * @throws IllegalArgumentException
 		 *             if {@code stdEnvAttributeSource} is null or not supported
 		 */
-		protected IndividualDecisionRequestEvaluator(final RootPolicyEvaluator rootPolicyEvaluator, final StandardEnvironmentAttributeSource stdEnvAttributeSource) throws IllegalArgumentException
+		protected IndividualDecisionRequestEvaluator(final RootPolicyEvaluator rootPolicyEvaluator, final StandardEnvironmentAttributeSource stdEnvAttributeSource,
+				final AttributeSlotIndex attributeSlotIndex) throws IllegalArgumentException
 		{
 			assert rootPolicyEvaluator != null && stdEnvAttributeSource != null;
 			this.rootPolicyEvaluator = rootPolicyEvaluator;
+			this.attributeSlotIndex = attributeSlotIndex;
 			switch (stdEnvAttributeSource)
 			{
 				case PDP_ONLY:
@@ -358,8 +499,40 @@ public final class BasePdpEngine implements CloseablePdpEngine
 		protected final EvaluationContext newEvaluationContext(final DecisionRequest request, final Map<AttributeFqn, AttributeBag<?>> pdpIssuedAttributes)
 		{
 			assert request != null;
-			final Map<AttributeFqn, AttributeBag<?>> mergedNamedAttributes = reqAndPdpIssuedAttributesMerger.merge(pdpIssuedAttributes, request.getNamedAttributes());
-			return new IndividualDecisionRequestContext(mergedNamedAttributes, request.getExtraContentsByCategory(), request.isApplicablePolicyIdListReturned());
+			final LayeredAttributeMap mergedNamedAttributes = reqAndPdpIssuedAttributesMerger.merge(pdpIssuedAttributes, request.getNamedAttributes());
+			return new IndividualDecisionRequestContext(mergedNamedAttributes, request.getExtraContentsByCategory(), request.isApplicablePolicyIdListReturned(), attributeSlotIndex);
+		}
+
+		/**
+		 * Evaluates a batch of requests sharing the same base request (see {@link BatchItemEvaluationContext})
+		 *
+		 * @param sharedRequest
+		 *            attributes shared by all the items
+		 * @param itemRequests
+		 *            item-specific attributes
+		 * @param pdpIssuedAttributes
+		 *            PDP-issued attributes including at least the standard environment attributes, for all the items
+		 * @return results in the same order as {@code itemRequests}
+		 */
+		protected final List<DecisionResult> evaluateSharingContext(final DecisionRequest sharedRequest, final List<? extends DecisionRequest> itemRequests,
+				final Map<AttributeFqn, AttributeBag<?>> pdpIssuedAttributes)
+		{
+			assert sharedRequest != null && itemRequests != null;
+			final Set<String> itemCategories = HashCollections.newUpdatableSet();
+			for (final DecisionRequest itemRequest : itemRequests)
+			{
+				itemRequest.getNamedAttributes().keySet().forEach(attributeFqn -> itemCategories.add(attributeFqn.getCategory()));
+				itemCategories.addAll(itemRequest.getExtraContentsByCategory().keySet());
+			}
+
+			final BatchItemEvaluationContext.SharedState sharedState = new BatchItemEvaluationContext.SharedState(newEvaluationContext(sharedRequest, pdpIssuedAttributes), itemCategories);
+			final List<DecisionResult> results = new ArrayList<>(itemRequests.size());
+			for (final DecisionRequest itemRequest : itemRequests)
+			{
+				results.add(rootPolicyEvaluator.findAndEvaluate(new BatchItemEvaluationContext(sharedState, newEvaluationContext(itemRequest, pdpIssuedAttributes))));
+			}
+
+			return results;
 		}
 
 		protected final DecisionResult evaluateInNewContext(final DecisionRequest request, final Map<AttributeFqn, AttributeBag<?>> pdpIssuedAttributes)
@@ -421,9 +594,10 @@ public final class BasePdpEngine implements CloseablePdpEngine
 		private static final RuntimeException NULL_INDIVIDUAL_DECISION_REQUEST_EXCEPTION = new RuntimeException(
 				"One of the individual decision requests returned by the request filter is invalid (null).");
 
-		private NonCachingIndividualDecisionRequestEvaluator(final RootPolicyEvaluator rootPolicyEvaluator, final StandardEnvironmentAttributeSource stdEnvAttributeSource)
+		private NonCachingIndividualDecisionRequestEvaluator(final RootPolicyEvaluator rootPolicyEvaluator, final StandardEnvironmentAttributeSource stdEnvAttributeSource,
+				final AttributeSlotIndex attributeSlotIndex)
 		{
-			super(rootPolicyEvaluator, stdEnvAttributeSource);
+			super(rootPolicyEvaluator, stdEnvAttributeSource, attributeSlotIndex);
 		}
 
 		@Override
@@ -468,9 +642,9 @@ public final class BasePdpEngine implements CloseablePdpEngine
 		private final DecisionCache decisionCache;
 
 		private IndividualRequestEvaluatorWithCacheIgnoringEvaluationContext(final RootPolicyEvaluator rootPolicyEvaluator, final StandardEnvironmentAttributeSource stdEnvAttributeSource,
-				final DecisionCache decisionCache)
+				final AttributeSlotIndex attributeSlotIndex, final DecisionCache decisionCache)
 		{
-			super(rootPolicyEvaluator, stdEnvAttributeSource);
+			super(rootPolicyEvaluator, stdEnvAttributeSource, attributeSlotIndex);
 			assert decisionCache != null;
 			this.decisionCache = decisionCache;
 		}
@@ -556,9 +730,9 @@ public final class BasePdpEngine implements CloseablePdpEngine
 		private final DecisionCache decisionCache;
 
 		private IndividualRequestEvaluatorWithCacheUsingEvaluationContext(final RootPolicyEvaluator rootPolicyEvaluator, final StandardEnvironmentAttributeSource validStdEnvAttrSrc,
-				final DecisionCache decisionCache)
+				final AttributeSlotIndex attributeSlotIndex, final DecisionCache decisionCache)
 		{
-			super(rootPolicyEvaluator, validStdEnvAttrSrc);
+			super(rootPolicyEvaluator, validStdEnvAttrSrc, attributeSlotIndex);
 			assert decisionCache != null;
 			this.decisionCache = decisionCache;
 		}
@@ -615,12 +789,293 @@ public final class BasePdpEngine implements CloseablePdpEngine
 
 	}
 
+	/**
+	 * Evaluator with decision cache and policy hot reload: the cached results are invalidated when the policies are replaced, so that no result of the previous policies is returned afterwards
+	 */
+	private static final class PolicyReloadAwareIndividualDecisionRequestEvaluator extends IndividualDecisionRequestEvaluator
+	{
+		private static final Logger LOGGER = LoggerFactory.getLogger(PolicyReloadAwareIndividualDecisionRequestEvaluator.class);
+
+		private final IndividualDecisionRequestEvaluator cachingEvaluator;
+		private final RootPolicyEvaluators.Reloadable reloadableRootPolicyEvaluator;
+		private final InvalidatableDecisionCache decisionCache;
+
+		/*
+		 * Number of policy reloads (snapshots replaced) when the cache was last invalidated
+		 */
+		private volatile long invalidatedReloadCount;
+
+		private PolicyReloadAwareIndividualDecisionRequestEvaluator(final RootPolicyEvaluators.Reloadable reloadableRootPolicyEvaluator,
+				final StandardEnvironmentAttributeSource stdEnvAttributeSource, final AttributeSlotIndex attributeSlotIndex, final IndividualDecisionRequestEvaluator cachingEvaluator,
+				final InvalidatableDecisionCache decisionCache)
+		{
+			super(reloadableRootPolicyEvaluator, stdEnvAttributeSource, attributeSlotIndex);
+			assert cachingEvaluator != null && decisionCache != null;
+			this.cachingEvaluator = cachingEvaluator;
+			this.reloadableRootPolicyEvaluator = reloadableRootPolicyEvaluator;
+			this.decisionCache = decisionCache;
+			this.invalidatedReloadCount = reloadableRootPolicyEvaluator.getStatistics().getSuccessCount();
+		}
+
+		/*
+		 * Invalidates the cache if the policies have been reloaded since the last invalidation. The requests wait for the invalidation to be complete before using the cache.
+		 */
+		private long invalidateCacheIfReloaded()
+		{
+			final long reloadCount = reloadableRootPolicyEvaluator.getStatistics().getSuccessCount();
+			if (reloadCount != invalidatedReloadCount)
+			{
+				synchronized (this)
+				{
+					if (reloadCount > invalidatedReloadCount)
+					{
+						LOGGER.debug("Policies reloaded: invalidating the decision cache");
+						decisionCache.invalidateAll();
+						invalidatedReloadCount = reloadCount;
+					}
+				}
+			}
+
+			return reloadCount;
+		}
+
+		/*
+		 * The snapshot is replaced before the reload count is incremented. So if the reload count did not change during the evaluation, the results cached by this evaluation either come from the
+		 * current policies, or will be invalidated by the next request after the reload count is incremented.
+		 */
+		private void invalidateCacheIfReloadedDuringEvaluation(final long reloadCountBeforeEvaluation)
+		{
+			if (reloadableRootPolicyEvaluator.getStatistics().getSuccessCount() != reloadCountBeforeEvaluation)
+			{
+				LOGGER.debug("Policies reloaded during evaluation: invalidating the decision cache");
+				decisionCache.invalidateAll();
+			}
+		}
+
+		@Override
+		protected DecisionResult evaluate(final DecisionRequest individualDecisionRequest, final StandardEnvironmentAttributeIssuer pdpStdEnvAttributeIssuer)
+		{
+			final long reloadCount = invalidateCacheIfReloaded();
+			final DecisionResult result = cachingEvaluator.evaluate(individualDecisionRequest, pdpStdEnvAttributeIssuer);
+			invalidateCacheIfReloadedDuringEvaluation(reloadCount);
+			return result;
+		}
+
+		@Override
+		protected <INDIVIDUAL_DECISION_REQ_T extends DecisionRequest> Collection<Entry<INDIVIDUAL_DECISION_REQ_T, ? extends DecisionResult>> evaluate(
+				final List<INDIVIDUAL_DECISION_REQ_T> individualDecisionRequests, final StandardEnvironmentAttributeIssuer pdpStdEnvAttributeIssuer) throws IndeterminateEvaluationException
+		{
+			final long reloadCount = invalidateCacheIfReloaded();
+			final Collection<Entry<INDIVIDUAL_DECISION_REQ_T, ? extends DecisionResult>> resultsByRequest = cachingEvaluator.evaluate(individualDecisionRequests, pdpStdEnvAttributeIssuer);
+			invalidateCacheIfReloadedDuringEvaluation(reloadCount);
+			return resultsByRequest;
+		}
+
+	}
+
 	private final boolean strictAttributeIssuerMatch;
 	private final IndividualDecisionRequestEvaluator individualReqEvaluator;
 	private final DecisionCache decisionCache;
 	private final RootPolicyEvaluator rootPolicyEvaluator;
 	private final StandardEnvironmentAttributeIssuer pdpStdEnvAttributeIssuer;
 
+	/*
+	 * Parallel evaluation of Multiple Decision Requests: parallelEvalThreshold <= 0 iff disabled, in which case parallelEvalExecutor == null
+	 */
+	private final int parallelEvalThreshold;
+	private final ExecutorService parallelEvalExecutor;
+	private final int parallelEvalMaxChunkCount;
+	private final boolean isParallelEvalExecutorOwned;
+
+	/*
+	 * Executor of evaluateAsync(), created on first use
+	 */
+	private final int asyncEvalThreads;
+	private final int asyncEvalQueueCapacity;
+	private final Object asyncEvalExecutorLock = new Object();
+	private volatile AsyncEvaluationExecutor asyncEvalExecutor = null;
+	// guarded by asyncEvalExecutorLock
+	private boolean isAsyncEvalExecutorClosed = false;
+
+	private static boolean isAnyStdEnvAttributeRequired(final DepthLimitingExpressionFactory expressionFactory)
+	{
+		for (final StandardEnvironmentAttribute stdEnvAttribute : StandardEnvironmentAttribute.values())
+		{
+			if (expressionFactory.isRequiredAttribute(stdEnvAttribute.getFQN()))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static int getParallelism(final ExecutorService executor)
+	{
+		assert executor != null;
+		if (executor instanceof ForkJoinPool)
+		{
+			return ((ForkJoinPool) executor).getParallelism();
+		}
+
+		if (executor instanceof ThreadPoolExecutor)
+		{
+			return ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+		}
+
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	private BasePdpEngine(final ExpressionFactory xacmlExpressionFactory, final RootPolicyProvider rootPolicyProvider, final boolean strictAttributeIssuerMatch,
+			final StandardEnvironmentAttributeSource stdEnvAttributeSource, final Optional<DecisionCache> decisionCache, final int parallelEvaluationThreshold,
+			final Optional<ExecutorService> parallelEvaluationExecutor, final int ownedParallelEvaluationThreads, final int asyncEvaluationThreads, final int asyncEvaluationQueueCapacity,
+			final Clock stdEnvAttributeClock, final long stdEnvAttributeTickMillis, final int decisionDiagramMaxNodeCount, final long policyReloadDelayMillis,
+			final Optional<CloseableRefPolicyProvider> refPolicyProvider, final RootPolicyEvaluators.Reloadable.Loader rootPolicyProviderLoader, final List<String> policyLocations)
+			throws IllegalArgumentException, IOException
+	{
+		/*
+		 * If parallel evaluation is enabled, the executor is either parallelEvaluationExecutor (managed by the caller), or a new ForkJoinPool with ownedParallelEvaluationThreads threads (owned by
+		 * this engine) if parallelEvaluationExecutor is empty
+		 */
+		assert stdEnvAttributeClock != null;
+		if (parallelEvaluationThreshold > 0 && !parallelEvaluationExecutor.isPresent() && ownedParallelEvaluationThreads <= 0)
+		{
+			throw NULL_PARALLEL_EVAL_EXECUTOR_ARGUMENT_EXCEPTION;
+		}
+
+		AsyncEvaluationExecutor.checkArguments(asyncEvaluationThreads, asyncEvaluationQueueCapacity);
+		this.asyncEvalThreads = asyncEvaluationThreads;
+		this.asyncEvalQueueCapacity = asyncEvaluationQueueCapacity;
+		final RootPolicyEvaluator staticRootPolicyEvaluator;
+		if (policyReloadDelayMillis > 0)
+		{
+			/*
+			 * Hot reload: the policies may change, so nothing can be assumed about them (e.g. whether they use the standard environment attributes); and the cached decisions must be invalidated
+			 * when they do
+			 */
+			if (decisionCache.isPresent() && !(decisionCache.get() instanceof InvalidatableDecisionCache))
+			{
+				throw new IllegalArgumentException("Policy hot reload enabled with a decision cache that cannot be invalidated on reload (not an InvalidatableDecisionCache): " + decisionCache.get());
+			}
+
+			this.rootPolicyEvaluator = new RootPolicyEvaluators.Reloadable(xacmlExpressionFactory, rootPolicyProvider, refPolicyProvider, rootPolicyProviderLoader, policyLocations,
+					policyReloadDelayMillis, decisionDiagramMaxNodeCount);
+			staticRootPolicyEvaluator = null;
+		}
+		else
+		{
+			final RootPolicyEvaluators.Base candidateRootPolicyEvaluator = new RootPolicyEvaluators.Base(xacmlExpressionFactory, rootPolicyProvider);
+			// Use static resolution if possible
+			staticRootPolicyEvaluator = candidateRootPolicyEvaluator.toStatic(decisionDiagramMaxNodeCount);
+			if (staticRootPolicyEvaluator == null)
+			{
+				this.rootPolicyEvaluator = candidateRootPolicyEvaluator;
+			}
+			else
+			{
+				this.rootPolicyEvaluator = staticRootPolicyEvaluator;
+			}
+		}
+
+		this.strictAttributeIssuerMatch = strictAttributeIssuerMatch;
+
+		Preconditions.checkNotNull(stdEnvAttributeSource, NULL_STD_ENV_ATTRIBUTE_SOURCE_ARG);
+		if (stdEnvAttributeSource == StandardEnvironmentAttributeSource.REQUEST_ONLY)
+		{
+			this.pdpStdEnvAttributeIssuer = NULL_STD_ENV_ATTRIBUTE_ISSUER;
+		}
+		else if (staticRootPolicyEvaluator != null && xacmlExpressionFactory instanceof DepthLimitingExpressionFactory
+				&& !((DepthLimitingExpressionFactory) xacmlExpressionFactory).isPolicyLoadingDeferred() && !isAnyStdEnvAttributeRequired((DepthLimitingExpressionFactory) xacmlExpressionFactory))
+		{
+			/*
+			 * All policies are loaded and compiled (static resolution, not compiled on demand) and none of them (nor any attribute provider) reads the standard environment attributes: no need to issue them
+			 */
+			LOGGER.debug("Standard environment attributes not used by any policy or attribute provider: the PDP will not issue them");
+			this.pdpStdEnvAttributeIssuer = NULL_STD_ENV_ATTRIBUTE_ISSUER;
+		}
+		else
+		{
+			this.pdpStdEnvAttributeIssuer = new ClockBasedStdEnvAttributeIssuer(stdEnvAttributeClock, stdEnvAttributeTickMillis);
+		}
+
+		/*
+		 * Slots of attributes referenced by AttributeDesignators, if known from the expression factory
+		 */
+		final AttributeSlotIndex attributeSlotIndex = xacmlExpressionFactory instanceof DepthLimitingExpressionFactory
+				? ((DepthLimitingExpressionFactory) xacmlExpressionFactory).getAttributeSlotIndex()
+				: null;
+		this.decisionCache = decisionCache.orElse(null);
+		if (this.decisionCache == null)
+		{
+			this.individualReqEvaluator = new NonCachingIndividualDecisionRequestEvaluator(rootPolicyEvaluator, stdEnvAttributeSource, attributeSlotIndex);
+		}
+		else
+		{
+			final IndividualDecisionRequestEvaluator cachingEvaluator = this.decisionCache.isEvaluationContextRequired()
+					? new IndividualRequestEvaluatorWithCacheUsingEvaluationContext(rootPolicyEvaluator, stdEnvAttributeSource, attributeSlotIndex, this.decisionCache)
+					: new IndividualRequestEvaluatorWithCacheIgnoringEvaluationContext(rootPolicyEvaluator, stdEnvAttributeSource, attributeSlotIndex, this.decisionCache);
+			this.individualReqEvaluator = rootPolicyEvaluator instanceof RootPolicyEvaluators.Reloadable
+					? new PolicyReloadAwareIndividualDecisionRequestEvaluator((RootPolicyEvaluators.Reloadable) rootPolicyEvaluator, stdEnvAttributeSource, attributeSlotIndex,
+							cachingEvaluator, (InvalidatableDecisionCache) this.decisionCache)
+					: cachingEvaluator;
+		}
+
+		/*
+		 * The executor owned by this engine is created last, so that it is not left running if the initialization fails (e.g. invalid policy)
+		 */
+		if (parallelEvaluationThreshold > 0)
+		{
+			final ExecutorService executor = parallelEvaluationExecutor.isPresent() ? parallelEvaluationExecutor.get() : new ForkJoinPool(ownedParallelEvaluationThreads);
+			this.parallelEvalThreshold = parallelEvaluationThreshold;
+			this.parallelEvalExecutor = executor;
+			/*
+			 * The calling thread evaluates one chunk itself, so the executor is given at most as many chunks as its parallelism level
+			 */
+			this.parallelEvalMaxChunkCount = getParallelism(executor) + 1;
+			this.isParallelEvalExecutorOwned = !parallelEvaluationExecutor.isPresent();
+		}
+		else
+		{
+			this.parallelEvalThreshold = -1;
+			this.parallelEvalExecutor = null;
+			this.parallelEvalMaxChunkCount = 1;
+			this.isParallelEvalExecutorOwned = false;
+		}
+	}
+
+	/**
+	 * Constructs a new PDP engine with the given configuration information, and parallel evaluation of Multiple Decision Requests.
+	 *
+	 * @param xacmlExpressionFactory
+	 *            XACML Expression parser/factory - mandatory
+	 * @param rootPolicyProvider
+	 *            Root Policy Provider - mandatory
+	 * @param decisionCache
+	 *            (optional) decision response cache
+	 * @param strictAttributeIssuerMatch
+	 *            true iff strict Attribute Issuer matching is enabled, i.e. AttributeDesignators without Issuer only match request Attributes without Issuer (and same AttributeId, Category...). See
+	 *            {@link #BasePdpEngine(ExpressionFactory, RootPolicyProvider, boolean, StandardEnvironmentAttributeSource, Optional)}.
+	 * @param stdEnvAttributeSource
+	 *            (mandatory) source for standard environment current-time/current-date/current-dateTime attribute values (request or PDP, etc.).
+	 * @param parallelEvaluationThreshold
+	 *            minimum number of Individual Decision Requests passed to {@link #evaluate(List)} for them to be evaluated in parallel by {@code parallelEvaluationExecutor}; smaller batches are
+	 *            evaluated sequentially in the calling thread. If not positive, parallel evaluation is disabled.
+	 * @param parallelEvaluationExecutor
+	 *            executor used for parallel evaluation; mandatory iff {@code parallelEvaluationThreshold > 0}. It is managed by the caller, i.e. NOT shut down by {@link #close()}.
+	 * @throws java.lang.IllegalArgumentException
+	 *             if one of the mandatory arguments is null ({@code xacmlExpressionFactory}, {@code rootPolicyProvider}, {@code parallelEvaluationExecutor} if
+	 *             {@code parallelEvaluationThreshold > 0})
+	 * @throws java.io.IOException
+	 *             error closing the root policy Provider when static resolution is to be used
+	 */
+	public BasePdpEngine(final ExpressionFactory xacmlExpressionFactory, final RootPolicyProvider rootPolicyProvider, final boolean strictAttributeIssuerMatch,
+			final StandardEnvironmentAttributeSource stdEnvAttributeSource, final Optional<DecisionCache> decisionCache, final int parallelEvaluationThreshold,
+			final Optional<ExecutorService> parallelEvaluationExecutor) throws IllegalArgumentException, IOException
+	{
+		this(xacmlExpressionFactory, rootPolicyProvider, strictAttributeIssuerMatch, stdEnvAttributeSource, decisionCache, parallelEvaluationThreshold, parallelEvaluationExecutor, 0,
+				0, AsyncEvaluationExecutor.DEFAULT_QUEUE_CAPACITY, Clock.systemDefaultZone(), 0, 0, 0, Optional.empty(), null, Collections.emptyList());
+	}
+
 	/**
 	 * Constructs a new PDP engine with the given configuration information.
 	 *
@@ -645,34 +1100,8 @@ public final class BasePdpEngine implements CloseablePdpEngine
 	public BasePdpEngine(final ExpressionFactory xacmlExpressionFactory, final RootPolicyProvider rootPolicyProvider, final boolean strictAttributeIssuerMatch,
 			final StandardEnvironmentAttributeSource stdEnvAttributeSource, final Optional<DecisionCache> decisionCache) throws IllegalArgumentException, IOException
 	{
-		final RootPolicyEvaluators.Base candidateRootPolicyEvaluator = new RootPolicyEvaluators.Base(xacmlExpressionFactory, rootPolicyProvider);
-		// Use static resolution if possible
-		final RootPolicyEvaluator staticRootPolicyEvaluator = candidateRootPolicyEvaluator.toStatic();
-		if (staticRootPolicyEvaluator == null)
-		{
-			this.rootPolicyEvaluator = candidateRootPolicyEvaluator;
-		}
-		else
-		{
-			this.rootPolicyEvaluator = staticRootPolicyEvaluator;
-		}
-
-		this.strictAttributeIssuerMatch = strictAttributeIssuerMatch;
-
-		Preconditions.checkNotNull(stdEnvAttributeSource, NULL_STD_ENV_ATTRIBUTE_SOURCE_ARG);
-		this.pdpStdEnvAttributeIssuer = stdEnvAttributeSource == StandardEnvironmentAttributeSource.REQUEST_ONLY ? NULL_STD_ENV_ATTRIBUTE_ISSUER : DEFAULT_TZ_BASED_STD_ENV_ATTRIBUTE_ISSUER;
-
-		this.decisionCache = decisionCache.orElse(null);
-		if (this.decisionCache == null)
-		{
-			this.individualReqEvaluator = new NonCachingIndividualDecisionRequestEvaluator(rootPolicyEvaluator, stdEnvAttributeSource);
-		}
-		else
-		{
-			this.individualReqEvaluator = this.decisionCache.isEvaluationContextRequired()
-					? new IndividualRequestEvaluatorWithCacheUsingEvaluationContext(rootPolicyEvaluator, stdEnvAttributeSource, this.decisionCache)
-					: new IndividualRequestEvaluatorWithCacheIgnoringEvaluationContext(rootPolicyEvaluator, stdEnvAttributeSource, this.decisionCache);
-		}
+		this(xacmlExpressionFactory, rootPolicyProvider, strictAttributeIssuerMatch, stdEnvAttributeSource, decisionCache, -1, Optional.empty(), 0,
+				0, AsyncEvaluationExecutor.DEFAULT_QUEUE_CAPACITY, Clock.systemDefaultZone(), 0, 0, 0, Optional.empty(), null, Collections.emptyList());
 	}
 
 	/**
@@ -687,9 +1116,61 @@ public final class BasePdpEngine implements CloseablePdpEngine
 	 *             error closing {@code configuration.getRootPolicyProvider()} when static resolution is to be used
 	 */
 	public BasePdpEngine(final PdpEngineConfiguration configuration) throws IllegalArgumentException, IOException
+	{
+		this(configuration, Clock.systemDefaultZone());
+	}
+
+	/**
+	 * Constructs a new PDP engine with the given configuration information, and a specific clock for the standard environment attributes (current-dateTime, etc.) issued by the PDP.
+	 *
+	 * @param configuration
+	 *            PDP engine configuration
+	 * @param stdEnvAttributeClock
+	 *            (mandatory) clock from which the PDP issues the standard environment attributes (current-time/current-date/current-dateTime), in the clock's time zone, with the granularity given by
+	 *            {@link PdpEngineConfiguration#getStdEnvAttributeTickMillis()}
+	 *
+	 * @throws java.lang.IllegalArgumentException
+	 *             if {@code configuration.getXacmlExpressionFactory() == null || configuration.getRootPolicyProvider() == null}
+	 * @throws java.io.IOException
+	 *             error closing {@code configuration.getRootPolicyProvider()} when static resolution is to be used
+	 */
+	public BasePdpEngine(final PdpEngineConfiguration configuration, final Clock stdEnvAttributeClock) throws IllegalArgumentException, IOException
 	{
 		this(configuration.getXacmlExpressionFactory(), configuration.getRootPolicyProvider(), configuration.isStrictAttributeIssuerMatchEnabled(), configuration.getStdEnvAttributeSource(),
-				configuration.getDecisionCache());
+				configuration.getDecisionCache(), configuration.getParallelEvaluationThreshold(),
+				configuration.getParallelEvaluationThreads() == 0 ? Optional.of(ForkJoinPool.commonPool()) : Optional.empty(), configuration.getParallelEvaluationThreads(),
+				configuration.getAsyncEvaluationThreads(), configuration.getAsyncEvaluationQueueCapacity(),
+				Preconditions.checkNotNull(stdEnvAttributeClock, NULL_STD_ENV_ATTRIBUTE_CLOCK_ARG), configuration.getStdEnvAttributeTickMillis(),
+				configuration.getDecisionDiagramMaxNodeCount(), configuration.getPolicyReloadDelayMillis(), configuration.getRefPolicyProvider(), configuration.getRootPolicyProviderLoader(),
+				configuration.getPolicyLocations());
+	}
+
+	/**
+	 * Reloads the policies now, if hot reload is enabled (PDP configuration parameter 'policyReloadDelayMillis'), whether the policy files changed or not. See
+	 * {@link RootPolicyEvaluators.Reloadable#reload()}.
+	 *
+	 * @return true iff the policies were reloaded successfully; else the previous ones are kept
+	 * @throws IllegalStateException
+	 *             if hot reload is disabled
+	 */
+	public boolean reloadPolicies() throws IllegalStateException
+	{
+		if (!(rootPolicyEvaluator instanceof RootPolicyEvaluators.Reloadable))
+		{
+			throw new IllegalStateException("Policy hot reload disabled");
+		}
+
+		return ((RootPolicyEvaluators.Reloadable) rootPolicyEvaluator).reload();
+	}
+
+	/**
+	 * Gets the statistics on the policy reloads, if hot reload is enabled (PDP configuration parameter 'policyReloadDelayMillis')
+	 *
+	 * @return policy reload statistics; empty if hot reload is disabled
+	 */
+	public Optional<RootPolicyEvaluators.Reloadable.Statistics> getPolicyReloadStatistics()
+	{
+		return rootPolicyEvaluator instanceof RootPolicyEvaluators.Reloadable ? Optional.of(((RootPolicyEvaluators.Reloadable) rootPolicyEvaluator).getStatistics()) : Optional.empty();
 	}
 
 	@Override
@@ -739,7 +1220,224 @@ public final class BasePdpEngine implements CloseablePdpEngine
 		 * "If values for these attributes are not present in the decision request, then their values MUST be supplied by the context handler" . These current date/time values must be set here once
 		 * before every individual request is evaluated to make sure they all use the same value for current-time/current-date/current-dateTime, if they use the one from PDP.
 		 */
-		return individualReqEvaluator.evaluate(individualDecisionRequests, this.pdpStdEnvAttributeIssuer);
+		if (parallelEvalExecutor == null || individualDecisionRequests.size() < parallelEvalThreshold)
+		{
+			return individualReqEvaluator.evaluate(individualDecisionRequests, this.pdpStdEnvAttributeIssuer);
+		}
+
+		return evaluateInParallel(individualDecisionRequests);
+	}
+
+	private static DecisionRequest newMergedRequest(final DecisionRequest sharedRequest, final DecisionRequest itemRequest)
+	{
+		final Map<AttributeFqn, AttributeBag<?>> namedAttributes = HashCollections.newUpdatableMap(sharedRequest.getNamedAttributes());
+		namedAttributes.putAll(itemRequest.getNamedAttributes());
+		final Map<String, XdmNode> extraContentsByCategory = HashCollections.newUpdatableMap(sharedRequest.getExtraContentsByCategory());
+		extraContentsByCategory.putAll(itemRequest.getExtraContentsByCategory());
+		return ImmutableDecisionRequest.getInstance(namedAttributes, extraContentsByCategory, itemRequest.isApplicablePolicyIdListReturned());
+	}
+
+	/**
+	 * Evaluates a batch of Individual Decision Requests sharing a base request, typically the same subject and environment for many resources and/or actions (e.g. to filter a list of resources
+	 * displayed to a user). The result for each item is the same as {@link #evaluate(DecisionRequest)} of the item request merged with {@code sharedRequest}, the item attributes (and Contents)
+	 * overriding the shared ones with the same name (category), and the item request telling whether to return the applicable policies. But the batch is evaluated with the same PDP-issued
+	 * attributes (current date/time) for all the items, and the items share the evaluation of everything that does not depend on the categories of the item attributes: the values of the shared
+	 * attributes from Attribute Providers (assumed to depend on shared attributes only), the results of the Targets and Conditions that depend only on shared attributes.
+	 * <p>
+	 * If the PDP has a decision cache, the merged requests are evaluated like {@link #evaluate(List)} to use the cache instead.
+	 *
+	 * @param sharedRequest
+	 *            request with the attributes shared by all the items, e.g. subject and environment attributes
+	 * @param itemRequests
+	 *            requests with the item-specific attributes, e.g. resource and action attributes
+	 * @return results in the same order as {@code itemRequests}
+	 * @throws java.lang.IllegalArgumentException
+	 *             if {@code sharedRequest == null || itemRequests == null} or one of {@code itemRequests} is null
+	 * @throws org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException
+	 *             if an error occurred preventing any request evaluation (decision cache error)
+	 */
+	public List<DecisionResult> evaluate(final DecisionRequest sharedRequest, final List<? extends DecisionRequest> itemRequests) throws IllegalArgumentException, IndeterminateEvaluationException
+	{
+		if (sharedRequest == null || itemRequests == null || itemRequests.contains(null))
+		{
+			throw NULL_REQUEST_ARGUMENT_EXCEPTION;
+		}
+
+		if (decisionCache != null)
+		{
+			final List<DecisionRequest> mergedRequests = new ArrayList<>(itemRequests.size());
+			for (final DecisionRequest itemRequest : itemRequests)
+			{
+				mergedRequests.add(newMergedRequest(sharedRequest, itemRequest));
+			}
+
+			final List<DecisionResult> results = new ArrayList<>(itemRequests.size());
+			for (final Entry<DecisionRequest, ? extends DecisionResult> resultByRequest : evaluate(mergedRequests))
+			{
+				results.add(resultByRequest.getValue());
+			}
+
+			return results;
+		}
+
+		return individualReqEvaluator.evaluateSharingContext(sharedRequest, itemRequests, this.pdpStdEnvAttributeIssuer.get());
+	}
+
+	/**
+	 * Evaluates a partial Individual Decision Request, i.e. where the attributes of some categories are unknown, e.g. the resource category, to find all the resources that a given subject may
+	 * access. Everything that does not depend on the unknown attributes is evaluated, and the result is what remains of the root policy: a residual policy whose Targets and Conditions are predicates
+	 * over the unknown attributes, that may be translated once into a filter (e.g. a database query) with a {@link ResidualPolicy.Visitor}, instead of evaluating one request per candidate resource.
+	 * The attributes of the unknown categories in the request, if any, are ignored, and so are the Attribute Providers of these categories.
+	 *
+	 * @param individualDecisionRequest
+	 *            partial Individual Decision Request (with the attributes of the known categories)
+	 * @param unknownAttributeCategories
+	 *            categories of the unknown attributes
+	 * @return residual policy; a {@link ResidualPolicy.Decision} if the decision does not depend on the unknown attributes
+	 * @throws java.lang.IllegalArgumentException
+	 *             if {@code individualDecisionRequest == null || unknownAttributeCategories == null}
+	 */
+	public ResidualPolicy evaluatePartially(final DecisionRequest individualDecisionRequest, final Set<String> unknownAttributeCategories) throws IllegalArgumentException
+	{
+		if (individualDecisionRequest == null)
+		{
+			throw NULL_REQUEST_ARGUMENT_EXCEPTION;
+		}
+
+		if (unknownAttributeCategories == null)
+		{
+			throw NULL_UNKNOWN_CATEGORIES_ARGUMENT_EXCEPTION;
+		}
+
+		final EvaluationContext knownAttributesContext = individualReqEvaluator.newEvaluationContext(individualDecisionRequest, this.pdpStdEnvAttributeIssuer.get());
+		return rootPolicyEvaluator.findAndEvaluatePartially(new ResidualEvaluationContext(knownAttributesContext, unknownAttributeCategories));
+	}
+
+	/**
+	 * Evaluates an Individual Decision Request asynchronously, in a thread of this engine's bounded {@link AsyncEvaluationExecutor} (see {@link #getAsyncEvaluationExecutor()}). This method never
+	 * blocks: if the executor's queue is full, the returned future is completed exceptionally with a {@link java.util.concurrent.RejectedExecutionException}.
+	 *
+	 * @param individualDecisionRequest
+	 *            Individual Decision Request
+	 * @return future decision result
+	 * @throws java.lang.IllegalArgumentException
+	 *             if {@code individualDecisionRequest == null}
+	 */
+	public CompletableFuture<DecisionResult> evaluateAsync(final DecisionRequest individualDecisionRequest) throws IllegalArgumentException
+	{
+		if (individualDecisionRequest == null)
+		{
+			throw NULL_REQUEST_ARGUMENT_EXCEPTION;
+		}
+
+		return getAsyncEvaluationExecutor().submit(() -> evaluate(individualDecisionRequest));
+	}
+
+	/**
+	 * Returns the bounded executor used by {@link #evaluateAsync(DecisionRequest)}, mostly for monitoring purposes (queue depth, rejections...). The executor is created on the first call to this
+	 * method or {@link #evaluateAsync(DecisionRequest)}, so that PDP engines used synchronously only do not allocate it.
+	 *
+	 * @return async evaluation executor
+	 */
+	public AsyncEvaluationExecutor getAsyncEvaluationExecutor()
+	{
+		final AsyncEvaluationExecutor executor = asyncEvalExecutor;
+		if (executor != null)
+		{
+			return executor;
+		}
+
+		synchronized (asyncEvalExecutorLock)
+		{
+			if (asyncEvalExecutor == null)
+			{
+				final AsyncEvaluationExecutor newExecutor = new AsyncEvaluationExecutor(asyncEvalThreads, asyncEvalQueueCapacity);
+				if (isAsyncEvalExecutorClosed)
+				{
+					// engine closed: reject any new task
+					newExecutor.close();
+				}
+
+				asyncEvalExecutor = newExecutor;
+			}
+
+			return asyncEvalExecutor;
+		}
+	}
+
+	private <INDIVIDUAL_DECISION_REQ_T extends DecisionRequest> Collection<Entry<INDIVIDUAL_DECISION_REQ_T, ? extends DecisionResult>> evaluateInParallel(
+			final List<INDIVIDUAL_DECISION_REQ_T> individualDecisionRequests) throws IndeterminateEvaluationException
+	{
+		assert individualDecisionRequests != null && parallelEvalExecutor != null;
+
+		/*
+		 * Same PDP-issued attribute values (current date/time...) for all chunks
+		 */
+		final Map<AttributeFqn, AttributeBag<?>> pdpIssuedAttributes = this.pdpStdEnvAttributeIssuer.get();
+		final StandardEnvironmentAttributeIssuer batchStdEnvAttributeIssuer = () -> pdpIssuedAttributes;
+
+		/*
+		 * Split the batch into contiguous chunks, so that concatenating chunk results in chunk order preserves the order of the requests
+		 */
+		final int reqCount = individualDecisionRequests.size();
+		final int chunkCount = Math.min(parallelEvalMaxChunkCount, reqCount);
+		final int minChunkSize = reqCount / chunkCount;
+		final int chunksWithExtraRequestCount = reqCount % chunkCount;
+		LOGGER.debug("Evaluating {} Individual Decision Requests in {} parallel chunks", reqCount, chunkCount);
+
+		final List<Future<Collection<Entry<INDIVIDUAL_DECISION_REQ_T, ? extends DecisionResult>>>> otherChunkResults = new ArrayList<>(chunkCount - 1);
+		/*
+		 * The first chunk is evaluated by the calling thread, others are submitted to the executor
+		 */
+		final int firstChunkEnd = chunksWithExtraRequestCount > 0 ? minChunkSize + 1 : minChunkSize;
+		int chunkStart = firstChunkEnd;
+		try
+		{
+			for (int chunkIndex = 1; chunkIndex < chunkCount; chunkIndex++)
+			{
+				final int chunkEnd = chunkStart + (chunkIndex < chunksWithExtraRequestCount ? minChunkSize + 1 : minChunkSize);
+				final List<INDIVIDUAL_DECISION_REQ_T> chunk = individualDecisionRequests.subList(chunkStart, chunkEnd);
+				otherChunkResults.add(parallelEvalExecutor.submit(() -> individualReqEvaluator.evaluate(chunk, batchStdEnvAttributeIssuer)));
+				chunkStart = chunkEnd;
+			}
+
+			final Collection<Entry<INDIVIDUAL_DECISION_REQ_T, ? extends DecisionResult>> resultsByRequest = new ArrayDeque<>(reqCount);
+			resultsByRequest.addAll(individualReqEvaluator.evaluate(individualDecisionRequests.subList(0, firstChunkEnd), batchStdEnvAttributeIssuer));
+			for (final Future<Collection<Entry<INDIVIDUAL_DECISION_REQ_T, ? extends DecisionResult>>> chunkResult : otherChunkResults)
+			{
+				resultsByRequest.addAll(chunkResult.get());
+			}
+
+			return resultsByRequest;
+		}
+		catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IndeterminateEvaluationException("Interrupted while waiting for parallel evaluation of Individual Decision Requests", XacmlStatusCode.PROCESSING_ERROR.value(), e);
+		}
+		catch (final ExecutionException e)
+		{
+			final Throwable cause = e.getCause();
+			if (cause instanceof IndeterminateEvaluationException)
+			{
+				throw (IndeterminateEvaluationException) cause;
+			}
+
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+
+			throw new IndeterminateEvaluationException("Error in parallel evaluation of Individual Decision Requests", XacmlStatusCode.PROCESSING_ERROR.value(), cause);
+		}
+		finally
+		{
+			// no-op on chunks already completed
+			for (final Future<?> chunkResult : otherChunkResults)
+			{
+				chunkResult.cancel(true);
+			}
+		}
 	}
 
 	/** {@inheritDoc} */
@@ -751,6 +1449,20 @@ public final class BasePdpEngine implements CloseablePdpEngine
 		{
 			decisionCache.close();
 		}
+
+		if (isParallelEvalExecutorOwned)
+		{
+			parallelEvalExecutor.shutdown();
+		}
+
+		synchronized (asyncEvalExecutorLock)
+		{
+			isAsyncEvalExecutorClosed = true;
+			if (asyncEvalExecutor != null)
+			{
+				asyncEvalExecutor.close();
+			}
+		}
 	}
 
 }
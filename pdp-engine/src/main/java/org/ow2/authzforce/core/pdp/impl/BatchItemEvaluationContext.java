@@ -0,0 +1,307 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeSelectorExpression;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
+import org.ow2.authzforce.core.pdp.api.value.Value;
+
+import com.google.common.collect.Iterators;
+
+import net.sf.saxon.s9api.XdmNode;
+
+/**
+ * Evaluation context of one item of a batch of requests sharing the same base request (e.g. one subject and environment, many resources), see
+ * {@link BasePdpEngine#evaluate(org.ow2.authzforce.core.pdp.api.DecisionRequest, java.util.List)}. The attributes of the item categories (the categories of the item-specific attributes) come from
+ * the item context, the others from the shared context, where the values fetched by Attribute Providers are cached for all the items. The results of the Targets and Conditions that did not
+ * request any attribute of an item category (directly or via a variable) are also shared, see {@link #evaluate(BooleanEvaluator, EvaluationContext)}. Everything else (variables, request-scoped
+ * caches, listeners...) is specific to the item.
+ * <p>
+ * The items of a batch are evaluated sequentially, in the same thread. Attribute Providers of the shared categories are assumed to depend on shared attributes only.
+ */
+public final class BatchItemEvaluationContext implements EvaluationContext
+{
+	/**
+	 * State shared by the items of a batch
+	 */
+	static final class SharedState
+	{
+		private final EvaluationContext sharedAttributesContext;
+		private final Set<String> itemCategories;
+
+		/*
+		 * Results (Boolean or IndeterminateEvaluationException) of the Targets/Conditions that do not depend on item attributes
+		 */
+		private final Map<BooleanEvaluator, Object> sharedResults = new IdentityHashMap<>();
+
+		/**
+		 * Creates the shared state of a batch
+		 *
+		 * @param sharedAttributesContext
+		 *            context of the base request, shared by all the items
+		 * @param itemCategories
+		 *            categories of the item-specific attributes
+		 */
+		SharedState(final EvaluationContext sharedAttributesContext, final Set<String> itemCategories)
+		{
+			assert sharedAttributesContext != null && itemCategories != null;
+			this.sharedAttributesContext = sharedAttributesContext;
+			this.itemCategories = itemCategories;
+		}
+	}
+
+	private final SharedState sharedState;
+	private final EvaluationContext itemContext;
+
+	/*
+	 * Number of requests for item attributes (or values derived from them) so far
+	 */
+	private int itemAttributeRequestCount = 0;
+
+	/*
+	 * Variables being evaluated (VariableId -> itemAttributeRequestCount when first requested), and variables whose values depend on item attributes
+	 */
+	private final Map<String, Integer> itemAttributeRequestCountsByPendingVariable = HashCollections.newUpdatableMap();
+	private final Set<String> itemDependentVariables = HashCollections.newUpdatableSet();
+
+	/**
+	 * Creates the context of a batch item
+	 *
+	 * @param sharedState
+	 *            state shared by all the items of the batch
+	 * @param itemContext
+	 *            context of the item request (item-specific attributes)
+	 */
+	BatchItemEvaluationContext(final SharedState sharedState, final EvaluationContext itemContext)
+	{
+		assert sharedState != null && itemContext != null;
+		this.sharedState = sharedState;
+		this.itemContext = itemContext;
+	}
+
+	/**
+	 * Evaluates a Target or Condition, reusing the result from previous items of the same batch if {@code context} is a {@link BatchItemEvaluationContext} and the evaluation does not depend on the
+	 * item attributes
+	 *
+	 * @param evaluator
+	 *            Target or Condition evaluator
+	 * @param context
+	 *            evaluation context
+	 * @return result of {@code evaluator.evaluate(context)}
+	 * @throws IndeterminateEvaluationException
+	 *             error thrown by {@code evaluator.evaluate(context)}
+	 */
+	public static boolean evaluate(final BooleanEvaluator evaluator, final EvaluationContext context) throws IndeterminateEvaluationException
+	{
+		return context instanceof BatchItemEvaluationContext ? ((BatchItemEvaluationContext) context).evaluateShared(evaluator) : evaluator.evaluate(context);
+	}
+
+	private boolean evaluateShared(final BooleanEvaluator evaluator) throws IndeterminateEvaluationException
+	{
+		final Object sharedResult = sharedState.sharedResults.get(evaluator);
+		if (sharedResult instanceof Boolean)
+		{
+			return ((Boolean) sharedResult).booleanValue();
+		}
+
+		if (sharedResult instanceof IndeterminateEvaluationException)
+		{
+			throw (IndeterminateEvaluationException) sharedResult;
+		}
+
+		final int previousItemAttributeRequestCount = itemAttributeRequestCount;
+		final boolean result;
+		try
+		{
+			result = evaluator.evaluate(this);
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			if (itemAttributeRequestCount == previousItemAttributeRequestCount)
+			{
+				sharedState.sharedResults.put(evaluator, e);
+			}
+
+			throw e;
+		}
+
+		if (itemAttributeRequestCount == previousItemAttributeRequestCount)
+		{
+			sharedState.sharedResults.put(evaluator, Boolean.valueOf(result));
+		}
+
+		return result;
+	}
+
+	private boolean isItemCategory(final String category)
+	{
+		return sharedState.itemCategories.contains(category);
+	}
+
+	@Override
+	public <AV extends AttributeValue> AttributeBag<AV> getNamedAttributeValue(final AttributeFqn attributeFqn, final Datatype<AV> datatype) throws IndeterminateEvaluationException
+	{
+		if (isItemCategory(attributeFqn.getCategory()))
+		{
+			itemAttributeRequestCount++;
+			final AttributeBag<AV> itemValue = itemContext.getNamedAttributeValue(attributeFqn, datatype);
+			// attribute of an item category may still be defined in the base request
+			return itemValue == null ? sharedState.sharedAttributesContext.getNamedAttributeValue(attributeFqn, datatype) : itemValue;
+		}
+
+		return sharedState.sharedAttributesContext.getNamedAttributeValue(attributeFqn, datatype);
+	}
+
+	@Override
+	public Iterator<Entry<AttributeFqn, AttributeBag<?>>> getNamedAttributes()
+	{
+		return Iterators.concat(itemContext.getNamedAttributes(), sharedState.sharedAttributesContext.getNamedAttributes());
+	}
+
+	@Override
+	public boolean putNamedAttributeValueIfAbsent(final AttributeFqn attributeFqn, final AttributeBag<?> result)
+	{
+		return isItemCategory(attributeFqn.getCategory()) ? itemContext.putNamedAttributeValueIfAbsent(attributeFqn, result)
+		        : sharedState.sharedAttributesContext.putNamedAttributeValueIfAbsent(attributeFqn, result);
+	}
+
+	@Override
+	public <AV extends AttributeValue> Bag<AV> getAttributeSelectorResult(final AttributeSelectorExpression<AV> attributeSelector) throws IndeterminateEvaluationException
+	{
+		if (isItemCategory(attributeSelector.getAttributeSelectorId().getCategory()))
+		{
+			itemAttributeRequestCount++;
+			return itemContext.getAttributeSelectorResult(attributeSelector);
+		}
+
+		return sharedState.sharedAttributesContext.getAttributeSelectorResult(attributeSelector);
+	}
+
+	@Override
+	public <AV extends AttributeValue> boolean putAttributeSelectorResultIfAbsent(final AttributeSelectorExpression<AV> attributeSelector, final Bag<AV> result)
+	        throws IndeterminateEvaluationException
+	{
+		return isItemCategory(attributeSelector.getAttributeSelectorId().getCategory()) ? itemContext.putAttributeSelectorResultIfAbsent(attributeSelector, result)
+		        : sharedState.sharedAttributesContext.putAttributeSelectorResultIfAbsent(attributeSelector, result);
+	}
+
+	@Override
+	public XdmNode getAttributesContent(final String category)
+	{
+		if (isItemCategory(category))
+		{
+			itemAttributeRequestCount++;
+			final XdmNode itemContent = itemContext.getAttributesContent(category);
+			return itemContent == null ? sharedState.sharedAttributesContext.getAttributesContent(category) : itemContent;
+		}
+
+		return sharedState.sharedAttributesContext.getAttributesContent(category);
+	}
+
+	@Override
+	public <V extends Value> V getVariableValue(final String variableId, final Datatype<V> datatype) throws IndeterminateEvaluationException
+	{
+		final V value = itemContext.getVariableValue(variableId, datatype);
+		if (value == null)
+		{
+			// about to be evaluated (see putVariableIfAbsent)
+			itemAttributeRequestCountsByPendingVariable.putIfAbsent(variableId, itemAttributeRequestCount);
+		}
+		else if (itemDependentVariables.contains(variableId))
+		{
+			itemAttributeRequestCount++;
+		}
+
+		return value;
+	}
+
+	@Override
+	public boolean putVariableIfAbsent(final String variableId, final Value value)
+	{
+		final Integer countBeforeEvaluation = itemAttributeRequestCountsByPendingVariable.remove(variableId);
+		if (countBeforeEvaluation != null && countBeforeEvaluation.intValue() != itemAttributeRequestCount)
+		{
+			itemDependentVariables.add(variableId);
+		}
+
+		return itemContext.putVariableIfAbsent(variableId, value);
+	}
+
+	@Override
+	public Value removeVariable(final String variableId)
+	{
+		itemDependentVariables.remove(variableId);
+		return itemContext.removeVariable(variableId);
+	}
+
+	@Override
+	public Object getOther(final String key)
+	{
+		return itemContext.getOther(key);
+	}
+
+	@Override
+	public boolean containsKey(final String key)
+	{
+		return itemContext.containsKey(key);
+	}
+
+	@Override
+	public void putOther(final String key, final Object val)
+	{
+		itemContext.putOther(key, val);
+	}
+
+	@Override
+	public Object remove(final String key)
+	{
+		return itemContext.remove(key);
+	}
+
+	@Override
+	public boolean isApplicablePolicyIdListRequested()
+	{
+		return itemContext.isApplicablePolicyIdListRequested();
+	}
+
+	@Override
+	public <L extends Listener> L putListener(final Class<L> listenerType, final L listener)
+	{
+		return itemContext.putListener(listenerType, listener);
+	}
+
+	@Override
+	public <L extends Listener> L getListener(final Class<L> listenerType)
+	{
+		return itemContext.getListener(listenerType);
+	}
+
+}
@@ -19,6 +19,8 @@ package org.ow2.authzforce.core.pdp.impl;
 
 import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualEvaluationContext;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualPredicate;
 
 /**
  * Evaluator returning a boolean result
@@ -37,4 +39,17 @@ public interface BooleanEvaluator
 	 */
 	boolean evaluate(EvaluationContext context) throws IndeterminateEvaluationException;
 
+	/**
+	 * Evaluates partially, i.e. with some attribute categories unknown. The default implementation evaluates the condition as a whole (opaque residual predicate if the result depends on unknown
+	 * attributes); evaluators with known structure (e.g. compiled Targets/Conditions) return the simplified predicate tree over the unknown attributes.
+	 *
+	 * @param context
+	 *            the representation of the partial request
+	 * @return residual predicate
+	 */
+	default ResidualPredicate evaluatePartially(final ResidualEvaluationContext context)
+	{
+		return context.evaluate(this);
+	}
+
 }
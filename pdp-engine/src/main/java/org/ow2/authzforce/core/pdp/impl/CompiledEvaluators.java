@@ -0,0 +1,925 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.xml.bind.JAXBElement;
+
+import net.sf.saxon.s9api.XPathCompiler;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.ApplyType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeDesignatorType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeValueType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.ExpressionType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.FunctionType;
+
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeDesignatorExpression;
+import org.ow2.authzforce.core.pdp.api.expression.Expression;
+import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.expression.FunctionExpression;
+import org.ow2.authzforce.core.pdp.api.func.FirstOrderFunction;
+import org.ow2.authzforce.core.pdp.api.func.FirstOrderFunctionCall;
+import org.ow2.authzforce.core.pdp.api.func.Function;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualEvaluationContext;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualPredicate;
+import org.ow2.authzforce.xacml.identifiers.XacmlStatusCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiler of Matches (in Targets) and Conditions into type-specialized {@link BooleanEvaluator}s, enabled by {@link DepthLimitingExpressionFactory#isEvaluatorCompilationEnabled()}. Each compiled
+ * evaluator is a dedicated final class for a specific shape of Match/Condition expression (e.g. equality of an AttributeDesignator with a constant AttributeValue), that evaluates directly the
+ * attributes and values involved instead of going through the generic (higher-order) function calls and argument lists used by the interpreted expressions. The parts that do not have a specialized
+ * form are evaluated as usual, therefore the results (decisions and Indeterminate status codes) are the same as the interpreted ones.
+ */
+public final class CompiledEvaluators
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(CompiledEvaluators.class);
+
+	private static final String EQUAL_FUNCTION_ID_SUFFIX = "-equal";
+	private static final String ONE_AND_ONLY_FUNCTION_ID_SUFFIX = "-one-and-only";
+	private static final String IS_IN_FUNCTION_ID_SUFFIX = "-is-in";
+
+	/**
+	 * Match of a constant AttributeValue against the values of an AttributeDesignator with one of the {@link MatchEvaluator#INDEXABLE_EQUALITY_FUNCTION_IDS}: True iff the AttributeDesignator result
+	 * contains the constant value
+	 */
+	private static final class DesignatorContainsEvaluator implements BooleanEvaluator
+	{
+		private final AttributeDesignatorExpression<?> designator;
+		private final AttributeValue value;
+		private final String errorMessage;
+
+		private DesignatorContainsEvaluator(final AttributeDesignatorExpression<?> designator, final AttributeValue value, final String errorMessage)
+		{
+			this.designator = designator;
+			this.value = value;
+			this.errorMessage = errorMessage;
+		}
+
+		@Override
+		public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			final Bag<?> bag;
+			try
+			{
+				bag = designator.evaluate(context);
+			}
+			catch (final IndeterminateEvaluationException e)
+			{
+				throw new IndeterminateEvaluationException(errorMessage, e.getStatusCode(), e);
+			}
+
+			return bag.elements().contains(value);
+		}
+
+		@Override
+		public ResidualPredicate evaluatePartially(final ResidualEvaluationContext context)
+		{
+			return context.isUnknown(designator.getAttributeFQN()) ? new ResidualPredicate.AttributeValueIn(designator, Collections.singleton(value), false) : context.evaluate(this);
+		}
+	}
+
+	/**
+	 * Match of a constant AttributeValue against the values of a bag expression with any first-order boolean function: True iff the function returns True for at least one value of the bag (same as
+	 * standard function 'any-of')
+	 */
+	private static final class BagAnyMatchEvaluator implements BooleanEvaluator
+	{
+		private final Expression<? extends Bag<?>> bagExpression;
+		private final FirstOrderFunctionCall<BooleanValue> matchFunctionCall;
+		private final String errorMessage;
+
+		private BagAnyMatchEvaluator(final Expression<? extends Bag<?>> bagExpression, final FirstOrderFunctionCall<BooleanValue> matchFunctionCall, final String errorMessage)
+		{
+			this.bagExpression = bagExpression;
+			this.matchFunctionCall = matchFunctionCall;
+			this.errorMessage = errorMessage;
+		}
+
+		@Override
+		public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			final Bag<?> bag;
+			try
+			{
+				bag = bagExpression.evaluate(context);
+				for (final AttributeValue bagValue : bag)
+				{
+					if (matchFunctionCall.evaluate(context, bagValue).getUnderlyingValue().booleanValue())
+					{
+						return true;
+					}
+				}
+			}
+			catch (final IndeterminateEvaluationException e)
+			{
+				throw new IndeterminateEvaluationException(errorMessage, e.getStatusCode(), e);
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * Equality (with one of the {@link MatchEvaluator#INDEXABLE_EQUALITY_FUNCTION_IDS}) of the single value of an AttributeDesignator with a constant AttributeValue, i.e. the Condition expression
+	 * {@code T-equal(T-one-and-only(AttributeDesignator), AttributeValue)} (or with arguments swapped)
+	 */
+	private static final class SingleValueEqualityEvaluator implements BooleanEvaluator
+	{
+		private final AttributeDesignatorExpression<?> designator;
+		private final AttributeValue value;
+		private final IndeterminateEvaluationException invalidBagSizeException;
+
+		private SingleValueEqualityEvaluator(final AttributeDesignatorExpression<?> designator, final AttributeValue value, final String oneAndOnlyFunctionId)
+		{
+			this.designator = designator;
+			this.value = value;
+			this.invalidBagSizeException = new IndeterminateEvaluationException(
+			        "Function " + oneAndOnlyFunctionId + ": Invalid arg #0: empty bag or bag size > 1. Required: one and only one value in bag.", XacmlStatusCode.PROCESSING_ERROR.value());
+		}
+
+		@Override
+		public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			final Bag<?> bag = designator.evaluate(context);
+			if (bag.size() != 1)
+			{
+				throw invalidBagSizeException;
+			}
+
+			return value.equals(bag.getSingleElement());
+		}
+
+		@Override
+		public ResidualPredicate evaluatePartially(final ResidualEvaluationContext context)
+		{
+			return context.isUnknown(designator.getAttributeFQN()) ? new ResidualPredicate.AttributeValueIn(designator, Collections.singleton(value), true) : context.evaluate(this);
+		}
+	}
+
+	/**
+	 * Disjunction of {@link DesignatorContainsEvaluator}s on the same attribute: True iff the AttributeDesignator result contains at least one of the constant values (single hash-set lookup per
+	 * value in the result, instead of one test per constant value)
+	 */
+	private static final class DesignatorContainsAnyEvaluator implements BooleanEvaluator
+	{
+		private final AttributeDesignatorExpression<?> designator;
+		private final Set<AttributeValue> values;
+		private final String errorMessage;
+
+		private DesignatorContainsAnyEvaluator(final AttributeDesignatorExpression<?> designator, final Set<AttributeValue> values, final String errorMessage)
+		{
+			this.designator = designator;
+			this.values = values;
+			this.errorMessage = errorMessage;
+		}
+
+		@Override
+		public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			final Bag<?> bag;
+			try
+			{
+				bag = designator.evaluate(context);
+			}
+			catch (final IndeterminateEvaluationException e)
+			{
+				throw new IndeterminateEvaluationException(errorMessage, e.getStatusCode(), e);
+			}
+
+			for (final AttributeValue bagValue : bag)
+			{
+				if (values.contains(bagValue))
+				{
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		@Override
+		public ResidualPredicate evaluatePartially(final ResidualEvaluationContext context)
+		{
+			return context.isUnknown(designator.getAttributeFQN()) ? new ResidualPredicate.AttributeValueIn(designator, values, false) : context.evaluate(this);
+		}
+	}
+
+	/**
+	 * Disjunction of {@link SingleValueEqualityEvaluator}s on the same attribute: True iff the single value of the AttributeDesignator is one of the constant values
+	 */
+	private static final class SingleValueInSetEvaluator implements BooleanEvaluator
+	{
+		private final AttributeDesignatorExpression<?> designator;
+		private final Set<AttributeValue> values;
+		private final IndeterminateEvaluationException invalidBagSizeException;
+
+		private SingleValueInSetEvaluator(final AttributeDesignatorExpression<?> designator, final Set<AttributeValue> values, final IndeterminateEvaluationException invalidBagSizeException)
+		{
+			this.designator = designator;
+			this.values = values;
+			this.invalidBagSizeException = invalidBagSizeException;
+		}
+
+		@Override
+		public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			final Bag<?> bag = designator.evaluate(context);
+			if (bag.size() != 1)
+			{
+				throw invalidBagSizeException;
+			}
+
+			return values.contains(bag.getSingleElement());
+		}
+
+		@Override
+		public ResidualPredicate evaluatePartially(final ResidualEvaluationContext context)
+		{
+			return context.isUnknown(designator.getAttributeFQN()) ? new ResidualPredicate.AttributeValueIn(designator, values, true) : context.evaluate(this);
+		}
+	}
+
+	/**
+	 * Standard function 'and' on compiled arguments
+	 */
+	private static final class AndEvaluator implements BooleanEvaluator
+	{
+		private final BooleanEvaluator[] args;
+		private final String indeterminateArgMsgPrefix = "Function " + StandardFunction.AND.getId() + ": Indeterminate arg #";
+
+		/*
+		 * Non-null iff args are evaluated in adaptive order
+		 */
+		private final AdaptiveEvaluationOrder adaptiveOrder;
+
+		private AndEvaluator(final BooleanEvaluator[] args, final boolean adaptiveEvaluationOrder)
+		{
+			this.args = args;
+			this.adaptiveOrder = adaptiveEvaluationOrder && args.length > 1 ? new AdaptiveEvaluationOrder(args.length) : null;
+		}
+
+		private boolean evaluateInAdaptiveOrder(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			IndeterminateEvaluationException indeterminateException = null;
+			int indeterminateArgIndex = -1;
+			try
+			{
+				for (final int argIndex : adaptiveOrder.getOrder())
+				{
+					final long startNanos = System.nanoTime();
+					boolean isDecisive = false;
+					try
+					{
+						isDecisive = !args[argIndex].evaluate(context);
+					}
+					catch (final IndeterminateEvaluationException e)
+					{
+						// keep the error of the last Indeterminate arg in order of declaration, like in the default order
+						if (argIndex > indeterminateArgIndex)
+						{
+							indeterminateArgIndex = argIndex;
+							indeterminateException = new IndeterminateEvaluationException(indeterminateArgMsgPrefix + argIndex, e.getStatusCode(), e);
+						}
+					}
+
+					adaptiveOrder.recordChildEvaluation(argIndex, startNanos, isDecisive);
+					if (isDecisive)
+					{
+						return false;
+					}
+				}
+			}
+			finally
+			{
+				adaptiveOrder.endEvaluation();
+			}
+
+			if (indeterminateException != null)
+			{
+				throw indeterminateException;
+			}
+
+			return true;
+		}
+
+		@Override
+		public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			if (adaptiveOrder != null)
+			{
+				return evaluateInAdaptiveOrder(context);
+			}
+
+			IndeterminateEvaluationException indeterminateException = null;
+			for (int argIndex = 0; argIndex < args.length; argIndex++)
+			{
+				try
+				{
+					if (!args[argIndex].evaluate(context))
+					{
+						return false;
+					}
+				}
+				catch (final IndeterminateEvaluationException e)
+				{
+					// keep the indeterminate error to throw later if there is no False in the remaining args
+					indeterminateException = new IndeterminateEvaluationException(indeterminateArgMsgPrefix + argIndex, e.getStatusCode(), e);
+				}
+			}
+
+			if (indeterminateException != null)
+			{
+				throw indeterminateException;
+			}
+
+			return true;
+		}
+
+		@Override
+		public ResidualPredicate evaluatePartially(final ResidualEvaluationContext context)
+		{
+			final List<ResidualPredicate> residualArgs = new ArrayList<>(args.length);
+			for (final BooleanEvaluator arg : args)
+			{
+				residualArgs.add(arg.evaluatePartially(context));
+			}
+
+			return ResidualPredicate.and(residualArgs);
+		}
+	}
+
+	/**
+	 * Standard function 'or' on compiled arguments
+	 */
+	private static final class OrEvaluator implements BooleanEvaluator
+	{
+		private final BooleanEvaluator[] args;
+		private final String indeterminateArgMsgPrefix = "Function " + StandardFunction.OR.getId() + ": Indeterminate arg #";
+
+		/*
+		 * Non-null iff args are evaluated in adaptive order
+		 */
+		private final AdaptiveEvaluationOrder adaptiveOrder;
+
+		private OrEvaluator(final BooleanEvaluator[] args, final boolean adaptiveEvaluationOrder)
+		{
+			this.args = args;
+			this.adaptiveOrder = adaptiveEvaluationOrder && args.length > 1 ? new AdaptiveEvaluationOrder(args.length) : null;
+		}
+
+		private boolean evaluateInAdaptiveOrder(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			IndeterminateEvaluationException indeterminateException = null;
+			int indeterminateArgIndex = -1;
+			try
+			{
+				for (final int argIndex : adaptiveOrder.getOrder())
+				{
+					final long startNanos = System.nanoTime();
+					boolean isDecisive = false;
+					try
+					{
+						isDecisive = args[argIndex].evaluate(context);
+					}
+					catch (final IndeterminateEvaluationException e)
+					{
+						// keep the error of the last Indeterminate arg in order of declaration, like in the default order
+						if (argIndex > indeterminateArgIndex)
+						{
+							indeterminateArgIndex = argIndex;
+							indeterminateException = new IndeterminateEvaluationException(indeterminateArgMsgPrefix + argIndex, e.getStatusCode(), e);
+						}
+					}
+
+					adaptiveOrder.recordChildEvaluation(argIndex, startNanos, isDecisive);
+					if (isDecisive)
+					{
+						return true;
+					}
+				}
+			}
+			finally
+			{
+				adaptiveOrder.endEvaluation();
+			}
+
+			if (indeterminateException != null)
+			{
+				throw indeterminateException;
+			}
+
+			return false;
+		}
+
+		@Override
+		public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			if (adaptiveOrder != null)
+			{
+				return evaluateInAdaptiveOrder(context);
+			}
+
+			IndeterminateEvaluationException indeterminateException = null;
+			for (int argIndex = 0; argIndex < args.length; argIndex++)
+			{
+				try
+				{
+					if (args[argIndex].evaluate(context))
+					{
+						return true;
+					}
+				}
+				catch (final IndeterminateEvaluationException e)
+				{
+					// keep the indeterminate error to throw later if there is no True in the remaining args
+					indeterminateException = new IndeterminateEvaluationException(indeterminateArgMsgPrefix + argIndex, e.getStatusCode(), e);
+				}
+			}
+
+			if (indeterminateException != null)
+			{
+				throw indeterminateException;
+			}
+
+			return false;
+		}
+
+		@Override
+		public ResidualPredicate evaluatePartially(final ResidualEvaluationContext context)
+		{
+			final List<ResidualPredicate> residualArgs = new ArrayList<>(args.length);
+			for (final BooleanEvaluator arg : args)
+			{
+				residualArgs.add(arg.evaluatePartially(context));
+			}
+
+			return ResidualPredicate.or(residualArgs);
+		}
+	}
+
+	/**
+	 * Standard function 'not' on a compiled argument
+	 */
+	private static final class NotEvaluator implements BooleanEvaluator
+	{
+		private final BooleanEvaluator arg;
+
+		private NotEvaluator(final BooleanEvaluator arg)
+		{
+			this.arg = arg;
+		}
+
+		@Override
+		public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			return !arg.evaluate(context);
+		}
+
+		@Override
+		public ResidualPredicate evaluatePartially(final ResidualEvaluationContext context)
+		{
+			return ResidualPredicate.not(arg.evaluatePartially(context));
+		}
+	}
+
+	/**
+	 * Boolean expression without specialized form, evaluated as usual
+	 */
+	private static final class InterpretedExpressionEvaluator implements BooleanEvaluator
+	{
+		private final Expression<BooleanValue> expression;
+
+		private InterpretedExpressionEvaluator(final Expression<BooleanValue> expression)
+		{
+			this.expression = expression;
+		}
+
+		@Override
+		public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			return expression.evaluate(context).getUnderlyingValue().booleanValue();
+		}
+	}
+
+	/**
+	 * Says whether Matches and Conditions created with a given expression factory should be compiled
+	 *
+	 * @param expressionFactory
+	 *            expression factory used to create the Matches/Conditions
+	 * @return true iff {@code expressionFactory} is a {@link DepthLimitingExpressionFactory} with {@link DepthLimitingExpressionFactory#isEvaluatorCompilationEnabled()} true
+	 */
+	public static boolean isEnabled(final ExpressionFactory expressionFactory)
+	{
+		return expressionFactory instanceof DepthLimitingExpressionFactory && ((DepthLimitingExpressionFactory) expressionFactory).isEvaluatorCompilationEnabled();
+	}
+
+	/**
+	 * Compiles a Match, i.e. {@code any-of(matchFunction, attributeValue, bagExpression)}
+	 *
+	 * @param matchFunctionId
+	 *            MatchId
+	 * @param matchFunction
+	 *            match function
+	 * @param attributeValueExpression
+	 *            Match's AttributeValue
+	 * @param bagExpression
+	 *            Match's AttributeDesignator/AttributeSelector
+	 * @param errorMessage
+	 *            message of the Indeterminate error raised when the Match evaluation fails
+	 * @return compiled Match evaluator
+	 */
+	static BooleanEvaluator compileMatch(final String matchFunctionId, final FunctionExpression matchFunction, final Expression<? extends AttributeValue> attributeValueExpression,
+	        final Expression<?> bagExpression, final String errorMessage)
+	{
+		final Optional<? extends AttributeValue> constantValue = attributeValueExpression.getValue();
+		if (MatchEvaluator.INDEXABLE_EQUALITY_FUNCTION_IDS.contains(matchFunctionId) && bagExpression instanceof AttributeDesignatorExpression && constantValue.isPresent())
+		{
+			return new DesignatorContainsEvaluator((AttributeDesignatorExpression<?>) bagExpression, constantValue.get(), errorMessage);
+		}
+
+		final Function<?> function = matchFunction.getValue().get();
+		final Optional<? extends Datatype<?>> bagElementType = bagExpression.getReturnType().getTypeParameter();
+		if (!(function instanceof FirstOrderFunction) || !function.getReturnType().equals(StandardDatatypes.BOOLEAN) || !bagElementType.isPresent())
+		{
+			return null;
+		}
+
+		/*
+		 * Same sub-function call as the one made by the any-of function
+		 */
+		@SuppressWarnings("unchecked")
+		final FirstOrderFunctionCall<BooleanValue> matchFunctionCall = ((FirstOrderFunction<BooleanValue>) function).newCall(Collections.<Expression<?>> singletonList(attributeValueExpression),
+		        bagElementType.get());
+		@SuppressWarnings("unchecked")
+		final Expression<? extends Bag<?>> bagExpr = (Expression<? extends Bag<?>>) bagExpression;
+		return new BagAnyMatchEvaluator(bagExpr, matchFunctionCall, errorMessage);
+	}
+
+	/**
+	 * Creates an evaluator testing whether an AttributeDesignator result contains at least one of the given constant values, equivalent to the disjunction of the equality Matches (or Condition
+	 * expressions) of the AttributeDesignator with each value
+	 *
+	 * @param designator
+	 *            AttributeDesignator
+	 * @param values
+	 *            constant values (compared with {@link Object#equals(Object)})
+	 * @param errorMessage
+	 *            message of the Indeterminate error raised when the AttributeDesignator evaluation fails
+	 * @return evaluator
+	 */
+	static BooleanEvaluator newDesignatorContainsAnyEvaluator(final AttributeDesignatorExpression<?> designator, final Set<AttributeValue> values, final String errorMessage)
+	{
+		assert designator != null && values != null && !values.isEmpty();
+		return new DesignatorContainsAnyEvaluator(designator, HashCollections.newImmutableSet(values), errorMessage);
+	}
+
+	private static ExpressionType getExpression(final JAXBElement<? extends ExpressionType> jaxbElement)
+	{
+		return jaxbElement.getValue();
+	}
+
+	/**
+	 * Compiles {@code T-equal(T-one-and-only(AttributeDesignator), AttributeValue)}
+	 *
+	 * @return null if {@code apply} does not have this form
+	 */
+	private static BooleanEvaluator compileSingleValueEquality(final ApplyType apply, final XPathCompiler xPathCompiler, final ExpressionFactory expressionFactory)
+	{
+		final String equalFunctionId = apply.getFunctionId();
+		final List<JAXBElement<? extends ExpressionType>> args = apply.getExpressions();
+		if (!MatchEvaluator.INDEXABLE_EQUALITY_FUNCTION_IDS.contains(equalFunctionId) || args.size() != 2)
+		{
+			return null;
+		}
+
+		final ExpressionType arg0 = getExpression(args.get(0));
+		final ExpressionType arg1 = getExpression(args.get(1));
+		final ApplyType oneAndOnlyApply;
+		final AttributeValueType attributeValue;
+		if (arg0 instanceof ApplyType && arg1 instanceof AttributeValueType)
+		{
+			oneAndOnlyApply = (ApplyType) arg0;
+			attributeValue = (AttributeValueType) arg1;
+		}
+		else if (arg1 instanceof ApplyType && arg0 instanceof AttributeValueType)
+		{
+			oneAndOnlyApply = (ApplyType) arg1;
+			attributeValue = (AttributeValueType) arg0;
+		}
+		else
+		{
+			return null;
+		}
+
+		final String oneAndOnlyFunctionId = equalFunctionId.substring(0, equalFunctionId.length() - EQUAL_FUNCTION_ID_SUFFIX.length()) + ONE_AND_ONLY_FUNCTION_ID_SUFFIX;
+		if (!oneAndOnlyFunctionId.equals(oneAndOnlyApply.getFunctionId()) || oneAndOnlyApply.getExpressions().size() != 1)
+		{
+			return null;
+		}
+
+		final ExpressionType bagArg = getExpression(oneAndOnlyApply.getExpressions().get(0));
+		if (!(bagArg instanceof AttributeDesignatorType))
+		{
+			return null;
+		}
+
+		final Expression<?> designator = expressionFactory.getInstance(bagArg, xPathCompiler, null);
+		final Optional<? extends AttributeValue> constantValue = expressionFactory.getInstance(attributeValue, xPathCompiler).getValue();
+		if (!(designator instanceof AttributeDesignatorExpression) || !constantValue.isPresent())
+		{
+			return null;
+		}
+
+		return new SingleValueEqualityEvaluator((AttributeDesignatorExpression<?>) designator, constantValue.get(), oneAndOnlyFunctionId);
+	}
+
+	/**
+	 * Compiles {@code any-of(T-equal, AttributeValue, AttributeDesignator)}
+	 *
+	 * @return null if {@code apply} does not have this form
+	 */
+	private static BooleanEvaluator compileAnyOfEquality(final ApplyType apply, final XPathCompiler xPathCompiler, final ExpressionFactory expressionFactory)
+	{
+		final List<JAXBElement<? extends ExpressionType>> args = apply.getExpressions();
+		if (!StandardFunction.ANY_OF.getId().equals(apply.getFunctionId()) || args.size() != 3)
+		{
+			return null;
+		}
+
+		final ExpressionType arg0 = getExpression(args.get(0));
+		final ExpressionType arg1 = getExpression(args.get(1));
+		final ExpressionType arg2 = getExpression(args.get(2));
+		if (!(arg0 instanceof FunctionType) || !MatchEvaluator.INDEXABLE_EQUALITY_FUNCTION_IDS.contains(((FunctionType) arg0).getFunctionId()) || !(arg1 instanceof AttributeValueType)
+		        || !(arg2 instanceof AttributeDesignatorType))
+		{
+			return null;
+		}
+
+		final Expression<?> designator = expressionFactory.getInstance(arg2, xPathCompiler, null);
+		final Optional<? extends AttributeValue> constantValue = expressionFactory.getInstance((AttributeValueType) arg1, xPathCompiler).getValue();
+		if (!(designator instanceof AttributeDesignatorExpression) || !constantValue.isPresent())
+		{
+			return null;
+		}
+
+		return new DesignatorContainsEvaluator((AttributeDesignatorExpression<?>) designator, constantValue.get(), "Function '" + StandardFunction.ANY_OF.getId() + "': Error evaluating bag arg (arg #2)");
+	}
+
+	/**
+	 * Compiles {@code T-is-in(AttributeValue, AttributeDesignator)}
+	 *
+	 * @return null if {@code apply} does not have this form
+	 */
+	private static BooleanEvaluator compileIsIn(final ApplyType apply, final XPathCompiler xPathCompiler, final ExpressionFactory expressionFactory)
+	{
+		final String isInFunctionId = apply.getFunctionId();
+		final List<JAXBElement<? extends ExpressionType>> args = apply.getExpressions();
+		if (!isInFunctionId.endsWith(IS_IN_FUNCTION_ID_SUFFIX) || args.size() != 2
+		        || !MatchEvaluator.INDEXABLE_EQUALITY_FUNCTION_IDS.contains(isInFunctionId.substring(0, isInFunctionId.length() - IS_IN_FUNCTION_ID_SUFFIX.length()) + EQUAL_FUNCTION_ID_SUFFIX))
+		{
+			return null;
+		}
+
+		final ExpressionType arg0 = getExpression(args.get(0));
+		final ExpressionType arg1 = getExpression(args.get(1));
+		if (!(arg0 instanceof AttributeValueType) || !(arg1 instanceof AttributeDesignatorType))
+		{
+			return null;
+		}
+
+		final Expression<?> designator = expressionFactory.getInstance(arg1, xPathCompiler, null);
+		final Optional<? extends AttributeValue> constantValue = expressionFactory.getInstance((AttributeValueType) arg0, xPathCompiler).getValue();
+		if (!(designator instanceof AttributeDesignatorExpression) || !constantValue.isPresent())
+		{
+			return null;
+		}
+
+		return new DesignatorContainsEvaluator((AttributeDesignatorExpression<?>) designator, constantValue.get(), "Function " + isInFunctionId + ": Error evaluating arg #1");
+	}
+
+	/**
+	 * Merges the arguments of a compiled 'or' that test the same attribute against constant values ({@link DesignatorContainsEvaluator}s, resp. {@link SingleValueEqualityEvaluator}s) into a single
+	 * hash-set test ({@link DesignatorContainsAnyEvaluator}, resp. {@link SingleValueInSetEvaluator}). The merged test takes the place of the last merged argument, so that the last Indeterminate
+	 * argument - that gives the status code of the result - is the same.
+	 */
+	private static BooleanEvaluator[] mergeOrArgs(final BooleanEvaluator[] args)
+	{
+		/*
+		 * Group positions of mergeable args by kind and attribute
+		 */
+		final Map<List<Object>, List<Integer>> positionsByGroupKey = new LinkedHashMap<>();
+		for (int argIndex = 0; argIndex < args.length; argIndex++)
+		{
+			final BooleanEvaluator arg = args[argIndex];
+			final AttributeDesignatorExpression<?> designator;
+			if (arg instanceof DesignatorContainsEvaluator)
+			{
+				designator = ((DesignatorContainsEvaluator) arg).designator;
+			}
+			else if (arg instanceof SingleValueEqualityEvaluator)
+			{
+				designator = ((SingleValueEqualityEvaluator) arg).designator;
+			}
+			else
+			{
+				continue;
+			}
+
+			positionsByGroupKey.computeIfAbsent(Arrays.asList(arg.getClass(), new TargetEqualityConstraint.AttributeKey(designator)), k -> new ArrayList<>()).add(argIndex);
+		}
+
+		final BooleanEvaluator[] mergedArgs = args.clone();
+		boolean merged = false;
+		for (final List<Integer> positions : positionsByGroupKey.values())
+		{
+			if (positions.size() < 2)
+			{
+				continue;
+			}
+
+			final Set<AttributeValue> values = HashCollections.newUpdatableSet(positions.size());
+			for (final int position : positions)
+			{
+				final BooleanEvaluator arg = args[position];
+				values.add(arg instanceof DesignatorContainsEvaluator ? ((DesignatorContainsEvaluator) arg).value : ((SingleValueEqualityEvaluator) arg).value);
+				mergedArgs[position] = null;
+			}
+
+			final BooleanEvaluator lastArg = args[positions.get(positions.size() - 1)];
+			final BooleanEvaluator mergedArg;
+			if (lastArg instanceof DesignatorContainsEvaluator)
+			{
+				final DesignatorContainsEvaluator lastContainsArg = (DesignatorContainsEvaluator) lastArg;
+				mergedArg = new DesignatorContainsAnyEvaluator(lastContainsArg.designator, HashCollections.newImmutableSet(values), lastContainsArg.errorMessage);
+			}
+			else
+			{
+				final SingleValueEqualityEvaluator lastEqualityArg = (SingleValueEqualityEvaluator) lastArg;
+				mergedArg = new SingleValueInSetEvaluator(lastEqualityArg.designator, HashCollections.newImmutableSet(values), lastEqualityArg.invalidBagSizeException);
+			}
+
+			mergedArgs[positions.get(positions.size() - 1)] = mergedArg;
+			merged = true;
+		}
+
+		if (!merged)
+		{
+			return args;
+		}
+
+		final List<BooleanEvaluator> nonNullMergedArgs = new ArrayList<>(mergedArgs.length);
+		for (final BooleanEvaluator mergedArg : mergedArgs)
+		{
+			if (mergedArg != null)
+			{
+				nonNullMergedArgs.add(mergedArg);
+			}
+		}
+
+		LOGGER.debug("Condition's 'or' arguments merged into hash-set tests: {} -> {} argument(s)", args.length, nonNullMergedArgs.size());
+		return nonNullMergedArgs.toArray(new BooleanEvaluator[nonNullMergedArgs.size()]);
+	}
+
+	private static BooleanEvaluator[] compileArgs(final ApplyType apply, final XPathCompiler xPathCompiler, final ExpressionFactory expressionFactory)
+	{
+		final List<JAXBElement<? extends ExpressionType>> args = apply.getExpressions();
+		final BooleanEvaluator[] compiledArgs = new BooleanEvaluator[args.size()];
+		int argIndex = 0;
+		for (final JAXBElement<? extends ExpressionType> arg : args)
+		{
+			compiledArgs[argIndex] = compile(getExpression(arg), xPathCompiler, expressionFactory);
+			argIndex++;
+		}
+
+		return compiledArgs;
+	}
+
+	/**
+	 * Compiles a boolean expression, using the interpreted expression for the parts without specialized form
+	 */
+	private static BooleanEvaluator compile(final ExpressionType expression, final XPathCompiler xPathCompiler, final ExpressionFactory expressionFactory)
+	{
+		final BooleanEvaluator compiledExpression = compileApply(expression, xPathCompiler, expressionFactory);
+		if (compiledExpression != null)
+		{
+			return compiledExpression;
+		}
+
+		@SuppressWarnings("unchecked")
+		final Expression<BooleanValue> interpretedExpression = (Expression<BooleanValue>) expressionFactory.getInstance(expression, xPathCompiler, null);
+		return new InterpretedExpressionEvaluator(interpretedExpression);
+	}
+
+	/**
+	 * @return true iff the function registered with ID {@code functionId} in {@code expressionFactory} evaluates its arguments in adaptive order
+	 */
+	private static boolean isAdaptiveEvaluationOrder(final String functionId, final ExpressionFactory expressionFactory)
+	{
+		final FunctionExpression functionExpression = expressionFactory.getFunction(functionId);
+		return functionExpression != null && StandardFunction.isAdaptiveEvaluationOrder(functionExpression.getValue().get());
+	}
+
+	/**
+	 * @return null if {@code expression} is not an Apply with specialized form
+	 */
+	private static BooleanEvaluator compileApply(final ExpressionType expression, final XPathCompiler xPathCompiler, final ExpressionFactory expressionFactory)
+	{
+		if (!(expression instanceof ApplyType))
+		{
+			return null;
+		}
+
+		final ApplyType apply = (ApplyType) expression;
+		final String functionId = apply.getFunctionId();
+		if (StandardFunction.AND.getId().equals(functionId))
+		{
+			return new AndEvaluator(compileArgs(apply, xPathCompiler, expressionFactory), isAdaptiveEvaluationOrder(functionId, expressionFactory));
+		}
+
+		if (StandardFunction.OR.getId().equals(functionId))
+		{
+			final BooleanEvaluator[] mergedArgs = mergeOrArgs(compileArgs(apply, xPathCompiler, expressionFactory));
+			return mergedArgs.length == 1 ? mergedArgs[0] : new OrEvaluator(mergedArgs, isAdaptiveEvaluationOrder(functionId, expressionFactory));
+		}
+
+		if (StandardFunction.NOT.getId().equals(functionId) && apply.getExpressions().size() == 1)
+		{
+			return new NotEvaluator(compile(getExpression(apply.getExpressions().get(0)), xPathCompiler, expressionFactory));
+		}
+
+		final BooleanEvaluator singleValueEquality = compileSingleValueEquality(apply, xPathCompiler, expressionFactory);
+		if (singleValueEquality != null)
+		{
+			return singleValueEquality;
+		}
+
+		final BooleanEvaluator anyOfEquality = compileAnyOfEquality(apply, xPathCompiler, expressionFactory);
+		if (anyOfEquality != null)
+		{
+			return anyOfEquality;
+		}
+
+		return compileIsIn(apply, xPathCompiler, expressionFactory);
+	}
+
+	/**
+	 * Compiles a Condition's (non-constant) boolean expression
+	 *
+	 * @param conditionExpression
+	 *            Condition's expression, already validated as a boolean expression by the interpreter (by {@link ExpressionFactory#getInstance(ExpressionType, XPathCompiler, java.util.Deque)})
+	 * @param xPathCompiler
+	 *            XPath compiler corresponding to enclosing policy(set) default XPath version
+	 * @param expressionFactory
+	 *            expression factory
+	 * @return compiled Condition evaluator; null if {@code conditionExpression} has no specialized form
+	 */
+	public static BooleanEvaluator compileCondition(final ExpressionType conditionExpression, final XPathCompiler xPathCompiler, final ExpressionFactory expressionFactory)
+	{
+		final BooleanEvaluator compiledCondition = compileApply(conditionExpression, xPathCompiler, expressionFactory);
+		if (compiledCondition != null)
+		{
+			LOGGER.debug("Condition compiled to {}", compiledCondition.getClass().getSimpleName());
+		}
+
+		return compiledCondition;
+	}
+
+	private CompiledEvaluators()
+	{
+		// prevent instantiation
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.ow2.authzforce.core.pdp.api.Decidable;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+/**
+ * Policy element (e.g. Rule or Policy(Set) evaluator) whose possible decisions are known at policy loading time, e.g. a Policy whose Rules all have Effect Permit can only return Permit, NotApplicable
+ * or Indeterminate. Combining algorithms use this to evaluate first the elements that may return the decision overriding all others, and skip the others once such decision is reached.
+ */
+public interface DecisionConstrained
+{
+	/**
+	 * All decisions (unknown possible decisions)
+	 */
+	Set<DecisionType> ALL_DECISIONS = Collections.unmodifiableSet(EnumSet.allOf(DecisionType.class));
+
+	/**
+	 * Gets the decisions that this element may return ({@link Decidable#evaluate(org.ow2.authzforce.core.pdp.api.EvaluationContext)}'s {@code getDecision()}). This is an over-approximation: some
+	 * of them may never be returned in practice.
+	 *
+	 * @return possible decisions (immutable)
+	 */
+	Set<DecisionType> getPossibleDecisions();
+
+	/**
+	 * Gets the possible decisions of any policy element
+	 *
+	 * @param element
+	 *            policy element
+	 * @return {@code element.getPossibleDecisions()} if {@code element} is a {@link DecisionConstrained}, else {@link #ALL_DECISIONS}
+	 */
+	static Set<DecisionType> getPossibleDecisions(final Decidable element)
+	{
+		return element instanceof DecisionConstrained ? ((DecisionConstrained) element).getPossibleDecisions() : ALL_DECISIONS;
+	}
+}
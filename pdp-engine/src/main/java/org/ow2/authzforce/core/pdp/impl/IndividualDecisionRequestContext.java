@@ -22,7 +22,6 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
-import java.util.Set;
 
 import org.ow2.authzforce.core.pdp.api.AttributeFqn;
 import org.ow2.authzforce.core.pdp.api.AttributeProvider;
@@ -65,7 +64,10 @@ public final class IndividualDecisionRequestContext implements EvaluationContext
 	 */
 	private static final Logger LOGGER = LoggerFactory.getLogger(IndividualDecisionRequestContext.class);
 
-	private final Map<AttributeFqn, AttributeBag<?>> namedAttributes;
+	/*
+	 * Request (and PDP-issued) attributes as read-only layers, attributes resolved during evaluation in the top layer
+	 */
+	private final LayeredAttributeMap namedAttributes;
 
 	/*
 	 * Corresponds to Attributes/Content (by attribute category) marshalled to XPath data model for XPath evaluation: AttributeSelector evaluation, XPath-based functions, etc. This may be empty if no
@@ -87,12 +89,22 @@ public final class IndividualDecisionRequestContext implements EvaluationContext
 
 	private final ClassToInstanceMap<Listener> listeners = MutableClassToInstanceMap.create();
 
+	/*
+	 * Values of named attributes referenced by AttributeDesignators, indexed by slot (see AttributeSlotIndex), filled on first access to each slot or when the attribute is resolved; null if no slot
+	 * index
+	 */
+	private final AttributeSlotIndex attributeSlotIndex;
+	private final AttributeBag<?>[] attributeValuesBySlot;
+
+	private static final AttributeBag<?>[] NO_ATTRIBUTE_SLOTS = new AttributeBag<?>[0];
+
 	/**
 	 * Constructs a new <code>IndividualDecisionRequestContext</code> based on the given request attributes and extra contents with support for XPath evaluation against Content element in Attributes
 	 *
 	 * @param namedAttributeMap
-	 *            updatable named attribute map (attribute key and value pairs) from the original Request; null iff none. An attribute key is a global ID based on attribute category,issuer,id. An
-	 *            attribute value is a bag of primitive values.
+	 *            named attribute map (attribute key and value pairs) from the original Request; null iff none. An attribute key is a global ID based on attribute category,issuer,id. An attribute
+	 *            value is a bag of primitive values. This map is not copied nor modified by this context (attribute values resolved during evaluation are kept in a separate layer) and must not be
+	 *            modified while the context is in use.
 	 * @param extraContentsByCategory
 	 *            extra contents by attribute category (equivalent to XACML Attributes/Content elements); null iff no Content in the attribute category.
 	 * @param returnApplicablePolicyIdList
@@ -100,8 +112,38 @@ public final class IndividualDecisionRequestContext implements EvaluationContext
 	 */
 	public IndividualDecisionRequestContext(final Map<AttributeFqn, AttributeBag<?>> namedAttributeMap, final Map<String, XdmNode> extraContentsByCategory, final boolean returnApplicablePolicyIdList)
 	{
-		this.namedAttributes = namedAttributeMap == null ? HashCollections.<AttributeFqn, AttributeBag<?>>newUpdatableMap()
-				: HashCollections.<AttributeFqn, AttributeBag<?>>newUpdatableMap(namedAttributeMap);
+		this(namedAttributeMap, extraContentsByCategory, returnApplicablePolicyIdList, null);
+	}
+
+	/**
+	 * Constructs a new <code>IndividualDecisionRequestContext</code> based on the given request attributes and extra contents with support for XPath evaluation against Content element in Attributes,
+	 * and with a flat array of attribute values indexed by slot for fast access by AttributeDesignators (see {@link #getNamedAttributeValue(int)})
+	 *
+	 * @param namedAttributeMap
+	 *            named attribute map (attribute key and value pairs) from the original Request; null iff none. An attribute key is a global ID based on attribute category,issuer,id. An attribute
+	 *            value is a bag of primitive values. This map is not copied nor modified by this context (attribute values resolved during evaluation are kept in a separate layer) and must not be
+	 *            modified while the context is in use.
+	 * @param extraContentsByCategory
+	 *            extra contents by attribute category (equivalent to XACML Attributes/Content elements); null iff no Content in the attribute category.
+	 * @param returnApplicablePolicyIdList
+	 *            true iff list of IDs of policies matched during evaluation must be returned
+	 * @param attributeSlotIndex
+	 *            slots of attributes referenced by AttributeDesignators in policies; null if none (all attribute values in a map)
+	 */
+	public IndividualDecisionRequestContext(final Map<AttributeFqn, AttributeBag<?>> namedAttributeMap, final Map<String, XdmNode> extraContentsByCategory, final boolean returnApplicablePolicyIdList,
+			final AttributeSlotIndex attributeSlotIndex)
+	{
+		this(LayeredAttributeMap.of(namedAttributeMap), extraContentsByCategory, returnApplicablePolicyIdList, attributeSlotIndex);
+	}
+
+	/*
+	 * Constant-time: named attributes are not copied, slots are filled lazily
+	 */
+	IndividualDecisionRequestContext(final LayeredAttributeMap namedAttributes, final Map<String, XdmNode> extraContentsByCategory, final boolean returnApplicablePolicyIdList,
+			final AttributeSlotIndex attributeSlotIndex)
+	{
+		assert namedAttributes != null;
+		this.namedAttributes = namedAttributes;
 		this.returnApplicablePolicyIdList = returnApplicablePolicyIdList;
 		if (extraContentsByCategory == null)
 		{
@@ -112,6 +154,35 @@ public final class IndividualDecisionRequestContext implements EvaluationContext
 			this.extraContentsByAttributeCategory = extraContentsByCategory;
 			this.attributeSelectorResults = UpdatableCollections.newUpdatableMap();
 		}
+
+		final int slotCount = attributeSlotIndex == null ? 0 : attributeSlotIndex.size();
+		if (slotCount == 0)
+		{
+			this.attributeSlotIndex = null;
+			this.attributeValuesBySlot = NO_ATTRIBUTE_SLOTS;
+		}
+		else
+		{
+			this.attributeSlotIndex = attributeSlotIndex;
+			this.attributeValuesBySlot = new AttributeBag<?>[slotCount];
+		}
+	}
+
+	private void setSlotValue(final AttributeFqn attributeFqn, final AttributeBag<?> value)
+	{
+		if (attributeSlotIndex == null)
+		{
+			return;
+		}
+
+		/*
+		 * If the datatype is not the one expected by AttributeDesignators, there is no slot, so the map is used and getNamedAttributeValue(AttributeFqn, Datatype) reports the datatype conflict
+		 */
+		final int slot = attributeSlotIndex.getSlot(attributeFqn, value.getElementDatatype());
+		if (slot >= 0 && slot < attributeValuesBySlot.length)
+		{
+			attributeValuesBySlot[slot] = value;
+		}
 	}
 
 	/** {@inheritDoc} */
@@ -140,6 +211,54 @@ public final class IndividualDecisionRequestContext implements EvaluationContext
 		return result;
 	}
 
+	/**
+	 * Gets the value of a named attribute by slot, i.e. as registered in the {@link AttributeSlotIndex} passed to the constructor, without hashing the attribute name nor checking the datatype
+	 * (consistent with the slot by design). This is the fast path for AttributeDesignators; callers must fall back to {@link #getNamedAttributeValue(AttributeFqn, Datatype)} if the result is null.
+	 *
+	 * @param slot
+	 *            attribute slot
+	 * @return attribute value(s); null if no value in this slot (value not known yet or slot unknown to this context)
+	 */
+	public <AV extends AttributeValue> AttributeBag<AV> getNamedAttributeValue(final int slot)
+	{
+		if (slot >= attributeValuesBySlot.length)
+		{
+			return null;
+		}
+
+		/*
+		 * The slot is specific to the datatype, therefore the bag has the datatype expected by the caller
+		 */
+		@SuppressWarnings("unchecked")
+		final AttributeBag<AV> slotValue = (AttributeBag<AV>) attributeValuesBySlot[slot];
+		if (slotValue == null)
+		{
+			/*
+			 * Slot not filled yet: look up the attribute in the layers once, if present with the slot's datatype (else the caller reports the datatype conflict, or resolves the attribute)
+			 */
+			final AttributeFqn attributeFqn = attributeSlotIndex.getAttributeFqn(slot);
+			final AttributeBag<?> bag = namedAttributes.get(attributeFqn);
+			if (bag == null || !bag.getElementDatatype().equals(attributeSlotIndex.getDatatype(slot)))
+			{
+				return null;
+			}
+
+			attributeValuesBySlot[slot] = bag;
+			@SuppressWarnings("unchecked")
+			final AttributeBag<AV> result = (AttributeBag<AV>) bag;
+			this.listeners.forEach((lt, l) -> l.namedAttributeValueConsumed(attributeFqn, result));
+			return result;
+		}
+
+		if (!this.listeners.isEmpty())
+		{
+			final AttributeFqn attributeFqn = attributeSlotIndex.getAttributeFqn(slot);
+			this.listeners.forEach((lt, l) -> l.namedAttributeValueConsumed(attributeFqn, slotValue));
+		}
+
+		return slotValue;
+	}
+
 	@Override
 	public boolean putNamedAttributeValueIfAbsent(final AttributeFqn attributeFqn, final AttributeBag<?> result)
 	{
@@ -155,6 +274,7 @@ public final class IndividualDecisionRequestContext implements EvaluationContext
 			return false;
 		}
 
+		setSlotValue(attributeFqn, result);
 		this.listeners.forEach((lt, l) -> l.namedAttributeValueProduced(attributeFqn, result));
 		/*
 		 * Attribute value cannot change during evaluation context, so if old value already there, put it back
@@ -292,8 +412,7 @@ public final class IndividualDecisionRequestContext implements EvaluationContext
 	@Override
 	public Iterator<Entry<AttributeFqn, AttributeBag<?>>> getNamedAttributes()
 	{
-		final Set<Entry<AttributeFqn, AttributeBag<?>>> immutableAttributeSet = Collections.unmodifiableSet(namedAttributes.entrySet());
-		return immutableAttributeSet.iterator();
+		return namedAttributes.iterator();
 	}
 
 	@Override
@@ -0,0 +1,206 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+
+import com.google.common.collect.Iterators;
+
+/**
+ * Named attribute values of an individual decision request, as a stack of read-only layers (e.g. Request attributes, PDP-issued standard environment attributes) on top of which a writable layer
+ * holds the attribute values resolved during evaluation (e.g. by attribute providers). A lookup checks the read-only layers in priority order, then the writable one; writes go to the writable layer
+ * only and only for attributes absent from all layers. Therefore, building an evaluation context does not copy the Request and PDP-issued attribute maps, which are shared (and must not be modified
+ * while in use).
+ * <p>
+ * Not thread-safe (like the evaluation context using it).
+ */
+final class LayeredAttributeMap
+{
+	private static final Map<AttributeFqn, AttributeBag<?>>[] NO_LAYERS = newLayerArray(0);
+
+	@SuppressWarnings("unchecked")
+	private static Map<AttributeFqn, AttributeBag<?>>[] newLayerArray(final int length)
+	{
+		return (Map<AttributeFqn, AttributeBag<?>>[]) new Map<?, ?>[length];
+	}
+
+	/*
+	 * Read-only layers in decreasing priority order, none empty
+	 */
+	private final Map<AttributeFqn, AttributeBag<?>>[] readOnlyLayers;
+
+	/*
+	 * Created on first write
+	 */
+	private Map<AttributeFqn, AttributeBag<?>> writableLayer = null;
+
+	private LayeredAttributeMap(final Map<AttributeFqn, AttributeBag<?>>[] readOnlyLayers)
+	{
+		this.readOnlyLayers = readOnlyLayers;
+	}
+
+	/**
+	 * Creates a layered map without any read-only layer
+	 *
+	 * @return new empty map
+	 */
+	static LayeredAttributeMap empty()
+	{
+		return new LayeredAttributeMap(NO_LAYERS);
+	}
+
+	/**
+	 * Creates a layered map with a single read-only layer
+	 *
+	 * @param layer
+	 *            read-only layer; may be null or empty (ignored)
+	 * @return new map
+	 */
+	static LayeredAttributeMap of(final Map<AttributeFqn, AttributeBag<?>> layer)
+	{
+		if (layer == null || layer.isEmpty())
+		{
+			return empty();
+		}
+
+		final Map<AttributeFqn, AttributeBag<?>>[] layers = newLayerArray(1);
+		layers[0] = layer;
+		return new LayeredAttributeMap(layers);
+	}
+
+	/**
+	 * Creates a layered map with the given read-only layers, by decreasing priority: if an attribute is in several layers, the value in the first one wins.
+	 *
+	 * @param layers
+	 *            read-only layers in decreasing priority order; null or empty ones are ignored
+	 * @return new map
+	 */
+	@SafeVarargs
+	static LayeredAttributeMap of(final Map<AttributeFqn, AttributeBag<?>>... layers)
+	{
+		final List<Map<AttributeFqn, AttributeBag<?>>> nonEmptyLayers = new ArrayList<>(layers.length);
+		for (final Map<AttributeFqn, AttributeBag<?>> layer : layers)
+		{
+			if (layer != null && !layer.isEmpty())
+			{
+				nonEmptyLayers.add(layer);
+			}
+		}
+
+		return nonEmptyLayers.isEmpty() ? empty() : new LayeredAttributeMap(nonEmptyLayers.toArray(newLayerArray(nonEmptyLayers.size())));
+	}
+
+	/**
+	 * Gets the value of an attribute from the highest-priority layer where it is present
+	 *
+	 * @param attributeFqn
+	 *            attribute name
+	 * @return attribute value; null if absent from all layers
+	 */
+	AttributeBag<?> get(final AttributeFqn attributeFqn)
+	{
+		for (final Map<AttributeFqn, AttributeBag<?>> layer : readOnlyLayers)
+		{
+			final AttributeBag<?> value = layer.get(attributeFqn);
+			if (value != null)
+			{
+				return value;
+			}
+		}
+
+		return writableLayer == null ? null : writableLayer.get(attributeFqn);
+	}
+
+	/**
+	 * Puts an attribute value in the writable layer if the attribute is absent from all layers
+	 *
+	 * @param attributeFqn
+	 *            attribute name
+	 * @param value
+	 *            attribute value
+	 * @return the current value if any (in which case the map is not changed), else null
+	 */
+	AttributeBag<?> putIfAbsent(final AttributeFqn attributeFqn, final AttributeBag<?> value)
+	{
+		assert attributeFqn != null && value != null;
+		for (final Map<AttributeFqn, AttributeBag<?>> layer : readOnlyLayers)
+		{
+			final AttributeBag<?> existingValue = layer.get(attributeFqn);
+			if (existingValue != null)
+			{
+				return existingValue;
+			}
+		}
+
+		if (writableLayer == null)
+		{
+			writableLayer = HashCollections.newUpdatableMap();
+		}
+
+		return writableLayer.putIfAbsent(attributeFqn, value);
+	}
+
+	private boolean isShadowed(final AttributeFqn attributeFqn, final int layerIndex)
+	{
+		for (int i = 0; i < layerIndex; i++)
+		{
+			if (readOnlyLayers[i].containsKey(attributeFqn))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Iterates over the attributes in all layers, each attribute once with its highest-priority value
+	 *
+	 * @return unmodifiable iterator
+	 */
+	Iterator<Entry<AttributeFqn, AttributeBag<?>>> iterator()
+	{
+		final List<Iterator<Entry<AttributeFqn, AttributeBag<?>>>> layerIterators = new ArrayList<>(readOnlyLayers.length + 1);
+		for (int i = 0; i < readOnlyLayers.length; i++)
+		{
+			final int layerIndex = i;
+			final Iterator<Entry<AttributeFqn, AttributeBag<?>>> layerIterator = Collections.unmodifiableMap(readOnlyLayers[i]).entrySet().iterator();
+			layerIterators.add(layerIndex == 0 ? layerIterator : Iterators.filter(layerIterator, entry -> !isShadowed(entry.getKey(), layerIndex)));
+		}
+
+		/*
+		 * The writable layer only has attributes absent from the read-only ones
+		 */
+		if (writableLayer != null)
+		{
+			layerIterators.add(Collections.unmodifiableMap(writableLayer).entrySet().iterator());
+		}
+
+		return Iterators.unmodifiableIterator(Iterators.concat(layerIterators.iterator()));
+	}
+
+}
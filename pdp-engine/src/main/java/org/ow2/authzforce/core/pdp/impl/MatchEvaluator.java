@@ -19,6 +19,8 @@ package org.ow2.authzforce.core.pdp.impl;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 import net.sf.saxon.s9api.XPathCompiler;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.AttributeDesignatorType;
@@ -28,6 +30,7 @@ import oasis.names.tc.xacml._3_0.core.schema.wd_17.Match;
 
 import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeDesignatorExpression;
 import org.ow2.authzforce.core.pdp.api.expression.Expression;
 import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
 import org.ow2.authzforce.core.pdp.api.expression.FunctionExpression;
@@ -36,6 +39,10 @@ import org.ow2.authzforce.core.pdp.api.func.FunctionCall;
 import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
 import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
 import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualEvaluationContext;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualPredicate;
+
+import com.google.common.collect.ImmutableSet;
 
 /**
  * XACML Match evaluator. This is the part of the Target that actually evaluates whether the specified attribute values in the Target match the corresponding attribute values in the request context.
@@ -47,6 +54,14 @@ public final class MatchEvaluator
 
 	private static final IllegalArgumentException NULL_XACML_MATCH_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined input XACML Match element");
 	private static final IllegalArgumentException NULL_XACML_EXPRESSION_FACTORY_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined input XACML Expression parser");
+	private static final String MATCH_ERROR_MESSAGE = "Error evaluating Match (with equivalent 'any-of' function)";
+
+	/**
+	 * IDs of the standard equality functions for which two values match iff they are equal according to {@link Object#equals(Object)} (consistent with {@link Object#hashCode()}), therefore usable
+	 * for indexing Targets by attribute value
+	 */
+	static final Set<String> INDEXABLE_EQUALITY_FUNCTION_IDS = ImmutableSet.of(StandardFunction.STRING_EQUAL.getId(), StandardFunction.BOOLEAN_EQUAL.getId(),
+	        StandardFunction.INTEGER_EQUAL.getId(), StandardFunction.ANYURI_EQUAL.getId(), StandardFunction.HEXBINARY_EQUAL.getId(), StandardFunction.BASE64BINARY_EQUAL.getId());
 
 	/**
 	 * Any-of function call equivalent to this Match:
@@ -55,6 +70,34 @@ public final class MatchEvaluator
 	 */
 	private final transient FunctionCall<BooleanValue> anyOfFuncCall;
 
+	/*
+	 * Non-null iff Match compilation is enabled (see CompiledEvaluators) and this Match has a compiled form, in which case it is used instead of anyOfFuncCall
+	 */
+	private final transient BooleanEvaluator compiledMatch;
+
+	private final transient String matchFunctionId;
+
+	/*
+	 * Non-null iff the Match's bag expression is an AttributeDesignator (null if AttributeSelector)
+	 */
+	private final transient AttributeDesignatorExpression<?> attributeDesignator;
+
+	/*
+	 * AttributeValue of the Match (null if not constant)
+	 */
+	private final transient AttributeValue matchValue;
+
+	/*
+	 * Non-null iff this Match is an equality test of an AttributeDesignator against a constant AttributeValue with one of INDEXABLE_EQUALITY_FUNCTION_IDS
+	 */
+	private final transient AttributeDesignatorExpression<?> equalityMatchDesignator;
+	private final transient AttributeValue equalityMatchValue;
+
+	/*
+	 * Present iff partial evaluation is enabled (see PartialEvaluation) and this Match is constant, e.g. the AttributeDesignator is a static attribute
+	 */
+	private final transient Optional<Boolean> constantResult;
+
 	/**
 	 * Instantiates Match evaluator from XACML-Schema-derived JAXB Match
 	 *
@@ -124,6 +167,100 @@ public final class MatchEvaluator
 		{
 			throw new IllegalArgumentException("Invalid inputs (Expressions) to the Match (validated using the equivalent standard 'any-of' function definition): " + anyOfFuncInputs, e);
 		}
+
+		this.constantResult = PartialEvaluation.isEnabled(expFactory) && attrValueExpr.getValue().isPresent() && bagExpression.getValue().isPresent() ? evaluateStatically(anyOfFuncCall)
+		        : Optional.empty();
+		this.compiledMatch = CompiledEvaluators.isEnabled(expFactory) && !constantResult.isPresent() ? CompiledEvaluators.compileMatch(matchId, matchFunction, attrValueExpr, bagExpression, MATCH_ERROR_MESSAGE) : null;
+		this.matchFunctionId = matchId;
+		this.attributeDesignator = bagExpression instanceof AttributeDesignatorExpression ? (AttributeDesignatorExpression<?>) bagExpression : null;
+
+		final Optional<? extends AttributeValue> constantAttrValue = attrValueExpr.getValue();
+		this.matchValue = constantAttrValue.isPresent() ? constantAttrValue.get() : null;
+		if (INDEXABLE_EQUALITY_FUNCTION_IDS.contains(matchId) && bagExpression instanceof AttributeDesignatorExpression && constantAttrValue.isPresent())
+		{
+			this.equalityMatchDesignator = (AttributeDesignatorExpression<?>) bagExpression;
+			this.equalityMatchValue = constantAttrValue.get();
+		}
+		else
+		{
+			this.equalityMatchDesignator = null;
+			this.equalityMatchValue = null;
+		}
+	}
+
+	private static Optional<Boolean> evaluateStatically(final FunctionCall<BooleanValue> anyOfFuncCall)
+	{
+		try
+		{
+			return Optional.of(anyOfFuncCall.evaluate(null).getUnderlyingValue());
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			// always Indeterminate: not optimizing
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Gets the constant result of this Match, if partial evaluation is enabled (see {@link PartialEvaluation}) and the Match always evaluates to the same value, e.g. the AttributeDesignator is a
+	 * static attribute
+	 *
+	 * @return constant result; empty if not constant (or partial evaluation disabled)
+	 */
+	public Optional<Boolean> getConstantResult()
+	{
+		return constantResult;
+	}
+
+	/**
+	 * Gets the ID of the function used by this Match to compare the AttributeValue to the values of the AttributeDesignator/AttributeSelector
+	 *
+	 * @return MatchId
+	 */
+	public String getMatchFunctionId()
+	{
+		return matchFunctionId;
+	}
+
+	/**
+	 * Gets the AttributeDesignator of this Match
+	 *
+	 * @return AttributeDesignator; null if this Match uses an AttributeSelector instead
+	 */
+	public AttributeDesignatorExpression<?> getAttributeDesignator()
+	{
+		return attributeDesignator;
+	}
+
+	/**
+	 * Gets the AttributeValue of this Match, i.e. the first argument passed to the match function (see {@link #getMatchFunctionId()}), the second being each value of the AttributeDesignator/Selector
+	 *
+	 * @return AttributeValue; null if not constant
+	 */
+	public AttributeValue getMatchValue()
+	{
+		return matchValue;
+	}
+
+	/**
+	 * Gets the AttributeDesignator of this Match if it is an equality test of the AttributeDesignator against a constant AttributeValue (with an equality function such as {@code string-equal}), i.e.
+	 * this Match is True iff the AttributeDesignator result contains {@link #getEqualityMatchValue()}.
+	 *
+	 * @return AttributeDesignator; null if this Match is not such an equality test
+	 */
+	public AttributeDesignatorExpression<?> getEqualityMatchDesignator()
+	{
+		return equalityMatchDesignator;
+	}
+
+	/**
+	 * Gets the constant AttributeValue of this Match if it is an equality test (see {@link #getEqualityMatchDesignator()})
+	 *
+	 * @return AttributeValue; null if this Match is not such an equality test
+	 */
+	public AttributeValue getEqualityMatchValue()
+	{
+		return equalityMatchValue;
 	}
 
 	/**
@@ -137,6 +274,11 @@ public final class MatchEvaluator
 	 */
 	public boolean match(final EvaluationContext context) throws IndeterminateEvaluationException
 	{
+		if (compiledMatch != null)
+		{
+			return compiledMatch.evaluate(context);
+		}
+
 		final BooleanValue anyOfFuncCallResult;
 		try
 		{
@@ -144,10 +286,32 @@ public final class MatchEvaluator
 		}
 		catch (final IndeterminateEvaluationException e)
 		{
-			throw new IndeterminateEvaluationException("Error evaluating Match (with equivalent 'any-of' function)", e.getStatusCode(), e);
+			throw new IndeterminateEvaluationException(MATCH_ERROR_MESSAGE, e.getStatusCode(), e);
 		}
 
 		return anyOfFuncCallResult.getUnderlyingValue().booleanValue();
 	}
 
+	/**
+	 * Evaluates this Match partially, i.e. with some attribute categories unknown
+	 *
+	 * @param context
+	 *            the representation of the partial request
+	 * @return {@link ResidualPredicate.AttributeMatch} if this Match has an AttributeDesignator of an unknown category and a constant AttributeValue; else the result of evaluating the Match as a
+	 *         whole
+	 */
+	public ResidualPredicate evaluatePartially(final ResidualEvaluationContext context)
+	{
+		if (constantResult.isPresent())
+		{
+			return ResidualPredicate.valueOf(constantResult.get());
+		}
+
+		if (attributeDesignator != null && matchValue != null && context.isUnknown(attributeDesignator.getAttributeFQN()))
+		{
+			return new ResidualPredicate.AttributeMatch(matchFunctionId, matchValue, attributeDesignator);
+		}
+
+		return context.evaluate(this::match);
+	}
 }
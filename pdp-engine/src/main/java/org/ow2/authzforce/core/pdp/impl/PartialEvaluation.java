@@ -0,0 +1,79 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
+
+/**
+ * Partial evaluation of the policies at parsing time, enabled by {@link DepthLimitingExpressionFactory#isPartialEvaluationEnabled()}, beyond the evaluation of constant function calls (Apply) that is
+ * always done: constant arguments of the functions {@code and}, {@code or} and {@code n-of} that do not determine the result are removed, {@code not(not(x))} is replaced with {@code x},
+ * VariableReferences to constant VariableDefinitions are replaced with their values, constant Matches/AllOfs/AnyOfs are removed from Targets, Rules with a constant False/No-match Condition or
+ * Target are removed from Policies, and the rule-combining algorithm result of a Policy where all Rules are always applicable (without obligation/advice) is evaluated once and for all. Combined with
+ * the static attributes of the {@link DepthLimitingExpressionFactory} (attribute values fixed at deployment time), this specializes the policies for these attribute values.
+ * <p>
+ * Each part of a policy removed this way counts as an eliminated node (see {@link DepthLimitingExpressionFactory#getEliminatedNodeCount()}).
+ */
+public final class PartialEvaluation
+{
+	private PartialEvaluation()
+	{
+		// prevent instantiation
+	}
+
+	/**
+	 * Says whether the policies parsed with a given expression factory should be partially evaluated
+	 *
+	 * @param expressionFactory
+	 *            expression factory used to parse the policies
+	 * @return true iff {@code expressionFactory} is a {@link DepthLimitingExpressionFactory} with {@link DepthLimitingExpressionFactory#isPartialEvaluationEnabled()} true
+	 */
+	public static boolean isEnabled(final ExpressionFactory expressionFactory)
+	{
+		return expressionFactory instanceof DepthLimitingExpressionFactory && ((DepthLimitingExpressionFactory) expressionFactory).isPartialEvaluationEnabled();
+	}
+
+	/**
+	 * Adds nodes to the count of nodes eliminated by partial evaluation, if the expression factory supports it (else does nothing)
+	 *
+	 * @param expressionFactory
+	 *            expression factory used to parse the policies
+	 * @param count
+	 *            number of eliminated nodes
+	 */
+	public static void countEliminatedNodes(final ExpressionFactory expressionFactory, final int count)
+	{
+		if (expressionFactory instanceof DepthLimitingExpressionFactory)
+		{
+			((DepthLimitingExpressionFactory) expressionFactory).countEliminatedNodes(count);
+		}
+	}
+
+	/**
+	 * Gets the number of nodes eliminated by partial evaluation of the policies parsed with a given expression factory so far
+	 *
+	 * @param expressionFactory
+	 *            expression factory used to parse the policies
+	 * @return eliminated node count; 0 if {@code expressionFactory} does not support partial evaluation
+	 */
+	public static int getEliminatedNodeCount(final ExpressionFactory expressionFactory)
+	{
+		return expressionFactory instanceof DepthLimitingExpressionFactory ? ((DepthLimitingExpressionFactory) expressionFactory).getEliminatedNodeCount() : 0;
+	}
+
+}
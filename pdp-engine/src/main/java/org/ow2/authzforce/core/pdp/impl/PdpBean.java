@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 
 import org.ow2.authzforce.core.pdp.api.DecisionRequest;
 import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
@@ -46,7 +47,7 @@ public final class PdpBean implements PdpEngine
 {
 	private final static Logger LOGGER = LoggerFactory.getLogger(PdpBean.class);
 
-	private PdpEngine pdp;
+	private BasePdpEngine pdp;
 
 	private String confLocation = null;
 
@@ -162,6 +163,19 @@ public final class PdpBean implements PdpEngine
 		return pdp.evaluate(individualDecisionRequest);
 	}
 
+	/**
+	 * Evaluates an Individual Decision Request asynchronously, without blocking the caller (see {@link BasePdpEngine#evaluateAsync(DecisionRequest)})
+	 *
+	 * @param individualDecisionRequest
+	 *            Individual Decision Request
+	 * @return future decision result, completed exceptionally with {@link java.util.concurrent.RejectedExecutionException} if the PDP's async evaluation queue is full
+	 */
+	public CompletableFuture<DecisionResult> evaluateAsync(final DecisionRequest individualDecisionRequest)
+	{
+		checkInit();
+		return pdp.evaluateAsync(individualDecisionRequest);
+	}
+
 	@Override
 	public <INDIVIDUAL_DECISION_REQUEST extends DecisionRequest> Collection<Entry<INDIVIDUAL_DECISION_REQUEST, ? extends DecisionResult>> evaluate(final List<INDIVIDUAL_DECISION_REQUEST> requests)
 			throws IndeterminateEvaluationException
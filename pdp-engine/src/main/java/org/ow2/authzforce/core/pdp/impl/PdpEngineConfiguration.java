@@ -29,6 +29,7 @@ import java.net.URL;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -39,6 +40,8 @@ import javax.xml.bind.JAXBException;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.AttributeFqns;
 import org.ow2.authzforce.core.pdp.api.CloseableNamedAttributeProvider;
 import org.ow2.authzforce.core.pdp.api.DecisionCache;
 import org.ow2.authzforce.core.pdp.api.DecisionRequestPreprocessor;
@@ -56,23 +59,35 @@ import org.ow2.authzforce.core.pdp.api.func.Function;
 import org.ow2.authzforce.core.pdp.api.io.XacmlJaxbParsingUtils;
 import org.ow2.authzforce.core.pdp.api.policy.CloseableRefPolicyProvider;
 import org.ow2.authzforce.core.pdp.api.policy.RootPolicyProvider;
+import org.ow2.authzforce.core.pdp.api.policy.StaticRefPolicyProvider;
 import org.ow2.authzforce.core.pdp.api.value.AttributeValueFactory;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
 import org.ow2.authzforce.core.pdp.api.value.AttributeValueFactoryRegistry;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
 import org.ow2.authzforce.core.pdp.api.value.Datatype;
 import org.ow2.authzforce.core.pdp.api.value.ImmutableAttributeValueFactoryRegistry;
 import org.ow2.authzforce.core.pdp.api.value.IntegerValue;
 import org.ow2.authzforce.core.pdp.api.value.StandardAttributeValueFactories;
 import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
 import org.ow2.authzforce.core.pdp.api.value.StringParseableValue;
+import org.ow2.authzforce.core.pdp.impl.cache.InvalidatableDecisionCache;
 import org.ow2.authzforce.core.pdp.impl.combining.ImmutableCombiningAlgRegistry;
 import org.ow2.authzforce.core.pdp.impl.combining.StandardCombiningAlgorithm;
 import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
 import org.ow2.authzforce.core.pdp.impl.func.FunctionRegistry;
 import org.ow2.authzforce.core.pdp.impl.func.ImmutableFunctionRegistry;
 import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
+import org.ow2.authzforce.core.pdp.impl.policy.CachingRefPolicyProvider;
+import org.ow2.authzforce.core.pdp.impl.policy.CoreRefPolicyProvider;
+import org.ow2.authzforce.core.pdp.impl.policy.ObservableRefPolicyProvider;
+import org.ow2.authzforce.core.pdp.impl.policy.PolicySnapshot;
+import org.ow2.authzforce.core.pdp.impl.policy.PolicySnapshotRootPolicyProvider;
+import org.ow2.authzforce.core.pdp.impl.policy.RootPolicyEvaluators;
 import org.ow2.authzforce.core.xmlns.pdp.InOutProcChain;
 import org.ow2.authzforce.core.xmlns.pdp.Pdp;
 import org.ow2.authzforce.core.xmlns.pdp.StandardEnvironmentAttributeSource;
+import org.ow2.authzforce.core.xmlns.pdp.StaticAttribute;
 import org.ow2.authzforce.xacml.identifiers.XacmlDatatypeId;
 import org.ow2.authzforce.xmlns.pdp.ext.AbstractAttributeProvider;
 import org.ow2.authzforce.xmlns.pdp.ext.AbstractDecisionCache;
@@ -133,17 +148,31 @@ public final class PdpEngineConfiguration
 	}
 
 	private static <JAXB_CONF extends AbstractPolicyProvider> CloseableRefPolicyProvider newRefPolicyProvider(final JAXB_CONF jaxbConf, final XmlnsFilteringParserFactory xacmlParserFactory,
-	        final int maxPolicySetRefDepth, final ExpressionFactory xacmlExprFactory, final CombiningAlgRegistry combiningAlgRegistry, final EnvironmentProperties envProps)
+	        final int maxPolicySetRefDepth, final ExpressionFactory xacmlExprFactory, final CombiningAlgRegistry combiningAlgRegistry, final EnvironmentProperties envProps,
+	        final long resolutionCacheTtlMillis)
 	{
 		final CloseableRefPolicyProvider.Factory<JAXB_CONF> refPolicyProviderModFactory = PdpExtensions.getRefPolicyProviderFactory((Class<JAXB_CONF>) jaxbConf.getClass());
-		return refPolicyProviderModFactory.getInstance(jaxbConf, xacmlParserFactory, maxPolicySetRefDepth, xacmlExprFactory, combiningAlgRegistry, envProps);
+		final CloseableRefPolicyProvider refPolicyProvider = refPolicyProviderModFactory.getInstance(jaxbConf, xacmlParserFactory, maxPolicySetRefDepth, xacmlExprFactory, combiningAlgRegistry,
+		        envProps);
+		/*
+		 * Static providers resolve the policy references once and for all, nothing to cache
+		 */
+		return resolutionCacheTtlMillis > 0 && !(refPolicyProvider instanceof StaticRefPolicyProvider) ? new CachingRefPolicyProvider(refPolicyProvider, resolutionCacheTtlMillis)
+		        : refPolicyProvider;
 	}
 
 	private static <JAXB_CONF extends AbstractPolicyProvider> RootPolicyProvider newRootPolicyProvider(final JAXB_CONF jaxbConf, final XmlnsFilteringParserFactory xacmlParserFactory,
 	        final ExpressionFactory xacmlExprFactory, final CombiningAlgRegistry combiningAlgRegistry, final Optional<CloseableRefPolicyProvider> refPolicyProvider,
-	        final EnvironmentProperties envProps)
+	        final EnvironmentProperties envProps, final PolicySnapshot.Environment policySnapshotEnv)
 	{
 		final RootPolicyProvider.Factory<JAXB_CONF> rootPolicyProviderFactory = PdpExtensions.getRootPolicyProviderFactory((Class<JAXB_CONF>) jaxbConf.getClass());
+		if (rootPolicyProviderFactory instanceof PolicySnapshotRootPolicyProvider.Factory)
+		{
+			// the snapshot is checked against the environment of this PDP
+			return ((PolicySnapshotRootPolicyProvider.Factory) rootPolicyProviderFactory).getInstance((org.ow2.authzforce.core.xmlns.pdp.PolicySnapshotRootPolicyProvider) jaxbConf,
+			        xacmlExprFactory, combiningAlgRegistry, refPolicyProvider, envProps, policySnapshotEnv);
+		}
+
 		return rootPolicyProviderFactory.getInstance(jaxbConf, xacmlParserFactory, xacmlExprFactory, combiningAlgRegistry, refPolicyProvider, envProps);
 	}
 
@@ -154,23 +183,108 @@ public final class PdpEngineConfiguration
 		return decisionCacheFactory.getInstance(jaxbConf, attValFactories, envProps);
 	}
 
+	private static <AV extends AttributeValue> Bag<AV> newStaticAttributeBag(final AttributeValueFactory<AV> attValFactory, final List<StaticAttribute> staticAttributes,
+	        final EnvironmentProperties envProps) throws IllegalArgumentException
+	{
+		final List<AV> values = new ArrayList<>(staticAttributes.size());
+		for (final StaticAttribute staticAttribute : staticAttributes)
+		{
+			values.add(attValFactory.getInstance(Collections.singletonList(envProps.replacePlaceholders(staticAttribute.getValue())), Collections.emptyMap(), null));
+		}
+
+		return Bags.newAttributeBag(attValFactory.getDatatype(), values);
+	}
+
+	/**
+	 * Gets the values of the static attributes, i.e. fixed at deployment time, grouped by attribute
+	 */
+	private static Map<AttributeFqn, Bag<?>> newStaticAttributes(final List<StaticAttribute> staticAttributes, final AttributeValueFactoryRegistry attValFactories, final EnvironmentProperties envProps)
+	        throws IllegalArgumentException
+	{
+		final Map<AttributeFqn, List<StaticAttribute>> staticAttributesByFqn = new LinkedHashMap<>();
+		for (final StaticAttribute staticAttribute : staticAttributes)
+		{
+			final AttributeFqn attributeFqn = AttributeFqns.newInstance(staticAttribute.getCategory(), Optional.ofNullable(staticAttribute.getIssuer()), staticAttribute.getId());
+			final List<StaticAttribute> sameAttributes = staticAttributesByFqn.computeIfAbsent(attributeFqn, k -> new ArrayList<>());
+			if (!sameAttributes.isEmpty() && !sameAttributes.get(0).getDataType().equals(staticAttribute.getDataType()))
+			{
+				throw new IllegalArgumentException("Invalid staticAttribute " + attributeFqn + ": different dataTypes: " + sameAttributes.get(0).getDataType() + ", " + staticAttribute.getDataType());
+			}
+
+			sameAttributes.add(staticAttribute);
+		}
+
+		final Map<AttributeFqn, Bag<?>> staticAttributeBags = HashCollections.newUpdatableMap(staticAttributesByFqn.size());
+		for (final Entry<AttributeFqn, List<StaticAttribute>> staticAttributeEntry : staticAttributesByFqn.entrySet())
+		{
+			final String datatypeId = staticAttributeEntry.getValue().get(0).getDataType();
+			final AttributeValueFactory<?> attValFactory = attValFactories.getExtension(datatypeId);
+			if (attValFactory == null)
+			{
+				throw new IllegalArgumentException("Invalid staticAttribute " + staticAttributeEntry.getKey() + ": unsupported dataType: " + datatypeId);
+			}
+
+			try
+			{
+				staticAttributeBags.put(staticAttributeEntry.getKey(), newStaticAttributeBag(attValFactory, staticAttributeEntry.getValue(), envProps));
+			} catch (final IllegalArgumentException e)
+			{
+				throw new IllegalArgumentException("Invalid staticAttribute " + staticAttributeEntry.getKey() + " value", e);
+			}
+		}
+
+		return staticAttributeBags;
+	}
+
 	private final boolean enableXPath;
 	private final AttributeValueFactoryRegistry attValFactoryRegistry;
 
 	private final ExpressionFactory xacmlExpressionFactory;
 
+	private final CombiningAlgRegistry combiningAlgRegistry;
+
 	private final RootPolicyProvider rootPolicyProvider;
 
+	private final Optional<CloseableRefPolicyProvider> refPolicyProvider;
+
+	private final PolicySnapshot.Environment policySnapshotEnvironment;
+
 	private final boolean strictAttributeIssuerMatch;
 
 	private final StandardEnvironmentAttributeSource stdEnvAttributeSource;
 
+	private final long stdEnvAttributeTickMillis;
+
+	private final int decisionDiagramMaxNodeCount;
+
+	private final long policyReloadDelayMillis;
+
+	private final long refPolicyResolutionCacheTtlMillis;
+
+	private final List<String> policyLocations;
+
+	private final RootPolicyEvaluators.Reloadable.Loader rootPolicyProviderLoader;
+
+	private final boolean evaluatorCompilationEnabled;
+
+	private final boolean partialEvaluationEnabled;
+
+	private final boolean adaptiveEvaluationOrderEnabled;
+
 	private final Optional<DecisionCache> decisionCache;
 
 	private final Map<Class<?>, Entry<DecisionRequestPreprocessor<?, ?>, DecisionResultPostprocessor<?, ?>>> ioProcChainsByInputType;
 
 	private final int clientReqErrVerbosityLevel;
 
+	private final int parallelEvalThreshold;
+
+	private final int parallelEvalThreads;
+
+	private final int asyncEvalThreads;
+
+	private final int asyncEvalQueueCapacity;
+
 	/**
 	 * Constructs configuration from PDP XML-schema-derived JAXB model (usually 'unmarshaled' from XML configuration file)
 	 *
@@ -238,6 +352,42 @@ public final class PdpEngineConfiguration
 		 */
 		stdEnvAttributeSource = stdEnvAttSourceFromJaxbConf == null ? StandardEnvironmentAttributeSource.REQUEST_ELSE_PDP : stdEnvAttSourceFromJaxbConf;
 
+		final BigInteger bigStdEnvAttributeTickMillis = pdpJaxbConf.getStandardEnvAttributeTickMillis();
+		try
+		{
+			this.stdEnvAttributeTickMillis = bigStdEnvAttributeTickMillis == null ? 0 : bigStdEnvAttributeTickMillis.longValueExact();
+		} catch (final ArithmeticException e)
+		{
+			throw new IllegalArgumentException("Invalid standardEnvAttributeTickMillis: " + bigStdEnvAttributeTickMillis, e);
+		}
+
+		final BigInteger bigDecisionDiagramMaxNodes = pdpJaxbConf.getDecisionDiagramMaxNodes();
+		try
+		{
+			this.decisionDiagramMaxNodeCount = bigDecisionDiagramMaxNodes == null ? 0 : bigDecisionDiagramMaxNodes.intValueExact();
+		} catch (final ArithmeticException e)
+		{
+			throw new IllegalArgumentException("Invalid decisionDiagramMaxNodes: " + bigDecisionDiagramMaxNodes, e);
+		}
+
+		final BigInteger bigPolicyReloadDelayMillis = pdpJaxbConf.getPolicyReloadDelayMillis();
+		try
+		{
+			this.policyReloadDelayMillis = bigPolicyReloadDelayMillis == null ? 0 : bigPolicyReloadDelayMillis.longValueExact();
+		} catch (final ArithmeticException e)
+		{
+			throw new IllegalArgumentException("Invalid policyReloadDelayMillis: " + bigPolicyReloadDelayMillis, e);
+		}
+
+		final BigInteger bigRefPolicyResolutionCacheTtlMillis = pdpJaxbConf.getRefPolicyResolutionCacheTtlMillis();
+		try
+		{
+			this.refPolicyResolutionCacheTtlMillis = bigRefPolicyResolutionCacheTtlMillis == null ? 0 : bigRefPolicyResolutionCacheTtlMillis.longValueExact();
+		} catch (final ArithmeticException e)
+		{
+			throw new IllegalArgumentException("Invalid refPolicyResolutionCacheTtlMillis: " + bigRefPolicyResolutionCacheTtlMillis, e);
+		}
+
 		// Extra Attribute Providers
 		final List<AbstractAttributeProvider> attProviderJaxbConfs = pdpJaxbConf.getAttributeProviders();
 		final List<CloseableNamedAttributeProvider.DependencyAwareFactory> attProviderFactories = new ArrayList<>(attProviderJaxbConfs.size());
@@ -277,6 +427,7 @@ public final class PdpEngineConfiguration
 		/*
 		 * Merge with standards if required, or use the standards as is if no extension
 		 */
+		adaptiveEvaluationOrderEnabled = pdpJaxbConf.isAdaptiveEvaluationOrder();
 		final FunctionRegistry functionRegistry;
 		if (pdpJaxbConf.isUseStandardFunctions())
 		{
@@ -288,7 +439,7 @@ public final class PdpEngineConfiguration
 			final AttributeValueFactory<?> intValFactory = attValFactoryRegistry.getExtension(StandardDatatypes.INTEGER.getId());
 			assert intValFactory != null && intValFactory.getDatatype() == StandardDatatypes.INTEGER && intValFactory instanceof StringParseableValue.Factory;
 
-			final FunctionRegistry stdRegistry = StandardFunction.getRegistry(enableXPath, (StringParseableValue.Factory<IntegerValue>) intValFactory);
+			final FunctionRegistry stdRegistry = StandardFunction.getRegistry(enableXPath, (StringParseableValue.Factory<IntegerValue>) intValFactory, adaptiveEvaluationOrderEnabled);
 			if (nonGenericFunctionExtensionIdentifiers.isEmpty())
 			{
 				functionRegistry = stdRegistry;
@@ -311,6 +462,9 @@ public final class PdpEngineConfiguration
 		 * Strict Attribute Issuer match
 		 */
 		strictAttributeIssuerMatch = pdpJaxbConf.isStrictAttributeIssuerMatch();
+		evaluatorCompilationEnabled = pdpJaxbConf.isCompileTargetsAndConditions();
+		partialEvaluationEnabled = pdpJaxbConf.isPartialEvaluation();
+		final Map<AttributeFqn, Bag<?>> staticAttributes = newStaticAttributes(pdpJaxbConf.getStaticAttributes(), attValFactoryRegistry, envProps);
 
 		// Policy/Rule Combining Algorithms
 		// Extensions
@@ -325,15 +479,15 @@ public final class PdpEngineConfiguration
 		/*
 		 * Merge with standards if required, or use the standards as is if no extension
 		 */
-		final CombiningAlgRegistry combiningAlgRegistry;
 		if (pdpJaxbConf.isUseStandardCombiningAlgorithms())
 		{
 			if (algExtensions.isEmpty())
 			{
-				combiningAlgRegistry = StandardCombiningAlgorithm.REGISTRY;
+				combiningAlgRegistry = StandardCombiningAlgorithm.getRegistry(adaptiveEvaluationOrderEnabled);
 			} else
 			{
-				combiningAlgRegistry = new ImmutableCombiningAlgRegistry(HashCollections.newImmutableSet(StandardCombiningAlgorithm.REGISTRY.getExtensions(), algExtensions));
+				combiningAlgRegistry = new ImmutableCombiningAlgRegistry(
+				        HashCollections.newImmutableSet(StandardCombiningAlgorithm.getRegistry(adaptiveEvaluationOrderEnabled).getExtensions(), algExtensions));
 			}
 		} else
 		{
@@ -353,10 +507,13 @@ public final class PdpEngineConfiguration
 			throw new IllegalArgumentException("Invalid maxPolicyRefDepth: " + bigMaxPolicyRefDepth, e);
 		}
 
+		policySnapshotEnvironment = new PolicySnapshot.Environment(pdpJaxbConf, attValFactoryRegistry, functionRegistry, combiningAlgRegistry, maxPolicySetRefDepth);
+
 		/*
 		 * XACML Expression factory/parser
 		 */
-		xacmlExpressionFactory = new DepthLimitingExpressionFactory(attValFactoryRegistry, functionRegistry, attProviderFactories, maxVarRefDepth, enableXPath, strictAttributeIssuerMatch);
+		xacmlExpressionFactory = new DepthLimitingExpressionFactory(attValFactoryRegistry, functionRegistry, attProviderFactories, maxVarRefDepth, enableXPath, strictAttributeIssuerMatch,
+		        evaluatorCompilationEnabled, partialEvaluationEnabled, staticAttributes);
 
 		/*
 		 * Policy Reference processing - Policy-by-reference Provider
@@ -368,13 +525,102 @@ public final class PdpEngineConfiguration
 			refPolicyProvider = Optional.empty();
 		} else
 		{
-			refPolicyProvider = Optional.of(newRefPolicyProvider(refPolicyProviderJaxbConf, xacmlParserFactory, maxPolicySetRefDepth, xacmlExpressionFactory, combiningAlgRegistry, envProps));
+			refPolicyProvider = Optional.of(newRefPolicyProvider(refPolicyProviderJaxbConf, xacmlParserFactory, maxPolicySetRefDepth, xacmlExpressionFactory, combiningAlgRegistry, envProps,
+			        refPolicyResolutionCacheTtlMillis));
 		}
 
 		/*
 		 * Root Policy Provider
 		 */
-		rootPolicyProvider = newRootPolicyProvider(rootPolicyProviderJaxbConf, xacmlParserFactory, xacmlExpressionFactory, combiningAlgRegistry, refPolicyProvider, envProps);
+		rootPolicyProvider = newRootPolicyProvider(rootPolicyProviderJaxbConf, xacmlParserFactory, xacmlExpressionFactory, combiningAlgRegistry, refPolicyProvider, envProps,
+		        policySnapshotEnvironment);
+		this.refPolicyProvider = refPolicyProvider;
+
+		/*
+		 * Policy files (of the core policy providers) to be watched for hot reload, and how to reload them
+		 */
+		final List<String> mutablePolicyLocations = new ArrayList<>();
+		if (rootPolicyProviderJaxbConf instanceof org.ow2.authzforce.core.xmlns.pdp.StaticRootPolicyProvider)
+		{
+			mutablePolicyLocations.add(envProps.replacePlaceholders(((org.ow2.authzforce.core.xmlns.pdp.StaticRootPolicyProvider) rootPolicyProviderJaxbConf).getPolicyLocation()));
+		}
+		else if (rootPolicyProviderJaxbConf instanceof org.ow2.authzforce.core.xmlns.pdp.PolicySnapshotRootPolicyProvider)
+		{
+			mutablePolicyLocations.add(envProps.replacePlaceholders(((org.ow2.authzforce.core.xmlns.pdp.PolicySnapshotRootPolicyProvider) rootPolicyProviderJaxbConf).getSnapshotLocation()));
+		}
+
+		if (refPolicyProviderJaxbConf instanceof org.ow2.authzforce.core.xmlns.pdp.StaticRefPolicyProvider)
+		{
+			for (final String policyLocation : ((org.ow2.authzforce.core.xmlns.pdp.StaticRefPolicyProvider) refPolicyProviderJaxbConf).getPolicyLocations())
+			{
+				mutablePolicyLocations.add(envProps.replacePlaceholders(policyLocation));
+			}
+		}
+		else if (refPolicyProviderJaxbConf instanceof org.ow2.authzforce.core.xmlns.pdp.PolicyStoreRefPolicyProvider)
+		{
+			mutablePolicyLocations.add(envProps.replacePlaceholders(((org.ow2.authzforce.core.xmlns.pdp.PolicyStoreRefPolicyProvider) refPolicyProviderJaxbConf).getStoreLocation()));
+		}
+
+		policyLocations = Collections.unmodifiableList(mutablePolicyLocations);
+		final ExpressionFactory reloadingExpressionFactory = xacmlExpressionFactory;
+		/*
+		 * The unchanged policies of the previous ref policy provider are reused on reload if it is the core static one (incremental reload)
+		 */
+		rootPolicyProviderLoader = previousRefPolicyProvider -> {
+			final Optional<CloseableRefPolicyProvider> newRefPolicyProvider;
+			if (refPolicyProviderJaxbConf == null)
+			{
+				newRefPolicyProvider = Optional.empty();
+			}
+			else if (refPolicyProviderJaxbConf instanceof org.ow2.authzforce.core.xmlns.pdp.StaticRefPolicyProvider && previousRefPolicyProvider.isPresent()
+			        && previousRefPolicyProvider.get() instanceof CoreRefPolicyProvider)
+			{
+				final CloseableRefPolicyProvider.Factory<org.ow2.authzforce.core.xmlns.pdp.StaticRefPolicyProvider> refPolicyProviderFactory = PdpExtensions
+				        .getRefPolicyProviderFactory(org.ow2.authzforce.core.xmlns.pdp.StaticRefPolicyProvider.class);
+				final org.ow2.authzforce.core.xmlns.pdp.StaticRefPolicyProvider staticRefPolicyProviderJaxbConf = (org.ow2.authzforce.core.xmlns.pdp.StaticRefPolicyProvider) refPolicyProviderJaxbConf;
+				newRefPolicyProvider = Optional.of(refPolicyProviderFactory instanceof CoreRefPolicyProvider.Factory
+				        ? ((CoreRefPolicyProvider.Factory) refPolicyProviderFactory).getInstance(staticRefPolicyProviderJaxbConf, xacmlParserFactory, maxPolicySetRefDepth, reloadingExpressionFactory,
+				                combiningAlgRegistry, envProps, Optional.of((CoreRefPolicyProvider) previousRefPolicyProvider.get()))
+				        : refPolicyProviderFactory.getInstance(staticRefPolicyProviderJaxbConf, xacmlParserFactory, maxPolicySetRefDepth, reloadingExpressionFactory, combiningAlgRegistry, envProps));
+			}
+			else
+			{
+				newRefPolicyProvider = Optional.of(newRefPolicyProvider(refPolicyProviderJaxbConf, xacmlParserFactory, maxPolicySetRefDepth, reloadingExpressionFactory, combiningAlgRegistry, envProps,
+				        refPolicyResolutionCacheTtlMillis));
+			}
+
+			final RootPolicyProvider newRootPolicyProvider;
+			try
+			{
+				newRootPolicyProvider = newRootPolicyProvider(rootPolicyProviderJaxbConf, xacmlParserFactory, reloadingExpressionFactory, combiningAlgRegistry, newRefPolicyProvider, envProps,
+				        policySnapshotEnvironment);
+			}
+			catch (final RuntimeException e)
+			{
+				/*
+				 * Observable ref policy providers may hold resources (polling thread, connections) to be released if not used
+				 */
+				if (newRefPolicyProvider.isPresent() && newRefPolicyProvider.get() instanceof ObservableRefPolicyProvider)
+				{
+					try
+					{
+						newRefPolicyProvider.get().close();
+					}
+					catch (final IOException closeException)
+					{
+						e.addSuppressed(closeException);
+					}
+				}
+
+				throw e;
+			}
+
+			return new RootPolicyEvaluators.Reloadable.LoadedPolicyProviders(newRootPolicyProvider, newRefPolicyProvider);
+		};
+		if (partialEvaluationEnabled || !staticAttributes.isEmpty())
+		{
+			LOGGER.info("Partial evaluation of the policies loaded at initialization time: {} node(s) eliminated", PartialEvaluation.getEliminatedNodeCount(xacmlExpressionFactory));
+		}
 
 		// Decision cache
 		final AbstractDecisionCache decisionCacheJaxbConf = pdpJaxbConf.getDecisionCache();
@@ -383,7 +629,16 @@ public final class PdpEngineConfiguration
 			decisionCache = Optional.empty();
 		} else
 		{
-			decisionCache = Optional.of(newDecisionCache(decisionCacheJaxbConf, attValFactoryRegistry, envProps));
+			final DecisionCache newDecisionCache = newDecisionCache(decisionCacheJaxbConf, attValFactoryRegistry, envProps);
+			/*
+			 * With hot reload, the cached decisions must be invalidated when the policies are reloaded
+			 */
+			if (policyReloadDelayMillis > 0 && !(newDecisionCache instanceof InvalidatableDecisionCache))
+			{
+				throw new IllegalArgumentException("policyReloadDelayMillis > 0 (hot reload) not supported with this type of decisionCache (cannot be invalidated on reload): " + decisionCacheJaxbConf.getClass());
+			}
+
+			decisionCache = Optional.of(newDecisionCache);
 		}
 
 		// Decision Result postprocessor
@@ -396,6 +651,44 @@ public final class PdpEngineConfiguration
 			throw new IllegalArgumentException("Invalid clientRequestErrorVerbosityLevel: " + clientReqErrVerbosityBigInt, e);
 		}
 
+		// Parallel evaluation of Multiple Decision Requests
+		final BigInteger bigParallelEvalThreshold = pdpJaxbConf.getParallelEvaluationThreshold();
+		try
+		{
+			this.parallelEvalThreshold = bigParallelEvalThreshold == null ? -1 : bigParallelEvalThreshold.intValueExact();
+		} catch (final ArithmeticException e)
+		{
+			throw new IllegalArgumentException("Invalid parallelEvaluationThreshold: " + bigParallelEvalThreshold, e);
+		}
+
+		final BigInteger bigParallelEvalThreads = pdpJaxbConf.getParallelEvaluationThreads();
+		try
+		{
+			this.parallelEvalThreads = bigParallelEvalThreads == null ? 0 : bigParallelEvalThreads.intValueExact();
+		} catch (final ArithmeticException e)
+		{
+			throw new IllegalArgumentException("Invalid parallelEvaluationThreads: " + bigParallelEvalThreads, e);
+		}
+
+		// Asynchronous evaluation
+		final BigInteger bigAsyncEvalThreads = pdpJaxbConf.getAsyncEvaluationThreads();
+		try
+		{
+			this.asyncEvalThreads = bigAsyncEvalThreads == null ? 0 : bigAsyncEvalThreads.intValueExact();
+		} catch (final ArithmeticException e)
+		{
+			throw new IllegalArgumentException("Invalid asyncEvaluationThreads: " + bigAsyncEvalThreads, e);
+		}
+
+		final BigInteger bigAsyncEvalQueueCapacity = pdpJaxbConf.getAsyncEvaluationQueueCapacity();
+		try
+		{
+			this.asyncEvalQueueCapacity = bigAsyncEvalQueueCapacity == null ? AsyncEvaluationExecutor.DEFAULT_QUEUE_CAPACITY : bigAsyncEvalQueueCapacity.intValueExact();
+		} catch (final ArithmeticException e)
+		{
+			throw new IllegalArgumentException("Invalid asyncEvaluationQueueCapacity: " + bigAsyncEvalQueueCapacity, e);
+		}
+
 		final List<InOutProcChain> inoutProcChains = pdpJaxbConf.getIoProcChains();
 
 		if (inoutProcChains.isEmpty())
@@ -730,6 +1023,16 @@ public final class PdpEngineConfiguration
 		return xacmlExpressionFactory;
 	}
 
+	/**
+	 * Returns the registry of policy/rule combining algorithms
+	 * 
+	 * @return the combining algorithm registry
+	 */
+	public CombiningAlgRegistry getCombiningAlgRegistry()
+	{
+		return combiningAlgRegistry;
+	}
+
 	/**
 	 * Returns the Root Policy Provider in charge of providing the root policy where the PDP starts evaluation
 	 * 
@@ -740,6 +1043,27 @@ public final class PdpEngineConfiguration
 		return rootPolicyProvider;
 	}
 
+	/**
+	 * Returns the refPolicyProvider used by the Root Policy Provider to resolve policy references, if any
+	 * 
+	 * @return the refPolicyProvider; empty if none
+	 */
+	Optional<CloseableRefPolicyProvider> getRefPolicyProvider()
+	{
+		return refPolicyProvider;
+	}
+
+	/**
+	 * Returns the environment of the PDP that policy snapshots must have been created in to be loaded by it (see {@link PolicySnapshotRootPolicyProvider}), and in which
+	 * {@link PolicySnapshot#write(Pdp, EnvironmentProperties, java.io.OutputStream)} creates them
+	 * 
+	 * @return policy snapshot environment
+	 */
+	public PolicySnapshot.Environment getPolicySnapshotEnvironment()
+	{
+		return policySnapshotEnvironment;
+	}
+
 	/**
 	 * Returns true iff strict Attribute Issuer matching is enabled, in which case we require that all AttributeDesignators set the Issuer field.
 	 * <p>
@@ -769,6 +1093,100 @@ public final class PdpEngineConfiguration
 		return stdEnvAttributeSource;
 	}
 
+	/**
+	 * Returns the granularity of the PDP clock used to issue the standard Environment attributes (current-time, current-date and current-dateTime), i.e. the period during which the same values are
+	 * reused for all requests.
+	 * 
+	 * @return the clock tick in milliseconds; 0 iff new values are issued for each request
+	 */
+	public long getStdEnvAttributeTickMillis()
+	{
+		return stdEnvAttributeTickMillis;
+	}
+
+	/**
+	 * Returns the maximum number of nodes of the decision diagram into which the root policy is compiled if it is static (see {@link org.ow2.authzforce.core.pdp.impl.policy.RootPolicyEvaluators.Base#toStatic(int)})
+	 * 
+	 * @return maximum number of decision diagram nodes; 0 iff the root policy is not compiled
+	 */
+	public int getDecisionDiagramMaxNodeCount()
+	{
+		return decisionDiagramMaxNodeCount;
+	}
+
+	/**
+	 * Returns the delay between the last change of the policy files and the reload of the policies, if hot reload is enabled (see {@link RootPolicyEvaluators.Reloadable})
+	 * 
+	 * @return policy reload delay in milliseconds; 0 iff hot reload is disabled
+	 */
+	public long getPolicyReloadDelayMillis()
+	{
+		return policyReloadDelayMillis;
+	}
+
+	/**
+	 * Returns the time to live of the cached resolutions of policy references by the refPolicyProvider if it is dynamic (see {@link CachingRefPolicyProvider})
+	 * 
+	 * @return time to live in milliseconds; 0 iff the policy references are not cached
+	 */
+	public long getRefPolicyResolutionCacheTtlMillis()
+	{
+		return refPolicyResolutionCacheTtlMillis;
+	}
+
+	/**
+	 * Returns the locations of the policies loaded by the root and reference policy providers, if they are the core static ones (StaticRootPolicyProvider or PolicySnapshotRootPolicyProvider, StaticRefPolicyProvider or PolicyStoreRefPolicyProvider), with the
+	 * placeholders replaced. These are the locations watched for changes if hot reload is enabled.
+	 * 
+	 * @return policy locations (may include file path patterns)
+	 */
+	public List<String> getPolicyLocations()
+	{
+		return policyLocations;
+	}
+
+	/**
+	 * Returns the loader creating a new root policy provider (and reference policy provider if any) from the same configuration, i.e. loading the policies again, e.g. for hot reload
+	 * 
+	 * @return root policy provider loader
+	 */
+	public RootPolicyEvaluators.Reloadable.Loader getRootPolicyProviderLoader()
+	{
+		return rootPolicyProviderLoader;
+	}
+
+	/**
+	 * Returns true iff the Matches (in Targets) and Conditions of the policies are compiled into type-specialized evaluators (see {@link CompiledEvaluators})
+	 * 
+	 * @return true iff Target/Condition compilation is enabled
+	 */
+	public boolean isEvaluatorCompilationEnabled()
+	{
+		return evaluatorCompilationEnabled;
+	}
+
+	/**
+	 * Returns true iff the policies are partially evaluated at loading time (see {@link PartialEvaluation}); the number of nodes eliminated so far is given by
+	 * {@link PartialEvaluation#getEliminatedNodeCount(ExpressionFactory)} applied to {@link #getXacmlExpressionFactory()}
+	 * 
+	 * @return true iff partial evaluation is enabled
+	 */
+	public boolean isPartialEvaluationEnabled()
+	{
+		return partialEvaluationEnabled;
+	}
+
+	/**
+	 * Returns true iff the Rules of the deny/permit-overrides rule-combining algorithms and the arguments of the functions 'and'/'or' are evaluated in an order adapted to evaluation statistics
+	 * (see {@link AdaptiveEvaluationOrder}), when the result does not depend on it
+	 * 
+	 * @return true iff adaptive evaluation order is enabled
+	 */
+	public boolean isAdaptiveEvaluationOrderEnabled()
+	{
+		return adaptiveEvaluationOrderEnabled;
+	}
+
 	/**
 	 * Returns the level of verbosity of the error message trace returned in case of client request errors, e.g. invalid requests. Increasing this value usually helps the clients better pinpoint the
 	 * issue with their Requests. This parameter is relevant to the Result postprocessor ('resultPostproc' parameter) which is expected to enforce this verbosity level when returning Indeterminate
@@ -792,6 +1210,47 @@ public final class PdpEngineConfiguration
 		return decisionCache;
 	}
 
+	/**
+	 * Returns the minimum number of Individual Decision Requests in a Multiple Decision Request for the PDP engine to evaluate them in parallel. Below this threshold, they are evaluated sequentially.
+	 * 
+	 * @return the parallel evaluation threshold; negative iff parallel evaluation is disabled
+	 */
+	public int getParallelEvaluationThreshold()
+	{
+		return this.parallelEvalThreshold;
+	}
+
+	/**
+	 * Returns the number of threads of the PDP engine's own ForkJoinPool used for parallel evaluation of Individual Decision Requests (relevant only if {@link #getParallelEvaluationThreshold()} is
+	 * positive).
+	 * 
+	 * @return the parallel evaluation thread count; 0 iff the JVM-wide common ForkJoinPool is used instead of a dedicated one
+	 */
+	public int getParallelEvaluationThreads()
+	{
+		return this.parallelEvalThreads;
+	}
+
+	/**
+	 * Returns the maximum number of threads used by the PDP engine for asynchronous evaluation (see {@link BasePdpEngine#evaluateAsync(org.ow2.authzforce.core.pdp.api.DecisionRequest)})
+	 * 
+	 * @return the async evaluation thread count; 0 iff it is the number of available processors
+	 */
+	public int getAsyncEvaluationThreads()
+	{
+		return this.asyncEvalThreads;
+	}
+
+	/**
+	 * Returns the maximum number of asynchronous evaluation tasks waiting for a thread, beyond which new tasks are rejected
+	 * 
+	 * @return the async evaluation queue capacity
+	 */
+	public int getAsyncEvaluationQueueCapacity()
+	{
+		return this.asyncEvalQueueCapacity;
+	}
+
 	/**
 	 * Returns the processor chains that can be applied to PDP engine input/output, by input type
 	 * 
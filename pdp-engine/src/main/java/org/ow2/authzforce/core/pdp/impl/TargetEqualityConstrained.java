@@ -0,0 +1,34 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.List;
+
+/**
+ * Policy element (e.g. Policy(Set) evaluator) whose Target is known at policy loading time to require specific attribute values in order to match. Combining algorithms use this to index the children
+ * of a PolicySet by attribute value.
+ */
+public interface TargetEqualityConstrained
+{
+	/**
+	 * Gets the equality constraints of this element's Target, i.e. the necessary conditions for the Target to match (one per eligible AnyOf)
+	 *
+	 * @return constraints; empty if none (e.g. empty Target)
+	 */
+	List<TargetEqualityConstraint> getTargetEqualityConstraints();
+}
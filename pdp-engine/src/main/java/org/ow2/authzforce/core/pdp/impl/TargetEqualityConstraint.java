@@ -0,0 +1,135 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl;
+
+import java.util.Objects;
+import java.util.Set;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeDesignatorExpression;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Necessary condition for a Target to match, derived at policy loading time from one of its AnyOf elements where every AllOf has a Match comparing the same AttributeDesignator to a constant
+ * AttributeValue with an equality function ({@code string-equal}, {@code integer-equal}, etc.): if the bag returned by the AttributeDesignator contains none of the constraint {@link #getValues()},
+ * the Target evaluates to False (No match), whatever the other Matches evaluate to.
+ * <p>
+ * Used to index the children of a PolicySet by attribute value, in order to evaluate only the children that may match the request.
+ */
+public final class TargetEqualityConstraint
+{
+	/**
+	 * Identifies the attribute compared by a constraint: AttributeDesignator's attribute name, datatype and MustBePresent flag. Two constraints with equal keys may be checked with a single evaluation
+	 * of the AttributeDesignator.
+	 */
+	public static final class AttributeKey
+	{
+		private final AttributeFqn attributeFqn;
+		private final Datatype<?> datatype;
+		private final boolean isNonEmptyBagRequired;
+		private final int hashCode;
+
+		AttributeKey(final AttributeDesignatorExpression<?> attributeDesignator)
+		{
+			this.attributeFqn = attributeDesignator.getAttributeFQN();
+			this.datatype = attributeDesignator.getReturnType();
+			this.isNonEmptyBagRequired = attributeDesignator.isNonEmptyBagRequired();
+			this.hashCode = Objects.hash(attributeFqn, datatype, isNonEmptyBagRequired);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+
+			if (!(obj instanceof AttributeKey))
+			{
+				return false;
+			}
+
+			final AttributeKey other = (AttributeKey) obj;
+			return isNonEmptyBagRequired == other.isNonEmptyBagRequired && attributeFqn.equals(other.attributeFqn) && datatype.equals(other.datatype);
+		}
+
+		@Override
+		public String toString()
+		{
+			return attributeFqn + " (datatype=" + datatype + ", mustBePresent=" + isNonEmptyBagRequired + ")";
+		}
+	}
+
+	private final AttributeDesignatorExpression<?> attributeDesignator;
+	private final AttributeKey attributeKey;
+	private final Set<AttributeValue> values;
+
+	TargetEqualityConstraint(final AttributeDesignatorExpression<?> attributeDesignator, final Set<AttributeValue> values)
+	{
+		assert attributeDesignator != null && values != null && !values.isEmpty();
+		this.attributeDesignator = attributeDesignator;
+		this.attributeKey = new AttributeKey(attributeDesignator);
+		this.values = ImmutableSet.copyOf(values);
+	}
+
+	/**
+	 * Gets the AttributeDesignator whose result must contain one of {@link #getValues()} for the Target to match
+	 *
+	 * @return AttributeDesignator
+	 */
+	public AttributeDesignatorExpression<?> getAttributeDesignator()
+	{
+		return attributeDesignator;
+	}
+
+	/**
+	 * Gets the key identifying the attribute compared by this constraint
+	 *
+	 * @return attribute key
+	 */
+	public AttributeKey getAttributeKey()
+	{
+		return attributeKey;
+	}
+
+	/**
+	 * Gets the values of which at least one must be in the AttributeDesignator result for the Target to match
+	 *
+	 * @return immutable non-empty set of values
+	 */
+	public Set<AttributeValue> getValues()
+	{
+		return values;
+	}
+
+	@Override
+	public String toString()
+	{
+		return attributeKey + " in " + values;
+	}
+}
@@ -18,14 +18,26 @@
 package org.ow2.authzforce.core.pdp.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeDesignatorExpression;
 import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualEvaluationContext;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualPredicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableList;
+
 import net.sf.saxon.s9api.XPathCompiler;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.AnyOf;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.Target;
@@ -57,6 +69,77 @@ public final class TargetEvaluators
 		}
 	};
 
+	/**
+	 * Target evaluator that always evaluates to False (match no request), result of partial evaluation (see {@link PartialEvaluation}) of a Target with a constant False (No-match) AnyOf
+	 */
+	public static final BooleanEvaluator MATCH_NONE_TARGET_EVALUATOR = new BooleanEvaluator()
+	{
+
+		@Override
+		public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			LOGGER.debug("Target constant No-match -> False");
+			return false;
+		}
+	};
+
+	/**
+	 * Gets the equality constraint of an AnyOf if every AllOf in it has at least one equality Match on the same attribute (see {@link MatchEvaluator#getEqualityMatchDesignator()})
+	 *
+	 * @param anyOfEvaluator
+	 *            AnyOf evaluator
+	 * @return constraint; null if none
+	 */
+	private static TargetEqualityConstraint getEqualityConstraint(final AnyOfEvaluator anyOfEvaluator)
+	{
+		/*
+		 * Candidate attributes are those with an equality Match in the first AllOf; then keep only those found in every other AllOf (all values are kept, because any AllOf may match)
+		 */
+		Map<TargetEqualityConstraint.AttributeKey, TargetEqualityConstraint> candidates = null;
+		for (final AllOfEvaluator allOfEvaluator : anyOfEvaluator.getAllOfEvaluators())
+		{
+			final Map<TargetEqualityConstraint.AttributeKey, TargetEqualityConstraint> allOfConstraints = new LinkedHashMap<>();
+			for (final MatchEvaluator matchEvaluator : allOfEvaluator.getMatchEvaluators())
+			{
+				final AttributeDesignatorExpression<?> designator = matchEvaluator.getEqualityMatchDesignator();
+				if (designator == null)
+				{
+					continue;
+				}
+
+				final TargetEqualityConstraint matchConstraint = new TargetEqualityConstraint(designator, Collections.singleton(matchEvaluator.getEqualityMatchValue()));
+				final TargetEqualityConstraint previousConstraint = candidates == null ? null : candidates.get(matchConstraint.getAttributeKey());
+				if (candidates != null && previousConstraint == null)
+				{
+					// not a candidate (no equality Match on this attribute in a previous AllOf)
+					continue;
+				}
+
+				allOfConstraints.merge(matchConstraint.getAttributeKey(), previousConstraint == null ? matchConstraint : union(previousConstraint, matchConstraint), TargetEvaluators::union);
+			}
+
+			if (allOfConstraints.isEmpty())
+			{
+				return null;
+			}
+
+			candidates = allOfConstraints;
+		}
+
+		/*
+		 * By construction, there is at least one AllOf
+		 */
+		assert candidates != null;
+		return candidates.values().iterator().next();
+	}
+
+	private static TargetEqualityConstraint union(final TargetEqualityConstraint constraint1, final TargetEqualityConstraint constraint2)
+	{
+		final Set<AttributeValue> values = new HashSet<>(constraint1.getValues());
+		values.addAll(constraint2.getValues());
+		return new TargetEqualityConstraint(constraint1.getAttributeDesignator(), values);
+	}
+
 	private static final class NonEmptyTargetEvaluator implements BooleanEvaluator
 	{
 		// Have a copy of AnyOf evaluators to avoid cast from JAXB AnyOf in
@@ -64,6 +147,10 @@ public final class TargetEvaluators
 		// non-null
 		private final List<AnyOfEvaluator> anyOfEvaluatorList;
 
+		private final List<TargetEqualityConstraint> equalityConstraints;
+
+		private final Optional<Boolean> constantResult;
+
 		private NonEmptyTargetEvaluator(final List<AnyOf> jaxbAnyOfList, final XPathCompiler xPathCompiler,
 				final ExpressionFactory expFactory) throws IllegalArgumentException
 		{
@@ -86,6 +173,54 @@ public final class TargetEvaluators
 				anyOfEvaluatorList.add(anyOfEvaluator);
 				childIndex++;
 			}
+
+			/*
+			 * Partial evaluation: a constant False AnyOf makes the Target False; constant True AnyOfs have no effect (if all are, the Target is True)
+			 */
+			if (PartialEvaluation.isEnabled(expFactory))
+			{
+				if (anyOfEvaluatorList.stream().anyMatch(anyOfEvaluator -> anyOfEvaluator.getConstantResult().equals(Optional.of(Boolean.FALSE))))
+				{
+					PartialEvaluation.countEliminatedNodes(expFactory, anyOfEvaluatorList.size());
+					this.constantResult = Optional.of(Boolean.FALSE);
+				}
+				else
+				{
+					final int anyOfCount = anyOfEvaluatorList.size();
+					anyOfEvaluatorList.removeIf(anyOfEvaluator -> anyOfEvaluator.getConstantResult().isPresent());
+					PartialEvaluation.countEliminatedNodes(expFactory, anyOfCount - anyOfEvaluatorList.size());
+					this.constantResult = anyOfEvaluatorList.isEmpty() ? Optional.of(Boolean.TRUE) : Optional.empty();
+				}
+			}
+			else
+			{
+				this.constantResult = Optional.empty();
+			}
+
+			final ImmutableList.Builder<TargetEqualityConstraint> equalityConstraintsBuilder = ImmutableList.builder();
+			// if constant, this evaluator is replaced anyway (and the constant AnyOfs may be empty)
+			for (final AnyOfEvaluator anyOfEvaluator : constantResult.isPresent() ? Collections.<AnyOfEvaluator> emptyList() : anyOfEvaluatorList)
+			{
+				final TargetEqualityConstraint equalityConstraint = getEqualityConstraint(anyOfEvaluator);
+				if (equalityConstraint != null)
+				{
+					equalityConstraintsBuilder.add(equalityConstraint);
+				}
+			}
+
+			this.equalityConstraints = equalityConstraintsBuilder.build();
+		}
+
+		@Override
+		public ResidualPredicate evaluatePartially(final ResidualEvaluationContext context)
+		{
+			final List<ResidualPredicate> residualAnyOfs = new ArrayList<>(anyOfEvaluatorList.size());
+			for (final AnyOfEvaluator anyOfEvaluator : anyOfEvaluatorList)
+			{
+				residualAnyOfs.add(anyOfEvaluator.evaluatePartially(context));
+			}
+
+			return ResidualPredicate.and(residualAnyOfs);
 		}
 
 		/**
@@ -188,7 +323,8 @@ public final class TargetEvaluators
 	 *            XPath version
 	 * @param expressionFactory
 	 *            Expression factory for parsing XACML Expressions
-	 * @return instance of Target evaluator
+	 * @return instance of Target evaluator ({@link #MATCH_ALL_TARGET_EVALUATOR} if the Target is null/empty, or always matches after partial evaluation; {@link #MATCH_NONE_TARGET_EVALUATOR} if it never
+	 *         matches after partial evaluation)
 	 * @throws java.lang.IllegalArgumentException
 	 *             if target is not null/empty AND: either ({@code expFactory}
 	 *             is null OR one of the Match elements in one of the
@@ -208,7 +344,46 @@ public final class TargetEvaluators
 			return MATCH_ALL_TARGET_EVALUATOR;
 		}
 
-		return new NonEmptyTargetEvaluator(anyOfs, xPathCompiler, expressionFactory);
+		final NonEmptyTargetEvaluator targetEvaluator = new NonEmptyTargetEvaluator(anyOfs, xPathCompiler, expressionFactory);
+		if (targetEvaluator.constantResult.isPresent())
+		{
+			LOGGER.debug("Target constant (partial evaluation) -> {}", targetEvaluator.constantResult.get());
+			return targetEvaluator.constantResult.get() ? MATCH_ALL_TARGET_EVALUATOR : MATCH_NONE_TARGET_EVALUATOR;
+		}
+
+		return targetEvaluator;
+	}
+
+	/**
+	 * Gets the equality constraints of a Target, i.e. necessary conditions for the Target to match, derived from the AnyOf elements where every AllOf has an equality Match (e.g. {@code string-equal})
+	 * between the same AttributeDesignator and a constant AttributeValue. If the AttributeDesignator result contains none of the values of one of these constraints, the Target does not match,
+	 * whatever the other Matches evaluate to (a False AnyOf makes the Target False, even if other AnyOfs are Indeterminate).
+	 *
+	 * @param targetEvaluator
+	 *            Target evaluator returned by {@link #getInstance(Target, XPathCompiler, ExpressionFactory)}
+	 * @return constraints (one per eligible AnyOf, in order of declaration); empty if none
+	 */
+	public static List<TargetEqualityConstraint> getEqualityConstraints(final BooleanEvaluator targetEvaluator)
+	{
+		return targetEvaluator instanceof NonEmptyTargetEvaluator ? ((NonEmptyTargetEvaluator) targetEvaluator).equalityConstraints : Collections.emptyList();
+	}
+
+	/**
+	 * Gets the AnyOf evaluators of a Target, e.g. to compile the Target into another form of evaluator
+	 *
+	 * @param targetEvaluator
+	 *            Target evaluator
+	 * @return AnyOf evaluators, in order of declaration (immutable); empty if the Target matches all ({@link #MATCH_ALL_TARGET_EVALUATOR}); null if {@code targetEvaluator} was not returned by
+	 *         {@link #getInstance(Target, XPathCompiler, ExpressionFactory)} (unknown structure)
+	 */
+	public static List<AnyOfEvaluator> getAnyOfEvaluators(final BooleanEvaluator targetEvaluator)
+	{
+		if (targetEvaluator == MATCH_ALL_TARGET_EVALUATOR)
+		{
+			return Collections.emptyList();
+		}
+
+		return targetEvaluator instanceof NonEmptyTargetEvaluator ? Collections.unmodifiableList(((NonEmptyTargetEvaluator) targetEvaluator).anyOfEvaluatorList) : null;
 	}
 
 	private TargetEvaluators()
@@ -0,0 +1,721 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.cache;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.ow2.authzforce.core.pdp.api.DecisionCache;
+import org.ow2.authzforce.core.pdp.api.DecisionRequest;
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.api.EnvironmentProperties;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValueFactoryRegistry;
+import org.ow2.authzforce.core.xmlns.pdp.InMemoryDecisionCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Bounded in-memory {@link DecisionCache} with W-TinyLFU-style admission and eviction policy.
+ * <p>
+ * New entries are added to a small LRU admission window (1% of the maximum size). When the window overflows, its least recently used entries become candidates for the main space, which is a
+ * segmented LRU made of a probation segment and a protected segment (80% of the main space). When the cache exceeds its maximum size, each candidate competes with the least recently used entry of
+ * the probation segment (the victim): the one with the lowest estimated access frequency - according to a {@link FrequencySketch} - is evicted. Entries accessed again while in probation are promoted
+ * to the protected segment. This retains frequently requested decisions better than a plain LRU cache, in particular when bursts of one-off requests would otherwise flush popular entries.
+ * <p>
+ * The cache may be bounded by number of entries and/or by total weight, where the weight of an entry estimates its memory footprint (see {@link #weigh(DecisionRequest, DecisionResult)}).
+ * Entries expire after a time-to-live, which may be different for negative results (NotApplicable, Indeterminate). Negative results may also not be cached at all.
+ * <p>
+ * This cache does not need the evaluation context ({@link #isEvaluationContextRequired()} returns false), therefore {@link #getAll(List)} and {@link #putAll(Map)} are used for Multiple Decision
+ * Requests; each acquires the cache lock only once for the whole batch.
+ * <p>
+ * Thread-safe.
+ */
+public final class CoreDecisionCache implements InvalidatableDecisionCache
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(CoreDecisionCache.class);
+
+	private static final IllegalArgumentException ILLEGAL_JAXBCONF_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined DecisionCache configuration (JAXB/XML)");
+
+	/**
+	 * Factory of {@link CoreDecisionCache} from XML/JAXB configuration ({@link InMemoryDecisionCache})
+	 */
+	public static final class Factory extends DecisionCache.Factory<InMemoryDecisionCache>
+	{
+
+		@Override
+		public Class<InMemoryDecisionCache> getJaxbClass()
+		{
+			return InMemoryDecisionCache.class;
+		}
+
+		private static long toLong(final BigInteger bigInt, final String paramName)
+		{
+			try
+			{
+				return bigInt.longValueExact();
+			}
+			catch (final ArithmeticException e)
+			{
+				throw new IllegalArgumentException("Invalid DecisionCache parameter '" + paramName + "': " + bigInt, e);
+			}
+		}
+
+		@Override
+		public DecisionCache getInstance(final InMemoryDecisionCache jaxbConf, final AttributeValueFactoryRegistry attributeValueFactories, final EnvironmentProperties environmentProperties)
+		{
+			if (jaxbConf == null)
+			{
+				throw ILLEGAL_JAXBCONF_ARGUMENT_EXCEPTION;
+			}
+
+			final long timeToLiveSec = toLong(jaxbConf.getTimeToLiveSec(), "timeToLiveSec");
+			final BigInteger bigNegativeTimeToLiveSec = jaxbConf.getNegativeTimeToLiveSec();
+			return new CoreDecisionCache(toLong(jaxbConf.getMaxElementsInMemory(), "maxElementsInMemory"), toLong(jaxbConf.getMaxWeight(), "maxWeight"), timeToLiveSec,
+					bigNegativeTimeToLiveSec == null ? timeToLiveSec : toLong(bigNegativeTimeToLiveSec, "negativeTimeToLiveSec"), jaxbConf.isCacheNotApplicable(),
+					jaxbConf.isCacheIndeterminate());
+		}
+	}
+
+	private enum Segment
+	{
+		WINDOW, PROBATION, PROTECTED
+	}
+
+	private static final class Node
+	{
+		private final DecisionRequest key;
+		private final int hash;
+		private DecisionResult value;
+		private long weight;
+		private long expiresAtNanos;
+		private Segment segment;
+		private Node prev;
+		private Node next;
+
+		private Node(final DecisionRequest key, final int hash)
+		{
+			this.key = key;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * Doubly-linked list of nodes in access order (least recently used first)
+	 */
+	private static final class AccessOrderQueue
+	{
+		private Node head = null;
+		private Node tail = null;
+		// total cost of nodes in this queue
+		private long cost = 0;
+
+		private void addLast(final Node node, final long nodeCost)
+		{
+			node.prev = tail;
+			node.next = null;
+			if (tail == null)
+			{
+				head = node;
+			}
+			else
+			{
+				tail.next = node;
+			}
+
+			tail = node;
+			cost += nodeCost;
+		}
+
+		private void remove(final Node node, final long nodeCost)
+		{
+			if (node.prev == null)
+			{
+				head = node.next;
+			}
+			else
+			{
+				node.prev.next = node.next;
+			}
+
+			if (node.next == null)
+			{
+				tail = node.prev;
+			}
+			else
+			{
+				node.next.prev = node.prev;
+			}
+
+			node.prev = null;
+			node.next = null;
+			cost -= nodeCost;
+		}
+
+		private void moveToLast(final Node node, final long nodeCost)
+		{
+			if (node != tail)
+			{
+				remove(node, nodeCost);
+				addLast(node, nodeCost);
+			}
+		}
+
+		private void clear()
+		{
+			head = null;
+			tail = null;
+			cost = 0;
+		}
+	}
+
+	private final long maxEntries;
+	private final long maxWeight;
+	private final boolean isBounded;
+	private final long windowMaxCost;
+	private final long protectedMaxCost;
+	private final long timeToLiveNanos;
+	private final long negativeTimeToLiveNanos;
+	private final boolean cacheNotApplicable;
+	private final boolean cacheIndeterminate;
+
+	private final Object lock = new Object();
+	private final Map<DecisionRequest, Node> nodesByKey;
+	private final FrequencySketch sketch;
+	private final AccessOrderQueue window = new AccessOrderQueue();
+	private final AccessOrderQueue probation = new AccessOrderQueue();
+	private final AccessOrderQueue protectedSegment = new AccessOrderQueue();
+	private long totalWeight = 0;
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * Creates cache
+	 *
+	 * @param maxEntries
+	 *            maximum number of entries, 0 meaning unlimited
+	 * @param maxWeight
+	 *            maximum total weight of entries, 0 meaning unlimited. If positive, the admission window and main space are sized by weight instead of number of entries.
+	 * @param timeToLiveSec
+	 *            time to live (in seconds) of an entry after it is created or updated, 0 meaning infinite
+	 * @param negativeTimeToLiveSec
+	 *            time to live (in seconds) of a NotApplicable or Indeterminate result, 0 meaning infinite
+	 * @param cacheNotApplicable
+	 *            true iff NotApplicable results are cached
+	 * @param cacheIndeterminate
+	 *            true iff Indeterminate results are cached
+	 * @throws IllegalArgumentException
+	 *             if any of the numeric arguments is negative
+	 */
+	public CoreDecisionCache(final long maxEntries, final long maxWeight, final long timeToLiveSec, final long negativeTimeToLiveSec, final boolean cacheNotApplicable,
+			final boolean cacheIndeterminate) throws IllegalArgumentException
+	{
+		Preconditions.checkArgument(maxEntries >= 0, "Invalid maxEntries (< 0): %s", maxEntries);
+		Preconditions.checkArgument(maxWeight >= 0, "Invalid maxWeight (< 0): %s", maxWeight);
+		Preconditions.checkArgument(timeToLiveSec >= 0, "Invalid timeToLiveSec (< 0): %s", timeToLiveSec);
+		Preconditions.checkArgument(negativeTimeToLiveSec >= 0, "Invalid negativeTimeToLiveSec (< 0): %s", negativeTimeToLiveSec);
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		this.isBounded = maxEntries > 0 || maxWeight > 0;
+		this.timeToLiveNanos = timeToLiveSec == 0 ? Long.MAX_VALUE : TimeUnit.SECONDS.toNanos(timeToLiveSec);
+		this.negativeTimeToLiveNanos = negativeTimeToLiveSec == 0 ? Long.MAX_VALUE : TimeUnit.SECONDS.toNanos(negativeTimeToLiveSec);
+		this.cacheNotApplicable = cacheNotApplicable;
+		this.cacheIndeterminate = cacheIndeterminate;
+
+		final long maxCost = maxWeight > 0 ? maxWeight : maxEntries;
+		if (isBounded)
+		{
+			this.windowMaxCost = Math.max(1, maxCost / 100);
+			this.protectedMaxCost = (maxCost - windowMaxCost) * 8 / 10;
+			this.sketch = new FrequencySketch(maxEntries > 0 ? maxEntries : maxWeight);
+			this.nodesByKey = HashCollections.newUpdatableMap((int) Math.min(maxEntries > 0 ? maxEntries : maxWeight, 1 << 16));
+		}
+		else
+		{
+			this.windowMaxCost = Long.MAX_VALUE;
+			this.protectedMaxCost = Long.MAX_VALUE;
+			this.sketch = null;
+			this.nodesByKey = HashCollections.newUpdatableMap();
+		}
+	}
+
+	/**
+	 * Estimates the memory footprint of a cache entry: 1 + number of attribute values in the request + number of PEP actions (obligations/advice) and applicable policies in the result.
+	 *
+	 * @param request
+	 *            decision request (cache key)
+	 * @param result
+	 *            decision result (cached value)
+	 * @return entry weight
+	 */
+	static long weigh(final DecisionRequest request, final DecisionResult result)
+	{
+		long weight = 1;
+		final Map<?, AttributeBag<?>> namedAttributes = request.getNamedAttributes();
+		if (namedAttributes != null)
+		{
+			for (final AttributeBag<?> bag : namedAttributes.values())
+			{
+				weight += bag.size();
+			}
+		}
+
+		if (result.getPepActions() != null)
+		{
+			weight += result.getPepActions().size();
+		}
+
+		if (result.getApplicablePolicies() != null)
+		{
+			weight += result.getApplicablePolicies().size();
+		}
+
+		return weight;
+	}
+
+	private long costOf(final Node node)
+	{
+		return maxWeight > 0 ? node.weight : 1;
+	}
+
+	private AccessOrderQueue queueOf(final Node node)
+	{
+		switch (node.segment)
+		{
+			case WINDOW:
+				return window;
+			case PROBATION:
+				return probation;
+			default:
+				return protectedSegment;
+		}
+	}
+
+	/**
+	 * Get the time-to-live of a result, or a negative value if it must not be cached
+	 */
+	private long getTimeToLiveNanos(final DecisionResult result)
+	{
+		switch (result.getDecision())
+		{
+			case NOT_APPLICABLE:
+				return cacheNotApplicable ? negativeTimeToLiveNanos : -1;
+			case INDETERMINATE:
+				return cacheIndeterminate ? negativeTimeToLiveNanos : -1;
+			default:
+				return timeToLiveNanos;
+		}
+	}
+
+	private static long expiryTime(final long now, final long timeToLiveNanos)
+	{
+		return timeToLiveNanos == Long.MAX_VALUE || now + timeToLiveNanos < now ? Long.MAX_VALUE : now + timeToLiveNanos;
+	}
+
+	private void removeNode(final Node node)
+	{
+		queueOf(node).remove(node, costOf(node));
+		nodesByKey.remove(node.key);
+		totalWeight -= node.weight;
+	}
+
+	/*
+	 * Must be called with lock held
+	 */
+	private void onHit(final Node node)
+	{
+		switch (node.segment)
+		{
+			case WINDOW:
+				window.moveToLast(node, costOf(node));
+				break;
+			case PROBATION:
+				// promote to protected segment
+				probation.remove(node, costOf(node));
+				node.segment = Segment.PROTECTED;
+				protectedSegment.addLast(node, costOf(node));
+				// demote least recently used protected entries if protected segment is full
+				while (protectedSegment.cost > protectedMaxCost && protectedSegment.head != node)
+				{
+					final Node demoted = protectedSegment.head;
+					protectedSegment.remove(demoted, costOf(demoted));
+					demoted.segment = Segment.PROBATION;
+					probation.addLast(demoted, costOf(demoted));
+				}
+				break;
+			default:
+				protectedSegment.moveToLast(node, costOf(node));
+		}
+	}
+
+	/*
+	 * Must be called with lock held
+	 */
+	private DecisionResult getLocked(final DecisionRequest request, final int hash, final long now)
+	{
+		if (sketch != null)
+		{
+			sketch.increment(hash);
+		}
+
+		final Node node = nodesByKey.get(request);
+		if (node == null)
+		{
+			missCount.increment();
+			return null;
+		}
+
+		// System.nanoTime() may be negative, so Long.MAX_VALUE (no expiry) must not be compared by subtraction
+		if (node.expiresAtNanos != Long.MAX_VALUE && node.expiresAtNanos - now < 0)
+		{
+			removeNode(node);
+			missCount.increment();
+			return null;
+		}
+
+		hitCount.increment();
+		onHit(node);
+		return node.value;
+	}
+
+	/*
+	 * Must be called with lock held
+	 */
+	private void putLocked(final DecisionRequest request, final DecisionResult result, final long weight, final long expiresAtNanos)
+	{
+		final Node existingNode = nodesByKey.get(request);
+		if (existingNode != null)
+		{
+			final AccessOrderQueue queue = queueOf(existingNode);
+			queue.cost -= costOf(existingNode);
+			totalWeight -= existingNode.weight;
+			existingNode.value = result;
+			existingNode.weight = weight;
+			existingNode.expiresAtNanos = expiresAtNanos;
+			queue.cost += costOf(existingNode);
+			totalWeight += weight;
+			onHit(existingNode);
+			return;
+		}
+
+		final Node newNode = new Node(request, request.hashCode());
+		newNode.value = result;
+		newNode.weight = weight;
+		newNode.expiresAtNanos = expiresAtNanos;
+		newNode.segment = Segment.WINDOW;
+		nodesByKey.put(request, newNode);
+		window.addLast(newNode, costOf(newNode));
+		totalWeight += weight;
+	}
+
+	private boolean isOverBounds()
+	{
+		return maxEntries > 0 && nodesByKey.size() > maxEntries || maxWeight > 0 && totalWeight > maxWeight;
+	}
+
+	private void evict(final Node node)
+	{
+		removeNode(node);
+		evictionCount.increment();
+	}
+
+	/*
+	 * Must be called with lock held
+	 */
+	private void evictIfNeeded()
+	{
+		if (!isBounded)
+		{
+			return;
+		}
+
+		/*
+		 * Least recently used entries overflowing the admission window become candidates for the main space (added to the end of the probation segment)
+		 */
+		Node candidate = null;
+		while (window.cost > windowMaxCost && window.head != null)
+		{
+			final Node node = window.head;
+			window.remove(node, costOf(node));
+			node.segment = Segment.PROBATION;
+			probation.addLast(node, costOf(node));
+			if (candidate == null)
+			{
+				candidate = node;
+			}
+		}
+
+		/*
+		 * Each candidate competes with the least recently used entry of the probation segment (the victim): the least frequently used is evicted.
+		 */
+		while (isOverBounds())
+		{
+			Node victim = probation.head;
+			if (victim == null)
+			{
+				victim = protectedSegment.head != null ? protectedSegment.head : window.head;
+				if (victim == null)
+				{
+					break;
+				}
+
+				evict(victim);
+				continue;
+			}
+
+			if (candidate == null || candidate == victim)
+			{
+				if (candidate == victim)
+				{
+					candidate = candidate.next;
+				}
+
+				evict(victim);
+				continue;
+			}
+
+			final Node nextCandidate = candidate.next;
+			if (sketch.frequency(candidate.hash) > sketch.frequency(victim.hash))
+			{
+				evict(victim);
+			}
+			else
+			{
+				evict(candidate);
+			}
+
+			candidate = nextCandidate;
+		}
+	}
+
+	@Override
+	public boolean isEvaluationContextRequired()
+	{
+		return false;
+	}
+
+	@Override
+	public DecisionResult get(final DecisionRequest request, final EvaluationContext evalCtx)
+	{
+		if (request == null)
+		{
+			return null;
+		}
+
+		final int hash = request.hashCode();
+		final long now = System.nanoTime();
+		synchronized (lock)
+		{
+			return getLocked(request, hash, now);
+		}
+	}
+
+	@Override
+	public <DECISION_REQ_T extends DecisionRequest> Map<DECISION_REQ_T, DecisionResult> getAll(final List<DECISION_REQ_T> requests)
+	{
+		final Map<DECISION_REQ_T, DecisionResult> cachedResults = HashCollections.newUpdatableMap(requests.size());
+		final long now = System.nanoTime();
+		synchronized (lock)
+		{
+			for (final DECISION_REQ_T request : requests)
+			{
+				if (request == null)
+				{
+					continue;
+				}
+
+				final DecisionResult result = getLocked(request, request.hashCode(), now);
+				if (result != null)
+				{
+					cachedResults.put(request, result);
+				}
+			}
+		}
+
+		return cachedResults;
+	}
+
+	@Override
+	public void put(final DecisionRequest request, final DecisionResult result, final EvaluationContext evalCtx)
+	{
+		if (request == null || result == null)
+		{
+			return;
+		}
+
+		final long ttl = getTimeToLiveNanos(result);
+		if (ttl < 0)
+		{
+			LOGGER.debug("Result not cached (negative caching disabled for this decision): {}", result);
+			return;
+		}
+
+		final long weight = weigh(request, result);
+		if (maxWeight > 0 && weight > maxWeight)
+		{
+			LOGGER.debug("Result not cached (weight {} > maxWeight {}): {}", weight, maxWeight, result);
+			return;
+		}
+
+		final long expiresAt = expiryTime(System.nanoTime(), ttl);
+		synchronized (lock)
+		{
+			putLocked(request, result, weight, expiresAt);
+			evictIfNeeded();
+		}
+	}
+
+	@Override
+	public <DECISION_REQ_T extends DecisionRequest> void putAll(final Map<DECISION_REQ_T, DecisionResult> resultsByRequest)
+	{
+		/*
+		 * Compute weights and filter out non-cacheable results before acquiring the lock
+		 */
+		final long now = System.nanoTime();
+		final List<Node> newNodes = new ArrayList<>(resultsByRequest.size());
+		for (final Entry<DECISION_REQ_T, DecisionResult> reqAndResult : resultsByRequest.entrySet())
+		{
+			final DecisionRequest request = reqAndResult.getKey();
+			final DecisionResult result = reqAndResult.getValue();
+			if (request == null || result == null)
+			{
+				continue;
+			}
+
+			final long ttl = getTimeToLiveNanos(result);
+			if (ttl < 0)
+			{
+				continue;
+			}
+
+			final long weight = weigh(request, result);
+			if (maxWeight > 0 && weight > maxWeight)
+			{
+				continue;
+			}
+
+			final Node node = new Node(request, 0);
+			node.value = result;
+			node.weight = weight;
+			node.expiresAtNanos = expiryTime(now, ttl);
+			newNodes.add(node);
+		}
+
+		if (newNodes.isEmpty())
+		{
+			return;
+		}
+
+		synchronized (lock)
+		{
+			for (final Node node : newNodes)
+			{
+				putLocked(node.key, node.value, node.weight, node.expiresAtNanos);
+			}
+
+			evictIfNeeded();
+		}
+	}
+
+	/**
+	 * Returns the number of cache lookups that returned a cached result
+	 *
+	 * @return hit count
+	 */
+	public long getHitCount()
+	{
+		return hitCount.sum();
+	}
+
+	/**
+	 * Returns the number of cache lookups that did not return any result (no entry or expired entry)
+	 *
+	 * @return miss count
+	 */
+	public long getMissCount()
+	{
+		return missCount.sum();
+	}
+
+	/**
+	 * Returns the number of entries evicted because of size/weight limits (expired entries excluded)
+	 *
+	 * @return eviction count
+	 */
+	public long getEvictionCount()
+	{
+		return evictionCount.sum();
+	}
+
+	/**
+	 * Returns the current number of entries, including expired entries not removed yet
+	 *
+	 * @return number of entries
+	 */
+	public int size()
+	{
+		synchronized (lock)
+		{
+			return nodesByKey.size();
+		}
+	}
+
+	/**
+	 * Returns the current total weight of entries (see {@link #weigh(DecisionRequest, DecisionResult)})
+	 *
+	 * @return total weight
+	 */
+	public long getWeightedSize()
+	{
+		synchronized (lock)
+		{
+			return totalWeight;
+		}
+	}
+
+	@Override
+	public void invalidateAll()
+	{
+		synchronized (lock)
+		{
+			nodesByKey.clear();
+			window.clear();
+			probation.clear();
+			protectedSegment.clear();
+			totalWeight = 0;
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		invalidateAll();
+	}
+
+}
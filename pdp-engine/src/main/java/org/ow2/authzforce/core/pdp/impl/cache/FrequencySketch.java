@@ -0,0 +1,133 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.cache;
+
+/**
+ * Count-Min sketch with 4-bit counters, estimating the popularity of cache keys within a time window (TinyLFU). Each 64-bit table slot holds sixteen counters. Counters are halved every time the
+ * number of increments reaches a sample size (ten times the table length), so that the history decays and old popular keys do not stay popular forever (aging).
+ * <p>
+ * Not thread-safe: callers must synchronize access.
+ */
+final class FrequencySketch
+{
+	private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+	private static final long RESET_MASK = 0x7777777777777777L;
+
+	private static final int MAX_TABLE_LENGTH = 1 << 24;
+
+	private final long[] table;
+	private final int tableMask;
+	private final int sampleSize;
+	private int incrementCount = 0;
+
+	/**
+	 * Creates sketch
+	 *
+	 * @param expectedMaxDistinctKeys
+	 *            expected maximum number of distinct keys in the cache, used to size the sketch (rounded up to the next power of two)
+	 */
+	FrequencySketch(final long expectedMaxDistinctKeys)
+	{
+		final int tableLength = (int) Math.min(MAX_TABLE_LENGTH, Long.highestOneBit(Math.max(16, expectedMaxDistinctKeys - 1)) << 1);
+		this.table = new long[tableLength];
+		this.tableMask = tableLength - 1;
+		this.sampleSize = 10 * tableLength;
+	}
+
+	private static int spread(final int hash)
+	{
+		// Murmur3 fmix32
+		int h = hash;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private int indexOf(final int spreadHash, final int i)
+	{
+		long h = (spreadHash + SEEDS[i]) * SEEDS[i];
+		h += h >>> 32;
+		return (int) h & tableMask;
+	}
+
+	/**
+	 * Increments the popularity of a key, unless it is already at maximum (15)
+	 *
+	 * @param keyHash
+	 *            key hash code
+	 */
+	void increment(final int keyHash)
+	{
+		final int h = spread(keyHash);
+		// each hash function uses a different counter among the 16 of the table slot
+		final int start = (h & 3) << 2;
+		boolean incremented = false;
+		for (int i = 0; i < 4; i++)
+		{
+			final int index = indexOf(h, i);
+			final int offset = (start + i) << 2;
+			final long mask = 0xfL << offset;
+			if ((table[index] & mask) != mask)
+			{
+				table[index] += 1L << offset;
+				incremented = true;
+			}
+		}
+
+		if (incremented && ++incrementCount >= sampleSize)
+		{
+			reset();
+		}
+	}
+
+	/**
+	 * Returns the estimated popularity of a key
+	 *
+	 * @param keyHash
+	 *            key hash code
+	 * @return estimated frequency (0 to 15)
+	 */
+	int frequency(final int keyHash)
+	{
+		final int h = spread(keyHash);
+		final int start = (h & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++)
+		{
+			final int index = indexOf(h, i);
+			final int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+
+		return frequency;
+	}
+
+	private void reset()
+	{
+		for (int i = 0; i < table.length; i++)
+		{
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+
+		incrementCount /= 2;
+	}
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.cache;
+
+import org.ow2.authzforce.core.pdp.api.DecisionCache;
+
+/**
+ * {@link DecisionCache} that can be emptied at runtime, e.g. when the policies are reloaded (hot reload) and the cached decisions become obsolete, instead of waiting for the cache entries to expire.
+ */
+public interface InvalidatableDecisionCache extends DecisionCache
+{
+	/**
+	 * Removes all the cached results. The cache remains usable afterwards.
+	 */
+	void invalidateAll();
+}
@@ -0,0 +1,657 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.cache;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.DecisionCache;
+import org.ow2.authzforce.core.pdp.api.DecisionRequest;
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.api.EnvironmentProperties;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeSelectorExpression;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValueFactoryRegistry;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.XPathValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * {@link DecisionCache} keyed on the request attributes actually consumed by the policy evaluation, instead of the whole request. Requests that differ only by attributes never read by the policies
+ * (e.g. trace IDs or user-agent strings) therefore share the same cache entry.
+ * <p>
+ * On a cache miss, a listener is registered in the evaluation context to record the named attributes looked up during evaluation, in the order of first lookup (attributes found in the context are
+ * notified via {@link EvaluationContext.Listener#namedAttributeValueConsumed(AttributeFqn, AttributeBag)}, missing ones via
+ * {@link EvaluationContext.Listener#namedAttributeValueProduced(AttributeFqn, AttributeBag)} when the attribute provider sets their value). The result is then cached in a decision tree where each
+ * branch node tests one consumed attribute and each edge is the value (bag) of this attribute in the request - or its absence from the request -, leading eventually to the cached result (leaf).
+ * Since the policy evaluation is deterministic given the values of consumed attributes, the same attributes are consumed in the same order for any request that shares the values of the attributes
+ * tested so far. So the tree is walked from the root by getting the value of each tested attribute from the request, until a leaf (hit) or a missing edge (miss).
+ * <p>
+ * Only the values of request attributes are part of the key, as well as the absence of an attribute from the request. Therefore results that depend on values of attributes not in the request
+ * (issued by the PDP, e.g. current-dateTime, or fetched by attribute providers), or on PDP-issued values overriding request ones, are not cached, whatever the time to live. If a different attribute
+ * is consumed than the one tested by the existing tree node, the obsolete subtree is replaced.
+ * <p>
+ * Not cached either: results of requests with Content (which XPath-based functions may access without notification), results depending on AttributeSelectors, and Indeterminate results unless
+ * {@code cacheIndeterminate} is enabled (which is not recommended since an Indeterminate result caused by a request attribute with invalid datatype would not be keyed on this attribute).
+ * <p>
+ * The cache is bounded by the number of cached results, the least recently used results being evicted first.
+ * <p>
+ * Thread-safe.
+ */
+public final class RelevantAttributesDecisionCache implements InvalidatableDecisionCache
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(RelevantAttributesDecisionCache.class);
+
+	private static final IllegalArgumentException ILLEGAL_JAXBCONF_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined DecisionCache configuration (JAXB/XML)");
+
+	/**
+	 * Factory of {@link RelevantAttributesDecisionCache} from XML/JAXB configuration
+	 */
+	public static final class Factory extends DecisionCache.Factory<org.ow2.authzforce.core.xmlns.pdp.RelevantAttributesDecisionCache>
+	{
+
+		@Override
+		public Class<org.ow2.authzforce.core.xmlns.pdp.RelevantAttributesDecisionCache> getJaxbClass()
+		{
+			return org.ow2.authzforce.core.xmlns.pdp.RelevantAttributesDecisionCache.class;
+		}
+
+		private static long toLong(final BigInteger bigInt, final String paramName)
+		{
+			try
+			{
+				return bigInt.longValueExact();
+			}
+			catch (final ArithmeticException e)
+			{
+				throw new IllegalArgumentException("Invalid DecisionCache parameter '" + paramName + "': " + bigInt, e);
+			}
+		}
+
+		@Override
+		public DecisionCache getInstance(final org.ow2.authzforce.core.xmlns.pdp.RelevantAttributesDecisionCache jaxbConf, final AttributeValueFactoryRegistry attributeValueFactories,
+				final EnvironmentProperties environmentProperties)
+		{
+			if (jaxbConf == null)
+			{
+				throw ILLEGAL_JAXBCONF_ARGUMENT_EXCEPTION;
+			}
+
+			return new RelevantAttributesDecisionCache(toLong(jaxbConf.getMaxElementsInMemory(), "maxElementsInMemory"), toLong(jaxbConf.getTimeToLiveSec(), "timeToLiveSec"),
+					jaxbConf.isCacheIndeterminate());
+		}
+	}
+
+	/**
+	 * Records the attributes consumed during the evaluation of a request
+	 */
+	private static final class ConsumedAttributeRecorder implements EvaluationContext.Listener
+	{
+		// values used by the evaluation, in order of first lookup
+		private final Map<AttributeFqn, AttributeBag<?>> consumedAttributes = new LinkedHashMap<>();
+		private boolean isAttributeSelectorUsed = false;
+
+		@Override
+		public <AV extends AttributeValue> void namedAttributeValueProduced(final AttributeFqn attributeFqn, final AttributeBag<AV> value)
+		{
+			consumedAttributes.putIfAbsent(attributeFqn, value);
+		}
+
+		@Override
+		public <AV extends AttributeValue> void namedAttributeValueConsumed(final AttributeFqn attributeFqn, final AttributeBag<AV> value)
+		{
+			consumedAttributes.putIfAbsent(attributeFqn, value);
+		}
+
+		@Override
+		public <AV extends AttributeValue> void attributeSelectorResultProduced(final AttributeSelectorExpression<AV> attributeSelector,
+				final Optional<AttributeBag<XPathValue>> contextSelectorValue, final Bag<AV> result)
+		{
+			isAttributeSelectorUsed = true;
+		}
+
+		@Override
+		public <AV extends AttributeValue> void attributeSelectorResultConsumed(final AttributeSelectorExpression<AV> attributeSelector, final Bag<AV> value)
+		{
+			isAttributeSelectorUsed = true;
+		}
+	}
+
+	/*
+	 * Edge key used when the tested attribute is not in the request
+	 */
+	private static final Object ABSENT_ATTRIBUTE = new Object();
+
+	/*
+	 * Edge key from root holders to the actual tree root
+	 */
+	private static final Object ROOT_EDGE = new Object();
+
+	private static abstract class TreeNode
+	{
+		private Branch parent;
+		private Object edgeFromParent;
+	}
+
+	private static final class Branch extends TreeNode
+	{
+		// null for root holders
+		private final AttributeFqn testedAttribute;
+		private final Map<Object, TreeNode> children = HashCollections.newUpdatableMap();
+
+		private Branch(final AttributeFqn testedAttribute)
+		{
+			this.testedAttribute = testedAttribute;
+		}
+	}
+
+	private static final class Leaf extends TreeNode
+	{
+		private DecisionResult result;
+		private long expiresAtNanos;
+		// LRU list
+		private Leaf prev;
+		private Leaf next;
+	}
+
+	private final long maxEntries;
+	private final long timeToLiveNanos;
+	private final boolean cacheIndeterminate;
+
+	private final Object lock = new Object();
+	/*
+	 * Root holders, one for requests with ReturnPolicyIdList=false, one for ReturnPolicyIdList=true
+	 */
+	private final Branch[] rootHolders = { new Branch(null), new Branch(null) };
+	// least recently used first
+	private Leaf lruHead = null;
+	private Leaf lruTail = null;
+	private int leafCount = 0;
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * Creates cache
+	 *
+	 * @param maxEntries
+	 *            maximum number of cached results, 0 meaning unlimited
+	 * @param timeToLiveSec
+	 *            time to live (in seconds) of a cached result, 0 meaning infinite
+	 * @param cacheIndeterminate
+	 *            true iff Indeterminate results are cached
+	 * @throws IllegalArgumentException
+	 *             if {@code maxEntries < 0 || timeToLiveSec < 0}
+	 */
+	public RelevantAttributesDecisionCache(final long maxEntries, final long timeToLiveSec, final boolean cacheIndeterminate) throws IllegalArgumentException
+	{
+		Preconditions.checkArgument(maxEntries >= 0, "Invalid maxEntries (< 0): %s", maxEntries);
+		Preconditions.checkArgument(timeToLiveSec >= 0, "Invalid timeToLiveSec (< 0): %s", timeToLiveSec);
+		this.maxEntries = maxEntries;
+		this.timeToLiveNanos = timeToLiveSec == 0 ? Long.MAX_VALUE : TimeUnit.SECONDS.toNanos(timeToLiveSec);
+		this.cacheIndeterminate = cacheIndeterminate;
+	}
+
+	private static Object getEdgeKey(final DecisionRequest request, final AttributeFqn attributeFqn)
+	{
+		final Map<AttributeFqn, AttributeBag<?>> requestAttributes = request.getNamedAttributes();
+		final AttributeBag<?> bag = requestAttributes == null ? null : requestAttributes.get(attributeFqn);
+		return bag == null ? ABSENT_ATTRIBUTE : bag;
+	}
+
+	/*
+	 * Gets the first consumed attribute whose value does not come from the request, i.e. a value issued by the PDP or an attribute provider (the empty bag of an attribute missing from the request is
+	 * keyed by its absence)
+	 */
+	private static AttributeFqn getNonRequestConsumedAttribute(final DecisionRequest request, final Map<AttributeFqn, AttributeBag<?>> consumedAttributes)
+	{
+		final Map<AttributeFqn, AttributeBag<?>> requestAttributes = request.getNamedAttributes();
+		for (final Entry<AttributeFqn, AttributeBag<?>> consumedAttribute : consumedAttributes.entrySet())
+		{
+			final AttributeBag<?> requestBag = requestAttributes == null ? null : requestAttributes.get(consumedAttribute.getKey());
+			final AttributeBag<?> consumedBag = consumedAttribute.getValue();
+			if (requestBag == null ? !consumedBag.isEmpty() : !requestBag.equals(consumedBag))
+			{
+				return consumedAttribute.getKey();
+			}
+		}
+
+		return null;
+	}
+
+	private static boolean hasContent(final DecisionRequest request)
+	{
+		final Map<String, ?> extraContents = request.getExtraContentsByCategory();
+		return extraContents != null && !extraContents.isEmpty();
+	}
+
+	private Branch getRootHolder(final DecisionRequest request)
+	{
+		return rootHolders[request.isApplicablePolicyIdListReturned() ? 1 : 0];
+	}
+
+	private void addLruLast(final Leaf leaf)
+	{
+		leaf.prev = lruTail;
+		leaf.next = null;
+		if (lruTail == null)
+		{
+			lruHead = leaf;
+		}
+		else
+		{
+			lruTail.next = leaf;
+		}
+
+		lruTail = leaf;
+	}
+
+	private void unlinkLru(final Leaf leaf)
+	{
+		if (leaf.prev == null)
+		{
+			lruHead = leaf.next;
+		}
+		else
+		{
+			leaf.prev.next = leaf.next;
+		}
+
+		if (leaf.next == null)
+		{
+			lruTail = leaf.prev;
+		}
+		else
+		{
+			leaf.next.prev = leaf.prev;
+		}
+
+		leaf.prev = null;
+		leaf.next = null;
+	}
+
+	/*
+	 * Removes all leaves of a subtree from the LRU list. Must be called with lock held.
+	 */
+	private void discardLeaves(final TreeNode subtreeRoot)
+	{
+		final Deque<TreeNode> nodesToVisit = new ArrayDeque<>();
+		nodesToVisit.push(subtreeRoot);
+		while (!nodesToVisit.isEmpty())
+		{
+			final TreeNode node = nodesToVisit.pop();
+			if (node instanceof Leaf)
+			{
+				unlinkLru((Leaf) node);
+				leafCount--;
+			}
+			else
+			{
+				for (final TreeNode child : ((Branch) node).children.values())
+				{
+					nodesToVisit.push(child);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Detaches a node from the tree, and its ancestors that are left without children (except root holders). Must be called with lock held.
+	 */
+	private static void detach(final TreeNode node)
+	{
+		TreeNode child = node;
+		Branch parent = child.parent;
+		while (parent != null)
+		{
+			parent.children.remove(child.edgeFromParent);
+			if (!parent.children.isEmpty() || parent.testedAttribute == null)
+			{
+				break;
+			}
+
+			child = parent;
+			parent = child.parent;
+		}
+	}
+
+	private void removeLeaf(final Leaf leaf)
+	{
+		unlinkLru(leaf);
+		leafCount--;
+		detach(leaf);
+	}
+
+	private static void attach(final Branch parent, final Object edge, final TreeNode child)
+	{
+		child.parent = parent;
+		child.edgeFromParent = edge;
+		parent.children.put(edge, child);
+	}
+
+	/*
+	 * Must be called with lock held
+	 */
+	private DecisionResult getLocked(final DecisionRequest request, final long now)
+	{
+		TreeNode node = getRootHolder(request).children.get(ROOT_EDGE);
+		while (node instanceof Branch)
+		{
+			final Branch branch = (Branch) node;
+			node = branch.children.get(getEdgeKey(request, branch.testedAttribute));
+		}
+
+		if (node == null)
+		{
+			missCount.increment();
+			return null;
+		}
+
+		final Leaf leaf = (Leaf) node;
+		// System.nanoTime() may be negative, so Long.MAX_VALUE (no expiry) must not be compared by subtraction
+		if (leaf.expiresAtNanos != Long.MAX_VALUE && leaf.expiresAtNanos - now < 0)
+		{
+			removeLeaf(leaf);
+			missCount.increment();
+			return null;
+		}
+
+		hitCount.increment();
+		if (leaf != lruTail)
+		{
+			unlinkLru(leaf);
+			addLruLast(leaf);
+		}
+
+		return leaf.result;
+	}
+
+	/*
+	 * Must be called with lock held
+	 */
+	private void putLocked(final DecisionRequest request, final Set<AttributeFqn> consumedAttributes, final DecisionResult result, final long expiresAtNanos)
+	{
+		Branch parent = getRootHolder(request);
+		Object edge = ROOT_EDGE;
+		for (final AttributeFqn consumedAttribute : consumedAttributes)
+		{
+			final TreeNode node = parent.children.get(edge);
+			final Branch branch;
+			if (node instanceof Branch && ((Branch) node).testedAttribute.equals(consumedAttribute))
+			{
+				branch = (Branch) node;
+			}
+			else
+			{
+				if (node != null)
+				{
+					/*
+					 * A different attribute was consumed for the same values of previously consumed attributes, i.e. the result depends on something else than request attributes (e.g. the
+					 * policies have been reloaded). The existing subtree is considered obsolete.
+					 */
+					LOGGER.debug("Replacing cached decision subtree inconsistent with the attributes consumed by the last evaluation: {}", consumedAttributes);
+					discardLeaves(node);
+				}
+
+				branch = new Branch(consumedAttribute);
+				attach(parent, edge, branch);
+			}
+
+			parent = branch;
+			edge = getEdgeKey(request, consumedAttribute);
+		}
+
+		final TreeNode node = parent.children.get(edge);
+		final Leaf leaf;
+		if (node instanceof Leaf)
+		{
+			leaf = (Leaf) node;
+			unlinkLru(leaf);
+		}
+		else
+		{
+			if (node != null)
+			{
+				LOGGER.debug("Replacing cached decision subtree inconsistent with the attributes consumed by the last evaluation: {}", consumedAttributes);
+				discardLeaves(node);
+			}
+
+			leaf = new Leaf();
+			attach(parent, edge, leaf);
+			leafCount++;
+		}
+
+		leaf.result = result;
+		leaf.expiresAtNanos = expiresAtNanos;
+		addLruLast(leaf);
+
+		if (maxEntries > 0)
+		{
+			while (leafCount > maxEntries)
+			{
+				removeLeaf(lruHead);
+				evictionCount.increment();
+			}
+		}
+	}
+
+	@Override
+	public boolean isEvaluationContextRequired()
+	{
+		return true;
+	}
+
+	@Override
+	public DecisionResult get(final DecisionRequest request, final EvaluationContext evalCtx)
+	{
+		if (request == null)
+		{
+			return null;
+		}
+
+		if (hasContent(request))
+		{
+			missCount.increment();
+			return null;
+		}
+
+		final long now = System.nanoTime();
+		final DecisionResult cachedResult;
+		synchronized (lock)
+		{
+			cachedResult = getLocked(request, now);
+		}
+
+		if (cachedResult == null && evalCtx != null)
+		{
+			// record attributes consumed during evaluation for put()
+			evalCtx.putListener(ConsumedAttributeRecorder.class, new ConsumedAttributeRecorder());
+		}
+
+		return cachedResult;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Results are looked up like {@link #get(DecisionRequest, EvaluationContext)} without evaluation context, i.e. a miss does not prepare the recording of consumed attributes.
+	 */
+	@Override
+	public <DECISION_REQ_T extends DecisionRequest> Map<DECISION_REQ_T, DecisionResult> getAll(final List<DECISION_REQ_T> requests)
+	{
+		final Map<DECISION_REQ_T, DecisionResult> cachedResults = HashCollections.newUpdatableMap(requests.size());
+		final long now = System.nanoTime();
+		synchronized (lock)
+		{
+			for (final DECISION_REQ_T request : requests)
+			{
+				if (request == null || hasContent(request))
+				{
+					continue;
+				}
+
+				final DecisionResult result = getLocked(request, now);
+				if (result != null)
+				{
+					cachedResults.put(request, result);
+				}
+			}
+		}
+
+		return cachedResults;
+	}
+
+	@Override
+	public void put(final DecisionRequest request, final DecisionResult result, final EvaluationContext evalCtx)
+	{
+		if (request == null || result == null || evalCtx == null)
+		{
+			return;
+		}
+
+		final ConsumedAttributeRecorder recorder = evalCtx.getListener(ConsumedAttributeRecorder.class);
+		if (recorder == null)
+		{
+			LOGGER.debug("Result not cached (consumed attributes not recorded): {}", result);
+			return;
+		}
+
+		if (recorder.isAttributeSelectorUsed)
+		{
+			LOGGER.debug("Result not cached (AttributeSelector used): {}", result);
+			return;
+		}
+
+		if (result.getDecision() == DecisionType.INDETERMINATE && !cacheIndeterminate)
+		{
+			LOGGER.debug("Result not cached (Indeterminate): {}", result);
+			return;
+		}
+
+		final AttributeFqn nonRequestAttribute = getNonRequestConsumedAttribute(request, recorder.consumedAttributes);
+		if (nonRequestAttribute != null)
+		{
+			LOGGER.debug("Result not cached (depends on value of attribute {} not from the request): {}", nonRequestAttribute, result);
+			return;
+		}
+
+		final long now = System.nanoTime();
+		final long expiresAt = timeToLiveNanos == Long.MAX_VALUE || now + timeToLiveNanos < now ? Long.MAX_VALUE : now + timeToLiveNanos;
+		synchronized (lock)
+		{
+			putLocked(request, recorder.consumedAttributes.keySet(), result, expiresAt);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Does nothing since consumed attributes are only known from the evaluation context passed to {@link #put(DecisionRequest, DecisionResult, EvaluationContext)}. (Not called by the PDP engine
+	 * since {@link #isEvaluationContextRequired()} returns true.)
+	 */
+	@Override
+	public <DECISION_REQ_T extends DecisionRequest> void putAll(final Map<DECISION_REQ_T, DecisionResult> resultsByRequest)
+	{
+		LOGGER.debug("putAll() not supported (evaluation context required): {} result(s) not cached", resultsByRequest.size());
+	}
+
+	/**
+	 * Returns the number of cache lookups that returned a cached result
+	 *
+	 * @return hit count
+	 */
+	public long getHitCount()
+	{
+		return hitCount.sum();
+	}
+
+	/**
+	 * Returns the number of cache lookups that did not return any result
+	 *
+	 * @return miss count
+	 */
+	public long getMissCount()
+	{
+		return missCount.sum();
+	}
+
+	/**
+	 * Returns the number of results evicted because of the size limit
+	 *
+	 * @return eviction count
+	 */
+	public long getEvictionCount()
+	{
+		return evictionCount.sum();
+	}
+
+	/**
+	 * Returns the current number of cached results, including expired ones not removed yet
+	 *
+	 * @return number of cached results
+	 */
+	public int size()
+	{
+		synchronized (lock)
+		{
+			return leafCount;
+		}
+	}
+
+	@Override
+	public void invalidateAll()
+	{
+		synchronized (lock)
+		{
+			for (final Branch rootHolder : rootHolders)
+			{
+				rootHolder.children.clear();
+			}
+
+			lruHead = null;
+			lruTail = null;
+			leafCount = 0;
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		invalidateAll();
+	}
+
+}
@@ -0,0 +1,280 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.combining;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.ow2.authzforce.core.pdp.api.Decidable;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeDesignatorExpression;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.impl.TargetEqualityConstrained;
+import org.ow2.authzforce.core.pdp.impl.TargetEqualityConstraint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Inverted index of combined elements (children of a PolicySet) by the attribute values required by their Targets ({@link TargetEqualityConstrained}), built at policy loading time. For a given
+ * request, the index returns the candidate elements, i.e. all elements except the ones whose Target is sure not to match because the request does not have any of the values they require for the
+ * indexed attribute. Candidates are returned in the original order of the elements.
+ * <p>
+ * Skipping the other elements is safe for any combining algorithm that ignores NotApplicable results (no side effect), since these elements would evaluate to NotApplicable.
+ *
+ * @param <T>
+ *            combined element type
+ */
+final class CombinedElementTargetIndex<T extends Decidable>
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(CombinedElementTargetIndex.class);
+
+	/**
+	 * Minimum number of elements constrained on the same attribute for the index to be worth it
+	 */
+	static final int MIN_INDEXED_ELEMENT_COUNT = 16;
+
+	private final List<T> elements;
+	private final AttributeDesignatorExpression<?> attributeDesignator;
+	private final Map<AttributeValue, int[]> positionsByValue;
+	private final int[] unindexedPositions;
+
+	private CombinedElementTargetIndex(final List<T> elements, final AttributeDesignatorExpression<?> attributeDesignator, final Map<AttributeValue, int[]> positionsByValue,
+	        final int[] unindexedPositions)
+	{
+		this.elements = elements;
+		this.attributeDesignator = attributeDesignator;
+		this.positionsByValue = positionsByValue;
+		this.unindexedPositions = unindexedPositions;
+	}
+
+	private static int[] toArray(final List<Integer> positions)
+	{
+		return positions.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Gets the constraint of a combined element on a given attribute, with the fewest values if there are many
+	 */
+	private static TargetEqualityConstraint getConstraint(final Decidable element, final TargetEqualityConstraint.AttributeKey attributeKey)
+	{
+		if (!(element instanceof TargetEqualityConstrained))
+		{
+			return null;
+		}
+
+		TargetEqualityConstraint selectedConstraint = null;
+		for (final TargetEqualityConstraint constraint : ((TargetEqualityConstrained) element).getTargetEqualityConstraints())
+		{
+			if (constraint.getAttributeKey().equals(attributeKey) && (selectedConstraint == null || constraint.getValues().size() < selectedConstraint.getValues().size()))
+			{
+				selectedConstraint = constraint;
+			}
+		}
+
+		return selectedConstraint;
+	}
+
+	/**
+	 * Creates an index of combined elements on the attribute constrained by the Targets of the largest number of elements
+	 *
+	 * @param combinedElements
+	 *            combined elements
+	 * @return index; or null if fewer than {@value #MIN_INDEXED_ELEMENT_COUNT} elements have an equality constraint on the same attribute (index not worth it)
+	 */
+	static <T extends Decidable> CombinedElementTargetIndex<T> newInstance(final Iterable<? extends T> combinedElements)
+	{
+		final List<T> elements = ImmutableList.copyOf(combinedElements);
+		if (elements.size() < MIN_INDEXED_ELEMENT_COUNT)
+		{
+			return null;
+		}
+
+		/*
+		 * Find the attribute constrained by the most elements
+		 */
+		final Map<TargetEqualityConstraint.AttributeKey, Integer> constrainedElementCountsByAttribute = new HashMap<>();
+		final Map<TargetEqualityConstraint.AttributeKey, AttributeDesignatorExpression<?>> designatorsByAttribute = new HashMap<>();
+		for (final T element : elements)
+		{
+			if (!(element instanceof TargetEqualityConstrained))
+			{
+				continue;
+			}
+
+			for (final TargetEqualityConstraint constraint : ((TargetEqualityConstrained) element).getTargetEqualityConstraints())
+			{
+				designatorsByAttribute.putIfAbsent(constraint.getAttributeKey(), constraint.getAttributeDesignator());
+				/*
+				 * Count each element once per attribute
+				 */
+				if (getConstraint(element, constraint.getAttributeKey()) == constraint)
+				{
+					constrainedElementCountsByAttribute.merge(constraint.getAttributeKey(), 1, Integer::sum);
+				}
+			}
+		}
+
+		TargetEqualityConstraint.AttributeKey indexedAttribute = null;
+		int indexedElementCount = 0;
+		for (final Entry<TargetEqualityConstraint.AttributeKey, Integer> entry : constrainedElementCountsByAttribute.entrySet())
+		{
+			if (entry.getValue() > indexedElementCount)
+			{
+				indexedAttribute = entry.getKey();
+				indexedElementCount = entry.getValue();
+			}
+		}
+
+		if (indexedElementCount < MIN_INDEXED_ELEMENT_COUNT)
+		{
+			LOGGER.debug("Combined elements not indexed by Target: only {} element(s) with an equality constraint on the same attribute (< {})", indexedElementCount, MIN_INDEXED_ELEMENT_COUNT);
+			return null;
+		}
+
+		/*
+		 * Positions are added in increasing order, therefore sorted
+		 */
+		final Map<AttributeValue, List<Integer>> positionListsByValue = new HashMap<>();
+		final List<Integer> unindexedPositionList = new ArrayList<>();
+		int position = 0;
+		for (final T element : elements)
+		{
+			final TargetEqualityConstraint constraint = getConstraint(element, indexedAttribute);
+			if (constraint == null)
+			{
+				unindexedPositionList.add(position);
+			}
+			else
+			{
+				for (final AttributeValue value : constraint.getValues())
+				{
+					positionListsByValue.computeIfAbsent(value, k -> new ArrayList<>()).add(position);
+				}
+			}
+
+			position++;
+		}
+
+		final Map<AttributeValue, int[]> positionsByValue = HashCollections.newUpdatableMap(positionListsByValue.size());
+		positionListsByValue.forEach((value, positions) -> positionsByValue.put(value, toArray(positions)));
+		LOGGER.debug("Combined elements indexed by Target on attribute {}: {} indexed element(s) out of {}, {} distinct value(s)", indexedAttribute, indexedElementCount, elements.size(),
+		        positionsByValue.size());
+		return new CombinedElementTargetIndex<>(elements, designatorsByAttribute.get(indexedAttribute), HashCollections.newImmutableMap(positionsByValue), toArray(unindexedPositionList));
+	}
+
+	/**
+	 * Gets the combined elements that may be applicable in a given context, i.e. excluding the ones whose Target does not match for sure
+	 *
+	 * @param context
+	 *            evaluation context
+	 * @return candidate elements, in original order; all the elements if the indexed attribute cannot be evaluated (the error is left to the elements' Targets)
+	 */
+	Iterable<T> getCandidates(final EvaluationContext context)
+	{
+		final Bag<?> attributeValues;
+		try
+		{
+			attributeValues = attributeDesignator.evaluate(context);
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			LOGGER.debug("Error evaluating indexed attribute {} -> falling back to evaluation of all combined elements", attributeDesignator, e);
+			return elements;
+		}
+
+		int[] candidatePositions = unindexedPositions;
+		for (final AttributeValue value : attributeValues)
+		{
+			final int[] valuePositions = positionsByValue.get(value);
+			if (valuePositions != null)
+			{
+				candidatePositions = merge(candidatePositions, valuePositions);
+			}
+		}
+
+		final List<T> candidates = new ArrayList<>(candidatePositions.length);
+		for (final int candidatePosition : candidatePositions)
+		{
+			candidates.add(elements.get(candidatePosition));
+		}
+
+		return candidates;
+	}
+
+	/**
+	 * Merges two sorted arrays of positions into a sorted array without duplicates
+	 */
+	private static int[] merge(final int[] positions1, final int[] positions2)
+	{
+		if (positions1.length == 0)
+		{
+			return positions2;
+		}
+
+		if (positions2.length == 0)
+		{
+			return positions1;
+		}
+
+		final int[] result = new int[positions1.length + positions2.length];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < positions1.length && j < positions2.length)
+		{
+			final int p1 = positions1[i];
+			final int p2 = positions2[j];
+			if (p1 <= p2)
+			{
+				i++;
+				if (p1 == p2)
+				{
+					j++;
+				}
+
+				result[k++] = p1;
+			}
+			else
+			{
+				j++;
+				result[k++] = p2;
+			}
+		}
+
+		while (i < positions1.length)
+		{
+			result[k++] = positions1[i++];
+		}
+
+		while (j < positions2.length)
+		{
+			result[k++] = positions2[j++];
+		}
+
+		return k == result.length ? result : Arrays.copyOf(result, k);
+	}
+}
@@ -30,6 +30,7 @@ import org.ow2.authzforce.core.pdp.api.PepAction;
 import org.ow2.authzforce.core.pdp.api.UpdatableList;
 import org.ow2.authzforce.core.pdp.api.combining.CombiningAlg;
 import org.ow2.authzforce.core.pdp.api.policy.PrimaryPolicyMetadata;
+import org.ow2.authzforce.core.pdp.impl.AdaptiveEvaluationOrder;
 import org.ow2.authzforce.core.pdp.impl.rule.RuleEvaluator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -117,7 +118,26 @@ final class CombiningAlgEvaluators
 		private final ImmutableList<RuleEvaluator> rulesWithSameEffect;
 		private final DecisionType commonDecision;
 
+		/*
+		 * Non-null iff the rules are evaluated in adaptive order
+		 */
+		private final AdaptiveEvaluationOrder adaptiveOrder;
+
 		RulesWithSameEffectEvaluator(final Collection<? extends RuleEvaluator> rulesWithSameEffect)
+		{
+			this(rulesWithSameEffect, false);
+		}
+
+		/**
+		 * Constructor
+		 * 
+		 * @param rulesWithSameEffect
+		 *            combined rules
+		 * @param adaptiveEvaluationOrder
+		 *            evaluate the rules in adaptive order (see {@link AdaptiveEvaluationOrder}). Ignored if there is only one rule, or any rule has PEP actions, since the PEP actions of the result
+		 *            would then depend on the order.
+		 */
+		RulesWithSameEffectEvaluator(final Collection<? extends RuleEvaluator> rulesWithSameEffect, final boolean adaptiveEvaluationOrder)
 		{
 			assert rulesWithSameEffect != null && !rulesWithSameEffect.isEmpty();
 			// first rule's effect assumed the same for all
@@ -125,12 +145,55 @@ final class CombiningAlgEvaluators
 			assert haveSameEffect(commonEffect, rulesWithSameEffect);
 			this.commonDecision = commonEffect == EffectType.DENY ? DecisionType.DENY : DecisionType.PERMIT;
 			this.rulesWithSameEffect = ImmutableList.copyOf(rulesWithSameEffect);
+			this.adaptiveOrder = adaptiveEvaluationOrder && this.rulesWithSameEffect.size() > 1 && this.rulesWithSameEffect.stream().noneMatch(RuleEvaluator::hasAnyPepAction)
+			        ? new AdaptiveEvaluationOrder(this.rulesWithSameEffect.size())
+			        : null;
+		}
+
+		private ExtendedDecision evaluateInAdaptiveOrder(final EvaluationContext context)
+		{
+			/*
+			 * Same result as in order of declaration: the first Indeterminate in order of declaration is returned if no rule applies, and the Permit/Deny results have no PEP action.
+			 */
+			ExtendedDecision firstIndeterminate = null;
+			int firstIndeterminateIndex = Integer.MAX_VALUE;
+			try
+			{
+				for (final int ruleIndex : adaptiveOrder.getOrder())
+				{
+					final long startNanos = System.nanoTime();
+					final DecisionResult evalResult = rulesWithSameEffect.get(ruleIndex).evaluate(context);
+					final DecisionType decision = evalResult.getDecision();
+					adaptiveOrder.recordChildEvaluation(ruleIndex, startNanos, decision == commonDecision);
+					if (decision == commonDecision)
+					{
+						return evalResult;
+					}
+
+					if (decision == DecisionType.INDETERMINATE && ruleIndex < firstIndeterminateIndex)
+					{
+						firstIndeterminate = evalResult;
+						firstIndeterminateIndex = ruleIndex;
+					}
+				}
+			}
+			finally
+			{
+				adaptiveOrder.endEvaluation();
+			}
+
+			return firstIndeterminate == null ? ExtendedDecisions.SIMPLE_NOT_APPLICABLE : firstIndeterminate;
 		}
 
 		@Override
 		public ExtendedDecision evaluate(final EvaluationContext context, final UpdatableList<PepAction> updatablePepActions,
 		        final UpdatableList<PrimaryPolicyMetadata> updatableApplicablePolicyIdList)
 		{
+			if (adaptiveOrder != null)
+			{
+				return evaluateInAdaptiveOrder(context);
+			}
+
 			ExtendedDecision firstIndeterminate = null;
 			for (final RuleEvaluator rule : rulesWithSameEffect)
 			{
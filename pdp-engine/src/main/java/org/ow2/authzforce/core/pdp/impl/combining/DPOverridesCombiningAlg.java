@@ -20,11 +20,14 @@ package org.ow2.authzforce.core.pdp.impl.combining;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.EnumMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.ow2.authzforce.core.pdp.api.Decidable;
 import org.ow2.authzforce.core.pdp.api.DecisionResult;
@@ -38,12 +41,15 @@ import org.ow2.authzforce.core.pdp.api.combining.BaseCombiningAlg;
 import org.ow2.authzforce.core.pdp.api.combining.CombiningAlg;
 import org.ow2.authzforce.core.pdp.api.combining.CombiningAlgParameter;
 import org.ow2.authzforce.core.pdp.api.policy.PrimaryPolicyMetadata;
+import org.ow2.authzforce.core.pdp.impl.AdaptiveEvaluationOrder;
+import org.ow2.authzforce.core.pdp.impl.DecisionConstrained;
 import org.ow2.authzforce.core.pdp.impl.combining.CombiningAlgEvaluators.RulesWithSameEffectEvaluator;
 import org.ow2.authzforce.core.pdp.impl.rule.RuleEvaluator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.EffectType;
@@ -258,9 +264,47 @@ final class DPOverridesCombiningAlg<T extends Decidable> extends BaseCombiningAl
 		private final ExtendedDecision decisionForOverriddenEffect;
 		private final Map<DecisionType, SubDecisionHandler> resultHandlersByDecisionType = new EnumMap<>(DecisionType.class);
 
-		OrderPreservingCombiningAlgEvaluator(final Iterable<? extends Decidable> combinedElements, final EffectType overridingEffect)
+		/*
+		 * Index of combined elements by Target attribute values; null if not indexed
+		 */
+		private final CombinedElementTargetIndex<Decidable> targetIndex;
+
+		/*
+		 * Combined elements that cannot return the overriding decision according to static analysis (DecisionConstrained), compared by identity; null if there is no such element declared before
+		 * an element that can, i.e. the order of declaration is already the best one.
+		 */
+		private final Set<Decidable> elementsUnableToOverride;
+
+		OrderPreservingCombiningAlgEvaluator(final Iterable<? extends Decidable> combinedElements, final EffectType overridingEffect, final CombinedElementTargetIndex<Decidable> targetIndex)
 		{
 			super(combinedElements);
+			this.targetIndex = targetIndex;
+			final DecisionType overridingDecision = overridingEffect == EffectType.DENY ? DecisionType.DENY : DecisionType.PERMIT;
+			final Set<Decidable> mutableElementsUnableToOverride = Collections.newSetFromMap(new IdentityHashMap<>());
+			boolean isReorderingUseful = false;
+			for (final Decidable combinedElement : combinedElements)
+			{
+				if (DecisionConstrained.getPossibleDecisions(combinedElement).contains(overridingDecision))
+				{
+					isReorderingUseful = isReorderingUseful || !mutableElementsUnableToOverride.isEmpty();
+				}
+				else
+				{
+					mutableElementsUnableToOverride.add(combinedElement);
+				}
+			}
+
+			if (isReorderingUseful)
+			{
+				LOGGER.debug("{} combined element(s) out of {} cannot return {} -> evaluated after the others (unless the list of applicable policies is requested)", mutableElementsUnableToOverride.size(),
+				        Iterables.size(combinedElements), overridingDecision);
+				this.elementsUnableToOverride = mutableElementsUnableToOverride;
+			}
+			else
+			{
+				this.elementsUnableToOverride = null;
+			}
+
 			resultHandlersByDecisionType.put(DecisionType.NOT_APPLICABLE, NOT_APPLICABLE_SUBDECISIONHANDLER);
 			final Map<DecisionType, SubDecisionHandler> indeterminateResultHandlersByExtendedIndeterminateType = new EnumMap<>(DecisionType.class);
 			indeterminateResultHandlersByExtendedIndeterminateType.put(DecisionType.INDETERMINATE, INDETERMINATE_DP_SUBDECISIONHANDLER);
@@ -292,7 +336,27 @@ final class DPOverridesCombiningAlg<T extends Decidable> extends BaseCombiningAl
 			assert outPepActions != null;
 			final DecisionResultCollector resultCollector = new DecisionResultCollector(outApplicablePolicyIdList != null);
 
-			for (final Decidable combinedElement : getCombinedElements())
+			/*
+			 * Elements skipped by the index are NotApplicable, which does not change the combined result
+			 */
+			final Iterable<? extends Decidable> candidates = targetIndex == null ? getCombinedElements() : targetIndex.getCandidates(context);
+
+			/*
+			 * The applicable policies returned with the overriding decision are the ones found before it in order of declaration, therefore the order must be preserved if they are requested.
+			 */
+			if (elementsUnableToOverride != null && context != null && !context.isApplicablePolicyIdListRequested())
+			{
+				final DecisionResult overridingResult = evaluateOverridingCapableFirst(context, candidates, resultCollector);
+				if (overridingResult != null)
+				{
+					outPepActions.addAll(overridingResult.getPepActions());
+					return this.decisionForOverridingEffect;
+				}
+
+				return getNonOverridingResult(resultCollector, outPepActions, outApplicablePolicyIdList);
+			}
+
+			for (final Decidable combinedElement : candidates)
 			{
 				// evaluate the policy
 				final DecisionResult result = combinedElement.evaluate(context);
@@ -318,6 +382,60 @@ final class DPOverridesCombiningAlg<T extends Decidable> extends BaseCombiningAl
 
 			}
 
+			return getNonOverridingResult(resultCollector, outPepActions, outApplicablePolicyIdList);
+		}
+
+		/**
+		 * Evaluates the elements that may return the overriding decision first (in order of declaration), then the others if none does. The result is the same as in order of declaration: the
+		 * first overriding decision in order of declaration is necessarily found among the former, and the other results are combined in order of declaration.
+		 * 
+		 * @return the first overriding result if any, else null (non-overriding results are then handled by {@code resultCollector} in order of declaration)
+		 */
+		private DecisionResult evaluateOverridingCapableFirst(final EvaluationContext context, final Iterable<? extends Decidable> candidates, final DecisionResultCollector resultCollector)
+		{
+			final List<DecisionResult> results = new ArrayList<>();
+			for (final Decidable combinedElement : candidates)
+			{
+				if (elementsUnableToOverride.contains(combinedElement))
+				{
+					// evaluated later if necessary
+					results.add(null);
+					continue;
+				}
+
+				final DecisionResult result = combinedElement.evaluate(context);
+				if (resultHandlersByDecisionType.get(result.getDecision()) == OVERRIDING_SUBDECISIONHANDLER)
+				{
+					/*
+					 * Other elements cannot change the outcome -> skipped
+					 */
+					return result;
+				}
+
+				results.add(result);
+			}
+
+			/*
+			 * No overriding decision -> evaluate the other elements and combine all results in order of declaration
+			 */
+			int resultIndex = 0;
+			for (final Decidable combinedElement : candidates)
+			{
+				final DecisionResult result = results.get(resultIndex) == null ? combinedElement.evaluate(context) : results.get(resultIndex);
+				final boolean isResultOverriding = resultHandlersByDecisionType.get(result.getDecision()).handle(result, resultCollector);
+				assert !isResultOverriding : combinedElement + " returned an overriding decision although static analysis says it cannot";
+				resultIndex++;
+			}
+
+			return null;
+		}
+
+		/**
+		 * Gets the combined result when there was no overriding decision
+		 */
+		private ExtendedDecision getNonOverridingResult(final DecisionResultCollector resultCollector, final UpdatableList<PepAction> outPepActions,
+		        final UpdatableList<PrimaryPolicyMetadata> outApplicablePolicyIdList)
+		{
 			/*
 			 * There was no overriding Deny/Permit decision, i.e. Deny (resp. Permit) in case of deny-overrides (resp. permit-overrides) alg, else: if any Indeterminate{DP}, then Indeterminate{DP}
 			 */
@@ -397,6 +515,11 @@ final class DPOverridesCombiningAlg<T extends Decidable> extends BaseCombiningAl
 		private final DecisionType overriddenEffectAsDecision;
 		private final ExtendedDecision overriddenEffectAsExtDecision;
 
+		/*
+		 * Non-null iff otherRules are evaluated in adaptive order when the rules with overriding Effect are Indeterminate (then the first applicable one decides)
+		 */
+		private final AdaptiveEvaluationOrder otherRulesAdaptiveOrder;
+
 		/**
 		 * Constructor
 		 * 
@@ -404,10 +527,13 @@ final class DPOverridesCombiningAlg<T extends Decidable> extends BaseCombiningAl
 		 *            combined Rules with overriding Effect. Must be non-null and non-empty.
 		 * @param otherRules
 		 *            combined Rules with opposite/overridden Effect. Must be non-null and non-empty.
+		 * @param adaptiveEvaluationOrder
+		 *            evaluate the rules with the same Effect in adaptive order (see {@link AdaptiveEvaluationOrder}) when the result does not depend on it
 		 */
-		OverridingEffectFirstRuleCombiningAlgEvaluator(final Collection<RuleEvaluator> rulesWithOverridingEffect, final Collection<RuleEvaluator> otherRules)
+		OverridingEffectFirstRuleCombiningAlgEvaluator(final Collection<RuleEvaluator> rulesWithOverridingEffect, final Collection<RuleEvaluator> otherRules,
+		        final boolean adaptiveEvaluationOrder)
 		{
-			super(rulesWithOverridingEffect);
+			super(rulesWithOverridingEffect, adaptiveEvaluationOrder);
 
 			assert otherRules != null && !otherRules.isEmpty();
 
@@ -427,6 +553,33 @@ final class DPOverridesCombiningAlg<T extends Decidable> extends BaseCombiningAl
 			}
 
 			this.otherRules = ImmutableList.copyOf(otherRules);
+			this.otherRulesAdaptiveOrder = adaptiveEvaluationOrder && this.otherRules.size() > 1 ? new AdaptiveEvaluationOrder(this.otherRules.size()) : null;
+		}
+
+		/**
+		 * Same as {@link #evaluateRulesWithOverriddenEffect(EvaluationContext, ExtendedDecision)} but in adaptive order, which gives the same result since only whether any rule applies matters
+		 */
+		private ExtendedDecision evaluateRulesWithOverriddenEffectInAdaptiveOrder(final EvaluationContext context, final ExtendedDecision indeterminateFromRulesWithOverridingEffect)
+		{
+			try
+			{
+				for (final int ruleIndex : otherRulesAdaptiveOrder.getOrder())
+				{
+					final long startNanos = System.nanoTime();
+					final boolean isApplicable = otherRules.get(ruleIndex).evaluate(context).getDecision() != DecisionType.NOT_APPLICABLE;
+					otherRulesAdaptiveOrder.recordChildEvaluation(ruleIndex, startNanos, isApplicable);
+					if (isApplicable)
+					{
+						return ExtendedDecisions.newIndeterminate(DecisionType.INDETERMINATE, indeterminateFromRulesWithOverridingEffect.getCauseForIndeterminate().get());
+					}
+				}
+			}
+			finally
+			{
+				otherRulesAdaptiveOrder.endEvaluation();
+			}
+
+			return indeterminateFromRulesWithOverridingEffect;
 		}
 
 		/**
@@ -553,7 +706,8 @@ final class DPOverridesCombiningAlg<T extends Decidable> extends BaseCombiningAl
 
 				case INDETERMINATE:
 					// Optimize
-					return evaluateRulesWithOverriddenEffect(context, extDecisionFromRulesWithOverridingEffect);
+					return otherRulesAdaptiveOrder == null ? evaluateRulesWithOverriddenEffect(context, extDecisionFromRulesWithOverridingEffect)
+					        : evaluateRulesWithOverriddenEffectInAdaptiveOrder(context, extDecisionFromRulesWithOverridingEffect);
 				default:
 					// NotApplicable
 					// Optimize
@@ -688,7 +842,7 @@ final class DPOverridesCombiningAlg<T extends Decidable> extends BaseCombiningAl
 		@Override
 		public CombiningAlg.Evaluator getDPOverridesRuleCombiningAlgEvaluator(final EffectType overridingEffect)
 		{
-			return new OrderPreservingCombiningAlgEvaluator(addedRules, overridingEffect);
+			return new OrderPreservingCombiningAlgEvaluator(addedRules, overridingEffect, null);
 		}
 
 	}
@@ -769,7 +923,7 @@ final class DPOverridesCombiningAlg<T extends Decidable> extends BaseCombiningAl
 			return new CombiningAlgEvaluators.RulesWithSameEffectEvaluator(nonEmptyRulesWithOverridingEffect);
 		}
 
-		private Deque<RuleEvaluator> getRulesWithOverriddenEffect()
+		Deque<RuleEvaluator> getRulesWithOverriddenEffect()
 		{
 			if (rulesWithOverriddenEffectButNoPepAction.isEmpty())
 			{
@@ -797,7 +951,36 @@ final class DPOverridesCombiningAlg<T extends Decidable> extends BaseCombiningAl
 		@Override
 		public CombiningAlg.Evaluator getDPOverridesRuleCombiningAlgEvaluator(final EffectType overridingEffect)
 		{
-			return new OverridingEffectFirstRuleCombiningAlgEvaluator(nonEmptyRulesWithOverridingEffect, getRulesWithOverriddenEffect());
+			return new OverridingEffectFirstRuleCombiningAlgEvaluator(nonEmptyRulesWithOverridingEffect, getRulesWithOverriddenEffect(), false);
+		}
+	}
+
+	/**
+	 * 
+	 * Rule collector that groups rules by Effect like {@link OverridingEffectFirstRuleCollector}, and evaluates the rules with same Effect in adaptive order (see {@link AdaptiveEvaluationOrder})
+	 * when the result does not depend on it, i.e. when none of these rules has PEP actions (else the PEP actions of the result depend on which rule applies first)
+	 *
+	 */
+	private static final class AdaptiveOverridingEffectFirstRuleCollector extends OverridingEffectFirstRuleCollector
+	{
+		@Override
+		public CombiningAlg.Evaluator getRuleCombiningAlgEvaluatorAssumingAllWithOverridingEffect()
+		{
+			assert rulesWithOverriddenEffectButNoPepAction.isEmpty() && rulesWithOverriddenEffectAndPepActions.isEmpty();
+			return new CombiningAlgEvaluators.RulesWithSameEffectEvaluator(nonEmptyRulesWithOverridingEffect, true);
+		}
+
+		@Override
+		public CombiningAlg.Evaluator getRuleCombiningAlgEvaluatorAssumingAllWithOverriddenEffect()
+		{
+			assert nonEmptyRulesWithOverridingEffect.isEmpty();
+			return new CombiningAlgEvaluators.RulesWithSameEffectEvaluator(getRulesWithOverriddenEffect(), true);
+		}
+
+		@Override
+		public CombiningAlg.Evaluator getDPOverridesRuleCombiningAlgEvaluator(final EffectType overridingEffect)
+		{
+			return new OverridingEffectFirstRuleCombiningAlgEvaluator(nonEmptyRulesWithOverridingEffect, getRulesWithOverriddenEffect(), true);
 		}
 	}
 
@@ -809,6 +992,12 @@ final class DPOverridesCombiningAlg<T extends Decidable> extends BaseCombiningAl
 		return new OverridingEffectFirstRuleCollector();
 	};
 
+	private static final RuleCollectorFactory ADAPTIVE_OVERRIDING_EFFECT_FIRST_RULE_COLLECTOR_FACTORY = () -> {
+		LOGGER.debug(
+		        "Rule combining algorithm is permit/deny-overrides with adaptive evaluation order: Rules with overriding Effect are processed first, then the others; Rules with same Effect are processed in an order adapted to their evaluation statistics when no PEP action depends on it");
+		return new AdaptiveOverridingEffectFirstRuleCollector();
+	};
+
 	private static final RuleCollectorFactory ORDER_PRESERVING_RULE_COLLECTOR_FACTORY = () -> new OrderPreservingRuleCollector();
 
 	private final EffectType overridingEffect;
@@ -829,6 +1018,25 @@ final class DPOverridesCombiningAlg<T extends Decidable> extends BaseCombiningAl
 	 *            order is changed, in particular optimized by evaluating rules with overriding Effect first.
 	 */
 	DPOverridesCombiningAlg(final String algId, final Class<T> combinedType, final EffectType overridingEffect, final boolean isOrdered)
+	{
+		this(algId, combinedType, overridingEffect, isOrdered, false);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param algId
+	 *            combining algorithm ID
+	 * @param overridingEffect
+	 *            overriding effect (e.g. Deny for deny-overrides algorithm)
+	 * @param isOrdered
+	 *            true iff combined elements must be evaluated in order of declaration, i.e. in same order as in 'combinedElements' argument of {@link #getInstance(Iterable, Iterable)}. If false, the
+	 *            order is changed, in particular optimized by evaluating rules with overriding Effect first.
+	 * @param adaptiveEvaluationOrder
+	 *            (ignored if {@code isOrdered}) true iff combined Rules with same Effect are evaluated in an order adapted to their evaluation statistics (see {@link AdaptiveEvaluationOrder}), when
+	 *            the result does not depend on it
+	 */
+	DPOverridesCombiningAlg(final String algId, final Class<T> combinedType, final EffectType overridingEffect, final boolean isOrdered, final boolean adaptiveEvaluationOrder)
 	{
 		super(algId, combinedType);
 		this.overridingEffect = overridingEffect;
@@ -845,7 +1053,8 @@ final class DPOverridesCombiningAlg<T extends Decidable> extends BaseCombiningAl
 			constantOverriddenEffectDecisionEvaluator = CombiningAlgEvaluators.DENY_CONSTANT_EVALUATOR;
 		}
 
-		this.ruleCollectorFactory = isOrdered ? ORDER_PRESERVING_RULE_COLLECTOR_FACTORY : OVERRIDING_EFFECT_FIRST_RULE_COLLECTOR_FACTORY;
+		this.ruleCollectorFactory = isOrdered ? ORDER_PRESERVING_RULE_COLLECTOR_FACTORY
+		        : adaptiveEvaluationOrder ? ADAPTIVE_OVERRIDING_EFFECT_FIRST_RULE_COLLECTOR_FACTORY : OVERRIDING_EFFECT_FIRST_RULE_COLLECTOR_FACTORY;
 	}
 
 	/** {@inheritDoc} */
@@ -873,7 +1082,7 @@ final class DPOverridesCombiningAlg<T extends Decidable> extends BaseCombiningAl
 		 */
 		if (!RuleEvaluator.class.isAssignableFrom(getCombinedElementType()))
 		{
-			return new OrderPreservingCombiningAlgEvaluator(combinedElements, this.overridingEffect);
+			return new OrderPreservingCombiningAlgEvaluator(combinedElements, this.overridingEffect, CombinedElementTargetIndex.newInstance(combinedElements));
 		}
 
 		// combined elements are Rules, we can optimize
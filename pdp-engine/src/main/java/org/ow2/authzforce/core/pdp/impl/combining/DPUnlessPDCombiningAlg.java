@@ -58,9 +58,15 @@ final class DPUnlessPDCombiningAlg<T extends Decidable> extends BaseCombiningAlg
 		private final DecisionType overriddenEffectAsDecision;
 		private final ExtendedDecision overriddenEffectAsExtDecision;
 
+		/*
+		 * Index of combined elements by Target attribute values; null if not indexed
+		 */
+		private final CombinedElementTargetIndex<Decidable> targetIndex;
+
 		private Evaluator(final Iterable<? extends Decidable> combinedElements, final EffectType overridingEffect)
 		{
 			super(combinedElements);
+			this.targetIndex = CombinedElementTargetIndex.newInstance(combinedElements);
 			if (overridingEffect == EffectType.DENY)
 			{
 				// permit-unless-deny
@@ -87,7 +93,10 @@ final class DPUnlessPDCombiningAlg<T extends Decidable> extends BaseCombiningAlg
 			 */
 
 			UpdatableList<PepAction> pepActionsInOverriddenEffect = null;
-			for (final Decidable combinedElement : getCombinedElements())
+			/*
+			 * Elements skipped by the index are NotApplicable, which does not change the combined result
+			 */
+			for (final Decidable combinedElement : targetIndex == null ? getCombinedElements() : targetIndex.getCandidates(context))
 			{
 				final DecisionResult result = combinedElement.evaluate(context);
 				final DecisionType decision = result.getDecision();
@@ -48,16 +48,24 @@ final class FirstApplicableCombiningAlg<T extends Decidable> extends BaseCombini
 
 	private static final class Evaluator extends BaseCombiningAlg.Evaluator<Decidable>
 	{
+		/*
+		 * Index of combined elements by Target attribute values; null if not indexed
+		 */
+		private final CombinedElementTargetIndex<Decidable> targetIndex;
 
-		private Evaluator(final Iterable<? extends Decidable> combinedElements)
+		private Evaluator(final Iterable<? extends Decidable> combinedElements, final CombinedElementTargetIndex<Decidable> targetIndex)
 		{
 			super(combinedElements);
+			this.targetIndex = targetIndex;
 		}
 
 		@Override
 		public ExtendedDecision evaluate(final EvaluationContext context, final UpdatableList<PepAction> outPepActions, final UpdatableList<PrimaryPolicyMetadata> outApplicablePolicyIdList)
 		{
-			for (final Decidable combinedElement : getCombinedElements())
+			/*
+			 * Elements skipped by the index are NotApplicable, and the candidates are in original order
+			 */
+			for (final Decidable combinedElement : targetIndex == null ? getCombinedElements() : targetIndex.getCandidates(context))
 			{
 				// evaluate the policy
 				final DecisionResult result = combinedElement.evaluate(context);
@@ -128,7 +136,7 @@ final class FirstApplicableCombiningAlg<T extends Decidable> extends BaseCombini
 		if (!RuleEvaluator.class.isAssignableFrom(getCombinedElementType()))
 		{
 			// combined elements are not rules but policies
-			return new Evaluator(combinedElements);
+			return new Evaluator(combinedElements, CombinedElementTargetIndex.newInstance(combinedElements));
 		}
 
 		// combined elements are Rules, we can optimize
@@ -155,7 +163,7 @@ final class FirstApplicableCombiningAlg<T extends Decidable> extends BaseCombini
 		/*
 		 * if(combinedEltIterator.hasNext()), combinedElements has more elements than finalRules, so finalRules is a subset of combinedElements; else they have the same elements
 		 */
-		return new Evaluator(combinedEltIterator.hasNext() ? finalRules : combinedElements);
+		return new Evaluator(combinedEltIterator.hasNext() ? finalRules : combinedElements, null);
 	}
 
 	FirstApplicableCombiningAlg(final String algId, final Class<T> combinedType)
@@ -49,9 +49,15 @@ final class OnlyOneApplicableCombiningAlg extends BaseCombiningAlg<PolicyEvaluat
 
 		private final ExtendedDecision tooManyApplicablePoliciesIndeterminateResult;
 
+		/*
+		 * Index of combined elements by Target attribute values; null if not indexed
+		 */
+		private final CombinedElementTargetIndex<PolicyEvaluator> targetIndex;
+
 		private Evaluator(final String algId, final Iterable<? extends PolicyEvaluator> policyElements)
 		{
 			super(policyElements);
+			this.targetIndex = CombinedElementTargetIndex.newInstance(policyElements);
 			this.tooManyApplicablePoliciesIndeterminateResult = ExtendedDecisions.newIndeterminate(DecisionType.INDETERMINATE,
 			        new IndeterminateEvaluationException("Too many (more than one) applicable policies for algorithm: " + algId, XacmlStatusCode.PROCESSING_ERROR.value()));
 		}
@@ -64,7 +70,10 @@ final class OnlyOneApplicableCombiningAlg extends BaseCombiningAlg<PolicyEvaluat
 			// atLeastOne == true iff selectedPolicy != null
 			PolicyEvaluator selectedPolicy = null;
 
-			for (final PolicyEvaluator policy : getCombinedElements())
+			/*
+			 * Policies skipped by the index are not applicable by Target
+			 */
+			for (final PolicyEvaluator policy : targetIndex == null ? getCombinedElements() : targetIndex.getCandidates(context))
 			{
 				// see if the policy applies to the context
 				final boolean isApplicableByTarget;
@@ -18,11 +18,13 @@
 package org.ow2.authzforce.core.pdp.impl.combining;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.EffectType;
 
 import org.ow2.authzforce.core.pdp.api.Decidable;
@@ -31,6 +33,7 @@ import org.ow2.authzforce.core.pdp.api.PdpExtensionRegistry.PdpExtensionComparat
 import org.ow2.authzforce.core.pdp.api.combining.CombiningAlg;
 import org.ow2.authzforce.core.pdp.api.combining.CombiningAlgRegistry;
 import org.ow2.authzforce.core.pdp.api.policy.PolicyEvaluator;
+import org.ow2.authzforce.core.pdp.impl.DecisionConstrained;
 import org.ow2.authzforce.core.pdp.impl.rule.RuleEvaluator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -189,7 +192,7 @@ public enum StandardCombiningAlgorithm
 
 	static
 	{
-		final Set<CombiningAlg<? extends Decidable>> standardAlgorithms = HashCollections.newUpdatableSet(StandardCombiningAlgorithm.values().length);
+		final Set<CombiningAlg<?>> standardAlgorithms = HashCollections.newUpdatableSet(StandardCombiningAlgorithm.values().length);
 		// XACML 3.0 algorithms
 		// deny-overrides and ordered-deny-overrides
 		standardAlgorithms.add(new DPOverridesCombiningAlg<>(StandardCombiningAlgorithm.XACML_3_0_POLICY_COMBINING_DENY_OVERRIDES.id, PolicyEvaluator.class, EffectType.DENY, false));
@@ -245,6 +248,125 @@ public enum StandardCombiningAlgorithm
 		}
 	}
 
+	/*
+	 * Same as REGISTRY except the deny-overrides and permit-overrides rule-combining algorithms evaluate the rules in adaptive order
+	 */
+	private static final CombiningAlgRegistry ADAPTIVE_EVALUATION_ORDER_REGISTRY;
+
+	static
+	{
+		final Set<CombiningAlg<?>> algorithms = HashCollections.newUpdatableSet(StandardCombiningAlgorithm.values().length);
+		for (final CombiningAlg<?> alg : REGISTRY.getExtensions())
+		{
+			if (!alg.getId().equals(StandardCombiningAlgorithm.XACML_3_0_RULE_COMBINING_DENY_OVERRIDES.id) && !alg.getId().equals(StandardCombiningAlgorithm.XACML_3_0_RULE_COMBINING_PERMIT_OVERRIDES.id))
+			{
+				algorithms.add(alg);
+			}
+		}
+
+		algorithms.add(new DPOverridesCombiningAlg<>(StandardCombiningAlgorithm.XACML_3_0_RULE_COMBINING_DENY_OVERRIDES.id, RuleEvaluator.class, EffectType.DENY, false, true));
+		algorithms.add(new DPOverridesCombiningAlg<>(StandardCombiningAlgorithm.XACML_3_0_RULE_COMBINING_PERMIT_OVERRIDES.id, RuleEvaluator.class, EffectType.PERMIT, false, true));
+		ADAPTIVE_EVALUATION_ORDER_REGISTRY = new ImmutableCombiningAlgRegistry(algorithms);
+	}
+
+	/**
+	 * Get the registry of standard combining algorithms
+	 * 
+	 * @param adaptiveEvaluationOrder
+	 *            true iff the (non-ordered) deny-overrides and permit-overrides rule-combining algorithms evaluate the Rules with same Effect in an order adapted to their evaluation statistics (see
+	 *            {@link org.ow2.authzforce.core.pdp.impl.AdaptiveEvaluationOrder}), with the same results
+	 * @return {@link #REGISTRY} if {@code adaptiveEvaluationOrder} is false, else a registry of standard algorithms with such deny-overrides and permit-overrides algorithms
+	 */
+	public static CombiningAlgRegistry getRegistry(final boolean adaptiveEvaluationOrder)
+	{
+		return adaptiveEvaluationOrder ? ADAPTIVE_EVALUATION_ORDER_REGISTRY : REGISTRY;
+	}
+
+	/**
+	 * Says whether a combining algorithm is one of the standard ones, in any of the registries returned by {@link #getRegistry(boolean)}
+	 * 
+	 * @param alg
+	 *            combining algorithm
+	 * @return true iff {@code alg} is a standard combining algorithm implementation
+	 */
+	public static boolean isStandard(final CombiningAlg<?> alg)
+	{
+		return REGISTRY.getExtension(alg.getId()) == alg || ADAPTIVE_EVALUATION_ORDER_REGISTRY.getExtension(alg.getId()) == alg;
+	}
+
+	/**
+	 * Gets the decisions that a combining algorithm may return, given the possible decisions of the combined elements (see {@link DecisionConstrained}), e.g. deny-overrides may only return Permit,
+	 * NotApplicable or Indeterminate if none of the combined elements may return Deny.
+	 * 
+	 * @param alg
+	 *            combining algorithm
+	 * @param combinedElements
+	 *            combined elements (null is equivalent to empty)
+	 * @return possible decisions of {@code alg} combining {@code combinedElements} (immutable); {@link DecisionConstrained#ALL_DECISIONS} if {@code alg} is not a standard algorithm
+	 */
+	public static Set<DecisionType> getPossibleDecisions(final CombiningAlg<?> alg, final Iterable<? extends Decidable> combinedElements)
+	{
+		if (!isStandard(alg))
+		{
+			return DecisionConstrained.ALL_DECISIONS;
+		}
+
+		boolean isPermitPossible = false;
+		boolean isDenyPossible = false;
+		if (combinedElements != null)
+		{
+			for (final Decidable combinedElement : combinedElements)
+			{
+				final Set<DecisionType> combinedElementDecisions = DecisionConstrained.getPossibleDecisions(combinedElement);
+				isPermitPossible = isPermitPossible || combinedElementDecisions.contains(DecisionType.PERMIT);
+				isDenyPossible = isDenyPossible || combinedElementDecisions.contains(DecisionType.DENY);
+			}
+		}
+
+		final Set<DecisionType> possibleDecisions = EnumSet.noneOf(DecisionType.class);
+		switch (getInstance(alg.getId()))
+		{
+			case XACML_3_0_POLICY_COMBINING_DENY_UNLESS_PERMIT:
+			case XACML_3_0_RULE_COMBINING_DENY_UNLESS_PERMIT:
+				// never NotApplicable/Indeterminate
+				possibleDecisions.add(DecisionType.DENY);
+				if (isPermitPossible)
+				{
+					possibleDecisions.add(DecisionType.PERMIT);
+				}
+				break;
+
+			case XACML_3_0_POLICY_COMBINING_PERMIT_UNLESS_DENY:
+			case XACML_3_0_RULE_COMBINING_PERMIT_UNLESS_DENY:
+				// never NotApplicable/Indeterminate
+				possibleDecisions.add(DecisionType.PERMIT);
+				if (isDenyPossible)
+				{
+					possibleDecisions.add(DecisionType.DENY);
+				}
+				break;
+
+			default:
+				/*
+				 * Other algorithms return Permit (resp. Deny) only if some combined element does
+				 */
+				if (isPermitPossible)
+				{
+					possibleDecisions.add(DecisionType.PERMIT);
+				}
+
+				if (isDenyPossible)
+				{
+					possibleDecisions.add(DecisionType.DENY);
+				}
+
+				possibleDecisions.add(DecisionType.NOT_APPLICABLE);
+				possibleDecisions.add(DecisionType.INDETERMINATE);
+		}
+
+		return Collections.unmodifiableSet(possibleDecisions);
+	}
+
 	private static final Map<String, StandardCombiningAlgorithm> ID_TO_STD_ALG_MAP = Maps.uniqueIndex(Arrays.asList(StandardCombiningAlgorithm.values()),
 			new com.google.common.base.Function<StandardCombiningAlgorithm, String>()
 			{
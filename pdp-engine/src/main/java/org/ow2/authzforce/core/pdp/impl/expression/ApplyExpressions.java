@@ -17,6 +17,7 @@
  */
 package org.ow2.authzforce.core.pdp.impl.expression;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
@@ -34,9 +35,13 @@ import org.ow2.authzforce.core.pdp.api.expression.FunctionExpression;
 import org.ow2.authzforce.core.pdp.api.func.Function;
 import org.ow2.authzforce.core.pdp.api.func.FunctionCall;
 import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
 import org.ow2.authzforce.core.pdp.api.value.Datatype;
+import org.ow2.authzforce.core.pdp.api.value.IntegerValue;
 import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
 import org.ow2.authzforce.core.pdp.api.value.Value;
+import org.ow2.authzforce.core.pdp.impl.PartialEvaluation;
+import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -119,6 +124,173 @@ public final class ApplyExpressions
 		return staticEvalResult == null ? new VariableApplyExpression<>(functionCall) : new ConstantApplyExpression<>(functionCall.getReturnType(), staticEvalResult);
 	}
 
+	private static boolean isBooleanExpression(final Expression<?> expression)
+	{
+		return expression.getReturnType().equals(StandardDatatypes.BOOLEAN);
+	}
+
+	private static boolean isConstant(final Expression<?> expression, final BooleanValue value)
+	{
+		final Optional<?> constant = expression.getValue();
+		return constant.isPresent() && constant.get().equals(value);
+	}
+
+	/**
+	 * Partial evaluation of not(not(x)) -> x
+	 * 
+	 * @return x if {@code xacmlApply} is not(not(x)) with x a boolean expression, else null
+	 */
+	private static Expression<?> simplifyDoubleNegation(final ApplyType xacmlApply, final XPathCompiler xPathCompiler, final ExpressionFactory expFactory, final Deque<String> longestVarRefChain)
+	{
+		final List<JAXBElement<? extends ExpressionType>> applyArgExpressions = xacmlApply.getExpressions();
+		if (!xacmlApply.getFunctionId().equals(StandardFunction.NOT.getId()) || applyArgExpressions.size() != 1)
+		{
+			return null;
+		}
+
+		final ExpressionType arg = applyArgExpressions.get(0).getValue();
+		if (!(arg instanceof ApplyType) || !((ApplyType) arg).getFunctionId().equals(StandardFunction.NOT.getId()) || ((ApplyType) arg).getExpressions().size() != 1)
+		{
+			return null;
+		}
+
+		final Expression<?> argOfArg;
+		try
+		{
+			argOfArg = expFactory.getInstance(((ApplyType) arg).getExpressions().get(0).getValue(), xPathCompiler, longestVarRefChain);
+		} catch (final IllegalArgumentException e)
+		{
+			throw new IllegalArgumentException("Error parsing Apply [description=" + xacmlApply.getDescription() + "]'s function argument (Expression) of function argument (Apply)", e);
+		}
+
+		if (!isBooleanExpression(argOfArg))
+		{
+			// invalid, let the function reject it
+			return null;
+		}
+
+		LOGGER.debug("Apply[Description = {}]: not(not(x)) -> optimizing: replacing with x", xacmlApply.getDescription());
+		PartialEvaluation.countEliminatedNodes(expFactory, 2);
+		return argOfArg;
+	}
+
+	/**
+	 * Partial evaluation of the standard 'and', 'or' and 'n-of' functions: removes the constant (boolean) arguments that do not determine the result, i.e. True for 'and', False for 'or' and 'n-of';
+	 * and True for 'n-of' with constant first argument 'n', in which case 'n' is decremented. (If a constant argument determines the result, the function call is already constant.)
+	 * 
+	 * @param funcInputs
+	 *            function arguments, modified in place (constant arguments removed)
+	 * @return the only remaining argument if it is enough to determine the result, e.g. and(true, x) -> x; else null
+	 */
+	private static Expression<?> simplifyLogicalFunctionArgs(final String functionId, final List<Expression<?>> funcInputs, final String applyDesc, final ExpressionFactory expFactory)
+	{
+		final boolean isNOf = functionId.equals(StandardFunction.N_OF.getId());
+		final BooleanValue neutralValue;
+		if (functionId.equals(StandardFunction.AND.getId()))
+		{
+			neutralValue = BooleanValue.TRUE;
+		} else if (functionId.equals(StandardFunction.OR.getId()) || isNOf)
+		{
+			neutralValue = BooleanValue.FALSE;
+		} else
+		{
+			return null;
+		}
+
+		final int firstBooleanArgIndex = isNOf ? 1 : 0;
+		final int nOfRequiredTrues;
+		if (isNOf)
+		{
+			if (funcInputs.isEmpty())
+			{
+				return null;
+			}
+
+			final Optional<?> arg0 = funcInputs.get(0).getValue();
+			if (!arg0.isPresent() || !(arg0.get() instanceof IntegerValue))
+			{
+				return null;
+			}
+
+			final IntegerValue n = (IntegerValue) arg0.get();
+			/*
+			 * Invalid n or n = 0 already handled by the function
+			 */
+			if (n.getUnderlyingValue().bigIntegerValue().signum() <= 0 || n.getUnderlyingValue().bigIntegerValue().compareTo(BigInteger.valueOf(funcInputs.size() - 1)) > 0)
+			{
+				return null;
+			}
+
+			nOfRequiredTrues = n.getUnderlyingValue().intValue();
+		} else
+		{
+			nOfRequiredTrues = 0;
+		}
+
+		for (int i = firstBooleanArgIndex; i < funcInputs.size(); i++)
+		{
+			if (!isBooleanExpression(funcInputs.get(i)))
+			{
+				// invalid, let the function reject it
+				return null;
+			}
+		}
+
+		final List<Expression<?>> nonConstantBooleanArgs = new ArrayList<>(funcInputs.size() - firstBooleanArgIndex);
+		int nOfConstantTrues = 0;
+		for (final Expression<?> arg : funcInputs.subList(firstBooleanArgIndex, funcInputs.size()))
+		{
+			if (isNOf && isConstant(arg, BooleanValue.TRUE))
+			{
+				nOfConstantTrues++;
+			} else if (!isConstant(arg, neutralValue))
+			{
+				nonConstantBooleanArgs.add(arg);
+			}
+		}
+
+		final int nOfRemovedArgs = funcInputs.size() - firstBooleanArgIndex - nonConstantBooleanArgs.size();
+		if (nOfRemovedArgs == 0 || nonConstantBooleanArgs.isEmpty())
+		{
+			/*
+			 * Nothing to remove, or only constants: the function call is constant (statically evaluated)
+			 */
+			return null;
+		}
+
+		/*
+		 * For n-of, 'n' minus the removed constant Trues; for and/or, 1 (equivalent to n-of(1, x) if there is a single argument x left)
+		 */
+		final int newNOfRequiredTrues = isNOf ? nOfRequiredTrues - nOfConstantTrues : 1;
+		if (newNOfRequiredTrues <= 0 || newNOfRequiredTrues > nonConstantBooleanArgs.size())
+		{
+			/*
+			 * Result of n-of determined by the constant arguments: the function call is constant (statically evaluated)
+			 */
+			return null;
+		}
+
+		LOGGER.debug("Apply[Description = {}]: {} constant argument(s) of function {} not determining the result -> optimizing: removing them", applyDesc, nOfRemovedArgs, functionId);
+		if (nonConstantBooleanArgs.size() == 1 && newNOfRequiredTrues == 1)
+		{
+			/*
+			 * and(x) = or(x) = n-of(1, x) = x
+			 */
+			PartialEvaluation.countEliminatedNodes(expFactory, nOfRemovedArgs + 1);
+			return nonConstantBooleanArgs.get(0);
+		}
+
+		funcInputs.subList(firstBooleanArgIndex, funcInputs.size()).clear();
+		funcInputs.addAll(nonConstantBooleanArgs);
+		if (isNOf)
+		{
+			funcInputs.set(0, new ConstantApplyExpression<>(StandardDatatypes.INTEGER, IntegerValue.valueOf(newNOfRequiredTrues)));
+		}
+
+		PartialEvaluation.countEliminatedNodes(expFactory, nOfRemovedArgs);
+		return null;
+	}
+
 	/**
 	 * Creates instance of Apply evaluator from XACML Apply element
 	 *
@@ -150,6 +322,16 @@ public final class ApplyExpressions
 			throw NULL_EXPRESSION_FACTORY_EXCEPTION;
 		}
 
+		final boolean isPartialEvaluationEnabled = PartialEvaluation.isEnabled(expFactory);
+		if (isPartialEvaluationEnabled)
+		{
+			final Expression<?> simplifiedApply = simplifyDoubleNegation(xacmlApply, xPathCompiler, expFactory, longestVarRefChain);
+			if (simplifiedApply != null)
+			{
+				return simplifiedApply;
+			}
+		}
+
 		final String applyDesc = xacmlApply.getDescription();
 		// function args
 		final List<JAXBElement<? extends ExpressionType>> applyArgExpressions = xacmlApply.getExpressions();
@@ -169,6 +351,14 @@ public final class ApplyExpressions
 		}
 
 		final String functionId = xacmlApply.getFunctionId();
+		if (isPartialEvaluationEnabled)
+		{
+			final Expression<?> simplifiedApply = simplifyLogicalFunctionArgs(functionId, funcInputs, applyDesc, expFactory);
+			if (simplifiedApply != null)
+			{
+				return simplifiedApply;
+			}
+		}
 
 		// get the function instance
 		// Determine whether this is a higher-order function, i.e. first parameter is a sub-function
@@ -19,15 +19,22 @@ package org.ow2.authzforce.core.pdp.impl.expression;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.AttributeFqns;
 import org.ow2.authzforce.core.pdp.api.CloseableNamedAttributeProvider;
 import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.HashCollections;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeDesignatorExpression;
 import org.ow2.authzforce.core.pdp.api.expression.ConstantExpression;
 import org.ow2.authzforce.core.pdp.api.expression.Expression;
 import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
@@ -35,12 +42,18 @@ import org.ow2.authzforce.core.pdp.api.expression.FunctionExpression;
 import org.ow2.authzforce.core.pdp.api.expression.GenericAttributeProviderBasedAttributeDesignatorExpression;
 import org.ow2.authzforce.core.pdp.api.expression.VariableReference;
 import org.ow2.authzforce.core.pdp.api.func.Function;
+import org.ow2.authzforce.core.pdp.api.value.AttributeDatatype;
 import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
 import org.ow2.authzforce.core.pdp.api.value.AttributeValueFactory;
 import org.ow2.authzforce.core.pdp.api.value.AttributeValueFactoryRegistry;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
 import org.ow2.authzforce.core.pdp.api.value.Datatype;
 import org.ow2.authzforce.core.pdp.api.value.Value;
+import org.ow2.authzforce.core.pdp.impl.AttributeSlotIndex;
 import org.ow2.authzforce.core.pdp.impl.CloseableAttributeProvider;
+import org.ow2.authzforce.core.pdp.impl.CompiledEvaluators;
+import org.ow2.authzforce.core.pdp.impl.IndividualDecisionRequestContext;
+import org.ow2.authzforce.core.pdp.impl.PartialEvaluation;
 import org.ow2.authzforce.core.pdp.impl.func.FunctionRegistry;
 import org.ow2.authzforce.xacml.identifiers.XacmlStatusCode;
 import org.slf4j.Logger;
@@ -61,6 +74,9 @@ import oasis.names.tc.xacml._3_0.core.schema.wd_17.VariableReferenceType;
  * VariableDefinition does not exceed a value (to avoid inconveniences such as stackoverflow or very negative performance impact) defined by {@code maxVarRefDef} parameter to
  * {@link #DepthLimitingExpressionFactory(AttributeValueFactoryRegistry, FunctionRegistry, List, int, boolean, boolean)}. Note that reference loops are avoided by the fact that a VariableReference can
  * reference only a VariableDefinition defined previously to the VariableReference in this implementation.
+ * <p>
+ * The VariableDefinitions are specific to each variable scope ({@link #newVariableScope()}), e.g. one per Policy, whereas the rest (Attribute Providers, attribute slots...) is shared by all the
+ * scopes of the same factory.
  *
  * 
  * @version $Id: $
@@ -118,6 +134,19 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 		}
 	}
 
+	/*
+	 * Constant replacing (partial evaluation) a VariableReference to a constant VariableDefinition, or an AttributeDesignator of a static attribute
+	 */
+	private static final class PartiallyEvaluatedExpression<V extends Value> extends ConstantExpression<V>
+	{
+
+		private PartiallyEvaluatedExpression(final Datatype<V> datatype, final V v) throws IllegalArgumentException
+		{
+			super(datatype, v);
+		}
+
+	}
+
 	private static final class ConstantVariableReference<V extends Value> extends BaseVariableReference<V>
 	{
 		private final transient Optional<V> alwaysPresentVarValue;
@@ -282,12 +311,41 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 	private final FunctionRegistry functionRegistry;
 	private final CloseableAttributeProvider attributeProvider;
 	private final int maxVariableReferenceDepth;
-	// the map from identifiers to internal data
+	/*
+	 * the map from identifiers to internal data, specific to each variable scope (see #newVariableScope())
+	 */
 	private final Map<String, BaseVariableReference<?>> idToVariableMap = HashCollections.newMutableMap();
+	/*
+	 * True iff this is a variable scope of another factory (see #newVariableScope()), sharing the Attribute Provider with it
+	 */
+	private final boolean isVariableScope;
 	private final boolean allowAttributeSelectors;
 
 	private final boolean issuerRequiredOnAttributeDesignators;
 
+	private final boolean evaluatorCompilationEnabled;
+
+	private final boolean partialEvaluationEnabled;
+
+	/*
+	 * Attribute values fixed at deployment time, replacing the AttributeDesignators of the same attributes (with the same datatype)
+	 */
+	private final Map<AttributeFqn, Bag<?>> staticAttributes;
+
+	private final AtomicInteger eliminatedNodeCount;
+
+	private final AttributeSlotIndex attributeSlotIndex;
+
+	/*
+	 * True iff policies may be parsed with this factory after the PDP is initialized (see #deferPolicyLoading())
+	 */
+	private final AtomicBoolean policyLoadingDeferred;
+
+	/*
+	 * Attributes required by Attribute Providers (declared dependencies)
+	 */
+	private final Set<AttributeFqn> attributeProviderDependencies;
+
 	/**
 	 * Maximum VariableReference depth allowed for VariableDefinitions to be managed. Examples:
 	 * <ul>
@@ -324,6 +382,89 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 	public DepthLimitingExpressionFactory(final AttributeValueFactoryRegistry attributeFactory, final FunctionRegistry functionRegistry,
 	        final List<CloseableNamedAttributeProvider.DependencyAwareFactory> attributeProviderFactories, final int maxVariableRefDepth, final boolean allowAttributeSelectors,
 	        final boolean strictAttributeIssuerMatch) throws IllegalArgumentException, IOException
+	{
+		this(attributeFactory, functionRegistry, attributeProviderFactories, maxVariableRefDepth, allowAttributeSelectors, strictAttributeIssuerMatch, false);
+	}
+
+	/**
+	 * Maximum VariableReference depth allowed for VariableDefinitions to be managed. Examples:
+	 * <ul>
+	 * <li>A VariableDefinition V1 that does not use any VariableReference has a reference depth of 0.</li>
+	 * <li>A VariableDefinition V1 that uses a VariableReference to VariableDefinition V2 with no further VariableReference, has a reference depth of 1</li>
+	 * <li>etc.</li>
+	 * </ul>
+	 *
+	 * @param attributeFactory
+	 *            attribute value factory (not null)
+	 * @param functionRegistry
+	 *            function registry (not null)
+	 * @param attributeProviderFactories
+	 *            Attribute Provider factories (Attribute Providers resolve values of attributes absent from the request context). Empty if none.
+	 * @param maxVariableRefDepth
+	 *            max depth of VariableReference chaining: VariableDefinition -> VariableDefinition ->... ('->' represents a VariableReference); strictly negative value means unlimited
+	 * @param allowAttributeSelectors
+	 *            allow use of AttributeSelectors (experimental, not for production, use with caution)
+	 * @param strictAttributeIssuerMatch
+	 *            true iff we want strict Attribute Issuer matching and we require that all AttributeDesignators set the Issuer field.
+	 *            <p>
+	 *            "Strict Attribute Issuer matching" means that an AttributeDesignator without Issuer only matches request Attributes without Issuer. This mode is not fully compliant with XACML 3.0,
+	 *            §5.29, in the case that the Issuer is not present in the Attribute Designator, but it performs better and is recommended when all AttributeDesignators have an Issuer (best practice).
+	 *            Indeed, the XACML 3.0 Attribute Evaluation section §5.29 says: "If the Issuer is not present in the AttributeDesignator, then the matching of the attribute to the named attribute
+	 *            SHALL be governed by AttributeId and DataType attributes alone." Therefore, if {@code strictAttributeIssuerMatch} is false, since policies may use AttributeDesignators without
+	 *            Issuer, if the requests are using matching Attributes but with none, one or more different Issuers, this PDP engine has to gather all the values from all the attributes with matching
+	 *            Category/AttributeId but with any Issuer or no Issuer. Therefore, in order to stay compliant with §5.29 and still enforce best practice, when {@code strictAttributeIssuerMatch} is
+	 *            true, we also require that all AttributeDesignators set the Issuer field.
+	 * @param evaluatorCompilationEnabled
+	 *            true iff the Matches (in Targets) and Conditions created with this factory are compiled into type-specialized evaluators (see {@link CompiledEvaluators})
+	 * @throws java.lang.IllegalArgumentException
+	 *             If {@code attributeFactory == null || functionRegistry == null} OR any Attribute Provider created from {@code attributeProviderFactories} does not provide any attribute.
+	 * @throws java.io.IOException
+	 *             error closing the Attribute Providers created from {@code attributeProviderFactories}, when a {@link IllegalArgumentException} is raised
+	 */
+	public DepthLimitingExpressionFactory(final AttributeValueFactoryRegistry attributeFactory, final FunctionRegistry functionRegistry,
+	        final List<CloseableNamedAttributeProvider.DependencyAwareFactory> attributeProviderFactories, final int maxVariableRefDepth, final boolean allowAttributeSelectors,
+	        final boolean strictAttributeIssuerMatch, final boolean evaluatorCompilationEnabled) throws IllegalArgumentException, IOException
+	{
+		this(attributeFactory, functionRegistry, attributeProviderFactories, maxVariableRefDepth, allowAttributeSelectors, strictAttributeIssuerMatch, evaluatorCompilationEnabled, false,
+		        Collections.emptyMap());
+	}
+
+	/**
+	 * Maximum VariableReference depth allowed for VariableDefinitions to be managed. Examples:
+	 * <ul>
+	 * <li>A VariableDefinition V1 that does not use any VariableReference has a reference depth of 0.</li>
+	 * <li>A VariableDefinition V1 that uses a VariableReference to VariableDefinition V2 with no further VariableReference, has a reference depth of 1</li>
+	 * <li>etc.</li>
+	 * </ul>
+	 *
+	 * @param attributeFactory
+	 *            attribute value factory (not null)
+	 * @param functionRegistry
+	 *            function registry (not null)
+	 * @param attributeProviderFactories
+	 *            Attribute Provider factories (Attribute Providers resolve values of attributes absent from the request context). Empty if none.
+	 * @param maxVariableRefDepth
+	 *            max depth of VariableReference chaining: VariableDefinition -> VariableDefinition ->... ('->' represents a VariableReference); strictly negative value means unlimited
+	 * @param allowAttributeSelectors
+	 *            allow use of AttributeSelectors (experimental, not for production, use with caution)
+	 * @param strictAttributeIssuerMatch
+	 *            true iff we want strict Attribute Issuer matching and we require that all AttributeDesignators set the Issuer field (see
+	 *            {@link #DepthLimitingExpressionFactory(AttributeValueFactoryRegistry, FunctionRegistry, List, int, boolean, boolean)})
+	 * @param evaluatorCompilationEnabled
+	 *            true iff the Matches (in Targets) and Conditions created with this factory are compiled into type-specialized evaluators (see {@link CompiledEvaluators})
+	 * @param partialEvaluationEnabled
+	 *            true iff the policies parsed with this factory are partially evaluated at parsing time (see {@link PartialEvaluation})
+	 * @param staticAttributes
+	 *            attribute values fixed at deployment time, used as constant results of the AttributeDesignators of the same attributes (with the same datatype). Empty if none.
+	 * @throws java.lang.IllegalArgumentException
+	 *             If {@code attributeFactory == null || functionRegistry == null} OR any Attribute Provider created from {@code attributeProviderFactories} does not provide any attribute.
+	 * @throws java.io.IOException
+	 *             error closing the Attribute Providers created from {@code attributeProviderFactories}, when a {@link IllegalArgumentException} is raised
+	 */
+	public DepthLimitingExpressionFactory(final AttributeValueFactoryRegistry attributeFactory, final FunctionRegistry functionRegistry,
+	        final List<CloseableNamedAttributeProvider.DependencyAwareFactory> attributeProviderFactories, final int maxVariableRefDepth, final boolean allowAttributeSelectors,
+	        final boolean strictAttributeIssuerMatch, final boolean evaluatorCompilationEnabled, final boolean partialEvaluationEnabled, final Map<AttributeFqn, Bag<?>> staticAttributes)
+	        throws IllegalArgumentException, IOException
 	{
 		if (attributeFactory == null)
 		{
@@ -342,8 +483,163 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 		 * finally create the global attribute Provider used to resolve AttributeDesignators
 		 */
 		this.attributeProvider = CloseableAttributeProvider.getInstance(attributeProviderFactories, attributeFactory, strictAttributeIssuerMatch);
+		final Set<AttributeFqn> mutableAttributeProviderDependencies = HashCollections.newUpdatableSet();
+		if (attributeProviderFactories != null)
+		{
+			for (final CloseableNamedAttributeProvider.DependencyAwareFactory attributeProviderFactory : attributeProviderFactories)
+			{
+				final Set<AttributeDesignatorType> dependencies = attributeProviderFactory.getDependencies();
+				if (dependencies != null)
+				{
+					for (final AttributeDesignatorType dependency : dependencies)
+					{
+						mutableAttributeProviderDependencies.add(AttributeFqns.newInstance(dependency));
+					}
+				}
+			}
+		}
+
+		this.attributeProviderDependencies = HashCollections.newImmutableSet(mutableAttributeProviderDependencies);
 		this.allowAttributeSelectors = allowAttributeSelectors;
 		this.issuerRequiredOnAttributeDesignators = strictAttributeIssuerMatch;
+		this.evaluatorCompilationEnabled = evaluatorCompilationEnabled;
+		this.partialEvaluationEnabled = partialEvaluationEnabled;
+		this.staticAttributes = staticAttributes == null ? Collections.emptyMap() : HashCollections.newImmutableMap(staticAttributes);
+		this.eliminatedNodeCount = new AtomicInteger(0);
+		this.attributeSlotIndex = new AttributeSlotIndex();
+		this.policyLoadingDeferred = new AtomicBoolean(false);
+		this.isVariableScope = false;
+	}
+
+	/*
+	 * Variable scope of a factory: same configuration, Attribute Provider, attribute slots and partial evaluation statistics; no variable
+	 */
+	private DepthLimitingExpressionFactory(final DepthLimitingExpressionFactory factory)
+	{
+		this.datatypeFactoryRegistry = factory.datatypeFactoryRegistry;
+		this.functionRegistry = factory.functionRegistry;
+		this.maxVariableReferenceDepth = factory.maxVariableReferenceDepth;
+		this.attributeProvider = factory.attributeProvider;
+		this.attributeProviderDependencies = factory.attributeProviderDependencies;
+		this.allowAttributeSelectors = factory.allowAttributeSelectors;
+		this.issuerRequiredOnAttributeDesignators = factory.issuerRequiredOnAttributeDesignators;
+		this.evaluatorCompilationEnabled = factory.evaluatorCompilationEnabled;
+		this.partialEvaluationEnabled = factory.partialEvaluationEnabled;
+		this.staticAttributes = factory.staticAttributes;
+		this.eliminatedNodeCount = factory.eliminatedNodeCount;
+		this.attributeSlotIndex = factory.attributeSlotIndex;
+		this.policyLoadingDeferred = factory.policyLoadingDeferred;
+		this.isVariableScope = true;
+	}
+
+	/**
+	 * Creates a new variable scope, i.e. a factory parsing expressions like this one, except that it has its own VariableDefinitions (none initially): the ones added to the new scope are not visible
+	 * from this factory or any other scope, and conversely. This is how each Policy is parsed with its own VariableDefinitions, possibly at the same time as other Policies in other threads (parallel
+	 * policy loading, policies loaded on demand or reloaded). A variable scope must be used by one thread at a time. Closing it has no effect; the Attribute Providers are closed with this factory.
+	 *
+	 * @return new variable scope
+	 */
+	public DepthLimitingExpressionFactory newVariableScope()
+	{
+		return new DepthLimitingExpressionFactory(this);
+	}
+
+	/**
+	 * Says whether the Matches (in Targets) and Conditions created with this factory are compiled into type-specialized evaluators (see {@link CompiledEvaluators})
+	 *
+	 * @return true iff evaluator compilation is enabled
+	 */
+	public boolean isEvaluatorCompilationEnabled()
+	{
+		return evaluatorCompilationEnabled;
+	}
+
+	/**
+	 * Says whether the policies parsed with this factory are partially evaluated at parsing time (see {@link PartialEvaluation})
+	 *
+	 * @return true iff partial evaluation is enabled
+	 */
+	public boolean isPartialEvaluationEnabled()
+	{
+		return partialEvaluationEnabled;
+	}
+
+	/**
+	 * Adds nodes (expressions, Target elements, Rules...) to the count of nodes eliminated by partial evaluation of the policies parsed with this factory (or the evaluation of static attributes)
+	 *
+	 * @param count
+	 *            number of eliminated nodes
+	 */
+	public void countEliminatedNodes(final int count)
+	{
+		eliminatedNodeCount.addAndGet(count);
+	}
+
+	/**
+	 * Gets the number of nodes (expressions, Target elements, Rules...) eliminated by partial evaluation of the policies parsed with this factory so far (or the evaluation of static attributes)
+	 *
+	 * @return eliminated node count
+	 */
+	public int getEliminatedNodeCount()
+	{
+		return eliminatedNodeCount.get();
+	}
+
+	/**
+	 * Gets the slots assigned to the attributes referenced by the AttributeDesignators created by this factory, for use by {@link IndividualDecisionRequestContext}
+	 *
+	 * @return attribute slot index
+	 */
+	public AttributeSlotIndex getAttributeSlotIndex()
+	{
+		return attributeSlotIndex;
+	}
+
+	/**
+	 * Tells whether an attribute may be read during evaluation, i.e. whether it is referenced by any AttributeDesignator created by this factory so far (with any datatype), or declared as dependency
+	 * by any Attribute Provider. Policies parsed later with this factory may add AttributeDesignators, therefore the result is final only once all policies are loaded.
+	 *
+	 * @param attributeFqn
+	 *            attribute name
+	 * @return true iff the attribute is required by the policies or Attribute Providers
+	 */
+	public boolean isRequiredAttribute(final AttributeFqn attributeFqn)
+	{
+		return attributeProviderDependencies.contains(attributeFqn) || attributeSlotIndex.isRegistered(attributeFqn);
+	}
+
+	/**
+	 * Declares that policies will be parsed with this factory after the PDP is initialized, e.g. policies compiled on first evaluation by
+	 * {@link org.ow2.authzforce.core.pdp.impl.policy.LazyRefPolicyProvider}. Then the result of {@link #isRequiredAttribute(AttributeFqn)} is never final.
+	 */
+	public void deferPolicyLoading()
+	{
+		policyLoadingDeferred.set(true);
+	}
+
+	/**
+	 * Tells whether policies may be parsed with this factory after the PDP is initialized (see {@link #deferPolicyLoading()}), in which case the AttributeDesignators created so far do not tell all
+	 * the attributes required by the policies
+	 *
+	 * @return true iff {@link #deferPolicyLoading()} was called on this factory or any of its variable scopes
+	 */
+	public boolean isPolicyLoadingDeferred()
+	{
+		return policyLoadingDeferred.get();
+	}
+
+	private static <V extends Value> Expression<V> newInlinedVariableExpression(final ConstantVariableReference<V> var)
+	{
+		return new PartiallyEvaluatedExpression<>(var.getReturnType(), var.getValue().get());
+	}
+
+	private static <AV extends AttributeValue> Expression<?> newStaticAttributeExpression(final AttributeDatatype<AV> datatype, final Bag<?> values)
+	{
+		/*
+		 * Datatype already checked by the caller
+		 */
+		final Bag<AV> checkedValues = (Bag<AV>) values;
+		return new PartiallyEvaluatedExpression<>(datatype.getBagDatatype(), checkedValues);
 	}
 
 	private static <V extends Value> BaseVariableReference<?> newVariableReference(final String variableId, final Expression<V> variableExpression, final Deque<String> longestVarRefChainInExpression)
@@ -565,7 +861,18 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 				throw new IllegalArgumentException("Unsupported Datatype used in AttributeDesignator: " + jaxbAttrDes.getDataType());
 			}
 
-			expression = new GenericAttributeProviderBasedAttributeDesignatorExpression<>(jaxbAttrDes, attrFactory.getDatatype().getBagDatatype(), attributeProvider);
+			final Bag<?> staticAttributeValues = staticAttributes.isEmpty() ? null : staticAttributes.get(AttributeFqns.newInstance(jaxbAttrDes));
+			if (staticAttributeValues != null && staticAttributeValues.getElementDatatype().equals(attrFactory.getDatatype()))
+			{
+				LOGGER.debug("AttributeDesignator of static attribute {} -> replaced with constant {}", jaxbAttrDes, staticAttributeValues);
+				eliminatedNodeCount.incrementAndGet();
+				return newStaticAttributeExpression(attrFactory.getDatatype(), staticAttributeValues);
+			}
+
+			final AttributeDesignatorExpression<?> genericAttrDesignator = new GenericAttributeProviderBasedAttributeDesignatorExpression<>(jaxbAttrDes,
+			        attrFactory.getDatatype().getBagDatatype(), attributeProvider);
+			final int slot = attributeSlotIndex.register(genericAttrDesignator.getAttributeFQN(), attrFactory.getDatatype());
+			expression = new SlotIndexedAttributeDesignatorExpression<>(genericAttrDesignator, slot);
 		}
 		else if (expr instanceof AttributeSelectorType)
 		{
@@ -616,7 +923,17 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 		else if (expr instanceof VariableReferenceType)
 		{
 			final VariableReferenceType varRefElt = (VariableReferenceType) expr;
-			expression = getVariable(varRefElt, longestVarRefChain);
+			final BaseVariableReference<?> var = getVariable(varRefElt, longestVarRefChain);
+			if (partialEvaluationEnabled && var instanceof ConstantVariableReference)
+			{
+				LOGGER.debug("VariableReference to constant Variable {} -> replaced with its value", var.getVariableId());
+				eliminatedNodeCount.incrementAndGet();
+				expression = newInlinedVariableExpression((ConstantVariableReference<?>) var);
+			}
+			else
+			{
+				expression = var;
+			}
 		}
 		else
 		{
@@ -638,7 +955,7 @@ public final class DepthLimitingExpressionFactory implements ExpressionFactory
 	@Override
 	public void close() throws IOException
 	{
-		if (attributeProvider != null)
+		if (attributeProvider != null && !isVariableScope)
 		{
 			attributeProvider.close();
 		}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.expression;
+
+import java.util.Optional;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeDesignatorExpression;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
+import org.ow2.authzforce.core.pdp.impl.AttributeSlotIndex;
+import org.ow2.authzforce.core.pdp.impl.IndividualDecisionRequestContext;
+
+/**
+ * AttributeDesignator evaluator that gets the attribute value from the slot assigned to the attribute (name and datatype) at policy loading time by an {@link AttributeSlotIndex}, if the evaluation
+ * context is an {@link IndividualDecisionRequestContext} with a non-empty value in this slot. Else (e.g. attribute not in the request and to be resolved by attribute providers), evaluation is
+ * delegated to the generic AttributeDesignator evaluator.
+ *
+ * @param <AV>
+ *            AttributeDesignator evaluation result value's primitive datatype
+ */
+final class SlotIndexedAttributeDesignatorExpression<AV extends AttributeValue> implements AttributeDesignatorExpression<AV>
+{
+	private final AttributeDesignatorExpression<AV> delegate;
+	private final int slot;
+
+	SlotIndexedAttributeDesignatorExpression(final AttributeDesignatorExpression<AV> delegate, final int slot)
+	{
+		assert delegate != null && slot >= 0;
+		this.delegate = delegate;
+		this.slot = slot;
+	}
+
+	@Override
+	public Datatype<Bag<AV>> getReturnType()
+	{
+		return delegate.getReturnType();
+	}
+
+	@Override
+	public Bag<AV> evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+	{
+		if (context instanceof IndividualDecisionRequestContext)
+		{
+			final AttributeBag<AV> slotValue = ((IndividualDecisionRequestContext) context).getNamedAttributeValue(slot);
+			/*
+			 * Empty bag: delegate takes care of MustBePresent enforcement
+			 */
+			if (slotValue != null && !slotValue.isEmpty())
+			{
+				return slotValue;
+			}
+		}
+
+		return delegate.evaluate(context);
+	}
+
+	@Override
+	public Optional<Bag<AV>> getValue()
+	{
+		return delegate.getValue();
+	}
+
+	@Override
+	public AttributeFqn getAttributeFQN()
+	{
+		return delegate.getAttributeFQN();
+	}
+
+	@Override
+	public boolean isNonEmptyBagRequired()
+	{
+		return delegate.isNonEmptyBagRequired();
+	}
+
+	@Override
+	public String toString()
+	{
+		return delegate.toString();
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return delegate.hashCode();
+	}
+
+	@Override
+	public boolean equals(final Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+
+		return obj instanceof SlotIndexedAttributeDesignatorExpression && delegate.equals(((SlotIndexedAttributeDesignatorExpression<?>) obj).delegate);
+	}
+
+}
@@ -32,6 +32,7 @@ import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
 import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
 import org.ow2.authzforce.core.pdp.api.value.Datatype;
 import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.impl.AdaptiveEvaluationOrder;
 import org.ow2.authzforce.xacml.identifiers.XacmlStatusCode;
 
 /**
@@ -40,6 +41,12 @@ import org.ow2.authzforce.xacml.identifiers.XacmlStatusCode;
  * From XACML core specification of function 'urn:oasis:names:tc:xacml:1.0:function:or': This function SHALL return "False" if it has no arguments and SHALL return "True" if at least one of its
  * arguments evaluates to "True". The order of evaluation SHALL be from first argument to last. The evaluation SHALL stop with a result of "True" if any argument evaluates to "True", leaving the rest
  * of the arguments unevaluated.
+ * <p>
+ * Optionally, the arguments are evaluated in an order adapted to their evaluation statistics (see {@link AdaptiveEvaluationOrder}) instead. <b>This deviates from the XACML specification</b>, which
+ * mandates the evaluation from first argument to last: arguments that follow a True one may be evaluated, and arguments before it left unevaluated. The result value is the same (if several
+ * arguments are Indeterminate and none is True, the error is the one of the last Indeterminate argument in order of declaration, as in the default order), but different attributes may be requested
+ * from the attribute providers, and the Indeterminate messages may differ (e.g. errors from attribute providers or missing attributes, raised while evaluating arguments that the XACML order would
+ * not evaluate).
  *
  * 
  * @version $Id: $
@@ -54,10 +61,17 @@ final class LogicalOrFunction extends SingleParameterTypedFirstOrderFunction<Boo
 
 		private final List<Expression<?>> checkedArgExpressions;
 
-		private Call(final FirstOrderFunctionSignature<BooleanValue> functionSig, final List<Expression<?>> argExpressions, final Datatype<?>[] remainingArgTypes) throws IllegalArgumentException
+		/*
+		 * Non-null iff checkedArgExpressions are evaluated in adaptive order
+		 */
+		private final AdaptiveEvaluationOrder adaptiveOrder;
+
+		private Call(final FirstOrderFunctionSignature<BooleanValue> functionSig, final List<Expression<?>> argExpressions, final Datatype<?>[] remainingArgTypes,
+		        final boolean adaptiveEvaluationOrder) throws IllegalArgumentException
 		{
 			super(functionSig, argExpressions, remainingArgTypes);
 			this.checkedArgExpressions = argExpressions;
+			this.adaptiveOrder = adaptiveEvaluationOrder && argExpressions.size() > 1 ? new AdaptiveEvaluationOrder(argExpressions.size()) : null;
 			indeterminateArgMsgPrefix = "Function " + functionSig.getName() + ": Indeterminate arg #";
 			invalidArgTypeMsgPrefix = "Function " + functionSig.getName() + ": Invalid type (expected = " + StandardDatatypes.BOOLEAN + ") of arg#";
 		}
@@ -67,26 +81,66 @@ final class LogicalOrFunction extends SingleParameterTypedFirstOrderFunction<Boo
 		{
 			IndeterminateEvaluationException indeterminateException = null;
 			int argIndex = 0;
-			for (final Expression<?> arg : checkedArgExpressions)
+			if (adaptiveOrder != null)
 			{
-				// Evaluate the argument
-				final BooleanValue attrVal;
+				int indeterminateArgIndex = -1;
 				try
 				{
-					attrVal = Expressions.eval(arg, context, StandardDatatypes.BOOLEAN);
-					if (attrVal.getUnderlyingValue().booleanValue())
+					for (final int adaptiveArgIndex : adaptiveOrder.getOrder())
 					{
-						return BooleanValue.TRUE;
+						final long startNanos = System.nanoTime();
+						boolean isTrue = false;
+						try
+						{
+							isTrue = Expressions.eval(checkedArgExpressions.get(adaptiveArgIndex), context, StandardDatatypes.BOOLEAN).getUnderlyingValue().booleanValue();
+						}
+						catch (final IndeterminateEvaluationException e)
+						{
+							// keep the error of the last Indeterminate arg in order of declaration, like in the default order
+							if (adaptiveArgIndex > indeterminateArgIndex)
+							{
+								indeterminateArgIndex = adaptiveArgIndex;
+								indeterminateException = new IndeterminateEvaluationException(indeterminateArgMsgPrefix + adaptiveArgIndex, e.getStatusCode(), e);
+							}
+						}
+
+						adaptiveOrder.recordChildEvaluation(adaptiveArgIndex, startNanos, isTrue);
+						if (isTrue)
+						{
+							return BooleanValue.TRUE;
+						}
 					}
 				}
-				catch (final IndeterminateEvaluationException e)
+				finally
 				{
-					// save the indeterminate to throw later only if there was not any TRUE in remaining
-					// args
-					indeterminateException = new IndeterminateEvaluationException(indeterminateArgMsgPrefix + argIndex, e.getStatusCode(), e);
+					adaptiveOrder.endEvaluation();
 				}
 
-				argIndex++;
+				argIndex = checkedArgExpressions.size();
+			}
+			else
+			{
+				for (final Expression<?> arg : checkedArgExpressions)
+				{
+					// Evaluate the argument
+					final BooleanValue attrVal;
+					try
+					{
+						attrVal = Expressions.eval(arg, context, StandardDatatypes.BOOLEAN);
+						if (attrVal.getUnderlyingValue().booleanValue())
+						{
+							return BooleanValue.TRUE;
+						}
+					}
+					catch (final IndeterminateEvaluationException e)
+					{
+						// save the indeterminate to throw later only if there was not any TRUE in remaining
+						// args
+						indeterminateException = new IndeterminateEvaluationException(indeterminateArgMsgPrefix + argIndex, e.getStatusCode(), e);
+					}
+
+					argIndex++;
+				}
 			}
 
 			// do the same with remaining arg values
@@ -126,9 +180,27 @@ final class LogicalOrFunction extends SingleParameterTypedFirstOrderFunction<Boo
 		}
 	}
 
+	private final boolean adaptiveEvaluationOrder;
+
 	LogicalOrFunction(final String functionId)
+	{
+		this(functionId, false);
+	}
+
+	LogicalOrFunction(final String functionId, final boolean adaptiveEvaluationOrder)
 	{
 		super(functionId, StandardDatatypes.BOOLEAN, true, Arrays.asList(StandardDatatypes.BOOLEAN));
+		this.adaptiveEvaluationOrder = adaptiveEvaluationOrder;
+	}
+
+	/**
+	 * Says whether the arguments are evaluated in adaptive order
+	 * 
+	 * @return true iff the arguments are evaluated in an order adapted to their evaluation statistics
+	 */
+	boolean isAdaptiveEvaluationOrder()
+	{
+		return adaptiveEvaluationOrder;
 	}
 
 	/** {@inheritDoc} */
@@ -143,7 +215,7 @@ final class LogicalOrFunction extends SingleParameterTypedFirstOrderFunction<Boo
 		 * </ol>
 		 * Other optimizations are already achieved by ApplyExpression pre-evaluating the function call with context = null and check the result if no IndeterminateEvaluationException is thrown.
 		 */
-		return new Call(functionSignature, argExpressions, remainingArgTypes);
+		return new Call(functionSignature, argExpressions, remainingArgTypes, adaptiveEvaluationOrder);
 	}
 
 }
@@ -659,6 +659,19 @@ public enum StandardFunction
 		return ID_TO_STD_FUNC_MAP.get(functionId);
 	}
 
+	/**
+	 * Says whether a function is the standard 'and' or 'or' function evaluating its arguments in adaptive order (see {@link #getRegistry(boolean, StringParseableValue.Factory, boolean)})
+	 *
+	 * @param function
+	 *            function
+	 * @return true iff {@code function} is the standard 'and' or 'or' function with adaptive evaluation order
+	 */
+	public static boolean isAdaptiveEvaluationOrder(final Function<?> function)
+	{
+		return function instanceof LogicalAndFunction && ((LogicalAndFunction) function).isAdaptiveEvaluationOrder()
+		        || function instanceof LogicalOrFunction && ((LogicalOrFunction) function).isAdaptiveEvaluationOrder();
+	}
+
 	/**
 	 * Get standard function registry
 	 *
@@ -669,6 +682,24 @@ public enum StandardFunction
 	 * @return standard function registry
 	 */
 	public static FunctionRegistry getRegistry(final boolean enableXPath, final StringParseableValue.Factory<IntegerValue> stdIntValueFactory)
+	{
+		return getRegistry(enableXPath, stdIntValueFactory, false);
+	}
+
+	/**
+	 * Get standard function registry
+	 *
+	 * @param enableXPath
+	 *            true iff XPath-based function(s) support enabled
+	 * @param stdIntValueFactory
+	 *            attribute value factory for standard integer datatype
+	 * @param adaptiveEvaluationOrder
+	 *            true iff the arguments of the functions 'and' and 'or' are evaluated in an order adapted to their evaluation statistics (see
+	 *            {@link org.ow2.authzforce.core.pdp.impl.AdaptiveEvaluationOrder}) instead of the order of declaration mandated by XACML, with the same result values (see
+	 *            {@link LogicalAndFunction} and {@link LogicalOrFunction} for the differences)
+	 * @return standard function registry
+	 */
+	public static FunctionRegistry getRegistry(final boolean enableXPath, final StringParseableValue.Factory<IntegerValue> stdIntValueFactory, final boolean adaptiveEvaluationOrder)
 	{
 		if (stdIntValueFactory == null)
 		{
@@ -807,8 +838,8 @@ public enum StandardFunction
 		/*
 		 * Logical functions (A.3.5)
 		 */
-		nonGenericFunctions.add(new LogicalOrFunction(StandardFunction.OR.id));
-		nonGenericFunctions.add(new LogicalAndFunction(StandardFunction.AND.id));
+		nonGenericFunctions.add(new LogicalOrFunction(StandardFunction.OR.id, adaptiveEvaluationOrder));
+		nonGenericFunctions.add(new LogicalAndFunction(StandardFunction.AND.id, adaptiveEvaluationOrder));
 		nonGenericFunctions.add(new LogicalNOfFunction(StandardFunction.N_OF.id));
 		nonGenericFunctions.add(new LogicalNotFunction(StandardFunction.NOT.id));
 
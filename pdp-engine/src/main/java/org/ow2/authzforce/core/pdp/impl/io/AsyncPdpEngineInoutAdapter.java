@@ -0,0 +1,109 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.io;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.ow2.authzforce.core.pdp.api.io.PdpEngineInoutAdapter;
+import org.ow2.authzforce.core.pdp.api.policy.PrimaryPolicyMetadata;
+import org.ow2.authzforce.core.pdp.impl.AsyncEvaluationExecutor;
+
+/**
+ * {@link PdpEngineInoutAdapter} with non-blocking asynchronous evaluation methods, using the bounded {@link AsyncEvaluationExecutor} of the adapted PDP engine
+ *
+ * @param <ADAPTER_INPUT>
+ *            type of original input decision request handled by this adapter, e.g. XACML-schema-derived JAXB Request for XML.
+ * @param <ADAPTER_OUTPUT>
+ *            type of output result corresponding to ADAPTER_INPUT, e.g. XACML-schema-derived JAXB Response for XML.
+ */
+public final class AsyncPdpEngineInoutAdapter<ADAPTER_INPUT, ADAPTER_OUTPUT> implements PdpEngineInoutAdapter<ADAPTER_INPUT, ADAPTER_OUTPUT>
+{
+	private final PdpEngineInoutAdapter<ADAPTER_INPUT, ADAPTER_OUTPUT> syncAdapter;
+	private final AsyncEvaluationExecutor asyncEvalExecutor;
+
+	AsyncPdpEngineInoutAdapter(final PdpEngineInoutAdapter<ADAPTER_INPUT, ADAPTER_OUTPUT> syncAdapter, final AsyncEvaluationExecutor asyncEvalExecutor)
+	{
+		assert syncAdapter != null && asyncEvalExecutor != null;
+		this.syncAdapter = syncAdapter;
+		this.asyncEvalExecutor = asyncEvalExecutor;
+	}
+
+	@Override
+	public ADAPTER_OUTPUT evaluate(final ADAPTER_INPUT request, final Map<String, String> namespaceURIsByPrefix)
+	{
+		return syncAdapter.evaluate(request, namespaceURIsByPrefix);
+	}
+
+	@Override
+	public ADAPTER_OUTPUT evaluate(final ADAPTER_INPUT request)
+	{
+		return syncAdapter.evaluate(request);
+	}
+
+	/**
+	 * Evaluates a decision request asynchronously (non-blocking), like {@link #evaluate(Object, Map)}
+	 *
+	 * @param request
+	 *            input decision request
+	 * @param namespaceURIsByPrefix
+	 *            namespace prefix-URI mappings (e.g. "... xmlns:prefix=uri") in the original XACML Request bound to {@code request}, used as part of the context for XPath evaluation; may be null if
+	 *            XPath support disabled
+	 * @return future output result, completed exceptionally with {@link java.util.concurrent.RejectedExecutionException} if the PDP engine's async evaluation queue is full
+	 */
+	public CompletableFuture<ADAPTER_OUTPUT> evaluateAsync(final ADAPTER_INPUT request, final Map<String, String> namespaceURIsByPrefix)
+	{
+		return asyncEvalExecutor.submit(() -> syncAdapter.evaluate(request, namespaceURIsByPrefix));
+	}
+
+	/**
+	 * Evaluates a decision request asynchronously (non-blocking), like {@link #evaluate(Object)}
+	 *
+	 * @param request
+	 *            input decision request
+	 * @return future output result, completed exceptionally with {@link java.util.concurrent.RejectedExecutionException} if the PDP engine's async evaluation queue is full
+	 */
+	public CompletableFuture<ADAPTER_OUTPUT> evaluateAsync(final ADAPTER_INPUT request)
+	{
+		return asyncEvalExecutor.submit(() -> syncAdapter.evaluate(request));
+	}
+
+	/**
+	 * Returns the bounded executor used by the evaluateAsync methods, mostly for monitoring purposes (queue depth, rejections...)
+	 *
+	 * @return async evaluation executor
+	 */
+	public AsyncEvaluationExecutor getAsyncEvaluationExecutor()
+	{
+		return asyncEvalExecutor;
+	}
+
+	@Override
+	public Iterable<PrimaryPolicyMetadata> getApplicablePolicies()
+	{
+		return syncAdapter.getApplicablePolicies();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		syncAdapter.close();
+	}
+
+}
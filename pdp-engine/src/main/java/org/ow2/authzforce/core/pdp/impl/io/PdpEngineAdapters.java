@@ -210,7 +210,11 @@ public final class PdpEngineAdapters
 			final DecisionResultPostprocessor<ADAPTEE_INPUT_DECISION_REQUEST, ADAPTER_OUTPUT> defaultResultPostproc) throws IllegalArgumentException, IOException
 	{
 		// use intermediate Java-friendly PdpEngineConfiguration (higher-level than JAXB) that has #getAttributeValueFactory()
-		try (final BasePdpEngine adaptedPdpEngine = new BasePdpEngine(configuration))
+		final BasePdpEngine adaptedPdpEngine = new BasePdpEngine(configuration);
+		/*
+		 * The adapter takes ownership of the engine (closed by the adapter's close()), so the engine must be closed here only if the adapter could not be created.
+		 */
+		try
 		{
 
 			final Entry<DecisionRequestPreprocessor<?, ?>, DecisionResultPostprocessor<?, ?>> ioProcChain = configuration.getInOutProcChains().get(adapterInputClass);
@@ -230,6 +234,81 @@ public final class PdpEngineAdapters
 			return newInoutAdapter(adapterInputClass, adapterOutputClass, adaptedPdpEngine, rawReqPreproc == null ? defaultReqPreproc : rawReqPreproc,
 					rawResultPostProc == null ? defaultResultPostproc : rawResultPostProc);
 		}
+		catch (final IllegalArgumentException e)
+		{
+			adaptedPdpEngine.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Constructs a new PDP engine adapter for specific input/output types, using given input/output pre-/post-processors, with non-blocking asynchronous evaluation methods backed by the adapted
+	 * engine's bounded executor ({@link BasePdpEngine#getAsyncEvaluationExecutor()}).
+	 * 
+	 * @param <ADAPTER_INPUT>
+	 *            type of original input decision request handled by this class. It may correspond to multiple individual decision requests (e.g. using XACML Multiple Decision Profile). Usually
+	 *            serializable, e.g. XACML-schema-derived JAXB Request for XML.
+	 * @param <ADAPTER_OUTPUT>
+	 *            type of output result corresponding to ADAPTER_INPUT_DECISION_REQUEST. Usually serializable, e.g. XACML-schema-derived JAXB Result for XML.
+	 * @param adaptee
+	 *            adapted PDP engine
+	 * @param adapterInputClass
+	 *            class of ADAPTER_INPUT
+	 * @param adapterOutputClass
+	 *            class of ADAPTER_OUTPUT
+	 * @param rawReqPreproc
+	 *            decision request preprocessor
+	 * @param rawResultPostproc
+	 *            decision result postprocessor
+	 * @return new instance of {@link AsyncPdpEngineInoutAdapter}
+	 *
+	 * @throws java.lang.IllegalArgumentException
+	 *             if one of the args is null, or
+	 *             {@code rawReqPreproc.getInputRequestType() != adapterInputClass || rawResultPostproc.getResponseType() != adapterOutputClass || rawReqPreproc.getOutputRequestType() != rawResultPostproc.getRequestType()}
+	 */
+	public static <ADAPTER_INPUT, ADAPTER_OUTPUT> AsyncPdpEngineInoutAdapter<ADAPTER_INPUT, ADAPTER_OUTPUT> newAsyncInoutAdapter(final Class<ADAPTER_INPUT> adapterInputClass,
+			final Class<ADAPTER_OUTPUT> adapterOutputClass, final BasePdpEngine adaptee, final DecisionRequestPreprocessor<?, ?> rawReqPreproc,
+			final DecisionResultPostprocessor<?, ?> rawResultPostproc) throws IllegalArgumentException
+	{
+		final PdpEngineInoutAdapter<ADAPTER_INPUT, ADAPTER_OUTPUT> syncAdapter = newInoutAdapter(adapterInputClass, adapterOutputClass, adaptee, rawReqPreproc, rawResultPostproc);
+		return new AsyncPdpEngineInoutAdapter<>(syncAdapter, adaptee.getAsyncEvaluationExecutor());
+	}
+
+	/**
+	 * Creates a new PDP engine adapter supporting XACML/XML (JAXB) input/output according to XACML 3.0 core specification, with non-blocking asynchronous evaluation methods (evaluateAsync) backed
+	 * by the engine's bounded executor configured by {@link PdpEngineConfiguration#getAsyncEvaluationThreads()} and {@link PdpEngineConfiguration#getAsyncEvaluationQueueCapacity()}.
+	 * 
+	 * @param configuration
+	 *            PDP engine configuration
+	 * 
+	 * @return new instance of {@link AsyncPdpEngineInoutAdapter} supporting standard XACML 3.0 XML input/output
+	 *
+	 * @throws java.lang.IllegalArgumentException
+	 *             if {@code configuration == null || configuration.getXacmlExpressionFactory() == null || configuration.getRootPolicyProvider() == null}
+	 * @throws java.io.IOException
+	 *             error closing {@code configuration.getRootPolicyProvider()} when static resolution is to be used
+	 */
+	public static AsyncPdpEngineInoutAdapter<Request, Response> newAsyncXacmlJaxbInoutAdapter(final PdpEngineConfiguration configuration) throws IllegalArgumentException, IOException
+	{
+		final DecisionResultPostprocessor<IndividualXacmlJaxbRequest, Response> defaultResultPostproc = new BaseXacmlJaxbResultPostprocessor(configuration.getClientRequestErrorVerbosityLevel());
+		final DecisionRequestPreprocessor<Request, IndividualXacmlJaxbRequest> defaultReqPreproc = SingleDecisionXacmlJaxbRequestPreprocessor.LaxVariantFactory.INSTANCE.getInstance(
+				configuration.getAttributeValueFactoryRegistry(), configuration.isStrictAttributeIssuerMatchEnabled(), configuration.isXpathEnabled(), XmlUtils.SAXON_PROCESSOR,
+				defaultResultPostproc.getFeatures());
+
+		final BasePdpEngine adaptedPdpEngine = new BasePdpEngine(configuration);
+		final PdpEngineInoutAdapter<Request, Response> syncAdapter;
+		try
+		{
+			syncAdapter = newInoutAdapter(Request.class, Response.class, adaptedPdpEngine, configuration.getInOutProcChains(), resultPostprocFeatures -> defaultReqPreproc,
+					() -> defaultResultPostproc);
+		}
+		catch (final IllegalArgumentException e)
+		{
+			adaptedPdpEngine.close();
+			throw e;
+		}
+
+		return new AsyncPdpEngineInoutAdapter<>(syncAdapter, adaptedPdpEngine.getAsyncEvaluationExecutor());
 	}
 
 	/**
@@ -0,0 +1,409 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.policy.CloseableRefPolicyProvider;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyRefsMetadata;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyVersion;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyVersionPatterns;
+import org.ow2.authzforce.core.pdp.api.policy.PrimaryPolicyMetadata;
+import org.ow2.authzforce.core.pdp.api.policy.RefPolicyProvider;
+import org.ow2.authzforce.core.pdp.api.policy.StaticRefPolicyProvider;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementEvaluator;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link CloseableRefPolicyProvider} caching the policy reference resolutions of a dynamic (non-{@link StaticRefPolicyProvider}) {@link RefPolicyProvider}, e.g. a database-backed one. Without
+ * cache, the dynamic Policy(Set)IdReferences are resolved - and the {@link PolicyRefsMetadata} of the resolved PolicySets computed - again for each request.
+ * <p>
+ * The resolved policy is cached by reference type, Policy(Set)Id and version constraints for a given time to live (TTL), with its {@link PolicyRefsMetadata}; therefore this cache must be used
+ * only if the resolution does not depend on the request context, other than by the time. The PolicySet reference chain given to {@link #get(TopLevelPolicyElementType, String, Optional, Deque, EvaluationContext)}
+ * is still checked against the cached PolicySet's longest policy reference chain, so that reference loops and the max PolicySet reference depth are enforced as if the reference was resolved by the
+ * decorated provider. Resolution errors are not cached.
+ * <p>
+ * The cached resolutions may be invalidated explicitly with {@link #invalidate(TopLevelPolicyElementType, String)} and {@link #invalidateAll()}, which is done automatically if the decorated
+ * provider is an {@link ObservableRefPolicyProvider} notifying the policy changes.
+ * <p>
+ * Thread-safe.
+ */
+public final class CachingRefPolicyProvider implements CloseableRefPolicyProvider, ObservableRefPolicyProvider.ChangeListener
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(CachingRefPolicyProvider.class);
+
+	private static final IllegalArgumentException ILLEGAL_REF_POLICY_PROVIDER_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined RefPolicyProvider");
+	private static final IllegalArgumentException ILLEGAL_STATIC_REF_POLICY_PROVIDER_ARGUMENT_EXCEPTION = new IllegalArgumentException(
+	        "Invalid RefPolicyProvider: static (policy references are resolved once and for all by StaticRefPolicyProviders, therefore no need for caching)");
+	private static final IllegalArgumentException ILLEGAL_TTL_ARGUMENT_EXCEPTION = new IllegalArgumentException("Invalid time to live of cached policy resolutions (<= 0)");
+
+	/*
+	 * Cache key. The version constraints are compared by reference first (the same ref evaluator always uses the same instance), else by string representation since PolicyVersionPatterns does not
+	 * override equals()
+	 */
+	private static final class RefKey
+	{
+		private final TopLevelPolicyElementType policyType;
+		private final String policyId;
+		private final Optional<PolicyVersionPatterns> versionConstraints;
+		private final int hashCode;
+
+		private RefKey(final TopLevelPolicyElementType policyType, final String policyId, final Optional<PolicyVersionPatterns> versionConstraints)
+		{
+			this.policyType = policyType;
+			this.policyId = policyId;
+			this.versionConstraints = versionConstraints == null ? Optional.empty() : versionConstraints;
+			// policies are rarely referenced with different version constraints
+			this.hashCode = 31 * policyType.hashCode() + policyId.hashCode();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+
+			if (!(obj instanceof RefKey))
+			{
+				return false;
+			}
+
+			final RefKey other = (RefKey) obj;
+			if (this.policyType != other.policyType || !this.policyId.equals(other.policyId))
+			{
+				return false;
+			}
+
+			if (this.versionConstraints.isPresent())
+			{
+				if (!other.versionConstraints.isPresent())
+				{
+					return false;
+				}
+
+				final PolicyVersionPatterns patterns = this.versionConstraints.get();
+				final PolicyVersionPatterns otherPatterns = other.versionConstraints.get();
+				return patterns == otherPatterns || patterns.toString().equals(otherPatterns.toString());
+			}
+
+			return !other.versionConstraints.isPresent();
+		}
+	}
+
+	/*
+	 * Resolved policy with the PolicyRefsMetadata computed at resolution time, returned instead of the resolved policy so that the metadata of a (dynamic) PolicySet is not computed again for each
+	 * request
+	 */
+	private static final class CachedPolicyEvaluator implements TopLevelPolicyElementEvaluator
+	{
+		private final TopLevelPolicyElementEvaluator resolvedPolicy;
+		private final Optional<PolicyRefsMetadata> policyRefsMetadata;
+		private final long expirationTimeNanos;
+
+		private CachedPolicyEvaluator(final TopLevelPolicyElementEvaluator resolvedPolicy, final Optional<PolicyRefsMetadata> policyRefsMetadata, final long expirationTimeNanos)
+		{
+			assert resolvedPolicy != null && policyRefsMetadata != null;
+			this.resolvedPolicy = resolvedPolicy;
+			this.policyRefsMetadata = policyRefsMetadata;
+			this.expirationTimeNanos = expirationTimeNanos;
+		}
+
+		@Override
+		public DecisionResult evaluate(final EvaluationContext context)
+		{
+			return resolvedPolicy.evaluate(context);
+		}
+
+		@Override
+		public DecisionResult evaluate(final EvaluationContext context, final boolean skipTarget)
+		{
+			return resolvedPolicy.evaluate(context, skipTarget);
+		}
+
+		@Override
+		public boolean isApplicableByTarget(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			return resolvedPolicy.isApplicableByTarget(context);
+		}
+
+		@Override
+		public TopLevelPolicyElementType getPolicyElementType()
+		{
+			return resolvedPolicy.getPolicyElementType();
+		}
+
+		@Override
+		public String getPolicyId()
+		{
+			return resolvedPolicy.getPolicyId();
+		}
+
+		@Override
+		public PolicyVersion getPolicyVersion()
+		{
+			return resolvedPolicy.getPolicyVersion();
+		}
+
+		@Override
+		public PrimaryPolicyMetadata getPrimaryPolicyMetadata()
+		{
+			return resolvedPolicy.getPrimaryPolicyMetadata();
+		}
+
+		@Override
+		public Set<PrimaryPolicyMetadata> getEnclosedPolicies()
+		{
+			return resolvedPolicy.getEnclosedPolicies();
+		}
+
+		@Override
+		public Optional<PolicyRefsMetadata> getPolicyRefsMetadata(final EvaluationContext evaluationContext)
+		{
+			return policyRefsMetadata;
+		}
+
+		@Override
+		public String toString()
+		{
+			return resolvedPolicy.toString();
+		}
+	}
+
+	private final RefPolicyProvider refPolicyProvider;
+	private final long ttlNanos;
+	private final ConcurrentMap<RefKey, CachedPolicyEvaluator> cachedPolicies = new ConcurrentHashMap<>();
+
+	/*
+	 * Number of invalidations so far, to detect an invalidation during a resolution, the result of which may then be outdated and must not be cached. Incremented with the removal of the invalidated
+	 * entries under the write lock; checked with the insertion of a new entry under the read lock (concurrent insertions are fine).
+	 */
+	private final ReadWriteLock invalidationLock = new ReentrantReadWriteLock();
+	private volatile long invalidationCount = 0;
+
+	/**
+	 * Creates a cache of the policy reference resolutions of a given provider
+	 *
+	 * @param refPolicyProvider
+	 *            (dynamic) provider of the policies by reference; if it is an {@link ObservableRefPolicyProvider}, this cache is registered as policy change listener
+	 * @param ttlMillis
+	 *            time to live of the cached resolutions, in milliseconds
+	 * @throws IllegalArgumentException
+	 *             if {@code refPolicyProvider == null || refPolicyProvider instanceof StaticRefPolicyProvider || ttlMillis <= 0}
+	 */
+	public CachingRefPolicyProvider(final RefPolicyProvider refPolicyProvider, final long ttlMillis) throws IllegalArgumentException
+	{
+		if (refPolicyProvider == null)
+		{
+			throw ILLEGAL_REF_POLICY_PROVIDER_ARGUMENT_EXCEPTION;
+		}
+
+		if (refPolicyProvider instanceof StaticRefPolicyProvider)
+		{
+			throw ILLEGAL_STATIC_REF_POLICY_PROVIDER_ARGUMENT_EXCEPTION;
+		}
+
+		if (ttlMillis <= 0)
+		{
+			throw ILLEGAL_TTL_ARGUMENT_EXCEPTION;
+		}
+
+		this.refPolicyProvider = refPolicyProvider;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+		if (refPolicyProvider instanceof ObservableRefPolicyProvider)
+		{
+			((ObservableRefPolicyProvider) refPolicyProvider).addChangeListener(this);
+		}
+	}
+
+	/**
+	 * Get the decorated provider
+	 *
+	 * @return the provider of which the policy reference resolutions are cached
+	 */
+	public RefPolicyProvider getRefPolicyProvider()
+	{
+		return refPolicyProvider;
+	}
+
+	@Override
+	public Deque<String> joinPolicyRefChains(final Deque<String> policyRefChain1, final List<String> policyRefChain2) throws IllegalArgumentException
+	{
+		return refPolicyProvider.joinPolicyRefChains(policyRefChain1, policyRefChain2);
+	}
+
+	@Override
+	public TopLevelPolicyElementEvaluator get(final TopLevelPolicyElementType policyType, final String policyId, final Optional<PolicyVersionPatterns> policyVersionConstraints,
+	        final Deque<String> policySetRefChain, final EvaluationContext evaluationCtx) throws IllegalArgumentException, IndeterminateEvaluationException
+	{
+		final RefKey key = new RefKey(policyType, policyId, policyVersionConstraints);
+		final CachedPolicyEvaluator cachedPolicy = cachedPolicies.get(key);
+		if (cachedPolicy != null && System.nanoTime() - cachedPolicy.expirationTimeNanos < 0)
+		{
+			/*
+			 * Same PolicySet reference depth check as the decorated provider does on resolution (length of policySetRefChain + PolicySet's longest (nested) policy ref chain <= maxPolicySetRefDepth)
+			 */
+			if (policySetRefChain != null && cachedPolicy.policyRefsMetadata.isPresent())
+			{
+				refPolicyProvider.joinPolicyRefChains(policySetRefChain, cachedPolicy.policyRefsMetadata.get().getLongestPolicyRefChain());
+			}
+
+			return cachedPolicy;
+		}
+
+		final long invalidationCountBeforeResolution = invalidationCount;
+		final TopLevelPolicyElementEvaluator resolvedPolicy = refPolicyProvider.get(policyType, policyId, policyVersionConstraints, policySetRefChain, evaluationCtx);
+		if (resolvedPolicy == null)
+		{
+			// not found: not cached, the policy may be added at any time
+			cachedPolicies.remove(key, cachedPolicy);
+			return null;
+		}
+
+		final CachedPolicyEvaluator newCachedPolicy = new CachedPolicyEvaluator(resolvedPolicy, resolvedPolicy.getPolicyRefsMetadata(evaluationCtx), System.nanoTime() + ttlNanos);
+		final Lock insertionLock = invalidationLock.readLock();
+		insertionLock.lock();
+		try
+		{
+			/*
+			 * Not cached if invalidated in the meantime (the policy may have changed after the resolution started)
+			 */
+			if (invalidationCount == invalidationCountBeforeResolution)
+			{
+				cachedPolicies.put(key, newCachedPolicy);
+			}
+		}
+		finally
+		{
+			insertionLock.unlock();
+		}
+
+		return newCachedPolicy;
+	}
+
+	private static boolean refersTo(final CachedPolicyEvaluator cachedPolicy, final TopLevelPolicyElementType policyType, final String policyId)
+	{
+		if (!cachedPolicy.policyRefsMetadata.isPresent())
+		{
+			return false;
+		}
+
+		for (final PrimaryPolicyMetadata refPolicy : cachedPolicy.policyRefsMetadata.get().getRefPolicies())
+		{
+			if (refPolicy.getType() == policyType && refPolicy.getId().equals(policyId))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Invalidates the cached resolutions of the references to any version of a given policy, and to the PolicySets referring to it (directly or indirectly), since their cached
+	 * {@link PolicyRefsMetadata} depend on it
+	 *
+	 * @param policyType
+	 *            type of referenced policy
+	 * @param policyId
+	 *            Policy(Set)Id of referenced policy
+	 */
+	public void invalidate(final TopLevelPolicyElementType policyType, final String policyId)
+	{
+		final Lock lock = invalidationLock.writeLock();
+		lock.lock();
+		try
+		{
+			invalidationCount++;
+			cachedPolicies.entrySet()
+			        .removeIf(entry -> entry.getKey().policyType == policyType && entry.getKey().policyId.equals(policyId) || refersTo(entry.getValue(), policyType, policyId));
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		LOGGER.debug("Cached resolutions of references to {} '{}' invalidated", policyType, policyId);
+	}
+
+	/**
+	 * Invalidates all cached resolutions
+	 */
+	public void invalidateAll()
+	{
+		final Lock lock = invalidationLock.writeLock();
+		lock.lock();
+		try
+		{
+			invalidationCount++;
+			cachedPolicies.clear();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		LOGGER.debug("All cached policy reference resolutions invalidated");
+	}
+
+	@Override
+	public void policyChanged(final TopLevelPolicyElementType policyType, final String policyId)
+	{
+		invalidate(policyType, policyId);
+	}
+
+	@Override
+	public void allPoliciesChanged()
+	{
+		invalidateAll();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		cachedPolicies.clear();
+		if (refPolicyProvider instanceof Closeable)
+		{
+			((Closeable) refPolicyProvider).close();
+		}
+	}
+
+}
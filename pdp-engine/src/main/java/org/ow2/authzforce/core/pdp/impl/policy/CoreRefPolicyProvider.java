@@ -17,6 +17,7 @@
  */
 package org.ow2.authzforce.core.pdp.impl.policy;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.MalformedURLException;
@@ -24,7 +25,10 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
@@ -32,6 +36,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -39,6 +49,7 @@ import java.util.stream.Stream;
 import javax.xml.bind.JAXBException;
 
 import org.ow2.authzforce.core.pdp.api.EnvironmentProperties;
+import org.ow2.authzforce.core.pdp.api.HashCollections;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
 import org.ow2.authzforce.core.pdp.api.XmlUtils.XmlnsFilteringParser;
 import org.ow2.authzforce.core.pdp.api.XmlUtils.XmlnsFilteringParserFactory;
@@ -49,11 +60,14 @@ import org.ow2.authzforce.core.pdp.api.policy.CloseableRefPolicyProvider;
 import org.ow2.authzforce.core.pdp.api.policy.PolicyRefsMetadata;
 import org.ow2.authzforce.core.pdp.api.policy.PolicyVersion;
 import org.ow2.authzforce.core.pdp.api.policy.PolicyVersionPatterns;
+import org.ow2.authzforce.core.pdp.api.policy.PrimaryPolicyMetadata;
 import org.ow2.authzforce.core.pdp.api.policy.StaticRefPolicyProvider;
 import org.ow2.authzforce.core.pdp.api.policy.StaticTopLevelPolicyElementEvaluator;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.ResourceUtils;
+import org.xml.sax.InputSource;
 
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
@@ -64,7 +78,8 @@ import oasis.names.tc.xacml._3_0.core.schema.wd_17.PolicySet;
 /**
  * This is the core implementation of {@link StaticRefPolicyProvider} that supports static retrieval of the policies referenced by Policy(Set)IdReference. It is configured by a list of locations that
  * represent Spring-compatible resource URLs, corresponding to XACML Policy(Set) files - each file content is expected to be a XACML Policy(Set) document - when the module is initialized. Beyond this,
- * there is no modifying or re-loading of the policies.
+ * the policies are not modified, but a new instance may be created from the same locations reusing the unchanged policies of a previous one (incremental reload, see
+ * {@link #getInstance(Collection, boolean, XmlnsFilteringParserFactory, int, ExpressionFactory, CombiningAlgRegistry, Optional)}).
  * <p>
  * A policy location may also be a file pattern in the following form: "file://DIRECTORY_PATH/*SUFFIX" using wilcard character '*'; in which case the location is expanded to all regular files (not
  * subdirectories) in directory located at DIRECTORY_PATH with suffix SUFFIX (SUFFIX may be empty, i.e. no suffix). The files are NOT searched recursively on sub-directories.
@@ -83,6 +98,11 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 	private static final IllegalArgumentException ILLEGAL_POLICY_URLS_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined policy URL(s)");
 	private static final Logger LOGGER = LoggerFactory.getLogger(CoreRefPolicyProvider.class);
 
+	/*
+	 * Algorithm of the digest of policy files used to detect changes on incremental reload
+	 */
+	private static final String POLICY_FILE_DIGEST_ALGORITHM = "SHA-256";
+
 	/**
 	 * Policy wrapper to keep the association between the namespace prefix-URIs from a XACML policy document and the Java instance of the policy resulting from parsing the same document
 	 *
@@ -115,7 +135,15 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 
 		private final P policy;
 
-		private PolicyWithNamespaces(final P policy, final Map<String, String> nsPrefixUriMap)
+		/**
+		 * Creates instance
+		 * 
+		 * @param policy
+		 *            policy(Set)
+		 * @param nsPrefixUriMap
+		 *            namespace prefix-URI mappings from the XACML document of {@code policy}
+		 */
+		public PolicyWithNamespaces(final P policy, final Map<String, String> nsPrefixUriMap)
 		{
 			this.policy = policy;
 			this.nsPrefixUriMap = nsPrefixUriMap;
@@ -123,6 +151,154 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 
 	}
 
+	/*
+	 * Policy file loaded by a CoreRefPolicyProvider, kept for incremental reload (see getInstance(..., previousInstance))
+	 */
+	private static final class PolicyFile
+	{
+		/*
+		 * Digest of the file content, null if not a local file
+		 */
+		private final byte[] contentDigest;
+		private final TopLevelPolicyElementType type;
+		private final String id;
+		private final PolicyVersion version;
+
+		/*
+		 * Null if the policy was ignored (old version)
+		 */
+		private final StaticTopLevelPolicyElementEvaluator evaluator;
+
+		private PolicyFile(final PolicyFileLoad policyFileLoad, final StaticTopLevelPolicyElementEvaluator evaluator)
+		{
+			this.contentDigest = policyFileLoad.contentDigest;
+			this.type = policyFileLoad.type;
+			this.id = policyFileLoad.id;
+			this.version = policyFileLoad.version;
+			this.evaluator = evaluator;
+		}
+
+		private boolean isReusable(final byte[] newContentDigest)
+		{
+			return evaluator != null && contentDigest != null && Arrays.equals(contentDigest, newContentDigest);
+		}
+	}
+
+	/*
+	 * Policy file being loaded, either parsed or reused from a previous instance
+	 */
+	private static final class PolicyFileLoad
+	{
+		private final URL url;
+		private final String location;
+		private final byte[] contentDigest;
+		/*
+		 * Content of the local file read for the digest, parsed from memory instead of reading the file again; null if not a local file, or once parsed or reused
+		 */
+		private byte[] content = null;
+
+		private TopLevelPolicyElementType type = null;
+		private String id = null;
+		private PolicyVersion version = null;
+
+		// one of them set if parsed
+		private PolicyWithNamespaces<Policy> jaxbPolicy = null;
+		private PolicyWithNamespaces<PolicySet> jaxbPolicySet = null;
+		// set if reused
+		private StaticTopLevelPolicyElementEvaluator reusedEvaluator = null;
+		// false if ignored (old version)
+		private boolean isLoaded = false;
+
+		private PolicyFileLoad(final URL url)
+		{
+			this.url = url;
+			this.location = url.toString();
+			byte[] digest = null;
+			if (ResourceUtils.isFileURL(url))
+			{
+				final MessageDigest contentDigester;
+				try
+				{
+					contentDigester = MessageDigest.getInstance(POLICY_FILE_DIGEST_ALGORITHM);
+				}
+				catch (final NoSuchAlgorithmException e)
+				{
+					throw new RuntimeException("Policy file digest algorithm not supported: " + POLICY_FILE_DIGEST_ALGORITHM, e);
+				}
+
+				try
+				{
+					content = Files.readAllBytes(ResourceUtils.getFile(url).toPath());
+					digest = contentDigester.digest(content);
+				}
+				catch (final IOException e)
+				{
+					// the file will be parsed (and the error reported) like any other policy location
+					LOGGER.debug("Failed to read policy file: {}", url, e);
+				}
+			}
+
+			this.contentDigest = digest;
+		}
+
+		private void reuse(final PolicyFile policyFile)
+		{
+			this.type = policyFile.type;
+			this.id = policyFile.id;
+			this.version = policyFile.version;
+			this.reusedEvaluator = policyFile.evaluator;
+			this.content = null;
+		}
+
+		private void parse(final XmlnsFilteringParser xacmlParser) throws IllegalArgumentException
+		{
+			final Object jaxbPolicyOrPolicySetObj;
+			try
+			{
+				if (content == null)
+				{
+					jaxbPolicyOrPolicySetObj = xacmlParser.parse(url);
+				}
+				else
+				{
+					// same content as the digest
+					final InputSource inputSource = new InputSource(new ByteArrayInputStream(content));
+					inputSource.setSystemId(location);
+					jaxbPolicyOrPolicySetObj = xacmlParser.parse(inputSource);
+					content = null;
+				}
+			}
+			catch (final JAXBException e)
+			{
+				throw new IllegalArgumentException("Failed to unmarshall Policy(Set) XML document from policy location: " + url, e);
+			}
+
+			final Map<String, String> nsPrefixUriMap = xacmlParser.getNamespacePrefixUriMap();
+			if (jaxbPolicyOrPolicySetObj instanceof Policy)
+			{
+				final Policy jaxbPolicy = (Policy) jaxbPolicyOrPolicySetObj;
+				this.type = TopLevelPolicyElementType.POLICY;
+				this.id = jaxbPolicy.getPolicyId();
+				this.version = new PolicyVersion(jaxbPolicy.getVersion());
+				this.jaxbPolicy = new PolicyWithNamespaces<>(jaxbPolicy, nsPrefixUriMap);
+			}
+			else if (jaxbPolicyOrPolicySetObj instanceof PolicySet)
+			{
+				final PolicySet jaxbPolicySet = (PolicySet) jaxbPolicyOrPolicySetObj;
+				this.type = TopLevelPolicyElementType.POLICY_SET;
+				this.id = jaxbPolicySet.getPolicySetId();
+				this.version = new PolicyVersion(jaxbPolicySet.getVersion());
+				this.jaxbPolicySet = new PolicyWithNamespaces<>(jaxbPolicySet, nsPrefixUriMap);
+			}
+			else
+			{
+				throw new IllegalArgumentException("Unexpected element found as root of the policy document: " + jaxbPolicyOrPolicySetObj.getClass().getSimpleName());
+			}
+
+			this.reusedEvaluator = null;
+		}
+	}
+
 	/**
 	 * Module factory
 	 * 
@@ -135,7 +311,7 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 		/*
 		 * Pattern: **...**.somefileextension -> '**...*'.length = number of directory levels to search and '*.somefileextension' = filename pattern
 		 */
-		private static final Pattern WILDCARD_SEQ_PREFIX_PATTERN = Pattern.compile("^(\\*+)([^\\*]*)$");
+		static final Pattern WILDCARD_SEQ_PREFIX_PATTERN = Pattern.compile("^(\\*+)([^\\*]*)$");
 
 		@Override
 		public Class<org.ow2.authzforce.core.xmlns.pdp.StaticRefPolicyProvider> getJaxbClass()
@@ -146,15 +322,54 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 		@Override
 		public CloseableRefPolicyProvider getInstance(final org.ow2.authzforce.core.xmlns.pdp.StaticRefPolicyProvider conf, final XmlnsFilteringParserFactory xacmlParserFactory,
 		        final int maxPolicySetRefDepth, final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry, final EnvironmentProperties environmentProperties)
+		{
+			return getInstance(conf, xacmlParserFactory, maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry, environmentProperties, Optional.empty());
+		}
+
+		/**
+		 * Same as {@link #getInstance(org.ow2.authzforce.core.xmlns.pdp.StaticRefPolicyProvider, XmlnsFilteringParserFactory, int, ExpressionFactory, CombiningAlgRegistry, EnvironmentProperties)}
+		 * but reusing the policies of a previous instance for the policy files that have not changed, i.e. incremental reload (see
+		 * {@link CoreRefPolicyProvider#getInstance(Collection, boolean, XmlnsFilteringParserFactory, int, ExpressionFactory, CombiningAlgRegistry, Optional)})
+		 *
+		 * @param conf
+		 *            module configuration
+		 * @param xacmlParserFactory
+		 *            XACML parser factory for parsing any XACML Policy(Set)
+		 * @param maxPolicySetRefDepth
+		 *            maximum allowed depth of PolicySet reference chain (via PolicySetIdReference): PolicySet1 -> PolicySet2 -> ...; a strictly negative value means no limit
+		 * @param expressionFactory
+		 *            Expression factory for parsing Expressions used in the policy(set)
+		 * @param combiningAlgRegistry
+		 *            registry of policy/rule combining algorithms
+		 * @param environmentProperties
+		 *            PDP configuration environment properties
+		 * @param previousInstance
+		 *            instance previously created from the same arguments (the policy files may have changed since); or empty to parse all the policy files
+		 * @return the module instance
+		 */
+		public CoreRefPolicyProvider getInstance(final org.ow2.authzforce.core.xmlns.pdp.StaticRefPolicyProvider conf, final XmlnsFilteringParserFactory xacmlParserFactory,
+		        final int maxPolicySetRefDepth, final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry, final EnvironmentProperties environmentProperties,
+		        final Optional<CoreRefPolicyProvider> previousInstance)
 		{
 			if (conf == null)
 			{
 				throw NULL_CONF_ARGUMENT_EXCEPTION;
 			}
 
+			return CoreRefPolicyProvider.getInstance(getPolicyURLs(conf.getPolicyLocations(), environmentProperties), conf.isIgnoreOldVersions(), xacmlParserFactory, maxPolicySetRefDepth,
+			        expressionFactory, combiningAlgRegistry, previousInstance);
+		}
+
+		/*
+		 * Resolves the policy locations in the configuration, expanding the file path patterns to the matching files
+		 */
+		static List<URL> getPolicyURLs(final List<String> policyLocationPatterns, final EnvironmentProperties environmentProperties) throws IllegalArgumentException
+		{
+			assert policyLocationPatterns != null && environmentProperties != null;
+
 			final List<URL> policyURLs = new ArrayList<>();
 			int policyLocationIndex = 0;
-			for (final String policyLocationPatternBeforePlaceholderReplacement : conf.getPolicyLocations())
+			for (final String policyLocationPatternBeforePlaceholderReplacement : policyLocationPatterns)
 			{
 				final String policyLocationPattern = environmentProperties.replacePlaceholders(policyLocationPatternBeforePlaceholderReplacement);
 				// Check whether the location is a file path pattern
@@ -252,12 +467,13 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 				policyLocationIndex++;
 			}
 
-			return CoreRefPolicyProvider.getInstance(policyURLs, conf.isIgnoreOldVersions(), xacmlParserFactory, maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry);
+			return policyURLs;
 		}
 	}
 
 	/*
-	 * Ref policy Provider used only for initialization, more particularly for parsing the PolicySets when they are referred to by others (in PolicySetIdReferences) at initialization time
+	 * Ref policy Provider used only for initialization, more particularly for parsing the PolicySets when they are referred to by others (in PolicySetIdReferences) at initialization time. PolicySets
+	 * may be parsed in parallel by different threads, in which case a PolicySet referred to by several others may be parsed more than once, but only the first result is kept.
 	 */
 	private static class InitOnlyRefPolicyProvider extends BaseStaticRefPolicyProvider
 	{
@@ -268,22 +484,73 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 		// will be updated by get(...)
 		private final PolicyMap<StaticTopLevelPolicyElementEvaluator> policyMap;
 		private final PolicyMap<PolicyWithNamespaces<PolicySet>> jaxbPolicySetMap;
-		private final Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> policySetMapToUpdate;
+		// already in policySetMapToUpdate
+		private final PolicyMap<StaticTopLevelPolicyElementEvaluator> reusedPolicySetMap;
+		// PolicySetId -> (Version -> PolicySet evaluator), concurrent maps
+		private final ConcurrentMap<String, Map<PolicyVersion, StaticTopLevelPolicyElementEvaluator>> policySetMapToUpdate;
 
 		private InitOnlyRefPolicyProvider(final PolicyMap<StaticTopLevelPolicyElementEvaluator> policyMap, final PolicyMap<PolicyWithNamespaces<PolicySet>> jaxbPolicySetMap,
-		        final Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> outPolicySetEvaluatorMap, final int maxPolicySetRefDepth, final ExpressionFactory expressionFactory,
-		        final CombiningAlgRegistry combiningAlgRegistry)
+		        final PolicyMap<StaticTopLevelPolicyElementEvaluator> reusedPolicySetMap,
+		        final ConcurrentMap<String, Map<PolicyVersion, StaticTopLevelPolicyElementEvaluator>> outPolicySetEvaluatorMap, final int maxPolicySetRefDepth,
+		        final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry)
 		{
 			super(maxPolicySetRefDepth);
 
 			this.policyMap = policyMap;
 			this.policySetMapToUpdate = outPolicySetEvaluatorMap;
 			this.jaxbPolicySetMap = jaxbPolicySetMap;
+			this.reusedPolicySetMap = reusedPolicySetMap;
 			// this.maxPolicySetRefDepth = maxPolicySetRefDepth;
 			this.expressionFactory = expressionFactory;
 			this.combiningAlgRegistry = combiningAlgRegistry;
 		}
 
+		private StaticTopLevelPolicyElementEvaluator getParsedPolicySet(final String id, final PolicyVersion version)
+		{
+			final Map<PolicyVersion, StaticTopLevelPolicyElementEvaluator> policySetVersions = policySetMapToUpdate.get(id);
+			return policySetVersions == null ? null : policySetVersions.get(version);
+		}
+
+		/*
+		 * Returns the first one parsed, in case the same PolicySet is parsed concurrently
+		 */
+		private StaticTopLevelPolicyElementEvaluator putParsedPolicySet(final String id, final PolicyVersion version, final StaticTopLevelPolicyElementEvaluator policySetEvaluator)
+		{
+			final StaticTopLevelPolicyElementEvaluator previousPolicySetEvaluator = policySetMapToUpdate.computeIfAbsent(id, k -> new ConcurrentHashMap<>()).putIfAbsent(version,
+			        policySetEvaluator);
+			return previousPolicySetEvaluator == null ? policySetEvaluator : previousPolicySetEvaluator;
+		}
+
+		/*
+		 * Parses a PolicySet that is not referred to by a PolicySetIdReference (top-level), unless already parsed
+		 */
+		private StaticTopLevelPolicyElementEvaluator getTopLevelPolicySet(final String id, final PolicyVersion version, final PolicyWithNamespaces<PolicySet> jaxbPolicySetWithNs)
+		        throws IllegalArgumentException
+		{
+			/*
+			 * Check whether it is not already there, i.e. already instantiated by get(...) because of Policy references in previously instantiated policies
+			 */
+			final StaticTopLevelPolicyElementEvaluator policySetEvaluator = getParsedPolicySet(id, version);
+			if (policySetEvaluator != null)
+			{
+				return policySetEvaluator;
+			}
+
+			// no policyset with such ID/Version instantiated yet
+			// do it now
+			final StaticTopLevelPolicyElementEvaluator newPolicySetEvaluator;
+			try
+			{
+				newPolicySetEvaluator = PolicyEvaluators.getInstanceStatic(jaxbPolicySetWithNs.policy, null, jaxbPolicySetWithNs.nsPrefixUriMap, expressionFactory, combiningAlgRegistry, this, null);
+			}
+			catch (final IllegalArgumentException e)
+			{
+				throw new IllegalArgumentException("Invalid PolicySet with PolicySetId='" + id + "', Version=" + version, e);
+			}
+
+			return putParsedPolicySet(id, version, newPolicySetEvaluator);
+		}
+
 		@Override
 		protected StaticTopLevelPolicyElementEvaluator getPolicy(final String policyIdRef, final Optional<PolicyVersionPatterns> constraints) throws IndeterminateEvaluationException
 		{
@@ -295,25 +562,31 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 		public StaticTopLevelPolicyElementEvaluator getPolicySet(final String id, final Optional<PolicyVersionPatterns> versionConstraints, final Deque<String> policySetRefChain)
 		{
 			final Entry<PolicyVersion, PolicyWithNamespaces<PolicySet>> jaxbPolicySetEntry = jaxbPolicySetMap.get(id, versionConstraints);
-			if (jaxbPolicySetEntry == null)
+			final Entry<PolicyVersion, StaticTopLevelPolicyElementEvaluator> reusedPolicySetEntry = reusedPolicySetMap.get(id, versionConstraints);
+			if (jaxbPolicySetEntry == null && reusedPolicySetEntry == null)
 			{
 				// no such policy
 				return null;
 			}
 
-			final PolicyVersion jaxbPolicySetVersion = jaxbPolicySetEntry.getKey();
-			// Check whether already parsed
-			final StaticTopLevelPolicyElementEvaluator policySetEvaluator = policySetMapToUpdate.get(id, jaxbPolicySetVersion);
+			// latest matching version
+			final PolicyVersion jaxbPolicySetVersion = jaxbPolicySetEntry == null || reusedPolicySetEntry != null && reusedPolicySetEntry.getKey().compareTo(jaxbPolicySetEntry.getKey()) > 0
+			        ? reusedPolicySetEntry.getKey()
+			        : jaxbPolicySetEntry.getKey();
+			// Check whether already parsed (or reused)
+			final StaticTopLevelPolicyElementEvaluator policySetEvaluator = getParsedPolicySet(id, jaxbPolicySetVersion);
 			final StaticTopLevelPolicyElementEvaluator resultPolicySetEvaluator;
 			if (policySetEvaluator == null)
 			{
+				assert jaxbPolicySetEntry != null;
 				/*
 				 * No matching version already parsed. Instantiate the policy evaluator
 				 */
 				final PolicyWithNamespaces<PolicySet> jaxbPolicySetWithNs = jaxbPolicySetEntry.getValue();
+				final StaticTopLevelPolicyElementEvaluator newPolicySetEvaluator;
 				try
 				{
-					resultPolicySetEvaluator = PolicyEvaluators.getInstanceStatic(jaxbPolicySetWithNs.policy, null, jaxbPolicySetWithNs.nsPrefixUriMap, expressionFactory, combiningAlgRegistry, this,
+					newPolicySetEvaluator = PolicyEvaluators.getInstanceStatic(jaxbPolicySetWithNs.policy, null, jaxbPolicySetWithNs.nsPrefixUriMap, expressionFactory, combiningAlgRegistry, this,
 					        policySetRefChain);
 				}
 				catch (final IllegalArgumentException e)
@@ -321,7 +594,7 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 					throw new IllegalArgumentException("Invalid PolicySet with PolicySetId=" + id + ", Version=" + jaxbPolicySetVersion, e);
 				}
 
-				policySetMapToUpdate.put(id, jaxbPolicySetVersion, resultPolicySetEvaluator);
+				resultPolicySetEvaluator = putParsedPolicySet(id, jaxbPolicySetVersion, newPolicySetEvaluator);
 			}
 			else
 			{
@@ -359,57 +632,71 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 	private final PolicyMap<StaticTopLevelPolicyElementEvaluator> policyEvaluatorMap;
 	private final PolicyMap<StaticTopLevelPolicyElementEvaluator> policySetEvaluatorMap;
 
-	private CoreRefPolicyProvider(final PolicyMap<StaticTopLevelPolicyElementEvaluator> policyMap, final PolicyMap<PolicyWithNamespaces<PolicySet>> jaxbPolicySetMap, final int maxPolicySetRefDepth,
-	        final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry) throws IllegalArgumentException
+	/*
+	 * Policy files loaded by this instance, indexed by location (URL), for incremental reload
+	 */
+	private final Map<String, PolicyFile> policyFilesByLocation;
+
+	/*
+	 * reusedPolicySetMap: PolicySet evaluators reused from a previous instance (incremental reload), that may be referred to by the ones in jaxbPolicySetMap. The PolicySets are parsed in parallel
+	 * with policyLoadingExecutor.
+	 */
+	private CoreRefPolicyProvider(final PolicyMap<StaticTopLevelPolicyElementEvaluator> policyMap, final PolicyMap<PolicyWithNamespaces<PolicySet>> jaxbPolicySetMap,
+	        final PolicyMap<StaticTopLevelPolicyElementEvaluator> reusedPolicySetMap, final List<PolicyFileLoad> policyFileLoads, final int maxPolicySetRefDepth,
+	        final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry, final PolicyLoadingExecutor policyLoadingExecutor) throws IllegalArgumentException
 	{
 		super(maxPolicySetRefDepth);
-		assert policyMap != null && jaxbPolicySetMap != null && expressionFactory != null && combiningAlgRegistry != null;
+		assert policyMap != null && jaxbPolicySetMap != null && reusedPolicySetMap != null && policyFileLoads != null && expressionFactory != null && combiningAlgRegistry != null
+		        && policyLoadingExecutor != null;
 
 		this.policyEvaluatorMap = policyMap;
-		final Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> updatablePolicySetEvaluatorTable = HashBasedTable.create();
+		final ConcurrentMap<String, Map<PolicyVersion, StaticTopLevelPolicyElementEvaluator>> updatablePolicySetEvaluatorMap = new ConcurrentHashMap<>();
+		for (final Entry<String, PolicyVersions<StaticTopLevelPolicyElementEvaluator>> reusedPolicySetEntry : reusedPolicySetMap.entrySet())
+		{
+			final Map<PolicyVersion, StaticTopLevelPolicyElementEvaluator> reusedPolicySetVersions = new ConcurrentHashMap<>();
+			for (final Entry<PolicyVersion, StaticTopLevelPolicyElementEvaluator> reusedPolicySetVersionEntry : reusedPolicySetEntry.getValue())
+			{
+				reusedPolicySetVersions.put(reusedPolicySetVersionEntry.getKey(), reusedPolicySetVersionEntry.getValue());
+			}
+
+			updatablePolicySetEvaluatorMap.put(reusedPolicySetEntry.getKey(), reusedPolicySetVersions);
+		}
+
 		/*
 		 * Ref policy Provider module used only for initialization, more particularly for parsing the PolicySets when they are referred to by others (in PolicySetIdReferences)
 		 */
-		try (final InitOnlyRefPolicyProvider bootstrapRefPolicyProvider = new InitOnlyRefPolicyProvider(this.policyEvaluatorMap, jaxbPolicySetMap, updatablePolicySetEvaluatorTable,
-		        maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry))
+		try (final InitOnlyRefPolicyProvider bootstrapRefPolicyProvider = new InitOnlyRefPolicyProvider(this.policyEvaluatorMap, jaxbPolicySetMap, reusedPolicySetMap,
+		        updatablePolicySetEvaluatorMap, maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry))
 		{
+			// instantiate all policy versions now, in parallel
+			final List<Callable<StaticTopLevelPolicyElementEvaluator>> policySetParsingTasks = new ArrayList<>();
 			for (final Entry<String, PolicyVersions<PolicyWithNamespaces<PolicySet>>> jaxbPolicySetWithNsEntry : jaxbPolicySetMap.entrySet())
 			{
 				final String policySetId = jaxbPolicySetWithNsEntry.getKey();
-				// instantiate all policy versions for this policyId now
-				final PolicyVersions<PolicyWithNamespaces<PolicySet>> jaxbPolicySetVersions = jaxbPolicySetWithNsEntry.getValue();
-				for (final Entry<PolicyVersion, PolicyWithNamespaces<PolicySet>> jaxbPolicySetEntry : jaxbPolicySetVersions)
+				for (final Entry<PolicyVersion, PolicyWithNamespaces<PolicySet>> jaxbPolicySetEntry : jaxbPolicySetWithNsEntry.getValue())
 				{
-
-					final PolicyVersion policySetVersion = jaxbPolicySetEntry.getKey();
-					/*
-					 * Check corresponding PolicySet evaluator in policySetEvaluatorTable to check whether it is not already there, i.e. already instantiated by refPolicyProvider.get(...) because of
-					 * Policy references in previously instantiated policies (when calling PolicyEvaluators.getInstanceStatic() down below)
-					 */
-					final StaticTopLevelPolicyElementEvaluator old = updatablePolicySetEvaluatorTable.get(policySetId, policySetVersion);
-					if (old == null)
-					{
-						// no policyset with such ID/Version instantiated yet
-						// do it now
-						final PolicyWithNamespaces<PolicySet> jaxbPolicySetWithNs = jaxbPolicySetEntry.getValue();
-						final StaticTopLevelPolicyElementEvaluator newPolicySetEvaluator;
-						try
-						{
-							newPolicySetEvaluator = PolicyEvaluators.getInstanceStatic(jaxbPolicySetWithNs.policy, null, jaxbPolicySetWithNs.nsPrefixUriMap, expressionFactory, combiningAlgRegistry,
-							        bootstrapRefPolicyProvider, null);
-						}
-						catch (final IllegalArgumentException e)
-						{
-							throw new IllegalArgumentException("Invalid PolicySet with PolicySetId='" + policySetId + "', Version=" + policySetVersion, e);
-						}
-
-						updatablePolicySetEvaluatorTable.put(policySetId, policySetVersion, newPolicySetEvaluator);
-					}
+					policySetParsingTasks.add(() -> bootstrapRefPolicyProvider.getTopLevelPolicySet(policySetId, jaxbPolicySetEntry.getKey(), jaxbPolicySetEntry.getValue()));
 				}
 			}
+
+			policyLoadingExecutor.invokeAll(policySetParsingTasks);
+		}
+
+		this.policySetEvaluatorMap = new PolicyMap<>(updatablePolicySetEvaluatorMap);
+
+		final Map<String, PolicyFile> updatablePolicyFileMap = HashCollections.newUpdatableMap(policyFileLoads.size());
+		for (final PolicyFileLoad policyFileLoad : policyFileLoads)
+		{
+			/*
+			 * A loaded PolicySet may have been replaced afterwards with a newer version (ignoreOldPolicyVersions), in which case the evaluator is null
+			 */
+			final StaticTopLevelPolicyElementEvaluator evaluator = policyFileLoad.isLoaded
+			        ? (policyFileLoad.type == TopLevelPolicyElementType.POLICY ? policyEvaluatorMap : policySetEvaluatorMap).get(policyFileLoad.id, policyFileLoad.version)
+			        : null;
+			updatablePolicyFileMap.put(policyFileLoad.location, new PolicyFile(policyFileLoad, evaluator));
 		}
 
-		this.policySetEvaluatorMap = new PolicyMap<>(updatablePolicySetEvaluatorTable.rowMap());
+		this.policyFilesByLocation = HashCollections.newImmutableMap(updatablePolicyFileMap);
 	}
 
 	/**
@@ -448,68 +735,86 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 			throw ILLEGAL_COMBINING_ALG_REGISTRY_ARGUMENT_EXCEPTION;
 		}
 
-		final PolicyMap<StaticTopLevelPolicyElementEvaluator> policyMap;
-		if (jaxbPolicies == null)
+		try (final PolicyLoadingExecutor policyLoadingExecutor = new PolicyLoadingExecutor())
 		{
-			policyMap = new PolicyMap<>(Collections.<String, Map<PolicyVersion, StaticTopLevelPolicyElementEvaluator>>emptyMap());
-		}
-		else
-		{
-			final Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> updatablePolicyTable = HashBasedTable.create();
-			for (final PolicyWithNamespaces<Policy> jaxbPolicyWithNs : jaxbPolicies)
+			final PolicyMap<StaticTopLevelPolicyElementEvaluator> policyMap;
+			if (jaxbPolicies == null)
 			{
-				final Policy jaxbPolicy = jaxbPolicyWithNs.policy;
-				final String policyId = jaxbPolicy.getPolicyId();
-				final String policyVersion = jaxbPolicy.getVersion();
-				final StaticTopLevelPolicyElementEvaluator policyEvaluator;
-				try
+				policyMap = new PolicyMap<>(Collections.<String, Map<PolicyVersion, StaticTopLevelPolicyElementEvaluator>>emptyMap());
+			}
+			else
+			{
+				final Table<String, PolicyVersion, PolicyWithNamespaces<Policy>> updatableJaxbPolicyTable = HashBasedTable.create();
+				for (final PolicyWithNamespaces<Policy> jaxbPolicyWithNs : jaxbPolicies)
 				{
-					policyEvaluator = PolicyEvaluators.getInstance(jaxbPolicy, null, jaxbPolicyWithNs.nsPrefixUriMap, expressionFactory, combiningAlgRegistry);
+					final Policy jaxbPolicy = jaxbPolicyWithNs.policy;
+					final String policyId = jaxbPolicy.getPolicyId();
+					final String policyVersion = jaxbPolicy.getVersion();
+					final PolicyWithNamespaces<Policy> previousValue = updatableJaxbPolicyTable.put(policyId, new PolicyVersion(policyVersion), jaxbPolicyWithNs);
+					if (previousValue != null)
+					{
+						throw new IllegalArgumentException("Policy conflict: two <Policy>s with same PolicyId=" + policyId + ", Version=" + policyVersion);
+					}
 				}
-				catch (final IllegalArgumentException e)
+
+				// Policies are independent from each other, therefore parsed in parallel
+				final List<Callable<StaticTopLevelPolicyElementEvaluator>> policyParsingTasks = new ArrayList<>(jaxbPolicies.size());
+				for (final PolicyWithNamespaces<Policy> jaxbPolicyWithNs : jaxbPolicies)
 				{
-					throw new IllegalArgumentException("Invalid Policy with PolicyId=" + policyId + ", Version=" + policyVersion, e);
+					policyParsingTasks.add(() -> {
+						try
+						{
+							return PolicyEvaluators.getInstance(jaxbPolicyWithNs.policy, null, jaxbPolicyWithNs.nsPrefixUriMap, expressionFactory, combiningAlgRegistry);
+						}
+						catch (final IllegalArgumentException e)
+						{
+							throw new IllegalArgumentException("Invalid Policy with PolicyId=" + jaxbPolicyWithNs.policy.getPolicyId() + ", Version=" + jaxbPolicyWithNs.policy.getVersion(), e);
+						}
+					});
 				}
 
-				final StaticTopLevelPolicyElementEvaluator previousValue = updatablePolicyTable.put(policyId, new PolicyVersion(policyVersion), policyEvaluator);
-				if (previousValue != null)
+				final List<StaticTopLevelPolicyElementEvaluator> policyEvaluators = policyLoadingExecutor.invokeAll(policyParsingTasks);
+				final Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> updatablePolicyTable = HashBasedTable.create();
+				for (int i = 0; i < policyEvaluators.size(); i++)
 				{
-					throw new IllegalArgumentException("Policy conflict: two <Policy>s with same PolicyId=" + policyId + ", Version=" + policyVersion);
+					final Policy jaxbPolicy = jaxbPolicies.get(i).policy;
+					updatablePolicyTable.put(jaxbPolicy.getPolicyId(), new PolicyVersion(jaxbPolicy.getVersion()), policyEvaluators.get(i));
 				}
-			}
 
-			policyMap = new PolicyMap<>(updatablePolicyTable.rowMap());
-		}
+				policyMap = new PolicyMap<>(updatablePolicyTable.rowMap());
+			}
 
-		final PolicyMap<PolicyWithNamespaces<PolicySet>> jaxbPolicySetMap;
-		if (jaxbPolicySets == null)
-		{
-			jaxbPolicySetMap = new PolicyMap<>(Collections.<String, Map<PolicyVersion, PolicyWithNamespaces<PolicySet>>>emptyMap());
-		}
-		else
-		{
-			final Table<String, PolicyVersion, PolicyWithNamespaces<PolicySet>> updatablePolicySetTable = HashBasedTable.create();
-			for (final PolicyWithNamespaces<PolicySet> jaxbPolicySetWithNs : jaxbPolicySets)
+			final PolicyMap<PolicyWithNamespaces<PolicySet>> jaxbPolicySetMap;
+			if (jaxbPolicySets == null)
+			{
+				jaxbPolicySetMap = new PolicyMap<>(Collections.<String, Map<PolicyVersion, PolicyWithNamespaces<PolicySet>>>emptyMap());
+			}
+			else
 			{
-				final PolicySet jaxbPolicySet = jaxbPolicySetWithNs.policy;
-				final String policyId = jaxbPolicySet.getPolicySetId();
-				final String policyVersion = jaxbPolicySet.getVersion();
-				// check if any version of the same policy exist in the map
-				final PolicyWithNamespaces<PolicySet> previousValue = updatablePolicySetTable.put(policyId, new PolicyVersion(policyVersion), jaxbPolicySetWithNs);
-				if (previousValue != null)
+				final Table<String, PolicyVersion, PolicyWithNamespaces<PolicySet>> updatablePolicySetTable = HashBasedTable.create();
+				for (final PolicyWithNamespaces<PolicySet> jaxbPolicySetWithNs : jaxbPolicySets)
 				{
-					throw new IllegalArgumentException("Policy conflict: two PolicySets with same PolicySetId=" + policyId + ", Version=" + policyVersion);
+					final PolicySet jaxbPolicySet = jaxbPolicySetWithNs.policy;
+					final String policyId = jaxbPolicySet.getPolicySetId();
+					final String policyVersion = jaxbPolicySet.getVersion();
+					// check if any version of the same policy exist in the map
+					final PolicyWithNamespaces<PolicySet> previousValue = updatablePolicySetTable.put(policyId, new PolicyVersion(policyVersion), jaxbPolicySetWithNs);
+					if (previousValue != null)
+					{
+						throw new IllegalArgumentException("Policy conflict: two PolicySets with same PolicySetId=" + policyId + ", Version=" + policyVersion);
+					}
+
+					/*
+					 * PolicySets cannot be parsed before we have collected them all, because each PolicySet may refer to others via PolicySetIdReferences
+					 */
 				}
 
-				/*
-				 * PolicySets cannot be parsed before we have collected them all, because each PolicySet may refer to others via PolicySetIdReferences
-				 */
+				jaxbPolicySetMap = new PolicyMap<>(updatablePolicySetTable.rowMap());
 			}
 
-			jaxbPolicySetMap = new PolicyMap<>(updatablePolicySetTable.rowMap());
+			return new CoreRefPolicyProvider(policyMap, jaxbPolicySetMap, new PolicyMap<>(Collections.<String, Map<PolicyVersion, StaticTopLevelPolicyElementEvaluator>>emptyMap()),
+			        Collections.<PolicyFileLoad>emptyList(), maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry, policyLoadingExecutor);
 		}
-
-		return new CoreRefPolicyProvider(policyMap, jaxbPolicySetMap, maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry);
 	}
 
 	/**
@@ -534,6 +839,39 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 	 */
 	public static CoreRefPolicyProvider getInstance(final Collection<URL> policyURLs, final boolean ignoreOldPolicyVersions, final XmlnsFilteringParserFactory xacmlParserFactory,
 	        final int maxPolicySetRefDepth, final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry) throws IllegalArgumentException
+	{
+		return getInstance(policyURLs, ignoreOldPolicyVersions, xacmlParserFactory, maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry, Optional.empty());
+	}
+
+	/**
+	 * Creates an instance from policy locations, reusing the policies of a previous instance for the files that have not changed since (incremental reload). A policy file is considered unchanged
+	 * if it is a local file ('file' URL) with the same content (SHA-256 digest) as when {@code previousInstance} loaded it. Only the changed (or new) files are parsed again, and the unchanged
+	 * files of the PolicySets that refer - directly or indirectly, according to their {@link PolicyRefsMetadata} - to a Policy(Set)Id defined in a changed, new or removed file (whatever the
+	 * version, since a new version may match the references); the policy evaluators of the other files are reused as is.
+	 *
+	 * @param policyURLs
+	 *            location of Policy(Set) elements (JAXB) to be parsed for future reference by Policy(Set)IdReferences
+	 * @param ignoreOldPolicyVersions
+	 *            for any given policy ID, ignore all versions except the last one if there are multiple versions of the policy
+	 * @param xacmlParserFactory
+	 *            XACML parser factory for parsing any XACML Policy(Set)
+	 * @param maxPolicySetRefDepth
+	 *            maximum allowed depth of PolicySet reference chain (via PolicySetIdReference): PolicySet1 -> PolicySet2 -> ...; a strictly negative value means no limit
+	 * @param combiningAlgRegistry
+	 *            registry of policy/rule combining algorithms
+	 * @param expressionFactory
+	 *            Expression factory for parsing Expressions used in the policy(set)
+	 * @param previousInstance
+	 *            instance previously created with the same arguments (except {@code policyURLs}), in particular the same {@code expressionFactory} and {@code combiningAlgRegistry}; or empty to
+	 *            parse all the policy files
+	 * @return instance of this class
+	 * @throws java.lang.IllegalArgumentException
+	 *             if {@code policyURLs == null || policyURLs.length == 0 || xacmlParserFactory == null || expressionFactory == null || combiningAlgRegistry == null}; or one of {@code policyURLs} is
+	 *             null or is not a valid XACML Policy(Set) or conflicts with another because it has same Policy(Set)Id and Version. Beware that the Policy(Set)Issuer is ignored from this check!
+	 */
+	public static CoreRefPolicyProvider getInstance(final Collection<URL> policyURLs, final boolean ignoreOldPolicyVersions, final XmlnsFilteringParserFactory xacmlParserFactory,
+	        final int maxPolicySetRefDepth, final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry, final Optional<CoreRefPolicyProvider> previousInstance)
+	        throws IllegalArgumentException
 	{
 		if (policyURLs == null || policyURLs.isEmpty())
 		{
@@ -555,49 +893,123 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 			throw ILLEGAL_COMBINING_ALG_REGISTRY_ARGUMENT_EXCEPTION;
 		}
 
-		final XmlnsFilteringParser xacmlParser;
-		try
-		{
-			xacmlParser = xacmlParserFactory.getInstance();
-		}
-		catch (final JAXBException e)
-		{
-			throw new IllegalArgumentException("Failed to create JAXB unmarshaller for XML Policy(Set)", e);
-		}
+		/*
+		 * XACML parsers are not thread-safe, so each parsing task borrows one from the pool (created on demand, except the first one to report any error early)
+		 */
+		final Queue<XmlnsFilteringParser> xacmlParserPool = new ConcurrentLinkedQueue<>();
+		xacmlParserPool.add(newXacmlParser(xacmlParserFactory));
 
-		final Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> updatablePolicyTable = HashBasedTable.create();
-		final Table<String, PolicyVersion, PolicyWithNamespaces<PolicySet>> updatablePolicySetTable = HashBasedTable.create();
-		int policyUrlIndex = 0;
-		for (final URL policyURL : policyURLs)
+		try (final PolicyLoadingExecutor policyLoadingExecutor = new PolicyLoadingExecutor())
 		{
-			if (policyURL == null)
+			/*
+			 * Read (and parse) in parallel the files that changed since the previous instance
+			 */
+			final Map<String, PolicyFile> previousPolicyFiles = previousInstance.isPresent() ? previousInstance.get().policyFilesByLocation : Collections.<String, PolicyFile>emptyMap();
+			final List<Callable<PolicyFileLoad>> policyFileReadingTasks = new ArrayList<>(policyURLs.size());
+			int policyUrlIndex = 0;
+			for (final URL policyURL : policyURLs)
 			{
-				throw new IllegalArgumentException("policyURL #" + policyUrlIndex + " undefined");
+				if (policyURL == null)
+				{
+					throw new IllegalArgumentException("policyURL #" + policyUrlIndex + " undefined");
+				}
+
+				final PolicyFile previousPolicyFile = previousPolicyFiles.get(policyURL.toString());
+				policyFileReadingTasks.add(() -> {
+					final PolicyFileLoad policyFileLoad = new PolicyFileLoad(policyURL);
+					if (previousPolicyFile != null && previousPolicyFile.isReusable(policyFileLoad.contentDigest))
+					{
+						policyFileLoad.reuse(previousPolicyFile);
+					}
+					else
+					{
+						parse(policyFileLoad, xacmlParserFactory, xacmlParserPool);
+					}
+
+					return policyFileLoad;
+				});
+				policyUrlIndex++;
 			}
 
-			final Object jaxbPolicyOrPolicySetObj;
-			try
+			final List<PolicyFileLoad> policyFileLoads = policyLoadingExecutor.invokeAll(policyFileReadingTasks);
+
+			/*
+			 * Find the IDs of the policies that may have changed
+			 */
+			final Set<String> changedPolicyIds = HashCollections.newUpdatableSet();
+			final Set<String> changedPolicySetIds = HashCollections.newUpdatableSet();
+			for (final PolicyFileLoad policyFileLoad : policyFileLoads)
 			{
-				jaxbPolicyOrPolicySetObj = xacmlParser.parse(policyURL);
+				if (policyFileLoad.reusedEvaluator == null)
+				{
+					(policyFileLoad.type == TopLevelPolicyElementType.POLICY ? changedPolicyIds : changedPolicySetIds).add(policyFileLoad.id);
+					final PolicyFile previousPolicyFile = previousPolicyFiles.get(policyFileLoad.location);
+					if (previousPolicyFile != null)
+					{
+						(previousPolicyFile.type == TopLevelPolicyElementType.POLICY ? changedPolicyIds : changedPolicySetIds).add(previousPolicyFile.id);
+					}
+				}
 			}
-			catch (final JAXBException e)
+
+			if (!previousPolicyFiles.isEmpty())
 			{
-				throw new IllegalArgumentException("Failed to unmarshall Policy(Set) XML document from policy location: " + policyURL, e);
+				// removed files
+				final Set<String> locations = HashCollections.newUpdatableSet(policyFileLoads.size());
+				for (final PolicyFileLoad policyFileLoad : policyFileLoads)
+				{
+					locations.add(policyFileLoad.location);
+				}
+
+				for (final Entry<String, PolicyFile> previousPolicyFileEntry : previousPolicyFiles.entrySet())
+				{
+					if (!locations.contains(previousPolicyFileEntry.getKey()))
+					{
+						final PolicyFile removedPolicyFile = previousPolicyFileEntry.getValue();
+						(removedPolicyFile.type == TopLevelPolicyElementType.POLICY ? changedPolicyIds : changedPolicySetIds).add(removedPolicyFile.id);
+					}
+				}
 			}
 
-			final Map<String, String> nsPrefixUriMap = xacmlParser.getNamespacePrefixUriMap();
-			if (jaxbPolicyOrPolicySetObj instanceof Policy)
+			/*
+			 * The unchanged PolicySets referring (directly or indirectly) to changed policies must be parsed again (the PolicyRefsMetadata of a PolicySet includes the indirect references).
+			 * Policies do not refer to other policies.
+			 */
+			final List<Callable<PolicyFileLoad>> policyFileReparsingTasks = new ArrayList<>();
+			for (final PolicyFileLoad policyFileLoad : policyFileLoads)
 			{
-				final Policy jaxbPolicy = (Policy) jaxbPolicyOrPolicySetObj;
-				final String policyId = jaxbPolicy.getPolicyId();
-				final String policyVersionStr = jaxbPolicy.getVersion();
-				final PolicyVersion policyVersion = new PolicyVersion(policyVersionStr);
+				if (policyFileLoad.reusedEvaluator != null && policyFileLoad.type == TopLevelPolicyElementType.POLICY_SET
+				        && refersToAny(policyFileLoad.reusedEvaluator, changedPolicyIds, changedPolicySetIds))
+				{
+					policyFileReparsingTasks.add(() -> {
+						parse(policyFileLoad, xacmlParserFactory, xacmlParserPool);
+						return policyFileLoad;
+					});
+				}
+			}
 
-				if (ignoreOldPolicyVersions)
+			policyLoadingExecutor.invokeAll(policyFileReparsingTasks);
+
+			/*
+			 * Index the policies by ID and version, in the order of the locations
+			 */
+			final Table<String, PolicyVersion, PolicyFileLoad> updatablePolicyFileTable = HashBasedTable.create();
+			final Table<String, PolicyVersion, PolicyWithNamespaces<PolicySet>> updatablePolicySetTable = HashBasedTable.create();
+			final Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> updatableReusedPolicySetTable = HashBasedTable.create();
+			int parsedFileCount = 0;
+			for (final PolicyFileLoad policyFileLoad : policyFileLoads)
+			{
+				if (policyFileLoad.reusedEvaluator == null)
 				{
-					final Map<PolicyVersion, StaticTopLevelPolicyElementEvaluator> policyVersions = updatablePolicyTable.row(policyId);
-					if (policyVersions != null)
+					parsedFileCount++;
+				}
+
+				final String policyId = policyFileLoad.id;
+				final PolicyVersion policyVersion = policyFileLoad.version;
+				if (policyFileLoad.type == TopLevelPolicyElementType.POLICY)
+				{
+					if (ignoreOldPolicyVersions)
 					{
+						final Map<PolicyVersion, PolicyFileLoad> policyVersions = updatablePolicyFileTable.row(policyId);
 						final boolean isOld = policyVersions.keySet().parallelStream().anyMatch(v -> policyVersion.compareTo(v) <= 0);
 						if (isOld)
 						{
@@ -610,38 +1022,25 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 						 */
 						policyVersions.clear();
 					}
-				}
 
-				final StaticTopLevelPolicyElementEvaluator policyEvaluator;
-				try
-				{
-					policyEvaluator = PolicyEvaluators.getInstance(jaxbPolicy, null, nsPrefixUriMap, expressionFactory, combiningAlgRegistry);
-				}
-				catch (final IllegalArgumentException e)
-				{
-					throw new IllegalArgumentException("Invalid Policy with PolicyId=" + policyId + ", Version=" + policyVersionStr, e);
-				}
+					final PolicyFileLoad previousValue = updatablePolicyFileTable.put(policyId, policyVersion, policyFileLoad);
+					if (previousValue != null)
+					{
+						throw new IllegalArgumentException("Policy conflict: two policies with same PolicyId=" + policyId + ", Version=" + policyVersion);
+					}
 
-				final StaticTopLevelPolicyElementEvaluator previousValue = updatablePolicyTable.put(policyId, policyVersion, policyEvaluator);
-				if (previousValue != null)
-				{
-					throw new IllegalArgumentException("Policy conflict: two policies with same PolicyId=" + policyId + ", Version=" + policyVersionStr);
+					/*
+					 * Policies are parsed afterwards, in parallel
+					 */
 				}
-
-			}
-			else if (jaxbPolicyOrPolicySetObj instanceof PolicySet)
-			{
-				final PolicySet jaxbPolicySet = (PolicySet) jaxbPolicyOrPolicySetObj;
-				final String policyId = jaxbPolicySet.getPolicySetId();
-				final String policyVersionStr = jaxbPolicySet.getVersion();
-				final PolicyVersion policyVersion = new PolicyVersion(policyVersionStr);
-
-				if (ignoreOldPolicyVersions)
+				else
 				{
-					final Map<PolicyVersion, PolicyWithNamespaces<PolicySet>> policyVersions = updatablePolicySetTable.row(policyId);
-					if (policyVersions != null)
+					if (ignoreOldPolicyVersions)
 					{
-						final boolean isOld = policyVersions.keySet().parallelStream().anyMatch(v -> policyVersion.compareTo(v) <= 0);
+						final Map<PolicyVersion, PolicyWithNamespaces<PolicySet>> policyVersions = updatablePolicySetTable.row(policyId);
+						final Map<PolicyVersion, StaticTopLevelPolicyElementEvaluator> reusedPolicyVersions = updatableReusedPolicySetTable.row(policyId);
+						final boolean isOld = policyVersions.keySet().parallelStream().anyMatch(v -> policyVersion.compareTo(v) <= 0)
+						        || reusedPolicyVersions.keySet().parallelStream().anyMatch(v -> policyVersion.compareTo(v) <= 0);
 						if (isOld)
 						{
 							// skip
@@ -649,33 +1048,137 @@ public class CoreRefPolicyProvider extends BaseStaticRefPolicyProvider
 						}
 
 						/*
-						 * Else replace/overwrite with this new version (make sure it is the only one), so empty the row first
+						 * Else replace/overwrite with this new version (make sure it is the only one), so empty the rows first
 						 */
 						policyVersions.clear();
+						reusedPolicyVersions.clear();
 					}
+
+					final boolean isConflict;
+					if (policyFileLoad.reusedEvaluator == null)
+					{
+						isConflict = updatableReusedPolicySetTable.contains(policyId, policyVersion)
+						        || updatablePolicySetTable.put(policyId, policyVersion, policyFileLoad.jaxbPolicySet) != null;
+					}
+					else
+					{
+						isConflict = updatablePolicySetTable.contains(policyId, policyVersion) || updatableReusedPolicySetTable.put(policyId, policyVersion, policyFileLoad.reusedEvaluator) != null;
+					}
+
+					if (isConflict)
+					{
+						throw new IllegalArgumentException("Policy conflict: two PolicySets with same PolicySetId=" + policyId + ", Version=" + policyVersion);
+					}
+
+					/*
+					 * PolicySets cannot be parsed before we have collected them all, because each PolicySet may refer to others via PolicySetIdReferences
+					 */
 				}
 
-				final PolicyWithNamespaces<PolicySet> previousValue = updatablePolicySetTable.put(policyId, policyVersion, new PolicyWithNamespaces<>(jaxbPolicySet, nsPrefixUriMap));
-				if (previousValue != null)
+				policyFileLoad.isLoaded = true;
+			}
+
+			if (previousInstance.isPresent())
+			{
+				LOGGER.info("Policy files reloaded incrementally: {} parsed, {} reused from the previous instance", parsedFileCount, policyFileLoads.size() - parsedFileCount);
+			}
+
+			/*
+			 * Parse the Policies in parallel (in the order of the locations for error reporting), the PolicySets are parsed in parallel by the constructor
+			 */
+			final List<PolicyFileLoad> loadedPolicyFileLoads = new ArrayList<>(updatablePolicyFileTable.size());
+			final List<Callable<StaticTopLevelPolicyElementEvaluator>> policyParsingTasks = new ArrayList<>(updatablePolicyFileTable.size());
+			for (final PolicyFileLoad policyFileLoad : policyFileLoads)
+			{
+				// the Policy may have been replaced with a newer version since it was loaded (ignoreOldPolicyVersions)
+				if (policyFileLoad.type == TopLevelPolicyElementType.POLICY && updatablePolicyFileTable.get(policyFileLoad.id, policyFileLoad.version) == policyFileLoad)
 				{
-					throw new IllegalArgumentException("Policy conflict: two PolicySets with same PolicySetId=" + policyId + ", Version=" + policyVersionStr);
-				}
+					loadedPolicyFileLoads.add(policyFileLoad);
+					policyParsingTasks.add(() -> {
+						if (policyFileLoad.reusedEvaluator != null)
+						{
+							return policyFileLoad.reusedEvaluator;
+						}
 
-				/*
-				 * PolicySets cannot be parsed before we have collected them all, because each PolicySet may refer to others via PolicySetIdReferences
-				 */
+						try
+						{
+							return PolicyEvaluators.getInstance(policyFileLoad.jaxbPolicy.policy, null, policyFileLoad.jaxbPolicy.nsPrefixUriMap, expressionFactory, combiningAlgRegistry);
+						}
+						catch (final IllegalArgumentException e)
+						{
+							throw new IllegalArgumentException("Invalid Policy with PolicyId=" + policyFileLoad.id + ", Version=" + policyFileLoad.version, e);
+						}
+					});
+				}
 			}
-			else
+
+			final List<StaticTopLevelPolicyElementEvaluator> policyEvaluators = policyLoadingExecutor.invokeAll(policyParsingTasks);
+			final Table<String, PolicyVersion, StaticTopLevelPolicyElementEvaluator> updatablePolicyTable = HashBasedTable.create();
+			for (int i = 0; i < policyEvaluators.size(); i++)
 			{
-				throw new IllegalArgumentException("Unexpected element found as root of the policy document: " + jaxbPolicyOrPolicySetObj.getClass().getSimpleName());
+				final PolicyFileLoad policyFileLoad = loadedPolicyFileLoads.get(i);
+				updatablePolicyTable.put(policyFileLoad.id, policyFileLoad.version, policyEvaluators.get(i));
 			}
 
-			policyUrlIndex++;
+			final PolicyMap<StaticTopLevelPolicyElementEvaluator> policyMap = new PolicyMap<>(updatablePolicyTable.rowMap());
+			final PolicyMap<PolicyWithNamespaces<PolicySet>> policySetMap = new PolicyMap<>(updatablePolicySetTable.rowMap());
+			final PolicyMap<StaticTopLevelPolicyElementEvaluator> reusedPolicySetMap = new PolicyMap<>(updatableReusedPolicySetTable.rowMap());
+			return new CoreRefPolicyProvider(policyMap, policySetMap, reusedPolicySetMap, policyFileLoads, maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry, policyLoadingExecutor);
+		}
+	}
+
+	private static XmlnsFilteringParser newXacmlParser(final XmlnsFilteringParserFactory xacmlParserFactory) throws IllegalArgumentException
+	{
+		try
+		{
+			return xacmlParserFactory.getInstance();
+		}
+		catch (final JAXBException e)
+		{
+			throw new IllegalArgumentException("Failed to create JAXB unmarshaller for XML Policy(Set)", e);
+		}
+	}
+
+	/*
+	 * Parses a policy file with a parser from the pool
+	 */
+	private static void parse(final PolicyFileLoad policyFileLoad, final XmlnsFilteringParserFactory xacmlParserFactory, final Queue<XmlnsFilteringParser> xacmlParserPool)
+	        throws IllegalArgumentException
+	{
+		final XmlnsFilteringParser pooledXacmlParser = xacmlParserPool.poll();
+		final XmlnsFilteringParser xacmlParser = pooledXacmlParser == null ? newXacmlParser(xacmlParserFactory) : pooledXacmlParser;
+		try
+		{
+			policyFileLoad.parse(xacmlParser);
+		}
+		finally
+		{
+			xacmlParserPool.offer(xacmlParser);
+		}
+	}
+
+	private static boolean refersToAny(final StaticTopLevelPolicyElementEvaluator policySetEvaluator, final Set<String> policyIds, final Set<String> policySetIds)
+	{
+		if (policyIds.isEmpty() && policySetIds.isEmpty())
+		{
+			return false;
+		}
+
+		final Optional<PolicyRefsMetadata> policyRefsMetadata = policySetEvaluator.getPolicyRefsMetadata();
+		if (!policyRefsMetadata.isPresent())
+		{
+			return false;
+		}
+
+		for (final PrimaryPolicyMetadata refPolicy : policyRefsMetadata.get().getRefPolicies())
+		{
+			if ((refPolicy.getType() == TopLevelPolicyElementType.POLICY ? policyIds : policySetIds).contains(refPolicy.getId()))
+			{
+				return true;
+			}
 		}
 
-		final PolicyMap<StaticTopLevelPolicyElementEvaluator> policyMap = new PolicyMap<>(updatablePolicyTable.rowMap());
-		final PolicyMap<PolicyWithNamespaces<PolicySet>> policySetMap = new PolicyMap<>(updatablePolicySetTable.rowMap());
-		return new CoreRefPolicyProvider(policyMap, policySetMap, maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry);
+		return false;
 	}
 
 	@Override
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import java.util.List;
+
+import org.ow2.authzforce.core.pdp.api.Decidable;
+import org.ow2.authzforce.core.pdp.api.combining.CombiningAlg;
+import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
+
+/**
+ * Policy(Set) evaluator exposing its structure (Target, combining algorithm and combined elements) for compilation into a {@link PolicyDecisionDiagram}
+ */
+interface DecisionDiagramCompilable
+{
+	/**
+	 * Is the result of the combining algorithm returned as is by the Policy(Set) when the Target matches, i.e. the Policy(Set) has no ObligationExpression/AdviceExpression and no
+	 * VariableDefinition?
+	 * 
+	 * @return true iff the Policy(Set) result is fully determined by its Target and combining algorithm result; if false, the other methods' results are undefined
+	 */
+	boolean isCombiningAlgResultReturnedAsIs();
+
+	/**
+	 * Does the Policy(Set) have any VariableDefinition? If so, the combined elements may use the local variables that the Policy(Set) sets in the evaluation context, therefore may be evaluated only as
+	 * part of the Policy(Set) evaluation.
+	 * 
+	 * @return true iff the Policy(Set) has local variables; if false, the other methods' results are defined (whether or not the result of the combining algorithm is returned as is)
+	 */
+	boolean hasLocalVariables();
+
+	/**
+	 * Gets the Policy(Set)'s Target evaluator
+	 * 
+	 * @return Target evaluator
+	 */
+	BooleanEvaluator getTargetEvaluator();
+
+	/**
+	 * Gets the Policy(Set)'s combining algorithm
+	 * 
+	 * @return combining algorithm
+	 */
+	CombiningAlg<?> getCombiningAlg();
+
+	/**
+	 * Gets the elements combined by the combining algorithm
+	 * 
+	 * @return combined elements, in order of declaration (immutable)
+	 */
+	List<? extends Decidable> getCombinedElements();
+}
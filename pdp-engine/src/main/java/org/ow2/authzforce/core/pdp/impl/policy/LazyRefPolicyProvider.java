@@ -0,0 +1,1048 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.api.DecisionResults;
+import org.ow2.authzforce.core.pdp.api.EnvironmentProperties;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.XmlUtils.XmlnsFilteringParser;
+import org.ow2.authzforce.core.pdp.api.XmlUtils.XmlnsFilteringParserFactory;
+import org.ow2.authzforce.core.pdp.api.combining.CombiningAlgRegistry;
+import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.policy.BasePrimaryPolicyMetadata;
+import org.ow2.authzforce.core.pdp.api.policy.BaseStaticRefPolicyProvider;
+import org.ow2.authzforce.core.pdp.api.policy.CloseableRefPolicyProvider;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyRefsMetadata;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyVersion;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyVersionPatterns;
+import org.ow2.authzforce.core.pdp.api.policy.PrimaryPolicyMetadata;
+import org.ow2.authzforce.core.pdp.api.policy.StaticTopLevelPolicyElementEvaluator;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementEvaluator;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.policy.CoreRefPolicyProvider.PolicyWithNamespaces;
+import org.ow2.authzforce.xacml.identifiers.XacmlNodeName;
+import org.ow2.authzforce.xacml.identifiers.XacmlStatusCode;
+import org.ow2.authzforce.xacml.identifiers.XacmlVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Table;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Policy;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.PolicySet;
+
+/**
+ * {@link org.ow2.authzforce.core.pdp.api.policy.StaticRefPolicyProvider} loading policies from the same kind of locations as {@link CoreRefPolicyProvider} (or from a {@link PolicyStore}, see
+ * {@link PolicyStoreRefPolicyProvider}), but compiling them lazily, for large policy repositories of which only a small part is used at any given time.
+ * <p>
+ * At initialization time, the policy documents are only scanned (StAX) to index the policies by ID and version, and to get the Policy(Set)IdReferences in the PolicySets, from which the
+ * {@link PolicyRefsMetadata} are computed (used to detect reference loops and check the max PolicySet reference depth as usual). A policy reference is resolved statically - to the same policy
+ * version as {@link CoreRefPolicyProvider} would - but to a lightweight evaluator that parses and compiles the policy the first time it is evaluated. The compiled policies are kept in a LRU cache,
+ * bounded by number of policies and/or total weight - the size of the policy documents -, therefore the memory used by compiled policies depends on the working set, not on the size of the
+ * repository. A compiled PolicySet refers to the other policies through the same lightweight evaluators, so that they may be evicted independently.
+ * <p>
+ * An invalid policy (e.g. XACML schema validation error, unknown function) is reported - as Indeterminate result - only when a request is evaluated against it, instead of at initialization time.
+ * <p>
+ * Thread-safe.
+ */
+public class LazyRefPolicyProvider extends BaseStaticRefPolicyProvider
+{
+	private static final IllegalArgumentException ILLEGAL_COMBINING_ALG_REGISTRY_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined CombiningAlgorithm registry");
+	private static final IllegalArgumentException ILLEGAL_EXPRESSION_FACTORY_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined Expression factory");
+	private static final IllegalArgumentException ILLEGAL_XACML_PARSER_FACTORY_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined XACML parser factory");
+	private static final IllegalArgumentException ILLEGAL_POLICY_URLS_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined policy URL(s)");
+	private static final Logger LOGGER = LoggerFactory.getLogger(LazyRefPolicyProvider.class);
+
+	private static final String XACML_NAMESPACE = XacmlVersion.V3_0.getNamespace();
+	private static final String DEFAULT_POLICY_VERSION = "1.0";
+
+	/**
+	 * Module factory
+	 *
+	 */
+	public static class Factory extends CloseableRefPolicyProvider.Factory<org.ow2.authzforce.core.xmlns.pdp.LazyRefPolicyProvider>
+	{
+		private static final IllegalArgumentException NULL_CONF_ARGUMENT_EXCEPTION = new IllegalArgumentException("RefPolicyProvider configuration undefined");
+
+		static long toLong(final BigInteger bigInt, final String paramName)
+		{
+			try
+			{
+				return bigInt.longValueExact();
+			}
+			catch (final ArithmeticException e)
+			{
+				throw new IllegalArgumentException("Invalid RefPolicyProvider parameter '" + paramName + "': " + bigInt, e);
+			}
+		}
+
+		@Override
+		public Class<org.ow2.authzforce.core.xmlns.pdp.LazyRefPolicyProvider> getJaxbClass()
+		{
+			return org.ow2.authzforce.core.xmlns.pdp.LazyRefPolicyProvider.class;
+		}
+
+		@Override
+		public CloseableRefPolicyProvider getInstance(final org.ow2.authzforce.core.xmlns.pdp.LazyRefPolicyProvider conf, final XmlnsFilteringParserFactory xacmlParserFactory,
+		        final int maxPolicySetRefDepth, final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry, final EnvironmentProperties environmentProperties)
+		{
+			if (conf == null)
+			{
+				throw NULL_CONF_ARGUMENT_EXCEPTION;
+			}
+
+			return LazyRefPolicyProvider.getInstance(CoreRefPolicyProvider.Factory.getPolicyURLs(conf.getPolicyLocations(), environmentProperties), conf.isIgnoreOldVersions(),
+			        xacmlParserFactory, maxPolicySetRefDepth, toLong(conf.getMaxCachedPolicies(), "maxCachedPolicies"), toLong(conf.getMaxCachedPolicyWeight(), "maxCachedPolicyWeight"),
+			        expressionFactory, combiningAlgRegistry);
+		}
+	}
+
+	/*
+	 * Policy(Set)IdReference found in a PolicySet document
+	 */
+	static final class IndexedPolicyRef
+	{
+		private final TopLevelPolicyElementType type;
+		private final String id;
+		// raw version patterns (may be null)
+		private final String version;
+		private final String earliestVersion;
+		private final String latestVersion;
+		private final Optional<PolicyVersionPatterns> versionConstraints;
+
+		IndexedPolicyRef(final TopLevelPolicyElementType type, final String id, final String version, final String earliestVersion, final String latestVersion)
+		        throws IllegalArgumentException
+		{
+			this.type = type;
+			this.id = id;
+			this.version = version;
+			this.earliestVersion = earliestVersion;
+			this.latestVersion = latestVersion;
+			this.versionConstraints = Optional.of(new PolicyVersionPatterns(version, earliestVersion, latestVersion));
+		}
+
+		@Override
+		public String toString()
+		{
+			return type + "IdReference[Id=" + id + ", " + versionConstraints + "]";
+		}
+
+		TopLevelPolicyElementType getType()
+		{
+			return type;
+		}
+
+		String getId()
+		{
+			return id;
+		}
+
+		String getVersion()
+		{
+			return version;
+		}
+
+		String getEarliestVersion()
+		{
+			return earliestVersion;
+		}
+
+		String getLatestVersion()
+		{
+			return latestVersion;
+		}
+	}
+
+	/*
+	 * Policy indexed by ID and version, not compiled yet
+	 */
+	abstract static class IndexedPolicy
+	{
+		private final PrimaryPolicyMetadata metadata;
+		/*
+		 * Size of the policy (document) in bytes
+		 */
+		private final long weight;
+		/*
+		 * Policy(Set)IdReferences in the document (empty for a Policy)
+		 */
+		private final List<IndexedPolicyRef> policyRefs;
+
+		/*
+		 * Computed on demand, null until then
+		 */
+		private volatile Optional<PolicyRefsMetadata> policyRefsMetadata = null;
+
+		/*
+		 * Error parsing (invalid XACML) or compiling the policy, the policy document being loaded once and for all. Errors reading the document ({@link PolicyReadException}) are not kept here, since
+		 * they may be transient.
+		 */
+		private volatile IllegalArgumentException compilationError = null;
+
+		IndexedPolicy(final PrimaryPolicyMetadata metadata, final long weight, final List<IndexedPolicyRef> policyRefs)
+		{
+			this.metadata = metadata;
+			this.weight = weight;
+			this.policyRefs = policyRefs;
+		}
+
+		PrimaryPolicyMetadata getMetadata()
+		{
+			return metadata;
+		}
+
+		long getWeight()
+		{
+			return weight;
+		}
+
+		List<IndexedPolicyRef> getPolicyRefs()
+		{
+			return policyRefs;
+		}
+
+		/**
+		 * Get the location of the policy, for error messages
+		 *
+		 * @return location
+		 */
+		abstract String getLocation();
+
+		/**
+		 * Loads the (JAXB) policy
+		 *
+		 * @return Policy or PolicySet with namespace prefix-URI mappings of the document
+		 * @throws IllegalArgumentException
+		 *             if the policy cannot be loaded (e.g. invalid XACML), in particular {@link PolicyReadException} if the policy document cannot be read (e.g. I/O error)
+		 */
+		abstract PolicyWithNamespaces<?> load() throws IllegalArgumentException;
+	}
+
+	/*
+	 * Failure to read a policy document that is not caused by its content (I/O error, e.g. file temporarily unavailable; or parser creation error), as opposed to an invalid policy
+	 */
+	private static final class PolicyReadException extends IllegalArgumentException
+	{
+		private static final long serialVersionUID = 1L;
+
+		private PolicyReadException(final String message, final Throwable cause)
+		{
+			super(message, cause);
+		}
+	}
+
+	/*
+	 * XACML parsers are not thread-safe, so each one borrows a parser from the pool
+	 */
+	private static final class XacmlParserPool
+	{
+		private final XmlnsFilteringParserFactory xacmlParserFactory;
+		private final Queue<XmlnsFilteringParser> xacmlParsers = new ConcurrentLinkedQueue<>();
+
+		private XacmlParserPool(final XmlnsFilteringParserFactory xacmlParserFactory)
+		{
+			this.xacmlParserFactory = xacmlParserFactory;
+		}
+
+		private PolicyWithNamespaces<?> parse(final URL policyURL) throws IllegalArgumentException
+		{
+			final XmlnsFilteringParser pooledXacmlParser = xacmlParsers.poll();
+			final XmlnsFilteringParser xacmlParser;
+			try
+			{
+				xacmlParser = pooledXacmlParser == null ? xacmlParserFactory.getInstance() : pooledXacmlParser;
+			}
+			catch (final JAXBException e)
+			{
+				throw new PolicyReadException("Failed to create JAXB unmarshaller for XML Policy(Set)", e);
+			}
+
+			final PolicyWithNamespaces<?> policy;
+			try
+			{
+				final Object jaxbPolicyOrPolicySetObj = xacmlParser.parse(policyURL);
+				policy = new PolicyWithNamespaces<>(jaxbPolicyOrPolicySetObj, xacmlParser.getNamespacePrefixUriMap());
+			}
+			catch (final JAXBException e)
+			{
+				if (isCausedByIOException(e))
+				{
+					throw new PolicyReadException("Failed to read Policy(Set) XML document from policy location: " + policyURL, e);
+				}
+
+				throw new IllegalArgumentException("Failed to unmarshall Policy(Set) XML document from policy location: " + policyURL, e);
+			}
+
+			/*
+			 * The parser is reused only after a successful parse, since its state is unknown after a failure
+			 */
+			xacmlParsers.offer(xacmlParser);
+			return policy;
+		}
+
+		private static boolean isCausedByIOException(final JAXBException e)
+		{
+			// JAXBException#getCause() returns the linked exception
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause())
+			{
+				if (cause instanceof IOException)
+				{
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	/*
+	 * Policy indexed from a XML document
+	 */
+	private static final class XmlIndexedPolicy extends IndexedPolicy
+	{
+		private final URL url;
+		private final XacmlParserPool xacmlParserPool;
+
+		private XmlIndexedPolicy(final URL url, final PrimaryPolicyMetadata metadata, final long weight, final List<IndexedPolicyRef> policyRefs, final XacmlParserPool xacmlParserPool)
+		{
+			super(metadata, weight, policyRefs);
+			this.url = url;
+			this.xacmlParserPool = xacmlParserPool;
+		}
+
+		@Override
+		String getLocation()
+		{
+			return url.toString();
+		}
+
+		@Override
+		PolicyWithNamespaces<?> load() throws IllegalArgumentException
+		{
+			return xacmlParserPool.parse(url);
+		}
+	}
+
+	private static final class IndexedPolicyRefsMetadata implements PolicyRefsMetadata
+	{
+		private final Set<PrimaryPolicyMetadata> refPolicies;
+		private final List<String> longestPolicyRefChain;
+
+		private IndexedPolicyRefsMetadata(final Set<PrimaryPolicyMetadata> refPolicies, final List<String> longestPolicyRefChain)
+		{
+			this.refPolicies = Collections.unmodifiableSet(refPolicies);
+			this.longestPolicyRefChain = Collections.unmodifiableList(longestPolicyRefChain);
+		}
+
+		@Override
+		public Set<PrimaryPolicyMetadata> getRefPolicies()
+		{
+			return refPolicies;
+		}
+
+		@Override
+		public List<String> getLongestPolicyRefChain()
+		{
+			return longestPolicyRefChain;
+		}
+	}
+
+	/*
+	 * Evaluator of a policy compiled on demand, returned by this provider
+	 */
+	private final class LazyPolicyEvaluator implements StaticTopLevelPolicyElementEvaluator
+	{
+		private final IndexedPolicy indexedPolicy;
+
+		private LazyPolicyEvaluator(final IndexedPolicy indexedPolicy)
+		{
+			this.indexedPolicy = indexedPolicy;
+		}
+
+		@Override
+		public DecisionResult evaluate(final EvaluationContext context)
+		{
+			return evaluate(context, false);
+		}
+
+		@Override
+		public DecisionResult evaluate(final EvaluationContext context, final boolean skipTarget)
+		{
+			final StaticTopLevelPolicyElementEvaluator compiledPolicy;
+			try
+			{
+				compiledPolicy = getCompiledPolicy(indexedPolicy);
+			}
+			catch (final IllegalArgumentException e)
+			{
+				return DecisionResults.newIndeterminate(DecisionType.INDETERMINATE,
+				        new IndeterminateEvaluationException("Failed to load " + indexedPolicy.metadata + " from: " + indexedPolicy.getLocation(), XacmlStatusCode.PROCESSING_ERROR.value(), e),
+				        ImmutableList.of());
+			}
+
+			return compiledPolicy.evaluate(context, skipTarget);
+		}
+
+		@Override
+		public boolean isApplicableByTarget(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			final StaticTopLevelPolicyElementEvaluator compiledPolicy;
+			try
+			{
+				compiledPolicy = getCompiledPolicy(indexedPolicy);
+			}
+			catch (final IllegalArgumentException e)
+			{
+				throw new IndeterminateEvaluationException("Failed to load " + indexedPolicy.metadata + " from: " + indexedPolicy.getLocation(), XacmlStatusCode.PROCESSING_ERROR.value(), e);
+			}
+
+			return compiledPolicy.isApplicableByTarget(context);
+		}
+
+		@Override
+		public TopLevelPolicyElementType getPolicyElementType()
+		{
+			return indexedPolicy.metadata.getType();
+		}
+
+		@Override
+		public String getPolicyId()
+		{
+			return indexedPolicy.metadata.getId();
+		}
+
+		@Override
+		public PolicyVersion getPolicyVersion()
+		{
+			return indexedPolicy.metadata.getVersion();
+		}
+
+		@Override
+		public PrimaryPolicyMetadata getPrimaryPolicyMetadata()
+		{
+			return indexedPolicy.metadata;
+		}
+
+		@Override
+		public Set<PrimaryPolicyMetadata> getEnclosedPolicies()
+		{
+			return getCompiledPolicy(indexedPolicy).getEnclosedPolicies();
+		}
+
+		@Override
+		public Optional<PolicyRefsMetadata> getPolicyRefsMetadata()
+		{
+			return LazyRefPolicyProvider.this.getPolicyRefsMetadata(indexedPolicy, new ArrayDeque<>(Collections.singletonList(indexedPolicy.metadata.getId())));
+		}
+
+		@Override
+		public String toString()
+		{
+			return indexedPolicy.metadata.toString();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return indexedPolicy.metadata.hashCode();
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			// Effective Java - Item 8
+			if (this == obj)
+			{
+				return true;
+			}
+
+			if (!(obj instanceof TopLevelPolicyElementEvaluator))
+			{
+				return false;
+			}
+
+			return indexedPolicy.metadata.equals(((TopLevelPolicyElementEvaluator) obj).getPrimaryPolicyMetadata());
+		}
+	}
+
+	private final PolicyMap<IndexedPolicy> policyMap;
+	private final PolicyMap<IndexedPolicy> policySetMap;
+	private final long maxCachedPolicies;
+	private final long maxCachedPolicyWeight;
+	private final ExpressionFactory expressionFactory;
+	private final CombiningAlgRegistry combiningAlgRegistry;
+
+	/*
+	 * Compiled policies in access order (LRU first), guarded by itself
+	 */
+	private final LinkedHashMap<IndexedPolicy, StaticTopLevelPolicyElementEvaluator> compiledPolicies = new LinkedHashMap<>(16, 0.75f, true);
+	private long compiledPolicyWeight = 0;
+
+	/*
+	 * Compilations in progress, so that a policy requested by several threads at the same time is compiled only once, the other threads waiting for the result. Guarded by compiledPolicies.
+	 */
+	private final Map<IndexedPolicy, FutureTask<StaticTopLevelPolicyElementEvaluator>> compilationsInProgress = new HashMap<>();
+
+	/*
+	 * Indexes the policies by ID and version, in the order of the list
+	 */
+	private static PolicyMap<IndexedPolicy> newPolicyMap(final List<? extends IndexedPolicy> indexedPolicies, final TopLevelPolicyElementType policyType, final boolean ignoreOldPolicyVersions)
+	        throws IllegalArgumentException
+	{
+		final Table<String, PolicyVersion, IndexedPolicy> updatablePolicyTable = HashBasedTable.create();
+		for (final IndexedPolicy indexedPolicy : indexedPolicies)
+		{
+			if (indexedPolicy.metadata.getType() != policyType)
+			{
+				continue;
+			}
+
+			final String policyId = indexedPolicy.metadata.getId();
+			final PolicyVersion policyVersion = indexedPolicy.metadata.getVersion();
+			if (ignoreOldPolicyVersions)
+			{
+				final Map<PolicyVersion, IndexedPolicy> policyVersions = updatablePolicyTable.row(policyId);
+				final boolean isOld = policyVersions.keySet().stream().anyMatch(v -> policyVersion.compareTo(v) <= 0);
+				if (isOld)
+				{
+					// skip
+					continue;
+				}
+
+				/*
+				 * Else replace/overwrite with this new version (make sure it is the only one), so empty the row first
+				 */
+				policyVersions.clear();
+			}
+
+			final IndexedPolicy previousValue = updatablePolicyTable.put(policyId, policyVersion, indexedPolicy);
+			if (previousValue != null)
+			{
+				throw new IllegalArgumentException("Policy conflict: two " + (policyType == TopLevelPolicyElementType.POLICY ? "policies with same PolicyId=" : "PolicySets with same PolicySetId=")
+				        + policyId + ", Version=" + policyVersion);
+			}
+		}
+
+		return new PolicyMap<>(updatablePolicyTable.rowMap());
+	}
+
+	/**
+	 * Creates an instance from indexed policies
+	 *
+	 * @param indexedPolicies
+	 *            policies indexed by ID and version, not compiled yet
+	 * @param ignoreOldPolicyVersions
+	 *            for any given policy ID, ignore all versions except the last one if there are multiple versions of the policy
+	 * @param maxPolicySetRefDepth
+	 *            maximum allowed depth of PolicySet reference chain (via PolicySetIdReference): PolicySet1 -> PolicySet2 -> ...; a strictly negative value means no limit
+	 * @param maxCachedPolicies
+	 *            maximum number of compiled policies kept in memory, 0 meaning unlimited
+	 * @param maxCachedPolicyWeight
+	 *            maximum total weight of the compiled policies kept in memory, 0 meaning unlimited
+	 * @param expressionFactory
+	 *            Expression factory for parsing Expressions used in the policy(set)
+	 * @param combiningAlgRegistry
+	 *            registry of policy/rule combining algorithms
+	 * @throws IllegalArgumentException
+	 *             if {@code expressionFactory == null || combiningAlgRegistry == null || maxCachedPolicies < 0 || maxCachedPolicyWeight < 0}, or two policies have same Policy(Set)Id and
+	 *             Version.
+	 */
+	LazyRefPolicyProvider(final List<? extends IndexedPolicy> indexedPolicies, final boolean ignoreOldPolicyVersions, final int maxPolicySetRefDepth, final long maxCachedPolicies,
+	        final long maxCachedPolicyWeight, final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry) throws IllegalArgumentException
+	{
+		super(maxPolicySetRefDepth);
+		assert indexedPolicies != null;
+
+		if (expressionFactory == null)
+		{
+			throw ILLEGAL_EXPRESSION_FACTORY_ARGUMENT_EXCEPTION;
+		}
+
+		if (combiningAlgRegistry == null)
+		{
+			throw ILLEGAL_COMBINING_ALG_REGISTRY_ARGUMENT_EXCEPTION;
+		}
+
+		if (maxCachedPolicies < 0 || maxCachedPolicyWeight < 0)
+		{
+			throw new IllegalArgumentException("Invalid max number (" + maxCachedPolicies + ") or weight (" + maxCachedPolicyWeight + ") of cached policies: expected >= 0");
+		}
+
+		this.policyMap = newPolicyMap(indexedPolicies, TopLevelPolicyElementType.POLICY, ignoreOldPolicyVersions);
+		this.policySetMap = newPolicyMap(indexedPolicies, TopLevelPolicyElementType.POLICY_SET, ignoreOldPolicyVersions);
+		this.maxCachedPolicies = maxCachedPolicies;
+		this.maxCachedPolicyWeight = maxCachedPolicyWeight;
+		this.expressionFactory = expressionFactory;
+		this.combiningAlgRegistry = combiningAlgRegistry;
+		/*
+		 * The policies are compiled on demand, i.e. after the PDP is initialized: the PDP must not assume that the AttributeDesignators created so far are all the ones in the policies (e.g. to
+		 * skip the standard environment attributes)
+		 */
+		if (expressionFactory instanceof DepthLimitingExpressionFactory)
+		{
+			((DepthLimitingExpressionFactory) expressionFactory).deferPolicyLoading();
+		}
+	}
+
+	/**
+	 * Indexes XACML policy documents, without unmarshalling them (in parallel)
+	 *
+	 * @param policyURLs
+	 *            location of Policy(Set) documents
+	 * @param xacmlParserFactory
+	 *            XACML parser factory for parsing the XACML Policy(Set) documents when the indexed policies are loaded
+	 * @return indexed policies, in the same order as {@code policyURLs}
+	 * @throws IllegalArgumentException
+	 *             if {@code policyURLs == null || policyURLs.length == 0 || xacmlParserFactory == null}, or one of {@code policyURLs} is null or is not a XACML Policy(Set) document
+	 */
+	static List<IndexedPolicy> index(final Collection<URL> policyURLs, final XmlnsFilteringParserFactory xacmlParserFactory) throws IllegalArgumentException
+	{
+		if (policyURLs == null || policyURLs.isEmpty())
+		{
+			throw ILLEGAL_POLICY_URLS_ARGUMENT_EXCEPTION;
+		}
+
+		if (xacmlParserFactory == null)
+		{
+			throw ILLEGAL_XACML_PARSER_FACTORY_ARGUMENT_EXCEPTION;
+		}
+
+		final XacmlParserPool xacmlParserPool = new XacmlParserPool(xacmlParserFactory);
+		try (final PolicyLoadingExecutor policyLoadingExecutor = new PolicyLoadingExecutor())
+		{
+			/*
+			 * XMLInputFactory is not guaranteed to be thread-safe, so one per thread
+			 */
+			final ThreadLocal<XMLInputFactory> xmlInputFactory = ThreadLocal.withInitial(LazyRefPolicyProvider::newXmlInputFactory);
+			final List<Callable<IndexedPolicy>> policyIndexingTasks = new ArrayList<>(policyURLs.size());
+			int policyUrlIndex = 0;
+			for (final URL policyURL : policyURLs)
+			{
+				if (policyURL == null)
+				{
+					throw new IllegalArgumentException("policyURL #" + policyUrlIndex + " undefined");
+				}
+
+				policyIndexingTasks.add(() -> index(policyURL, xmlInputFactory.get(), xacmlParserPool));
+				policyUrlIndex++;
+			}
+
+			return policyLoadingExecutor.invokeAll(policyIndexingTasks);
+		}
+	}
+
+	/**
+	 * Creates an instance from policy locations, indexing the policies without compiling them
+	 *
+	 * @param policyURLs
+	 *            location of Policy(Set) elements (JAXB) to be parsed for future reference by Policy(Set)IdReferences
+	 * @param ignoreOldPolicyVersions
+	 *            for any given policy ID, ignore all versions except the last one if there are multiple versions of the policy
+	 * @param xacmlParserFactory
+	 *            XACML parser factory for parsing any XACML Policy(Set)
+	 * @param maxPolicySetRefDepth
+	 *            maximum allowed depth of PolicySet reference chain (via PolicySetIdReference): PolicySet1 -> PolicySet2 -> ...; a strictly negative value means no limit
+	 * @param maxCachedPolicies
+	 *            maximum number of compiled policies kept in memory, 0 meaning unlimited
+	 * @param maxCachedPolicyWeight
+	 *            maximum total weight of the compiled policies kept in memory, the weight of a policy being the size of its document in bytes; 0 meaning unlimited
+	 * @param expressionFactory
+	 *            Expression factory for parsing Expressions used in the policy(set)
+	 * @param combiningAlgRegistry
+	 *            registry of policy/rule combining algorithms
+	 * @return instance of this class
+	 * @throws java.lang.IllegalArgumentException
+	 *             if {@code policyURLs == null || policyURLs.length == 0 || xacmlParserFactory == null || expressionFactory == null || combiningAlgRegistry == null}, or
+	 *             {@code maxCachedPolicies < 0 || maxCachedPolicyWeight < 0}; or one of {@code policyURLs} is null or is not a XACML Policy(Set) document or conflicts with another because it has
+	 *             same Policy(Set)Id and Version.
+	 */
+	public static LazyRefPolicyProvider getInstance(final Collection<URL> policyURLs, final boolean ignoreOldPolicyVersions, final XmlnsFilteringParserFactory xacmlParserFactory,
+	        final int maxPolicySetRefDepth, final long maxCachedPolicies, final long maxCachedPolicyWeight, final ExpressionFactory expressionFactory,
+	        final CombiningAlgRegistry combiningAlgRegistry) throws IllegalArgumentException
+	{
+		final long startTimeNanos = System.nanoTime();
+		final List<IndexedPolicy> indexedPolicies = index(policyURLs, xacmlParserFactory);
+		final LazyRefPolicyProvider provider = new LazyRefPolicyProvider(indexedPolicies, ignoreOldPolicyVersions, maxPolicySetRefDepth, maxCachedPolicies, maxCachedPolicyWeight,
+		        expressionFactory, combiningAlgRegistry);
+		LOGGER.info("{} policies indexed (not compiled yet) in {} ms", indexedPolicies.size(), (System.nanoTime() - startTimeNanos) / 1000000);
+		return provider;
+	}
+
+	private static XMLInputFactory newXmlInputFactory()
+	{
+		final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+		// policy documents are not supposed to have DTDs or external entities (not allowed by the XACML parser either)
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return xmlInputFactory;
+	}
+
+	/*
+	 * Scans a policy document for the Policy(Set)Id, Version and Policy(Set)IdReferences, without unmarshalling it
+	 */
+	private static IndexedPolicy index(final URL policyURL, final XMLInputFactory xmlInputFactory, final XacmlParserPool xacmlParserPool) throws IllegalArgumentException
+	{
+		try (final CountingInputStream in = new CountingInputStream(policyURL.openStream()))
+		{
+			final XMLStreamReader xmlReader = xmlInputFactory.createXMLStreamReader(in);
+			try
+			{
+				xmlReader.nextTag();
+				final String rootElementName = xmlReader.getLocalName();
+				final TopLevelPolicyElementType policyType;
+				final String policyId;
+				if (XACML_NAMESPACE.equals(xmlReader.getNamespaceURI()) && rootElementName.equals(XacmlNodeName.POLICY.value()))
+				{
+					policyType = TopLevelPolicyElementType.POLICY;
+					policyId = xmlReader.getAttributeValue(null, "PolicyId");
+				}
+				else if (XACML_NAMESPACE.equals(xmlReader.getNamespaceURI()) && rootElementName.equals(XacmlNodeName.POLICYSET.value()))
+				{
+					policyType = TopLevelPolicyElementType.POLICY_SET;
+					policyId = xmlReader.getAttributeValue(null, "PolicySetId");
+				}
+				else
+				{
+					throw new IllegalArgumentException("Unexpected element found as root of the policy document: " + xmlReader.getName());
+				}
+
+				if (policyId == null)
+				{
+					throw new IllegalArgumentException("Missing " + rootElementName + "Id in the policy document");
+				}
+
+				final String policyVersion = xmlReader.getAttributeValue(null, "Version");
+				final List<IndexedPolicyRef> policyRefs = new ArrayList<>();
+				while (xmlReader.hasNext())
+				{
+					if (xmlReader.next() != XMLStreamConstants.START_ELEMENT || !XACML_NAMESPACE.equals(xmlReader.getNamespaceURI()))
+					{
+						continue;
+					}
+
+					final String elementName = xmlReader.getLocalName();
+					final TopLevelPolicyElementType refPolicyType = elementName.equals(XacmlNodeName.POLICY_ID_REFERENCE.value()) ? TopLevelPolicyElementType.POLICY
+					        : elementName.equals(XacmlNodeName.POLICYSET_ID_REFERENCE.value()) ? TopLevelPolicyElementType.POLICY_SET : null;
+					if (refPolicyType != null)
+					{
+						final String version = xmlReader.getAttributeValue(null, "Version");
+						final String earliestVersion = xmlReader.getAttributeValue(null, "EarliestVersion");
+						final String latestVersion = xmlReader.getAttributeValue(null, "LatestVersion");
+						policyRefs.add(new IndexedPolicyRef(refPolicyType, xmlReader.getElementText(), version, earliestVersion, latestVersion));
+					}
+				}
+
+				final PrimaryPolicyMetadata metadata = new BasePrimaryPolicyMetadata(policyType, policyId, new PolicyVersion(policyVersion == null ? DEFAULT_POLICY_VERSION : policyVersion));
+				return new XmlIndexedPolicy(policyURL, metadata, in.getCount(), policyRefs.isEmpty() ? Collections.emptyList() : policyRefs, xacmlParserPool);
+			}
+			finally
+			{
+				xmlReader.close();
+			}
+		}
+		catch (final IOException | XMLStreamException | IllegalArgumentException e)
+		{
+			throw new IllegalArgumentException("Failed to index Policy(Set) XML document from policy location: " + policyURL, e);
+		}
+	}
+
+	private IndexedPolicy getIndexedPolicy(final TopLevelPolicyElementType policyType, final String policyId, final Optional<PolicyVersionPatterns> versionConstraints)
+	{
+		final Entry<PolicyVersion, IndexedPolicy> indexedPolicyEntry = (policyType == TopLevelPolicyElementType.POLICY ? policyMap : policySetMap).get(policyId, versionConstraints);
+		return indexedPolicyEntry == null ? null : indexedPolicyEntry.getValue();
+	}
+
+	/*
+	 * Computes the PolicyRefsMetadata of a policy from the index (without compiling any policy), once and for all. policySetRefChain: chain of PolicySets from the one for which the metadata is
+	 * requested down to indexedPolicy (included), used to detect loops.
+	 */
+	private Optional<PolicyRefsMetadata> getPolicyRefsMetadata(final IndexedPolicy indexedPolicy, final Deque<String> policySetRefChain) throws IllegalArgumentException
+	{
+		final Optional<PolicyRefsMetadata> cachedPolicyRefsMetadata = indexedPolicy.policyRefsMetadata;
+		if (cachedPolicyRefsMetadata != null)
+		{
+			return cachedPolicyRefsMetadata;
+		}
+
+		final Optional<PolicyRefsMetadata> policyRefsMetadata;
+		if (indexedPolicy.policyRefs.isEmpty())
+		{
+			policyRefsMetadata = Optional.empty();
+		}
+		else
+		{
+			// LinkedHashSet to preserve order
+			final Set<PrimaryPolicyMetadata> refPolicies = new LinkedHashSet<>();
+			List<String> longestPolicyRefChain = Collections.emptyList();
+			for (final IndexedPolicyRef policyRef : indexedPolicy.policyRefs)
+			{
+				final IndexedPolicy refPolicy = getIndexedPolicy(policyRef.type, policyRef.id, policyRef.versionConstraints);
+				if (refPolicy == null)
+				{
+					throw new IllegalArgumentException(indexedPolicy.metadata + " (loaded from " + indexedPolicy.getLocation() + "): no policy matching " + policyRef);
+				}
+
+				refPolicies.add(refPolicy.metadata);
+				final List<String> policyRefChain = new ArrayList<>();
+				policyRefChain.add(refPolicy.metadata.getId());
+				if (policyRef.type == TopLevelPolicyElementType.POLICY_SET)
+				{
+					final Deque<String> newPolicySetRefChain = joinPolicyRefChains(policySetRefChain, Collections.singletonList(refPolicy.metadata.getId()));
+					final Optional<PolicyRefsMetadata> refPolicyRefsMetadata = getPolicyRefsMetadata(refPolicy, newPolicySetRefChain);
+					if (refPolicyRefsMetadata.isPresent())
+					{
+						refPolicies.addAll(refPolicyRefsMetadata.get().getRefPolicies());
+						policyRefChain.addAll(refPolicyRefsMetadata.get().getLongestPolicyRefChain());
+					}
+				}
+
+				if (policyRefChain.size() > longestPolicyRefChain.size())
+				{
+					longestPolicyRefChain = policyRefChain;
+				}
+			}
+
+			policyRefsMetadata = Optional.of(new IndexedPolicyRefsMetadata(refPolicies, longestPolicyRefChain));
+		}
+
+		// the result is the same whatever the thread computing it
+		indexedPolicy.policyRefsMetadata = policyRefsMetadata;
+		return policyRefsMetadata;
+	}
+
+	/*
+	 * Gets the compiled policy from the cache, or parses and compiles it (outside the cache lock, so that other policies may be used meanwhile). Concurrent requests for the same policy wait for the
+	 * same compilation. (A compilation may wait for the compilation of a referenced policy, e.g. to get its enclosed policies, but never for itself, since policy reference loops are rejected from the
+	 * index beforehand.)
+	 */
+	private StaticTopLevelPolicyElementEvaluator getCompiledPolicy(final IndexedPolicy indexedPolicy) throws IllegalArgumentException
+	{
+		final FutureTask<StaticTopLevelPolicyElementEvaluator> compilation;
+		final boolean isNewCompilation;
+		synchronized (compiledPolicies)
+		{
+			final StaticTopLevelPolicyElementEvaluator compiledPolicy = compiledPolicies.get(indexedPolicy);
+			if (compiledPolicy != null)
+			{
+				return compiledPolicy;
+			}
+
+			final IllegalArgumentException compilationError = indexedPolicy.compilationError;
+			if (compilationError != null)
+			{
+				throw compilationError;
+			}
+
+			final FutureTask<StaticTopLevelPolicyElementEvaluator> compilationInProgress = compilationsInProgress.get(indexedPolicy);
+			isNewCompilation = compilationInProgress == null;
+			if (isNewCompilation)
+			{
+				compilation = new FutureTask<>(() -> compile(indexedPolicy));
+				compilationsInProgress.put(indexedPolicy, compilation);
+			}
+			else
+			{
+				compilation = compilationInProgress;
+			}
+		}
+
+		if (!isNewCompilation)
+		{
+			return getCompilationResult(compilation);
+		}
+
+		compilation.run();
+		final StaticTopLevelPolicyElementEvaluator newCompiledPolicy;
+		try
+		{
+			newCompiledPolicy = getCompilationResult(compilation);
+		}
+		catch (final RuntimeException | Error e)
+		{
+			synchronized (compiledPolicies)
+			{
+				/*
+				 * Invalid policy (schema or compilation error): fails the same way on every request. I/O errors may be transient: the next request tries again.
+				 */
+				if (e instanceof IllegalArgumentException && !(e instanceof PolicyReadException))
+				{
+					indexedPolicy.compilationError = (IllegalArgumentException) e;
+				}
+
+				compilationsInProgress.remove(indexedPolicy);
+			}
+
+			throw e;
+		}
+
+		synchronized (compiledPolicies)
+		{
+			compilationsInProgress.remove(indexedPolicy);
+			compiledPolicies.put(indexedPolicy, newCompiledPolicy);
+			compiledPolicyWeight += indexedPolicy.weight;
+			final Iterator<IndexedPolicy> lruPolicies = compiledPolicies.keySet().iterator();
+			while (compiledPolicies.size() > 1
+			        && (maxCachedPolicies > 0 && compiledPolicies.size() > maxCachedPolicies || maxCachedPolicyWeight > 0 && compiledPolicyWeight > maxCachedPolicyWeight))
+			{
+				final IndexedPolicy evictedPolicy = lruPolicies.next();
+				lruPolicies.remove();
+				compiledPolicyWeight -= evictedPolicy.weight;
+				LOGGER.debug("Compiled policy evicted from cache: {}", evictedPolicy.metadata);
+			}
+		}
+
+		return newCompiledPolicy;
+	}
+
+	private static StaticTopLevelPolicyElementEvaluator getCompilationResult(final FutureTask<StaticTopLevelPolicyElementEvaluator> compilation) throws IllegalArgumentException
+	{
+		try
+		{
+			return Uninterruptibles.getUninterruptibly(compilation);
+		}
+		catch (final ExecutionException e)
+		{
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+
+			if (cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+
+			throw new IllegalArgumentException("Policy compilation failed", cause);
+		}
+	}
+
+	private StaticTopLevelPolicyElementEvaluator compile(final IndexedPolicy indexedPolicy) throws IllegalArgumentException
+	{
+		final PolicyWithNamespaces<?> jaxbPolicyOrPolicySet = indexedPolicy.load();
+		final Object jaxbPolicyOrPolicySetObj = jaxbPolicyOrPolicySet.getPolicy();
+		final Map<String, String> nsPrefixUriMap = jaxbPolicyOrPolicySet.getNsPrefixUriMap();
+		LOGGER.debug("Compiling {} loaded from: {}", indexedPolicy.metadata, indexedPolicy.getLocation());
+		final StaticTopLevelPolicyElementEvaluator compiledPolicy;
+		if (jaxbPolicyOrPolicySetObj instanceof Policy)
+		{
+			compiledPolicy = PolicyEvaluators.getInstance((Policy) jaxbPolicyOrPolicySetObj, null, nsPrefixUriMap, expressionFactory, combiningAlgRegistry);
+		}
+		else if (jaxbPolicyOrPolicySetObj instanceof PolicySet)
+		{
+			/*
+			 * The compiled PolicySet may be used from any reference, and the policy reference depth is checked by getPolicySet(...), therefore it is compiled like a root PolicySet
+			 */
+			compiledPolicy = PolicyEvaluators.getInstanceStatic((PolicySet) jaxbPolicyOrPolicySetObj, null, nsPrefixUriMap, expressionFactory, combiningAlgRegistry, this, null);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unexpected element found as root of the policy document: " + jaxbPolicyOrPolicySetObj.getClass().getSimpleName());
+		}
+
+		if (!compiledPolicy.getPrimaryPolicyMetadata().equals(indexedPolicy.metadata))
+		{
+			throw new IllegalArgumentException("Policy document changed since it was indexed: " + indexedPolicy.getLocation() + " (expected: " + indexedPolicy.metadata + ", actual: "
+			        + compiledPolicy.getPrimaryPolicyMetadata() + ")");
+		}
+
+		return compiledPolicy;
+	}
+
+	@Override
+	protected StaticTopLevelPolicyElementEvaluator getPolicy(final String id, final Optional<PolicyVersionPatterns> constraints)
+	{
+		final IndexedPolicy indexedPolicy = getIndexedPolicy(TopLevelPolicyElementType.POLICY, id, constraints);
+		return indexedPolicy == null ? null : new LazyPolicyEvaluator(indexedPolicy);
+	}
+
+	@Override
+	protected StaticTopLevelPolicyElementEvaluator getPolicySet(final String id, final Optional<PolicyVersionPatterns> constraints, final Deque<String> policySetRefChainIncludingResult)
+	{
+		final IndexedPolicy indexedPolicy = getIndexedPolicy(TopLevelPolicyElementType.POLICY_SET, id, constraints);
+		if (indexedPolicy == null)
+		{
+			return null;
+		}
+
+		final LazyPolicyEvaluator policy = new LazyPolicyEvaluator(indexedPolicy);
+		/*
+		 * Policy references in the PolicySet are resolved (from the index) - checking reference loops and depth like CoreRefPolicyProvider does when compiling it - even if no chain is given
+		 */
+		final Optional<PolicyRefsMetadata> policyRefsMetadata = policy.getPolicyRefsMetadata();
+		if (policySetRefChainIncludingResult != null && policyRefsMetadata.isPresent())
+		{
+			/*
+			 * check total policy ref depth if policySetRefChainIncludingResult != null, i.e. length of (newAncestorPolicySetRefChain + policySet's longest (nested) policy ref chain) <=
+			 * maxPolicySetRefDepth
+			 */
+			joinPolicyRefChains(policySetRefChainIncludingResult, policyRefsMetadata.get().getLongestPolicyRefChain());
+		}
+
+		return policy;
+	}
+
+	@Override
+	public void close()
+	{
+		synchronized (compiledPolicies)
+		{
+			compiledPolicies.clear();
+			compilationsInProgress.clear();
+			compiledPolicyWeight = 0;
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import org.ow2.authzforce.core.pdp.api.policy.RefPolicyProvider;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
+
+/**
+ * {@link RefPolicyProvider} notifying changes of the policies it provides, e.g. a policy repository (database...) that is modified at runtime. This is the invalidation hook used by
+ * {@link CachingRefPolicyProvider} to drop the cached resolutions of the policy references as soon as the referenced policies change, instead of waiting for the cache entries to expire.
+ */
+public interface ObservableRefPolicyProvider extends RefPolicyProvider
+{
+	/**
+	 * Listener of policy changes
+	 */
+	interface ChangeListener
+	{
+		/**
+		 * Called when any version of a given policy has been added, modified or removed
+		 *
+		 * @param policyType
+		 *            type of the changed policy
+		 * @param policyId
+		 *            Policy(Set)Id of the changed policy
+		 */
+		void policyChanged(TopLevelPolicyElementType policyType, String policyId);
+
+		/**
+		 * Called when any policy may have changed (e.g. the whole repository was replaced)
+		 */
+		void allPoliciesChanged();
+	}
+
+	/**
+	 * Registers a policy change listener
+	 *
+	 * @param listener
+	 *            listener to be notified of policy changes
+	 * @throws IllegalArgumentException
+	 *             if {@code listener == null}
+	 */
+	void addChangeListener(ChangeListener listener) throws IllegalArgumentException;
+
+	/**
+	 * Unregisters a policy change listener registered with {@link #addChangeListener(ChangeListener)}. Does nothing if it is not registered.
+	 *
+	 * @param listener
+	 *            listener not to be notified of policy changes anymore
+	 */
+	void removeChangeListener(ChangeListener listener);
+}
@@ -0,0 +1,1024 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.ow2.authzforce.core.pdp.api.Decidable;
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.api.DecisionResults;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.PepAction;
+import org.ow2.authzforce.core.pdp.api.combining.CombiningAlg;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeDesignatorExpression;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyEvaluator;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.impl.AllOfEvaluator;
+import org.ow2.authzforce.core.pdp.impl.AnyOfEvaluator;
+import org.ow2.authzforce.core.pdp.impl.BatchItemEvaluationContext;
+import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
+import org.ow2.authzforce.core.pdp.impl.MatchEvaluator;
+import org.ow2.authzforce.core.pdp.impl.TargetEvaluators;
+import org.ow2.authzforce.core.pdp.impl.combining.StandardCombiningAlgorithm;
+import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
+import org.ow2.authzforce.core.pdp.impl.rule.RuleEvaluator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.EffectType;
+
+/**
+ * Multi-valued decision diagram compiled from a static policy tree at initialization time. Inner nodes test an attribute predicate (Match of a Target) or evaluate an opaque sub-tree (element that
+ * cannot be compiled, e.g. Rule with a Condition, Policy(Set) with obligations/advice or variables, AttributeSelector-based Match, non-standard function or combining algorithm), with the existing
+ * evaluator; leaves are the final Permit/Deny/NotApplicable decisions with the PEP actions of the opaque sub-trees they depend on.
+ * <p>
+ * Evaluating the diagram walks one path from the root to a leaf, evaluating each distinct predicate at most once. The diagram reproduces the evaluation order and short-circuits of the policy
+ * evaluators (Targets, standard combining algorithms), so it yields the same result as the original policy tree as long as no error occurs. If a predicate or an opaque sub-tree evaluates to
+ * Indeterminate (or if only-one-applicable finds more than one applicable policy), the walk is aborted and the caller must fall back to the evaluation of the original policy tree, which is in charge
+ * of the Indeterminate semantics (Extended Indeterminate, etc.).
+ * <p>
+ * Identical sub-diagrams are shared (hash-consing), and the number of nodes is bounded: if the policy tree requires more nodes, it is not compiled.
+ */
+final class PolicyDecisionDiagram
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(PolicyDecisionDiagram.class);
+
+	private static final IllegalArgumentException NULL_POLICY_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined policy to compile");
+
+	/**
+	 * Maximum number of combination states (e.g. sets of PEP actions to keep) per position in a sequence of combined elements
+	 */
+	private static final int MAX_COMBINATION_STATE_COUNT = 64;
+
+	/*
+	 * Test results in a diagram walk
+	 */
+	private static final byte UNKNOWN = 0;
+	private static final byte TRUE = 1;
+	private static final byte FALSE = 2;
+
+	/**
+	 * Outcome of the evaluation of a (part of a) policy tree on a diagram path: decision and the slots of the opaque sub-tree results whose PEP actions are returned with the decision, in order
+	 */
+	private static final class Outcome
+	{
+		/*
+		 * Outcome of a path aborted because the original policy evaluators must handle it
+		 */
+		private static final Outcome ABORT = new Outcome(DecisionType.INDETERMINATE, ImmutableList.of());
+
+		private static final Outcome NOT_APPLICABLE = new Outcome(DecisionType.NOT_APPLICABLE, ImmutableList.of());
+		private static final Outcome PERMIT = new Outcome(DecisionType.PERMIT, ImmutableList.of());
+		private static final Outcome DENY = new Outcome(DecisionType.DENY, ImmutableList.of());
+
+		private final DecisionType decision;
+		private final ImmutableList<Integer> pepActionSlots;
+		private final int hashCode;
+
+		private Outcome(final DecisionType decision, final ImmutableList<Integer> pepActionSlots)
+		{
+			this.decision = decision;
+			this.pepActionSlots = pepActionSlots;
+			this.hashCode = Objects.hash(decision, pepActionSlots);
+		}
+
+		/**
+		 * Returns the outcome with the same decision and PEP actions added after the ones of this outcome
+		 */
+		private Outcome append(final Outcome other)
+		{
+			if (other.pepActionSlots.isEmpty())
+			{
+				return this;
+			}
+
+			return new Outcome(decision, ImmutableList.<Integer>builder().addAll(pepActionSlots).addAll(other.pepActionSlots).build());
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+
+			if (!(obj instanceof Outcome))
+			{
+				return false;
+			}
+
+			final Outcome other = (Outcome) obj;
+			return decision == other.decision && pepActionSlots.equals(other.pepActionSlots);
+		}
+
+		@Override
+		public String toString()
+		{
+			return decision + (pepActionSlots.isEmpty() ? "" : "(PEP actions from " + pepActionSlots + ")");
+		}
+	}
+
+	/**
+	 * Diagram node. Inner nodes are equal iff they have the same type and parameters, and the same children (compared by reference since nodes are hash-consed).
+	 */
+	private static abstract class Node
+	{
+		// node reached from this one, null if leaf
+		private final Node[] children;
+		private final int hashCode;
+
+		private Node(final Node[] children, final int parametersHashCode)
+		{
+			this.children = children;
+			int h = parametersHashCode;
+			if (children != null)
+			{
+				for (final Node child : children)
+				{
+					h = 31 * h + System.identityHashCode(child);
+				}
+			}
+
+			this.hashCode = h;
+		}
+
+		/**
+		 * Evaluates this inner node and returns the next node on the path
+		 * 
+		 * @return next node; null if the walk must be aborted
+		 */
+		abstract Node next(EvaluationContext context, byte[] testResults, DecisionResult[] opaqueResults);
+
+		/**
+		 * Creates a node with the same type and parameters as this inner node, but different children
+		 */
+		abstract Node withChildren(Node[] newChildren);
+
+		abstract boolean hasSameParameters(Node other);
+
+		@Override
+		public final int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public final boolean equals(final Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+
+			if (obj == null || obj.getClass() != this.getClass())
+			{
+				return false;
+			}
+
+			final Node other = (Node) obj;
+			if (hashCode != other.hashCode || !hasSameParameters(other))
+			{
+				return false;
+			}
+
+			if (children == null)
+			{
+				return other.children == null;
+			}
+
+			if (other.children == null || children.length != other.children.length)
+			{
+				return false;
+			}
+
+			for (int i = 0; i < children.length; i++)
+			{
+				if (children[i] != other.children[i])
+				{
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+
+	/**
+	 * Leaf
+	 */
+	private static final class OutcomeLeaf extends Node
+	{
+		private final Outcome outcome;
+
+		private OutcomeLeaf(final Outcome outcome)
+		{
+			super(null, outcome.hashCode());
+			this.outcome = outcome;
+		}
+
+		@Override
+		Node next(final EvaluationContext context, final byte[] testResults, final DecisionResult[] opaqueResults)
+		{
+			throw new UnsupportedOperationException("Leaf");
+		}
+
+		@Override
+		Node withChildren(final Node[] newChildren)
+		{
+			throw new UnsupportedOperationException("Leaf");
+		}
+
+		@Override
+		boolean hasSameParameters(final Node other)
+		{
+			return outcome.equals(((OutcomeLeaf) other).outcome);
+		}
+
+		/**
+		 * @return final result; null if aborted
+		 */
+		private DecisionResult getResult(final DecisionResult[] opaqueResults)
+		{
+			switch (outcome.decision)
+			{
+				case NOT_APPLICABLE:
+					return DecisionResults.SIMPLE_NOT_APPLICABLE;
+				case PERMIT:
+					return outcome.pepActionSlots.isEmpty() ? DecisionResults.SIMPLE_PERMIT : DecisionResults.getPermit(null, getPepActions(opaqueResults), ImmutableList.of());
+				case DENY:
+					return outcome.pepActionSlots.isEmpty() ? DecisionResults.SIMPLE_DENY : DecisionResults.getDeny(null, getPepActions(opaqueResults), ImmutableList.of());
+				default:
+					return null;
+			}
+		}
+
+		private ImmutableList<PepAction> getPepActions(final DecisionResult[] opaqueResults)
+		{
+			final ImmutableList.Builder<PepAction> pepActions = ImmutableList.builder();
+			for (final int slot : outcome.pepActionSlots)
+			{
+				pepActions.addAll(opaqueResults[slot].getPepActions());
+			}
+
+			return pepActions.build();
+		}
+	}
+
+	/**
+	 * Predicate test: children = {ifTrue, ifFalse}
+	 */
+	private static final class TestNode extends Node
+	{
+		private final int testIndex;
+		private final BooleanEvaluator test;
+
+		private TestNode(final int testIndex, final BooleanEvaluator test, final Node[] children)
+		{
+			super(children, testIndex);
+			this.testIndex = testIndex;
+			this.test = test;
+		}
+
+		@Override
+		Node next(final EvaluationContext context, final byte[] testResults, final DecisionResult[] opaqueResults)
+		{
+			byte testResult = testResults[testIndex];
+			if (testResult == UNKNOWN)
+			{
+				try
+				{
+					testResult = BatchItemEvaluationContext.evaluate(test, context) ? TRUE : FALSE;
+				}
+				catch (final IndeterminateEvaluationException e)
+				{
+					LOGGER.debug("Decision diagram test #{} -> Indeterminate", testIndex, e);
+					return null;
+				}
+
+				testResults[testIndex] = testResult;
+			}
+
+			return testResult == TRUE ? super.children[0] : super.children[1];
+		}
+
+		@Override
+		Node withChildren(final Node[] newChildren)
+		{
+			return new TestNode(testIndex, test, newChildren);
+		}
+
+		@Override
+		boolean hasSameParameters(final Node other)
+		{
+			return testIndex == ((TestNode) other).testIndex;
+		}
+	}
+
+	/**
+	 * Evaluation of an opaque element (not compiled): children = {onPermit, onDeny, onNotApplicable}
+	 */
+	private static final class OpaqueNode extends Node
+	{
+		private final int slot;
+		private final Decidable element;
+		private final boolean skipTarget;
+
+		private OpaqueNode(final int slot, final Decidable element, final boolean skipTarget, final Node[] children)
+		{
+			super(children, 31 * slot + Boolean.hashCode(skipTarget));
+			this.slot = slot;
+			this.element = element;
+			this.skipTarget = skipTarget;
+		}
+
+		@Override
+		Node next(final EvaluationContext context, final byte[] testResults, final DecisionResult[] opaqueResults)
+		{
+			final DecisionResult result = skipTarget ? ((PolicyEvaluator) element).evaluate(context, true) : element.evaluate(context);
+			opaqueResults[slot] = result;
+			switch (result.getDecision())
+			{
+				case PERMIT:
+					return super.children[0];
+				case DENY:
+					return super.children[1];
+				case NOT_APPLICABLE:
+					return super.children[2];
+				default:
+					LOGGER.debug("Decision diagram: {} -> Indeterminate", element);
+					return null;
+			}
+		}
+
+		@Override
+		Node withChildren(final Node[] newChildren)
+		{
+			return new OpaqueNode(slot, element, skipTarget, newChildren);
+		}
+
+		@Override
+		boolean hasSameParameters(final Node other)
+		{
+			final OpaqueNode otherNode = (OpaqueNode) other;
+			return slot == otherNode.slot && skipTarget == otherNode.skipTarget;
+		}
+	}
+
+	/**
+	 * Evaluation of the Target of an opaque policy (only-one-applicable algorithm): children = {ifApplicable, ifNotApplicable}
+	 */
+	private static final class OpaqueTargetNode extends Node
+	{
+		private final PolicyEvaluator policy;
+
+		private OpaqueTargetNode(final PolicyEvaluator policy, final Node[] children)
+		{
+			super(children, System.identityHashCode(policy));
+			this.policy = policy;
+		}
+
+		@Override
+		Node next(final EvaluationContext context, final byte[] testResults, final DecisionResult[] opaqueResults)
+		{
+			try
+			{
+				return policy.isApplicableByTarget(context) ? super.children[0] : super.children[1];
+			}
+			catch (final IndeterminateEvaluationException e)
+			{
+				LOGGER.debug("Decision diagram: {}/Target -> Indeterminate", policy, e);
+				return null;
+			}
+		}
+
+		@Override
+		Node withChildren(final Node[] newChildren)
+		{
+			return new OpaqueTargetNode(policy, newChildren);
+		}
+
+		@Override
+		boolean hasSameParameters(final Node other)
+		{
+			return policy == ((OpaqueTargetNode) other).policy;
+		}
+	}
+
+	/**
+	 * Thrown when the diagram exceeds the maximum number of nodes
+	 */
+	private static final class TooLargeDiagramException extends Exception
+	{
+		private static final long serialVersionUID = 1L;
+
+		private TooLargeDiagramException(final String message)
+		{
+			super(message, null, false, false);
+		}
+	}
+
+	/**
+	 * Replacement of the leaves of a diagram
+	 */
+	private interface LeafReplacement
+	{
+		Node apply(Outcome outcome) throws TooLargeDiagramException;
+	}
+
+	/**
+	 * Sequential combining algorithm (all standard ones except only-one-applicable): combined elements are evaluated in order until one returns a final decision, which becomes the result (with its
+	 * PEP actions only); else the result is the state accumulated from the non-final decisions (the last non-final decision with all their PEP actions), or the initial state.
+	 */
+	private static final class SequentialCombiner
+	{
+		private final Set<DecisionType> finalDecisions;
+		private final Outcome initialState;
+
+		private SequentialCombiner(final Set<DecisionType> finalDecisions, final Outcome initialState)
+		{
+			this.finalDecisions = finalDecisions;
+			this.initialState = initialState;
+		}
+
+		private boolean isFinal(final Outcome elementOutcome)
+		{
+			return finalDecisions.contains(elementOutcome.decision);
+		}
+
+		private static Outcome combine(final Outcome state, final Outcome nonFinalElementOutcome)
+		{
+			if (nonFinalElementOutcome.decision == DecisionType.NOT_APPLICABLE)
+			{
+				return state;
+			}
+
+			return state.decision == nonFinalElementOutcome.decision ? state.append(nonFinalElementOutcome) : nonFinalElementOutcome;
+		}
+	}
+
+	private static SequentialCombiner getSequentialCombiner(final StandardCombiningAlgorithm alg)
+	{
+		switch (alg)
+		{
+			case XACML_3_0_POLICY_COMBINING_DENY_OVERRIDES:
+			case XACML_3_0_RULE_COMBINING_DENY_OVERRIDES:
+			case XACML_3_0_POLICY_COMBINING_ORDERED_DENY_OVERRIDES:
+			case XACML_3_0_RULE_COMBINING_ORDERED_DENY_OVERRIDES:
+				return new SequentialCombiner(EnumSet.of(DecisionType.DENY), Outcome.NOT_APPLICABLE);
+			case XACML_3_0_POLICY_COMBINING_PERMIT_OVERRIDES:
+			case XACML_3_0_RULE_COMBINING_PERMIT_OVERRIDES:
+			case XACML_3_0_POLICY_COMBINING_ORDERED_PERMIT_OVERRIDES:
+			case XACML_3_0_RULE_COMBINING_ORDERED_PERMIT_OVERRIDES:
+				return new SequentialCombiner(EnumSet.of(DecisionType.PERMIT), Outcome.NOT_APPLICABLE);
+			case XACML_3_0_POLICY_COMBINING_DENY_UNLESS_PERMIT:
+			case XACML_3_0_RULE_COMBINING_DENY_UNLESS_PERMIT:
+				return new SequentialCombiner(EnumSet.of(DecisionType.PERMIT), Outcome.DENY);
+			case XACML_3_0_POLICY_COMBINING_PERMIT_UNLESS_DENY:
+			case XACML_3_0_RULE_COMBINING_PERMIT_UNLESS_DENY:
+				return new SequentialCombiner(EnumSet.of(DecisionType.DENY), Outcome.PERMIT);
+			case XACML_1_0_POLICY_COMBINING_FIRST_APPLICABLE:
+			case XACML_1_0_RULE_COMBINING_FIRST_APPLICABLE:
+				return new SequentialCombiner(EnumSet.of(DecisionType.PERMIT, DecisionType.DENY), Outcome.NOT_APPLICABLE);
+			default:
+				// legacy algorithms (Indeterminate-specific behavior) or only-one-applicable
+				return null;
+		}
+	}
+
+	/**
+	 * Diagram builder
+	 */
+	private static final class Compiler
+	{
+		private final int maxNodeCount;
+		private final Map<Node, Node> uniqueNodes = new HashMap<>();
+		private final Map<Object, Integer> testIndexesByKey = new HashMap<>();
+		private final List<BooleanEvaluator> tests = new ArrayList<>();
+		private int opaqueSlotCount = 0;
+
+		private Compiler(final int maxNodeCount)
+		{
+			this.maxNodeCount = maxNodeCount;
+		}
+
+		private Node intern(final Node node) throws TooLargeDiagramException
+		{
+			final Node uniqueNode = uniqueNodes.get(node);
+			if (uniqueNode != null)
+			{
+				return uniqueNode;
+			}
+
+			if (uniqueNodes.size() >= maxNodeCount)
+			{
+				throw new TooLargeDiagramException("Too many nodes (> " + maxNodeCount + ")");
+			}
+
+			uniqueNodes.put(node, node);
+			return node;
+		}
+
+		private Node leaf(final Outcome outcome) throws TooLargeDiagramException
+		{
+			return intern(new OutcomeLeaf(outcome));
+		}
+
+		/**
+		 * Gets the index of the (unique) test equivalent to a Match
+		 */
+		private int getTestIndex(final MatchEvaluator match)
+		{
+			final AttributeDesignatorExpression<?> equalityMatchDesignator = match.getEqualityMatchDesignator();
+			final Object testKey;
+			final BooleanEvaluator test;
+			if (equalityMatchDesignator == null)
+			{
+				testKey = match;
+				test = match::match;
+			}
+			else
+			{
+				final AttributeValue value = match.getEqualityMatchValue();
+				testKey = Arrays.asList(equalityMatchDesignator.getAttributeFQN(), equalityMatchDesignator.getReturnType(), equalityMatchDesignator.isNonEmptyBagRequired(), value);
+				test = context -> {
+					for (final AttributeValue attributeValue : equalityMatchDesignator.evaluate(context))
+					{
+						if (attributeValue.equals(value))
+						{
+							return true;
+						}
+					}
+
+					return false;
+				};
+			}
+
+			return testIndexesByKey.computeIfAbsent(testKey, k -> {
+				tests.add(test);
+				return tests.size() - 1;
+			});
+		}
+
+		/**
+		 * A Match is compilable iff it is based on an AttributeDesignator and a standard function (deterministic, no side effect)
+		 */
+		private static boolean isCompilable(final List<AnyOfEvaluator> anyOfs)
+		{
+			if (anyOfs == null)
+			{
+				return false;
+			}
+
+			for (final AnyOfEvaluator anyOf : anyOfs)
+			{
+				for (final AllOfEvaluator allOf : anyOf.getAllOfEvaluators())
+				{
+					for (final MatchEvaluator match : allOf.getMatchEvaluators())
+					{
+						if (match.getAttributeDesignator() == null || StandardFunction.getInstance(match.getMatchFunctionId()) == null)
+						{
+							return false;
+						}
+					}
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * Compiles a Target with the same evaluation order as the Target evaluator: AnyOfs in order until one is False, AllOfs of an AnyOf until one is True, Matches of an AllOf until one is False
+		 */
+		private Node compileTarget(final List<AnyOfEvaluator> anyOfs, final Node ifMatch, final Node ifNoMatch) throws TooLargeDiagramException
+		{
+			Node anyOfsNode = ifMatch;
+			for (final AnyOfEvaluator anyOf : ImmutableList.copyOf(anyOfs).reverse())
+			{
+				Node allOfsNode = ifNoMatch;
+				for (final AllOfEvaluator allOf : ImmutableList.copyOf(anyOf.getAllOfEvaluators()).reverse())
+				{
+					Node matchesNode = anyOfsNode;
+					for (final MatchEvaluator match : ImmutableList.copyOf(allOf.getMatchEvaluators()).reverse())
+					{
+						final int testIndex = getTestIndex(match);
+						matchesNode = intern(new TestNode(testIndex, tests.get(testIndex), new Node[] { matchesNode, allOfsNode }));
+					}
+
+					allOfsNode = matchesNode;
+				}
+
+				anyOfsNode = allOfsNode;
+			}
+
+			return anyOfsNode;
+		}
+
+		private Node compileOpaque(final Decidable element, final boolean skipTarget) throws TooLargeDiagramException
+		{
+			final int slot = opaqueSlotCount++;
+			final ImmutableList<Integer> pepActionSlots = ImmutableList.of(slot);
+			return intern(new OpaqueNode(slot, element, skipTarget,
+			        new Node[] { leaf(new Outcome(DecisionType.PERMIT, pepActionSlots)), leaf(new Outcome(DecisionType.DENY, pepActionSlots)), leaf(Outcome.NOT_APPLICABLE) }));
+		}
+
+		/**
+		 * Gets the compilable structure of a Policy(Set), null if the Policy(Set) must be evaluated as an opaque element
+		 */
+		private static DecisionDiagramCompilable getCompilable(final Decidable element)
+		{
+			if (!(element instanceof DecisionDiagramCompilable))
+			{
+				return null;
+			}
+
+			final DecisionDiagramCompilable compilable = (DecisionDiagramCompilable) element;
+			return compilable.isCombiningAlgResultReturnedAsIs() && isCompilable(TargetEvaluators.getAnyOfEvaluators(compilable.getTargetEvaluator())) ? compilable : null;
+		}
+
+		/**
+		 * Compiles a combined element into a diagram whose leaves are the element's possible outcomes
+		 * 
+		 * @return diagram; null if the element cannot be evaluated separately from the other elements combined with it (Rule with PEP actions, subject to combining algorithm optimizations)
+		 */
+		private Node compileElement(final Decidable element) throws TooLargeDiagramException
+		{
+			if (element instanceof RuleEvaluator)
+			{
+				final RuleEvaluator rule = (RuleEvaluator) element;
+				if (rule.hasAnyPepAction())
+				{
+					return null;
+				}
+
+				final List<AnyOfEvaluator> anyOfs = TargetEvaluators.getAnyOfEvaluators(rule.getTargetEvaluator());
+				if (rule.isConditionAlwaysTrue() && isCompilable(anyOfs))
+				{
+					return compileTarget(anyOfs, leaf(rule.getEffect() == EffectType.PERMIT ? Outcome.PERMIT : Outcome.DENY), leaf(Outcome.NOT_APPLICABLE));
+				}
+
+				return compileOpaque(rule, false);
+			}
+
+			final DecisionDiagramCompilable policy = getCompilable(element);
+			if (policy != null)
+			{
+				final Node body = compileCombining(policy.getCombiningAlg(), policy.getCombinedElements());
+				if (body != null)
+				{
+					return compileTarget(TargetEvaluators.getAnyOfEvaluators(policy.getTargetEvaluator()), body, leaf(Outcome.NOT_APPLICABLE));
+				}
+			}
+
+			return compileOpaque(element, false);
+		}
+
+		/**
+		 * Compiles the combining of elements by a standard combining algorithm
+		 * 
+		 * @return diagram whose leaves are the outcomes of the algorithm; null if not compilable
+		 */
+		private Node compileCombining(final CombiningAlg<?> alg, final List<? extends Decidable> combinedElements) throws TooLargeDiagramException
+		{
+			final StandardCombiningAlgorithm stdAlg = StandardCombiningAlgorithm.getInstance(alg.getId());
+			if (stdAlg == null || !StandardCombiningAlgorithm.isStandard(alg))
+			{
+				// not the implementation of the standard algorithm
+				return null;
+			}
+
+			if (stdAlg == StandardCombiningAlgorithm.XACML_1_0_POLICY_COMBINING_ONLY_ONE_APPLICABLE)
+			{
+				return compileOnlyOneApplicable(combinedElements);
+			}
+
+			final SequentialCombiner combiner = getSequentialCombiner(stdAlg);
+			if (combiner == null)
+			{
+				return null;
+			}
+
+			final List<Node> elementDiagrams = new ArrayList<>(combinedElements.size());
+			for (final Decidable element : combinedElements)
+			{
+				final Node elementDiagram = compileElement(element);
+				if (elementDiagram == null)
+				{
+					return null;
+				}
+
+				elementDiagrams.add(elementDiagram);
+			}
+
+			/*
+			 * Combination states reachable before each element
+			 */
+			final List<Set<Outcome>> reachableStates = new ArrayList<>(elementDiagrams.size() + 1);
+			Set<Outcome> states = Collections.singleton(combiner.initialState);
+			reachableStates.add(states);
+			for (final Node elementDiagram : elementDiagrams)
+			{
+				final Set<Outcome> nextStates = new LinkedHashSet<>();
+				for (final Outcome elementOutcome : getOutcomes(elementDiagram))
+				{
+					if (!combiner.isFinal(elementOutcome))
+					{
+						for (final Outcome state : states)
+						{
+							nextStates.add(SequentialCombiner.combine(state, elementOutcome));
+						}
+					}
+				}
+
+				if (nextStates.size() > MAX_COMBINATION_STATE_COUNT)
+				{
+					LOGGER.debug("Decision diagram: too many combination states (> {}) for combining algorithm {}", MAX_COMBINATION_STATE_COUNT, alg);
+					return null;
+				}
+
+				states = nextStates;
+				reachableStates.add(states);
+			}
+
+			/*
+			 * Build backwards (from the last element) the diagram for each reachable state
+			 */
+			Map<Outcome, Node> nextDiagramsByState = new HashMap<>();
+			for (final Outcome state : states)
+			{
+				nextDiagramsByState.put(state, leaf(state));
+			}
+
+			for (int i = elementDiagrams.size() - 1; i >= 0; i--)
+			{
+				final Map<Outcome, Node> diagramsByState = new HashMap<>();
+				for (final Outcome state : reachableStates.get(i))
+				{
+					final Map<Outcome, Node> nextDiagrams = nextDiagramsByState;
+					diagramsByState.put(state, substitute(elementDiagrams.get(i),
+					        elementOutcome -> combiner.isFinal(elementOutcome) ? leaf(elementOutcome) : nextDiagrams.get(SequentialCombiner.combine(state, elementOutcome))));
+				}
+
+				nextDiagramsByState = diagramsByState;
+			}
+
+			return nextDiagramsByState.get(combiner.initialState);
+		}
+
+		/**
+		 * Compiles only-one-applicable: all Targets are evaluated, then the only applicable policy (if any) is evaluated without its Target
+		 */
+		private Node compileOnlyOneApplicable(final List<? extends Decidable> combinedElements) throws TooLargeDiagramException
+		{
+			final int elementCount = combinedElements.size();
+			final List<Node> targetDiagrams = new ArrayList<>(elementCount);
+			final List<Node> bodyDiagrams = new ArrayList<>(elementCount);
+			final Node applicable = leaf(Outcome.PERMIT);
+			final Node notApplicable = leaf(Outcome.NOT_APPLICABLE);
+			for (final Decidable element : combinedElements)
+			{
+				final DecisionDiagramCompilable policy = getCompilable(element);
+				final Node body = policy == null ? null : compileCombining(policy.getCombiningAlg(), policy.getCombinedElements());
+				if (body == null)
+				{
+					targetDiagrams.add(intern(new OpaqueTargetNode((PolicyEvaluator) element, new Node[] { applicable, notApplicable })));
+					bodyDiagrams.add(compileOpaque(element, true));
+				}
+				else
+				{
+					targetDiagrams.add(compileTarget(TargetEvaluators.getAnyOfEvaluators(policy.getTargetEvaluator()), applicable, notApplicable));
+					bodyDiagrams.add(body);
+				}
+			}
+
+			/*
+			 * State at position i: index of the applicable element found before i (-1 if none), from i - 1 to -1
+			 */
+			final Node abort = leaf(Outcome.ABORT);
+			Node[] nextDiagramsBySelectedIndex = new Node[elementCount + 1];
+			nextDiagramsBySelectedIndex[0] = leaf(Outcome.NOT_APPLICABLE);
+			for (int j = 0; j < elementCount; j++)
+			{
+				nextDiagramsBySelectedIndex[j + 1] = bodyDiagrams.get(j);
+			}
+
+			for (int i = elementCount - 1; i >= 0; i--)
+			{
+				final int elementIndex = i;
+				final Node[] nextDiagrams = nextDiagramsBySelectedIndex;
+				final Node[] diagramsBySelectedIndex = new Node[i + 1];
+				for (int selectedIndex = -1; selectedIndex < i; selectedIndex++)
+				{
+					final int stateIndex = selectedIndex;
+					diagramsBySelectedIndex[selectedIndex + 1] = substitute(targetDiagrams.get(i),
+					        isApplicable -> isApplicable.decision == DecisionType.PERMIT ? (stateIndex == -1 ? nextDiagrams[elementIndex + 1] : abort) : nextDiagrams[stateIndex + 1]);
+				}
+
+				nextDiagramsBySelectedIndex = diagramsBySelectedIndex;
+			}
+
+			return nextDiagramsBySelectedIndex[0];
+		}
+
+		/**
+		 * Gets the outcomes (leaves) of a diagram except abort
+		 */
+		private static Set<Outcome> getOutcomes(final Node diagram)
+		{
+			final Set<Outcome> outcomes = new LinkedHashSet<>();
+			final Set<Node> visitedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+			final Deque<Node> nodesToVisit = new ArrayDeque<>();
+			nodesToVisit.push(diagram);
+			while (!nodesToVisit.isEmpty())
+			{
+				final Node node = nodesToVisit.pop();
+				if (!visitedNodes.add(node))
+				{
+					continue;
+				}
+
+				if (node instanceof OutcomeLeaf)
+				{
+					final Outcome outcome = ((OutcomeLeaf) node).outcome;
+					if (outcome.decision != DecisionType.INDETERMINATE)
+					{
+						outcomes.add(outcome);
+					}
+				}
+				else
+				{
+					for (final Node child : node.children)
+					{
+						nodesToVisit.push(child);
+					}
+				}
+			}
+
+			return outcomes;
+		}
+
+		/**
+		 * Replaces the leaves of a diagram (except abort) with other diagrams; iterative since diagrams may be deep (long sequences of combined elements)
+		 */
+		private Node substitute(final Node diagram, final LeafReplacement leafReplacement) throws TooLargeDiagramException
+		{
+			final Map<Node, Node> newNodes = new IdentityHashMap<>();
+			final Deque<Node> nodesToVisit = new ArrayDeque<>();
+			nodesToVisit.push(diagram);
+			while (!nodesToVisit.isEmpty())
+			{
+				final Node node = nodesToVisit.peek();
+				if (newNodes.containsKey(node))
+				{
+					nodesToVisit.pop();
+					continue;
+				}
+
+				if (node instanceof OutcomeLeaf)
+				{
+					final Outcome outcome = ((OutcomeLeaf) node).outcome;
+					newNodes.put(node, outcome.decision == DecisionType.INDETERMINATE ? node : leafReplacement.apply(outcome));
+					nodesToVisit.pop();
+					continue;
+				}
+
+				boolean areChildrenDone = true;
+				for (final Node child : node.children)
+				{
+					if (!newNodes.containsKey(child))
+					{
+						nodesToVisit.push(child);
+						areChildrenDone = false;
+					}
+				}
+
+				if (areChildrenDone)
+				{
+					final Node[] newChildren = new Node[node.children.length];
+					for (int i = 0; i < newChildren.length; i++)
+					{
+						newChildren[i] = newNodes.get(node.children[i]);
+					}
+
+					newNodes.put(node, intern(node.withChildren(newChildren)));
+					nodesToVisit.pop();
+				}
+			}
+
+			return newNodes.get(diagram);
+		}
+	}
+
+	private final Node root;
+	private final int testCount;
+	private final int opaqueSlotCount;
+
+	private PolicyDecisionDiagram(final Node root, final int testCount, final int opaqueSlotCount)
+	{
+		this.root = root;
+		this.testCount = testCount;
+		this.opaqueSlotCount = opaqueSlotCount;
+	}
+
+	/**
+	 * Compiles a static policy tree into a decision diagram
+	 * 
+	 * @param policy
+	 *            root policy
+	 * @param maxNodeCount
+	 *            maximum number of nodes in the diagram
+	 * @return decision diagram; null if the policy tree cannot be compiled (e.g. the root policy itself is opaque) or requires more than {@code maxNodeCount} nodes
+	 * @throws IllegalArgumentException
+	 *             if {@code policy == null}
+	 */
+	static PolicyDecisionDiagram compile(final PolicyEvaluator policy, final int maxNodeCount) throws IllegalArgumentException
+	{
+		if (policy == null)
+		{
+			throw NULL_POLICY_ARGUMENT_EXCEPTION;
+		}
+
+		final Compiler compiler = new Compiler(maxNodeCount);
+		final Node root;
+		try
+		{
+			root = compiler.compileElement(policy);
+		}
+		catch (final TooLargeDiagramException e)
+		{
+			LOGGER.warn("{} not compiled into a decision diagram: {}", policy, e.getMessage());
+			return null;
+		}
+
+		if (root instanceof OpaqueNode)
+		{
+			LOGGER.info("{} not compiled into a decision diagram: unsupported combining algorithm, obligations/advice or variables at the root", policy);
+			return null;
+		}
+
+		LOGGER.info("{} compiled into a decision diagram: {} node(s), {} distinct test(s), {} opaque element(s) evaluated by the policy evaluators", policy, compiler.uniqueNodes.size(),
+		        compiler.tests.size(), compiler.opaqueSlotCount);
+		return new PolicyDecisionDiagram(root, compiler.tests.size(), compiler.opaqueSlotCount);
+	}
+
+	/**
+	 * Evaluates the decision diagram
+	 * 
+	 * @param context
+	 *            evaluation context
+	 * @return decision result (without applicable policies); null if the evaluation was aborted (Indeterminate on the path), in which case the caller must evaluate the original policy tree
+	 */
+	DecisionResult evaluate(final EvaluationContext context)
+	{
+		final byte[] testResults = new byte[testCount];
+		final DecisionResult[] opaqueResults = new DecisionResult[opaqueSlotCount];
+		Node node = root;
+		while (!(node instanceof OutcomeLeaf))
+		{
+			node = node.next(context, testResults, opaqueResults);
+			if (node == null)
+			{
+				return null;
+			}
+		}
+
+		return ((OutcomeLeaf) node).getResult(opaqueResults);
+	}
+}
@@ -21,8 +21,10 @@ import java.io.Serializable;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -65,9 +67,16 @@ import org.ow2.authzforce.core.pdp.api.policy.StaticTopLevelPolicyElementEvaluat
 import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementEvaluator;
 import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
 import org.ow2.authzforce.core.pdp.api.value.Value;
+import org.ow2.authzforce.core.pdp.impl.BatchItemEvaluationContext;
 import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
+import org.ow2.authzforce.core.pdp.impl.DecisionConstrained;
+import org.ow2.authzforce.core.pdp.impl.PartialEvaluation;
 import org.ow2.authzforce.core.pdp.impl.PepActionExpression;
+import org.ow2.authzforce.core.pdp.impl.TargetEqualityConstrained;
+import org.ow2.authzforce.core.pdp.impl.TargetEqualityConstraint;
 import org.ow2.authzforce.core.pdp.impl.TargetEvaluators;
+import org.ow2.authzforce.core.pdp.impl.combining.StandardCombiningAlgorithm;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
 import org.ow2.authzforce.core.pdp.impl.rule.RuleEvaluator;
 import org.ow2.authzforce.xacml.identifiers.XacmlNodeName;
 import org.ow2.authzforce.xacml.identifiers.XacmlStatusCode;
@@ -321,7 +330,44 @@ public final class PolicyEvaluators
 	 *            type of combined child elements in evaluated Policy(Set)
 	 * 
 	 */
-	private static abstract class BaseTopLevelPolicyElementEvaluator<T extends Decidable> implements TopLevelPolicyElementEvaluator
+	/**
+	 * Partial evaluation of a combining algorithm: if the combined elements are Rules that are always applicable and have no PEP action (obligation/advice) - or there is no combined element at all -
+	 * and the algorithm is standard, the algorithm result is constant (the same for all requests), therefore evaluated once and for all.
+	 *
+	 * @return evaluator of the constant result if the result is constant, else {@code combiningAlgEvaluator}
+	 */
+	private static <T extends Decidable> CombiningAlg.Evaluator foldCombiningAlgEvaluator(final CombiningAlg<T> combiningAlg, final CombiningAlg.Evaluator combiningAlgEvaluator,
+	        final List<T> combinedElements, final ExpressionFactory expressionFactory)
+	{
+		if (!StandardCombiningAlgorithm.isStandard(combiningAlg))
+		{
+			return combiningAlgEvaluator;
+		}
+
+		for (final T combinedElement : combinedElements)
+		{
+			if (!(combinedElement instanceof RuleEvaluator))
+			{
+				return combiningAlgEvaluator;
+			}
+
+			final RuleEvaluator rule = (RuleEvaluator) combinedElement;
+			if (rule.getTargetEvaluator() != TargetEvaluators.MATCH_ALL_TARGET_EVALUATOR || !rule.isConditionAlwaysTrue() || rule.hasAnyPepAction())
+			{
+				return combiningAlgEvaluator;
+			}
+		}
+
+		/*
+		 * The combined rules do not depend on the evaluation context, therefore neither does the algorithm
+		 */
+		final ExtendedDecision constantResult = combiningAlgEvaluator.evaluate(null, UpdatableCollections.newUpdatableList(), UpdatableCollections.emptyList());
+		LOGGER.debug("Combining algorithm '{}' result constant -> partial evaluation: replacing with constant result {}", combiningAlg, constantResult);
+		PartialEvaluation.countEliminatedNodes(expressionFactory, combinedElements.size());
+		return (context, updatablePepActions, updatableApplicablePolicyIdList) -> constantResult;
+	}
+
+	private static abstract class BaseTopLevelPolicyElementEvaluator<T extends Decidable> implements TopLevelPolicyElementEvaluator, TargetEqualityConstrained, DecisionConstrained, DecisionDiagramCompilable
 	{
 		private static final IllegalArgumentException NULL_POLICY_METADATA_EXCEPTION = new IllegalArgumentException("Undefined Policy(Set) metadata (required)");
 		private static final IllegalArgumentException NULL_ALG_EXCEPTION = new IllegalArgumentException("Undefined Policy(Set) combining algorithm ID (required)");
@@ -368,9 +414,18 @@ public final class PolicyEvaluators
 		// non-null
 		private final BooleanEvaluator targetEvaluator;
 
+		// non-null
+		private final CombiningAlg<T> combiningAlg;
+
+		// non-null
+		private final List<T> combinedElements;
+
 		// non-null
 		private final CombiningAlg.Evaluator combiningAlgEvaluator;
 
+		// non-null
+		private final Set<DecisionType> possibleDecisions;
+
 		// non-null
 		private final DPResultFactory decisionResultFactory;
 
@@ -441,7 +496,18 @@ public final class PolicyEvaluators
 				        this + ": Unknown/unsupported " + (RuleEvaluator.class.isAssignableFrom(combinedElementClass) ? "rule" : "policy") + "-combining algorithm ID = '" + combiningAlgId + "'", e);
 			}
 
-			this.combiningAlgEvaluator = combiningAlg.getInstance(combinerParameters, combinedElements);
+			this.combiningAlg = combiningAlg;
+			this.combinedElements = ImmutableList.copyOf(combinedElements);
+			final CombiningAlg.Evaluator nonFoldedCombiningAlgEvaluator = combiningAlg.getInstance(combinerParameters, combinedElements);
+			this.combiningAlgEvaluator = PartialEvaluation.isEnabled(expressionFactory) ? foldCombiningAlgEvaluator(combiningAlg, nonFoldedCombiningAlgEvaluator, this.combinedElements, expressionFactory)
+			        : nonFoldedCombiningAlgEvaluator;
+
+			/*
+			 * The Policy(Set) may also be NotApplicable (Target) or Indeterminate (Target, PEP actions) whatever the combining algorithm
+			 */
+			final Set<DecisionType> mutablePossibleDecisions = EnumSet.of(DecisionType.NOT_APPLICABLE, DecisionType.INDETERMINATE);
+			mutablePossibleDecisions.addAll(StandardCombiningAlgorithm.getPossibleDecisions(combiningAlg, this.combinedElements));
+			this.possibleDecisions = Collections.unmodifiableSet(mutablePossibleDecisions);
 
 			if ((obligationExps == null || obligationExps.isEmpty()) && (adviceExps == null || adviceExps.isEmpty()))
 			{
@@ -718,7 +784,7 @@ public final class PolicyEvaluators
 						 */
 						updatableApplicablePolicyIdList.add(this.policyMetadata);
 
-						newResult = DecisionResults.newIndeterminate(algResultDecision, enforceNoNullCauseForIndeterminate(algResult.getCauseForIndeterminate()),
+						newResult = DecisionResults.newIndeterminate(algResult.getExtendedIndeterminate(), enforceNoNullCauseForIndeterminate(algResult.getCauseForIndeterminate()),
 						        updatableApplicablePolicyIdList.copy());
 						return newResult;
 
@@ -760,7 +826,49 @@ public final class PolicyEvaluators
 		@Override
 		public final boolean isApplicableByTarget(final EvaluationContext context) throws IndeterminateEvaluationException
 		{
-			return targetEvaluator.evaluate(context);
+			return BatchItemEvaluationContext.evaluate(targetEvaluator, context);
+		}
+
+		@Override
+		public final List<TargetEqualityConstraint> getTargetEqualityConstraints()
+		{
+			return TargetEvaluators.getEqualityConstraints(targetEvaluator);
+		}
+
+		@Override
+		public final Set<DecisionType> getPossibleDecisions()
+		{
+			return possibleDecisions;
+		}
+
+		@Override
+		public final boolean isCombiningAlgResultReturnedAsIs()
+		{
+			return decisionResultFactory == DP_WITHOUT_EXTRA_PEP_ACTION_RESULT_FACTORY && localVariableAssignmentExpressions.isEmpty();
+		}
+
+		@Override
+		public final boolean hasLocalVariables()
+		{
+			return !localVariableAssignmentExpressions.isEmpty();
+		}
+
+		@Override
+		public final BooleanEvaluator getTargetEvaluator()
+		{
+			return targetEvaluator;
+		}
+
+		@Override
+		public final CombiningAlg<?> getCombiningAlg()
+		{
+			return combiningAlg;
+		}
+
+		@Override
+		public final List<T> getCombinedElements()
+		{
+			return combinedElements;
 		}
 
 		@Override
@@ -1143,7 +1251,7 @@ public final class PolicyEvaluators
 
 	}
 
-	private static final class StaticPolicyRefEvaluator extends PolicyRefEvaluator implements StaticPolicyEvaluator
+	private static final class StaticPolicyRefEvaluator extends PolicyRefEvaluator implements StaticPolicyEvaluator, TargetEqualityConstrained, DecisionConstrained, DecisionDiagramCompilable
 	{
 		/*
 		 * statically defined policy referenced by this policy reference evaluator
@@ -1189,6 +1297,49 @@ public final class PolicyEvaluators
 			}
 		}
 
+		@Override
+		public List<TargetEqualityConstraint> getTargetEqualityConstraints()
+		{
+			return referredPolicy instanceof TargetEqualityConstrained ? ((TargetEqualityConstrained) referredPolicy).getTargetEqualityConstraints() : Collections.emptyList();
+		}
+
+		@Override
+		public Set<DecisionType> getPossibleDecisions()
+		{
+			return DecisionConstrained.getPossibleDecisions(referredPolicy);
+		}
+
+		@Override
+		public boolean isCombiningAlgResultReturnedAsIs()
+		{
+			return referredPolicy instanceof DecisionDiagramCompilable && ((DecisionDiagramCompilable) referredPolicy).isCombiningAlgResultReturnedAsIs();
+		}
+
+		@Override
+		public boolean hasLocalVariables()
+		{
+			// unknown structure: may be evaluated only as a whole, like a Policy with local variables
+			return !(referredPolicy instanceof DecisionDiagramCompilable) || ((DecisionDiagramCompilable) referredPolicy).hasLocalVariables();
+		}
+
+		@Override
+		public BooleanEvaluator getTargetEvaluator()
+		{
+			return ((DecisionDiagramCompilable) referredPolicy).getTargetEvaluator();
+		}
+
+		@Override
+		public CombiningAlg<?> getCombiningAlg()
+		{
+			return ((DecisionDiagramCompilable) referredPolicy).getCombiningAlg();
+		}
+
+		@Override
+		public List<? extends Decidable> getCombinedElements()
+		{
+			return ((DecisionDiagramCompilable) referredPolicy).getCombinedElements();
+		}
+
 		@Override
 		public PolicyVersion getPolicyVersion()
 		{
@@ -1464,6 +1615,37 @@ public final class PolicyEvaluators
 			throw NULL_XACML_COMBINING_ALG_ARG_EXCEPTION;
 		}
 
+		/*
+		 * The VariableDefinitions of this policy should not be visible outside the scope of this policy. With our own factory, the policy is parsed in its own variable scope, so that other policies
+		 * may be parsed at the same time with the same factory (in other threads).
+		 */
+		final ExpressionFactory policyExpressionFactory = expressionFactory instanceof DepthLimitingExpressionFactory ? ((DepthLimitingExpressionFactory) expressionFactory).newVariableScope()
+		        : expressionFactory;
+		/*
+		 * Keep a copy of locally-defined variable IDs defined in this policy, to remove them from the expression factory at the end of parsing this policy, even if parsing fails (the expression
+		 * factory may be used to parse other policies afterwards), in case it does not support variable scopes
+		 */
+		final List<String> localVariableIds = new ArrayList<>();
+		try
+		{
+			return newPolicyEvaluator(policyElement, parentDefaultXPathCompiler, namespacePrefixesByURI, policyExpressionFactory, combiningAlgRegistry, localVariableIds);
+		}
+		finally
+		{
+			for (final String varId : localVariableIds)
+			{
+				policyExpressionFactory.removeVariable(varId);
+			}
+		}
+	}
+
+	/*
+	 * localVariableIds: (out parameter) IDs of the VariableDefinitions in this policy, added to expressionFactory
+	 */
+	private static StaticTopLevelPolicyElementEvaluator newPolicyEvaluator(final Policy policyElement, final XPathCompiler parentDefaultXPathCompiler,
+	        final Map<String, String> namespacePrefixesByURI, final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry, final List<String> localVariableIds)
+	        throws IllegalArgumentException
+	{
 		final String policyId = policyElement.getPolicyId();
 		final PolicyVersion policyVersion = new PolicyVersion(policyElement.getVersion());
 		final String policyFriendlyId = "Policy[" + policyId + "#v" + policyVersion + "]";
@@ -1499,11 +1681,6 @@ public final class PolicyEvaluators
 		 */
 		final List<CombiningAlgParameter<? extends RuleEvaluator>> combiningAlgParameters = new ArrayList<>(policyChoiceElements.size());
 
-		/*
-		 * Keep a copy of locally-defined variable IDs defined in this policy, to remove them from the global manager at the end of parsing this policy. They should not be visible outside the scope of
-		 * this policy. There are at most as many VariableDefinitions as policyChoiceElements.size().
-		 */
-		final List<String> localVariableIds = new ArrayList<>(policyChoiceElements.size());
 		/*
 		 * We keep a record of the size of the longest chain of VariableReference in this policy, and update it when a VariableDefinition occurs
 		 */
@@ -1612,22 +1789,37 @@ public final class PolicyEvaluators
 			childIndex++;
 		}
 
+		/*
+		 * Partial evaluation: the rules that never apply always return NotApplicable, which has no effect on the (standard) rule-combining algorithms
+		 */
+		final Collection<RuleEvaluator> combinedRuleEvaluators;
+		final List<CombiningAlgParameter<? extends RuleEvaluator>> ruleCombiningAlgParameters;
+		if (PartialEvaluation.isEnabled(expressionFactory) && ruleEvaluatorsByRuleIdInOrderOfDeclaration.values().stream().anyMatch(RuleEvaluator::isNeverApplicable))
+		{
+			combinedRuleEvaluators = ruleEvaluatorsByRuleIdInOrderOfDeclaration.values().stream().filter(rule -> !rule.isNeverApplicable()).collect(Collectors.toList());
+			ruleCombiningAlgParameters = combiningAlgParameters.stream().filter(param -> param.getCombinedElement() == null || !param.getCombinedElement().isNeverApplicable())
+			        .collect(Collectors.toList());
+			final int removedRuleCount = ruleEvaluatorsByRuleIdInOrderOfDeclaration.size() - combinedRuleEvaluators.size();
+			LOGGER.debug("{}: {} Rule(s) never applicable -> partial evaluation: removing them", policyFriendlyId, removedRuleCount);
+			PartialEvaluation.countEliminatedNodes(expressionFactory, removedRuleCount);
+		}
+		else
+		{
+			combinedRuleEvaluators = ruleEvaluatorsByRuleIdInOrderOfDeclaration.values();
+			ruleCombiningAlgParameters = combiningAlgParameters;
+		}
+
 		final PrimaryPolicyMetadata primaryPolicyMetadata = new BasePrimaryPolicyMetadata(TopLevelPolicyElementType.POLICY, policyId, policyVersion);
 		final ObligationExpressions obligationExps = policyElement.getObligationExpressions();
 		final AdviceExpressions adviceExps = policyElement.getAdviceExpressions();
 		final StaticTopLevelPolicyElementEvaluator policyEvaluator = new StaticBaseTopLevelPolicyElementEvaluator<>(RuleEvaluator.class, primaryPolicyMetadata, Optional.empty(),
-		        policyElement.getTarget(), policyElement.getRuleCombiningAlgId(), ruleEvaluatorsByRuleIdInOrderOfDeclaration.values(), combiningAlgParameters,
+		        policyElement.getTarget(), policyElement.getRuleCombiningAlgId(), combinedRuleEvaluators, ruleCombiningAlgParameters,
 		        obligationExps == null ? null : obligationExps.getObligationExpressions(), adviceExps == null ? null : adviceExps.getAdviceExpressions(),
-		        Collections.<String>unmodifiableList(localVariableIds), defaultXPathCompiler, expressionFactory, combiningAlgRegistry);
+		        Collections.<String>unmodifiableList(new ArrayList<>(localVariableIds)), defaultXPathCompiler, expressionFactory, combiningAlgRegistry);
 
 		/*
-		 * We are done parsing expressions in this policy, including VariableReferences, it's time to remove variables scoped to this policy from the variable manager
+		 * We are done parsing expressions in this policy, including VariableReferences; variables scoped to this policy are removed from the variable manager by the caller
 		 */
-		for (final String varId : localVariableIds)
-		{
-			expressionFactory.removeVariable(varId);
-		}
-
 		return policyEvaluator;
 	}
 
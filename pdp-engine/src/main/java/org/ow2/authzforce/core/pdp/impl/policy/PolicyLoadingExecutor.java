@@ -0,0 +1,142 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor of the tasks parsing and compiling policies in parallel when loading them, e.g. in {@link CoreRefPolicyProvider}. The results and errors are reported in the order of the tasks, whatever
+ * the order of execution, so that the error reported for a given set of invalid policies is always the same.
+ * <p>
+ * Worker threads are daemon threads, created on demand up to the number of available processors ({@link Runtime#availableProcessors()}), and terminated when the executor is closed.
+ */
+final class PolicyLoadingExecutor implements Closeable
+{
+	private static final AtomicInteger EXECUTOR_COUNTER = new AtomicInteger(0);
+
+	private static final long KEEP_ALIVE_SECONDS = 10;
+
+	private final int threadCount = Runtime.getRuntime().availableProcessors();
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Creates executor
+	 */
+	PolicyLoadingExecutor()
+	{
+		final String threadNamePrefix = "authzforce-policy-loader-" + EXECUTOR_COUNTER.incrementAndGet() + "-thread-";
+		final AtomicInteger threadCounter = new AtomicInteger(0);
+		this.executor = new ThreadPoolExecutor(threadCount, threadCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+			final Thread thread = new Thread(runnable, threadNamePrefix + threadCounter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Executes tasks, in parallel if there are more than one and more than one processor available, and waits for all of them to complete.
+	 *
+	 * @param tasks
+	 *            tasks to be executed
+	 * @return results of {@code tasks}, in the same order
+	 * @throws RuntimeException
+	 *             the error of the first failed task in {@code tasks} (in the list order), as is if it is a RuntimeException, else wrapped in an {@link IllegalArgumentException}
+	 */
+	<T> List<T> invokeAll(final List<? extends Callable<T>> tasks) throws RuntimeException
+	{
+		assert tasks != null;
+		final List<T> results = new ArrayList<>(tasks.size());
+		if (tasks.size() < 2 || threadCount < 2)
+		{
+			for (final Callable<T> task : tasks)
+			{
+				try
+				{
+					results.add(task.call());
+				}
+				catch (final RuntimeException e)
+				{
+					throw e;
+				}
+				catch (final Exception e)
+				{
+					throw new IllegalArgumentException(e);
+				}
+			}
+
+			return results;
+		}
+
+		final List<Future<T>> futures;
+		try
+		{
+			futures = executor.invokeAll(tasks);
+		}
+		catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading policies", e);
+		}
+
+		for (final Future<T> future : futures)
+		{
+			try
+			{
+				results.add(future.get());
+			}
+			catch (final InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while loading policies", e);
+			}
+			catch (final ExecutionException e)
+			{
+				final Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+				{
+					throw (RuntimeException) cause;
+				}
+
+				if (cause instanceof Error)
+				{
+					throw (Error) cause;
+				}
+
+				throw new IllegalArgumentException(cause);
+			}
+		}
+
+		return results;
+	}
+
+	@Override
+	public void close()
+	{
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,319 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.stream.Stream;
+
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * Watcher of policy locations on the filesystem, notifying a listener whenever a policy file is created, modified or deleted. The locations are the ones supported by {@link CoreRootPolicyProvider}
+ * and {@link CoreRefPolicyProvider}: a Spring resource location resolved to a file (e.g. 'file:' URL, or 'classpath:' location in a directory), or a file path pattern such as
+ * 'file:/path/to/policies/**.xml' (see {@link CoreRefPolicyProvider.Factory}), in which case the directory is watched with its subdirectories up to the depth given by the pattern, including
+ * subdirectories created afterwards. Other locations (e.g. HTTP URLs, entries of JAR files) are not watched.
+ * <p>
+ * The listener is called from a dedicated daemon thread, once per batch of file events, and should return quickly.
+ */
+final class PolicyLocationWatcher implements Closeable
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(PolicyLocationWatcher.class);
+
+	private static final AtomicInteger WATCHER_COUNTER = new AtomicInteger();
+
+	/*
+	 * Files matched by a file path pattern below a directory
+	 */
+	private static final class FilePattern
+	{
+		private final String filenameSuffix;
+
+		/*
+		 * Number of directory levels searched, 1 for the files directly in the directory
+		 */
+		private final int maxDepth;
+
+		private FilePattern(final String filenameSuffix, final int maxDepth)
+		{
+			this.filenameSuffix = filenameSuffix;
+			this.maxDepth = maxDepth;
+		}
+	}
+
+	private static final class WatchedDirectory
+	{
+		private final Path directory;
+		private final Set<Path> filenames = HashCollections.newUpdatableSet();
+		private final List<FilePattern> filePatterns = new ArrayList<>();
+
+		private WatchedDirectory(final Path directory)
+		{
+			this.directory = directory;
+		}
+	}
+
+	private final WatchService watchService;
+	private final Runnable listener;
+
+	/*
+	 * Modified by the watching thread only, after initialization
+	 */
+	private final Map<Path, WatchedDirectory> watchedDirectoriesByPath = HashCollections.newUpdatableMap();
+	private final Map<WatchKey, WatchedDirectory> watchedDirectoriesByKey = HashCollections.newUpdatableMap();
+
+	private final Thread watchingThread;
+
+	/**
+	 * Starts watching policy locations
+	 *
+	 * @param policyLocations
+	 *            policy locations (with placeholders already replaced), as in {@link CoreRootPolicyProvider} and {@link CoreRefPolicyProvider} configurations
+	 * @param listener
+	 *            listener called whenever a watched policy file is created, modified or deleted
+	 * @throws IOException
+	 *             error creating the filesystem watch service
+	 */
+	PolicyLocationWatcher(final Collection<String> policyLocations, final Runnable listener) throws IOException
+	{
+		assert policyLocations != null && listener != null;
+		this.listener = listener;
+		this.watchService = FileSystems.getDefault().newWatchService();
+		for (final String policyLocation : policyLocations)
+		{
+			try
+			{
+				watch(policyLocation);
+			}
+			catch (final IOException | IllegalArgumentException e)
+			{
+				LOGGER.warn("Policy location '{}' cannot be watched for changes", policyLocation, e);
+			}
+		}
+
+		if (watchedDirectoriesByKey.isEmpty())
+		{
+			LOGGER.warn("None of the policy locations {} can be watched for changes", policyLocations);
+		}
+
+		this.watchingThread = new Thread(this::watchEvents, "authzforce-policy-watcher-" + WATCHER_COUNTER.incrementAndGet());
+		this.watchingThread.setDaemon(true);
+		this.watchingThread.start();
+	}
+
+	private void watch(final String policyLocation) throws IOException, IllegalArgumentException
+	{
+		if (policyLocation.startsWith(ResourceUtils.FILE_URL_PREFIX))
+		{
+			// same parsing as CoreRefPolicyProvider.Factory
+			final int index = policyLocation.indexOf("/*");
+			if (index > 0)
+			{
+				final Matcher filePathPatternMatcher = CoreRefPolicyProvider.Factory.WILDCARD_SEQ_PREFIX_PATTERN.matcher(policyLocation.substring(index + 1));
+				if (!filePathPatternMatcher.matches())
+				{
+					throw new IllegalArgumentException("Invalid policy location pattern: " + policyLocation);
+				}
+
+				final String filenameSuffix = filePathPatternMatcher.group(2);
+				final FilePattern filePattern = new FilePattern(filenameSuffix.isEmpty() ? filenameSuffix : filenameSuffix.substring(1), filePathPatternMatcher.group(1).length());
+				watchTree(Paths.get(policyLocation.substring(ResourceUtils.FILE_URL_PREFIX.length(), index)), filePattern);
+				return;
+			}
+		}
+
+		final URL policyURL;
+		try
+		{
+			policyURL = ResourceUtils.getURL(policyLocation);
+		}
+		catch (final FileNotFoundException e)
+		{
+			throw new IllegalArgumentException("Invalid policy location: " + policyLocation, e);
+		}
+
+		if (!ResourceUtils.isFileURL(policyURL))
+		{
+			throw new IllegalArgumentException("Policy location is not a file: " + policyURL);
+		}
+
+		final Path policyFile = ResourceUtils.getFile(policyURL).toPath().toAbsolutePath();
+		register(policyFile.getParent()).filenames.add(policyFile.getFileName());
+	}
+
+	/*
+	 * Registers a directory and its existing subdirectories up to the depth of the pattern
+	 */
+	private void watchTree(final Path directory, final FilePattern filePattern) throws IOException
+	{
+		register(directory).filePatterns.add(filePattern);
+		if (filePattern.maxDepth > 1)
+		{
+			final FilePattern subdirFilePattern = new FilePattern(filePattern.filenameSuffix, filePattern.maxDepth - 1);
+			try (final Stream<Path> subdirs = Files.list(directory))
+			{
+				for (final Path subdir : (Iterable<Path>) subdirs::iterator)
+				{
+					if (Files.isDirectory(subdir))
+					{
+						watchTree(subdir, subdirFilePattern);
+					}
+				}
+			}
+		}
+	}
+
+	private WatchedDirectory register(final Path directory) throws IOException
+	{
+		final Path absDirectory = directory.toAbsolutePath();
+		final WatchedDirectory existingWatchedDirectory = watchedDirectoriesByPath.get(absDirectory);
+		if (existingWatchedDirectory != null)
+		{
+			return existingWatchedDirectory;
+		}
+
+		final WatchKey watchKey = absDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+		final WatchedDirectory watchedDirectory = new WatchedDirectory(absDirectory);
+		watchedDirectoriesByPath.put(absDirectory, watchedDirectory);
+		watchedDirectoriesByKey.put(watchKey, watchedDirectory);
+		LOGGER.debug("Watching policy directory: {}", absDirectory);
+		return watchedDirectory;
+	}
+
+	/*
+	 * Tells whether a file event affects the policies
+	 */
+	private boolean isPolicyChange(final WatchedDirectory watchedDirectory, final WatchEvent<?> event)
+	{
+		if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+		{
+			// events lost
+			return true;
+		}
+
+		final Path filename = (Path) event.context();
+		if (watchedDirectory.filenames.contains(filename))
+		{
+			return true;
+		}
+
+		boolean isPolicyChange = false;
+		for (final FilePattern filePattern : watchedDirectory.filePatterns)
+		{
+			final Path file = watchedDirectory.directory.resolve(filename);
+			if (filePattern.maxDepth > 1 && event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file))
+			{
+				// new subdirectory, maybe with policy files already (moved)
+				try
+				{
+					watchTree(file, new FilePattern(filePattern.filenameSuffix, filePattern.maxDepth - 1));
+				}
+				catch (final IOException e)
+				{
+					LOGGER.warn("New policy directory '{}' cannot be watched for changes", file, e);
+				}
+
+				isPolicyChange = true;
+			}
+			else if (filename.toString().endsWith(filePattern.filenameSuffix))
+			{
+				isPolicyChange = true;
+			}
+		}
+
+		return isPolicyChange;
+	}
+
+	private void watchEvents()
+	{
+		while (true)
+		{
+			final WatchKey watchKey;
+			try
+			{
+				watchKey = watchService.take();
+			}
+			catch (final InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (final ClosedWatchServiceException e)
+			{
+				return;
+			}
+
+			final WatchedDirectory watchedDirectory = watchedDirectoriesByKey.get(watchKey);
+			boolean isPolicyChange = false;
+			for (final WatchEvent<?> event : watchKey.pollEvents())
+			{
+				if (watchedDirectory != null && isPolicyChange(watchedDirectory, event))
+				{
+					isPolicyChange = true;
+				}
+			}
+
+			if (!watchKey.reset() && watchedDirectory != null)
+			{
+				// directory deleted
+				watchedDirectoriesByKey.remove(watchKey);
+				watchedDirectoriesByPath.remove(watchedDirectory.directory);
+			}
+
+			if (isPolicyChange)
+			{
+				try
+				{
+					listener.run();
+				}
+				catch (final RuntimeException e)
+				{
+					LOGGER.error("Error handling change of policy files in {}", watchedDirectory.directory, e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		watchService.close();
+		watchingThread.interrupt();
+	}
+}
@@ -19,26 +19,93 @@ package org.ow2.authzforce.core.pdp.impl.policy;
 
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.ow2.authzforce.core.pdp.api.HashCollections;
 import org.ow2.authzforce.core.pdp.api.policy.PolicyVersion;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyVersionPattern;
 import org.ow2.authzforce.core.pdp.api.policy.PolicyVersionPatterns;
 
 /**
  * Map that provides convenient access to a policy based on the policy ID and version pattern to help resolve policy references
+ * <p>
+ * Since the map is immutable, the resolution of a given policy ID and version patterns always gives the same result, therefore it is memoized (up to {@value #MAX_MEMOIZED_RESOLUTIONS} different
+ * policy ID and version patterns, to bound memory usage when policy references are dynamic).
  *
  * @param <P>
  *            policy type
  */
 public final class PolicyMap<P>
 {
+	/**
+	 * Max number of memoized resolutions of policy ID and version patterns
+	 */
+	public static final int MAX_MEMOIZED_RESOLUTIONS = 4096;
+
+	/*
+	 * Key of memoized resolution: policy ID and version patterns (PolicyVersionPatterns does not implement equals/hashCode)
+	 */
+	private static final class PolicyRefKey
+	{
+		private final String id;
+		private final String versionPattern;
+		private final String earliestVersionPattern;
+		private final String latestVersionPattern;
+		private final int hashCode;
+
+		private static String toString(final Optional<PolicyVersionPattern> versionPattern)
+		{
+			return versionPattern.isPresent() ? versionPattern.get().toString() : null;
+		}
+
+		private PolicyRefKey(final String id, final PolicyVersionPatterns policyVersionPatterns)
+		{
+			this.id = id;
+			this.versionPattern = toString(policyVersionPatterns.getVersionPattern());
+			this.earliestVersionPattern = toString(policyVersionPatterns.getEarliestVersionPattern());
+			this.latestVersionPattern = toString(policyVersionPatterns.getLatestVersionPattern());
+			this.hashCode = Objects.hash(id, versionPattern, earliestVersionPattern, latestVersionPattern);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+
+			if (!(obj instanceof PolicyRefKey))
+			{
+				return false;
+			}
+
+			final PolicyRefKey other = (PolicyRefKey) obj;
+			return this.id.equals(other.id) && Objects.equals(this.versionPattern, other.versionPattern) && Objects.equals(this.earliestVersionPattern, other.earliestVersionPattern)
+			        && Objects.equals(this.latestVersionPattern, other.latestVersionPattern);
+		}
+	}
+
 	/*
 	 * Map: Policy(Set)Id -> Version -> Policy(Set), versions sorted from latest to earliest non-null immutable map
 	 */
 	private final Map<String, PolicyVersions<P>> policiesById;
 
+	/*
+	 * Memoized results of get(id, Optional.of(versionPatterns)) for existing policy IDs (Optional.empty() if no matching version)
+	 */
+	private final ConcurrentMap<PolicyRefKey, Optional<Entry<PolicyVersion, P>>> memoizedResolutions = new ConcurrentHashMap<>();
+
 	/**
 	 * Create instance from map
 	 * 
@@ -75,7 +142,40 @@ public final class PolicyMap<P>
 			return null;
 		}
 
-		return policyVersions.getLatest(PolicyVersionPatterns);
+		if (!PolicyVersionPatterns.isPresent())
+		{
+			// no need to memoize: latest version, i.e. first one
+			return policyVersions.getLatest(PolicyVersionPatterns);
+		}
+
+		final PolicyRefKey policyRefKey = new PolicyRefKey(id, PolicyVersionPatterns.get());
+		final Optional<Entry<PolicyVersion, P>> memoizedResolution = memoizedResolutions.get(policyRefKey);
+		if (memoizedResolution != null)
+		{
+			return memoizedResolution.orElse(null);
+		}
+
+		final Entry<PolicyVersion, P> resolution = policyVersions.getLatest(PolicyVersionPatterns);
+		if (memoizedResolutions.size() < MAX_MEMOIZED_RESOLUTIONS)
+		{
+			memoizedResolutions.putIfAbsent(policyRefKey, Optional.ofNullable(resolution));
+		}
+
+		return resolution;
+	}
+
+	/**
+	 * Get a policy in a specific version
+	 * 
+	 * @param id
+	 *            policy ID
+	 * @param version
+	 *            policy version
+	 * @return policy with ID {@code id} and version {@code version}; null if none
+	 */
+	public P get(final String id, final PolicyVersion version) {
+		final PolicyVersions<P> policyVersions = policiesById.get(id);
+		return policyVersions == null ? null : policyVersions.get(version);
 	}
 
 	/**
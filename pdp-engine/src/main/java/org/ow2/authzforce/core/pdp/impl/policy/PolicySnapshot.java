@@ -0,0 +1,662 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.transform.stream.StreamSource;
+
+import org.ow2.authzforce.core.pdp.api.EnvironmentProperties;
+import org.ow2.authzforce.core.pdp.api.EnvironmentPropertyName;
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.XmlUtils.XmlnsFilteringParser;
+import org.ow2.authzforce.core.pdp.api.combining.CombiningAlg;
+import org.ow2.authzforce.core.pdp.api.combining.CombiningAlgRegistry;
+import org.ow2.authzforce.core.pdp.api.func.Function;
+import org.ow2.authzforce.core.pdp.api.func.GenericHigherOrderFunctionFactory;
+import org.ow2.authzforce.core.pdp.api.io.XacmlJaxbParsingUtils;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyVersion;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValueFactory;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValueFactoryRegistry;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.DefaultEnvironmentProperties;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.pdp.impl.PdpExtensions;
+import org.ow2.authzforce.core.pdp.impl.PdpModelHandler;
+import org.ow2.authzforce.core.pdp.impl.func.FunctionRegistry;
+import org.ow2.authzforce.core.pdp.impl.policy.CoreRefPolicyProvider.PolicyWithNamespaces;
+import org.ow2.authzforce.core.xmlns.pdp.Pdp;
+import org.ow2.authzforce.xmlns.pdp.ext.AbstractAttributeProvider;
+import org.ow2.authzforce.xmlns.pdp.ext.AbstractPolicyProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ResourceUtils;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import com.google.common.io.ByteStreams;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.IdReferenceType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Policy;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.PolicySet;
+
+/**
+ * Binary snapshot of the policies of a PDP configuration, i.e. the root policy (or root PolicySetIdReference) and all the policies it may refer to, already validated against the XACML schema and
+ * unmarshalled. Loading the policies from a snapshot ({@link PolicySnapshotRootPolicyProvider}) skips XML parsing and schema validation entirely, which make most of the loading time of large policy
+ * repositories; the policies are still compiled (into evaluators) when loaded, with the functions, datatypes, etc. of the PDP loading them.
+ * <p>
+ * Format: magic number, format version, SHA-256 digest of the snapshot environment ({@link Environment}), SHA-256 digest of the payload, payload size and payload. The payload is the Java
+ * serialization of the JAXB policies and namespace prefix-URI mappings. A snapshot can only be loaded by a PDP with the same environment digest, else it must be created again
+ * ({@link #write(File, String, String, OutputStream)}).
+ */
+public final class PolicySnapshot
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(PolicySnapshot.class);
+
+	/*
+	 * "AZPS"
+	 */
+	private static final int MAGIC_NUMBER = 0x415A5053;
+
+	private static final int FORMAT_VERSION = 2;
+
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+
+	/*
+	 * Classes allowed in the payload: JAXB-generated XACML model classes (package below), and the standard classes they use (fields, JAXBElement values, namespace prefix-URI mappings)
+	 */
+	private static final String XACML_MODEL_PACKAGE_PREFIX = Policy.class.getPackage().getName() + ".";
+	private static final Set<String> DESERIALIZABLE_STANDARD_CLASS_NAMES = HashCollections.newImmutableSet(new String[] { "javax.xml.bind.JAXBElement", "javax.xml.bind.JAXBElement$GlobalScope",
+	        "javax.xml.namespace.QName", "java.lang.Enum", "java.lang.Number", "java.lang.Boolean", "java.lang.Integer", "java.lang.Long", "java.math.BigInteger", "java.math.BigDecimal",
+	        "java.util.ArrayList", "java.util.HashMap" });
+
+	private static final IllegalArgumentException NULL_COMBINING_ALG_REGISTRY_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined CombiningAlgorithm registry");
+
+	/*
+	 * ObjectInputStream accepting only the JAXB/XACML model classes (the snapshot is expected to be trusted, but this limits the consequences of using a tampered one). Also used by PolicyStore.
+	 */
+	static final class PolicyObjectInputStream extends ObjectInputStream
+	{
+		PolicyObjectInputStream(final InputStream in) throws IOException
+		{
+			super(in);
+		}
+
+		private static boolean isXacmlModelClass(final String className)
+		{
+			// top-level class of the package (not a subpackage)
+			return className.startsWith(XACML_MODEL_PACKAGE_PREFIX) && className.indexOf('.', XACML_MODEL_PACKAGE_PREFIX.length()) == -1;
+		}
+
+		@Override
+		protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException
+		{
+			final String className = desc.getName();
+			if (DESERIALIZABLE_STANDARD_CLASS_NAMES.contains(className) || isXacmlModelClass(className))
+			{
+				return super.resolveClass(desc);
+			}
+
+			throw new InvalidClassException(className, "Class not allowed in policy snapshot");
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(final String[] interfaces) throws IOException, ClassNotFoundException
+		{
+			throw new InvalidClassException(String.join(",", interfaces), "Proxy class not allowed in policy snapshot");
+		}
+	}
+
+	static String getImplementationVersion(final Class<?> clazz)
+	{
+		final Package classPackage = clazz.getPackage();
+		final String version = classPackage == null ? null : classPackage.getImplementationVersion();
+		return version == null ? "" : version;
+	}
+
+	private static MessageDigest newMessageDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		}
+		catch (final NoSuchAlgorithmException e)
+		{
+			// every implementation of the Java platform is required to support SHA-256
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * What a snapshot depends on in the PDP creating or loading it: PDP engine and XACML model versions, datatypes, functions and combining algorithms (identifiers and implementation
+	 * classes/versions), Attribute Providers (configuration types and implementation classes/versions), and the PDP configuration parameters applied when parsing and validating the policies
+	 * (enableXPath, strictAttributeIssuerMatch, maxVariableRefDepth, maxIntegerValue). A snapshot can only be loaded by a PDP with the same environment. The maximum PolicySet reference depth is not
+	 * part of it: the one of the PDP loading the snapshot applies.
+	 */
+	public static final class Environment
+	{
+		private static void appendExtension(final List<String> entries, final String type, final String id, final Class<?> implClass)
+		{
+			entries.add(type + "=" + id + "," + implClass.getName() + "," + getImplementationVersion(implClass));
+		}
+
+		private final byte[] digest;
+		private final int maxPolicySetRefDepth;
+
+		/**
+		 * Creates the environment of a PDP
+		 *
+		 * @param pdpJaxbConf
+		 *            (JAXB-bound) PDP configuration, providing the Attribute Providers and the configuration parameters applied when parsing the policies
+		 * @param datatypeFactoryRegistry
+		 *            attribute datatype registry of the PDP
+		 * @param functionRegistry
+		 *            function registry of the PDP
+		 * @param combiningAlgRegistry
+		 *            registry of policy/rule combining algorithms of the PDP
+		 * @param maxPolicySetRefDepth
+		 *            maximum allowed depth of PolicySet reference chains in the PDP; strictly negative if no limit
+		 * @throws IllegalArgumentException
+		 *             if one of the arguments is null, or no Attribute Provider extension supports one of the Attribute Provider configurations
+		 */
+		public Environment(final Pdp pdpJaxbConf, final AttributeValueFactoryRegistry datatypeFactoryRegistry, final FunctionRegistry functionRegistry,
+		        final CombiningAlgRegistry combiningAlgRegistry, final int maxPolicySetRefDepth) throws IllegalArgumentException
+		{
+			if (pdpJaxbConf == null || datatypeFactoryRegistry == null || functionRegistry == null)
+			{
+				throw new IllegalArgumentException("Undefined PDP configuration, datatype registry or function registry");
+			}
+
+			if (combiningAlgRegistry == null)
+			{
+				throw NULL_COMBINING_ALG_REGISTRY_ARGUMENT_EXCEPTION;
+			}
+
+			/*
+			 * Sorted so that the digest does not depend on the iteration order of the registries
+			 */
+			final List<String> entries = new ArrayList<>();
+			for (final AttributeValueFactory<?> datatypeFactory : datatypeFactoryRegistry.getExtensions())
+			{
+				appendExtension(entries, "datatype", datatypeFactory.getId(), datatypeFactory.getClass());
+			}
+
+			for (final Function<?> function : functionRegistry.getNonGenericFunctions())
+			{
+				appendExtension(entries, "function", function.getId(), function.getClass());
+			}
+
+			for (final GenericHigherOrderFunctionFactory functionFactory : functionRegistry.getGenericFunctionFactories())
+			{
+				appendExtension(entries, "genericFunction", functionFactory.getId(), functionFactory.getClass());
+			}
+
+			for (final CombiningAlg<?> combiningAlg : combiningAlgRegistry.getExtensions())
+			{
+				appendExtension(entries, "alg", combiningAlg.getId(), combiningAlg.getClass());
+			}
+
+			Collections.sort(entries);
+
+			final StringBuilder environment = new StringBuilder();
+			environment.append("format=").append(FORMAT_VERSION).append('\n').append("engine=").append(getImplementationVersion(PolicySnapshot.class)).append('\n').append("model=")
+			        .append(getImplementationVersion(PolicySet.class)).append('\n');
+			for (final String entry : entries)
+			{
+				environment.append(entry).append('\n');
+			}
+
+			/*
+			 * In the order of the configuration, since it may matter for Attribute Providers
+			 */
+			for (final AbstractAttributeProvider attProviderJaxbConf : pdpJaxbConf.getAttributeProviders())
+			{
+				final Class<?> attProviderImplClass = PdpExtensions.getAttributeProviderFactoryBuilder(attProviderJaxbConf.getClass()).getClass();
+				environment.append("attributeProvider=").append(attProviderJaxbConf.getClass().getName()).append(',').append(attProviderImplClass.getName()).append(',')
+				        .append(getImplementationVersion(attProviderImplClass)).append('\n');
+			}
+
+			environment.append("enableXPath=").append(pdpJaxbConf.isEnableXPath()).append('\n').append("strictAttributeIssuerMatch=").append(pdpJaxbConf.isStrictAttributeIssuerMatch())
+			        .append('\n').append("maxVariableRefDepth=").append(pdpJaxbConf.getMaxVariableRefDepth()).append('\n').append("maxIntegerValue=").append(pdpJaxbConf.getMaxIntegerValue())
+			        .append('\n');
+			this.digest = newMessageDigest().digest(environment.toString().getBytes(StandardCharsets.UTF_8));
+			this.maxPolicySetRefDepth = maxPolicySetRefDepth;
+		}
+
+		private byte[] getDigest()
+		{
+			return digest.clone();
+		}
+
+		/**
+		 * Get the maximum allowed depth of PolicySet reference chains in the PDP, to be enforced when loading the policies of a snapshot
+		 *
+		 * @return maximum PolicySet reference depth; strictly negative if no limit
+		 */
+		public int getMaxPolicySetRefDepth()
+		{
+			return maxPolicySetRefDepth;
+		}
+	}
+
+	private static <P> List<PolicyWithNamespaces<P>> getLatestVersions(final List<PolicyWithNamespaces<P>> policies, final java.util.function.Function<P, String> idGetter,
+	        final java.util.function.Function<P, String> versionGetter)
+	{
+		final Table<String, PolicyVersion, PolicyWithNamespaces<P>> policyTable = HashBasedTable.create();
+		for (final PolicyWithNamespaces<P> policy : policies)
+		{
+			policyTable.put(idGetter.apply(policy.getPolicy()), new PolicyVersion(versionGetter.apply(policy.getPolicy())), policy);
+		}
+
+		final List<PolicyWithNamespaces<P>> latestPolicies = new ArrayList<>(policyTable.rowKeySet().size());
+		for (final Map<PolicyVersion, PolicyWithNamespaces<P>> policyVersions : policyTable.rowMap().values())
+		{
+			latestPolicies.add(Collections.max(policyVersions.entrySet(), Entry.comparingByKey()).getValue());
+		}
+
+		return latestPolicies;
+	}
+
+	private static void writePolicies(final ObjectOutputStream out, final List<? extends PolicyWithNamespaces<?>> policies) throws IOException
+	{
+		out.writeInt(policies.size());
+		for (final PolicyWithNamespaces<?> policy : policies)
+		{
+			out.writeObject(policy.getPolicy());
+			out.writeObject(new HashMap<>(policy.getNsPrefixUriMap()));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <P> List<PolicyWithNamespaces<P>> readPolicies(final ObjectInputStream in, final Class<P> policyClass) throws IOException, ClassNotFoundException
+	{
+		final int policyCount = in.readInt();
+		if (policyCount < 0)
+		{
+			throw new IllegalArgumentException("Invalid number of policies: " + policyCount);
+		}
+
+		/*
+		 * Not presized with policyCount (from the payload) in case it is corrupted: reading would then fail before the list gets too big
+		 */
+		final List<PolicyWithNamespaces<P>> policies = new ArrayList<>();
+		for (int i = 0; i < policyCount; i++)
+		{
+			final P policy = policyClass.cast(in.readObject());
+			final Map<String, String> nsPrefixUriMap = (Map<String, String>) in.readObject();
+			policies.add(new PolicyWithNamespaces<>(policy, HashCollections.newImmutableMap(nsPrefixUriMap)));
+		}
+
+		return policies;
+	}
+
+	/**
+	 * Creates a snapshot of the policies of a PDP configuration. The configuration is validated first, including the policies, as if a PDP were created from it (with {@link BasePdpEngine}). The
+	 * supported policy providers are the ones loading policies statically from XML files: StaticRootPolicyProvider or StaticRefBasedRootPolicyProvider for the root policy, and
+	 * StaticRefPolicyProvider (or none) for the referenced policies.
+	 *
+	 * @param pdpJaxbConf
+	 *            (JAXB-bound) PDP configuration
+	 * @param envProps
+	 *            PDP configuration environment properties (e.g. PARENT_DIR)
+	 * @param out
+	 *            output stream where the snapshot is written (not closed by this method)
+	 * @throws IllegalArgumentException
+	 *             invalid PDP configuration, or policy providers not supported
+	 * @throws IOException
+	 *             error writing to {@code out}
+	 */
+	public static void write(final Pdp pdpJaxbConf, final EnvironmentProperties envProps, final OutputStream out) throws IllegalArgumentException, IOException
+	{
+		if (pdpJaxbConf == null || envProps == null || out == null)
+		{
+			throw new IllegalArgumentException("Undefined PDP configuration, environment properties or output stream");
+		}
+
+		final byte[] environmentDigest;
+		final PdpEngineConfiguration pdpEngineConf = new PdpEngineConfiguration(pdpJaxbConf, envProps);
+		try (final BasePdpEngine pdp = new BasePdpEngine(pdpEngineConf))
+		{
+			environmentDigest = pdpEngineConf.getPolicySnapshotEnvironment().getDigest();
+		}
+
+		final XmlnsFilteringParser xacmlParser;
+		try
+		{
+			xacmlParser = XacmlJaxbParsingUtils.getXacmlParserFactory(pdpJaxbConf.isEnableXPath()).getInstance();
+		}
+		catch (final JAXBException e)
+		{
+			throw new IllegalArgumentException("Failed to create JAXB unmarshaller for XML Policy(Set)", e);
+		}
+
+		/*
+		 * Root policy
+		 */
+		final AbstractPolicyProvider rootPolicyProviderJaxbConf = pdpJaxbConf.getRootPolicyProvider();
+		final Serializable rootPolicyElement;
+		final Map<String, String> rootPolicyNsPrefixUriMap;
+		if (rootPolicyProviderJaxbConf instanceof org.ow2.authzforce.core.xmlns.pdp.StaticRootPolicyProvider)
+		{
+			final String policyLocation = envProps.replacePlaceholders(((org.ow2.authzforce.core.xmlns.pdp.StaticRootPolicyProvider) rootPolicyProviderJaxbConf).getPolicyLocation());
+			final Object jaxbPolicyOrPolicySet;
+			try
+			{
+				jaxbPolicyOrPolicySet = xacmlParser.parse(ResourceUtils.getURL(policyLocation));
+			}
+			catch (final FileNotFoundException | JAXBException e)
+			{
+				throw new IllegalArgumentException("Failed to unmarshall Policy(Set) XML document from policy location: " + policyLocation, e);
+			}
+
+			if (!(jaxbPolicyOrPolicySet instanceof Policy || jaxbPolicyOrPolicySet instanceof PolicySet))
+			{
+				throw new IllegalArgumentException("Unexpected element found as root of the policy document: " + jaxbPolicyOrPolicySet.getClass().getSimpleName());
+			}
+
+			rootPolicyElement = (Serializable) jaxbPolicyOrPolicySet;
+			rootPolicyNsPrefixUriMap = xacmlParser.getNamespacePrefixUriMap();
+		}
+		else if (rootPolicyProviderJaxbConf instanceof org.ow2.authzforce.core.xmlns.pdp.StaticRefBasedRootPolicyProvider)
+		{
+			rootPolicyElement = ((org.ow2.authzforce.core.xmlns.pdp.StaticRefBasedRootPolicyProvider) rootPolicyProviderJaxbConf).getPolicyRef();
+			rootPolicyNsPrefixUriMap = Collections.emptyMap();
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unsupported rootPolicyProvider for policy snapshot: " + rootPolicyProviderJaxbConf.getClass()
+			        + ". Expected: StaticRootPolicyProvider or StaticRefBasedRootPolicyProvider");
+		}
+
+		/*
+		 * Policies that the root policy may refer to
+		 */
+		final AbstractPolicyProvider refPolicyProviderJaxbConf = pdpJaxbConf.getRefPolicyProvider();
+		List<PolicyWithNamespaces<Policy>> jaxbPolicies = new ArrayList<>();
+		List<PolicyWithNamespaces<PolicySet>> jaxbPolicySets = new ArrayList<>();
+		if (refPolicyProviderJaxbConf instanceof org.ow2.authzforce.core.xmlns.pdp.StaticRefPolicyProvider)
+		{
+			final org.ow2.authzforce.core.xmlns.pdp.StaticRefPolicyProvider staticRefPolicyProviderJaxbConf = (org.ow2.authzforce.core.xmlns.pdp.StaticRefPolicyProvider) refPolicyProviderJaxbConf;
+			for (final URL policyURL : CoreRefPolicyProvider.Factory.getPolicyURLs(staticRefPolicyProviderJaxbConf.getPolicyLocations(), envProps))
+			{
+				final Object jaxbPolicyOrPolicySet;
+				try
+				{
+					jaxbPolicyOrPolicySet = xacmlParser.parse(policyURL);
+				}
+				catch (final JAXBException e)
+				{
+					throw new IllegalArgumentException("Failed to unmarshall Policy(Set) XML document from policy location: " + policyURL, e);
+				}
+
+				if (jaxbPolicyOrPolicySet instanceof Policy)
+				{
+					jaxbPolicies.add(new PolicyWithNamespaces<>((Policy) jaxbPolicyOrPolicySet, xacmlParser.getNamespacePrefixUriMap()));
+				}
+				else if (jaxbPolicyOrPolicySet instanceof PolicySet)
+				{
+					jaxbPolicySets.add(new PolicyWithNamespaces<>((PolicySet) jaxbPolicyOrPolicySet, xacmlParser.getNamespacePrefixUriMap()));
+				}
+				else
+				{
+					throw new IllegalArgumentException("Unexpected element found as root of the policy document: " + jaxbPolicyOrPolicySet.getClass().getSimpleName());
+				}
+			}
+
+			if (staticRefPolicyProviderJaxbConf.isIgnoreOldVersions())
+			{
+				jaxbPolicies = getLatestVersions(jaxbPolicies, Policy::getPolicyId, Policy::getVersion);
+				jaxbPolicySets = getLatestVersions(jaxbPolicySets, PolicySet::getPolicySetId, PolicySet::getVersion);
+			}
+		}
+		else if (refPolicyProviderJaxbConf != null)
+		{
+			throw new IllegalArgumentException("Unsupported refPolicyProvider for policy snapshot: " + refPolicyProviderJaxbConf.getClass() + ". Expected: StaticRefPolicyProvider");
+		}
+
+		final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		try (final ObjectOutputStream payloadOut = new ObjectOutputStream(payload))
+		{
+			payloadOut.writeObject(rootPolicyElement);
+			payloadOut.writeObject(new HashMap<>(rootPolicyNsPrefixUriMap));
+			writePolicies(payloadOut, jaxbPolicies);
+			writePolicies(payloadOut, jaxbPolicySets);
+		}
+		catch (final NotSerializableException e)
+		{
+			// e.g. DOM nodes in XML-typed AttributeValues
+			throw new IllegalArgumentException("Policy content not supported in policy snapshot: " + e.getMessage(), e);
+		}
+
+		final byte[] payloadBytes = payload.toByteArray();
+		final DataOutputStream dataOut = new DataOutputStream(out);
+		dataOut.writeInt(MAGIC_NUMBER);
+		dataOut.writeInt(FORMAT_VERSION);
+		dataOut.write(environmentDigest);
+		dataOut.write(newMessageDigest().digest(payloadBytes));
+		dataOut.writeInt(payloadBytes.length);
+		dataOut.write(payloadBytes);
+		dataOut.flush();
+		LOGGER.info("Policy snapshot written: root policy + {} Policies + {} PolicySets ({} bytes)", jaxbPolicies.size(), jaxbPolicySets.size(), payloadBytes.length);
+	}
+
+	/**
+	 * Creates a snapshot of the policies of a PDP configuration file (see {@link #write(Pdp, EnvironmentProperties, OutputStream)}), with the same environment properties as
+	 * {@link PdpEngineConfiguration#getInstance(File, String, String)}
+	 *
+	 * @param confFile
+	 *            PDP configuration file
+	 * @param catalogLocation
+	 *            location of XML catalog for resolving XSDs imported by the extension XSD specified as 'extensionXsdLocation' argument (may be null if 'extensionXsdLocation' is null)
+	 * @param extensionXsdLocation
+	 *            location of user-defined extension XSD (may be null if no extension to load)
+	 * @param out
+	 *            output stream where the snapshot is written (not closed by this method)
+	 * @throws IllegalArgumentException
+	 *             invalid PDP configuration, or policy providers not supported
+	 * @throws IOException
+	 *             error reading {@code confFile} or writing to {@code out}
+	 */
+	public static void write(final File confFile, final String catalogLocation, final String extensionXsdLocation, final OutputStream out) throws IllegalArgumentException, IOException
+	{
+		if (confFile == null || !confFile.exists())
+		{
+			throw new IllegalArgumentException("Invalid configuration file location: No file exists at: " + confFile);
+		}
+
+		final Pdp pdpJaxbConf;
+		try
+		{
+			pdpJaxbConf = new PdpModelHandler(catalogLocation, extensionXsdLocation).unmarshal(new StreamSource(confFile), Pdp.class);
+		}
+		catch (final JAXBException e)
+		{
+			throw new IllegalArgumentException("Invalid PDP configuration file", e);
+		}
+
+		final String parentDir = confFile.getAbsoluteFile().getParentFile().toURI().toString();
+		write(pdpJaxbConf, new DefaultEnvironmentProperties(Collections.singletonMap(EnvironmentPropertyName.PARENT_DIR, parentDir)), out);
+	}
+
+	/**
+	 * Reads a policy snapshot
+	 *
+	 * @param snapshotURL
+	 *            location of the snapshot
+	 * @param environment
+	 *            environment of the PDP loading the snapshot, which must match the one of the PDP configuration the snapshot was created from
+	 * @return snapshot
+	 * @throws IllegalArgumentException
+	 *             invalid snapshot, or created in a different environment (see {@link Environment})
+	 * @throws IOException
+	 *             error reading the snapshot
+	 */
+	public static PolicySnapshot read(final URL snapshotURL, final Environment environment) throws IllegalArgumentException, IOException
+	{
+		if (snapshotURL == null)
+		{
+			throw new IllegalArgumentException("Undefined policy snapshot URL");
+		}
+
+		if (environment == null)
+		{
+			throw new IllegalArgumentException("Undefined PDP environment");
+		}
+
+		final byte[] payloadBytes;
+		try (final DataInputStream dataIn = new DataInputStream(new BufferedInputStream(snapshotURL.openStream())))
+		{
+			if (dataIn.readInt() != MAGIC_NUMBER)
+			{
+				throw new IllegalArgumentException("Not a policy snapshot: " + snapshotURL);
+			}
+
+			final int formatVersion = dataIn.readInt();
+			if (formatVersion != FORMAT_VERSION)
+			{
+				throw new IllegalArgumentException("Unsupported format version (" + formatVersion + ") of policy snapshot: " + snapshotURL + ". Expected: " + FORMAT_VERSION);
+			}
+
+			final byte[] environmentDigest = new byte[newMessageDigest().getDigestLength()];
+			dataIn.readFully(environmentDigest);
+			if (!MessageDigest.isEqual(environmentDigest, environment.getDigest()))
+			{
+				throw new IllegalArgumentException("Policy snapshot '" + snapshotURL
+				        + "' was created with a different version of the PDP engine or XACML model, different datatypes, functions, combining algorithms or Attribute Providers,"
+				        + " or different policy parsing parameters (enableXPath, etc.). Create the snapshot again with this PDP configuration.");
+			}
+
+			final byte[] payloadDigest = new byte[environmentDigest.length];
+			dataIn.readFully(payloadDigest);
+			final int payloadLength = dataIn.readInt();
+			if (payloadLength < 0)
+			{
+				throw new IllegalArgumentException("Corrupted policy snapshot: " + snapshotURL);
+			}
+
+			/*
+			 * Read without allocating payloadLength bytes upfront, in case the snapshot is corrupted, i.e. the allocated memory is bounded by the actual size of the snapshot
+			 */
+			payloadBytes = ByteStreams.toByteArray(ByteStreams.limit(dataIn, payloadLength));
+			if (payloadBytes.length != payloadLength || dataIn.read() != -1 || !MessageDigest.isEqual(payloadDigest, newMessageDigest().digest(payloadBytes)))
+			{
+				throw new IllegalArgumentException("Corrupted policy snapshot (checksum mismatch): " + snapshotURL);
+			}
+		}
+
+		try (final ObjectInputStream payloadIn = new PolicyObjectInputStream(new ByteArrayInputStream(payloadBytes)))
+		{
+			final Object rootPolicyElement = payloadIn.readObject();
+			if (!(rootPolicyElement instanceof Policy || rootPolicyElement instanceof PolicySet || rootPolicyElement instanceof IdReferenceType))
+			{
+				throw new IllegalArgumentException("Invalid root policy in policy snapshot: " + snapshotURL);
+			}
+
+			@SuppressWarnings("unchecked")
+			final Map<String, String> rootPolicyNsPrefixUriMap = (Map<String, String>) payloadIn.readObject();
+			final List<PolicyWithNamespaces<Policy>> jaxbPolicies = readPolicies(payloadIn, Policy.class);
+			final List<PolicyWithNamespaces<PolicySet>> jaxbPolicySets = readPolicies(payloadIn, PolicySet.class);
+			return new PolicySnapshot(rootPolicyElement, HashCollections.newImmutableMap(rootPolicyNsPrefixUriMap), jaxbPolicies, jaxbPolicySets);
+		}
+		catch (final ClassNotFoundException | ClassCastException e)
+		{
+			throw new IllegalArgumentException("Invalid policy snapshot: " + snapshotURL, e);
+		}
+	}
+
+	private final Object rootPolicyElement;
+	private final Map<String, String> rootPolicyNsPrefixUriMap;
+	private final List<PolicyWithNamespaces<Policy>> jaxbPolicies;
+	private final List<PolicyWithNamespaces<PolicySet>> jaxbPolicySets;
+
+	private PolicySnapshot(final Object rootPolicyElement, final Map<String, String> rootPolicyNsPrefixUriMap, final List<PolicyWithNamespaces<Policy>> jaxbPolicies,
+	        final List<PolicyWithNamespaces<PolicySet>> jaxbPolicySets)
+	{
+		this.rootPolicyElement = rootPolicyElement;
+		this.rootPolicyNsPrefixUriMap = rootPolicyNsPrefixUriMap;
+		this.jaxbPolicies = jaxbPolicies;
+		this.jaxbPolicySets = jaxbPolicySets;
+	}
+
+	/**
+	 * Get the root policy element
+	 *
+	 * @return root {@link Policy}, {@link PolicySet}, or {@link IdReferenceType} (PolicySetIdReference) to one of {@link #getPolicySets()}
+	 */
+	public Object getRootPolicyElement()
+	{
+		return rootPolicyElement;
+	}
+
+	/**
+	 * Get the namespace prefix-URI mappings from the XACML document of the root policy
+	 *
+	 * @return namespace prefix-URI mappings (empty if the root policy element is a PolicySetIdReference)
+	 */
+	public Map<String, String> getRootPolicyNsPrefixUriMap()
+	{
+		return rootPolicyNsPrefixUriMap;
+	}
+
+	/**
+	 * Get the Policies that the root policy may refer to
+	 *
+	 * @return Policies
+	 */
+	public List<PolicyWithNamespaces<Policy>> getPolicies()
+	{
+		return Collections.unmodifiableList(jaxbPolicies);
+	}
+
+	/**
+	 * Get the PolicySets that the root policy may refer to
+	 *
+	 * @return PolicySets
+	 */
+	public List<PolicyWithNamespaces<PolicySet>> getPolicySets()
+	{
+		return Collections.unmodifiableList(jaxbPolicySets);
+	}
+}
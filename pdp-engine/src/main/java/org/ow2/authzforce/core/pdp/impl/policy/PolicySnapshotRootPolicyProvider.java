@@ -0,0 +1,215 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Optional;
+
+import org.ow2.authzforce.core.pdp.api.EnvironmentProperties;
+import org.ow2.authzforce.core.pdp.api.XmlUtils.XmlnsFilteringParserFactory;
+import org.ow2.authzforce.core.pdp.api.combining.CombiningAlgRegistry;
+import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.policy.CloseableRefPolicyProvider;
+import org.ow2.authzforce.core.pdp.api.policy.RootPolicyProvider;
+import org.ow2.authzforce.core.pdp.api.policy.StaticRootPolicyProvider;
+import org.ow2.authzforce.core.pdp.api.policy.StaticTopLevelPolicyElementEvaluator;
+import org.springframework.util.ResourceUtils;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.IdReferenceType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Policy;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.PolicySet;
+
+/**
+ * Static root policy provider loading the root policy, and the policies it may refer to, from a {@link PolicySnapshot} instead of XML policy files. The policies referred to are resolved by an
+ * internal {@link CoreRefPolicyProvider}, therefore no other refPolicyProvider may be used with this one.
+ */
+public class PolicySnapshotRootPolicyProvider implements StaticRootPolicyProvider
+{
+	private static final IllegalArgumentException ILLEGAL_SNAPSHOT_ARG_EXCEPTION = new IllegalArgumentException("Undefined policy snapshot");
+	private static final IllegalArgumentException ILLEGAL_EXPRESSION_FACTORY_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined Expression factory");
+	private static final IllegalArgumentException ILLEGAL_COMBINING_ALG_REGISTRY_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined CombiningAlgorithm registry");
+
+	/**
+	 * Provider factory. The snapshot can only be loaded with the environment of the PDP loading it ({@link PolicySnapshot.Environment}), provided by the PDP engine configuration.
+	 *
+	 */
+	public static class Factory extends RootPolicyProvider.Factory<org.ow2.authzforce.core.xmlns.pdp.PolicySnapshotRootPolicyProvider>
+	{
+		private static final IllegalArgumentException ILLEGAL_JAXBCONF_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined RootPolicyProvider configuration (JAXB/XML)");
+
+		@Override
+		public Class<org.ow2.authzforce.core.xmlns.pdp.PolicySnapshotRootPolicyProvider> getJaxbClass()
+		{
+			return org.ow2.authzforce.core.xmlns.pdp.PolicySnapshotRootPolicyProvider.class;
+		}
+
+		/**
+		 * Not supported, since the environment of the PDP loading the snapshot is required to check that the snapshot is compatible with it.
+		 * 
+		 * @throws UnsupportedOperationException
+		 *             always
+		 */
+		@Override
+		public RootPolicyProvider getInstance(final org.ow2.authzforce.core.xmlns.pdp.PolicySnapshotRootPolicyProvider jaxbConf, final XmlnsFilteringParserFactory xacmlParserFactory,
+		        final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry, final Optional<CloseableRefPolicyProvider> refPolicyProvider,
+		        final EnvironmentProperties environmentProperties) throws UnsupportedOperationException
+		{
+			throw new UnsupportedOperationException("PDP environment required to load a policy snapshot");
+		}
+
+		/**
+		 * Creates an instance loading the snapshot in the environment of a PDP
+		 * 
+		 * @param jaxbConf
+		 *            (JAXB-bound) provider configuration
+		 * @param expressionFactory
+		 *            Expression factory for parsing Expressions used in the policies
+		 * @param combiningAlgRegistry
+		 *            registry of policy/rule combining algorithms
+		 * @param refPolicyProvider
+		 *            refPolicyProvider, must be empty (not supported)
+		 * @param environmentProperties
+		 *            PDP configuration environment properties (e.g. PARENT_DIR)
+		 * @param pdpEnvironment
+		 *            environment of the PDP loading the snapshot, which must match the one the snapshot was created in; the PDP's maximum PolicySet reference depth applies
+		 * @return provider
+		 * @throws IllegalArgumentException
+		 *             invalid configuration or snapshot, or snapshot created in a different environment
+		 */
+		public RootPolicyProvider getInstance(final org.ow2.authzforce.core.xmlns.pdp.PolicySnapshotRootPolicyProvider jaxbConf, final ExpressionFactory expressionFactory,
+		        final CombiningAlgRegistry combiningAlgRegistry, final Optional<CloseableRefPolicyProvider> refPolicyProvider, final EnvironmentProperties environmentProperties,
+		        final PolicySnapshot.Environment pdpEnvironment) throws IllegalArgumentException
+		{
+			if (jaxbConf == null)
+			{
+				throw ILLEGAL_JAXBCONF_ARGUMENT_EXCEPTION;
+			}
+
+			if (pdpEnvironment == null)
+			{
+				throw new IllegalArgumentException("Undefined PDP environment");
+			}
+
+			if (refPolicyProvider.isPresent())
+			{
+				throw new IllegalArgumentException("RefPolicyProvider not supported with " + PolicySnapshotRootPolicyProvider.class
+				        + ": the policy snapshot contains all the policies that the root policy may refer to");
+			}
+
+			final String snapshotLocation = environmentProperties == null ? jaxbConf.getSnapshotLocation() : environmentProperties.replacePlaceholders(jaxbConf.getSnapshotLocation());
+			final URL snapshotURL;
+			try
+			{
+				snapshotURL = ResourceUtils.getURL(snapshotLocation);
+			}
+			catch (final FileNotFoundException e)
+			{
+				throw new IllegalArgumentException("No policy snapshot (as Spring resource) found at the following URL: " + jaxbConf.getSnapshotLocation(), e);
+			}
+
+			final PolicySnapshot snapshot;
+			try
+			{
+				snapshot = PolicySnapshot.read(snapshotURL, pdpEnvironment);
+			}
+			catch (final IOException e)
+			{
+				throw new IllegalArgumentException("Failed to read policy snapshot: " + snapshotURL, e);
+			}
+
+			return new PolicySnapshotRootPolicyProvider(snapshot, pdpEnvironment.getMaxPolicySetRefDepth(), expressionFactory, combiningAlgRegistry);
+		}
+	}
+
+	private final Optional<CoreRefPolicyProvider> refPolicyProvider;
+	private final StaticTopLevelPolicyElementEvaluator rootPolicy;
+
+	/**
+	 * Creates instance with the root policy and the policies it may refer to from a snapshot, compiled once and for all
+	 *
+	 * @param snapshot
+	 *            policy snapshot
+	 * @param maxPolicySetRefDepth
+	 *            maximum allowed depth of PolicySet reference chains (of the PDP loading the snapshot); strictly negative if no limit
+	 * @param expressionFactory
+	 *            Expression factory for parsing Expressions used in the policies
+	 * @param combiningAlgRegistry
+	 *            registry of policy/rule combining algorithms
+	 * @throws IllegalArgumentException
+	 *             if one of the policies in the snapshot is invalid, the root PolicySetIdReference cannot be resolved, or a PolicySet reference chain exceeds {@code maxPolicySetRefDepth}
+	 */
+	public PolicySnapshotRootPolicyProvider(final PolicySnapshot snapshot, final int maxPolicySetRefDepth, final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry)
+	        throws IllegalArgumentException
+	{
+		if (snapshot == null)
+		{
+			throw ILLEGAL_SNAPSHOT_ARG_EXCEPTION;
+		}
+
+		if (expressionFactory == null)
+		{
+			throw ILLEGAL_EXPRESSION_FACTORY_ARGUMENT_EXCEPTION;
+		}
+
+		if (combiningAlgRegistry == null)
+		{
+			throw ILLEGAL_COMBINING_ALG_REGISTRY_ARGUMENT_EXCEPTION;
+		}
+
+		this.refPolicyProvider = snapshot.getPolicies().isEmpty() && snapshot.getPolicySets().isEmpty() ? Optional.empty()
+		        : Optional.of(CoreRefPolicyProvider.getInstance(snapshot.getPolicies(), snapshot.getPolicySets(), maxPolicySetRefDepth, expressionFactory, combiningAlgRegistry));
+
+		final Object rootPolicyElement = snapshot.getRootPolicyElement();
+		if (rootPolicyElement instanceof Policy)
+		{
+			this.rootPolicy = new CoreRootPolicyProvider((Policy) rootPolicyElement, snapshot.getRootPolicyNsPrefixUriMap(), expressionFactory, combiningAlgRegistry).getPolicy();
+		}
+		else if (rootPolicyElement instanceof PolicySet)
+		{
+			this.rootPolicy = new CoreRootPolicyProvider((PolicySet) rootPolicyElement, snapshot.getRootPolicyNsPrefixUriMap(), expressionFactory, combiningAlgRegistry,
+			        refPolicyProvider.map(provider -> provider)).getPolicy();
+		}
+		else
+		{
+			assert rootPolicyElement instanceof IdReferenceType;
+			if (!refPolicyProvider.isPresent())
+			{
+				throw new IllegalArgumentException("No policy in snapshot for the root PolicySetIdReference: " + ((IdReferenceType) rootPolicyElement).getValue());
+			}
+
+			this.rootPolicy = new CoreRefBasedRootPolicyProvider((IdReferenceType) rootPolicyElement, refPolicyProvider.get()).getPolicy();
+		}
+	}
+
+	@Override
+	public StaticTopLevelPolicyElementEvaluator getPolicy()
+	{
+		return rootPolicy;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if (refPolicyProvider.isPresent())
+		{
+			refPolicyProvider.get().close();
+		}
+	}
+}
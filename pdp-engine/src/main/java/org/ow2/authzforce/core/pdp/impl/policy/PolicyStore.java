@@ -0,0 +1,581 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.zip.CRC32;
+
+import org.ow2.authzforce.core.pdp.api.HashCollections;
+import org.ow2.authzforce.core.pdp.api.XmlUtils.XmlnsFilteringParserFactory;
+import org.ow2.authzforce.core.pdp.api.io.XacmlJaxbParsingUtils;
+import org.ow2.authzforce.core.pdp.api.policy.BasePrimaryPolicyMetadata;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyVersion;
+import org.ow2.authzforce.core.pdp.api.policy.PrimaryPolicyMetadata;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
+import org.ow2.authzforce.core.pdp.impl.DefaultEnvironmentProperties;
+import org.ow2.authzforce.core.pdp.impl.policy.CoreRefPolicyProvider.PolicyWithNamespaces;
+import org.ow2.authzforce.core.pdp.impl.policy.LazyRefPolicyProvider.IndexedPolicy;
+import org.ow2.authzforce.core.pdp.impl.policy.LazyRefPolicyProvider.IndexedPolicyRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.CountingInputStream;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Policy;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.PolicySet;
+
+/**
+ * Policy store: single file packing an index of policies by Policy(Set)Id and Version, and the policies themselves, already validated against the XACML schema and unmarshalled, for very large
+ * policy repositories. The store is memory-mapped when opened, and only the index is read then; a policy is decoded from the mapped file - without copying its bytes to the Java heap - only when
+ * needed, i.e. when first evaluated by the {@link PolicyStoreRefPolicyProvider}.
+ * <p>
+ * Format: magic number, format version, XACML model version, number of policies, maximum length of policy data, index length, index, and the policy data. The index gives, for each policy, its type, ID and version, the Policy(Set)IdReferences in it,
+ * the offset and length of the policy data, and a CRC32 checksum of the policy data, checked when the policy is decoded. The policy data is the Java serialization of the JAXB policy and namespace
+ * prefix-URI mappings (like {@link PolicySnapshot}). A store can only be opened by a PDP with the same XACML model version, else it must be created again
+ * ({@link #write(Collection, XmlnsFilteringParserFactory, File)}).
+ * <p>
+ * A store file is never modified in place: {@link #write(Collection, XmlnsFilteringParserFactory, File)} writes a new file and replaces the previous one atomically, therefore a PDP using the
+ * previous one keeps a consistent view of the policies until it reloads them.
+ */
+public final class PolicyStore
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(PolicyStore.class);
+
+	/*
+	 * "AZST"
+	 */
+	private static final int MAGIC_NUMBER = 0x415A5354;
+
+	private static final int FORMAT_VERSION = 1;
+
+	/*
+	 * Maximum size of a mapped region of the file (MappedByteBuffer capacity is an int). Policy data is mapped in segments of this size, each segment extended to the maximum policy data length
+	 * so that each policy is entirely in the segment where it starts.
+	 */
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	/*
+	 * Number of policies parsed in parallel before their data is written to the store (bounds the memory used by the serialized policies)
+	 */
+	private static final int WRITE_BATCH_SIZE = 256;
+
+	/*
+	 * Minimum length of an index entry (policy type, empty id and version, data offset, length and checksum, policy reference count), and of a policy reference in an entry (type, empty id, three
+	 * undefined version constraints), to validate the counts in the index before using them
+	 */
+	private static final int MIN_INDEX_ENTRY_LENGTH = 1 + 2 + 2 + 8 + 4 + 4 + 4;
+	private static final int MIN_INDEXED_POLICY_REF_LENGTH = 1 + 2 + 1 + 1 + 1;
+
+	private static final IllegalArgumentException ILLEGAL_STORE_FILE_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined policy store file");
+
+	/*
+	 * InputStream reading the bytes of a (mapped) ByteBuffer, without copying them
+	 */
+	private static final class ByteBufferInputStream extends InputStream
+	{
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(final ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read()
+		{
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+		{
+			if (len == 0)
+			{
+				return 0;
+			}
+
+			if (!buffer.hasRemaining())
+			{
+				return -1;
+			}
+
+			final int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public int available()
+		{
+			return buffer.remaining();
+		}
+	}
+
+	/*
+	 * Policy in the store, indexed but not decoded yet
+	 */
+	private static final class StoredPolicy extends IndexedPolicy
+	{
+		private final PolicyStore store;
+		private final long dataOffset;
+		private final int dataLength;
+		private final int dataChecksum;
+
+		private StoredPolicy(final PrimaryPolicyMetadata metadata, final List<IndexedPolicyRef> policyRefs, final PolicyStore store, final long dataOffset, final int dataLength,
+		        final int dataChecksum)
+		{
+			super(metadata, dataLength, policyRefs);
+			this.store = store;
+			this.dataOffset = dataOffset;
+			this.dataLength = dataLength;
+			this.dataChecksum = dataChecksum;
+		}
+
+		@Override
+		String getLocation()
+		{
+			return store.storeFile + " (offset " + dataOffset + ")";
+		}
+
+		@Override
+		PolicyWithNamespaces<?> load() throws IllegalArgumentException
+		{
+			return store.decode(this);
+		}
+	}
+
+	private static int checksum(final ByteBuffer data)
+	{
+		final CRC32 crc = new CRC32();
+		crc.update(data.duplicate());
+		return (int) crc.getValue();
+	}
+
+	private static void writeNullableUTF(final DataOutputStream out, final String value) throws IOException
+	{
+		out.writeBoolean(value != null);
+		if (value != null)
+		{
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readNullableUTF(final DataInputStream in) throws IOException
+	{
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	/*
+	 * Serializes a policy and its namespace prefix-URI mappings
+	 */
+	private static byte[] serialize(final IndexedPolicy indexedPolicy) throws IllegalArgumentException, IOException
+	{
+		final PolicyWithNamespaces<?> jaxbPolicyOrPolicySet = indexedPolicy.load();
+		final Object jaxbPolicyOrPolicySetObj = jaxbPolicyOrPolicySet.getPolicy();
+		final String policyId;
+		final String policyVersion;
+		if (jaxbPolicyOrPolicySetObj instanceof Policy)
+		{
+			policyId = ((Policy) jaxbPolicyOrPolicySetObj).getPolicyId();
+			policyVersion = ((Policy) jaxbPolicyOrPolicySetObj).getVersion();
+		}
+		else if (jaxbPolicyOrPolicySetObj instanceof PolicySet)
+		{
+			policyId = ((PolicySet) jaxbPolicyOrPolicySetObj).getPolicySetId();
+			policyVersion = ((PolicySet) jaxbPolicyOrPolicySetObj).getVersion();
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unexpected element found as root of the policy document: " + jaxbPolicyOrPolicySetObj.getClass().getSimpleName());
+		}
+
+		final PrimaryPolicyMetadata metadata = indexedPolicy.getMetadata();
+		if (!metadata.getId().equals(policyId) || !metadata.getVersion().equals(new PolicyVersion(policyVersion)))
+		{
+			throw new IllegalArgumentException("Policy document changed while creating the policy store: " + indexedPolicy.getLocation());
+		}
+
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		try (final ObjectOutputStream dataOut = new ObjectOutputStream(data))
+		{
+			dataOut.writeObject(jaxbPolicyOrPolicySetObj);
+			dataOut.writeObject(new HashMap<>(jaxbPolicyOrPolicySet.getNsPrefixUriMap()));
+		}
+		catch (final NotSerializableException e)
+		{
+			// e.g. DOM nodes in XML-typed AttributeValues
+			throw new IllegalArgumentException("Policy content not supported in policy store: " + e.getMessage() + " (" + indexedPolicy.getLocation() + ")", e);
+		}
+
+		return data.toByteArray();
+	}
+
+	private static void writeIndexEntry(final DataOutputStream indexOut, final IndexedPolicy indexedPolicy, final long dataOffset, final byte[] data) throws IOException
+	{
+		final PrimaryPolicyMetadata metadata = indexedPolicy.getMetadata();
+		indexOut.writeBoolean(metadata.getType() == TopLevelPolicyElementType.POLICY_SET);
+		indexOut.writeUTF(metadata.getId());
+		indexOut.writeUTF(metadata.getVersion().toString());
+		indexOut.writeLong(dataOffset);
+		indexOut.writeInt(data.length);
+		indexOut.writeInt(checksum(ByteBuffer.wrap(data)));
+		final List<IndexedPolicyRef> policyRefs = indexedPolicy.getPolicyRefs();
+		indexOut.writeInt(policyRefs.size());
+		for (final IndexedPolicyRef policyRef : policyRefs)
+		{
+			indexOut.writeBoolean(policyRef.getType() == TopLevelPolicyElementType.POLICY_SET);
+			indexOut.writeUTF(policyRef.getId());
+			writeNullableUTF(indexOut, policyRef.getVersion());
+			writeNullableUTF(indexOut, policyRef.getEarliestVersion());
+			writeNullableUTF(indexOut, policyRef.getLatestVersion());
+		}
+	}
+
+	/**
+	 * Creates a policy store from XACML policy documents, replacing any existing one atomically. The policies are validated against the XACML schema, but not compiled, i.e. errors such as unknown
+	 * functions are reported when the policies are evaluated.
+	 *
+	 * @param policyURLs
+	 *            locations of the Policy(Set) documents
+	 * @param xacmlParserFactory
+	 *            XACML parser factory for parsing the policy documents
+	 * @param storeFile
+	 *            policy store file to be created (replaced if it exists). The new store is written to a temporary file in the same directory, then moved atomically to {@code storeFile}.
+	 * @throws IllegalArgumentException
+	 *             if {@code policyURLs == null || policyURLs.length == 0 || xacmlParserFactory == null || storeFile == null}, or one of {@code policyURLs} is null or is not a valid XACML
+	 *             Policy(Set) document or conflicts with another because it has same Policy(Set)Id and Version.
+	 * @throws IOException
+	 *             error writing the store file, or the file system does not support atomic replacement of the store file
+	 */
+	public static void write(final Collection<URL> policyURLs, final XmlnsFilteringParserFactory xacmlParserFactory, final File storeFile) throws IllegalArgumentException, IOException
+	{
+		if (storeFile == null)
+		{
+			throw ILLEGAL_STORE_FILE_ARGUMENT_EXCEPTION;
+		}
+
+		final long startTimeNanos = System.nanoTime();
+		final List<IndexedPolicy> indexedPolicies = LazyRefPolicyProvider.index(policyURLs, xacmlParserFactory);
+		final Set<PrimaryPolicyMetadata> policyMetadata = new HashSet<>();
+		for (final IndexedPolicy indexedPolicy : indexedPolicies)
+		{
+			if (!policyMetadata.add(indexedPolicy.getMetadata()))
+			{
+				throw new IllegalArgumentException("Policy conflict: two policies with same " + indexedPolicy.getMetadata() + ", one of them at: " + indexedPolicy.getLocation());
+			}
+		}
+
+		final Path storePath = storeFile.getAbsoluteFile().toPath();
+		final Path storeDirectory = storePath.getParent();
+		final Path tmpDataPath = Files.createTempFile(storeDirectory, storePath.getFileName().toString(), ".data.tmp");
+		final Path tmpStorePath = Files.createTempFile(storeDirectory, storePath.getFileName().toString(), ".tmp");
+		try
+		{
+			/*
+			 * Policy data (in a temporary file) and index (in memory)
+			 */
+			final ByteArrayOutputStream index = new ByteArrayOutputStream();
+			long dataLength = 0;
+			int maxPolicyDataLength = 0;
+			try (final DataOutputStream indexOut = new DataOutputStream(index);
+			        final OutputStream dataOut = new BufferedOutputStream(Files.newOutputStream(tmpDataPath));
+			        final PolicyLoadingExecutor policyLoadingExecutor = new PolicyLoadingExecutor())
+			{
+				for (int batchStart = 0; batchStart < indexedPolicies.size(); batchStart += WRITE_BATCH_SIZE)
+				{
+					final List<IndexedPolicy> batch = indexedPolicies.subList(batchStart, Math.min(batchStart + WRITE_BATCH_SIZE, indexedPolicies.size()));
+					final List<Callable<byte[]>> serializationTasks = new ArrayList<>(batch.size());
+					for (final IndexedPolicy indexedPolicy : batch)
+					{
+						serializationTasks.add(() -> serialize(indexedPolicy));
+					}
+
+					final List<byte[]> batchData = policyLoadingExecutor.invokeAll(serializationTasks);
+					for (int i = 0; i < batch.size(); i++)
+					{
+						final byte[] policyData = batchData.get(i);
+						writeIndexEntry(indexOut, batch.get(i), dataLength, policyData);
+						dataOut.write(policyData);
+						dataLength += policyData.length;
+						maxPolicyDataLength = Math.max(maxPolicyDataLength, policyData.length);
+					}
+				}
+			}
+
+			/*
+			 * Store file: header, index, then policy data
+			 */
+			try (final FileChannel storeChannel = FileChannel.open(tmpStorePath, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+			{
+				final DataOutputStream headerOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(storeChannel)));
+				headerOut.writeInt(MAGIC_NUMBER);
+				headerOut.writeInt(FORMAT_VERSION);
+				headerOut.writeUTF(PolicySnapshot.getImplementationVersion(PolicySet.class));
+				headerOut.writeInt(indexedPolicies.size());
+				headerOut.writeInt(maxPolicyDataLength);
+				headerOut.writeInt(index.size());
+				index.writeTo(headerOut);
+				headerOut.flush();
+				try (final FileChannel dataChannel = FileChannel.open(tmpDataPath, StandardOpenOption.READ))
+				{
+					long transferred = 0;
+					while (transferred < dataLength)
+					{
+						transferred += dataChannel.transferTo(transferred, dataLength - transferred, storeChannel);
+					}
+				}
+
+				storeChannel.force(true);
+			}
+
+			Files.move(tmpStorePath, storePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			LOGGER.info("Policy store written: {} ({} policies, {} bytes of policy data) in {} ms", storePath, indexedPolicies.size(), dataLength,
+			        (System.nanoTime() - startTimeNanos) / 1000000);
+		}
+		finally
+		{
+			Files.deleteIfExists(tmpDataPath);
+			Files.deleteIfExists(tmpStorePath);
+		}
+	}
+
+	/**
+	 * Creates a policy store from XACML policy documents (see {@link #write(Collection, XmlnsFilteringParserFactory, File)}), given as locations like the 'policyLocation' elements of the
+	 * StaticRefPolicyProvider configuration, including file path patterns such as 'file:///path/to/policies/*.xml'. Placeholders in the locations are replaced with Java system properties or
+	 * environment variables.
+	 *
+	 * @param policyLocations
+	 *            locations of the Policy(Set) documents
+	 * @param enableXPath
+	 *            true iff XPath support is required by the policies (AttributeSelectors, xpathExpression datatype), i.e. the namespace contexts must be kept
+	 * @param storeFile
+	 *            policy store file to be created (replaced if it exists)
+	 * @throws IllegalArgumentException
+	 *             invalid policy location, or invalid Policy(Set) document
+	 * @throws IOException
+	 *             error writing the store file
+	 */
+	public static void write(final List<String> policyLocations, final boolean enableXPath, final File storeFile) throws IllegalArgumentException, IOException
+	{
+		if (policyLocations == null)
+		{
+			throw new IllegalArgumentException("Undefined policy locations");
+		}
+
+		write(CoreRefPolicyProvider.Factory.getPolicyURLs(policyLocations, new DefaultEnvironmentProperties()), XacmlJaxbParsingUtils.getXacmlParserFactory(enableXPath), storeFile);
+	}
+
+	/**
+	 * Opens a policy store: maps the file in memory and reads the index
+	 *
+	 * @param storeFile
+	 *            policy store file
+	 * @return store
+	 * @throws IllegalArgumentException
+	 *             invalid store, or created with a different version of the XACML model
+	 * @throws IOException
+	 *             error reading the store file
+	 */
+	public static PolicyStore open(final File storeFile) throws IllegalArgumentException, IOException
+	{
+		if (storeFile == null)
+		{
+			throw ILLEGAL_STORE_FILE_ARGUMENT_EXCEPTION;
+		}
+
+		/*
+		 * The mapped segments remain valid after the channel is closed (and after the file is replaced with a new version)
+		 */
+		try (final FileChannel storeChannel = FileChannel.open(storeFile.toPath(), StandardOpenOption.READ))
+		{
+			final CountingInputStream countingIn = new CountingInputStream(new BufferedInputStream(Channels.newInputStream(storeChannel)));
+			final DataInputStream headerIn = new DataInputStream(countingIn);
+			if (headerIn.readInt() != MAGIC_NUMBER)
+			{
+				throw new IllegalArgumentException("Not a policy store: " + storeFile);
+			}
+
+			final int formatVersion = headerIn.readInt();
+			if (formatVersion != FORMAT_VERSION)
+			{
+				throw new IllegalArgumentException("Unsupported format version (" + formatVersion + ") of policy store: " + storeFile + ". Expected: " + FORMAT_VERSION);
+			}
+
+			final String modelVersion = headerIn.readUTF();
+			if (!modelVersion.equals(PolicySnapshot.getImplementationVersion(PolicySet.class)))
+			{
+				throw new IllegalArgumentException("Policy store '" + storeFile + "' was created with a different version of the XACML model (" + modelVersion
+				        + "). Create the policy store again with this version of the PDP.");
+			}
+
+			final int policyCount = headerIn.readInt();
+			final int maxPolicyDataLength = headerIn.readInt();
+			final int indexLength = headerIn.readInt();
+			if (policyCount < 0 || maxPolicyDataLength < 0 || indexLength < 0 || policyCount > indexLength / MIN_INDEX_ENTRY_LENGTH)
+			{
+				throw new IllegalArgumentException("Corrupted policy store: " + storeFile);
+			}
+
+			final long dataStart = countingIn.getCount() + indexLength;
+			final long dataLength = storeChannel.size() - dataStart;
+			if (dataLength < 0)
+			{
+				throw new IllegalArgumentException("Corrupted policy store (truncated): " + storeFile);
+			}
+
+			final List<MappedByteBuffer> segments = new ArrayList<>();
+			for (long segmentStart = 0; segmentStart < dataLength; segmentStart += SEGMENT_SIZE)
+			{
+				segments.add(storeChannel.map(FileChannel.MapMode.READ_ONLY, dataStart + segmentStart, Math.min(SEGMENT_SIZE + maxPolicyDataLength, dataLength - segmentStart)));
+			}
+
+			final PolicyStore store = new PolicyStore(storeFile, segments);
+			final List<StoredPolicy> storedPolicies = new ArrayList<>(policyCount);
+			for (int i = 0; i < policyCount; i++)
+			{
+				final TopLevelPolicyElementType policyType = headerIn.readBoolean() ? TopLevelPolicyElementType.POLICY_SET : TopLevelPolicyElementType.POLICY;
+				final String policyId = headerIn.readUTF();
+				final PolicyVersion policyVersion = new PolicyVersion(headerIn.readUTF());
+				final long policyDataOffset = headerIn.readLong();
+				final int policyDataLength = headerIn.readInt();
+				final int policyDataChecksum = headerIn.readInt();
+				if (policyDataOffset < 0 || policyDataLength < 0 || policyDataLength > maxPolicyDataLength || policyDataOffset + policyDataLength > dataLength)
+				{
+					throw new IllegalArgumentException("Corrupted policy store (invalid index): " + storeFile);
+				}
+
+				final int policyRefCount = headerIn.readInt();
+				if (policyRefCount < 0 || policyRefCount > (dataStart - countingIn.getCount()) / MIN_INDEXED_POLICY_REF_LENGTH)
+				{
+					throw new IllegalArgumentException("Corrupted policy store (invalid index): " + storeFile);
+				}
+
+				final List<IndexedPolicyRef> policyRefs = new ArrayList<>(policyRefCount);
+				for (int j = 0; j < policyRefCount; j++)
+				{
+					final TopLevelPolicyElementType refPolicyType = headerIn.readBoolean() ? TopLevelPolicyElementType.POLICY_SET : TopLevelPolicyElementType.POLICY;
+					final String refPolicyId = headerIn.readUTF();
+					policyRefs.add(new IndexedPolicyRef(refPolicyType, refPolicyId, readNullableUTF(headerIn), readNullableUTF(headerIn), readNullableUTF(headerIn)));
+				}
+
+				storedPolicies.add(new StoredPolicy(new BasePrimaryPolicyMetadata(policyType, policyId, policyVersion), policyRefs.isEmpty() ? Collections.emptyList() : policyRefs, store,
+				        policyDataOffset, policyDataLength, policyDataChecksum));
+			}
+
+			if (countingIn.getCount() != dataStart)
+			{
+				throw new IllegalArgumentException("Corrupted policy store (invalid index length): " + storeFile);
+			}
+
+			store.policies = Collections.unmodifiableList(storedPolicies);
+			LOGGER.debug("Policy store opened: {} ({} policies)", storeFile, policyCount);
+			return store;
+		}
+	}
+
+	private final File storeFile;
+	private final List<MappedByteBuffer> segments;
+	// set once by open(...)
+	private List<StoredPolicy> policies = Collections.emptyList();
+
+	private PolicyStore(final File storeFile, final List<MappedByteBuffer> segments)
+	{
+		this.storeFile = storeFile;
+		this.segments = segments;
+	}
+
+	/*
+	 * Decodes a policy from the mapped file
+	 */
+	private PolicyWithNamespaces<?> decode(final StoredPolicy storedPolicy) throws IllegalArgumentException
+	{
+		// duplicate() to use position and limit independently from other threads
+		final ByteBuffer data = segments.get((int) (storedPolicy.dataOffset / SEGMENT_SIZE)).duplicate();
+		final int dataPosition = (int) (storedPolicy.dataOffset % SEGMENT_SIZE);
+		data.position(dataPosition);
+		data.limit(dataPosition + storedPolicy.dataLength);
+		if (checksum(data) != storedPolicy.dataChecksum)
+		{
+			throw new IllegalArgumentException("Corrupted policy store (checksum mismatch): " + storedPolicy.getLocation());
+		}
+
+		try (final ObjectInputStream dataIn = new PolicySnapshot.PolicyObjectInputStream(new ByteBufferInputStream(data)))
+		{
+			final Object jaxbPolicyOrPolicySet = dataIn.readObject();
+			if (!(jaxbPolicyOrPolicySet instanceof Policy || jaxbPolicyOrPolicySet instanceof PolicySet))
+			{
+				throw new IllegalArgumentException("Invalid policy in policy store: " + storedPolicy.getLocation());
+			}
+
+			@SuppressWarnings("unchecked")
+			final Map<String, String> nsPrefixUriMap = (Map<String, String>) dataIn.readObject();
+			return new PolicyWithNamespaces<>(jaxbPolicyOrPolicySet, HashCollections.newImmutableMap(nsPrefixUriMap));
+		}
+		catch (final IOException | ClassNotFoundException | ClassCastException e)
+		{
+			throw new IllegalArgumentException("Invalid policy in policy store: " + storedPolicy.getLocation(), e);
+		}
+	}
+
+	/**
+	 * Get the location of the store
+	 *
+	 * @return store file
+	 */
+	public File getFile()
+	{
+		return storeFile;
+	}
+
+	/*
+	 * Policies in the store, in the order they were written, not decoded yet
+	 */
+	List<? extends IndexedPolicy> getPolicies()
+	{
+		return policies;
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import org.ow2.authzforce.core.pdp.api.EnvironmentProperties;
+import org.ow2.authzforce.core.pdp.api.XmlUtils.XmlnsFilteringParserFactory;
+import org.ow2.authzforce.core.pdp.api.combining.CombiningAlgRegistry;
+import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.policy.CloseableRefPolicyProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * {@link LazyRefPolicyProvider} loading the policies from a (memory-mapped) {@link PolicyStore} instead of XML documents: the index of the store is read at initialization time, and a policy is
+ * decoded from the store and compiled the first time it is evaluated.
+ */
+public final class PolicyStoreRefPolicyProvider extends LazyRefPolicyProvider
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(PolicyStoreRefPolicyProvider.class);
+
+	private static final IllegalArgumentException ILLEGAL_POLICY_STORE_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined policy store");
+
+	/**
+	 * Module factory
+	 *
+	 */
+	public static class Factory extends CloseableRefPolicyProvider.Factory<org.ow2.authzforce.core.xmlns.pdp.PolicyStoreRefPolicyProvider>
+	{
+		private static final IllegalArgumentException NULL_CONF_ARGUMENT_EXCEPTION = new IllegalArgumentException("RefPolicyProvider configuration undefined");
+
+		@Override
+		public Class<org.ow2.authzforce.core.xmlns.pdp.PolicyStoreRefPolicyProvider> getJaxbClass()
+		{
+			return org.ow2.authzforce.core.xmlns.pdp.PolicyStoreRefPolicyProvider.class;
+		}
+
+		@Override
+		public CloseableRefPolicyProvider getInstance(final org.ow2.authzforce.core.xmlns.pdp.PolicyStoreRefPolicyProvider conf, final XmlnsFilteringParserFactory xacmlParserFactory,
+		        final int maxPolicySetRefDepth, final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry, final EnvironmentProperties environmentProperties)
+		{
+			if (conf == null)
+			{
+				throw NULL_CONF_ARGUMENT_EXCEPTION;
+			}
+
+			final String storeLocation = environmentProperties == null ? conf.getStoreLocation() : environmentProperties.replacePlaceholders(conf.getStoreLocation());
+			final File storeFile;
+			try
+			{
+				storeFile = ResourceUtils.getFile(storeLocation);
+			}
+			catch (final FileNotFoundException e)
+			{
+				throw new IllegalArgumentException("No policy store file found at the following location: " + conf.getStoreLocation(), e);
+			}
+
+			final PolicyStore store;
+			try
+			{
+				store = PolicyStore.open(storeFile);
+			}
+			catch (final IOException e)
+			{
+				throw new IllegalArgumentException("Failed to open policy store: " + storeFile, e);
+			}
+
+			return new PolicyStoreRefPolicyProvider(store, conf.isIgnoreOldVersions(), maxPolicySetRefDepth, LazyRefPolicyProvider.Factory.toLong(conf.getMaxCachedPolicies(), "maxCachedPolicies"),
+			        LazyRefPolicyProvider.Factory.toLong(conf.getMaxCachedPolicyWeight(), "maxCachedPolicyWeight"), expressionFactory, combiningAlgRegistry);
+		}
+	}
+
+	private final PolicyStore store;
+
+	/**
+	 * Creates an instance from a policy store, indexing the policies without decoding them
+	 *
+	 * @param store
+	 *            policy store
+	 * @param ignoreOldPolicyVersions
+	 *            for any given policy ID, ignore all versions except the last one if there are multiple versions of the policy
+	 * @param maxPolicySetRefDepth
+	 *            maximum allowed depth of PolicySet reference chain (via PolicySetIdReference): PolicySet1 -> PolicySet2 -> ...; a strictly negative value means no limit
+	 * @param maxCachedPolicies
+	 *            maximum number of compiled policies kept in memory, 0 meaning unlimited
+	 * @param maxCachedPolicyWeight
+	 *            maximum total weight of the compiled policies kept in memory, the weight of a policy being the size of its data in the store; 0 meaning unlimited
+	 * @param expressionFactory
+	 *            Expression factory for parsing Expressions used in the policy(set)
+	 * @param combiningAlgRegistry
+	 *            registry of policy/rule combining algorithms
+	 * @throws IllegalArgumentException
+	 *             if {@code store == null || expressionFactory == null || combiningAlgRegistry == null || maxCachedPolicies < 0 || maxCachedPolicyWeight < 0}, or two policies in the store have
+	 *             same Policy(Set)Id and Version (and {@code !ignoreOldPolicyVersions}).
+	 */
+	public PolicyStoreRefPolicyProvider(final PolicyStore store, final boolean ignoreOldPolicyVersions, final int maxPolicySetRefDepth, final long maxCachedPolicies,
+	        final long maxCachedPolicyWeight, final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry) throws IllegalArgumentException
+	{
+		/*
+		 * Like LazyRefPolicyProvider, the policies are compiled on demand, so the super constructor declares the policy loading deferred to the expression factory (the PDP keeps issuing the
+		 * standard environment attributes)
+		 */
+		super(checkNotNull(store).getPolicies(), ignoreOldPolicyVersions, maxPolicySetRefDepth, maxCachedPolicies, maxCachedPolicyWeight, expressionFactory, combiningAlgRegistry);
+		this.store = store;
+		LOGGER.info("{} policies indexed from policy store: {}", store.getPolicies().size(), store.getFile());
+	}
+
+	private static PolicyStore checkNotNull(final PolicyStore store) throws IllegalArgumentException
+	{
+		if (store == null)
+		{
+			throw ILLEGAL_POLICY_STORE_ARGUMENT_EXCEPTION;
+		}
+
+		return store;
+	}
+
+	/**
+	 * Get the policy store
+	 *
+	 * @return policy store
+	 */
+	public PolicyStore getStore()
+	{
+		return store;
+	}
+}
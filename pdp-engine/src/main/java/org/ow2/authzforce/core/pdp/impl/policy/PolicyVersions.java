@@ -21,10 +21,12 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.Optional;
 
 import org.ow2.authzforce.core.pdp.api.policy.PolicyVersion;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyVersionPattern;
 import org.ow2.authzforce.core.pdp.api.policy.PolicyVersionPatterns;
 
 import com.google.common.collect.ImmutableSortedMap;
@@ -68,7 +70,8 @@ public final class PolicyVersions<P> implements Iterable<Entry<PolicyVersion, P>
 	}
 
 	/**
-	 * Get latest policy version matching specific version patterns
+	 * Get latest policy version matching specific version patterns. If the Version pattern is a literal version (no wildcard), the version is looked up in O(log n) time; else if the
+	 * EarliestVersion/LatestVersion patterns are literal versions, only the versions between them are checked against the patterns.
 	 *
 	 * @param PolicyVersionPatterns
 	 *            version patterns
@@ -77,25 +80,60 @@ public final class PolicyVersions<P> implements Iterable<Entry<PolicyVersion, P>
 	public Entry<PolicyVersion, P> getLatest(final Optional<PolicyVersionPatterns> PolicyVersionPatterns) {
 		assert PolicyVersionPatterns != null;
 
-		// policiesByVersion is not empty -> at least one value
-		final Iterator<Entry<PolicyVersion, P>> versionPolicyPairsIterator = policiesByVersion.entrySet().iterator();
+		if (policiesByVersion.isEmpty())
+		{
+			return null;
+		}
+
 		if (!PolicyVersionPatterns.isPresent())
 		{
 			/*
 			 * Return the latest version which is the first element by design (TreeMap initialized with reverse order on version keys). See §5.10 of XACML core spec:
 			 * "In the case that more than one matching version can be obtained, then the most recent one SHOULD be used."
 			 */
-			return versionPolicyPairsIterator.next();
+			return policiesByVersion.firstEntry();
 		}
 
 		final PolicyVersionPatterns nonNullPolicyVersionPatterns = PolicyVersionPatterns.get();
+		final PolicyVersion literalVersion = toLiteral(nonNullPolicyVersionPatterns.getVersionPattern());
+		if (literalVersion != null)
+		{
+			/*
+			 * At most one version may match, the one equal to the literal version (ceilingEntry = same or next earlier version since sorted from latest to earliest)
+			 */
+			final Entry<PolicyVersion, P> versionPolicyPair = policiesByVersion.ceilingEntry(literalVersion);
+			return versionPolicyPair != null && versionPolicyPair.getKey().compareTo(literalVersion) == 0 && nonNullPolicyVersionPatterns.matchVersion(versionPolicyPair.getKey())
+			        && nonNullPolicyVersionPatterns.matchLatestVersion(versionPolicyPair.getKey()) && nonNullPolicyVersionPatterns.matchEarliestVersion(versionPolicyPair.getKey())
+			                ? versionPolicyPair : null;
+		}
+
+		/*
+		 * Skip the versions out of the [EarliestVersion, LatestVersion] interval if these are literal versions (tailMap = LatestVersion and earlier, headMap = EarliestVersion and later)
+		 */
+		NavigableMap<PolicyVersion, P> candidatePoliciesByVersion = policiesByVersion;
+		final PolicyVersion literalLatestVersion = toLiteral(nonNullPolicyVersionPatterns.getLatestVersionPattern());
+		if (literalLatestVersion != null)
+		{
+			candidatePoliciesByVersion = policiesByVersion.tailMap(literalLatestVersion, true);
+		}
+
+		final PolicyVersion literalEarliestVersion = toLiteral(nonNullPolicyVersionPatterns.getEarliestVersionPattern());
+		if (literalEarliestVersion != null)
+		{
+			if (literalLatestVersion != null && literalLatestVersion.compareTo(literalEarliestVersion) < 0)
+			{
+				// empty interval
+				return null;
+			}
+
+			candidatePoliciesByVersion = candidatePoliciesByVersion.headMap(literalEarliestVersion, true);
+		}
 
 		// constraints not null
 		// in the loop, go on until LatestVersion matched, then go on as long as
-		// EarliestVersion
-		// matched, if Version matched, return the result
+		// EarliestVersion matched, if Version matched, return the result
+		final Iterator<Entry<PolicyVersion, P>> versionPolicyPairsIterator = candidatePoliciesByVersion.entrySet().iterator();
 		boolean latestVersionMatched = false;
-		boolean earliestVersionMatched = false;
 		while (versionPolicyPairsIterator.hasNext())
 		{
 			final Entry<PolicyVersion, P> versionPolicyPair = versionPolicyPairsIterator.next();
@@ -115,21 +153,11 @@ public final class PolicyVersions<P> implements Iterable<Entry<PolicyVersion, P>
 			if (latestVersionMatched)
 			{
 				/*
-				 * If EarliestVersion already checked and not matched before, we would have returned null (see below). So at this point, EarliestVersion is either not checked yet or already matched.
-				 * So EarliestVersion no checked iff not already matched.
+				 * Versions ordered by latest first, so if EarliestVersion is not matched by this version, it cannot be matched by the next (earlier) versions either -> no match
 				 */
-				if (!earliestVersionMatched)
+				if (!nonNullPolicyVersionPatterns.matchEarliestVersion(version))
 				{
-					// EarliestVersion not checked yet
-					// check against EarliestVersion pattern
-					earliestVersionMatched = nonNullPolicyVersionPatterns.matchEarliestVersion(version);
-					/*
-					 * If still not matched, version cannot be in the [EarliestVersion, LatestVersion] interval. All next versions are earlier, so they cannot be either -> no match
-					 */
-					if (!earliestVersionMatched)
-					{
-						return null;
-					}
+					return null;
 				}
 
 				// EarliestVersion and LatestVersion matched.
@@ -148,6 +176,11 @@ public final class PolicyVersions<P> implements Iterable<Entry<PolicyVersion, P>
 		return null;
 	}
 
+	private static PolicyVersion toLiteral(final Optional<PolicyVersionPattern> versionPattern)
+	{
+		return versionPattern.isPresent() ? versionPattern.get().toLiteral() : null;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public Iterator<Entry<PolicyVersion, P>> iterator() {
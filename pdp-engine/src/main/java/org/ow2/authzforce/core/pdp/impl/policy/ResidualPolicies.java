@@ -0,0 +1,305 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.policy;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.ow2.authzforce.core.pdp.api.Decidable;
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.api.combining.CombiningAlg;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyEvaluator;
+import org.ow2.authzforce.core.pdp.impl.combining.StandardCombiningAlgorithm;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualEvaluationContext;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualPolicy;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualPredicate;
+import org.ow2.authzforce.core.pdp.impl.rule.RuleEvaluator;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.EffectType;
+
+/**
+ * Partial evaluation of policy elements into {@link ResidualPolicy}s. Each element is first evaluated as a whole: if the result does not depend on the unknown attributes, it is the exact decision.
+ * Else Rules and Policies (without VariableDefinitions) are evaluated partially, element by element, using the structure of their Targets, Conditions and combining algorithms; any other element is
+ * opaque.
+ */
+final class ResidualPolicies
+{
+	/**
+	 * Simplification of the combined elements of a standard combining algorithm that evaluates them sequentially until one returns a final decision
+	 */
+	private static final class CombiningSimplification
+	{
+		private final Set<DecisionType> finalDecisions;
+
+		/*
+		 * True iff a final decision overrides the decisions of all the other combined elements (*-overrides, *-unless-* algorithms), else (first-applicable) it only makes the next ones irrelevant
+		 */
+		private final boolean isFinalDecisionOverriding;
+
+		/*
+		 * True iff the non-final decisions have no effect on the result (*-unless-* algorithms)
+		 */
+		private final boolean isNonFinalDecisionIgnored;
+
+		private final ResidualPolicy.Decision noElementResult;
+
+		private CombiningSimplification(final Set<DecisionType> finalDecisions, final boolean isFinalDecisionOverriding, final boolean isNonFinalDecisionIgnored,
+		        final ResidualPolicy.Decision noElementResult)
+		{
+			this.finalDecisions = finalDecisions;
+			this.isFinalDecisionOverriding = isFinalDecisionOverriding;
+			this.isNonFinalDecisionIgnored = isNonFinalDecisionIgnored;
+			this.noElementResult = noElementResult;
+		}
+	}
+
+	private static final CombiningSimplification DENY_OVERRIDES_SIMPLIFICATION = new CombiningSimplification(EnumSet.of(DecisionType.DENY), true, false, ResidualPolicy.NOT_APPLICABLE);
+	private static final CombiningSimplification PERMIT_OVERRIDES_SIMPLIFICATION = new CombiningSimplification(EnumSet.of(DecisionType.PERMIT), true, false, ResidualPolicy.NOT_APPLICABLE);
+	private static final CombiningSimplification DENY_UNLESS_PERMIT_SIMPLIFICATION = new CombiningSimplification(EnumSet.of(DecisionType.PERMIT), true, true, ResidualPolicy.DENY);
+	private static final CombiningSimplification PERMIT_UNLESS_DENY_SIMPLIFICATION = new CombiningSimplification(EnumSet.of(DecisionType.DENY), true, true, ResidualPolicy.PERMIT);
+	private static final CombiningSimplification FIRST_APPLICABLE_SIMPLIFICATION = new CombiningSimplification(EnumSet.of(DecisionType.PERMIT, DecisionType.DENY, DecisionType.INDETERMINATE),
+	        false, false, ResidualPolicy.NOT_APPLICABLE);
+
+	/**
+	 * Gets the simplification of the combined elements of a combining algorithm
+	 *
+	 * @return simplification; null if none (legacy or only-one-applicable algorithms, non-standard implementations)
+	 */
+	private static CombiningSimplification getSimplification(final CombiningAlg<?> alg)
+	{
+		if (!StandardCombiningAlgorithm.isStandard(alg))
+		{
+			return null;
+		}
+
+		switch (StandardCombiningAlgorithm.getInstance(alg.getId()))
+		{
+			case XACML_3_0_POLICY_COMBINING_DENY_OVERRIDES:
+			case XACML_3_0_RULE_COMBINING_DENY_OVERRIDES:
+			case XACML_3_0_POLICY_COMBINING_ORDERED_DENY_OVERRIDES:
+			case XACML_3_0_RULE_COMBINING_ORDERED_DENY_OVERRIDES:
+				return DENY_OVERRIDES_SIMPLIFICATION;
+			case XACML_3_0_POLICY_COMBINING_PERMIT_OVERRIDES:
+			case XACML_3_0_RULE_COMBINING_PERMIT_OVERRIDES:
+			case XACML_3_0_POLICY_COMBINING_ORDERED_PERMIT_OVERRIDES:
+			case XACML_3_0_RULE_COMBINING_ORDERED_PERMIT_OVERRIDES:
+				return PERMIT_OVERRIDES_SIMPLIFICATION;
+			case XACML_3_0_POLICY_COMBINING_DENY_UNLESS_PERMIT:
+			case XACML_3_0_RULE_COMBINING_DENY_UNLESS_PERMIT:
+				return DENY_UNLESS_PERMIT_SIMPLIFICATION;
+			case XACML_3_0_POLICY_COMBINING_PERMIT_UNLESS_DENY:
+			case XACML_3_0_RULE_COMBINING_PERMIT_UNLESS_DENY:
+				return PERMIT_UNLESS_DENY_SIMPLIFICATION;
+			case XACML_1_0_POLICY_COMBINING_FIRST_APPLICABLE:
+			case XACML_1_0_RULE_COMBINING_FIRST_APPLICABLE:
+				return FIRST_APPLICABLE_SIMPLIFICATION;
+			default:
+				return null;
+		}
+	}
+
+	private ResidualPolicies()
+	{
+		// prevent instantiation
+	}
+
+	/**
+	 * Evaluates a policy element partially
+	 *
+	 * @param element
+	 *            Rule or Policy(Set) evaluator
+	 * @param context
+	 *            partial request context
+	 * @return residual policy
+	 */
+	static ResidualPolicy evaluatePartially(final Decidable element, final ResidualEvaluationContext context)
+	{
+		return evaluatePartially(element, false, context);
+	}
+
+	/**
+	 * Evaluates a policy element partially, with option to skip the Target of a Policy(Set) (e.g. root policy already found applicable by the root policy provider)
+	 */
+	static ResidualPolicy evaluatePartially(final Decidable element, final boolean skipTarget, final ResidualEvaluationContext context)
+	{
+		final boolean isPolicy = element instanceof PolicyEvaluator;
+		final int previousUnknownAttributeRequestCount = context.getUnknownAttributeRequestCount();
+		final DecisionResult result = isPolicy ? ((PolicyEvaluator) element).evaluate(context, skipTarget) : element.evaluate(context);
+		if (context.getUnknownAttributeRequestCount() == previousUnknownAttributeRequestCount)
+		{
+			// independent from the unknown attributes
+			return ResidualPolicy.valueOf(result.getDecision(), result.getExtendedIndeterminate());
+		}
+
+		if (element instanceof RuleEvaluator)
+		{
+			return evaluateRulePartially((RuleEvaluator) element, context);
+		}
+
+		if (isPolicy && element instanceof DecisionDiagramCompilable && !((DecisionDiagramCompilable) element).hasLocalVariables())
+		{
+			return evaluatePolicyPartially((PolicyEvaluator) element, (DecisionDiagramCompilable) element, skipTarget, context);
+		}
+
+		return new ResidualPolicy.Opaque(element);
+	}
+
+	private static ResidualPolicy evaluateRulePartially(final RuleEvaluator rule, final ResidualEvaluationContext context)
+	{
+		final ResidualPredicate target = rule.getTargetEvaluator().evaluatePartially(context);
+		if (target == ResidualPredicate.FALSE)
+		{
+			return ResidualPolicy.NOT_APPLICABLE;
+		}
+
+		final boolean isPermit = rule.getEffect() == EffectType.PERMIT;
+		final ResidualPolicy.Decision indeterminate = isPermit ? ResidualPolicy.INDETERMINATE_P : ResidualPolicy.INDETERMINATE_D;
+		if (target == ResidualPredicate.INDETERMINATE)
+		{
+			return indeterminate;
+		}
+
+		final ResidualPredicate condition = rule.getConditionEvaluator().evaluatePartially(context);
+		if (target == ResidualPredicate.TRUE)
+		{
+			if (condition == ResidualPredicate.TRUE)
+			{
+				// PEP actions ignored
+				return isPermit ? ResidualPolicy.PERMIT : ResidualPolicy.DENY;
+			}
+
+			if (condition == ResidualPredicate.FALSE)
+			{
+				return ResidualPolicy.NOT_APPLICABLE;
+			}
+
+			if (condition == ResidualPredicate.INDETERMINATE)
+			{
+				return indeterminate;
+			}
+		}
+
+		return new ResidualPolicy.Rule(rule.getRuleId(), rule.getEffect(), target, condition);
+	}
+
+	/*
+	 * Result of a Policy(Set) whose Target is Indeterminate, from the result of the combining algorithm (XACML 3.0 §7.14)
+	 */
+	private static ResidualPolicy.Decision getIndeterminateTargetResult(final ResidualPolicy.Decision combiningAlgResult)
+	{
+		switch (combiningAlgResult.getDecision())
+		{
+			case PERMIT:
+				return ResidualPolicy.INDETERMINATE_P;
+			case DENY:
+				return ResidualPolicy.INDETERMINATE_D;
+			default:
+				return combiningAlgResult;
+		}
+	}
+
+	private static ResidualPolicy evaluatePolicyPartially(final PolicyEvaluator policy, final DecisionDiagramCompilable compilable, final boolean skipTarget,
+	        final ResidualEvaluationContext context)
+	{
+		final ResidualPredicate target = skipTarget ? ResidualPredicate.TRUE : compilable.getTargetEvaluator().evaluatePartially(context);
+		if (target == ResidualPredicate.FALSE)
+		{
+			return ResidualPolicy.NOT_APPLICABLE;
+		}
+
+		final CombiningAlg<?> combiningAlg = compilable.getCombiningAlg();
+		final CombiningSimplification simplification = getSimplification(combiningAlg);
+		final List<? extends Decidable> combinedElements = compilable.getCombinedElements();
+		final List<ResidualPolicy> residualElements = new ArrayList<>(combinedElements.size());
+		final Iterator<? extends Decidable> combinedElementIterator = combinedElements.iterator();
+		boolean isFinalDecisionFound = false;
+		while (!isFinalDecisionFound && combinedElementIterator.hasNext())
+		{
+			final ResidualPolicy residualElement = evaluatePartially(combinedElementIterator.next(), context);
+			if (simplification == null || !(residualElement instanceof ResidualPolicy.Decision))
+			{
+				residualElements.add(residualElement);
+				continue;
+			}
+
+			final DecisionType decision = ((ResidualPolicy.Decision) residualElement).getDecision();
+			if (!simplification.finalDecisions.contains(decision))
+			{
+				if (decision != DecisionType.NOT_APPLICABLE && !simplification.isNonFinalDecisionIgnored)
+				{
+					residualElements.add(residualElement);
+				}
+
+				continue;
+			}
+
+			/*
+			 * Final decision: the next elements are irrelevant
+			 */
+			if (simplification.isFinalDecisionOverriding)
+			{
+				// so are the previous ones
+				residualElements.clear();
+			}
+
+			residualElements.add(residualElement);
+			isFinalDecisionFound = true;
+		}
+
+		final ResidualPolicy.Decision combiningAlgResult;
+		if (simplification != null && residualElements.isEmpty())
+		{
+			combiningAlgResult = simplification.noElementResult;
+		}
+		else if (simplification != null && residualElements.size() == 1 && residualElements.get(0) instanceof ResidualPolicy.Decision)
+		{
+			/*
+			 * A single decision (not ignored) is the result of all the simplified algorithms
+			 */
+			combiningAlgResult = (ResidualPolicy.Decision) residualElements.get(0);
+		}
+		else
+		{
+			combiningAlgResult = null;
+		}
+
+		if (combiningAlgResult != null)
+		{
+			if (target == ResidualPredicate.TRUE)
+			{
+				return combiningAlgResult;
+			}
+
+			if (target == ResidualPredicate.INDETERMINATE)
+			{
+				return getIndeterminateTargetResult(combiningAlgResult);
+			}
+
+			if (combiningAlgResult == ResidualPolicy.NOT_APPLICABLE)
+			{
+				return ResidualPolicy.NOT_APPLICABLE;
+			}
+		}
+
+		return new ResidualPolicy.Policy(policy.getPolicyElementType(), policy.getPolicyId(), target, combiningAlg.getId(), residualElements);
+	}
+}
@@ -21,6 +21,8 @@ import java.io.Closeable;
 
 import org.ow2.authzforce.core.pdp.api.DecisionResult;
 import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualEvaluationContext;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualPolicy;
 
 /**
  * Root policy evaluator, used by the PDP to find and evaluate the root (a.k.a. top-level) policy matching a given request context.
@@ -45,6 +47,16 @@ public interface RootPolicyEvaluator extends Closeable
 	 */
 	DecisionResult findAndEvaluate(EvaluationContext context);
 
+	/**
+	 * Same as {@link #findAndEvaluate(EvaluationContext)} but with some attribute categories unknown: evaluates everything that does not depend on the unknown attributes, and returns what remains
+	 * of the policy.
+	 *
+	 * @param context
+	 *            the representation of the partial request data
+	 * @return residual policy; a {@link ResidualPolicy.Decision} if the result does not depend on the unknown attributes
+	 */
+	ResidualPolicy findAndEvaluatePartially(ResidualEvaluationContext context);
+
 	/**
 	 * Get the statically applicable policies for this evaluator, i.e. the root policy and (directly/indirectly) referenced policies, only if statically resolved
 	 *
@@ -18,16 +18,30 @@
 package org.ow2.authzforce.core.pdp.impl.policy;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.ow2.authzforce.core.pdp.api.DecisionResult;
 import org.ow2.authzforce.core.pdp.api.DecisionResults;
 import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
 import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.policy.CloseableRefPolicyProvider;
 import org.ow2.authzforce.core.pdp.api.policy.PolicyEvaluator;
 import org.ow2.authzforce.core.pdp.api.policy.RootPolicyProvider;
+import org.ow2.authzforce.core.pdp.api.policy.StaticRefPolicyProvider;
 import org.ow2.authzforce.core.pdp.api.policy.StaticRootPolicyProvider;
 import org.ow2.authzforce.core.pdp.api.policy.StaticTopLevelPolicyElementEvaluator;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualEvaluationContext;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualPolicy;
 import org.ow2.authzforce.xacml.identifiers.XacmlStatusCode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -125,6 +139,41 @@ public final class RootPolicyEvaluators
 			return policy.evaluate(context, true);
 		}
 
+		@Override
+		public ResidualPolicy findAndEvaluatePartially(final ResidualEvaluationContext context)
+		{
+			final int previousUnknownAttributeRequestCount = context.getUnknownAttributeRequestCount();
+			final PolicyEvaluator policy;
+			try
+			{
+				policy = rootPolicyProvider.getPolicy(context);
+			}
+			catch (final IndeterminateEvaluationException | IllegalArgumentException e)
+			{
+				if (context.getUnknownAttributeRequestCount() != previousUnknownAttributeRequestCount)
+				{
+					// the root policy depends on the unknown attributes
+					return new ResidualPolicy.Opaque(this::findAndEvaluate);
+				}
+
+				LOGGER.info("Root policy Provider {} could not find an applicable root policy to evaluate partially", rootPolicyProvider, e);
+				return ResidualPolicy.INDETERMINATE_DP;
+			}
+
+			if (context.getUnknownAttributeRequestCount() != previousUnknownAttributeRequestCount)
+			{
+				// the root policy (or its absence) depends on the unknown attributes
+				return new ResidualPolicy.Opaque(this::findAndEvaluate);
+			}
+
+			if (policy == null)
+			{
+				return ResidualPolicy.NOT_APPLICABLE;
+			}
+
+			return ResidualPolicies.evaluatePartially(policy, true, context);
+		}
+
 		@Override
 		public FlattenedPolicyTree getStaticApplicablePolicies()
 		{
@@ -143,13 +192,30 @@ public final class RootPolicyEvaluators
 		 *             error closing the evaluator's policy provider responsible for finding the policy in {@link #findAndEvaluate(EvaluationContext)}
 		 */
 		public RootPolicyEvaluator toStatic() throws IOException
+		{
+			return toStatic(0);
+		}
+
+		/**
+		 * Same as {@link #toStatic()}, with optional compilation of the static root policy tree into a decision diagram (multi-valued decision diagram whose nodes test the attribute predicates of
+		 * the policies' Targets), used to evaluate the requests, each distinct predicate at most once. The parts of the policy tree that cannot be compiled (Rule Conditions, obligations/advice,
+		 * AttributeSelectors, non-standard functions or combining algorithms...) are evaluated by the policy evaluators from the diagram, and so is the whole policy tree when an error
+		 * (Indeterminate) occurs or when the request asks for the list of applicable policies.
+		 * 
+		 * @param decisionDiagramMaxNodeCount
+		 *            maximum number of nodes of the decision diagram; if not positive, the policy tree is not compiled. If the compiled policy tree requires more nodes, it is not compiled either.
+		 * @return static view of this policy evaluator (see {@link #toStatic()})
+		 * @throws IOException
+		 *             error closing the evaluator's policy provider responsible for finding the policy in {@link #findAndEvaluate(EvaluationContext)}
+		 */
+		public RootPolicyEvaluator toStatic(final int decisionDiagramMaxNodeCount) throws IOException
 		{
 			/*
 			 * If staticView not yet initialized and root policy provider is actually static (in which case staticView can be initialized)
 			 */
 			if (staticView == null && isRootPolicyProviderStatic)
 			{
-				staticView = new StaticView((StaticRootPolicyProvider) rootPolicyProvider, this.expressionFactory);
+				staticView = new StaticView((StaticRootPolicyProvider) rootPolicyProvider, this.expressionFactory, decisionDiagramMaxNodeCount);
 			}
 
 			return staticView;
@@ -157,6 +223,420 @@ public final class RootPolicyEvaluators
 
 	}
 
+	/**
+	 * Root policy evaluator with hot reload: the root policy is resolved once and for all like in the static view (see {@link Base#toStatic(int)}), but it is reloaded in the background whenever the
+	 * policy files change (or on demand, see {@link #reload()}). The new policies are parsed and compiled into a new static view (snapshot) which replaces the current one atomically once ready, so
+	 * that the requests being evaluated finish with the previous snapshot, and the requests are not blocked during the reload. If the reload fails (invalid policy...), the current snapshot is kept.
+	 * The outcome of the last reload (duration, error) is given by {@link #getStatistics()}.
+	 * <p>
+	 * The policies are also reloaded when notified of policy changes by the refPolicyProvider of the current snapshot if it is an {@link ObservableRefPolicyProvider} (e.g. polling a policy
+	 * database): this evaluator registers itself as {@link ObservableRefPolicyProvider.ChangeListener} of the initial refPolicyProvider, then of the one loaded on each reload.
+	 * <p>
+	 * The policies of all the snapshots are parsed by the same expression factory, closed with this evaluator.
+	 */
+	public static final class Reloadable implements RootPolicyEvaluator, ObservableRefPolicyProvider.ChangeListener
+	{
+		private static final Logger LOGGER = LoggerFactory.getLogger(Reloadable.class);
+
+		private static final AtomicInteger RELOADER_COUNTER = new AtomicInteger();
+
+		/**
+		 * Policy providers loaded by a {@link Loader}
+		 */
+		public static final class LoadedPolicyProviders
+		{
+			private final RootPolicyProvider rootPolicyProvider;
+			private final Optional<CloseableRefPolicyProvider> refPolicyProvider;
+
+			/**
+			 * Creates the result of a policy (re)load
+			 * 
+			 * @param rootPolicyProvider
+			 *            new root policy provider, expected to be static ({@link StaticRootPolicyProvider})
+			 * @param refPolicyProvider
+			 *            refPolicyProvider used by {@code rootPolicyProvider} to resolve policy references, if any
+			 * @throws IllegalArgumentException
+			 *             if {@code rootPolicyProvider == null || refPolicyProvider == null}
+			 */
+			public LoadedPolicyProviders(final RootPolicyProvider rootPolicyProvider, final Optional<CloseableRefPolicyProvider> refPolicyProvider) throws IllegalArgumentException
+			{
+				if (rootPolicyProvider == null || refPolicyProvider == null)
+				{
+					throw new IllegalArgumentException("Undefined rootPolicyProvider or refPolicyProvider");
+				}
+
+				this.rootPolicyProvider = rootPolicyProvider;
+				this.refPolicyProvider = refPolicyProvider;
+			}
+
+			/**
+			 * Gets the root policy provider
+			 * 
+			 * @return root policy provider
+			 */
+			public RootPolicyProvider getRootPolicyProvider()
+			{
+				return rootPolicyProvider;
+			}
+
+			/**
+			 * Gets the refPolicyProvider used by the root policy provider
+			 * 
+			 * @return refPolicyProvider; empty if none
+			 */
+			public Optional<CloseableRefPolicyProvider> getRefPolicyProvider()
+			{
+				return refPolicyProvider;
+			}
+		}
+
+		/**
+		 * Loader of the policy providers, e.g. parsing the policy files again
+		 */
+		@FunctionalInterface
+		public interface Loader
+		{
+			/**
+			 * Loads new policy providers
+			 * 
+			 * @param previousRefPolicyProvider
+			 *            refPolicyProvider of the current snapshot, if any, whose unchanged policies may be reused (incremental reload). It is still used by the current snapshot, so it must not be
+			 *            closed by the loader.
+			 * @return new root policy provider and the refPolicyProvider it uses. If the loading fails, the loader closes the refPolicyProvider it has created, if any.
+			 * @throws IllegalArgumentException
+			 *             invalid policies
+			 * @throws IOException
+			 *             error loading the policies
+			 */
+			LoadedPolicyProviders load(Optional<CloseableRefPolicyProvider> previousRefPolicyProvider) throws IllegalArgumentException, IOException;
+		}
+
+		/**
+		 * Statistics on the reloads (immutable)
+		 */
+		public static final class Statistics
+		{
+			private static final Statistics INITIAL = new Statistics(0, 0, Duration.ZERO, Optional.empty());
+
+			private final long successCount;
+			private final long failureCount;
+			private final Duration lastReloadDuration;
+			private final Optional<Exception> lastReloadError;
+
+			private Statistics(final long successCount, final long failureCount, final Duration lastReloadDuration, final Optional<Exception> lastReloadError)
+			{
+				this.successCount = successCount;
+				this.failureCount = failureCount;
+				this.lastReloadDuration = lastReloadDuration;
+				this.lastReloadError = lastReloadError;
+			}
+
+			/**
+			 * Gets the number of successful reloads, i.e. the number of snapshots replaced since initialization
+			 * 
+			 * @return number of successful reloads
+			 */
+			public long getSuccessCount()
+			{
+				return successCount;
+			}
+
+			/**
+			 * Gets the number of failed reloads, after which the current snapshot was kept
+			 * 
+			 * @return number of failed reloads
+			 */
+			public long getFailureCount()
+			{
+				return failureCount;
+			}
+
+			/**
+			 * Gets the duration of the last reload (successful or not), from the start of the policy loading to the snapshot replacement (or failure)
+			 * 
+			 * @return duration of the last reload; {@link Duration#ZERO} if no reload yet
+			 */
+			public Duration getLastReloadDuration()
+			{
+				return lastReloadDuration;
+			}
+
+			/**
+			 * Gets the error of the last reload, if it failed
+			 * 
+			 * @return the error that made the last reload fail; empty if it succeeded or if no reload yet
+			 */
+			public Optional<Exception> getLastReloadError()
+			{
+				return lastReloadError;
+			}
+
+			@Override
+			public String toString()
+			{
+				return "Statistics [successCount=" + successCount + ", failureCount=" + failureCount + ", lastReloadDuration=" + lastReloadDuration + ", lastReloadError=" + lastReloadError + "]";
+			}
+		}
+
+		private final ExpressionFactory expressionFactory;
+		private final Loader rootPolicyProviderLoader;
+		private final int decisionDiagramMaxNodeCount;
+
+		private final AtomicReference<StaticView> currentSnapshot;
+
+		/*
+		 * Held during a reload
+		 */
+		private final Object reloadLock = new Object();
+
+		/*
+		 * refPolicyProvider of the initial snapshot, owned by the caller (e.g. the PDP engine configuration, possibly shared by other PDP engines); and the one of the current snapshot (guarded by
+		 * reloadLock), owned by this evaluator if it is not the initial one
+		 */
+		private final Optional<CloseableRefPolicyProvider> initialRefPolicyProvider;
+		private Optional<CloseableRefPolicyProvider> currentRefPolicyProvider;
+		private volatile Statistics statistics = Statistics.INITIAL;
+
+		/*
+		 * Reloads are run by the reloadExecutor after a quiet period (reloadDelayMillis) following the last file change, so that a batch of file changes causes a single reload
+		 */
+		private final long reloadDelayMillis;
+		private final ScheduledExecutorService reloadExecutor;
+		private ScheduledFuture<?> pendingReload = null;
+
+		private final PolicyLocationWatcher policyLocationWatcher;
+
+		/**
+		 * Creates a root policy evaluator with hot reload
+		 * 
+		 * @param xacmlExpressionFactory
+		 *            XACML expression factory used to parse the policies (initial and reloaded ones)
+		 * @param initialRootPolicyProvider
+		 *            root policy provider of the initial snapshot, closed once the root policy is resolved
+		 * @param initialRefPolicyProvider
+		 *            refPolicyProvider used by {@code initialRootPolicyProvider}, if any. It is not closed by this evaluator. If it is an {@link ObservableRefPolicyProvider}, this evaluator is
+		 *            registered as listener of its policy changes until the first successful reload.
+		 * @param rootPolicyProviderLoader
+		 *            loader of the policy providers of the next snapshots
+		 * @param policyLocations
+		 *            locations of the policy files to be watched (see {@link CoreRootPolicyProvider} and {@link CoreRefPolicyProvider} for the supported locations and file path patterns); the
+		 *            policies are reloaded whenever one of these files is created, modified or deleted
+		 * @param reloadDelayMillis
+		 *            delay (in milliseconds) between the last change of the policy files and the reload, to wait for the end of a batch of changes
+		 * @param decisionDiagramMaxNodeCount
+		 *            maximum number of nodes of the decision diagram of each snapshot (see {@link Base#toStatic(int)})
+		 * @throws IllegalArgumentException
+		 *             if {@code xacmlExpressionFactory == null || initialRefPolicyProvider == null || rootPolicyProviderLoader == null}, or {@code initialRootPolicyProvider} is not static
+		 * @throws IOException
+		 *             error closing {@code initialRootPolicyProvider} or starting the watch of the policy files
+		 */
+		public Reloadable(final ExpressionFactory xacmlExpressionFactory, final RootPolicyProvider initialRootPolicyProvider, final Optional<CloseableRefPolicyProvider> initialRefPolicyProvider,
+		        final Loader rootPolicyProviderLoader, final Collection<String> policyLocations, final long reloadDelayMillis, final int decisionDiagramMaxNodeCount)
+		        throws IllegalArgumentException, IOException
+		{
+			if (xacmlExpressionFactory == null)
+			{
+				throw Base.NULL_EXPRESSIONFACTORY_ARGUMENT_EXCEPTION;
+			}
+
+			if (initialRefPolicyProvider == null)
+			{
+				throw new IllegalArgumentException("Undefined initial refPolicyProvider (initialRefPolicyProvider)");
+			}
+
+			if (rootPolicyProviderLoader == null)
+			{
+				throw new IllegalArgumentException("Undefined Root Policy Provider loader (rootPolicyProviderLoader)");
+			}
+
+			this.expressionFactory = xacmlExpressionFactory;
+			this.rootPolicyProviderLoader = rootPolicyProviderLoader;
+			this.decisionDiagramMaxNodeCount = decisionDiagramMaxNodeCount;
+			this.currentSnapshot = new AtomicReference<>(newSnapshot(initialRootPolicyProvider));
+			this.reloadDelayMillis = reloadDelayMillis;
+			this.reloadExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				final Thread thread = new Thread(runnable, "authzforce-policy-reloader-" + RELOADER_COUNTER.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.policyLocationWatcher = new PolicyLocationWatcher(policyLocations, this::scheduleReload);
+			this.initialRefPolicyProvider = initialRefPolicyProvider;
+			this.currentRefPolicyProvider = initialRefPolicyProvider;
+			observePolicyChanges(initialRefPolicyProvider);
+		}
+
+		private void observePolicyChanges(final Optional<CloseableRefPolicyProvider> refPolicyProvider)
+		{
+			if (refPolicyProvider.isPresent() && refPolicyProvider.get() instanceof ObservableRefPolicyProvider)
+			{
+				((ObservableRefPolicyProvider) refPolicyProvider.get()).addChangeListener(this);
+			}
+		}
+
+		/*
+		 * Stops listening to the changes of a refPolicyProvider no longer used by this evaluator, and closes it if it was loaded by this evaluator and it is an observable static one, i.e. it may hold
+		 * resources (polling thread, connections...) that are not needed anymore, since the compiled policies do not depend on it.
+		 */
+		private void releaseRefPolicyProvider(final Optional<CloseableRefPolicyProvider> refPolicyProvider)
+		{
+			if (!refPolicyProvider.isPresent() || !(refPolicyProvider.get() instanceof ObservableRefPolicyProvider))
+			{
+				return;
+			}
+
+			((ObservableRefPolicyProvider) refPolicyProvider.get()).removeChangeListener(this);
+			if (refPolicyProvider.get() != initialRefPolicyProvider.orElse(null) && refPolicyProvider.get() instanceof StaticRefPolicyProvider)
+			{
+				try
+				{
+					refPolicyProvider.get().close();
+				}
+				catch (final IOException e)
+				{
+					LOGGER.warn("Failed to close the replaced refPolicyProvider: {}", refPolicyProvider.get(), e);
+				}
+			}
+		}
+
+		private StaticView newSnapshot(final RootPolicyProvider rootPolicyProvider) throws IllegalArgumentException, IOException
+		{
+			if (!(rootPolicyProvider instanceof StaticRootPolicyProvider))
+			{
+				if (rootPolicyProvider != null)
+				{
+					rootPolicyProvider.close();
+				}
+
+				throw new IllegalArgumentException("Root Policy Provider is not static (required for hot reload): " + rootPolicyProvider);
+			}
+
+			return new StaticView((StaticRootPolicyProvider) rootPolicyProvider, null, decisionDiagramMaxNodeCount);
+		}
+
+		private synchronized void scheduleReload()
+		{
+			if (reloadExecutor.isShutdown())
+			{
+				return;
+			}
+
+			if (pendingReload != null)
+			{
+				// not started yet -> postponed, else reloaded again after the current reload
+				pendingReload.cancel(false);
+			}
+
+			pendingReload = reloadExecutor.schedule(this::reload, reloadDelayMillis, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void policyChanged(final TopLevelPolicyElementType policyType, final String policyId)
+		{
+			LOGGER.debug("{} '{}' changed: scheduling reload of the policies", policyType, policyId);
+			scheduleReload();
+		}
+
+		@Override
+		public void allPoliciesChanged()
+		{
+			scheduleReload();
+		}
+
+		/**
+		 * Reloads the policies now, and replaces the current snapshot with the new one if the reload is successful; else the current snapshot is kept. The reloads are sequential: this method
+		 * blocks while another reload is in progress. The outcome is reported by {@link #getStatistics()}.
+		 * 
+		 * @return true iff the policies were reloaded successfully (the current snapshot was replaced)
+		 */
+		public boolean reload()
+		{
+			synchronized (reloadLock)
+			{
+				final long startNanos = System.nanoTime();
+				Optional<CloseableRefPolicyProvider> newRefPolicyProvider = Optional.empty();
+				final StaticView newSnapshot;
+				try
+				{
+					final LoadedPolicyProviders newPolicyProviders = rootPolicyProviderLoader.load(currentRefPolicyProvider);
+					newRefPolicyProvider = newPolicyProviders.getRefPolicyProvider();
+					// registered before the snapshot is created, so that no change is missed
+					observePolicyChanges(newRefPolicyProvider);
+					newSnapshot = newSnapshot(newPolicyProviders.getRootPolicyProvider());
+				}
+				catch (final IOException | RuntimeException e)
+				{
+					releaseRefPolicyProvider(newRefPolicyProvider);
+					final Duration reloadDuration = Duration.ofNanos(System.nanoTime() - startNanos);
+					final Statistics previousStats = statistics;
+					statistics = new Statistics(previousStats.successCount, previousStats.failureCount + 1, reloadDuration, Optional.of(e));
+					LOGGER.error("Failed to reload the policies (after {} ms): keeping the previous ones", reloadDuration.toMillis(), e);
+					return false;
+				}
+
+				currentSnapshot.set(newSnapshot);
+				final Optional<CloseableRefPolicyProvider> previousRefPolicyProvider = currentRefPolicyProvider;
+				currentRefPolicyProvider = newRefPolicyProvider;
+				releaseRefPolicyProvider(previousRefPolicyProvider);
+				final Duration reloadDuration = Duration.ofNanos(System.nanoTime() - startNanos);
+				final Statistics previousStats = statistics;
+				statistics = new Statistics(previousStats.successCount + 1, previousStats.failureCount, reloadDuration, Optional.empty());
+				LOGGER.info("Policies reloaded in {} ms", reloadDuration.toMillis());
+				return true;
+			}
+		}
+
+		/**
+		 * Gets the statistics on the reloads so far
+		 * 
+		 * @return reload statistics
+		 */
+		public Statistics getStatistics()
+		{
+			return statistics;
+		}
+
+		@Override
+		public DecisionResult findAndEvaluate(final EvaluationContext context)
+		{
+			return currentSnapshot.get().findAndEvaluate(context);
+		}
+
+		@Override
+		public ResidualPolicy findAndEvaluatePartially(final ResidualEvaluationContext context)
+		{
+			return currentSnapshot.get().findAndEvaluatePartially(context);
+		}
+
+		@Override
+		public FlattenedPolicyTree getStaticApplicablePolicies()
+		{
+			return currentSnapshot.get().getStaticApplicablePolicies();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			try
+			{
+				policyLocationWatcher.close();
+			}
+			finally
+			{
+				synchronized (this)
+				{
+					reloadExecutor.shutdownNow();
+				}
+
+				synchronized (reloadLock)
+				{
+					releaseRefPolicyProvider(currentRefPolicyProvider);
+				}
+
+				this.expressionFactory.close();
+			}
+		}
+	}
+
 	/**
 	 * 
 	 * Static view of policy evaluator. The root policy is resolved once and for all at initialization time, and is then used for all evaluation requests.
@@ -165,15 +645,25 @@ public final class RootPolicyEvaluators
 	static class StaticView implements RootPolicyEvaluator
 	{
 		private final StaticTopLevelPolicyElementEvaluator staticRootPolicyEvaluator;
+
+		/*
+		 * Null if not owned by this view (see Reloadable)
+		 */
 		private final ExpressionFactory expressionFactory;
 		private transient final FlattenedPolicyTree staticApplicablePolicies;
 
-		private StaticView(final StaticRootPolicyProvider staticProvider, final ExpressionFactory expressionFactoryForClosing) throws IOException
+		/*
+		 * Null if the root policy is not compiled
+		 */
+		private transient final PolicyDecisionDiagram decisionDiagram;
+
+		private StaticView(final StaticRootPolicyProvider staticProvider, final ExpressionFactory expressionFactoryForClosing, final int decisionDiagramMaxNodeCount) throws IOException
 		{
-			assert staticProvider != null && expressionFactoryForClosing != null;
+			assert staticProvider != null;
 			this.expressionFactory = expressionFactoryForClosing;
 			this.staticRootPolicyEvaluator = staticProvider.getPolicy();
 			this.staticApplicablePolicies = new FlattenedPolicyTree(staticRootPolicyEvaluator.getPrimaryPolicyMetadata(), staticRootPolicyEvaluator.getPolicyRefsMetadata());
+			this.decisionDiagram = decisionDiagramMaxNodeCount > 0 ? PolicyDecisionDiagram.compile(staticRootPolicyEvaluator, decisionDiagramMaxNodeCount) : null;
 
 			staticProvider.close();
 		}
@@ -181,15 +671,38 @@ public final class RootPolicyEvaluators
 		@Override
 		public void close() throws IOException
 		{
-			this.expressionFactory.close();
+			if (this.expressionFactory != null)
+			{
+				this.expressionFactory.close();
+			}
 		}
 
 		@Override
 		public DecisionResult findAndEvaluate(final EvaluationContext context)
 		{
+			/*
+			 * The decision diagram does not collect the applicable policies
+			 */
+			if (decisionDiagram != null && !context.isApplicablePolicyIdListRequested())
+			{
+				final DecisionResult result = decisionDiagram.evaluate(context);
+				if (result != null)
+				{
+					return result;
+				}
+
+				// Indeterminate on the path -> full evaluation for proper error handling
+			}
+
 			return staticRootPolicyEvaluator.evaluate(context);
 		}
 
+		@Override
+		public ResidualPolicy findAndEvaluatePartially(final ResidualEvaluationContext context)
+		{
+			return ResidualPolicies.evaluatePartially(staticRootPolicyEvaluator, context);
+		}
+
 		@Override
 		public FlattenedPolicyTree getStaticApplicablePolicies()
 		{
@@ -0,0 +1,282 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.residual;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeSelectorExpression;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.BagDatatype;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
+import org.ow2.authzforce.core.pdp.api.value.Value;
+import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
+import org.ow2.authzforce.xacml.identifiers.XacmlStatusCode;
+
+import com.google.common.collect.ImmutableSet;
+
+import net.sf.saxon.s9api.XdmNode;
+
+/**
+ * Evaluation context for partial evaluation of a request where some attribute categories are unknown (e.g. the resource category, when looking for all the resources that a given subject may access).
+ * Getting any attribute of these categories (or the result of an AttributeSelector on their Content) returns an empty bag (the reason why it is empty being an {@link UnknownAttributeException}) and
+ * is recorded, which tells the partial evaluation that the result depends on the unknown attributes, whatever it is. Therefore the evaluators, attribute providers and AttributeSelectors need not
+ * handle this context in a particular way. Everything else is delegated to the context of the (partial) request, except request-scoped caching of evaluation results.
+ */
+public final class ResidualEvaluationContext implements EvaluationContext
+{
+	private final EvaluationContext knownAttributesContext;
+	private final Set<String> unknownCategories;
+
+	/*
+	 * Number of requests for unknown attributes so far. This context is used by a single thread.
+	 */
+	private int unknownAttributeRequestCount = 0;
+
+	/**
+	 * Creates a partial evaluation context
+	 *
+	 * @param knownAttributesContext
+	 *            context of the partial request, i.e. with the attributes of the known categories
+	 * @param unknownCategories
+	 *            attribute categories whose values are unknown
+	 */
+	public ResidualEvaluationContext(final EvaluationContext knownAttributesContext, final Set<String> unknownCategories)
+	{
+		assert knownAttributesContext != null && unknownCategories != null;
+		this.knownAttributesContext = knownAttributesContext;
+		this.unknownCategories = ImmutableSet.copyOf(unknownCategories);
+	}
+
+	/**
+	 * Reason why the bag of an attribute (or AttributeSelector result) of an unknown category is empty, i.e. error raised if the attribute is required (MustBePresent=true)
+	 */
+	public static final class UnknownAttributeException extends IndeterminateEvaluationException
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Creates an exception
+		 *
+		 * @param message
+		 *            error message
+		 */
+		public UnknownAttributeException(final String message)
+		{
+			super(message, XacmlStatusCode.MISSING_ATTRIBUTE.value());
+		}
+	}
+
+	/**
+	 * Is an attribute category unknown?
+	 *
+	 * @param category
+	 *            attribute category
+	 * @return true iff {@code category} is one of the unknown categories
+	 */
+	public boolean isUnknownCategory(final String category)
+	{
+		return unknownCategories.contains(category);
+	}
+
+	/**
+	 * Is an attribute unknown?
+	 *
+	 * @param attributeFqn
+	 *            attribute name
+	 * @return true iff the attribute category is one of the unknown categories
+	 */
+	public boolean isUnknown(final AttributeFqn attributeFqn)
+	{
+		return unknownCategories.contains(attributeFqn.getCategory());
+	}
+
+	/**
+	 * Gets the number of times an unknown attribute (or the Content of an unknown category) was requested so far, to find out whether an evaluation depends on unknown attributes by comparing the
+	 * counts before and after
+	 *
+	 * @return count
+	 */
+	public int getUnknownAttributeRequestCount()
+	{
+		return unknownAttributeRequestCount;
+	}
+
+	/**
+	 * Evaluates a boolean evaluator in this context, as a whole
+	 *
+	 * @param evaluator
+	 *            evaluator
+	 * @return {@link ResidualPredicate#TRUE}/{@link ResidualPredicate#FALSE} if the result does not depend on unknown attributes; {@link ResidualPredicate#INDETERMINATE} if the evaluation failed
+	 *         independently from the unknown attributes; else {@link ResidualPredicate.Opaque} predicate wrapping {@code evaluator}
+	 */
+	public ResidualPredicate evaluate(final BooleanEvaluator evaluator)
+	{
+		final int previousUnknownAttributeRequestCount = unknownAttributeRequestCount;
+		ResidualPredicate result;
+		try
+		{
+			result = ResidualPredicate.valueOf(evaluator.evaluate(this));
+		}
+		catch (final IndeterminateEvaluationException e)
+		{
+			result = ResidualPredicate.INDETERMINATE;
+		}
+
+		return unknownAttributeRequestCount == previousUnknownAttributeRequestCount ? result : new ResidualPredicate.Opaque(evaluator);
+	}
+
+	@Override
+	public <AV extends AttributeValue> AttributeBag<AV> getNamedAttributeValue(final AttributeFqn attributeFqn, final Datatype<AV> datatype) throws IndeterminateEvaluationException
+	{
+		if (isUnknown(attributeFqn))
+		{
+			unknownAttributeRequestCount++;
+			return Bags.emptyAttributeBag(datatype, new UnknownAttributeException("Attribute unknown in partial evaluation: " + attributeFqn));
+		}
+
+		return knownAttributesContext.getNamedAttributeValue(attributeFqn, datatype);
+	}
+
+	@Override
+	public Iterator<Entry<AttributeFqn, AttributeBag<?>>> getNamedAttributes()
+	{
+		return knownAttributesContext.getNamedAttributes();
+	}
+
+	@Override
+	public boolean putNamedAttributeValueIfAbsent(final AttributeFqn attributeFqn, final AttributeBag<?> result)
+	{
+		if (isUnknown(attributeFqn))
+		{
+			// never cached, since never known
+			return false;
+		}
+
+		return knownAttributesContext.putNamedAttributeValueIfAbsent(attributeFqn, result);
+	}
+
+	@Override
+	public <AV extends AttributeValue> Bag<AV> getAttributeSelectorResult(final AttributeSelectorExpression<AV> attributeSelector) throws IndeterminateEvaluationException
+	{
+		if (isUnknownCategory(attributeSelector.getAttributeSelectorId().getCategory()))
+		{
+			unknownAttributeRequestCount++;
+			return Bags.empty(((BagDatatype<AV>) attributeSelector.getReturnType()).getElementType(), new UnknownAttributeException(attributeSelector + ": Content unknown in partial evaluation"));
+		}
+
+		return knownAttributesContext.getAttributeSelectorResult(attributeSelector);
+	}
+
+	@Override
+	public <AV extends AttributeValue> boolean putAttributeSelectorResultIfAbsent(final AttributeSelectorExpression<AV> attributeSelector, final Bag<AV> result) throws IndeterminateEvaluationException
+	{
+		if (isUnknownCategory(attributeSelector.getAttributeSelectorId().getCategory()))
+		{
+			// never cached, since never known
+			return false;
+		}
+
+		return knownAttributesContext.putAttributeSelectorResultIfAbsent(attributeSelector, result);
+	}
+
+	@Override
+	public XdmNode getAttributesContent(final String category)
+	{
+		if (unknownCategories.contains(category))
+		{
+			unknownAttributeRequestCount++;
+			// no Content
+			return null;
+		}
+
+		return knownAttributesContext.getAttributesContent(category);
+	}
+
+	@Override
+	public <V extends Value> V getVariableValue(final String variableId, final Datatype<V> datatype) throws IndeterminateEvaluationException
+	{
+		return knownAttributesContext.getVariableValue(variableId, datatype);
+	}
+
+	@Override
+	public boolean putVariableIfAbsent(final String variableId, final Value value)
+	{
+		return knownAttributesContext.putVariableIfAbsent(variableId, value);
+	}
+
+	@Override
+	public Value removeVariable(final String variableId)
+	{
+		return knownAttributesContext.removeVariable(variableId);
+	}
+
+	/*
+	 * No request-scoped cache (e.g. of Policy results): a cached result would hide whether the evaluation depends on unknown attributes, since the same elements are evaluated as a whole first, then
+	 * part by part.
+	 */
+	@Override
+	public Object getOther(final String key)
+	{
+		return null;
+	}
+
+	@Override
+	public boolean containsKey(final String key)
+	{
+		return false;
+	}
+
+	@Override
+	public void putOther(final String key, final Object val)
+	{
+		// not cached (see getOther)
+	}
+
+	@Override
+	public Object remove(final String key)
+	{
+		return null;
+	}
+
+	@Override
+	public boolean isApplicablePolicyIdListRequested()
+	{
+		return false;
+	}
+
+	@Override
+	public <L extends Listener> L putListener(final Class<L> listenerType, final L listener)
+	{
+		return knownAttributesContext.putListener(listenerType, listener);
+	}
+
+	@Override
+	public <L extends Listener> L getListener(final Class<L> listenerType)
+	{
+		return knownAttributesContext.getListener(listenerType);
+	}
+
+}
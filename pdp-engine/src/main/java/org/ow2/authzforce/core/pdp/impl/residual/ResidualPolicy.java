@@ -0,0 +1,425 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.residual;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.ow2.authzforce.core.pdp.api.Decidable;
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.EffectType;
+
+/**
+ * Residual policy, i.e. what remains of a policy (Rule, Policy or PolicySet) after partial evaluation with some attribute categories unknown (see {@link ResidualEvaluationContext}): the parts that
+ * could be decided are replaced with {@link Decision}s, the others keep their structure, with {@link ResidualPredicate}s as Targets and Conditions. The combined elements that cannot change the
+ * result of the combining algorithm (e.g. NotApplicable ones, or the ones after a Deny in a deny-overrides Policy) are removed. Obligations and Advice are not part of a residual policy: it only
+ * tells the decision, assuming that the Obligation/Advice expressions are evaluated successfully.
+ */
+public abstract class ResidualPolicy
+{
+	/**
+	 * Visitor of residual policies
+	 *
+	 * @param <R>
+	 *            visit result type
+	 */
+	public interface Visitor<R>
+	{
+		/**
+		 * Visits a decision
+		 *
+		 * @param decision
+		 *            decision
+		 * @return visit result
+		 */
+		R visitDecision(Decision decision);
+
+		/**
+		 * Visits a Rule
+		 *
+		 * @param rule
+		 *            residual Rule
+		 * @return visit result
+		 */
+		R visitRule(Rule rule);
+
+		/**
+		 * Visits a Policy(Set)
+		 *
+		 * @param policy
+		 *            residual Policy(Set)
+		 * @return visit result
+		 */
+		R visitPolicy(Policy policy);
+
+		/**
+		 * Visits an opaque policy element
+		 *
+		 * @param opaque
+		 *            opaque policy element
+		 * @return visit result
+		 */
+		R visitOpaque(Opaque opaque);
+	}
+
+	/**
+	 * Accepts a visitor
+	 *
+	 * @param visitor
+	 *            visitor
+	 * @return visit result
+	 */
+	public abstract <R> R accept(Visitor<R> visitor);
+
+	/**
+	 * Decision, i.e. fully evaluated policy element
+	 */
+	public static final class Decision extends ResidualPolicy
+	{
+		private final DecisionType decision;
+		private final DecisionType extendedIndeterminate;
+
+		private Decision(final DecisionType decision, final DecisionType extendedIndeterminate)
+		{
+			this.decision = decision;
+			this.extendedIndeterminate = extendedIndeterminate;
+		}
+
+		/**
+		 * Gets the decision
+		 *
+		 * @return decision
+		 */
+		public DecisionType getDecision()
+		{
+			return decision;
+		}
+
+		/**
+		 * Gets the Extended Indeterminate (XACML 3.0 §7.10)
+		 *
+		 * @return the Extended Indeterminate if {@code getDecision() == INDETERMINATE}: PERMIT for Indeterminate{P}, DENY for Indeterminate{D}, INDETERMINATE for Indeterminate{DP}; else
+		 *         NOT_APPLICABLE
+		 */
+		public DecisionType getExtendedIndeterminate()
+		{
+			return extendedIndeterminate;
+		}
+
+		@Override
+		public <R> R accept(final Visitor<R> visitor)
+		{
+			return visitor.visitDecision(this);
+		}
+
+		@Override
+		public String toString()
+		{
+			return decision == DecisionType.INDETERMINATE ? "Indeterminate{" + extendedIndeterminate + "}" : decision.toString();
+		}
+	}
+
+	/**
+	 * Permit decision
+	 */
+	public static final Decision PERMIT = new Decision(DecisionType.PERMIT, DecisionType.NOT_APPLICABLE);
+
+	/**
+	 * Deny decision
+	 */
+	public static final Decision DENY = new Decision(DecisionType.DENY, DecisionType.NOT_APPLICABLE);
+
+	/**
+	 * NotApplicable decision
+	 */
+	public static final Decision NOT_APPLICABLE = new Decision(DecisionType.NOT_APPLICABLE, DecisionType.NOT_APPLICABLE);
+
+	/**
+	 * Indeterminate{P} decision
+	 */
+	public static final Decision INDETERMINATE_P = new Decision(DecisionType.INDETERMINATE, DecisionType.PERMIT);
+
+	/**
+	 * Indeterminate{D} decision
+	 */
+	public static final Decision INDETERMINATE_D = new Decision(DecisionType.INDETERMINATE, DecisionType.DENY);
+
+	/**
+	 * Indeterminate{DP} decision
+	 */
+	public static final Decision INDETERMINATE_DP = new Decision(DecisionType.INDETERMINATE, DecisionType.INDETERMINATE);
+
+	/**
+	 * Gets the decision leaf for a decision
+	 *
+	 * @param decision
+	 *            decision
+	 * @param extendedIndeterminate
+	 *            Extended Indeterminate, used only if {@code decision == INDETERMINATE}
+	 * @return decision leaf
+	 */
+	public static Decision valueOf(final DecisionType decision, final DecisionType extendedIndeterminate)
+	{
+		switch (decision)
+		{
+			case PERMIT:
+				return PERMIT;
+			case DENY:
+				return DENY;
+			case NOT_APPLICABLE:
+				return NOT_APPLICABLE;
+			default:
+				return extendedIndeterminate == DecisionType.PERMIT ? INDETERMINATE_P : extendedIndeterminate == DecisionType.DENY ? INDETERMINATE_D : INDETERMINATE_DP;
+		}
+	}
+
+	/**
+	 * Rule whose Target or Condition depends on unknown attributes. The Rule evaluates as usual: NotApplicable if the Target is False, its Effect if the Target and the Condition are True, else
+	 * NotApplicable if the Condition is False, else Indeterminate{Effect} (Indeterminate Target or Condition).
+	 */
+	public static final class Rule extends ResidualPolicy
+	{
+		private final String ruleId;
+		private final EffectType effect;
+		private final ResidualPredicate target;
+		private final ResidualPredicate condition;
+
+		/**
+		 * Creates a residual Rule
+		 *
+		 * @param ruleId
+		 *            RuleId
+		 * @param effect
+		 *            Effect
+		 * @param target
+		 *            residual Target
+		 * @param condition
+		 *            residual Condition ({@link ResidualPredicate#TRUE} if none)
+		 */
+		public Rule(final String ruleId, final EffectType effect, final ResidualPredicate target, final ResidualPredicate condition)
+		{
+			assert ruleId != null && effect != null && target != null && condition != null;
+			this.ruleId = ruleId;
+			this.effect = effect;
+			this.target = target;
+			this.condition = condition;
+		}
+
+		/**
+		 * Gets the RuleId
+		 *
+		 * @return RuleId
+		 */
+		public String getRuleId()
+		{
+			return ruleId;
+		}
+
+		/**
+		 * Gets the Effect
+		 *
+		 * @return Effect
+		 */
+		public EffectType getEffect()
+		{
+			return effect;
+		}
+
+		/**
+		 * Gets the residual Target
+		 *
+		 * @return Target predicate
+		 */
+		public ResidualPredicate getTarget()
+		{
+			return target;
+		}
+
+		/**
+		 * Gets the residual Condition
+		 *
+		 * @return Condition predicate
+		 */
+		public ResidualPredicate getCondition()
+		{
+			return condition;
+		}
+
+		@Override
+		public <R> R accept(final Visitor<R> visitor)
+		{
+			return visitor.visitRule(this);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Rule[" + ruleId + "](" + effect + " if " + target + " and " + condition + ")";
+		}
+	}
+
+	/**
+	 * Policy(Set) whose Target or combined elements depend on unknown attributes. The Policy(Set) evaluates as usual: NotApplicable if the Target is False, else the result of the combining
+	 * algorithm on the combined elements if the Target is True; else (Indeterminate Target) NotApplicable if the result of the combining algorithm is NotApplicable, else Indeterminate (XACML 3.0
+	 * §7.14).
+	 */
+	public static final class Policy extends ResidualPolicy
+	{
+		private final TopLevelPolicyElementType policyElementType;
+		private final String policyId;
+		private final ResidualPredicate target;
+		private final String combiningAlgId;
+		private final List<ResidualPolicy> combinedElements;
+
+		/**
+		 * Creates a residual Policy(Set)
+		 *
+		 * @param policyElementType
+		 *            Policy or PolicySet
+		 * @param policyId
+		 *            PolicyId or PolicySetId
+		 * @param target
+		 *            residual Target
+		 * @param combiningAlgId
+		 *            combining algorithm ID
+		 * @param combinedElements
+		 *            residual combined elements
+		 */
+		public Policy(final TopLevelPolicyElementType policyElementType, final String policyId, final ResidualPredicate target, final String combiningAlgId,
+		        final List<ResidualPolicy> combinedElements)
+		{
+			assert policyElementType != null && policyId != null && target != null && combiningAlgId != null && combinedElements != null;
+			this.policyElementType = policyElementType;
+			this.policyId = policyId;
+			this.target = target;
+			this.combiningAlgId = combiningAlgId;
+			this.combinedElements = Collections.unmodifiableList(combinedElements);
+		}
+
+		/**
+		 * Gets the type of policy element
+		 *
+		 * @return Policy or PolicySet
+		 */
+		public TopLevelPolicyElementType getPolicyElementType()
+		{
+			return policyElementType;
+		}
+
+		/**
+		 * Gets the PolicyId/PolicySetId
+		 *
+		 * @return policy ID
+		 */
+		public String getPolicyId()
+		{
+			return policyId;
+		}
+
+		/**
+		 * Gets the residual Target
+		 *
+		 * @return Target predicate
+		 */
+		public ResidualPredicate getTarget()
+		{
+			return target;
+		}
+
+		/**
+		 * Gets the combining algorithm ID
+		 *
+		 * @return rule/policy combining algorithm ID
+		 */
+		public String getCombiningAlgId()
+		{
+			return combiningAlgId;
+		}
+
+		/**
+		 * Gets the residual combined elements (Rules for a Policy, Policies/PolicySets for a PolicySet)
+		 *
+		 * @return residual combined elements, in order of declaration (immutable)
+		 */
+		public List<ResidualPolicy> getCombinedElements()
+		{
+			return combinedElements;
+		}
+
+		@Override
+		public <R> R accept(final Visitor<R> visitor)
+		{
+			return visitor.visitPolicy(this);
+		}
+
+		@Override
+		public String toString()
+		{
+			return policyElementType + "[" + policyId + "](" + target + ", " + combiningAlgId + ", " + combinedElements + ")";
+		}
+	}
+
+	/**
+	 * Policy element depending on unknown attributes, without exposed structure (e.g. a Policy with VariableDefinitions, or a policy reference resolved dynamically). It may still be evaluated as a
+	 * whole, against a complete request context.
+	 */
+	public static final class Opaque extends ResidualPolicy
+	{
+		private final Decidable element;
+
+		/**
+		 * Creates an opaque policy element
+		 *
+		 * @param element
+		 *            evaluator of the policy element
+		 */
+		public Opaque(final Decidable element)
+		{
+			assert element != null;
+			this.element = element;
+		}
+
+		/**
+		 * Evaluates the policy element against a complete request context
+		 *
+		 * @param context
+		 *            request context
+		 * @return decision result
+		 */
+		public DecisionResult evaluate(final EvaluationContext context)
+		{
+			return element.evaluate(context);
+		}
+
+		@Override
+		public <R> R accept(final Visitor<R> visitor)
+		{
+			return visitor.visitOpaque(this);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "opaque(" + element + ")";
+		}
+	}
+}
@@ -0,0 +1,598 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.residual;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeDesignatorExpression;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Datatype;
+import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
+
+/**
+ * Residual predicate, i.e. what remains of a Target/Condition (or part of it) after partial evaluation with some attribute categories unknown (see {@link ResidualEvaluationContext}): a predicate tree
+ * over the attributes of the unknown categories, whose leaves are either constants or tests of these attributes. Each node evaluates to True, False or Indeterminate, with the semantics of the XACML
+ * functions {@code and}, {@code or} and {@code not} for the inner nodes, so that a residual predicate may be translated once into another query language (e.g. a database filter), using a
+ * {@link Visitor}.
+ */
+public abstract class ResidualPredicate
+{
+	/**
+	 * Visitor of residual predicates
+	 *
+	 * @param <R>
+	 *            visit result type
+	 */
+	public interface Visitor<R>
+	{
+		/**
+		 * Visits a constant
+		 *
+		 * @param constant
+		 *            constant predicate
+		 * @return visit result
+		 */
+		R visitConstant(Constant constant);
+
+		/**
+		 * Visits a conjunction
+		 *
+		 * @param and
+		 *            conjunction
+		 * @return visit result
+		 */
+		R visitAnd(And and);
+
+		/**
+		 * Visits a disjunction
+		 *
+		 * @param or
+		 *            disjunction
+		 * @return visit result
+		 */
+		R visitOr(Or or);
+
+		/**
+		 * Visits a negation
+		 *
+		 * @param not
+		 *            negation
+		 * @return visit result
+		 */
+		R visitNot(Not not);
+
+		/**
+		 * Visits an attribute match (Target Match on an unknown attribute)
+		 *
+		 * @param match
+		 *            attribute match
+		 * @return visit result
+		 */
+		R visitAttributeMatch(AttributeMatch match);
+
+		/**
+		 * Visits a test of membership of an unknown attribute's value(s) in a set of constant values
+		 *
+		 * @param in
+		 *            membership test
+		 * @return visit result
+		 */
+		R visitAttributeValueIn(AttributeValueIn in);
+
+		/**
+		 * Visits an opaque predicate
+		 *
+		 * @param opaque
+		 *            opaque predicate
+		 * @return visit result
+		 */
+		R visitOpaque(Opaque opaque);
+	}
+
+	/**
+	 * Accepts a visitor
+	 *
+	 * @param visitor
+	 *            visitor
+	 * @return visit result
+	 */
+	public abstract <R> R accept(Visitor<R> visitor);
+
+	/**
+	 * Constant predicate, i.e. fully evaluated
+	 */
+	public static final class Constant extends ResidualPredicate
+	{
+		private final Optional<Boolean> value;
+
+		private Constant(final Optional<Boolean> value)
+		{
+			this.value = value;
+		}
+
+		/**
+		 * Gets the constant value
+		 *
+		 * @return True/False; empty if Indeterminate
+		 */
+		public Optional<Boolean> getValue()
+		{
+			return value;
+		}
+
+		@Override
+		public <R> R accept(final Visitor<R> visitor)
+		{
+			return visitor.visitConstant(this);
+		}
+
+		@Override
+		public String toString()
+		{
+			return value.isPresent() ? value.get().toString() : "Indeterminate";
+		}
+	}
+
+	/**
+	 * Constant True
+	 */
+	public static final Constant TRUE = new Constant(Optional.of(Boolean.TRUE));
+
+	/**
+	 * Constant False
+	 */
+	public static final Constant FALSE = new Constant(Optional.of(Boolean.FALSE));
+
+	/**
+	 * Constant Indeterminate
+	 */
+	public static final Constant INDETERMINATE = new Constant(Optional.empty());
+
+	/**
+	 * Gets the constant predicate for a boolean value
+	 *
+	 * @param value
+	 *            boolean value
+	 * @return {@link #TRUE} or {@link #FALSE}
+	 */
+	public static Constant valueOf(final boolean value)
+	{
+		return value ? TRUE : FALSE;
+	}
+
+	/**
+	 * Conjunction, with the semantics of the XACML function {@code and}: False if any argument is False, else Indeterminate if any argument is Indeterminate, else True
+	 */
+	public static final class And extends ResidualPredicate
+	{
+		private final List<ResidualPredicate> args;
+
+		private And(final List<ResidualPredicate> args)
+		{
+			this.args = Collections.unmodifiableList(args);
+		}
+
+		/**
+		 * Gets the arguments
+		 *
+		 * @return arguments, at least two, none of them True or False (immutable)
+		 */
+		public List<ResidualPredicate> getArgs()
+		{
+			return args;
+		}
+
+		@Override
+		public <R> R accept(final Visitor<R> visitor)
+		{
+			return visitor.visitAnd(this);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "and" + args;
+		}
+	}
+
+	/**
+	 * Disjunction, with the semantics of the XACML function {@code or}: True if any argument is True, else Indeterminate if any argument is Indeterminate, else False
+	 */
+	public static final class Or extends ResidualPredicate
+	{
+		private final List<ResidualPredicate> args;
+
+		private Or(final List<ResidualPredicate> args)
+		{
+			this.args = Collections.unmodifiableList(args);
+		}
+
+		/**
+		 * Gets the arguments
+		 *
+		 * @return arguments, at least two, none of them True or False (immutable)
+		 */
+		public List<ResidualPredicate> getArgs()
+		{
+			return args;
+		}
+
+		@Override
+		public <R> R accept(final Visitor<R> visitor)
+		{
+			return visitor.visitOr(this);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "or" + args;
+		}
+	}
+
+	/**
+	 * Negation, with the semantics of the XACML function {@code not} (Indeterminate if the argument is Indeterminate)
+	 */
+	public static final class Not extends ResidualPredicate
+	{
+		private final ResidualPredicate arg;
+
+		private Not(final ResidualPredicate arg)
+		{
+			this.arg = arg;
+		}
+
+		/**
+		 * Gets the negated predicate
+		 *
+		 * @return argument (not constant)
+		 */
+		public ResidualPredicate getArg()
+		{
+			return arg;
+		}
+
+		@Override
+		public <R> R accept(final Visitor<R> visitor)
+		{
+			return visitor.visitNot(this);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "not(" + arg + ")";
+		}
+	}
+
+	/**
+	 * Base class of the tests of a single attribute of an unknown category
+	 */
+	public static abstract class AttributeTest extends ResidualPredicate
+	{
+		private final AttributeDesignatorExpression<?> designator;
+
+		private AttributeTest(final AttributeDesignatorExpression<?> designator)
+		{
+			assert designator != null;
+			this.designator = designator;
+		}
+
+		/**
+		 * Gets the tested attribute
+		 *
+		 * @return attribute name
+		 */
+		public final AttributeFqn getAttributeFqn()
+		{
+			return designator.getAttributeFQN();
+		}
+
+		/**
+		 * Gets the datatype of the tested attribute's values
+		 *
+		 * @return attribute datatype
+		 */
+		public final Datatype<?> getAttributeDatatype()
+		{
+			return designator.getReturnType().getTypeParameter().get();
+		}
+
+		/**
+		 * Is the attribute required to have at least one value (AttributeDesignator's {@code MustBePresent})? If so, the test is Indeterminate when the attribute has no value.
+		 *
+		 * @return true iff the attribute must be present
+		 */
+		public final boolean isMustBePresent()
+		{
+			return designator.isNonEmptyBagRequired();
+		}
+	}
+
+	/**
+	 * Target Match on an attribute of an unknown category, i.e. standard function {@code any-of(matchFunction, matchValue, attribute)}: True iff the match function returns True for the match value
+	 * and at least one value of the attribute
+	 */
+	public static final class AttributeMatch extends AttributeTest
+	{
+		private final String matchFunctionId;
+		private final AttributeValue matchValue;
+
+		/**
+		 * Creates a Match test
+		 *
+		 * @param matchFunctionId
+		 *            match function ID (MatchId)
+		 * @param matchValue
+		 *            Match's constant AttributeValue
+		 * @param designator
+		 *            Match's AttributeDesignator
+		 */
+		public AttributeMatch(final String matchFunctionId, final AttributeValue matchValue, final AttributeDesignatorExpression<?> designator)
+		{
+			super(designator);
+			assert matchFunctionId != null && matchValue != null;
+			this.matchFunctionId = matchFunctionId;
+			this.matchValue = matchValue;
+		}
+
+		/**
+		 * Gets the match function ID
+		 *
+		 * @return MatchId, e.g. {@code urn:oasis:names:tc:xacml:1.0:function:string-equal}
+		 */
+		public String getMatchFunctionId()
+		{
+			return matchFunctionId;
+		}
+
+		/**
+		 * Gets the constant value passed as first argument to the match function
+		 *
+		 * @return match value
+		 */
+		public AttributeValue getMatchValue()
+		{
+			return matchValue;
+		}
+
+		@Override
+		public <R> R accept(final Visitor<R> visitor)
+		{
+			return visitor.visitAttributeMatch(this);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "match(" + matchFunctionId + ", " + matchValue + ", " + getAttributeFqn() + ")";
+		}
+	}
+
+	/**
+	 * Test of membership of an attribute's value(s) in a set of constant values (equality tests compiled into hash-set lookups)
+	 */
+	public static final class AttributeValueIn extends AttributeTest
+	{
+		private final Set<AttributeValue> values;
+		private final boolean isSingleValued;
+
+		/**
+		 * Creates a membership test
+		 *
+		 * @param designator
+		 *            tested attribute
+		 * @param values
+		 *            constant values
+		 * @param isSingleValued
+		 *            true iff the attribute must have one and only one value (e.g. {@code string-one-and-only}), in which case the test is True iff this value is one of {@code values}, and
+		 *            Indeterminate if the attribute has no value or more than one; else the test is True iff at least one value of the attribute is one of {@code values}
+		 */
+		public AttributeValueIn(final AttributeDesignatorExpression<?> designator, final Set<AttributeValue> values, final boolean isSingleValued)
+		{
+			super(designator);
+			assert values != null && !values.isEmpty();
+			this.values = Collections.unmodifiableSet(values);
+			this.isSingleValued = isSingleValued;
+		}
+
+		/**
+		 * Gets the constant values
+		 *
+		 * @return constant values (immutable)
+		 */
+		public Set<AttributeValue> getValues()
+		{
+			return values;
+		}
+
+		/**
+		 * Must the attribute have one and only one value?
+		 *
+		 * @return true iff the test is Indeterminate unless the attribute has exactly one value
+		 */
+		public boolean isSingleValued()
+		{
+			return isSingleValued;
+		}
+
+		@Override
+		public <R> R accept(final Visitor<R> visitor)
+		{
+			return visitor.visitAttributeValueIn(this);
+		}
+
+		@Override
+		public String toString()
+		{
+			return (isSingleValued ? "one-and-only(" : "any(") + getAttributeFqn() + ") in " + values;
+		}
+	}
+
+	/**
+	 * Predicate depending on unknown attributes, without exposed structure (e.g. a Condition with non-standard functions, or a Match with an AttributeSelector). It may still be evaluated as a whole,
+	 * against a complete request context.
+	 */
+	public static final class Opaque extends ResidualPredicate
+	{
+		private final BooleanEvaluator evaluator;
+
+		/**
+		 * Creates an opaque predicate
+		 *
+		 * @param evaluator
+		 *            evaluator of the predicate
+		 */
+		public Opaque(final BooleanEvaluator evaluator)
+		{
+			assert evaluator != null;
+			this.evaluator = evaluator;
+		}
+
+		/**
+		 * Evaluates the predicate against a complete request context
+		 *
+		 * @param context
+		 *            request context
+		 * @return true iff the predicate holds
+		 * @throws IndeterminateEvaluationException
+		 *             if the predicate is Indeterminate
+		 */
+		public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			return evaluator.evaluate(context);
+		}
+
+		@Override
+		public <R> R accept(final Visitor<R> visitor)
+		{
+			return visitor.visitOpaque(this);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "opaque(" + evaluator + ")";
+		}
+	}
+
+	/**
+	 * Creates the conjunction of predicates, simplified: True arguments are removed, and the result is False if any argument is False; Indeterminate if all the others are Indeterminate.
+	 *
+	 * @param args
+	 *            arguments
+	 * @return conjunction
+	 */
+	public static ResidualPredicate and(final List<ResidualPredicate> args)
+	{
+		return combine(args, false);
+	}
+
+	/**
+	 * Creates the disjunction of predicates, simplified: False arguments are removed, and the result is True if any argument is True; Indeterminate if all the others are Indeterminate.
+	 *
+	 * @param args
+	 *            arguments
+	 * @return disjunction
+	 */
+	public static ResidualPredicate or(final List<ResidualPredicate> args)
+	{
+		return combine(args, true);
+	}
+
+	/*
+	 * and() if decisiveValue is false, or() if true
+	 */
+	private static ResidualPredicate combine(final List<ResidualPredicate> args, final boolean decisiveValue)
+	{
+		final List<ResidualPredicate> remainingArgs = new ArrayList<>(args.size());
+		boolean isAnyIndeterminate = false;
+		for (final ResidualPredicate arg : args)
+		{
+			if (arg == INDETERMINATE)
+			{
+				isAnyIndeterminate = true;
+			}
+			else if (arg instanceof Constant)
+			{
+				if (((Constant) arg).value.get() == decisiveValue)
+				{
+					return arg;
+				}
+
+				// neutral value -> removed
+			}
+			else
+			{
+				remainingArgs.add(arg);
+			}
+		}
+
+		if (remainingArgs.isEmpty())
+		{
+			return isAnyIndeterminate ? INDETERMINATE : valueOf(!decisiveValue);
+		}
+
+		if (isAnyIndeterminate)
+		{
+			// the result is Indeterminate unless one of the remaining args is decisive
+			remainingArgs.add(INDETERMINATE);
+		}
+
+		if (remainingArgs.size() == 1)
+		{
+			return remainingArgs.get(0);
+		}
+
+		return decisiveValue ? new Or(remainingArgs) : new And(remainingArgs);
+	}
+
+	/**
+	 * Creates the negation of a predicate, simplified: constants are negated (Indeterminate remains Indeterminate), double negations are removed
+	 *
+	 * @param arg
+	 *            negated predicate
+	 * @return negation
+	 */
+	public static ResidualPredicate not(final ResidualPredicate arg)
+	{
+		if (arg == INDETERMINATE)
+		{
+			return arg;
+		}
+
+		if (arg instanceof Constant)
+		{
+			return valueOf(!((Constant) arg).value.get());
+		}
+
+		if (arg instanceof Not)
+		{
+			return ((Not) arg).arg;
+		}
+
+		return new Not(arg);
+	}
+}
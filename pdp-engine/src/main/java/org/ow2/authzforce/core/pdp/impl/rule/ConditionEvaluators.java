@@ -30,6 +30,8 @@ import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
 import org.ow2.authzforce.core.pdp.api.value.BooleanValue;
 import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
 import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
+import org.ow2.authzforce.core.pdp.impl.CompiledEvaluators;
+import org.ow2.authzforce.core.pdp.impl.PartialEvaluation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,6 +67,20 @@ public final class ConditionEvaluators
 		}
 	};
 
+	/**
+	 * Condition that always evaluates to False, result of partial evaluation (see {@link PartialEvaluation}) of a Condition equivalent to constant False
+	 */
+	public static final BooleanEvaluator FALSE_CONDITION = new BooleanEvaluator()
+	{
+
+		@Override
+		public boolean evaluate(final EvaluationContext context) throws IndeterminateEvaluationException
+		{
+			LOGGER.debug("Condition's Expression equals constant False (partial evaluation) -> False");
+			return false;
+		}
+	};
+
 	private static final class BooleanExpressionEvaluator implements BooleanEvaluator
 	{
 
@@ -106,9 +122,9 @@ public final class ConditionEvaluators
 	 *            expression factory
 	 * @param xPathCompiler
 	 *            XPath compiler corresponding to enclosing policy(set) default XPath version
-	 * @return instance of Condition evaluator
+	 * @return instance of Condition evaluator ({@link #FALSE_CONDITION} if the expression is equivalent to constant False and partial evaluation is enabled)
 	 * @throws java.lang.IllegalArgumentException
-	 *             if the expression is not a valid boolean Expression
+	 *             if the expression is not a valid boolean Expression, or is equivalent to constant False and partial evaluation is disabled
 	 */
 	public static BooleanEvaluator getInstance(final Condition condition, final XPathCompiler xPathCompiler, final ExpressionFactory expressionFactory) throws IllegalArgumentException
 	{
@@ -150,12 +166,35 @@ public final class ConditionEvaluators
 				return TRUE_CONDITION;
 			}
 
+			if (PartialEvaluation.isEnabled(expressionFactory))
+			{
+				/*
+				 * Typically the result of partial evaluation, e.g. with static attributes: the enclosing Rule never applies
+				 */
+				LOGGER.debug("Condition's expression is equivalent to constant False -> partial evaluation: replacing with constant False condition");
+				return FALSE_CONDITION;
+			}
+
 			// constant False -> unacceptable
 			throw INVALID_CONSTANT_FALSE_EXPRESSION_EXCEPTION;
 		}
 
 		// constant == null
 		LOGGER.debug("Condition's Expression is not constant (evaluation without context failed)");
+		if (CompiledEvaluators.isEnabled(expressionFactory))
+		{
+			/*
+			 * The compiler parses the expression again: do not count the nodes eliminated by partial evaluation twice
+			 */
+			final int eliminatedNodeCount = PartialEvaluation.getEliminatedNodeCount(expressionFactory);
+			final BooleanEvaluator compiledCondition = CompiledEvaluators.compileCondition(exprElt, xPathCompiler, expressionFactory);
+			PartialEvaluation.countEliminatedNodes(expressionFactory, eliminatedNodeCount - PartialEvaluation.getEliminatedNodeCount(expressionFactory));
+			if (compiledCondition != null)
+			{
+				return compiledCondition;
+			}
+		}
+
 		return new BooleanExpressionEvaluator(evaluatableExpression);
 	}
 
@@ -19,7 +19,9 @@ package org.ow2.authzforce.core.pdp.impl.rule;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import org.ow2.authzforce.core.pdp.api.Decidable;
 import org.ow2.authzforce.core.pdp.api.DecisionResult;
@@ -28,7 +30,9 @@ import org.ow2.authzforce.core.pdp.api.EvaluationContext;
 import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
 import org.ow2.authzforce.core.pdp.api.PepAction;
 import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.BatchItemEvaluationContext;
 import org.ow2.authzforce.core.pdp.impl.BooleanEvaluator;
+import org.ow2.authzforce.core.pdp.impl.DecisionConstrained;
 import org.ow2.authzforce.core.pdp.impl.PepActionExpression;
 import org.ow2.authzforce.core.pdp.impl.TargetEvaluators;
 import org.slf4j.Logger;
@@ -52,7 +56,7 @@ import oasis.names.tc.xacml._3_0.core.schema.wd_17.Rule;
  * 
  * @version $Id: $
  */
-public final class RuleEvaluator implements Decidable
+public final class RuleEvaluator implements Decidable, DecisionConstrained
 {
 	private static final IllegalArgumentException NULL_XACML_RULE_ARGUMENT_EXCEPTION = new IllegalArgumentException("Cannot create Rule evaluator: undefined input XACML/JAXB Rule element");
 
@@ -247,6 +251,9 @@ public final class RuleEvaluator implements Decidable
 		}
 	}
 
+	private static final Set<DecisionType> DENY_RULE_POSSIBLE_DECISIONS = Collections.unmodifiableSet(EnumSet.of(DecisionType.DENY, DecisionType.NOT_APPLICABLE, DecisionType.INDETERMINATE));
+	private static final Set<DecisionType> PERMIT_RULE_POSSIBLE_DECISIONS = Collections.unmodifiableSet(EnumSet.of(DecisionType.PERMIT, DecisionType.NOT_APPLICABLE, DecisionType.INDETERMINATE));
+
 	private static final BooleanEvaluator TRUE_CONDITION = context -> {
 		LOGGER.debug("Condition null -> True");
 		return true;
@@ -394,6 +401,60 @@ public final class RuleEvaluator implements Decidable
 		return this.decisionResultFactory.getDecisionType();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * A Rule may only return its Effect, NotApplicable or Indeterminate.
+	 */
+	@Override
+	public Set<DecisionType> getPossibleDecisions()
+	{
+		return getEffect() == EffectType.DENY ? DENY_RULE_POSSIBLE_DECISIONS : PERMIT_RULE_POSSIBLE_DECISIONS;
+	}
+
+	/**
+	 * Get evaluator of the rule's Target
+	 *
+	 * @return Target evaluator ({@link TargetEvaluators#MATCH_ALL_TARGET_EVALUATOR} if the rule has no Target)
+	 */
+	public BooleanEvaluator getTargetEvaluator()
+	{
+		return this.targetEvaluator;
+	}
+
+	/**
+	 * Get evaluator of the rule's Condition
+	 *
+	 * @return Condition evaluator (evaluating to True if the rule has no Condition)
+	 */
+	public BooleanEvaluator getConditionEvaluator()
+	{
+		return this.conditionEvaluator;
+	}
+
+	/**
+	 * Is the rule's condition undefined or always True, i.e. is the rule applicable whenever its Target matches?
+	 *
+	 * @return true iff the condition is undefined or equivalent to constant True
+	 */
+	public boolean isConditionAlwaysTrue()
+	{
+		return this.conditionEvaluator == TRUE_CONDITION || this.conditionEvaluator == ConditionEvaluators.TRUE_CONDITION;
+	}
+
+	/**
+	 * Is the rule never applicable, i.e. the rule's Target never matches or the condition always evaluates to False, as found out by partial evaluation (see
+	 * {@link org.ow2.authzforce.core.pdp.impl.PartialEvaluation})?
+	 * <p>
+	 * Such a rule always evaluates to NotApplicable, therefore may be removed from the enclosing Policy.
+	 *
+	 * @return true iff the rule is never applicable
+	 */
+	public boolean isNeverApplicable()
+	{
+		return this.targetEvaluator == TargetEvaluators.MATCH_NONE_TARGET_EVALUATOR || this.conditionEvaluator == ConditionEvaluators.FALSE_CONDITION;
+	}
+
 	/**
 	 * Is the rule always applicable, i.e. applies to all requests, i.e. the rule's Target matches all, and the condition is undefined or always evaluates to True?
 	 * <p>
@@ -446,7 +507,7 @@ public final class RuleEvaluator implements Decidable
 	{
 		try
 		{
-			if (!targetEvaluator.evaluate(context))
+			if (!BatchItemEvaluationContext.evaluate(targetEvaluator, context))
 			{
 				LOGGER.debug("{}/Target -> No-match", this);
 				final DecisionResult result = DecisionResults.SIMPLE_NOT_APPLICABLE;
@@ -477,7 +538,7 @@ public final class RuleEvaluator implements Decidable
 		final boolean isConditionTrue;
 		try
 		{
-			isConditionTrue = conditionEvaluator.evaluate(context);
+			isConditionTrue = BatchItemEvaluationContext.evaluate(conditionEvaluator, context);
 		} catch (final IndeterminateEvaluationException e)
 		{
 			/*
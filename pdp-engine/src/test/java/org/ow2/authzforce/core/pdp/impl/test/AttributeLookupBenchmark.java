@@ -0,0 +1,119 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.AttributeFqns;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.AttributeSlotIndex;
+import org.ow2.authzforce.core.pdp.impl.IndividualDecisionRequestContext;
+import org.ow2.authzforce.xacml.identifiers.XacmlAttributeCategory;
+
+/**
+ * JMH comparison of the two ways AttributeDesignators get a request attribute from {@link IndividualDecisionRequestContext}: by slot ({@link AttributeSlotIndex}), and by name in the
+ * named attribute map (hashing of the {@link AttributeFqn} and datatype check).
+ * <p>
+ * Not part of the default test suite ({@link MainTest}) as it takes about a minute; run it with:
+ * 
+ * <pre>
+ * mvn test -Dtest=AttributeLookupBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttributeLookupBenchmark
+{
+	/**
+	 * Number of attributes in the request, all of them used in policies (therefore with a slot)
+	 */
+	@Param({ "5", "50" })
+	public int attributeCount;
+
+	private IndividualDecisionRequestContext context;
+	private AttributeFqn lookedUpAttributeFqn;
+	private int lookedUpAttributeSlot;
+
+	@Setup
+	public void setUp()
+	{
+		final AttributeSlotIndex attributeSlotIndex = new AttributeSlotIndex();
+		final Map<AttributeFqn, AttributeBag<?>> namedAttributes = new HashMap<>();
+		for (int i = 0; i < attributeCount; i++)
+		{
+			final AttributeFqn attributeFqn = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_3_0_RESOURCE.value(), Optional.empty(), "urn:example:attribute:" + i);
+			final int slot = attributeSlotIndex.register(attributeFqn, StandardDatatypes.STRING);
+			namedAttributes.put(attributeFqn, Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue("value" + i)));
+			/*
+			 * Look up an attribute in the middle of the request, equal to the key in the map but not the same instance, like AttributeFqns in policies and requests
+			 */
+			if (i == attributeCount / 2)
+			{
+				lookedUpAttributeFqn = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_3_0_RESOURCE.value(), Optional.empty(), "urn:example:attribute:" + i);
+				lookedUpAttributeSlot = slot;
+			}
+		}
+
+		context = new IndividualDecisionRequestContext(namedAttributes, null, false, attributeSlotIndex);
+	}
+
+	@Benchmark
+	public AttributeBag<StringValue> slotLookup()
+	{
+		return context.getNamedAttributeValue(lookedUpAttributeSlot);
+	}
+
+	@Benchmark
+	public AttributeBag<StringValue> mapLookup() throws IndeterminateEvaluationException
+	{
+		return context.getNamedAttributeValue(lookedUpAttributeFqn, StandardDatatypes.STRING);
+	}
+
+	@Test
+	public void runBenchmarks() throws RunnerException
+	{
+		new Runner(new OptionsBuilder().include(AttributeLookupBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.AttributeFqns;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.AttributeSelectorExpression;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValue;
+import org.ow2.authzforce.core.pdp.api.value.Bag;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.IntegerValue;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.api.value.XPathValue;
+import org.ow2.authzforce.core.pdp.impl.AttributeSlotIndex;
+import org.ow2.authzforce.core.pdp.impl.IndividualDecisionRequestContext;
+import org.ow2.authzforce.xacml.identifiers.XacmlAttributeCategory;
+import org.ow2.authzforce.xacml.identifiers.XacmlAttributeId;
+
+/**
+ * Tests of attribute slots ({@link AttributeSlotIndex}) and named attribute storage in {@link IndividualDecisionRequestContext}
+ */
+public class IndividualDecisionRequestContextTest
+{
+	private static final AttributeFqn SUBJECT_ID = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_1_0_ACCESS_SUBJECT.value(), Optional.empty(),
+			XacmlAttributeId.XACML_1_0_SUBJECT_ID.value());
+	private static final AttributeFqn RESOURCE_ID = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_3_0_RESOURCE.value(), Optional.empty(),
+			XacmlAttributeId.XACML_1_0_RESOURCE_ID.value());
+
+	private static final class ConsumedAttributeCollector implements EvaluationContext.Listener
+	{
+		private final List<AttributeFqn> consumedAttributes = new ArrayList<>();
+
+		@Override
+		public <AV extends AttributeValue> void namedAttributeValueProduced(final AttributeFqn attributeFqn, final AttributeBag<AV> value)
+		{
+			// not tested
+		}
+
+		@Override
+		public <AV extends AttributeValue> void namedAttributeValueConsumed(final AttributeFqn attributeFqn, final AttributeBag<AV> value)
+		{
+			consumedAttributes.add(attributeFqn);
+		}
+
+		@Override
+		public <AV extends AttributeValue> void attributeSelectorResultProduced(final AttributeSelectorExpression<AV> attributeSelector,
+				final Optional<AttributeBag<XPathValue>> contextSelectorValue, final Bag<AV> result)
+		{
+			// not tested
+		}
+
+		@Override
+		public <AV extends AttributeValue> void attributeSelectorResultConsumed(final AttributeSelectorExpression<AV> attributeSelector, final Bag<AV> value)
+		{
+			// not tested
+		}
+	}
+
+	@Test
+	public void testRequestAttributeInSlot()
+	{
+		final AttributeSlotIndex index = new AttributeSlotIndex();
+		final int slot = index.register(SUBJECT_ID, StandardDatatypes.STRING);
+		assertEquals(slot, index.register(SUBJECT_ID, StandardDatatypes.STRING));
+		final AttributeBag<StringValue> subjectIds = Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue("alice"));
+		final IndividualDecisionRequestContext ctx = new IndividualDecisionRequestContext(Collections.singletonMap(SUBJECT_ID, subjectIds), null, false, index);
+		final ConsumedAttributeCollector listener = new ConsumedAttributeCollector();
+		ctx.putListener(ConsumedAttributeCollector.class, listener);
+		assertSame(subjectIds, ctx.getNamedAttributeValue(slot));
+		assertEquals(Collections.singletonList(SUBJECT_ID), listener.consumedAttributes);
+	}
+
+	@Test(expected = IndeterminateEvaluationException.class)
+	public void testDatatypeConflictNotInSlot() throws IndeterminateEvaluationException
+	{
+		final AttributeSlotIndex index = new AttributeSlotIndex();
+		final int slot = index.register(SUBJECT_ID, StandardDatatypes.STRING);
+		final IndividualDecisionRequestContext ctx = new IndividualDecisionRequestContext(
+				Collections.singletonMap(SUBJECT_ID, Bags.singletonAttributeBag(StandardDatatypes.INTEGER, IntegerValue.valueOf(1))), null, false, index);
+		assertNull(ctx.getNamedAttributeValue(slot));
+		// fallback to map
+		ctx.getNamedAttributeValue(SUBJECT_ID, StandardDatatypes.STRING);
+	}
+
+	@Test
+	public void testProducedAttributeInSlot()
+	{
+		final AttributeSlotIndex index = new AttributeSlotIndex();
+		final int slot = index.register(RESOURCE_ID, StandardDatatypes.STRING);
+		final IndividualDecisionRequestContext ctx = new IndividualDecisionRequestContext(null, null, false, index);
+		assertNull(ctx.getNamedAttributeValue(slot));
+		final AttributeBag<StringValue> resourceIds = Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue("doc"));
+		ctx.putNamedAttributeValueIfAbsent(RESOURCE_ID, resourceIds);
+		assertSame(resourceIds, ctx.getNamedAttributeValue(slot));
+	}
+
+	@Test
+	public void testSlotRegisteredAfterContextCreation() throws IndeterminateEvaluationException
+	{
+		final AttributeSlotIndex index = new AttributeSlotIndex();
+		index.register(SUBJECT_ID, StandardDatatypes.STRING);
+		final AttributeBag<StringValue> resourceIds = Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue("doc"));
+		final IndividualDecisionRequestContext ctx = new IndividualDecisionRequestContext(Collections.singletonMap(RESOURCE_ID, resourceIds), null, false, index);
+		final int slot = index.register(RESOURCE_ID, StandardDatatypes.STRING);
+		assertNull(ctx.getNamedAttributeValue(slot));
+		assertSame(resourceIds, ctx.getNamedAttributeValue(RESOURCE_ID, StandardDatatypes.STRING));
+	}
+
+	@Test
+	public void testRequestAttributesNotModified() throws IndeterminateEvaluationException
+	{
+		final AttributeBag<StringValue> subjectIds = Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue("alice"));
+		final Map<AttributeFqn, AttributeBag<?>> requestAttributes = new HashMap<>();
+		requestAttributes.put(SUBJECT_ID, subjectIds);
+		final IndividualDecisionRequestContext ctx = new IndividualDecisionRequestContext(requestAttributes, null, false);
+		final AttributeBag<StringValue> resourceIds = Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue("doc"));
+		assertTrue(ctx.putNamedAttributeValueIfAbsent(RESOURCE_ID, resourceIds));
+		assertFalse(ctx.putNamedAttributeValueIfAbsent(SUBJECT_ID, resourceIds));
+		assertFalse(ctx.putNamedAttributeValueIfAbsent(RESOURCE_ID, subjectIds));
+
+		assertEquals(Collections.singletonMap(SUBJECT_ID, subjectIds), requestAttributes);
+		assertSame(subjectIds, ctx.getNamedAttributeValue(SUBJECT_ID, StandardDatatypes.STRING));
+		assertSame(resourceIds, ctx.getNamedAttributeValue(RESOURCE_ID, StandardDatatypes.STRING));
+
+		final Map<AttributeFqn, AttributeBag<?>> ctxAttributes = new HashMap<>();
+		final Iterator<Entry<AttributeFqn, AttributeBag<?>>> ctxAttributeIterator = ctx.getNamedAttributes();
+		while (ctxAttributeIterator.hasNext())
+		{
+			final Entry<AttributeFqn, AttributeBag<?>> attribute = ctxAttributeIterator.next();
+			assertNull(ctxAttributes.put(attribute.getKey(), attribute.getValue()));
+		}
+
+		assertEquals(2, ctxAttributes.size());
+		assertSame(subjectIds, ctxAttributes.get(SUBJECT_ID));
+		assertSame(resourceIds, ctxAttributes.get(RESOURCE_ID));
+	}
+}
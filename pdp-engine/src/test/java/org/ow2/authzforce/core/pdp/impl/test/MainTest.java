@@ -22,6 +22,8 @@ import org.junit.BeforeClass;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
+import org.ow2.authzforce.core.pdp.impl.test.cache.CoreDecisionCacheTest;
+import org.ow2.authzforce.core.pdp.impl.test.cache.RelevantAttributesDecisionCacheTest;
 import org.ow2.authzforce.core.pdp.impl.test.func.BagFunctionsTest;
 import org.ow2.authzforce.core.pdp.impl.test.func.DateTimeArithmeticFunctionsTest;
 import org.ow2.authzforce.core.pdp.impl.test.func.EqualityFunctionsTest;
@@ -53,7 +55,9 @@ import org.slf4j.LoggerFactory;
 @RunWith(Suite.class)
 @SuiteClasses(value = { EqualityFunctionsTest.class, NumericArithmeticFunctionsTest.class, StringConversionFunctionsTest.class, NumericConversionFunctionsTest.class, LogicalFunctionsTest.class,
 		NumericComparisonFunctionsTest.class, DateTimeArithmeticFunctionsTest.class, NonNumericComparisonFunctionsTest.class, StringFunctionsTest.class, BagFunctionsTest.class,
-		SetFunctionsTest.class, HigherOrderFunctionsTest.class, RegExpBasedFunctionsTest.class, SpecialMatchFunctionsTest.class, StandardJavaTypeToXacmlAttributeDatatypeConversionTest.class })
+		SetFunctionsTest.class, HigherOrderFunctionsTest.class, RegExpBasedFunctionsTest.class, SpecialMatchFunctionsTest.class, StandardJavaTypeToXacmlAttributeDatatypeConversionTest.class,
+		CoreDecisionCacheTest.class, RelevantAttributesDecisionCacheTest.class, IndividualDecisionRequestContextTest.class, PolicyMapTest.class,
+		PolicyEvaluatorsTest.class })
 public class MainTest
 {
 	/**
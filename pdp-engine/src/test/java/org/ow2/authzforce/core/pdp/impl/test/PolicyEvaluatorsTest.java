@@ -0,0 +1,115 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Optional;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.value.StandardAttributeValueFactories;
+import org.ow2.authzforce.core.pdp.impl.combining.StandardCombiningAlgorithm;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
+import org.ow2.authzforce.core.pdp.impl.policy.PolicyEvaluators;
+import org.ow2.authzforce.xacml.Xacml3JaxbHelper;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Policy;
+
+/**
+ * Tests of the scope of VariableDefinitions when creating Policy evaluators with {@link PolicyEvaluators}: a Policy's VariableDefinitions must not be visible to the next Policy parsed with the same
+ * {@link ExpressionFactory}, whether the Policy is valid or not
+ */
+public class PolicyEvaluatorsTest
+{
+	private static final String VARIABLE_ID = "v";
+
+	private ExpressionFactory expressionFactory;
+
+	private static Policy policy(final String id, final String content) throws JAXBException
+	{
+		return (Policy) Xacml3JaxbHelper.createXacml3Unmarshaller().unmarshal(new StringReader("<Policy xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicyId='" + id
+		        + "' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-overrides'><Target/>" + content + "</Policy>"));
+	}
+
+	private static String variableDefinition()
+	{
+		return "<VariableDefinition VariableId='" + VARIABLE_ID + "'><AttributeValue DataType='http://www.w3.org/2001/XMLSchema#boolean'>true</AttributeValue></VariableDefinition>";
+	}
+
+	private static String rule(final String conditionVariableId)
+	{
+		return "<Rule RuleId='r' Effect='Permit'><Condition><VariableReference VariableId='" + conditionVariableId + "'/></Condition></Rule>";
+	}
+
+	private void assertInvalid(final Policy policy, final String expectedErrorMessagePart)
+	{
+		try
+		{
+			PolicyEvaluators.getInstance(policy, null, null, expressionFactory, StandardCombiningAlgorithm.REGISTRY);
+			fail("Invalid policy accepted: " + policy.getPolicyId());
+		}
+		catch (final IllegalArgumentException e)
+		{
+			String messages = e.getMessage();
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause())
+			{
+				messages += " / " + cause.getMessage();
+			}
+
+			assertTrue("Unexpected error: " + messages, messages.contains(expectedErrorMessagePart));
+		}
+	}
+
+	@Before
+	public void setUp() throws IllegalArgumentException, IOException
+	{
+		expressionFactory = new DepthLimitingExpressionFactory(StandardAttributeValueFactories.getRegistry(false, Optional.empty()),
+		        StandardFunction.getRegistry(false, StandardAttributeValueFactories.BIG_INTEGER), null, 10, false, false);
+	}
+
+	@Test
+	public void testVariableOfValidPolicyNotInNextPolicy() throws JAXBException
+	{
+		assertEquals("P1", PolicyEvaluators.getInstance(policy("P1", variableDefinition() + rule(VARIABLE_ID)), null, null, expressionFactory, StandardCombiningAlgorithm.REGISTRY)
+		        .getPolicyId());
+		assertNull(expressionFactory.getVariableExpression(VARIABLE_ID));
+		assertInvalid(policy("P2", rule(VARIABLE_ID)), "VariableId=" + VARIABLE_ID + " unknown");
+	}
+
+	@Test
+	public void testVariableOfInvalidPolicyNotInNextPolicy() throws JAXBException
+	{
+		// the VariableDefinition is added before the invalid Rule is found
+		assertInvalid(policy("P1", variableDefinition() + rule("undefined")), "VariableId=undefined unknown");
+		assertNull(expressionFactory.getVariableExpression(VARIABLE_ID));
+		// same VariableId must not be reported as duplicate
+		assertEquals("P2", PolicyEvaluators.getInstance(policy("P2", variableDefinition() + rule(VARIABLE_ID)), null, null, expressionFactory, StandardCombiningAlgorithm.REGISTRY)
+		        .getPolicyId());
+		assertInvalid(policy("P3", rule(VARIABLE_ID)), "VariableId=" + VARIABLE_ID + " unknown");
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyVersion;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyVersionPatterns;
+import org.ow2.authzforce.core.pdp.impl.policy.PolicyMap;
+import org.ow2.authzforce.core.pdp.impl.policy.PolicyVersions;
+
+/**
+ * Tests of policy reference resolution by {@link PolicyMap} and {@link PolicyVersions}: (memoized) results must be the same as checking each version against the version patterns, from latest to
+ * earliest (XACML core spec §5.10)
+ */
+public class PolicyMapTest
+{
+	private static final String POLICY_ID = "P";
+
+	/*
+	 * Versions 1.0 (and 1.0.0 to check that versions with different number of components are not mixed up) to 3.9.9
+	 */
+	private static PolicyMap<String> newPolicyMap(final List<PolicyVersion> versions)
+	{
+		final Map<PolicyVersion, String> policiesByVersion = new HashMap<>();
+		for (int major = 1; major <= 3; major++)
+		{
+			for (int minor = 0; minor < 10; minor++)
+			{
+				policiesByVersion.put(new PolicyVersion(major + "." + minor), POLICY_ID + "#" + major + "." + minor);
+				for (int patch = 0; patch < 10; patch++)
+				{
+					policiesByVersion.put(new PolicyVersion(major + "." + minor + "." + patch), POLICY_ID + "#" + major + "." + minor + "." + patch);
+				}
+			}
+		}
+
+		versions.addAll(policiesByVersion.keySet());
+		Collections.sort(versions, Collections.reverseOrder());
+		return new PolicyMap<>(Collections.singletonMap(POLICY_ID, policiesByVersion));
+	}
+
+	/*
+	 * Reference: latest version matching all patterns
+	 */
+	private static PolicyVersion getLatestMatching(final List<PolicyVersion> latestToEarliestVersions, final PolicyVersionPatterns versionPatterns)
+	{
+		for (final PolicyVersion version : latestToEarliestVersions)
+		{
+			if (versionPatterns.matchVersion(version) && versionPatterns.matchEarliestVersion(version) && versionPatterns.matchLatestVersion(version))
+			{
+				return version;
+			}
+		}
+
+		return null;
+	}
+
+	private static String randomPattern(final Random random, final boolean literal)
+	{
+		if (random.nextInt(4) == 0)
+		{
+			return null;
+		}
+
+		final StringBuilder pattern = new StringBuilder(Integer.toString(random.nextInt(4)));
+		final int componentCount = random.nextInt(3);
+		for (int i = 0; i < componentCount; i++)
+		{
+			final int component = random.nextInt(literal ? 10 : 12);
+			pattern.append('.').append(component == 10 ? "*" : component == 11 ? "+" : Integer.toString(component));
+		}
+
+		return pattern.toString();
+	}
+
+	@Test
+	public void testSameResolutionAsLinearScan()
+	{
+		final List<PolicyVersion> versions = new ArrayList<>();
+		final PolicyMap<String> policyMap = newPolicyMap(versions);
+		final Random random = new Random(0);
+		for (int i = 0; i < 20000; i++)
+		{
+			final PolicyVersionPatterns versionPatterns;
+			try
+			{
+				versionPatterns = new PolicyVersionPatterns(randomPattern(random, random.nextBoolean()), randomPattern(random, random.nextBoolean()), randomPattern(random, random.nextBoolean()));
+			}
+			catch (final IllegalArgumentException e)
+			{
+				// patterns rejected as inconsistent
+				continue;
+			}
+
+			final PolicyVersion expectedVersion = getLatestMatching(versions, versionPatterns);
+			final Entry<PolicyVersion, String> actual = policyMap.get(POLICY_ID, Optional.of(versionPatterns));
+			if (expectedVersion == null)
+			{
+				assertNull("Wrong resolution of " + versionPatterns, actual);
+			}
+			else
+			{
+				assertEquals("Wrong resolution of " + versionPatterns, POLICY_ID + "#" + expectedVersion, actual.getValue());
+			}
+		}
+	}
+
+	@Test
+	public void testMemoizedResolution()
+	{
+		final PolicyMap<String> policyMap = newPolicyMap(new ArrayList<>());
+		final Entry<PolicyVersion, String> resolution = policyMap.get(POLICY_ID, Optional.of(new PolicyVersionPatterns("2.+", null, "2.5")));
+		assertEquals(POLICY_ID + "#2.5", resolution.getValue());
+		// different instance of equal patterns
+		assertSame(resolution, policyMap.get(POLICY_ID, Optional.of(new PolicyVersionPatterns("2.+", null, "2.5"))));
+		assertEquals(POLICY_ID + "#2.4.9", policyMap.get(POLICY_ID, Optional.of(new PolicyVersionPatterns("2.+", null, "2.4.9"))).getValue());
+		assertNull(policyMap.get(POLICY_ID, Optional.of(new PolicyVersionPatterns("4.+", null, null))));
+		assertNull(policyMap.get(POLICY_ID, Optional.of(new PolicyVersionPatterns("4.+", null, null))));
+		assertNull(policyMap.get("unknown", Optional.of(new PolicyVersionPatterns("2.+", null, null))));
+	}
+
+	@Test
+	public void testEmptyVersions()
+	{
+		final PolicyVersions<String> policyVersions = new PolicyVersions<>(Collections.emptyMap());
+		assertNull(policyVersions.getLatest(Optional.empty()));
+		assertNull(policyVersions.getLatest(Optional.of(new PolicyVersionPatterns("1.0", null, null))));
+	}
+}
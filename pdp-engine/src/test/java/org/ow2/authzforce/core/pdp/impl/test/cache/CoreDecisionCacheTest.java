@@ -0,0 +1,194 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFqns;
+import org.ow2.authzforce.core.pdp.api.DecisionRequest;
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.api.DecisionResults;
+import org.ow2.authzforce.core.pdp.api.ImmutableDecisionRequest;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.cache.CoreDecisionCache;
+import org.ow2.authzforce.xacml.identifiers.XacmlAttributeCategory;
+import org.ow2.authzforce.xacml.identifiers.XacmlAttributeId;
+import org.ow2.authzforce.xacml.identifiers.XacmlStatusCode;
+
+/**
+ * Tests of {@link CoreDecisionCache}
+ */
+public class CoreDecisionCacheTest
+{
+	private static DecisionRequest newRequest(final String subjectId)
+	{
+		return ImmutableDecisionRequest.getInstance(Collections.singletonMap(
+				AttributeFqns.newInstance(XacmlAttributeCategory.XACML_1_0_ACCESS_SUBJECT.value(), Optional.empty(), XacmlAttributeId.XACML_1_0_SUBJECT_ID.value()),
+				Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue(subjectId))), null, false);
+	}
+
+	private static final DecisionResult INDETERMINATE = DecisionResults.newIndeterminate(DecisionType.PERMIT,
+			new IndeterminateEvaluationException("test", XacmlStatusCode.PROCESSING_ERROR.value()), null);
+
+	@Test
+	public void testGetPut()
+	{
+		final CoreDecisionCache cache = new CoreDecisionCache(100, 0, 0, 0, true, false);
+		final DecisionRequest req = newRequest("alice");
+		assertNull(cache.get(req, null));
+		cache.put(req, DecisionResults.SIMPLE_PERMIT, null);
+		// equal but different request instance
+		assertSame(DecisionResults.SIMPLE_PERMIT, cache.get(newRequest("alice"), null));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.size());
+		// weight = 1 + one attribute value
+		assertEquals(2, cache.getWeightedSize());
+	}
+
+	@Test
+	public void testNegativeCaching()
+	{
+		final CoreDecisionCache cache = new CoreDecisionCache(100, 0, 0, 0, false, false);
+		cache.put(newRequest("alice"), DecisionResults.SIMPLE_NOT_APPLICABLE, null);
+		cache.put(newRequest("bob"), INDETERMINATE, null);
+		assertEquals(0, cache.size());
+
+		final CoreDecisionCache negativeCache = new CoreDecisionCache(100, 0, 0, 0, true, true);
+		negativeCache.put(newRequest("alice"), DecisionResults.SIMPLE_NOT_APPLICABLE, null);
+		negativeCache.put(newRequest("bob"), INDETERMINATE, null);
+		assertSame(DecisionResults.SIMPLE_NOT_APPLICABLE, negativeCache.get(newRequest("alice"), null));
+		assertSame(INDETERMINATE, negativeCache.get(newRequest("bob"), null));
+	}
+
+	@Test
+	public void testTimeToLive() throws InterruptedException
+	{
+		// positive results never expire, negative results expire after 1s
+		final CoreDecisionCache cache = new CoreDecisionCache(100, 0, 0, 1, true, false);
+		cache.put(newRequest("alice"), DecisionResults.SIMPLE_PERMIT, null);
+		cache.put(newRequest("bob"), DecisionResults.SIMPLE_NOT_APPLICABLE, null);
+		assertNotNull(cache.get(newRequest("bob"), null));
+		Thread.sleep(1100);
+		assertNull(cache.get(newRequest("bob"), null));
+		assertNotNull(cache.get(newRequest("alice"), null));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testMaxEntries()
+	{
+		final int maxEntries = 100;
+		final CoreDecisionCache cache = new CoreDecisionCache(maxEntries, 0, 0, 0, true, false);
+		for (int i = 0; i < 10 * maxEntries; i++)
+		{
+			cache.put(newRequest("user" + i), DecisionResults.SIMPLE_PERMIT, null);
+			assertTrue("Max entries exceeded", cache.size() <= maxEntries);
+		}
+
+		assertEquals(maxEntries, cache.size());
+		assertEquals(9 * maxEntries, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testMaxWeight()
+	{
+		// each entry weighs 2
+		final CoreDecisionCache cache = new CoreDecisionCache(0, 50, 0, 0, true, false);
+		for (int i = 0; i < 100; i++)
+		{
+			cache.put(newRequest("user" + i), DecisionResults.SIMPLE_PERMIT, null);
+			assertTrue("Max weight exceeded", cache.getWeightedSize() <= 50);
+		}
+
+		assertEquals(25, cache.size());
+	}
+
+	@Test
+	public void testFrequentEntriesSurviveScan()
+	{
+		final int maxEntries = 100;
+		final CoreDecisionCache cache = new CoreDecisionCache(maxEntries, 0, 0, 0, true, false);
+		final List<DecisionRequest> hotRequests = new ArrayList<>();
+		for (int i = 0; i < maxEntries / 2; i++)
+		{
+			final DecisionRequest req = newRequest("hot" + i);
+			hotRequests.add(req);
+			cache.put(req, DecisionResults.SIMPLE_PERMIT, null);
+		}
+
+		for (int n = 0; n < 5; n++)
+		{
+			for (final DecisionRequest req : hotRequests)
+			{
+				assertNotNull(cache.get(req, null));
+			}
+		}
+
+		// burst of one-off requests, each requested once (miss) then cached
+		for (int i = 0; i < 10 * maxEntries; i++)
+		{
+			final DecisionRequest req = newRequest("cold" + i);
+			cache.get(req, null);
+			cache.put(req, DecisionResults.SIMPLE_DENY, null);
+		}
+
+		for (final DecisionRequest req : hotRequests)
+		{
+			assertSame("Frequently requested entry evicted by scan", DecisionResults.SIMPLE_PERMIT, cache.get(req, null));
+		}
+	}
+
+	@Test
+	public void testGetAllPutAll()
+	{
+		final CoreDecisionCache cache = new CoreDecisionCache(100, 0, 0, 0, false, false);
+		final Map<DecisionRequest, DecisionResult> results = new HashMap<>();
+		results.put(newRequest("alice"), DecisionResults.SIMPLE_PERMIT);
+		results.put(newRequest("bob"), DecisionResults.SIMPLE_DENY);
+		results.put(newRequest("carol"), DecisionResults.SIMPLE_NOT_APPLICABLE);
+		cache.putAll(results);
+		assertEquals(2, cache.size());
+
+		final List<DecisionRequest> requests = new ArrayList<>(results.keySet());
+		requests.add(newRequest("dave"));
+		final Map<DecisionRequest, DecisionResult> cachedResults = cache.getAll(requests);
+		assertEquals(2, cachedResults.size());
+		assertSame(DecisionResults.SIMPLE_PERMIT, cachedResults.get(newRequest("alice")));
+		assertSame(DecisionResults.SIMPLE_DENY, cachedResults.get(newRequest("bob")));
+		assertEquals(2, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.impl.test.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.AttributeFqns;
+import org.ow2.authzforce.core.pdp.api.DecisionRequest;
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.api.DecisionResults;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.ImmutableDecisionRequest;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.value.AttributeBag;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.IndividualDecisionRequestContext;
+import org.ow2.authzforce.core.pdp.impl.cache.RelevantAttributesDecisionCache;
+import org.ow2.authzforce.xacml.identifiers.XacmlAttributeCategory;
+import org.ow2.authzforce.xacml.identifiers.XacmlAttributeId;
+
+/**
+ * Tests of {@link RelevantAttributesDecisionCache}
+ */
+public class RelevantAttributesDecisionCacheTest
+{
+	private static final AttributeFqn SUBJECT_ID = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_1_0_ACCESS_SUBJECT.value(), Optional.empty(),
+			XacmlAttributeId.XACML_1_0_SUBJECT_ID.value());
+	private static final AttributeFqn ACTION_ID = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_3_0_ACTION.value(), Optional.empty(), XacmlAttributeId.XACML_1_0_ACTION_ID.value());
+	private static final AttributeFqn RESOURCE_ID = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_3_0_RESOURCE.value(), Optional.empty(),
+			XacmlAttributeId.XACML_1_0_RESOURCE_ID.value());
+	private static final AttributeFqn TRACE_ID = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_3_0_ENVIRONMENT.value(), Optional.empty(), "urn:example:trace-id");
+	private static final AttributeFqn CURRENT_TIME = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_3_0_ENVIRONMENT.value(), Optional.empty(), "urn:example:current-time");
+
+	private static DecisionRequest newRequest(final String subjectId, final String actionId, final String traceId)
+	{
+		final Map<AttributeFqn, AttributeBag<?>> attributes = new HashMap<>();
+		attributes.put(SUBJECT_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue(subjectId)));
+		if (actionId != null)
+		{
+			attributes.put(ACTION_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue(actionId)));
+		}
+
+		attributes.put(TRACE_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue(traceId)));
+		return ImmutableDecisionRequest.getInstance(attributes, null, false);
+	}
+
+	/*
+	 * Gets attribute from context, or sets it to empty bag if missing like the PDP's attribute provider
+	 */
+	private static AttributeBag<StringValue> getAttribute(final EvaluationContext ctx, final AttributeFqn attributeFqn) throws IndeterminateEvaluationException
+	{
+		final AttributeBag<StringValue> contextBag = ctx.getNamedAttributeValue(attributeFqn, StandardDatatypes.STRING);
+		if (contextBag != null)
+		{
+			return contextBag;
+		}
+
+		final AttributeBag<StringValue> emptyBag = Bags.emptyAttributeBag(StandardDatatypes.STRING, null);
+		ctx.putNamedAttributeValueIfAbsent(attributeFqn, emptyBag);
+		return emptyBag;
+	}
+
+	/*
+	 * Simulates a policy that reads the subject-id, then the action-id only if subject is 'admin', and the resource-id (never in request, set by attribute provider if missing)
+	 */
+	private static DecisionResult evaluate(final RelevantAttributesDecisionCache cache, final DecisionRequest request) throws IndeterminateEvaluationException
+	{
+		final EvaluationContext ctx = new IndividualDecisionRequestContext(request.getNamedAttributes(), null, false);
+		final DecisionResult cachedResult = cache.get(request, ctx);
+		if (cachedResult != null)
+		{
+			return cachedResult;
+		}
+
+		final DecisionResult result;
+		final AttributeBag<StringValue> subjectIds = getAttribute(ctx, SUBJECT_ID);
+		if (subjectIds.contains(new StringValue("admin")))
+		{
+			result = getAttribute(ctx, ACTION_ID).isEmpty() ? DecisionResults.SIMPLE_NOT_APPLICABLE : DecisionResults.SIMPLE_PERMIT;
+		}
+		else
+		{
+			result = DecisionResults.SIMPLE_DENY;
+		}
+
+		getAttribute(ctx, RESOURCE_ID);
+
+		cache.put(request, result, ctx);
+		return result;
+	}
+
+	@Test
+	public void testIrrelevantAttributesIgnored() throws IndeterminateEvaluationException
+	{
+		final RelevantAttributesDecisionCache cache = new RelevantAttributesDecisionCache(100, 0, false);
+		assertSame(DecisionResults.SIMPLE_DENY, evaluate(cache, newRequest("bob", "read", "trace1")));
+		assertEquals(1, cache.getMissCount());
+		// only subject-id (and absence of resource-id) relevant for non-admin subjects
+		assertSame(DecisionResults.SIMPLE_DENY, evaluate(cache, newRequest("bob", "write", "trace2")));
+		assertSame(DecisionResults.SIMPLE_DENY, evaluate(cache, newRequest("bob", null, "trace3")));
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.size());
+
+		// action-id relevant for admin
+		assertSame(DecisionResults.SIMPLE_PERMIT, evaluate(cache, newRequest("admin", "read", "trace4")));
+		assertSame(DecisionResults.SIMPLE_PERMIT, evaluate(cache, newRequest("admin", "read", "trace5")));
+		assertSame(DecisionResults.SIMPLE_NOT_APPLICABLE, evaluate(cache, newRequest("admin", null, "trace6")));
+		assertEquals(3, cache.getMissCount());
+		assertEquals(3, cache.getHitCount());
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testAbsentAttributeIsPartOfKey() throws IndeterminateEvaluationException
+	{
+		final RelevantAttributesDecisionCache cache = new RelevantAttributesDecisionCache(100, 0, false);
+		evaluate(cache, newRequest("bob", "read", "trace1"));
+
+		// same request but with resource-id (absent in first request) -> miss
+		final Map<AttributeFqn, AttributeBag<?>> attributes = new HashMap<>(newRequest("bob", "read", "trace1").getNamedAttributes());
+		attributes.put(RESOURCE_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue("doc")));
+		assertNull(cache.get(ImmutableDecisionRequest.getInstance(attributes, null, false), null));
+	}
+
+	@Test
+	public void testMaxEntries() throws IndeterminateEvaluationException
+	{
+		final RelevantAttributesDecisionCache cache = new RelevantAttributesDecisionCache(2, 0, false);
+		evaluate(cache, newRequest("alice", "read", "trace1"));
+		evaluate(cache, newRequest("bob", "read", "trace2"));
+		// alice most recently used
+		evaluate(cache, newRequest("alice", "read", "trace3"));
+		evaluate(cache, newRequest("carol", "read", "trace4"));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertNull(cache.get(newRequest("bob", "read", "trace5"), null));
+		assertSame(DecisionResults.SIMPLE_DENY, cache.get(newRequest("alice", "read", "trace6"), null));
+	}
+
+	@Test
+	public void testResultDependingOnNonRequestValuesNotCached() throws IndeterminateEvaluationException
+	{
+		final RelevantAttributesDecisionCache cache = new RelevantAttributesDecisionCache(100, 0, false);
+		final DecisionRequest request = newRequest("bob", "read", "trace1");
+
+		// value issued by the PDP (e.g. current time)
+		final Map<AttributeFqn, AttributeBag<?>> pdpIssuedAndRequestAttributes = new HashMap<>(request.getNamedAttributes());
+		pdpIssuedAndRequestAttributes.put(CURRENT_TIME, Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue("10:00:00")));
+		final EvaluationContext ctx = new IndividualDecisionRequestContext(pdpIssuedAndRequestAttributes, null, false);
+		assertNull(cache.get(request, ctx));
+		getAttribute(ctx, SUBJECT_ID);
+		getAttribute(ctx, CURRENT_TIME);
+		cache.put(request, DecisionResults.SIMPLE_PERMIT, ctx);
+		assertEquals(0, cache.size());
+
+		// value fetched by an attribute provider
+		final EvaluationContext ctx2 = new IndividualDecisionRequestContext(request.getNamedAttributes(), null, false);
+		assertNull(cache.get(request, ctx2));
+		getAttribute(ctx2, SUBJECT_ID);
+		ctx2.putNamedAttributeValueIfAbsent(RESOURCE_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue("doc")));
+		getAttribute(ctx2, RESOURCE_ID);
+		cache.put(request, DecisionResults.SIMPLE_PERMIT, ctx2);
+		assertEquals(0, cache.size());
+		assertNull(cache.get(newRequest("bob", "read", "trace2"), null));
+	}
+
+	@Test
+	public void testNoRecordingNoCaching()
+	{
+		final RelevantAttributesDecisionCache cache = new RelevantAttributesDecisionCache(100, 0, false);
+		final DecisionRequest request = newRequest("bob", "read", "trace1");
+		// no get() before put() -> consumed attributes unknown
+		cache.put(request, DecisionResults.SIMPLE_DENY, new IndividualDecisionRequestContext(request.getNamedAttributes(), null, false));
+		assertEquals(0, cache.size());
+	}
+}
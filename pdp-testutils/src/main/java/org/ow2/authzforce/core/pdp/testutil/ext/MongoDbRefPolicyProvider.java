@@ -21,11 +21,27 @@
 package org.ow2.authzforce.core.pdp.testutil.ext;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
-
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 
 import org.jongo.Jongo;
@@ -38,38 +54,53 @@ import org.ow2.authzforce.core.pdp.api.combining.CombiningAlgRegistry;
 import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
 import org.ow2.authzforce.core.pdp.api.policy.BaseStaticRefPolicyProvider;
 import org.ow2.authzforce.core.pdp.api.policy.CloseableRefPolicyProvider;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyRefsMetadata;
 import org.ow2.authzforce.core.pdp.api.policy.PolicyVersion;
-import org.ow2.authzforce.core.pdp.api.policy.PolicyVersionPattern;
 import org.ow2.authzforce.core.pdp.api.policy.PolicyVersionPatterns;
+import org.ow2.authzforce.core.pdp.api.policy.PrimaryPolicyMetadata;
 import org.ow2.authzforce.core.pdp.api.policy.StaticTopLevelPolicyElementEvaluator;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
+import org.ow2.authzforce.core.pdp.impl.policy.ObservableRefPolicyProvider;
 import org.ow2.authzforce.core.pdp.impl.policy.PolicyEvaluators;
+import org.ow2.authzforce.core.pdp.impl.policy.PolicyVersions;
 import org.ow2.authzforce.core.pdp.testutil.ext.xmlns.MongoDBBasedPolicyProviderDescriptor;
 import org.ow2.authzforce.xacml.identifiers.XacmlNodeName;
 import org.ow2.authzforce.xacml.identifiers.XacmlStatusCode;
 import org.ow2.authzforce.xacml.identifiers.XacmlVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xml.sax.InputSource;
 
 import com.mongodb.MongoClient;
 import com.mongodb.ServerAddress;
 
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.IdReferenceType;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.Policy;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.PolicySet;
 
 /**
- * 
+ *
  * Policy provider that retrieves policies (given a Policy(Set)IdReference) from documents in a MongoDB-hosted collection. The document structure must correspond (be mappable) to {@link PolicyPojo} ,
  * where the 'type' is either "{urn:oasis:names:tc:xacml:3.0:core:schema:wd-17}Policy" for XACML 3.0 Policies or "{urn:oasis:names:tc:xacml:3.0:core:schema:wd-17}PolicySet" for XACML 3.0 PolicySets,
  * the 'id' is the XACML Policy(Set)Id, the 'version' is the XACML Policy(Set)'s Version, and the 'content' property holds the actual XACML Policy(Set) document - depending on 'type' - as plain text
  * XML.
  * <p>
- * This policy provider does not support Policy(Set)IdReferences with LatestVersion and EarliestVersion attributes.
+ * All the versions of a given policy are retrieved with a single query, and the reference is resolved to the latest version matching the Version, EarliestVersion and LatestVersion patterns of the
+ * reference (XACML core spec §5.10). The retrieved versions and the compiled policies are cached - by policy type, ID and version -, so that a policy referenced multiple times is queried, parsed and
+ * compiled once. When a PolicySet is compiled, all the policies it references - directly or indirectly - are prefetched with one query per level of references (instead of one query per reference).
  * <p>
- * TODO: performance optimization: cache results of {@link #get(org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType, String, Optional, Deque)} to avoid repetitive requests to database
- * server
- * 
+ * The policy documents are assumed immutable for a given version (a modified policy is stored as a new version, as recommended by XACML). The collection may be polled for new/removed versions of the
+ * policies retrieved so far (see {@link #pollChanges()}), in which case the corresponding cached policies are invalidated and the {@link ObservableRefPolicyProvider.ChangeListener}s notified. The
+ * periodic polling (if 'policyChangePollingIntervalMillis' is positive) starts when the first listener is registered, e.g. by a PDP engine with hot reload enabled (PDP configuration parameter
+ * 'policyReloadDelayMillis'), which reloads the policies on change.
+ *
  */
-public final class MongoDbRefPolicyProvider extends BaseStaticRefPolicyProvider
+public final class MongoDbRefPolicyProvider extends BaseStaticRefPolicyProvider implements ObservableRefPolicyProvider
 {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MongoDbRefPolicyProvider.class);
+
+	private static final IllegalArgumentException NULL_CHANGE_LISTENER_ARGUMENT_EXCEPTION = new IllegalArgumentException("Undefined policy change listener");
+
 	/**
 	 * 'type' value expected in policy documents stored in database for XACML Policies
 	 */
@@ -87,12 +118,27 @@ public final class MongoDbRefPolicyProvider extends BaseStaticRefPolicyProvider
 	private final ExpressionFactory expressionFactory;
 	private final CombiningAlgRegistry combiningAlgRegistry;
 
+	/*
+	 * Cached versions of the policies (resp. policy sets) retrieved so far, by Policy(Set)Id
+	 */
+	private final ConcurrentMap<String, CachedPolicyVersions> cachedPolicies = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, CachedPolicyVersions> cachedPolicySets = new ConcurrentHashMap<>();
+
+	private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+	/*
+	 * Polling of the changes, started when the first ChangeListener is registered (nothing to poll for otherwise), if changePollingIntervalMillis > 0
+	 */
+	private final long changePollingIntervalMillis;
+	private ScheduledExecutorService changePoller = null;
+	private volatile boolean closed = false;
+
 	private MongoDbRefPolicyProvider(final String id, final ServerAddress serverAddress, final String dbName, final String collectionName, final XmlnsFilteringParserFactory xacmlParserFactory,
-	        final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry, final int maxPolicySetRefDepth)
+	        final ExpressionFactory expressionFactory, final CombiningAlgRegistry combiningAlgRegistry, final int maxPolicySetRefDepth, final long changePollingIntervalMillis)
 	{
 		super(maxPolicySetRefDepth);
 		assert id != null && !id.isEmpty() && dbName != null && !dbName.isEmpty() && collectionName != null && !collectionName.isEmpty() && xacmlParserFactory != null && expressionFactory != null
-		        && combiningAlgRegistry != null;
+		        && combiningAlgRegistry != null && changePollingIntervalMillis >= 0;
 
 		this.id = id;
 		this.dbClient = new MongoClient(serverAddress);
@@ -101,11 +147,12 @@ public final class MongoDbRefPolicyProvider extends BaseStaticRefPolicyProvider
 		this.xacmlParserFactory = xacmlParserFactory;
 		this.expressionFactory = expressionFactory;
 		this.combiningAlgRegistry = combiningAlgRegistry;
+		this.changePollingIntervalMillis = changePollingIntervalMillis;
 	}
 
 	/**
 	 * Factory
-	 * 
+	 *
 	 */
 	public static class Factory extends CloseableRefPolicyProvider.Factory<MongoDBBasedPolicyProviderDescriptor>
 	{
@@ -146,7 +193,7 @@ public final class MongoDbRefPolicyProvider extends BaseStaticRefPolicyProvider
 
 			final ServerAddress serverAddress = new ServerAddress(conf.getServerHost(), conf.getServerPort());
 			return new MongoDbRefPolicyProvider(conf.getId(), serverAddress, conf.getDbName(), conf.getCollectionName(), xmlParserFactory, expressionFactory, combiningAlgRegistry,
-			        maxPolicySetRefDepth);
+			        maxPolicySetRefDepth, conf.getPolicyChangePollingIntervalMillis());
 		}
 
 	}
@@ -154,6 +201,17 @@ public final class MongoDbRefPolicyProvider extends BaseStaticRefPolicyProvider
 	@Override
 	public void close() throws IOException
 	{
+		synchronized (this)
+		{
+			closed = true;
+			if (changePoller != null)
+			{
+				changePoller.shutdownNow();
+			}
+		}
+
+		cachedPolicies.clear();
+		cachedPolicySets.clear();
 		this.dbClient.close();
 	}
 
@@ -171,69 +229,123 @@ public final class MongoDbRefPolicyProvider extends BaseStaticRefPolicyProvider
 		}
 	}
 
-	private PolicyQueryResult getJaxbPolicyElement(final String policyTypeId, final String policyId, final Optional<PolicyVersionPatterns> policyPolicyVersionPatterns)
-	        throws IndeterminateEvaluationException
+	/*
+	 * Versions of a given policy in database, with the ones compiled so far, and the ones parsed by a prefetch but not compiled yet
+	 */
+	private static final class CachedPolicyVersions
 	{
-		final Optional<PolicyVersionPattern> versionPattern;
-		if (policyPolicyVersionPatterns.isPresent())
+		private final PolicyVersions<PolicyPojo> documents;
+		private final ConcurrentMap<PolicyVersion, StaticTopLevelPolicyElementEvaluator> compiledPolicies = new ConcurrentHashMap<>();
+		private final ConcurrentMap<PolicyVersion, PolicyQueryResult> prefetchedPolicies = new ConcurrentHashMap<>();
+
+		private CachedPolicyVersions(final PolicyVersions<PolicyPojo> documents)
 		{
-			/*
-			 * TODO: the following code does not support LatestVersion and EarliestVersion patterns. Beware that comparing versions (XACML VersionType) to each other - and also comparing literal
-			 * version to version pattern (XACML VersionMatchType) - is NOT the same as sorting strings in lexicographical order or matching standard regular expressions. Indeed, in XACML, a version
-			 * (VersionType) is a sequence/array of decimal numbers actually, therefore it relies on number comparison; and version pattern use wildcard characters '*' and '+' with a special meaning
-			 * that is different from PCRE or other regex engines.
-			 */
-			final PolicyVersionPatterns nonNullPolicyPolicyVersionPatterns = policyPolicyVersionPatterns.get();
-			if (nonNullPolicyPolicyVersionPatterns.getEarliestVersionPattern().isPresent())
-			{
-				throw new IllegalArgumentException("PolicyProvider '" + id + "': EarliestVersion in input policy reference is not supported");
-			}
+			this.documents = documents;
+		}
 
-			if (nonNullPolicyPolicyVersionPatterns.getLatestVersionPattern().isPresent())
+		private Entry<PolicyVersion, PolicyPojo> getLatest(final Optional<PolicyVersionPatterns> policyVersionPatterns)
+		{
+			return documents.getLatest(policyVersionPatterns);
+		}
+
+		private boolean refersTo(final TopLevelPolicyElementType policyType, final String policyId)
+		{
+			for (final StaticTopLevelPolicyElementEvaluator compiledPolicy : compiledPolicies.values())
 			{
-				throw new IllegalArgumentException("PolicyProvider '" + id + "': LatestVersion in input policy reference is not supported");
+				final Optional<PolicyRefsMetadata> policyRefsMetadata = compiledPolicy.getPolicyRefsMetadata();
+				if (policyRefsMetadata.isPresent())
+				{
+					for (final PrimaryPolicyMetadata refPolicy : policyRefsMetadata.get().getRefPolicies())
+					{
+						if (refPolicy.getType() == policyType && refPolicy.getId().equals(policyId))
+						{
+							return true;
+						}
+					}
+				}
 			}
 
-			versionPattern = nonNullPolicyPolicyVersionPatterns.getVersionPattern();
+			return false;
 		}
-		else
+	}
+
+	private ConcurrentMap<String, CachedPolicyVersions> getCache(final String policyTypeId)
+	{
+		return policyTypeId.equals(XACML3_POLICY_TYPE_ID) ? cachedPolicies : cachedPolicySets;
+	}
+
+	/*
+	 * Index the versions of each policy of a given type in the policy documents retrieved from database, including the policies without any version in database (policy IDs not found)
+	 */
+	private Map<String, PolicyVersions<PolicyPojo>> newPolicyVersionsById(final String policyTypeId, final Collection<String> policyIds, final Iterable<PolicyPojo> policyPojos)
+	{
+		final Map<String, Map<PolicyVersion, PolicyPojo>> policyPojosByIdAndVersion = new HashMap<>();
+		for (final String policyId : policyIds)
 		{
-			versionPattern = Optional.empty();
+			policyPojosByIdAndVersion.put(policyId, new HashMap<>());
 		}
 
-		final PolicyPojo policyPOJO;
-		/*
-		 * TODO: the following code will get any policy version that matches the policy type, id and optional VersionMatch. It may be smarter to always get the latest if there are multiple matches.
-		 * But this adds complexity as mentioned in previous TODO comment.
-		 */
-		if (versionPattern.isPresent())
+		for (final PolicyPojo policyPojo : policyPojos)
 		{
-			final PolicyVersionPattern nonNullVersionPattern = versionPattern.get();
-			final PolicyVersion versionLiteral = nonNullVersionPattern.toLiteral();
-			if (versionLiteral != null)
+			if (!policyTypeId.equals(policyPojo.getType()))
 			{
-				policyPOJO = policyCollection.findOne("{type: #, id: #, version: #}", policyTypeId, policyId, versionLiteral.toString()).as(PolicyPojo.class);
+				continue;
 			}
-			else
+
+			final Map<PolicyVersion, PolicyPojo> policyPojosByVersion = policyPojosByIdAndVersion.get(policyPojo.getId());
+			if (policyPojosByVersion == null)
 			{
-				/*
-				 * versionPattern is not a literal/constant version (contains wildcard '*' or '+') -> convert to PCRE regex for MongoDB server-side evaluation
-				 */
-				final String regex = "^" + nonNullVersionPattern.toRegex() + "$";
-				policyPOJO = policyCollection.findOne("{type: #, id: #, version: { $regex: # }}", policyTypeId, policyId, regex).as(PolicyPojo.class);
+				continue;
+			}
+
+			final PolicyVersion policyVersion;
+			try
+			{
+				policyVersion = new PolicyVersion(policyPojo.getVersion());
+			}
+			catch (final IllegalArgumentException e)
+			{
+				LOGGER.warn("PolicyProvider '{}': ignoring policy document {} retrieved from database: invalid 'version'", id, policyPojo.toStringWithoutContent(), e);
+				continue;
+			}
+
+			final PolicyPojo duplicate = policyPojosByVersion.putIfAbsent(policyVersion, policyPojo);
+			if (duplicate != null)
+			{
+				LOGGER.warn("PolicyProvider '{}': ignoring policy document {} retrieved from database: same type, id and version as {}", id, policyPojo.toStringWithoutContent(),
+				        duplicate.toStringWithoutContent());
 			}
 		}
-		else
+
+		final Map<String, PolicyVersions<PolicyPojo>> policyVersionsById = new HashMap<>();
+		for (final Entry<String, Map<PolicyVersion, PolicyPojo>> policyPojosById : policyPojosByIdAndVersion.entrySet())
 		{
-			// no version pattern specified
-			policyPOJO = policyCollection.findOne("{type: #, id: #}", policyTypeId, policyId).as(PolicyPojo.class);
+			policyVersionsById.put(policyPojosById.getKey(), new PolicyVersions<>(policyPojosById.getValue()));
 		}
 
-		if (policyPOJO == null)
+		return policyVersionsById;
+	}
+
+	/*
+	 * Get all versions of a policy, from cache, else from database (one query)
+	 */
+	private CachedPolicyVersions getPolicyVersions(final String policyTypeId, final String policyId)
+	{
+		final ConcurrentMap<String, CachedPolicyVersions> cache = getCache(policyTypeId);
+		final CachedPolicyVersions cachedPolicyVersions = cache.get(policyId);
+		if (cachedPolicyVersions != null)
 		{
-			return null;
+			return cachedPolicyVersions;
 		}
 
+		final Iterable<PolicyPojo> policyPojos = policyCollection.find("{type: #, id: #}", policyTypeId, policyId).as(PolicyPojo.class);
+		final CachedPolicyVersions newCachedPolicyVersions = new CachedPolicyVersions(newPolicyVersionsById(policyTypeId, Collections.singleton(policyId), policyPojos).get(policyId));
+		final CachedPolicyVersions concurrentlyCachedPolicyVersions = cache.putIfAbsent(policyId, newCachedPolicyVersions);
+		return concurrentlyCachedPolicyVersions == null ? newCachedPolicyVersions : concurrentlyCachedPolicyVersions;
+	}
+
+	private PolicyQueryResult parse(final PolicyPojo policyPOJO) throws IndeterminateEvaluationException
+	{
 		final XmlnsFilteringParser xacmlParser;
 		try
 		{
@@ -263,18 +375,190 @@ public final class MongoDbRefPolicyProvider extends BaseStaticRefPolicyProvider
 		return new PolicyQueryResult(policyPOJO, resultJaxbObj, xacmlParser.getNamespacePrefixUriMap());
 	}
 
+	/*
+	 * Get the policy document matching a policy reference, parsed (or null if no match), unless it is already compiled, in which case the compiled policy is returned
+	 */
+	private Object getJaxbPolicyElementOrCompiledPolicy(final CachedPolicyVersions cachedPolicyVersions, final Optional<PolicyVersionPatterns> policyPolicyVersionPatterns)
+	        throws IndeterminateEvaluationException
+	{
+		final Entry<PolicyVersion, PolicyPojo> policyPojo = cachedPolicyVersions.getLatest(policyPolicyVersionPatterns);
+		if (policyPojo == null)
+		{
+			return null;
+		}
+
+		final StaticTopLevelPolicyElementEvaluator compiledPolicy = cachedPolicyVersions.compiledPolicies.get(policyPojo.getKey());
+		if (compiledPolicy != null)
+		{
+			return compiledPolicy;
+		}
+
+		final PolicyQueryResult prefetchedPolicy = cachedPolicyVersions.prefetchedPolicies.remove(policyPojo.getKey());
+		return prefetchedPolicy == null ? parse(policyPojo.getValue()) : prefetchedPolicy;
+	}
+
+	private StaticTopLevelPolicyElementEvaluator cacheCompiledPolicy(final CachedPolicyVersions cachedPolicyVersions, final StaticTopLevelPolicyElementEvaluator compiledPolicy)
+	{
+		final StaticTopLevelPolicyElementEvaluator concurrentlyCompiledPolicy = cachedPolicyVersions.compiledPolicies.putIfAbsent(compiledPolicy.getPolicyVersion(), compiledPolicy);
+		return concurrentlyCompiledPolicy == null ? compiledPolicy : concurrentlyCompiledPolicy;
+	}
+
+	private static Optional<PolicyVersionPatterns> getVersionPatterns(final IdReferenceType policyRef)
+	{
+		return policyRef.getVersion() == null && policyRef.getEarliestVersion() == null && policyRef.getLatestVersion() == null ? Optional.empty()
+		        : Optional.of(new PolicyVersionPatterns(policyRef.getVersion(), policyRef.getEarliestVersion(), policyRef.getLatestVersion()));
+	}
+
+	/*
+	 * Add the Policy(Set)IdReferences in a PolicySet (including nested PolicySets) to policyRefs/policySetRefs
+	 */
+	private static void collectPolicyRefs(final PolicySet policySet, final List<IdReferenceType> policyRefs, final List<IdReferenceType> policySetRefs)
+	{
+		for (final Serializable policyChildElt : policySet.getPolicySetsAndPoliciesAndPolicySetIdReferences())
+		{
+			if (policyChildElt instanceof PolicySet)
+			{
+				collectPolicyRefs((PolicySet) policyChildElt, policyRefs, policySetRefs);
+			}
+			else if (policyChildElt instanceof JAXBElement)
+			{
+				final JAXBElement<?> jaxbPolicyChildElt = (JAXBElement<?>) policyChildElt;
+				final String eltNameLocalPart = jaxbPolicyChildElt.getName().getLocalPart();
+				if (eltNameLocalPart.equals(XacmlNodeName.POLICY_ID_REFERENCE.value()))
+				{
+					policyRefs.add((IdReferenceType) jaxbPolicyChildElt.getValue());
+				}
+				else if (eltNameLocalPart.equals(XacmlNodeName.POLICYSET_ID_REFERENCE.value()))
+				{
+					policySetRefs.add((IdReferenceType) jaxbPolicyChildElt.getValue());
+				}
+			}
+		}
+	}
+
+	private static Set<String> getUncachedPolicyIds(final List<IdReferenceType> policyRefs, final ConcurrentMap<String, CachedPolicyVersions> cache)
+	{
+		final Set<String> policyIds = new HashSet<>();
+		for (final IdReferenceType policyRef : policyRefs)
+		{
+			if (!cache.containsKey(policyRef.getValue()))
+			{
+				policyIds.add(policyRef.getValue());
+			}
+		}
+
+		return policyIds;
+	}
+
+	/*
+	 * Prefetch all the policies referenced by a PolicySet - directly or indirectly - that are not cached yet, with one query per level of references; and parse the referenced PolicySets to get
+	 * their own references (the parsing results are kept for their compilation).
+	 */
+	private void prefetchReferencedPolicies(final PolicySet policySet)
+	{
+		List<IdReferenceType> policyRefs = new ArrayList<>();
+		List<IdReferenceType> policySetRefs = new ArrayList<>();
+		collectPolicyRefs(policySet, policyRefs, policySetRefs);
+		final Set<String> visitedPolicySets = new HashSet<>();
+		visitedPolicySets.add(policySet.getPolicySetId() + '#' + policySet.getVersion());
+		while (!policyRefs.isEmpty() || !policySetRefs.isEmpty())
+		{
+			final Set<String> uncachedPolicyIds = getUncachedPolicyIds(policyRefs, cachedPolicies);
+			final Set<String> uncachedPolicySetIds = getUncachedPolicyIds(policySetRefs, cachedPolicySets);
+			if (!uncachedPolicyIds.isEmpty() || !uncachedPolicySetIds.isEmpty())
+			{
+				final List<PolicyPojo> policyPojos = new ArrayList<>();
+				for (final PolicyPojo policyPojo : policyCollection.find("{$or: [{type: #, id: {$in: #}}, {type: #, id: {$in: #}}]}", XACML3_POLICY_TYPE_ID, uncachedPolicyIds,
+				        XACML3_POLICYSET_TYPE_ID, uncachedPolicySetIds).as(PolicyPojo.class))
+				{
+					policyPojos.add(policyPojo);
+				}
+
+				LOGGER.debug("PolicyProvider '{}': prefetched {} policy document(s) referenced by PolicySet '{}'", id, policyPojos.size(), policySet.getPolicySetId());
+				for (final Entry<String, PolicyVersions<PolicyPojo>> policyVersions : newPolicyVersionsById(XACML3_POLICY_TYPE_ID, uncachedPolicyIds, policyPojos).entrySet())
+				{
+					cachedPolicies.putIfAbsent(policyVersions.getKey(), new CachedPolicyVersions(policyVersions.getValue()));
+				}
+
+				for (final Entry<String, PolicyVersions<PolicyPojo>> policyVersions : newPolicyVersionsById(XACML3_POLICYSET_TYPE_ID, uncachedPolicySetIds, policyPojos).entrySet())
+				{
+					cachedPolicySets.putIfAbsent(policyVersions.getKey(), new CachedPolicyVersions(policyVersions.getValue()));
+				}
+			}
+
+			/*
+			 * Next level of references: the ones in the referenced PolicySets
+			 */
+			final List<IdReferenceType> nextPolicyRefs = new ArrayList<>();
+			final List<IdReferenceType> nextPolicySetRefs = new ArrayList<>();
+			for (final IdReferenceType policySetRef : policySetRefs)
+			{
+				final CachedPolicyVersions cachedPolicyVersions = cachedPolicySets.get(policySetRef.getValue());
+				if (cachedPolicyVersions == null)
+				{
+					// invalidated in the meantime
+					continue;
+				}
+
+				final Entry<PolicyVersion, PolicyPojo> policyPojo;
+				try
+				{
+					policyPojo = cachedPolicyVersions.getLatest(getVersionPatterns(policySetRef));
+				}
+				catch (final IllegalArgumentException e)
+				{
+					// invalid version patterns, reported when the reference is resolved
+					continue;
+				}
+
+				if (policyPojo == null || !visitedPolicySets.add(policySetRef.getValue() + '#' + policyPojo.getKey()) || cachedPolicyVersions.compiledPolicies.containsKey(policyPojo.getKey()))
+				{
+					continue;
+				}
+
+				PolicyQueryResult parsedPolicySet = cachedPolicyVersions.prefetchedPolicies.get(policyPojo.getKey());
+				if (parsedPolicySet == null)
+				{
+					try
+					{
+						parsedPolicySet = parse(policyPojo.getValue());
+					}
+					catch (final IndeterminateEvaluationException e)
+					{
+						// reported when the reference is resolved
+						continue;
+					}
+
+					cachedPolicyVersions.prefetchedPolicies.putIfAbsent(policyPojo.getKey(), parsedPolicySet);
+				}
+
+				if (parsedPolicySet.resultJaxbObj instanceof PolicySet)
+				{
+					collectPolicyRefs((PolicySet) parsedPolicySet.resultJaxbObj, nextPolicyRefs, nextPolicySetRefs);
+				}
+			}
+
+			policyRefs = nextPolicyRefs;
+			policySetRefs = nextPolicySetRefs;
+		}
+	}
+
 	@Override
 	public StaticTopLevelPolicyElementEvaluator getPolicy(final String policyId, final Optional<PolicyVersionPatterns> policyPolicyVersionPatterns) throws IndeterminateEvaluationException
 	{
-		/*
-		 * TODO: use a policy cache and check it before requesting the database.
-		 */
-		final PolicyQueryResult xmlParsingResult = getJaxbPolicyElement(XACML3_POLICY_TYPE_ID, policyId, policyPolicyVersionPatterns);
-		if (xmlParsingResult == null)
+		final CachedPolicyVersions cachedPolicyVersions = getPolicyVersions(XACML3_POLICY_TYPE_ID, policyId);
+		final Object jaxbPolicyElementOrCompiledPolicy = getJaxbPolicyElementOrCompiledPolicy(cachedPolicyVersions, policyPolicyVersionPatterns);
+		if (jaxbPolicyElementOrCompiledPolicy == null)
 		{
 			return null;
 		}
 
+		if (jaxbPolicyElementOrCompiledPolicy instanceof StaticTopLevelPolicyElementEvaluator)
+		{
+			return (StaticTopLevelPolicyElementEvaluator) jaxbPolicyElementOrCompiledPolicy;
+		}
+
+		final PolicyQueryResult xmlParsingResult = (PolicyQueryResult) jaxbPolicyElementOrCompiledPolicy;
 		final PolicyPojo policyPOJO = xmlParsingResult.policyPojo;
 		final Object jaxbPolicyOrPolicySetObj = xmlParsingResult.resultJaxbObj;
 		final Map<String, String> nsPrefixUriMap = xmlParsingResult.xmlnsToPrefixMap;
@@ -300,63 +584,226 @@ public final class MongoDbRefPolicyProvider extends BaseStaticRefPolicyProvider
 			        + " retrieved from database is not consistent with 'version'. Actual Version: " + contentPolicyVersion + " (corrupted database?).", XacmlStatusCode.PROCESSING_ERROR.value());
 		}
 
+		final StaticTopLevelPolicyElementEvaluator compiledPolicy;
 		try
 		{
-			return PolicyEvaluators.getInstance(jaxbPolicy, null, nsPrefixUriMap, expressionFactory, combiningAlgRegistry);
+			compiledPolicy = PolicyEvaluators.getInstance(jaxbPolicy, null, nsPrefixUriMap, expressionFactory, combiningAlgRegistry);
 		}
 		catch (final IllegalArgumentException e)
 		{
 			throw new IllegalArgumentException("Invalid Policy in 'content' of the policy document " + policyPOJO + " retrieved from database", e);
 		}
+
+		return cacheCompiledPolicy(cachedPolicyVersions, compiledPolicy);
 	}
 
 	@Override
 	public StaticTopLevelPolicyElementEvaluator getPolicySet(final String policyId, final Optional<PolicyVersionPatterns> policyPolicyVersionPatterns, final Deque<String> policySetRefChain)
 	        throws IndeterminateEvaluationException
 	{
-		/**
-		 * TODO: use a policy cache and check it before requesting the database. If we found a matching policy in cache, and it is a policyset, we would check the depth of policy references as well:
-		 * <p>
-		 * Utils.appendAndCheckPolicyRefChain(newPolicySetRefChain, cachedPolicy.getExtraPolicyMetadata().getLongestPolicyRefChain(), maxPolicySetRefDepth);
-		 */
-		final PolicyQueryResult xmlParsingResult = getJaxbPolicyElement(XACML3_POLICYSET_TYPE_ID, policyId, policyPolicyVersionPatterns);
-		if (xmlParsingResult == null)
+		final CachedPolicyVersions cachedPolicyVersions = getPolicyVersions(XACML3_POLICYSET_TYPE_ID, policyId);
+		final Object jaxbPolicyElementOrCompiledPolicy = getJaxbPolicyElementOrCompiledPolicy(cachedPolicyVersions, policyPolicyVersionPatterns);
+		if (jaxbPolicyElementOrCompiledPolicy == null)
 		{
 			return null;
 		}
 
-		final PolicyPojo policyPOJO = xmlParsingResult.policyPojo;
-		final Object jaxbPolicyOrPolicySetObj = xmlParsingResult.resultJaxbObj;
-		final Map<String, String> nsPrefixUriMap = xmlParsingResult.xmlnsToPrefixMap;
-		if (!(jaxbPolicyOrPolicySetObj instanceof PolicySet))
+		final StaticTopLevelPolicyElementEvaluator policySet;
+		if (jaxbPolicyElementOrCompiledPolicy instanceof StaticTopLevelPolicyElementEvaluator)
 		{
-			throw new IndeterminateEvaluationException("PolicyProvider " + id + ": 'content' of the policy document " + policyPOJO
-			        + " retrieved from database is not consistent with 'type' (expected: PolicySet). Actual content type: " + jaxbPolicyOrPolicySetObj.getClass() + " (corrupted database?).",
-			        XacmlStatusCode.PROCESSING_ERROR.value());
+			policySet = (StaticTopLevelPolicyElementEvaluator) jaxbPolicyElementOrCompiledPolicy;
 		}
+		else
+		{
+			final PolicyQueryResult xmlParsingResult = (PolicyQueryResult) jaxbPolicyElementOrCompiledPolicy;
+			final PolicyPojo policyPOJO = xmlParsingResult.policyPojo;
+			final Object jaxbPolicyOrPolicySetObj = xmlParsingResult.resultJaxbObj;
+			final Map<String, String> nsPrefixUriMap = xmlParsingResult.xmlnsToPrefixMap;
+			if (!(jaxbPolicyOrPolicySetObj instanceof PolicySet))
+			{
+				throw new IndeterminateEvaluationException("PolicyProvider " + id + ": 'content' of the policy document " + policyPOJO
+				        + " retrieved from database is not consistent with 'type' (expected: PolicySet). Actual content type: " + jaxbPolicyOrPolicySetObj.getClass() + " (corrupted database?).",
+				        XacmlStatusCode.PROCESSING_ERROR.value());
+			}
 
-		final PolicySet jaxbPolicySet = (PolicySet) jaxbPolicyOrPolicySetObj;
-		final String contentPolicyId = jaxbPolicySet.getPolicySetId();
-		if (!contentPolicyId.equals(policyPOJO.getId()))
+			final PolicySet jaxbPolicySet = (PolicySet) jaxbPolicyOrPolicySetObj;
+			final String contentPolicyId = jaxbPolicySet.getPolicySetId();
+			if (!contentPolicyId.equals(policyPOJO.getId()))
+			{
+				throw new IndeterminateEvaluationException("PolicyProvider " + id + ": PolicyId in 'content' of the policy document " + policyPOJO
+				        + " retrieved from database is not consistent with 'id'. Actual PolicyId: " + contentPolicyId + " (corrupted database?).", XacmlStatusCode.PROCESSING_ERROR.value());
+			}
+
+			final String contentPolicyVersion = jaxbPolicySet.getVersion();
+			if (!contentPolicyVersion.equals(policyPOJO.getVersion()))
+			{
+				throw new IndeterminateEvaluationException("PolicyProvider " + id + ": Version in 'content' of the policy document " + policyPOJO
+				        + " retrieved from database is not consistent with 'version'. Actual Version: " + contentPolicyVersion + " (corrupted database?).", XacmlStatusCode.PROCESSING_ERROR.value());
+			}
+
+			prefetchReferencedPolicies(jaxbPolicySet);
+
+			/*
+			 * The caller's policySetRefChain is passed on to detect reference loops (A -> B -> A) while compiling the nested references. The compiled PolicySet itself does not depend on it, so
+			 * it may be reused from any other reference, the depth being checked below in that case.
+			 */
+			final StaticTopLevelPolicyElementEvaluator compiledPolicySet;
+			try
+			{
+				compiledPolicySet = PolicyEvaluators.getInstanceStatic(jaxbPolicySet, null, nsPrefixUriMap, expressionFactory, combiningAlgRegistry, this, policySetRefChain);
+			}
+			catch (final IllegalArgumentException e)
+			{
+				throw new IndeterminateEvaluationException("Invalid PolicySet in 'content' of the policy document " + policyPOJO + " retrieved from database", XacmlStatusCode.PROCESSING_ERROR.value(),
+				        e);
+			}
+
+			policySet = cacheCompiledPolicy(cachedPolicyVersions, compiledPolicySet);
+		}
+
+		final Optional<PolicyRefsMetadata> policyRefsMetadata = policySet.getPolicyRefsMetadata();
+		if (policySetRefChain != null && policyRefsMetadata.isPresent())
 		{
-			throw new IndeterminateEvaluationException("PolicyProvider " + id + ": PolicyId in 'content' of the policy document " + policyPOJO
-			        + " retrieved from database is not consistent with 'id'. Actual PolicyId: " + contentPolicyId + " (corrupted database?).", XacmlStatusCode.PROCESSING_ERROR.value());
+			/*
+			 * check total policy ref depth, i.e. length of (policySetRefChain + policySet's longest (nested) policy ref chain) <= maxPolicySetRefDepth
+			 */
+			joinPolicyRefChains(policySetRefChain, policyRefsMetadata.get().getLongestPolicyRefChain());
 		}
 
-		final String contentPolicyVersion = jaxbPolicySet.getVersion();
-		if (!contentPolicyVersion.equals(policyPOJO.getVersion()))
+		return policySet;
+	}
+
+	/**
+	 * Checks whether the versions of the policies retrieved so far changed in database (new or removed versions), with one query per policy type; and if so, invalidates the corresponding cached
+	 * policies - including the compiled PolicySets referring to them - and notifies the registered {@link ObservableRefPolicyProvider.ChangeListener}s. Called periodically if the
+	 * 'policyChangePollingIntervalMillis' parameter is positive.
+	 *
+	 * @return number of changed policies
+	 */
+	public int pollChanges()
+	{
+		return pollChanges(TopLevelPolicyElementType.POLICY, XACML3_POLICY_TYPE_ID) + pollChanges(TopLevelPolicyElementType.POLICY_SET, XACML3_POLICYSET_TYPE_ID);
+	}
+
+	private int pollChanges(final TopLevelPolicyElementType policyType, final String policyTypeId)
+	{
+		final ConcurrentMap<String, CachedPolicyVersions> cache = getCache(policyTypeId);
+		final Set<String> cachedPolicyIds = new HashSet<>(cache.keySet());
+		if (cachedPolicyIds.isEmpty())
 		{
-			throw new IndeterminateEvaluationException("PolicyProvider " + id + ": Version in 'content' of the policy document " + policyPOJO
-			        + " retrieved from database is not consistent with 'version'. Actual Version: " + contentPolicyVersion + " (corrupted database?).", XacmlStatusCode.PROCESSING_ERROR.value());
+			return 0;
 		}
 
-		try
+		final Map<String, Set<String>> versionsById = new HashMap<>();
+		for (final PolicyPojo policyPojo : policyCollection.find("{type: #, id: {$in: #}}", policyTypeId, cachedPolicyIds).projection("{content: 0}").as(PolicyPojo.class))
 		{
-			return PolicyEvaluators.getInstanceStatic(jaxbPolicySet, null, nsPrefixUriMap, expressionFactory, combiningAlgRegistry, this, policySetRefChain);
+			versionsById.computeIfAbsent(policyPojo.getId(), k -> new HashSet<>()).add(policyPojo.getVersion());
 		}
-		catch (final IllegalArgumentException e)
+
+		int changeCount = 0;
+		for (final String policyId : cachedPolicyIds)
 		{
-			throw new IndeterminateEvaluationException("Invalid PolicySet in 'content' of the policy document " + policyPOJO + " retrieved from database", XacmlStatusCode.PROCESSING_ERROR.value(), e);
+			final CachedPolicyVersions cachedPolicyVersions = cache.get(policyId);
+			if (cachedPolicyVersions == null)
+			{
+				continue;
+			}
+
+			final Set<String> cachedVersions = new HashSet<>();
+			for (final Entry<PolicyVersion, PolicyPojo> cachedVersion : cachedPolicyVersions.documents)
+			{
+				cachedVersions.add(cachedVersion.getValue().getVersion());
+			}
+
+			final Set<String> versions = versionsById.getOrDefault(policyId, new HashSet<>());
+			if (!cachedVersions.equals(versions))
+			{
+				changeCount++;
+				invalidate(policyType, policyId);
+			}
 		}
+
+		return changeCount;
+	}
+
+	/**
+	 * Invalidates the cached versions of a given policy, and the compiled PolicySets referring to it; and notifies the registered {@link ObservableRefPolicyProvider.ChangeListener}s
+	 *
+	 * @param policyType
+	 *            type of changed policy
+	 * @param policyId
+	 *            Policy(Set)Id of changed policy
+	 */
+	public void invalidate(final TopLevelPolicyElementType policyType, final String policyId)
+	{
+		getCache(policyType == TopLevelPolicyElementType.POLICY ? XACML3_POLICY_TYPE_ID : XACML3_POLICYSET_TYPE_ID).remove(policyId);
+		cachedPolicySets.values().removeIf(cachedPolicySet -> cachedPolicySet.refersTo(policyType, policyId));
+		LOGGER.info("PolicyProvider '{}': {} '{}' changed in database", id, policyType, policyId);
+		for (final ChangeListener listener : changeListeners)
+		{
+			listener.policyChanged(policyType, policyId);
+		}
+	}
+
+	/**
+	 * Invalidates all cached policies, and notifies the registered {@link ObservableRefPolicyProvider.ChangeListener}s
+	 */
+	public void invalidateAll()
+	{
+		cachedPolicies.clear();
+		cachedPolicySets.clear();
+		for (final ChangeListener listener : changeListeners)
+		{
+			listener.allPoliciesChanged();
+		}
+	}
+
+	@Override
+	public void addChangeListener(final ChangeListener listener) throws IllegalArgumentException
+	{
+		if (listener == null)
+		{
+			throw NULL_CHANGE_LISTENER_ARGUMENT_EXCEPTION;
+		}
+
+		changeListeners.add(listener);
+		startChangePoller();
+	}
+
+	@Override
+	public void removeChangeListener(final ChangeListener listener)
+	{
+		changeListeners.remove(listener);
+	}
+
+	private synchronized void startChangePoller()
+	{
+		if (changePollingIntervalMillis == 0 || changePoller != null || closed)
+		{
+			return;
+		}
+
+		changePoller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "authzforce-mongodb-policy-poller-" + id);
+			thread.setDaemon(true);
+			return thread;
+		});
+		changePoller.scheduleWithFixedDelay(() -> {
+			try
+			{
+				pollChanges();
+			}
+			catch (final RuntimeException e)
+			{
+				if (closed)
+				{
+					// poll interrupted by close()
+					LOGGER.debug("PolicyProvider '{}': polling of the policy collection stopped", id, e);
+					return;
+				}
+
+				LOGGER.error("PolicyProvider '{}': failed to poll the policy collection for changes", id, e);
+			}
+		}, changePollingIntervalMillis, changePollingIntervalMillis, TimeUnit.MILLISECONDS);
 	}
 }
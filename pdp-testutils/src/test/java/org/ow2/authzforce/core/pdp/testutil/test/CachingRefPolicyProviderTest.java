@@ -0,0 +1,309 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.authzforce.core.pdp.api.EvaluationContext;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.io.XacmlJaxbParsingUtils;
+import org.ow2.authzforce.core.pdp.api.policy.PolicyVersionPatterns;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementEvaluator;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValueFactory;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValueFactoryRegistry;
+import org.ow2.authzforce.core.pdp.api.value.IntegerValue;
+import org.ow2.authzforce.core.pdp.api.value.StandardAttributeValueFactories;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringParseableValue;
+import org.ow2.authzforce.core.pdp.impl.combining.StandardCombiningAlgorithm;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.func.FunctionRegistry;
+import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
+import org.ow2.authzforce.core.pdp.impl.policy.CachingRefPolicyProvider;
+import org.ow2.authzforce.core.pdp.impl.policy.CoreRefPolicyProvider;
+import org.ow2.authzforce.core.pdp.impl.policy.ObservableRefPolicyProvider;
+
+/**
+ * Test of {@link CachingRefPolicyProvider} decorating a dynamic RefPolicyProvider that counts the policy reference resolutions: Policy P, referenced by PolicySet PS2, referenced by PolicySet PS1.
+ */
+public class CachingRefPolicyProviderTest
+{
+	private static final int MAX_POLICY_SET_REF_DEPTH = 3;
+
+	private static final String XACML_HEADER = "<?xml version='1.0' encoding='UTF-8'?>";
+
+	/*
+	 * Dynamic (non-static) provider resolving the policy references with a static one, counting the resolutions
+	 */
+	private static final class CountingRefPolicyProvider implements ObservableRefPolicyProvider
+	{
+		private final CoreRefPolicyProvider policyProvider;
+		private final AtomicInteger resolutionCount = new AtomicInteger(0);
+		private final List<ChangeListener> listeners = new ArrayList<>();
+		/*
+		 * Called after each resolution, before returning the result
+		 */
+		private volatile Runnable resolutionHook = () -> {
+		};
+
+		private CountingRefPolicyProvider(final CoreRefPolicyProvider policyProvider)
+		{
+			this.policyProvider = policyProvider;
+		}
+
+		@Override
+		public Deque<String> joinPolicyRefChains(final Deque<String> policyRefChain1, final List<String> policyRefChain2) throws IllegalArgumentException
+		{
+			return policyProvider.joinPolicyRefChains(policyRefChain1, policyRefChain2);
+		}
+
+		@Override
+		public TopLevelPolicyElementEvaluator get(final TopLevelPolicyElementType policyType, final String policyId, final Optional<PolicyVersionPatterns> policyVersionConstraints,
+		        final Deque<String> policySetRefChain, final EvaluationContext evaluationCtx) throws IllegalArgumentException, IndeterminateEvaluationException
+		{
+			resolutionCount.incrementAndGet();
+			final TopLevelPolicyElementEvaluator policy = policyProvider.get(policyType, policyId, policyVersionConstraints, policySetRefChain);
+			resolutionHook.run();
+			return policy;
+		}
+
+		@Override
+		public void addChangeListener(final ChangeListener listener)
+		{
+			listeners.add(listener);
+		}
+
+		@Override
+		public void removeChangeListener(final ChangeListener listener)
+		{
+			listeners.remove(listener);
+		}
+	}
+
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private ExpressionFactory expressionFactory;
+
+	private CountingRefPolicyProvider countingRefPolicyProvider;
+
+	private URL writePolicy(final String fileName, final String policy) throws IOException
+	{
+		final File file = tmpFolder.newFile(fileName);
+		Files.write(file.toPath(), (XACML_HEADER + policy).getBytes(StandardCharsets.UTF_8));
+		return file.toURI().toURL();
+	}
+
+	@Before
+	public void setUp() throws IOException
+	{
+		final AttributeValueFactoryRegistry valFactoryReg = StandardAttributeValueFactories.getRegistry(false, Optional.of(BigInteger.valueOf(Integer.MAX_VALUE)));
+		final AttributeValueFactory<?> intValFactory = valFactoryReg.getExtension(StandardDatatypes.INTEGER.getId());
+		final FunctionRegistry funcReg = StandardFunction.getRegistry(false, (StringParseableValue.Factory<IntegerValue>) intValFactory);
+		expressionFactory = new DepthLimitingExpressionFactory(valFactoryReg, funcReg, null, 0, false, false);
+		final List<URL> policyURLs = Arrays.asList(
+		        writePolicy("P.xml",
+		                "<Policy xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicyId='P' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-unless-permit'><Target/><Rule RuleId='permit' Effect='Permit'/></Policy>"),
+		        writePolicy("PS2.xml",
+		                "<PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='PS2' Version='1.0' PolicyCombiningAlgId='urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-unless-permit'><Target/><PolicyIdReference>P</PolicyIdReference></PolicySet>"),
+		        writePolicy("PS1.xml",
+		                "<PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='PS1' Version='1.0' PolicyCombiningAlgId='urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-unless-permit'><Target/><PolicySetIdReference>PS2</PolicySetIdReference></PolicySet>"));
+		countingRefPolicyProvider = new CountingRefPolicyProvider(CoreRefPolicyProvider.getInstance(policyURLs, false, XacmlJaxbParsingUtils.getXacmlParserFactory(false),
+		        MAX_POLICY_SET_REF_DEPTH, expressionFactory, StandardCombiningAlgorithm.REGISTRY));
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		expressionFactory.close();
+	}
+
+	private static Deque<String> chain(final String... policySetIds)
+	{
+		return new ArrayDeque<>(Arrays.asList(policySetIds));
+	}
+
+	@Test
+	public void testResolutionCached() throws IllegalArgumentException, IndeterminateEvaluationException, IOException
+	{
+		try (final CachingRefPolicyProvider cachingRefPolicyProvider = new CachingRefPolicyProvider(countingRefPolicyProvider, 60000))
+		{
+			final TopLevelPolicyElementEvaluator policy = cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY, "P", Optional.empty(), null, null);
+			assertNotNull(policy);
+			for (int i = 0; i < 10; i++)
+			{
+				assertSame(policy, cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY, "P", Optional.empty(), null, null));
+			}
+
+			assertEquals("Policy reference resolved more than once", 1, countingRefPolicyProvider.resolutionCount.get());
+
+			// different version constraints -> different cache entry
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY, "P", Optional.of(new PolicyVersionPatterns("1.*", null, null)), null, null);
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY, "P", Optional.of(new PolicyVersionPatterns("1.*", null, null)), null, null);
+			assertEquals(2, countingRefPolicyProvider.resolutionCount.get());
+
+			// not found -> not cached
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY, "unknown", Optional.empty(), null, null);
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY, "unknown", Optional.empty(), null, null);
+			assertEquals(4, countingRefPolicyProvider.resolutionCount.get());
+		}
+	}
+
+	@Test
+	public void testResolutionExpired() throws IllegalArgumentException, IndeterminateEvaluationException, IOException, InterruptedException
+	{
+		try (final CachingRefPolicyProvider cachingRefPolicyProvider = new CachingRefPolicyProvider(countingRefPolicyProvider, 100))
+		{
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY, "P", Optional.empty(), null, null);
+			Thread.sleep(200);
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY, "P", Optional.empty(), null, null);
+			assertEquals("Expired policy reference resolution reused", 2, countingRefPolicyProvider.resolutionCount.get());
+		}
+	}
+
+	@Test
+	public void testInvalidation() throws IllegalArgumentException, IndeterminateEvaluationException, IOException
+	{
+		try (final CachingRefPolicyProvider cachingRefPolicyProvider = new CachingRefPolicyProvider(countingRefPolicyProvider, 60000))
+		{
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY, "P", Optional.empty(), null, null);
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY_SET, "PS1", Optional.empty(), null, null);
+			assertEquals(2, countingRefPolicyProvider.resolutionCount.get());
+
+			// notified by the provider: invalidates P and PS1 (referring to P indirectly)
+			assertEquals(1, countingRefPolicyProvider.listeners.size());
+			countingRefPolicyProvider.listeners.get(0).policyChanged(TopLevelPolicyElementType.POLICY, "P");
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY, "P", Optional.empty(), null, null);
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY_SET, "PS1", Optional.empty(), null, null);
+			assertEquals(4, countingRefPolicyProvider.resolutionCount.get());
+
+			cachingRefPolicyProvider.invalidateAll();
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY, "P", Optional.empty(), null, null);
+			assertEquals(5, countingRefPolicyProvider.resolutionCount.get());
+		}
+	}
+
+	@Test
+	public void testResolutionNotCachedIfInvalidatedMeanwhile() throws Exception
+	{
+		try (final CachingRefPolicyProvider cachingRefPolicyProvider = new CachingRefPolicyProvider(countingRefPolicyProvider, 60000))
+		{
+			final CountDownLatch resolutionStarted = new CountDownLatch(1);
+			final CountDownLatch invalidationDone = new CountDownLatch(1);
+			countingRefPolicyProvider.resolutionHook = () -> {
+				resolutionStarted.countDown();
+				try
+				{
+					invalidationDone.await();
+				}
+				catch (final InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			};
+			final ExecutorService executor = Executors.newSingleThreadExecutor();
+			try
+			{
+				final Future<TopLevelPolicyElementEvaluator> resolution = executor
+				        .submit(() -> cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY, "P", Optional.empty(), null, null));
+				assertTrue("Resolution not started", resolutionStarted.await(10, TimeUnit.SECONDS));
+				// the policy changes while being resolved
+				countingRefPolicyProvider.listeners.get(0).policyChanged(TopLevelPolicyElementType.POLICY, "P");
+				invalidationDone.countDown();
+				assertNotNull(resolution.get(10, TimeUnit.SECONDS));
+			}
+			finally
+			{
+				executor.shutdownNow();
+			}
+
+			countingRefPolicyProvider.resolutionHook = () -> {
+			};
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY, "P", Optional.empty(), null, null);
+			assertEquals("Resolution cached despite invalidation during the resolution", 2, countingRefPolicyProvider.resolutionCount.get());
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY, "P", Optional.empty(), null, null);
+			assertEquals(2, countingRefPolicyProvider.resolutionCount.get());
+		}
+	}
+
+	@Test
+	public void testPolicySetRefChainCheckedOnCachedResolution() throws IllegalArgumentException, IndeterminateEvaluationException, IOException
+	{
+		try (final CachingRefPolicyProvider cachingRefPolicyProvider = new CachingRefPolicyProvider(countingRefPolicyProvider, 60000))
+		{
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY_SET, "PS1", Optional.empty(), chain("PS1"), null);
+			assertEquals(1, countingRefPolicyProvider.resolutionCount.get());
+
+			// PS0 -> PS1 -> PS2: OK (max depth = 3)
+			cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY_SET, "PS1", Optional.empty(), chain("PS0", "PS1"), null);
+			// PSA -> PSB -> PS1 -> PS2: too deep
+			try
+			{
+				cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY_SET, "PS1", Optional.empty(), chain("PSA", "PSB", "PS1"), null);
+				fail("Max PolicySet reference depth not enforced on cached resolution");
+			}
+			catch (final IllegalArgumentException e)
+			{
+				// expected
+			}
+
+			// PS2 -> PS1 -> PS2: loop
+			try
+			{
+				cachingRefPolicyProvider.get(TopLevelPolicyElementType.POLICY_SET, "PS1", Optional.empty(), chain("PS2", "PS1"), null);
+				fail("PolicySet reference loop not detected on cached resolution");
+			}
+			catch (final IllegalArgumentException e)
+			{
+				// expected
+			}
+
+			assertEquals(1, countingRefPolicyProvider.resolutionCount.get());
+		}
+	}
+}
@@ -22,7 +22,9 @@ import org.junit.BeforeClass;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
+import org.ow2.authzforce.core.pdp.testutil.test.conformance.ConformanceV3FromV2MandatoryCompiledTest;
 import org.ow2.authzforce.core.pdp.testutil.test.conformance.ConformanceV3FromV2MandatoryTest;
+import org.ow2.authzforce.core.pdp.testutil.test.conformance.ConformanceV3FromV2OptionalCompiledTest;
 import org.ow2.authzforce.core.pdp.testutil.test.conformance.ConformanceV3FromV2OptionalTest;
 import org.ow2.authzforce.core.pdp.testutil.test.conformance.ConformanceV3OthersTest;
 import org.ow2.authzforce.core.pdp.testutil.test.pep.cxf.EmbeddedPdpBasedAuthzInterceptorTest;
@@ -35,8 +37,13 @@ import org.slf4j.LoggerFactory;
  * 
  */
 @RunWith(Suite.class)
-@SuiteClasses(value = { ConformanceV3FromV2MandatoryTest.class, ConformanceV3FromV2OptionalTest.class, ConformanceV3OthersTest.class, PdpGetStaticApplicablePoliciesTest.class, CustomPdpTest.class,
-		MongoDBRefPolicyProviderTest.class, EmbeddedPdpBasedAuthzInterceptorTest.class, NonRegressionTest.class })
+@SuiteClasses(value = { ConformanceV3FromV2MandatoryTest.class, ConformanceV3FromV2OptionalTest.class, ConformanceV3FromV2MandatoryCompiledTest.class,
+		ConformanceV3FromV2OptionalCompiledTest.class, ConformanceV3OthersTest.class, PdpGetStaticApplicablePoliciesTest.class, PdpEvaluateAsyncTest.class,
+		PdpStdEnvAttributeClockTest.class, PdpTargetIndexTest.class, PdpDecisionDiagramTest.class, PdpHashSetMatchTest.class, PdpPartialEvaluationTest.class,
+		PdpAdaptiveEvaluationOrderTest.class, PdpStaticDecisionAnalysisTest.class, PdpResidualPolicyTest.class, PdpBatchEvaluationTest.class,
+		PdpPolicyHotReloadTest.class, PdpIncrementalPolicyReloadTest.class, PdpParallelPolicyLoadingTest.class, PdpPolicySnapshotTest.class,
+		PdpLazyRefPolicyLoadingTest.class, PdpPolicyStoreTest.class, CachingRefPolicyProviderTest.class, CustomPdpTest.class, MongoDBRefPolicyProviderTest.class,
+		EmbeddedPdpBasedAuthzInterceptorTest.class, NonRegressionTest.class })
 public class MainTest
 {
 	/**
@@ -19,13 +19,23 @@ package org.ow2.authzforce.core.pdp.testutil.test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.math.BigInteger;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Optional;
 
 import javax.xml.bind.JAXBException;
@@ -55,12 +65,14 @@ import org.ow2.authzforce.core.pdp.api.value.IntegerValue;
 import org.ow2.authzforce.core.pdp.api.value.StandardAttributeValueFactories;
 import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
 import org.ow2.authzforce.core.pdp.api.value.StringParseableValue;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
 import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
 import org.ow2.authzforce.core.pdp.impl.PdpModelHandler;
 import org.ow2.authzforce.core.pdp.impl.combining.StandardCombiningAlgorithm;
 import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
 import org.ow2.authzforce.core.pdp.impl.func.FunctionRegistry;
 import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
+import org.ow2.authzforce.core.pdp.impl.policy.ObservableRefPolicyProvider;
 import org.ow2.authzforce.core.pdp.impl.io.PdpEngineAdapters;
 import org.ow2.authzforce.core.pdp.testutil.PdpTest;
 import org.ow2.authzforce.core.pdp.testutil.TestUtils;
@@ -77,6 +89,7 @@ import com.mongodb.ServerAddress;
 
 import de.bwaldvogel.mongo.MongoServer;
 import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.Policy;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.PolicySet;
 import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
@@ -91,6 +104,27 @@ public class MongoDBRefPolicyProviderTest
 
 	private static CloseableRefPolicyProvider POLICY_PROVIDER_MODULE;
 
+	private static final String XACML_HEADER = "<?xml version='1.0' encoding='UTF-8'?>";
+
+	private static void insertPolicy(final String policyId, final String version, final String effect)
+	{
+		POLICY_COLLECTION.insert(new PolicyPojo(policyId, version, MongoDbRefPolicyProvider.XACML3_POLICY_TYPE_ID, XACML_HEADER
+		        + "<Policy xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicyId='" + policyId + "' Version='" + version
+		        + "' RuleCombiningAlgId='urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-unless-permit'><Target/><Rule RuleId='rule' Effect='" + effect + "'/></Policy>"));
+	}
+
+	private static void insertPolicy(final String policyId, final String version)
+	{
+		insertPolicy(policyId, version, "Permit");
+	}
+
+	private static void insertPolicySet(final String policySetId, final String version, final String policyRefs)
+	{
+		POLICY_COLLECTION.insert(new PolicyPojo(policySetId, version, MongoDbRefPolicyProvider.XACML3_POLICYSET_TYPE_ID, XACML_HEADER
+		        + "<PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='" + policySetId + "' Version='" + version
+		        + "' PolicyCombiningAlgId='urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-unless-permit'><Target/>" + policyRefs + "</PolicySet>"));
+	}
+
 	@BeforeClass
 	public static void setUpBeforeClass() throws Exception
 	{
@@ -327,6 +361,143 @@ public class MongoDBRefPolicyProviderTest
 		assertEquals("1.2", policyEvaluator.getPolicyVersion().toString());
 	}
 
+	@Test
+	public void testCompiledPolicyCached() throws IllegalArgumentException, IndeterminateEvaluationException
+	{
+		final TopLevelPolicyElementEvaluator policyEvaluator = POLICY_PROVIDER_MODULE.get(TopLevelPolicyElementType.POLICY, "permit-all", Optional.of(new PolicyVersionPatterns("0.*", null, null)),
+		        null, null);
+		// same resolved version (0.1) with a different version pattern
+		assertSame(policyEvaluator, POLICY_PROVIDER_MODULE.get(TopLevelPolicyElementType.POLICY, "permit-all", Optional.of(new PolicyVersionPatterns("0.1", null, null)), null, null));
+	}
+
+	@Test
+	public void testGetPolicyWithEarliestAndLatestVersions() throws IllegalArgumentException, IndeterminateEvaluationException
+	{
+		final TopLevelPolicyElementEvaluator policyEvaluator = POLICY_PROVIDER_MODULE.get(TopLevelPolicyElementType.POLICY_SET, "root-rbac-policyset",
+		        Optional.of(new PolicyVersionPatterns(null, "0.1", "1.1")), null, null);
+		assertNotNull(policyEvaluator);
+		assertEquals("0.1", policyEvaluator.getPolicyVersion().toString());
+	}
+
+	@Test
+	public void testReferencedPoliciesPrefetchedAndChangesPolled() throws IllegalArgumentException, IndeterminateEvaluationException
+	{
+		insertPolicy("prefetch-p1", "1.0");
+		insertPolicy("prefetch-p2", "1.0");
+		insertPolicySet("prefetch-ps2", "1.0", "<PolicyIdReference>prefetch-p2</PolicyIdReference>");
+		insertPolicySet("prefetch-ps1", "1.0", "<PolicyIdReference>prefetch-p1</PolicyIdReference><PolicySetIdReference>prefetch-ps2</PolicySetIdReference>");
+		final TopLevelPolicyElementEvaluator policySetEvaluator = POLICY_PROVIDER_MODULE.get(TopLevelPolicyElementType.POLICY_SET, "prefetch-ps1", Optional.empty(), null, null);
+		assertNotNull(policySetEvaluator);
+
+		/*
+		 * All the referenced policies are cached, so new versions are not visible until the changes are polled
+		 */
+		insertPolicy("prefetch-p2", "2.0");
+		insertPolicy("prefetch-p1", "1.1");
+		assertEquals("1.0", POLICY_PROVIDER_MODULE.get(TopLevelPolicyElementType.POLICY, "prefetch-p1", Optional.empty(), null, null).getPolicyVersion().toString());
+		assertEquals("1.0", POLICY_PROVIDER_MODULE.get(TopLevelPolicyElementType.POLICY, "prefetch-p2", Optional.empty(), null, null).getPolicyVersion().toString());
+		assertSame(policySetEvaluator, POLICY_PROVIDER_MODULE.get(TopLevelPolicyElementType.POLICY_SET, "prefetch-ps1", Optional.empty(), null, null));
+
+		final MongoDbRefPolicyProvider mongoDbRefPolicyProvider = (MongoDbRefPolicyProvider) POLICY_PROVIDER_MODULE;
+		final List<String> changedPolicies = new ArrayList<>();
+		mongoDbRefPolicyProvider.addChangeListener(new ObservableRefPolicyProvider.ChangeListener()
+		{
+
+			@Override
+			public void policyChanged(final TopLevelPolicyElementType policyType, final String policyId)
+			{
+				changedPolicies.add(policyType + ":" + policyId);
+			}
+
+			@Override
+			public void allPoliciesChanged()
+			{
+				changedPolicies.add("*");
+			}
+		});
+		assertEquals(2, mongoDbRefPolicyProvider.pollChanges());
+		assertEquals(2, changedPolicies.size());
+		assertEquals(0, mongoDbRefPolicyProvider.pollChanges());
+
+		assertEquals("1.1", POLICY_PROVIDER_MODULE.get(TopLevelPolicyElementType.POLICY, "prefetch-p1", Optional.empty(), null, null).getPolicyVersion().toString());
+		assertEquals("2.0", POLICY_PROVIDER_MODULE.get(TopLevelPolicyElementType.POLICY, "prefetch-p2", Optional.empty(), null, null).getPolicyVersion().toString());
+		// the PolicySets referring to the changed policies are invalidated as well
+		assertNotSame(policySetEvaluator, POLICY_PROVIDER_MODULE.get(TopLevelPolicyElementType.POLICY_SET, "prefetch-ps1", Optional.empty(), null, null));
+	}
+
+	@Test
+	public void testPolicySetRefChainCheckedOnCachedPolicySet() throws IllegalArgumentException, IndeterminateEvaluationException
+	{
+		insertPolicy("depth-p", "1.0");
+		insertPolicySet("depth-ps2", "1.0", "<PolicyIdReference>depth-p</PolicyIdReference>");
+		insertPolicySet("depth-ps1", "1.0", "<PolicySetIdReference>depth-ps2</PolicySetIdReference>");
+		final Deque<String> policySetRefChain = new ArrayDeque<>();
+		for (int i = 0; i < 8; i++)
+		{
+			policySetRefChain.add("depth-parent-" + i);
+		}
+
+		// depth-parent-0 -> ... -> depth-parent-7 -> depth-ps1 -> depth-ps2: OK (max depth = 10)
+		policySetRefChain.add("depth-ps1");
+		assertNotNull(POLICY_PROVIDER_MODULE.get(TopLevelPolicyElementType.POLICY_SET, "depth-ps1", Optional.empty(), new ArrayDeque<>(policySetRefChain), null));
+		policySetRefChain.addFirst("depth-parent-8");
+		try
+		{
+			POLICY_PROVIDER_MODULE.get(TopLevelPolicyElementType.POLICY_SET, "depth-ps1", Optional.empty(), policySetRefChain, null);
+			fail("Max PolicySet reference depth not enforced on cached PolicySet");
+		}
+		catch (final IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void testPolicySetRefLoopRejected() throws IllegalArgumentException, IndeterminateEvaluationException
+	{
+		insertPolicySet("loop-ps1", "1.0", "<PolicySetIdReference>loop-ps2</PolicySetIdReference>");
+		insertPolicySet("loop-ps2", "1.0", "<PolicySetIdReference>loop-ps1</PolicySetIdReference>");
+		try
+		{
+			POLICY_PROVIDER_MODULE.get(TopLevelPolicyElementType.POLICY_SET, "loop-ps1", Optional.empty(), null, null);
+			fail("PolicySet reference loop not detected");
+		}
+		catch (final IllegalArgumentException | IndeterminateEvaluationException e)
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void testPdpPoliciesReloadedOnPolledChanges() throws IllegalArgumentException, IOException, InterruptedException
+	{
+		insertPolicy("reload-p", "1.0", "Permit");
+		insertPolicySet("reload-ps", "1.0", "<PolicyIdReference>reload-p</PolicyIdReference>");
+		final File pdpConfFile = File.createTempFile("pdp", ".xml");
+		pdpConfFile.deleteOnExit();
+		Files.write(pdpConfFile.toPath(), ("<?xml version='1.0' encoding='UTF-8'?><pdp xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xmlns='http://authzforce.github.io/core/xmlns/pdp/6.0'"
+		        + " xmlns:ext='http://authzforce.github.io/core/xmlns/test/3' version='6.0.0' policyReloadDelayMillis='10'>"
+		        + "<refPolicyProvider id='refPolicyProvider' xsi:type='ext:MongoDBBasedPolicyProviderDescriptor' serverHost='localhost' serverPort='27017' dbName='Test' collectionName='policies'"
+		        + " policyChangePollingIntervalMillis='50'/><rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRefBasedRootPolicyProvider'><policyRef>reload-ps</policyRef></rootPolicyProvider></pdp>")
+		                .getBytes(StandardCharsets.UTF_8));
+		try (final BasePdpEngine pdp = new BasePdpEngine(PdpEngineConfiguration.getInstance(pdpConfFile.toURI().toString(), "classpath:catalog.xml", "classpath:pdp-ext.xsd")))
+		{
+			assertEquals(DecisionType.PERMIT, pdp.evaluate(pdp.newRequestBuilder(-1, -1).build(false)).getDecision());
+
+			insertPolicy("reload-p", "1.1", "Deny");
+			final long deadline = System.currentTimeMillis() + 10000;
+			DecisionType decision;
+			do
+			{
+				Thread.sleep(50);
+				decision = pdp.evaluate(pdp.newRequestBuilder(-1, -1).build(false)).getDecision();
+			}
+			while (decision == DecisionType.PERMIT && System.currentTimeMillis() < deadline);
+
+			assertEquals("Policies not reloaded after change in the database", DecisionType.DENY, decision);
+		}
+	}
+
 	@Test
 	public void testPdpInstantiationWithMongoDBBasedPolicyProvider() throws IllegalArgumentException, IndeterminateEvaluationException, IOException, JAXBException
 	{
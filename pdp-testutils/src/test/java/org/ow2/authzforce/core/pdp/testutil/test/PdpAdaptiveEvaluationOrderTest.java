@@ -0,0 +1,167 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.ACTION_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.RESOURCE_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.ROLE;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.SUBJECT_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.describe;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.isIn;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.putStringAttribute;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.randomValues;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.singleValueEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.ow2.authzforce.core.pdp.api.DecisionRequest;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.impl.AdaptiveEvaluationOrder;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.DefaultEnvironmentProperties;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.xmlns.pdp.Pdp;
+import org.ow2.authzforce.core.xmlns.pdp.StaticRootPolicyProvider;
+
+/**
+ * Test of the adaptive evaluation order of the Rules in deny-overrides/permit-overrides Policies and of the arguments of the functions 'and'/'or': the results (decision, obligations, error
+ * messages) must be the same as with the evaluation in the default order, for enough requests to reorder several times, with or without compilation of Targets and Conditions.
+ */
+@RunWith(value = Parameterized.class)
+public class PdpAdaptiveEvaluationOrderTest
+{
+	private static final List<String> REQUEST_SUBJECTS = Arrays.asList("alice", "bob");
+	private static final List<String> REQUEST_ROLES = Arrays.asList("r0", "r1", "r2", "r3", "r4", "r5", "r6", "r7");
+	private static final List<String> REQUEST_RESOURCES = Arrays.asList("x", "y");
+	private static final List<String> REQUEST_ACTIONS = Arrays.asList("read", "write", "delete", "a0", "a1", "a2", "a3");
+
+	@Parameters(name = "compileTargetsAndConditions={0}")
+	public static Collection<Object[]> params()
+	{
+		return Arrays.asList(new Object[] { false }, new Object[] { true });
+	}
+
+	@Rule
+	public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private final boolean compileTargetsAndConditions;
+
+	public PdpAdaptiveEvaluationOrderTest(final boolean compileTargetsAndConditions)
+	{
+		this.compileTargetsAndConditions = compileTargetsAndConditions;
+	}
+
+	private static String obligation(final String id)
+	{
+		return "<ObligationExpressions><ObligationExpression ObligationId='" + id + "' FulfillOn='Permit'/></ObligationExpressions>";
+	}
+
+	/**
+	 * Policy with deny-overrides rules (with and/or Conditions, some Indeterminate depending on the request) and a nested permit-overrides Policy
+	 */
+	private static String policyXml()
+	{
+		final StringBuilder xml = new StringBuilder(
+		        "<?xml version='1.0' encoding='UTF-8'?><PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='root' Version='1.0' PolicyCombiningAlgId='urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:first-applicable'><Target/>");
+		xml.append("<Policy PolicyId='denyOverrides' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-overrides'><Target/>");
+		for (int i = 0; i < 4; i++)
+		{
+			xml.append("<Rule RuleId='deny" + i + "' Effect='Deny'><Condition><Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:and'>").append(singleValueEquals(ROLE, "r" + i))
+			        .append(isIn(ACTION_ID, "a" + i)).append("</Apply></Condition></Rule>");
+		}
+
+		xml.append("<Rule RuleId='denyDelete' Effect='Deny'><Condition><Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:and'>").append(isIn(ACTION_ID, "delete"))
+		        .append(singleValueEquals(SUBJECT_ID, "bob")).append(isIn(RESOURCE_ID, "x")).append("</Apply></Condition></Rule>");
+		for (int i = 0; i < 3; i++)
+		{
+			xml.append("<Rule RuleId='permit" + i + "' Effect='Permit'><Condition><Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:or'>").append(singleValueEquals(ROLE, "r" + (4 + i)))
+			        .append(isIn(ACTION_ID, "read")).append(singleValueEquals(RESOURCE_ID, "y")).append("</Apply></Condition></Rule>");
+		}
+
+		xml.append("<Rule RuleId='permitWithObligation' Effect='Permit'><Condition>").append(isIn(ACTION_ID, "write")).append("</Condition>").append(obligation("urn:example:obligation:write"))
+		        .append("</Rule>");
+		xml.append("</Policy>");
+
+		xml.append("<Policy PolicyId='permitOverrides' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:permit-overrides'><Target/>");
+		for (int i = 0; i < 3; i++)
+		{
+			xml.append("<Rule RuleId='p" + i + "' Effect='Permit'><Condition><Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:or'>").append(singleValueEquals(SUBJECT_ID, "alice"))
+			        .append(isIn(ROLE, "r" + i)).append("</Apply></Condition></Rule>");
+		}
+
+		xml.append("<Rule RuleId='d' Effect='Deny'><Condition>").append(singleValueEquals(RESOURCE_ID, "x")).append("</Condition></Rule>");
+		xml.append("</Policy></PolicySet>");
+		return xml.toString();
+	}
+
+	private BasePdpEngine newPdp(final File policyFile, final boolean adaptiveEvaluationOrder) throws IllegalArgumentException, IOException
+	{
+		final Pdp jaxbPdp = new Pdp();
+		jaxbPdp.setCompileTargetsAndConditions(compileTargetsAndConditions);
+		jaxbPdp.setAdaptiveEvaluationOrder(adaptiveEvaluationOrder);
+		final StaticRootPolicyProvider jaxbRootPolicyProvider = new StaticRootPolicyProvider();
+		jaxbRootPolicyProvider.setId("rootPolicyProvider");
+		jaxbRootPolicyProvider.setPolicyLocation(policyFile.toURI().toString());
+		jaxbPdp.setRootPolicyProvider(jaxbRootPolicyProvider);
+		return new BasePdpEngine(new PdpEngineConfiguration(jaxbPdp, new DefaultEnvironmentProperties()));
+	}
+
+	@Test
+	public void test() throws IllegalArgumentException, IOException
+	{
+		final File policyFile = tmpFolder.newFile("policy.xml");
+		Files.write(policyFile.toPath(), policyXml().getBytes(StandardCharsets.UTF_8));
+
+		try (final BasePdpEngine referencePdp = newPdp(policyFile, false); final BasePdpEngine adaptivePdp = newPdp(policyFile, true))
+		{
+			final Random random = new Random(0);
+			// enough requests for several reorderings, with a request pattern change in the middle
+			final int requestCount = 20 * AdaptiveEvaluationOrder.REORDERING_PERIOD;
+			for (int i = 0; i < requestCount; i++)
+			{
+				final List<String> subjectIds = randomValues(random, REQUEST_SUBJECTS, 1);
+				final List<String> roles = randomValues(random, i < requestCount / 2 ? REQUEST_ROLES : REQUEST_ROLES.subList(2, 6), 2);
+				final List<String> resourceIds = randomValues(random, REQUEST_RESOURCES, 1);
+				final List<String> actionIds = randomValues(random, i < requestCount / 2 ? REQUEST_ACTIONS : REQUEST_ACTIONS.subList(3, 7), 2);
+
+				final DecisionRequestBuilder<?> requestBuilder = referencePdp.newRequestBuilder(-1, -1);
+				putStringAttribute(requestBuilder, SUBJECT_ID, subjectIds);
+				putStringAttribute(requestBuilder, ROLE, roles);
+				putStringAttribute(requestBuilder, RESOURCE_ID, resourceIds);
+				putStringAttribute(requestBuilder, ACTION_ID, actionIds);
+				final DecisionRequest request = requestBuilder.build(false);
+				assertEquals("Wrong result for request with subject-id=" + subjectIds + ", role=" + roles + ", resource-id=" + resourceIds + ", action-id=" + actionIds,
+				        describe(referencePdp.evaluate(request)), describe(adaptivePdp.evaluate(request)));
+			}
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.ACTION_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.RESOURCE_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.ROLE;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.SUBJECT_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.apply;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.designator;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.isIn;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.match;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.putStringAttribute;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.randomValues;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.singleValueEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.AttributeFqns;
+import org.ow2.authzforce.core.pdp.api.DecisionRequest;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.DefaultEnvironmentProperties;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.xmlns.pdp.Pdp;
+import org.ow2.authzforce.core.xmlns.pdp.StaticRootPolicyProvider;
+import org.ow2.authzforce.xacml.identifiers.XacmlAttributeCategory;
+
+/**
+ * Test of the evaluation of a batch of requests sharing a base request ({@link BasePdpEngine#evaluate(DecisionRequest, List)}): the results (decision, obligations, applicable policies, error
+ * messages) must be the same as the evaluation of each item request merged with the shared request, with Targets, Conditions and VariableDefinitions depending on shared attributes only, on item
+ * attributes only, or both.
+ */
+@RunWith(value = Parameterized.class)
+public class PdpBatchEvaluationTest
+{
+	private static final AttributeFqn RESOURCE_OWNER = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_3_0_RESOURCE.value(), Optional.empty(), "urn:example:owner");
+
+	private static final List<String> REQUEST_SUBJECTS = Arrays.asList("alice", "bob", "carol");
+	private static final List<String> REQUEST_ROLES = Arrays.asList("manager", "r1", "r2");
+	private static final List<String> REQUEST_RESOURCES = Arrays.asList("x", "y", "z");
+	private static final List<String> REQUEST_ACTIONS = Arrays.asList("read", "write");
+
+	private static final String POLICY = "<?xml version='1.0' encoding='UTF-8'?>"
+	        + "<PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='root' Version='1.0' PolicyCombiningAlgId='urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-overrides'><Target/>"
+	        // Policy with Target and VariableDefinitions on shared attributes, VariableDefinition on both shared and item attributes
+	        + "<Policy PolicyId='owners' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:permit-overrides'>" + "<Target>" + anyOf(ROLE, "manager", "r1")
+	        + "</Target>" + "<VariableDefinition VariableId='isOwner'>" + apply("string-at-least-one-member-of", designator(SUBJECT_ID), designator(RESOURCE_OWNER)) + "</VariableDefinition>"
+	        + "<VariableDefinition VariableId='isManager'>" + isIn(ROLE, "manager") + "</VariableDefinition>"
+	        + rule("permitOwner", "Permit", "<Target/>", "<VariableReference VariableId='isOwner'/>", obligation("owner-obligation"))
+	        + rule("permitManagerRead", "Permit", "<Target>" + anyOf(ACTION_ID, "read") + "</Target>", "<VariableReference VariableId='isManager'/>", "")
+	        + rule("denyZ", "Deny", "<Target/>", singleValueEquals(RESOURCE_ID, "z"), "") + "</Policy>"
+	        // Policy with Indeterminate Conditions on shared attributes (no or many subject-id), Condition on both
+	        + "<Policy PolicyId='others' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:1.0:rule-combining-algorithm:first-applicable'><Target/>"
+	        + rule("denyR2OnX", "Deny", "<Target/>", apply("and", isIn(ROLE, "r2"), isIn(RESOURCE_ID, "x")), "")
+	        + rule("permitAlice", "Permit", "<Target/>", singleValueEquals(SUBJECT_ID, "alice"), obligation("alice-obligation"))
+	        + rule("permitWriteY", "Permit", "<Target>" + anyOf(ACTION_ID, "write") + "</Target>", apply("not", isIn(RESOURCE_ID, "y")), "") + "</Policy>" + "</PolicySet>";
+
+	@Parameters(name = "compileTargetsAndConditions={0}")
+	public static Collection<Object[]> params()
+	{
+		return Arrays.asList(new Object[] { false }, new Object[] { true });
+	}
+
+	@Rule
+	public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private final boolean compileTargetsAndConditions;
+
+	public PdpBatchEvaluationTest(final boolean compileTargetsAndConditions)
+	{
+		this.compileTargetsAndConditions = compileTargetsAndConditions;
+	}
+
+	private static String anyOf(final AttributeFqn attributeFqn, final String... values)
+	{
+		return "<AnyOf>" + Arrays.stream(values).map(value -> "<AllOf>" + match(attributeFqn, value) + "</AllOf>").collect(Collectors.joining()) + "</AnyOf>";
+	}
+
+	private static String obligation(final String id)
+	{
+		return "<ObligationExpressions><ObligationExpression ObligationId='" + id + "' FulfillOn='Permit'/></ObligationExpressions>";
+	}
+
+	private static String rule(final String id, final String effect, final String target, final String condition, final String pepActions)
+	{
+		return "<Rule RuleId='" + id + "' Effect='" + effect + "'>" + target + "<Condition>" + condition + "</Condition>" + pepActions + "</Rule>";
+	}
+
+	private BasePdpEngine newPdp() throws IllegalArgumentException, IOException
+	{
+		final File policyFile = tmpFolder.newFile("policy.xml");
+		Files.write(policyFile.toPath(), POLICY.getBytes(StandardCharsets.UTF_8));
+		final Pdp jaxbPdp = new Pdp();
+		jaxbPdp.setCompileTargetsAndConditions(compileTargetsAndConditions);
+		final StaticRootPolicyProvider jaxbRootPolicyProvider = new StaticRootPolicyProvider();
+		jaxbRootPolicyProvider.setId("rootPolicyProvider");
+		jaxbRootPolicyProvider.setPolicyLocation(policyFile.toURI().toString());
+		jaxbPdp.setRootPolicyProvider(jaxbRootPolicyProvider);
+		return new BasePdpEngine(new PdpEngineConfiguration(jaxbPdp, new DefaultEnvironmentProperties()));
+	}
+
+	/**
+	 * Random batches: random subject (shared request), with or without default action, and random resources/actions (item requests)
+	 */
+	@Test
+	public void testSameResultsAsIndividualRequests() throws IllegalArgumentException, IOException, IndeterminateEvaluationException
+	{
+		try (final BasePdpEngine pdp = newPdp())
+		{
+			final Random random = new Random(0);
+			for (int i = 0; i < 200; i++)
+			{
+				final List<String> subjectIds = randomValues(random, REQUEST_SUBJECTS, 2);
+				final List<String> roles = randomValues(random, REQUEST_ROLES, 2);
+				// action in the shared request, that item requests may override
+				final List<String> defaultActionIds = randomValues(random, REQUEST_ACTIONS, 1);
+				final DecisionRequestBuilder<?> sharedRequestBuilder = pdp.newRequestBuilder(-1, -1);
+				putStringAttribute(sharedRequestBuilder, SUBJECT_ID, subjectIds);
+				putStringAttribute(sharedRequestBuilder, ROLE, roles);
+				putStringAttribute(sharedRequestBuilder, ACTION_ID, defaultActionIds);
+				final DecisionRequest sharedRequest = sharedRequestBuilder.build(false);
+
+				final int itemCount = random.nextInt(10);
+				final List<DecisionRequest> itemRequests = new ArrayList<>(itemCount);
+				final List<DecisionResult> expectedResults = new ArrayList<>(itemCount);
+				for (int j = 0; j < itemCount; j++)
+				{
+					final List<String> resourceIds = randomValues(random, REQUEST_RESOURCES, 2);
+					final List<String> owners = randomValues(random, REQUEST_SUBJECTS, 2);
+					final List<String> actionIds = randomValues(random, REQUEST_ACTIONS, 1);
+					final boolean returnApplicablePolicies = random.nextBoolean();
+
+					final DecisionRequestBuilder<?> itemRequestBuilder = pdp.newRequestBuilder(-1, -1);
+					putStringAttribute(itemRequestBuilder, RESOURCE_ID, resourceIds);
+					putStringAttribute(itemRequestBuilder, RESOURCE_OWNER, owners);
+					putStringAttribute(itemRequestBuilder, ACTION_ID, actionIds);
+					itemRequests.add(itemRequestBuilder.build(returnApplicablePolicies));
+
+					final DecisionRequestBuilder<?> requestBuilder = pdp.newRequestBuilder(-1, -1);
+					putStringAttribute(requestBuilder, SUBJECT_ID, subjectIds);
+					putStringAttribute(requestBuilder, ROLE, roles);
+					putStringAttribute(requestBuilder, RESOURCE_ID, resourceIds);
+					putStringAttribute(requestBuilder, RESOURCE_OWNER, owners);
+					putStringAttribute(requestBuilder, ACTION_ID, actionIds.isEmpty() ? defaultActionIds : actionIds);
+					expectedResults.add(pdp.evaluate(requestBuilder.build(returnApplicablePolicies)));
+				}
+
+				assertEquals("Wrong results for shared request " + sharedRequest + " and item requests " + itemRequests, expectedResults, pdp.evaluate(sharedRequest, itemRequests));
+			}
+		}
+	}
+}
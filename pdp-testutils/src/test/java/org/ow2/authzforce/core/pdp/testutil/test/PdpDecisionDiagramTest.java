@@ -0,0 +1,229 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.ACTION_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.RESOURCE_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.designator;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.match;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.putStringAttribute;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.value;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.AttributeFqns;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.xacml.identifiers.XacmlAttributeCategory;
+import org.ow2.authzforce.xacml.identifiers.XacmlAttributeId;
+
+/**
+ * Test of the compilation of the root policy into a decision diagram (PDP configuration parameter 'decisionDiagramMaxNodes'): the results (decision, PEP actions, applicable policies) must be the
+ * same as without compilation, for a policy tree mixing compilable elements (Targets with standard functions, standard combining algorithms) and elements evaluated as usual from the diagram (Rule
+ * Conditions, obligations/advice), with requests that make some Targets Indeterminate (MustBePresent attribute missing).
+ */
+@RunWith(value = Parameterized.class)
+public class PdpDecisionDiagramTest
+{
+	private static final String XACML_1_0_POLICY_COMBINING_ALG_PREFIX = "urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:";
+	private static final String XACML_3_0_POLICY_COMBINING_ALG_PREFIX = "urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:";
+	private static final String XACML_1_0_RULE_COMBINING_ALG_PREFIX = "urn:oasis:names:tc:xacml:1.0:rule-combining-algorithm:";
+	private static final String XACML_3_0_RULE_COMBINING_ALG_PREFIX = "urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:";
+
+	private static final AttributeFqn SUBJECT_ROLE = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_1_0_ACCESS_SUBJECT.value(), Optional.empty(),
+	        XacmlAttributeId.XACML_2_0_SUBJECT_ROLE.value());
+
+	private static final List<String> RESOURCE_IDS = Arrays.asList("r0", "r1", "r2", "r3", "r4", "r5");
+	private static final List<String> ACTION_IDS = Arrays.asList("read", "write", "delete");
+	private static final List<String> ROLES = Arrays.asList("admin", "user", "guest");
+
+	private static final int REQUEST_COUNT = 300;
+
+	/**
+	 * Target with one AnyOf per array of AllOfs, one AllOf per array of Matches
+	 */
+	private static String target(final String[]... anyOfs)
+	{
+		final StringBuilder xml = new StringBuilder("<Target>");
+		for (final String[] allOfs : anyOfs)
+		{
+			xml.append("<AnyOf>");
+			for (final String allOf : allOfs)
+			{
+				xml.append("<AllOf>").append(allOf).append("</AllOf>");
+			}
+
+			xml.append("</AnyOf>");
+		}
+
+		return xml.append("</Target>").toString();
+	}
+
+	private static String obligation(final String id, final String fulfillOn)
+	{
+		return "<ObligationExpressions><ObligationExpression ObligationId='" + id + "' FulfillOn='" + fulfillOn + "'/></ObligationExpressions>";
+	}
+
+	private static String rule(final String id, final String effect, final String target, final String condition, final String pepActions)
+	{
+		return "<Rule RuleId='" + id + "' Effect='" + effect + "'>" + target + (condition == null ? "" : condition) + (pepActions == null ? "" : pepActions) + "</Rule>";
+	}
+
+	private static String policy(final String id, final String ruleCombiningAlgId, final String target, final String content)
+	{
+		return "<Policy PolicyId='" + id + "' Version='1.0' RuleCombiningAlgId='" + ruleCombiningAlgId + "'>" + target + content + "</Policy>";
+	}
+
+	private static String policySet(final String id, final String policyCombiningAlgId, final String target, final String content)
+	{
+		return "<PolicySet PolicySetId='" + id + "' Version='1.0' PolicyCombiningAlgId='" + policyCombiningAlgId + "'>" + target + content + "</PolicySet>";
+	}
+
+	private static String getRootPolicySet(final String rootPolicyCombiningAlgId)
+	{
+		final String guestCondition = "<Condition><Apply FunctionId='urn:oasis:names:tc:xacml:3.0:function:any-of'><Function FunctionId='urn:oasis:names:tc:xacml:1.0:function:string-equal'/>"
+		        + value("guest") + designator(SUBJECT_ROLE) + "</Apply></Condition>";
+		final String content =
+		        // rules with target only, and a rule with condition (evaluated by the rule evaluator)
+		        policy("P1", XACML_3_0_RULE_COMBINING_ALG_PREFIX + "deny-overrides", target(new String[] { match(RESOURCE_ID, "r0"), match(RESOURCE_ID, "r1") }),
+		                rule("R1", "Permit", target(new String[] { match(ACTION_ID, "read") }), null, null) + rule("R2", "Deny", target(new String[] { match(ACTION_ID, "delete") }), null, null)
+		                        + rule("R3", "Deny", "<Target/>", guestCondition, null))
+		                // obligation on the policy
+		                + policy("P2", XACML_1_0_RULE_COMBINING_ALG_PREFIX + "first-applicable", target(new String[] { match(RESOURCE_ID, "r2") }),
+		                        rule("R1", "Permit", target(new String[] { match(SUBJECT_ROLE, "admin") }), null, null) + rule("R2", "Deny", "<Target/>", null, null)
+		                                + obligation("obligation-P2", "Permit"))
+		                // nested PolicySet, with obligation on a rule and AllOf with multiple Matches
+		                + policySet("PS3", XACML_3_0_POLICY_COMBINING_ALG_PREFIX + "permit-unless-deny", target(new String[] { match(ACTION_ID, "write") }),
+		                        policy("P3a", XACML_3_0_RULE_COMBINING_ALG_PREFIX + "permit-overrides", "<Target/>",
+		                                rule("R1", "Deny", target(new String[] { match(SUBJECT_ROLE, "guest") }), null, obligation("obligation-P3a", "Deny")) + rule("R2", "Permit",
+		                                        target(new String[] { match(RESOURCE_ID, "r0") }), null, null))
+		                                + policy("P3b", XACML_3_0_RULE_COMBINING_ALG_PREFIX + "deny-unless-permit", "<Target/>",
+		                                        rule("R1", "Permit", target(new String[] { match(RESOURCE_ID, "r3") + match(SUBJECT_ROLE, "user") }), null, null)))
+		                // nested only-one-applicable
+		                + policySet("PS4", XACML_1_0_POLICY_COMBINING_ALG_PREFIX + "only-one-applicable", "<Target/>",
+		                        policy("P4a", XACML_1_0_RULE_COMBINING_ALG_PREFIX + "first-applicable", target(new String[] { match(RESOURCE_ID, "r4") }), rule("R1", "Permit", "<Target/>", null, null))
+		                                + policy("P4b", XACML_1_0_RULE_COMBINING_ALG_PREFIX + "first-applicable", target(new String[] { match(SUBJECT_ROLE, "admin") }),
+		                                        rule("R1", "Deny", "<Target/>", null, obligation("obligation-P4b", "Deny"))))
+		                // Indeterminate Target if no role
+		                + policy("P5", XACML_1_0_RULE_COMBINING_ALG_PREFIX + "first-applicable", target(new String[] { match(SUBJECT_ROLE, "user", true) }),
+		                        rule("R1", "Deny", target(new String[] { match(ACTION_ID, "delete") }), null, null))
+		                // multiple AnyOfs
+		                + policy("P6", XACML_3_0_RULE_COMBINING_ALG_PREFIX + "permit-unless-deny", "<Target/>", rule("R1", "Deny",
+		                        target(new String[] { match(RESOURCE_ID, "r5"), match(RESOURCE_ID, "r1") }, new String[] { match(ACTION_ID, "read") }), null, null));
+		return "<?xml version='1.0' encoding='UTF-8'?>" + policySet("root", rootPolicyCombiningAlgId, "<Target/>", content).replaceFirst("<PolicySet ",
+		        "<PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' ");
+	}
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> params()
+	{
+		return Arrays.asList(new Object[] { XACML_1_0_POLICY_COMBINING_ALG_PREFIX + "first-applicable" }, new Object[] { XACML_1_0_POLICY_COMBINING_ALG_PREFIX + "only-one-applicable" },
+		        new Object[] { XACML_3_0_POLICY_COMBINING_ALG_PREFIX + "deny-overrides" }, new Object[] { XACML_3_0_POLICY_COMBINING_ALG_PREFIX + "permit-overrides" },
+		        new Object[] { XACML_3_0_POLICY_COMBINING_ALG_PREFIX + "ordered-permit-overrides" }, new Object[] { XACML_3_0_POLICY_COMBINING_ALG_PREFIX + "deny-unless-permit" },
+		        new Object[] { XACML_3_0_POLICY_COMBINING_ALG_PREFIX + "permit-unless-deny" });
+	}
+
+	@Rule
+	public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private final String rootPolicyCombiningAlgId;
+
+	public PdpDecisionDiagramTest(final String rootPolicyCombiningAlgId)
+	{
+		this.rootPolicyCombiningAlgId = rootPolicyCombiningAlgId;
+	}
+
+	private BasePdpEngine newPdpEngine(final File policyFile, final int decisionDiagramMaxNodes) throws IllegalArgumentException, IOException
+	{
+		final File pdpConfFile = tmpFolder.newFile();
+		final String pdpConf = "<?xml version='1.0' encoding='UTF-8'?><pdp xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xmlns='http://authzforce.github.io/core/xmlns/pdp/6.0' version='6.0.1'"
+		        + " decisionDiagramMaxNodes='" + decisionDiagramMaxNodes + "'><rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRootPolicyProvider' policyLocation='"
+		        + policyFile.toURI() + "'/></pdp>";
+		Files.write(pdpConfFile.toPath(), pdpConf.getBytes(StandardCharsets.UTF_8));
+		final PdpEngineConfiguration pdpEngineConf = PdpEngineConfiguration.getInstance(pdpConfFile.toURI().toString());
+		assertEquals(decisionDiagramMaxNodes, pdpEngineConf.getDecisionDiagramMaxNodeCount());
+		return new BasePdpEngine(pdpEngineConf);
+	}
+
+	private static List<String> randomSubset(final Random random, final List<String> values)
+	{
+		final List<String> subset = new ArrayList<>(values);
+		subset.removeIf(value -> random.nextInt(3) != 0);
+		return subset;
+	}
+
+	private static DecisionResult evaluate(final BasePdpEngine pdp, final List<List<String>> request, final boolean returnApplicablePolicyIdList)
+	{
+		final DecisionRequestBuilder<?> requestBuilder = pdp.newRequestBuilder(-1, -1);
+		final List<AttributeFqn> attributeFqns = Arrays.asList(RESOURCE_ID, ACTION_ID, SUBJECT_ROLE);
+		for (int i = 0; i < attributeFqns.size(); i++)
+		{
+			putStringAttribute(requestBuilder, attributeFqns.get(i), request.get(i));
+		}
+
+		return pdp.evaluate(requestBuilder.build(returnApplicablePolicyIdList));
+	}
+
+	@Test
+	public void test() throws IllegalArgumentException, IOException
+	{
+		final File policyFile = tmpFolder.newFile("policy.xml");
+		Files.write(policyFile.toPath(), getRootPolicySet(rootPolicyCombiningAlgId).getBytes(StandardCharsets.UTF_8));
+		final Random random = new Random(20261017);
+		try (final BasePdpEngine referencePdp = newPdpEngine(policyFile, 0); final BasePdpEngine compiledPolicyPdp = newPdpEngine(policyFile, 100000);
+		        // budget too small -> not compiled
+		        final BasePdpEngine tooBigPolicyPdp = newPdpEngine(policyFile, 4))
+		{
+			for (int i = 0; i < REQUEST_COUNT; i++)
+			{
+				final List<List<String>> request = Arrays.asList(randomSubset(random, RESOURCE_IDS), randomSubset(random, ACTION_IDS), randomSubset(random, ROLES));
+				for (final boolean returnApplicablePolicyIdList : new boolean[] { false, true })
+				{
+					final DecisionResult expectedResult = evaluate(referencePdp, request, returnApplicablePolicyIdList);
+					for (final BasePdpEngine pdp : Arrays.asList(compiledPolicyPdp, tooBigPolicyPdp))
+					{
+						final DecisionResult actualResult = evaluate(pdp, request, returnApplicablePolicyIdList);
+						final String message = "Request (resource-id, action-id, role) = " + request + ", returnApplicablePolicyIdList = " + returnApplicablePolicyIdList;
+						assertEquals(message, expectedResult.getDecision(), actualResult.getDecision());
+						assertEquals(message, expectedResult.getPepActions(), actualResult.getPepActions());
+						assertEquals(message, expectedResult.getApplicablePolicies(), actualResult.getApplicablePolicies());
+					}
+				}
+			}
+		}
+	}
+}
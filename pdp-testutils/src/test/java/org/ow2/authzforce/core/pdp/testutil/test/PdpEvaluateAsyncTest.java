@@ -0,0 +1,136 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.xml.bind.JAXBException;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Request;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.Response;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.DecisionRequest;
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.api.XmlUtils.XmlnsFilteringParser;
+import org.ow2.authzforce.core.pdp.api.io.XacmlJaxbParsingUtils;
+import org.ow2.authzforce.core.pdp.impl.AsyncEvaluationExecutor;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.pdp.impl.io.AsyncPdpEngineInoutAdapter;
+import org.ow2.authzforce.core.pdp.impl.io.PdpEngineAdapters;
+import org.ow2.authzforce.core.pdp.testutil.PdpTest;
+import org.ow2.authzforce.core.pdp.testutil.TestUtils;
+
+/**
+ * Test of asynchronous evaluation ({@link BasePdpEngine#evaluateAsync(org.ow2.authzforce.core.pdp.api.DecisionRequest)} and {@link AsyncPdpEngineInoutAdapter})
+ *
+ */
+public class PdpEvaluateAsyncTest
+{
+	/**
+	 * Name of directory that contains test resources
+	 */
+	public final static String TEST_RESOURCES_DIRECTORY_LOCATION = "classpath:custom/ParallelMultipleDecision";
+
+	@Test
+	public void testEvaluateAsync() throws IllegalArgumentException, IOException, JAXBException, InterruptedException, ExecutionException, TimeoutException
+	{
+		final String testResourceLocationPrefix = TEST_RESOURCES_DIRECTORY_LOCATION + "/";
+		final XmlnsFilteringParser unmarshaller = XacmlJaxbParsingUtils.getXacmlParserFactory(false).getInstance();
+		final Request request = TestUtils.createRequest(testResourceLocationPrefix + PdpTest.REQUEST_FILENAME, unmarshaller);
+		final Response expectedResponse = TestUtils.createResponse(testResourceLocationPrefix + PdpTest.EXPECTED_RESPONSE_FILENAME, unmarshaller);
+
+		final PdpEngineConfiguration pdpEngineConf = PdpEngineConfiguration.getInstance(testResourceLocationPrefix + PdpTest.PDP_CONF_FILENAME);
+		try (final AsyncPdpEngineInoutAdapter<Request, Response> pdp = PdpEngineAdapters.newAsyncXacmlJaxbInoutAdapter(pdpEngineConf))
+		{
+			final Response response = pdp.evaluateAsync(request).get(1, TimeUnit.MINUTES);
+			TestUtils.assertNormalizedEquals(TEST_RESOURCES_DIRECTORY_LOCATION, expectedResponse, response);
+			assertEquals("Unexpected rejected async evaluations", 0, pdp.getAsyncEvaluationExecutor().getRejectedTaskCount());
+		}
+	}
+
+	@Test
+	public void testEvaluateAsyncAfterCloseRejected() throws IllegalArgumentException, IOException, JAXBException
+	{
+		final PdpEngineConfiguration pdpEngineConf = PdpEngineConfiguration.getInstance(TEST_RESOURCES_DIRECTORY_LOCATION + "/" + PdpTest.PDP_CONF_FILENAME);
+		final BasePdpEngine pdp = new BasePdpEngine(pdpEngineConf);
+		final DecisionRequest request = pdp.newRequestBuilder(-1, -1).build(false);
+		pdp.close();
+		// async executor not used before closing
+		final CompletableFuture<DecisionResult> result = pdp.evaluateAsync(request);
+		assertTrue("Async evaluation not rejected after closing the PDP engine", result.isCompletedExceptionally());
+		assertEquals("Unexpected rejected task count", 1, pdp.getAsyncEvaluationExecutor().getRejectedTaskCount());
+	}
+
+	@Test
+	public void testRejectionWhenQueueFull() throws InterruptedException
+	{
+		final CountDownLatch blockingLatch = new CountDownLatch(1);
+		try (final AsyncEvaluationExecutor executor = new AsyncEvaluationExecutor(1, 1))
+		{
+			final CountDownLatch startedLatch = new CountDownLatch(1);
+			// occupies the only thread
+			final CompletableFuture<Boolean> runningTask = executor.submit(() -> {
+				startedLatch.countDown();
+				try
+				{
+					return blockingLatch.await(1, TimeUnit.MINUTES);
+				}
+				catch (final InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			});
+			assertTrue("First async task not started", startedLatch.await(1, TimeUnit.MINUTES));
+
+			// fills the queue
+			final CompletableFuture<Boolean> queuedTask = executor.submit(() -> Boolean.TRUE);
+			assertEquals("Unexpected queue depth", 1, executor.getQueueDepth());
+
+			// queue full -> rejected immediately
+			final CompletableFuture<Boolean> rejectedTask = executor.submit(() -> Boolean.TRUE);
+			assertTrue("Async task not rejected although queue full", rejectedTask.isCompletedExceptionally());
+			try
+			{
+				rejectedTask.join();
+			}
+			catch (final Exception e)
+			{
+				assertTrue("Unexpected cause of rejection: " + e.getCause(), e.getCause() instanceof RejectedExecutionException);
+			}
+
+			assertEquals("Unexpected rejected task count", 1, executor.getRejectedTaskCount());
+			assertEquals("Unexpected submitted task count", 3, executor.getSubmittedTaskCount());
+
+			blockingLatch.countDown();
+			assertTrue(runningTask.join());
+			assertTrue(queuedTask.join());
+		}
+	}
+}
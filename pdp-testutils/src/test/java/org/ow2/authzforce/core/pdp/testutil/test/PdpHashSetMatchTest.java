@@ -0,0 +1,200 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.ACTION_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.RESOURCE_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.ROLE;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.STRING_EQUAL;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.SUBJECT_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.designator;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.isIn;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.match;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.putStringAttribute;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.randomValues;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.singleValueEquals;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.value;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.pdp.testutil.TestUtils;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+/**
+ * Test of Targets with many AllOfs made of a single equality Match on the same attribute, and of Conditions with many equality tests on the same attribute combined with 'or', which are evaluated as
+ * hash-set tests: the decisions must be the same as the ones computed here by a reference implementation of the policy, including Indeterminate ones, with or without compilation of Targets and
+ * Conditions.
+ */
+@RunWith(value = Parameterized.class)
+public class PdpHashSetMatchTest
+{
+	private static final int TARGET_RESOURCE_COUNT = 30;
+	private static final List<String> CONDITION_ROLES = Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h");
+	private static final List<String> CONDITION_ACTIONS = Arrays.asList("x1", "x2", "x3");
+
+	private static final List<String> REQUEST_RESOURCES = new ArrayList<>();
+	static
+	{
+		for (int i = 0; i < TARGET_RESOURCE_COUNT + 10; i++)
+		{
+			REQUEST_RESOURCES.add("r" + i);
+		}
+
+		REQUEST_RESOURCES.add("x");
+	}
+
+	private static final List<String> REQUEST_ACTIONS = Arrays.asList("read", "write", "x1", "x2", "x3");
+	private static final List<String> REQUEST_SUBJECTS = Arrays.asList("admin", "user");
+	private static final List<String> REQUEST_ROLES = Arrays.asList("a", "b", "h", "i", "j");
+
+	@Parameters(name = "compileTargetsAndConditions={0}")
+	public static Collection<Object[]> params()
+	{
+		return Arrays.asList(new Object[] { false }, new Object[] { true });
+	}
+
+	@Rule
+	public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private final boolean compileTargetsAndConditions;
+
+	public PdpHashSetMatchTest(final boolean compileTargetsAndConditions)
+	{
+		this.compileTargetsAndConditions = compileTargetsAndConditions;
+	}
+
+	/**
+	 * Policy with first-applicable rules:
+	 * <ol>
+	 * <li>Permit if resource-id is one of r0..r29 (one AllOf each), or resource-id is x and action-id is write, or subject-id (MustBePresent) is admin;</li>
+	 * <li>Deny if role (single value) is one of a..h, or action-id is one of x1, x2, x3.</li>
+	 * </ol>
+	 */
+	private static String policyXml()
+	{
+		final StringBuilder xml = new StringBuilder(
+		        "<?xml version='1.0' encoding='UTF-8'?><Policy xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicyId='root' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:1.0:rule-combining-algorithm:first-applicable'><Target/>");
+		xml.append("<Rule RuleId='targetRule' Effect='Permit'><Target><AnyOf>");
+		for (int i = 0; i < TARGET_RESOURCE_COUNT; i++)
+		{
+			xml.append("<AllOf>").append(match(RESOURCE_ID, "r" + i)).append("</AllOf>");
+			if (i == TARGET_RESOURCE_COUNT / 2)
+			{
+				// not mergeable AllOfs in the middle of mergeable ones
+				xml.append("<AllOf>").append(match(RESOURCE_ID, "x")).append(match(ACTION_ID, "write")).append("</AllOf>");
+				xml.append("<AllOf>").append(match(SUBJECT_ID, "admin", true)).append("</AllOf>");
+			}
+		}
+
+		xml.append("</AnyOf></Target></Rule>");
+		xml.append("<Rule RuleId='conditionRule' Effect='Deny'><Condition><Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:or'>");
+		for (final String role : CONDITION_ROLES)
+		{
+			xml.append(singleValueEquals(ROLE, role));
+		}
+
+		xml.append(isIn(ACTION_ID, CONDITION_ACTIONS.get(0)));
+		xml.append(isIn(ACTION_ID, CONDITION_ACTIONS.get(1)));
+		xml.append("<Apply FunctionId='urn:oasis:names:tc:xacml:3.0:function:any-of'><Function FunctionId='" + STRING_EQUAL + "'/>").append(value(CONDITION_ACTIONS.get(2)))
+		        .append(designator(ACTION_ID)).append("</Apply>");
+		xml.append("</Apply></Condition></Rule></Policy>");
+		return xml.toString();
+	}
+
+	/**
+	 * Reference implementation of the policy
+	 */
+	private static DecisionType getExpectedDecision(final List<String> resourceIds, final List<String> actionIds, final List<String> subjectIds, final List<String> roles)
+	{
+		final boolean isTargetMatched = resourceIds.stream().anyMatch(resourceId -> resourceId.startsWith("r") && Integer.parseInt(resourceId.substring(1)) < TARGET_RESOURCE_COUNT)
+		        || resourceIds.contains("x") && actionIds.contains("write") || subjectIds.contains("admin");
+		if (isTargetMatched)
+		{
+			return DecisionType.PERMIT;
+		}
+
+		if (subjectIds.isEmpty())
+		{
+			// missing subject-id (MustBePresent) -> Target Indeterminate
+			return DecisionType.INDETERMINATE;
+		}
+
+		if (actionIds.stream().anyMatch(CONDITION_ACTIONS::contains))
+		{
+			return DecisionType.DENY;
+		}
+
+		if (roles.size() != 1)
+		{
+			// string-one-and-only error -> Condition Indeterminate
+			return DecisionType.INDETERMINATE;
+		}
+
+		return CONDITION_ROLES.contains(roles.get(0)) ? DecisionType.DENY : DecisionType.NOT_APPLICABLE;
+	}
+
+	@Test
+	public void test() throws IllegalArgumentException, IOException, URISyntaxException, JAXBException
+	{
+		final File policyFile = tmpFolder.newFile("policy.xml");
+		Files.write(policyFile.toPath(), policyXml().getBytes(StandardCharsets.UTF_8));
+
+		final PdpEngineConfiguration pdpEngineConf = TestUtils.newPdpEngineConfiguration(policyFile.toURI().toString(), null, false, null, null, null, compileTargetsAndConditions);
+		try (final BasePdpEngine pdp = new BasePdpEngine(pdpEngineConf))
+		{
+			final Random random = new Random(0);
+			for (int i = 0; i < 500; i++)
+			{
+				final List<String> resourceIds = randomValues(random, REQUEST_RESOURCES.subList(random.nextBoolean() ? 0 : TARGET_RESOURCE_COUNT, REQUEST_RESOURCES.size()), 3);
+				final List<String> actionIds = randomValues(random, REQUEST_ACTIONS, 2);
+				final List<String> subjectIds = randomValues(random, REQUEST_SUBJECTS, 1);
+				final List<String> roles = randomValues(random, REQUEST_ROLES, 2);
+
+				final DecisionRequestBuilder<?> requestBuilder = pdp.newRequestBuilder(-1, -1);
+				putStringAttribute(requestBuilder, RESOURCE_ID, resourceIds);
+				putStringAttribute(requestBuilder, ACTION_ID, actionIds);
+				putStringAttribute(requestBuilder, SUBJECT_ID, subjectIds);
+				putStringAttribute(requestBuilder, ROLE, roles);
+				assertEquals("Wrong decision for request with resource-id=" + resourceIds + ", action-id=" + actionIds + ", subject-id=" + subjectIds + ", role=" + roles,
+				        getExpectedDecision(resourceIds, actionIds, subjectIds, roles), pdp.evaluate(requestBuilder.build(false)).getDecision());
+			}
+		}
+	}
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.RESOURCE_ID;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.io.XacmlJaxbParsingUtils;
+import org.ow2.authzforce.core.pdp.api.policy.StaticTopLevelPolicyElementEvaluator;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.pdp.impl.combining.StandardCombiningAlgorithm;
+import org.ow2.authzforce.core.pdp.impl.policy.CoreRefPolicyProvider;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+/**
+ * Test of the incremental reload of policies by {@link CoreRefPolicyProvider}: only the changed policy files and the PolicySets referring to them (directly or indirectly) are parsed again, the
+ * other policies are reused from the previous instance. Policies: PS3 -> PS1 -> P1, and PS2 independent.
+ */
+public class PdpIncrementalPolicyReloadTest
+{
+	private static final int MAX_POLICY_REF_DEPTH = 10;
+
+	private static final String XACML_HEADER = "<?xml version='1.0' encoding='UTF-8'?>";
+
+	private static String policy(final String version, final String permittedResourceId)
+	{
+		return XACML_HEADER + "<Policy xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicyId='P1' Version='" + version
+		        + "' RuleCombiningAlgId='urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-unless-permit'><Target/><Rule RuleId='permit' Effect='Permit'><Target><AnyOf><AllOf>"
+		        + "<Match MatchId='urn:oasis:names:tc:xacml:1.0:function:string-equal'><AttributeValue DataType='http://www.w3.org/2001/XMLSchema#string'>" + permittedResourceId
+		        + "</AttributeValue><AttributeDesignator Category='" + RESOURCE_ID.getCategory() + "' AttributeId='" + RESOURCE_ID.getId()
+		        + "' DataType='http://www.w3.org/2001/XMLSchema#string' MustBePresent='false'/></Match></AllOf></AnyOf></Target></Rule></Policy>";
+	}
+
+	private static String policySet(final String id, final String version, final String childElement)
+	{
+		return XACML_HEADER + "<PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='" + id + "' Version='" + version
+		        + "' PolicyCombiningAlgId='urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-unless-permit'><Target/>" + childElement + "</PolicySet>";
+	}
+
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private File policyDirectory;
+	private File pdpConfFile;
+
+	private static void write(final File file, final String content) throws IOException
+	{
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Before
+	public void setUp() throws IOException
+	{
+		policyDirectory = tmpFolder.newFolder("policies");
+		write(new File(policyDirectory, "P1.xml"), policy("1.0", "r1"));
+		write(new File(policyDirectory, "PS1.xml"), policySet("PS1", "1.0", "<PolicyIdReference>P1</PolicyIdReference>"));
+		write(new File(policyDirectory, "PS2.xml"), policySet("PS2", "1.0", "<PolicySet PolicySetId='PS2-child' Version='1.0'"
+		        + " PolicyCombiningAlgId='urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-unless-permit'><Target/></PolicySet>"));
+		write(new File(policyDirectory, "PS3.xml"), policySet("PS3", "1.0", "<PolicySetIdReference>PS1</PolicySetIdReference>"));
+
+		final File rootPolicyFile = tmpFolder.newFile("root.xml");
+		write(rootPolicyFile, policySet("root", "1.0", "<PolicySetIdReference>PS3</PolicySetIdReference><PolicySetIdReference>PS2</PolicySetIdReference>"));
+		pdpConfFile = tmpFolder.newFile("pdp.xml");
+		write(pdpConfFile, "<?xml version='1.0' encoding='UTF-8'?><pdp xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xmlns='http://authzforce.github.io/core/xmlns/pdp/6.0' version='6.0.1'"
+		        + " maxPolicyRefDepth='" + MAX_POLICY_REF_DEPTH + "' policyReloadDelayMillis='60000'><refPolicyProvider id='refPolicyProvider' xsi:type='StaticRefPolicyProvider'><policyLocation>"
+		        + policyDirectory.toURI() + "*.xml</policyLocation></refPolicyProvider><rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRootPolicyProvider' policyLocation='"
+		        + rootPolicyFile.toURI() + "'/></pdp>");
+	}
+
+	private CoreRefPolicyProvider newRefPolicyProvider(final PdpEngineConfiguration pdpEngineConf, final Optional<CoreRefPolicyProvider> previousInstance) throws IOException
+	{
+		final List<URL> policyURLs = new ArrayList<>();
+		for (final String policyFilename : new String[] { "P1.xml", "PS1.xml", "PS2.xml", "PS3.xml" })
+		{
+			final File policyFile = new File(policyDirectory, policyFilename);
+			if (policyFile.exists())
+			{
+				policyURLs.add(policyFile.toURI().toURL());
+			}
+		}
+
+		return CoreRefPolicyProvider.getInstance(policyURLs, false, XacmlJaxbParsingUtils.getXacmlParserFactory(false), MAX_POLICY_REF_DEPTH, pdpEngineConf.getXacmlExpressionFactory(),
+		        StandardCombiningAlgorithm.REGISTRY, previousInstance);
+	}
+
+	private static StaticTopLevelPolicyElementEvaluator get(final CoreRefPolicyProvider refPolicyProvider, final TopLevelPolicyElementType policyType, final String policyId)
+	        throws IndeterminateEvaluationException
+	{
+		return refPolicyProvider.get(policyType, policyId, Optional.empty(), null);
+	}
+
+	@Test
+	public void testUnchangedPoliciesReused() throws IllegalArgumentException, IOException, IndeterminateEvaluationException
+	{
+		final PdpEngineConfiguration pdpEngineConf = PdpEngineConfiguration.getInstance(pdpConfFile.toURI().toString());
+		final CoreRefPolicyProvider refPolicyProvider = newRefPolicyProvider(pdpEngineConf, Optional.empty());
+		final CoreRefPolicyProvider reloadedRefPolicyProvider = newRefPolicyProvider(pdpEngineConf, Optional.of(refPolicyProvider));
+		assertSame(get(refPolicyProvider, TopLevelPolicyElementType.POLICY, "P1"), get(reloadedRefPolicyProvider, TopLevelPolicyElementType.POLICY, "P1"));
+		for (final String policySetId : new String[] { "PS1", "PS2", "PS3" })
+		{
+			assertSame(get(refPolicyProvider, TopLevelPolicyElementType.POLICY_SET, policySetId), get(reloadedRefPolicyProvider, TopLevelPolicyElementType.POLICY_SET, policySetId));
+		}
+	}
+
+	@Test
+	public void testChangedPolicyAndReferrersRecompiled() throws IllegalArgumentException, IOException, IndeterminateEvaluationException
+	{
+		final PdpEngineConfiguration pdpEngineConf = PdpEngineConfiguration.getInstance(pdpConfFile.toURI().toString());
+		final CoreRefPolicyProvider refPolicyProvider = newRefPolicyProvider(pdpEngineConf, Optional.empty());
+		write(new File(policyDirectory, "P1.xml"), policy("1.1", "r2"));
+		final CoreRefPolicyProvider reloadedRefPolicyProvider = newRefPolicyProvider(pdpEngineConf, Optional.of(refPolicyProvider));
+
+		assertEquals("1.1", get(reloadedRefPolicyProvider, TopLevelPolicyElementType.POLICY, "P1").getPolicyVersion().toString());
+		// direct and indirect referrers
+		for (final String policySetId : new String[] { "PS1", "PS3" })
+		{
+			final StaticTopLevelPolicyElementEvaluator policySet = get(reloadedRefPolicyProvider, TopLevelPolicyElementType.POLICY_SET, policySetId);
+			assertNotSame(get(refPolicyProvider, TopLevelPolicyElementType.POLICY_SET, policySetId), policySet);
+			assertTrue(policySet.getPolicyRefsMetadata().get().getRefPolicies().stream().anyMatch(refPolicy -> refPolicy.getId().equals("P1") && refPolicy.getVersion().toString().equals("1.1")));
+		}
+
+		assertSame(get(refPolicyProvider, TopLevelPolicyElementType.POLICY_SET, "PS2"), get(reloadedRefPolicyProvider, TopLevelPolicyElementType.POLICY_SET, "PS2"));
+	}
+
+	@Test
+	public void testRemovedPolicySet() throws IllegalArgumentException, IOException, IndeterminateEvaluationException
+	{
+		final PdpEngineConfiguration pdpEngineConf = PdpEngineConfiguration.getInstance(pdpConfFile.toURI().toString());
+		final CoreRefPolicyProvider refPolicyProvider = newRefPolicyProvider(pdpEngineConf, Optional.empty());
+		Files.delete(new File(policyDirectory, "PS2.xml").toPath());
+		final CoreRefPolicyProvider reloadedRefPolicyProvider = newRefPolicyProvider(pdpEngineConf, Optional.of(refPolicyProvider));
+		assertNull(get(reloadedRefPolicyProvider, TopLevelPolicyElementType.POLICY_SET, "PS2"));
+		assertSame(get(refPolicyProvider, TopLevelPolicyElementType.POLICY_SET, "PS3"), get(reloadedRefPolicyProvider, TopLevelPolicyElementType.POLICY_SET, "PS3"));
+	}
+
+	@Test
+	public void testPdpReloadWithChangedReferencedPolicy() throws IllegalArgumentException, IOException
+	{
+		try (final BasePdpEngine pdp = new BasePdpEngine(PdpEngineConfiguration.getInstance(pdpConfFile.toURI().toString())))
+		{
+			assertEquals(DecisionType.PERMIT, evaluate(pdp, "r1"));
+			write(new File(policyDirectory, "P1.xml"), policy("1.0", "r2"));
+			assertTrue(pdp.reloadPolicies());
+			assertEquals(DecisionType.PERMIT, evaluate(pdp, "r2"));
+			assertEquals(DecisionType.DENY, evaluate(pdp, "r1"));
+		}
+	}
+
+	private static DecisionType evaluate(final BasePdpEngine pdp, final String resourceId)
+	{
+		final DecisionRequestBuilder<?> requestBuilder = pdp.newRequestBuilder(-1, -1);
+		requestBuilder.putNamedAttributeIfAbsent(RESOURCE_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue(resourceId)));
+		return pdp.evaluate(requestBuilder.build(false)).getDecision();
+	}
+}
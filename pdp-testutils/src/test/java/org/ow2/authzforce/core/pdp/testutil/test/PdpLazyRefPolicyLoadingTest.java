@@ -0,0 +1,369 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.RESOURCE_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.stdEnvAttributePolicy;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.authzforce.core.pdp.api.Decidable;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.combining.CombiningAlg;
+import org.ow2.authzforce.core.pdp.api.combining.CombiningAlgRegistry;
+import org.ow2.authzforce.core.pdp.api.expression.ExpressionFactory;
+import org.ow2.authzforce.core.pdp.api.io.XacmlJaxbParsingUtils;
+import org.ow2.authzforce.core.pdp.api.policy.PrimaryPolicyMetadata;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValueFactory;
+import org.ow2.authzforce.core.pdp.api.value.AttributeValueFactoryRegistry;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.IntegerValue;
+import org.ow2.authzforce.core.pdp.api.value.StandardAttributeValueFactories;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringParseableValue;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.pdp.impl.StandardEnvironmentAttribute;
+import org.ow2.authzforce.core.pdp.impl.combining.StandardCombiningAlgorithm;
+import org.ow2.authzforce.core.pdp.impl.expression.DepthLimitingExpressionFactory;
+import org.ow2.authzforce.core.pdp.impl.func.FunctionRegistry;
+import org.ow2.authzforce.core.pdp.impl.func.StandardFunction;
+import org.ow2.authzforce.core.pdp.impl.policy.LazyRefPolicyProvider;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+/**
+ * Test of the {@link LazyRefPolicyProvider}: Policies P-i permitting resource r-i (in their Target), referenced by a first-applicable PolicySet PS, used as root policy. The decisions must be the
+ * same as with the StaticRefPolicyProvider, whatever the size of the cache of compiled policies.
+ */
+public class PdpLazyRefPolicyLoadingTest
+{
+	private static final int POLICY_COUNT = 100;
+
+	private static final String XACML_HEADER = "<?xml version='1.0' encoding='UTF-8'?>";
+
+	private static final String PDP_CONF_HEADER = "<?xml version='1.0' encoding='UTF-8'?><pdp xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xmlns='http://authzforce.github.io/core/xmlns/pdp/6.0' version='6.0.1'>";
+
+	private static final String ROOT_POLICY_PROVIDER_CONF = "<rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRefBasedRootPolicyProvider'><policyRef>PS</policyRef></rootPolicyProvider>";
+
+	/*
+	 * Policy permitting the given resource, with a Condition calling the given function (always true if string-is-in)
+	 */
+	private static String policy(final String policyId, final String resourceId, final String conditionFunctionId)
+	{
+		return XACML_HEADER + "<Policy xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicyId='" + policyId
+		        + "' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-unless-permit'><Target><AnyOf><AllOf>"
+		        + "<Match MatchId='urn:oasis:names:tc:xacml:1.0:function:string-equal'><AttributeValue DataType='http://www.w3.org/2001/XMLSchema#string'>" + resourceId
+		        + "</AttributeValue><AttributeDesignator Category='" + RESOURCE_ID.getCategory() + "' AttributeId='" + RESOURCE_ID.getId()
+		        + "' DataType='http://www.w3.org/2001/XMLSchema#string' MustBePresent='false'/></Match></AllOf></AnyOf></Target><Rule RuleId='permit' Effect='Permit'><Condition><Apply FunctionId='"
+		        + conditionFunctionId + "'><AttributeValue DataType='http://www.w3.org/2001/XMLSchema#string'>" + resourceId + "</AttributeValue><AttributeDesignator Category='"
+		        + RESOURCE_ID.getCategory() + "' AttributeId='" + RESOURCE_ID.getId()
+		        + "' DataType='http://www.w3.org/2001/XMLSchema#string' MustBePresent='false'/></Apply></Condition></Rule></Policy>";
+	}
+
+	private static String policySet(final String policySetId, final String policyRefs)
+	{
+		return XACML_HEADER + "<PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='" + policySetId
+		        + "' Version='1.0' PolicyCombiningAlgId='urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:first-applicable'><Target/>" + policyRefs + "</PolicySet>";
+	}
+
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private File policyDirectory;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		policyDirectory = tmpFolder.newFolder("policies");
+	}
+
+	private void writePolicyFile(final String filename, final String policy) throws IOException
+	{
+		Files.write(new File(policyDirectory, filename).toPath(), policy.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/*
+	 * Writes policies P-i and PolicySet PS referring to them, and to an extra policy (invalid function) for resource r-POLICY_COUNT if withInvalidPolicy
+	 */
+	private void writePolicies(final boolean withInvalidPolicy) throws IOException
+	{
+		final StringBuilder policyRefs = new StringBuilder();
+		for (int i = 0; i < POLICY_COUNT; i++)
+		{
+			writePolicyFile("P-" + i + ".xml", policy("P-" + i, "r-" + i, "urn:oasis:names:tc:xacml:1.0:function:string-is-in"));
+			policyRefs.append("<PolicyIdReference>P-").append(i).append("</PolicyIdReference>");
+		}
+
+		if (withInvalidPolicy)
+		{
+			writePolicyFile("P-invalid.xml", policy("P-invalid", "r-" + POLICY_COUNT, "urn:example:function:undefined"));
+			policyRefs.append("<PolicyIdReference>P-invalid</PolicyIdReference>");
+		}
+
+		writePolicyFile("PS.xml", policySet("PS", policyRefs.toString()));
+	}
+
+	private BasePdpEngine newPdpEngine(final String refPolicyProviderConf) throws IllegalArgumentException, IOException
+	{
+		final File pdpConfFile = tmpFolder.newFile();
+		Files.write(pdpConfFile.toPath(), (PDP_CONF_HEADER + refPolicyProviderConf + ROOT_POLICY_PROVIDER_CONF + "</pdp>").getBytes(StandardCharsets.UTF_8));
+		return new BasePdpEngine(PdpEngineConfiguration.getInstance(pdpConfFile.toURI().toString()));
+	}
+
+	private BasePdpEngine newLazyPdpEngine(final String cacheConf) throws IllegalArgumentException, IOException
+	{
+		return newPdpEngine("<refPolicyProvider id='refPolicyProvider' xsi:type='LazyRefPolicyProvider'" + cacheConf + "><policyLocation>" + policyDirectory.toURI()
+		        + "*.xml</policyLocation></refPolicyProvider>");
+	}
+
+	private static DecisionType evaluate(final BasePdpEngine pdp, final String resourceId)
+	{
+		final DecisionRequestBuilder<?> requestBuilder = pdp.newRequestBuilder(-1, -1);
+		requestBuilder.putNamedAttributeIfAbsent(RESOURCE_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue(resourceId)));
+		return pdp.evaluate(requestBuilder.build(false)).getDecision();
+	}
+
+	private static void assertDecisions(final BasePdpEngine pdp)
+	{
+		// twice, to evaluate compiled policies from the cache (or compiled again if evicted)
+		for (int round = 0; round < 2; round++)
+		{
+			for (int i = 0; i < POLICY_COUNT; i += 7)
+			{
+				assertEquals("Wrong decision for resource r-" + i, DecisionType.PERMIT, evaluate(pdp, "r-" + i));
+			}
+		}
+	}
+
+	@Test
+	public void testSameDecisionsAsStaticRefPolicyProvider() throws IllegalArgumentException, IOException
+	{
+		writePolicies(false);
+		try (final BasePdpEngine staticPdp = newPdpEngine("<refPolicyProvider id='refPolicyProvider' xsi:type='StaticRefPolicyProvider'><policyLocation>" + policyDirectory.toURI()
+		        + "*.xml</policyLocation></refPolicyProvider>"); final BasePdpEngine lazyPdp = newLazyPdpEngine(""))
+		{
+			for (final String resourceId : new String[] { "r-0", "r-" + POLICY_COUNT / 2, "r-" + (POLICY_COUNT - 1), "r-" + POLICY_COUNT })
+			{
+				assertEquals("Wrong decision for resource " + resourceId, evaluate(staticPdp, resourceId), evaluate(lazyPdp, resourceId));
+			}
+
+			assertDecisions(lazyPdp);
+			assertEquals(DecisionType.NOT_APPLICABLE, evaluate(lazyPdp, "r-" + POLICY_COUNT));
+		}
+	}
+
+	@Test
+	public void testBoundedCache() throws IllegalArgumentException, IOException
+	{
+		writePolicies(false);
+		try (final BasePdpEngine countBoundedPdp = newLazyPdpEngine(" maxCachedPolicies='2'"); final BasePdpEngine weightBoundedPdp = newLazyPdpEngine(" maxCachedPolicyWeight='1'"))
+		{
+			assertDecisions(countBoundedPdp);
+			assertDecisions(weightBoundedPdp);
+		}
+	}
+
+	@Test
+	public void testInvalidPolicyReportedAtEvaluation() throws IllegalArgumentException, IOException
+	{
+		writePolicies(true);
+		try
+		{
+			newPdpEngine("<refPolicyProvider id='refPolicyProvider' xsi:type='StaticRefPolicyProvider'><policyLocation>" + policyDirectory.toURI() + "*.xml</policyLocation></refPolicyProvider>");
+			fail("Invalid policy not rejected by StaticRefPolicyProvider");
+		}
+		catch (final IllegalArgumentException e)
+		{
+			// expected
+		}
+
+		try (final BasePdpEngine lazyPdp = newLazyPdpEngine(""))
+		{
+			// the invalid policy is not compiled until a request reaches it
+			assertDecisions(lazyPdp);
+			assertEquals(DecisionType.INDETERMINATE, evaluate(lazyPdp, "r-" + POLICY_COUNT));
+			assertEquals(DecisionType.INDETERMINATE, evaluate(lazyPdp, "r-" + POLICY_COUNT));
+		}
+	}
+
+	/**
+	 * The PDP must issue the standard environment attributes read by policies compiled on demand, i.e. after the PDP is initialized
+	 */
+	@Test
+	public void testStdEnvAttributeInLazilyLoadedPolicy() throws IllegalArgumentException, IOException
+	{
+		writePolicyFile("P-clock.xml", stdEnvAttributePolicy("P-clock", StandardEnvironmentAttribute.CURRENT_DATETIME, "dateTime"));
+		writePolicyFile("PS.xml", policySet("PS", "<PolicyIdReference>P-clock</PolicyIdReference>"));
+		try (final BasePdpEngine staticPdp = newPdpEngine("<refPolicyProvider id='refPolicyProvider' xsi:type='StaticRefPolicyProvider'><policyLocation>" + policyDirectory.toURI()
+		        + "*.xml</policyLocation></refPolicyProvider>"); final BasePdpEngine lazyPdp = newLazyPdpEngine(""))
+		{
+			assertEquals(DecisionType.PERMIT, evaluate(staticPdp, "r-0"));
+			assertEquals(DecisionType.PERMIT, evaluate(lazyPdp, "r-0"));
+		}
+	}
+
+	/**
+	 * Errors reading a policy document may be transient, unlike invalid policies: the policy is loaded again on the next request
+	 */
+	@Test
+	public void testPolicyReadErrorNotMemoized() throws IllegalArgumentException, IOException
+	{
+		writePolicies(false);
+		final String resourceId = "r-" + (POLICY_COUNT - 1);
+		try (final BasePdpEngine lazyPdp = newLazyPdpEngine(""))
+		{
+			final Path policyFile = new File(policyDirectory, "P-" + (POLICY_COUNT - 1) + ".xml").toPath();
+			final Path movedPolicyFile = tmpFolder.getRoot().toPath().resolve("moved.xml");
+			Files.move(policyFile, movedPolicyFile);
+			assertNotEquals(DecisionType.PERMIT, evaluate(lazyPdp, resourceId));
+			Files.move(movedPolicyFile, policyFile);
+			assertEquals(DecisionType.PERMIT, evaluate(lazyPdp, resourceId));
+		}
+	}
+
+	@Test
+	public void testPolicyCompiledOnceOnConcurrentRequests() throws Exception
+	{
+		writePolicyFile("P-0.xml", policy("P-0", "r-0", "urn:oasis:names:tc:xacml:1.0:function:string-is-in"));
+		/*
+		 * The rule-combining algorithm is looked up once per compilation of the policy, made slow enough for the requests to overlap
+		 */
+		final AtomicInteger compilationCount = new AtomicInteger(0);
+		final CombiningAlgRegistry slowCombiningAlgRegistry = new CombiningAlgRegistry()
+		{
+
+			@Override
+			public CombiningAlg<?> getExtension(final String identity)
+			{
+				return StandardCombiningAlgorithm.REGISTRY.getExtension(identity);
+			}
+
+			@Override
+			public Set<CombiningAlg<?>> getExtensions()
+			{
+				return StandardCombiningAlgorithm.REGISTRY.getExtensions();
+			}
+
+			@Override
+			public <T extends Decidable> CombiningAlg<T> getAlgorithm(final String algId, final Class<T> combinedEltType) throws IllegalArgumentException
+			{
+				compilationCount.incrementAndGet();
+				try
+				{
+					Thread.sleep(200);
+				}
+				catch (final InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+
+				return StandardCombiningAlgorithm.REGISTRY.getAlgorithm(algId, combinedEltType);
+			}
+		};
+
+		final AttributeValueFactoryRegistry valFactoryReg = StandardAttributeValueFactories.getRegistry(false, Optional.of(BigInteger.valueOf(Integer.MAX_VALUE)));
+		final AttributeValueFactory<?> intValFactory = valFactoryReg.getExtension(StandardDatatypes.INTEGER.getId());
+		final FunctionRegistry funcReg = StandardFunction.getRegistry(false, (StringParseableValue.Factory<IntegerValue>) intValFactory);
+		final int threadCount = 8;
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try (final ExpressionFactory expressionFactory = new DepthLimitingExpressionFactory(valFactoryReg, funcReg, null, 0, false, false))
+		{
+			final LazyRefPolicyProvider policyProvider = LazyRefPolicyProvider.getInstance(Collections.singletonList(new File(policyDirectory, "P-0.xml").toURI().toURL()), false,
+			        XacmlJaxbParsingUtils.getXacmlParserFactory(false), 10, 0, 0, expressionFactory, slowCombiningAlgRegistry);
+			final int compilationCountBeforeRequests = compilationCount.get();
+			final CountDownLatch start = new CountDownLatch(1);
+			final List<Future<Set<PrimaryPolicyMetadata>>> results = new ArrayList<>();
+			for (int i = 0; i < threadCount; i++)
+			{
+				results.add(executor.submit(() -> {
+					start.await();
+					// requires the compiled policy
+					return policyProvider.get(TopLevelPolicyElementType.POLICY, "P-0", Optional.empty(), null).getEnclosedPolicies();
+				}));
+			}
+
+			start.countDown();
+			for (final Future<Set<PrimaryPolicyMetadata>> result : results)
+			{
+				result.get(10, TimeUnit.SECONDS);
+			}
+
+			assertEquals("Policy compiled more than once", 1, compilationCount.get() - compilationCountBeforeRequests);
+			policyProvider.close();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPolicySetRefLoopRejected() throws IllegalArgumentException, IOException
+	{
+		writePolicyFile("PS.xml", policySet("PS", "<PolicySetIdReference>PS-2</PolicySetIdReference>"));
+		writePolicyFile("PS-2.xml", policySet("PS-2", "<PolicySetIdReference>PS</PolicySetIdReference>"));
+		newLazyPdpEngine("").close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnresolvedPolicyRefRejected() throws IllegalArgumentException, IOException
+	{
+		writePolicyFile("PS.xml", policySet("PS", "<PolicyIdReference>P-undefined</PolicyIdReference>"));
+		newLazyPdpEngine("").close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMaxPolicySetRefDepthChecked() throws IllegalArgumentException, IOException
+	{
+		writePolicyFile("PS.xml", policySet("PS", "<PolicySetIdReference>PS-2</PolicySetIdReference>"));
+		writePolicyFile("PS-2.xml", policySet("PS-2", "<PolicySetIdReference>PS-3</PolicySetIdReference>"));
+		writePolicyFile("PS-3.xml", policySet("PS-3", "<PolicyIdReference>P-0</PolicyIdReference>"));
+		writePolicyFile("P-0.xml", policy("P-0", "r-0", "urn:oasis:names:tc:xacml:1.0:function:string-is-in"));
+		final File pdpConfFile = tmpFolder.newFile();
+		Files.write(pdpConfFile.toPath(),
+		        (PDP_CONF_HEADER.replace("version='6.0.1'>", "version='6.0.1' maxPolicyRefDepth='1'>") + "<refPolicyProvider id='refPolicyProvider' xsi:type='LazyRefPolicyProvider'><policyLocation>"
+		                + policyDirectory.toURI() + "*.xml</policyLocation></refPolicyProvider>" + ROOT_POLICY_PROVIDER_CONF + "</pdp>").getBytes(StandardCharsets.UTF_8));
+		PdpEngineConfiguration.getInstance(pdpConfFile.toURI().toString());
+	}
+}
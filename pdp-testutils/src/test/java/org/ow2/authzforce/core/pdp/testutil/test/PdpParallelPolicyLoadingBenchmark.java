@@ -0,0 +1,92 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+
+/**
+ * Startup-time benchmark: PDP configuration loading and PDP engine instantiation with the synthetic repository of {@link PdpParallelPolicyLoadingTest}, with 10k Policies and as many PolicySets.
+ * <p>
+ * Not part of the default test suite ({@link MainTest}) as it takes a while; run it with:
+ * 
+ * <pre>
+ * mvn test -Dtest=PdpParallelPolicyLoadingBenchmark
+ * </pre>
+ * 
+ * The number of Policies may be changed with system property {@value #POLICY_COUNT_PROPERTY}. The results are printed to the standard output (the test logging configuration hides INFO
+ * messages).
+ */
+public class PdpParallelPolicyLoadingBenchmark
+{
+	/**
+	 * System property setting the number of Policies (and as many PolicySets)
+	 */
+	public static final String POLICY_COUNT_PROPERTY = "org.ow2.authzforce.test.benchmark.policyCount";
+
+	private static final int DEFAULT_POLICY_COUNT = 10000;
+
+	/*
+	 * Number of PDP startups before the measured ones (JIT compilation, file system cache)
+	 */
+	private static final int WARMUP_ITERATIONS = 2;
+
+	private static final int MEASURED_ITERATIONS = 5;
+
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	@Test
+	public void benchmarkStartup() throws IllegalArgumentException, IOException
+	{
+		final int policyCount = Integer.getInteger(POLICY_COUNT_PROPERTY, DEFAULT_POLICY_COUNT);
+		final File policyDirectory = tmpFolder.newFolder("policies");
+		final List<URL> policyURLs = PdpParallelPolicyLoadingTest.writePolicyFiles(policyDirectory, policyCount);
+		final String pdpConfLocation = PdpParallelPolicyLoadingTest.newPdpConfFile(tmpFolder, policyDirectory, "PS-0").toURI().toString();
+
+		long minTimeNanos = Long.MAX_VALUE;
+		long totalTimeNanos = 0;
+		for (int i = 0; i < WARMUP_ITERATIONS + MEASURED_ITERATIONS; i++)
+		{
+			final long startTime = System.nanoTime();
+			try (final BasePdpEngine pdp = new BasePdpEngine(PdpEngineConfiguration.getInstance(pdpConfLocation)))
+			{
+				final long timeNanos = System.nanoTime() - startTime;
+				assertNotNull(pdp.getApplicablePolicies());
+				if (i >= WARMUP_ITERATIONS)
+				{
+					minTimeNanos = Math.min(minTimeNanos, timeNanos);
+					totalTimeNanos += timeNanos;
+				}
+			}
+		}
+
+		System.out.printf("PDP startup with %d policy files on %d processor(s): min = %d ms, average = %d ms (over %d startups, after %d warmup startups)%n", policyURLs.size(),
+		        Runtime.getRuntime().availableProcessors(), minTimeNanos / 1000000, totalTimeNanos / MEASURED_ITERATIONS / 1000000, MEASURED_ITERATIONS, WARMUP_ITERATIONS);
+	}
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.RESOURCE_ID;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.IndeterminateEvaluationException;
+import org.ow2.authzforce.core.pdp.api.io.XacmlJaxbParsingUtils;
+import org.ow2.authzforce.core.pdp.api.policy.TopLevelPolicyElementType;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.pdp.impl.combining.StandardCombiningAlgorithm;
+import org.ow2.authzforce.core.pdp.impl.policy.CoreRefPolicyProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+/**
+ * Test of the parallel parsing of a synthetic repository of many policy files by {@link CoreRefPolicyProvider}: Policies P-i, each with a VariableDefinition of the same VariableId, and PolicySets
+ * PS-i referring to P-i and PS-(i-1) (chains of up to 5 PolicySets). The loading time is logged for information only; see {@link PdpParallelPolicyLoadingBenchmark} for the startup
+ * benchmark.
+ */
+public class PdpParallelPolicyLoadingTest
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(PdpParallelPolicyLoadingTest.class);
+
+	/*
+	 * Number of Policies (and as many PolicySets). Enough for all worker threads to parse and compile policies at the same time, and small enough to keep this test suite fast (each test reloads all
+	 * the files).
+	 */
+	private static final int POLICY_COUNT = 2000;
+
+	static final int MAX_POLICY_REF_DEPTH = 10;
+
+	private static final String XACML_HEADER = "<?xml version='1.0' encoding='UTF-8'?>";
+
+	private static String policy(final int index, final String stringEqualFunctionId)
+	{
+		return XACML_HEADER + "<Policy xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicyId='P-" + index
+		        + "' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-unless-permit'><Target/>"
+		        + "<VariableDefinition VariableId='resource-id'><Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:string-one-and-only'><AttributeDesignator Category='"
+		        + RESOURCE_ID.getCategory() + "' AttributeId='" + RESOURCE_ID.getId() + "' DataType='http://www.w3.org/2001/XMLSchema#string' MustBePresent='true'/></Apply></VariableDefinition>"
+		        + "<Rule RuleId='permit' Effect='Permit'><Condition><Apply FunctionId='" + stringEqualFunctionId
+		        + "'><VariableReference VariableId='resource-id'/><AttributeValue DataType='http://www.w3.org/2001/XMLSchema#string'>r" + index
+		        + "</AttributeValue></Apply></Condition></Rule></Policy>";
+	}
+
+	private static String policySet(final int index)
+	{
+		return XACML_HEADER + "<PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='PS-" + index
+		        + "' Version='1.0' PolicyCombiningAlgId='urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-unless-permit'><Target/><PolicyIdReference>P-" + index
+		        + "</PolicyIdReference>" + (index % 5 == 0 ? "" : "<PolicySetIdReference>PS-" + (index - 1) + "</PolicySetIdReference>") + "</PolicySet>";
+	}
+
+	/**
+	 * Writes the synthetic policy repository
+	 * 
+	 * @param policyDirectory
+	 *            directory where the policy files are written
+	 * @param policyCount
+	 *            number of Policies (and as many PolicySets)
+	 * @return locations of the policy files
+	 * @throws IOException
+	 *             error writing a policy file
+	 */
+	static List<URL> writePolicyFiles(final File policyDirectory, final int policyCount) throws IOException
+	{
+		final List<URL> policyURLs = new ArrayList<>(2 * policyCount);
+		for (int i = 0; i < policyCount; i++)
+		{
+			final File policyFile = new File(policyDirectory, "P-" + i + ".xml");
+			Files.write(policyFile.toPath(), policy(i, "urn:oasis:names:tc:xacml:1.0:function:string-equal").getBytes(StandardCharsets.UTF_8));
+			policyURLs.add(policyFile.toURI().toURL());
+			final File policySetFile = new File(policyDirectory, "PS-" + i + ".xml");
+			Files.write(policySetFile.toPath(), policySet(i).getBytes(StandardCharsets.UTF_8));
+			policyURLs.add(policySetFile.toURI().toURL());
+		}
+
+		return policyURLs;
+	}
+
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private File policyDirectory;
+	private List<URL> policyURLs;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		policyDirectory = tmpFolder.newFolder("policies");
+		policyURLs = writePolicyFiles(policyDirectory, POLICY_COUNT);
+	}
+
+	/**
+	 * Writes the PDP configuration, with the synthetic policy repository as refPolicyProvider
+	 * 
+	 * @param tmpFolder
+	 *            folder where the configuration files are written
+	 * @param policyDirectory
+	 *            directory of the policy files
+	 * @param rootPolicySetId
+	 *            PolicySetId of the PolicySet referenced by the root PolicySet
+	 * @return PDP configuration file
+	 * @throws IOException
+	 *             error writing a configuration file
+	 */
+	static File newPdpConfFile(final TemporaryFolder tmpFolder, final File policyDirectory, final String rootPolicySetId) throws IOException
+	{
+		final File rootPolicyFile = tmpFolder.newFile("root.xml");
+		Files.write(rootPolicyFile.toPath(), (XACML_HEADER + "<PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='root' Version='1.0'"
+		        + " PolicyCombiningAlgId='urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-unless-permit'><Target/><PolicySetIdReference>" + rootPolicySetId
+		        + "</PolicySetIdReference></PolicySet>").getBytes(StandardCharsets.UTF_8));
+		final File pdpConfFile = tmpFolder.newFile("pdp.xml");
+		Files.write(pdpConfFile.toPath(),
+		        ("<?xml version='1.0' encoding='UTF-8'?><pdp xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xmlns='http://authzforce.github.io/core/xmlns/pdp/6.0' version='6.0.1'"
+		                + " maxPolicyRefDepth='" + MAX_POLICY_REF_DEPTH + "'><refPolicyProvider id='refPolicyProvider' xsi:type='StaticRefPolicyProvider'><policyLocation>" + policyDirectory.toURI()
+		                + "*.xml</policyLocation></refPolicyProvider><rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRootPolicyProvider' policyLocation='" + rootPolicyFile.toURI()
+		                + "'/></pdp>").getBytes(StandardCharsets.UTF_8));
+		return pdpConfFile;
+	}
+
+	private CoreRefPolicyProvider newRefPolicyProvider(final PdpEngineConfiguration pdpEngineConf)
+	{
+		final long startTime = System.nanoTime();
+		final CoreRefPolicyProvider refPolicyProvider = CoreRefPolicyProvider.getInstance(policyURLs, false, XacmlJaxbParsingUtils.getXacmlParserFactory(false), MAX_POLICY_REF_DEPTH,
+		        pdpEngineConf.getXacmlExpressionFactory(), StandardCombiningAlgorithm.REGISTRY);
+		LOGGER.info("{} policy files loaded in {} ms on {} processor(s)", policyURLs.size(), (System.nanoTime() - startTime) / 1000000, Runtime.getRuntime().availableProcessors());
+		return refPolicyProvider;
+	}
+
+	@Test
+	public void testAllPoliciesLoaded() throws IllegalArgumentException, IOException, IndeterminateEvaluationException
+	{
+		final PdpEngineConfiguration pdpEngineConf = PdpEngineConfiguration.getInstance(newPdpConfFile(tmpFolder, policyDirectory, "PS-0").toURI().toString());
+		final CoreRefPolicyProvider refPolicyProvider = newRefPolicyProvider(pdpEngineConf);
+		for (int i = 0; i < POLICY_COUNT; i++)
+		{
+			assertNotNull(refPolicyProvider.get(TopLevelPolicyElementType.POLICY, "P-" + i, Optional.empty(), null));
+			final int expectedRefPolicyCount = 2 * (i % 5) + 1;
+			assertEquals("Wrong number of policies referenced by PS-" + i, expectedRefPolicyCount,
+			        refPolicyProvider.get(TopLevelPolicyElementType.POLICY_SET, "PS-" + i, Optional.empty(), null).getPolicyRefsMetadata().get().getRefPolicies().size());
+		}
+	}
+
+	/**
+	 * Each Policy must use its own VariableDefinition, although they have the same VariableId and are parsed concurrently
+	 */
+	@Test
+	public void testEvaluation() throws IllegalArgumentException, IOException
+	{
+		// PS-index refers to P-index only
+		final int index = POLICY_COUNT / 5 * 5 - 5;
+		try (final BasePdpEngine pdp = new BasePdpEngine(PdpEngineConfiguration.getInstance(newPdpConfFile(tmpFolder, policyDirectory, "PS-" + index).toURI().toString())))
+		{
+			for (int i = index - 1; i <= index + 1; i++)
+			{
+				final DecisionRequestBuilder<?> requestBuilder = pdp.newRequestBuilder(-1, -1);
+				requestBuilder.putNamedAttributeIfAbsent(RESOURCE_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue("r" + i)));
+				assertEquals("Wrong decision for resource r" + i, i == index ? DecisionType.PERMIT : DecisionType.DENY, pdp.evaluate(requestBuilder.build(false)).getDecision());
+			}
+		}
+	}
+
+	/**
+	 * The error reported must be the one of the first invalid policy in the order of the locations, whatever the order in which they are parsed
+	 */
+	@Test
+	public void testDeterministicErrorReporting() throws IllegalArgumentException, IOException
+	{
+		final PdpEngineConfiguration pdpEngineConf = PdpEngineConfiguration.getInstance(newPdpConfFile(tmpFolder, policyDirectory, "PS-0").toURI().toString());
+		for (final int invalidPolicyIndex : new int[] { POLICY_COUNT / 4, POLICY_COUNT - 1 })
+		{
+			Files.write(new File(policyDirectory, "P-" + invalidPolicyIndex + ".xml").toPath(), policy(invalidPolicyIndex, "urn:example:unknown-function").getBytes(StandardCharsets.UTF_8));
+		}
+
+		for (int i = 0; i < 3; i++)
+		{
+			try
+			{
+				newRefPolicyProvider(pdpEngineConf);
+				fail("Invalid policy not rejected");
+			}
+			catch (final IllegalArgumentException e)
+			{
+				assertEquals("Invalid Policy with PolicyId=P-" + POLICY_COUNT / 4 + ", Version=1.0", e.getMessage());
+			}
+		}
+	}
+}
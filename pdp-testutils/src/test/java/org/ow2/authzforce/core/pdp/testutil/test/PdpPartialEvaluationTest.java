@@ -0,0 +1,226 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.ACTION_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.ROLE;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.isIn;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.match;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.putStringAttribute;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.randomValues;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.singleValueEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.AttributeFqns;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.IntegerValue;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.DefaultEnvironmentProperties;
+import org.ow2.authzforce.core.pdp.impl.PartialEvaluation;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.xmlns.pdp.Pdp;
+import org.ow2.authzforce.core.xmlns.pdp.StaticAttribute;
+import org.ow2.authzforce.core.xmlns.pdp.StaticRootPolicyProvider;
+import org.ow2.authzforce.xacml.identifiers.XacmlAttributeCategory;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+/**
+ * Test of the partial evaluation of policies at loading time, with a tenant ID fixed at deployment time (static attribute): the decisions of the specialized policies must be the same as the ones of
+ * the original policies with the tenant ID given in the requests instead, and as the ones computed here by a reference implementation of the policy.
+ */
+@RunWith(value = Parameterized.class)
+public class PdpPartialEvaluationTest
+{
+	private static final String TENANT_PROPERTY_NAME = "org.ow2.authzforce.test.tenant";
+
+	private static final AttributeFqn TENANT = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_3_0_ENVIRONMENT.value(), Optional.empty(), "urn:example:tenant");
+	private static final AttributeFqn LEVEL = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_1_0_ACCESS_SUBJECT.value(), Optional.empty(), "urn:example:level");
+
+	private static final List<String> REQUEST_ACTIONS = Arrays.asList("read", "write", "delete", "purge");
+	private static final List<String> REQUEST_ROLES = Arrays.asList("admin", "user", "guest");
+
+	@Parameters(name = "partialEvaluation={0}")
+	public static Collection<Object[]> params()
+	{
+		return Arrays.asList(new Object[] { false }, new Object[] { true });
+	}
+
+	@Rule
+	public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private final boolean partialEvaluation;
+
+	public PdpPartialEvaluationTest(final boolean partialEvaluation)
+	{
+		this.partialEvaluation = partialEvaluation;
+	}
+
+	@Before
+	public void setTenantProperty()
+	{
+		System.setProperty(TENANT_PROPERTY_NAME, "t1");
+	}
+
+	@After
+	public void clearTenantProperty()
+	{
+		System.clearProperty(TENANT_PROPERTY_NAME);
+	}
+
+	/**
+	 * PolicySet with first-applicable policies:
+	 * <ol>
+	 * <li>Policy with first-applicable rules:
+	 * <ol>
+	 * <li>Permit if tenant is t2 (never applicable for tenant t1);</li>
+	 * <li>Permit if tenant is t1 and role is admin, and tenant is t1 and not(not(action-id is write));</li>
+	 * <li>Deny if at least 2 of: tenant is t1, action-id is delete, action-id is purge;</li>
+	 * <li>Deny if tenant is t2 or t2 is one of the tenants (never applicable for tenant t1);</li>
+	 * <li>Permit if level is lower than or equal to the variable maxLevel = 3.</li>
+	 * </ol>
+	 * </li>
+	 * <li>Policy for tenant t1 with deny-overrides rules: Deny if tenant is t1, Permit (i.e. always Deny for tenant t1).</li>
+	 * </ol>
+	 */
+	private static String policyXml()
+	{
+		final StringBuilder xml = new StringBuilder(
+		        "<?xml version='1.0' encoding='UTF-8'?><PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='root' Version='1.0' PolicyCombiningAlgId='urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:first-applicable'><Target/>");
+		xml.append(
+		        "<Policy PolicyId='rules' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:1.0:rule-combining-algorithm:first-applicable'><Target/><VariableDefinition VariableId='maxLevel'><AttributeValue DataType='http://www.w3.org/2001/XMLSchema#integer'>3</AttributeValue></VariableDefinition>");
+		xml.append("<Rule RuleId='otherTenant' Effect='Permit'><Target><AnyOf><AllOf>").append(match(TENANT, "t2")).append("</AllOf></AnyOf></Target></Rule>");
+		xml.append("<Rule RuleId='admin' Effect='Permit'><Target><AnyOf><AllOf>").append(match(TENANT, "t1")).append(match(ROLE, "admin"))
+		        .append("</AllOf></AnyOf></Target><Condition><Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:and'>").append(singleValueEquals(TENANT, "t1"))
+		        .append("<Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:not'><Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:not'>").append(isIn(ACTION_ID, "write"))
+		        .append("</Apply></Apply></Apply></Condition></Rule>");
+		xml.append(
+		        "<Rule RuleId='delete' Effect='Deny'><Condition><Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:n-of'><AttributeValue DataType='http://www.w3.org/2001/XMLSchema#integer'>2</AttributeValue>")
+		        .append(singleValueEquals(TENANT, "t1")).append(isIn(ACTION_ID, "delete")).append(isIn(ACTION_ID, "purge")).append("</Apply></Condition></Rule>");
+		xml.append("<Rule RuleId='otherTenantDeny' Effect='Deny'><Condition><Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:or'>").append(singleValueEquals(TENANT, "t2")).append(isIn(TENANT, "t2"))
+		        .append("</Apply></Condition></Rule>");
+		xml.append(
+		        "<Rule RuleId='level' Effect='Permit'><Condition><Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:integer-less-than-or-equal'><Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:integer-one-and-only'>")
+		        .append("<AttributeDesignator Category='" + LEVEL.getCategory() + "' AttributeId='" + LEVEL.getId() + "' DataType='http://www.w3.org/2001/XMLSchema#integer' MustBePresent='false'/>").append("</Apply><VariableReference VariableId='maxLevel'/></Apply></Condition></Rule>");
+		xml.append("</Policy>");
+		xml.append("<Policy PolicyId='default' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-overrides'><Target><AnyOf><AllOf>").append(match(TENANT, "t1"))
+		        .append("</AllOf></AnyOf></Target>");
+		xml.append("<Rule RuleId='tenantDeny' Effect='Deny'><Condition>").append(singleValueEquals(TENANT, "t1")).append("</Condition></Rule>");
+		xml.append("<Rule RuleId='permit' Effect='Permit'/>");
+		xml.append("</Policy></PolicySet>");
+		return xml.toString();
+	}
+
+	/**
+	 * Reference implementation of the policy (for tenant t1)
+	 */
+	private static DecisionType getExpectedDecision(final List<String> actionIds, final List<String> roles, final int level)
+	{
+		if (roles.contains("admin") && actionIds.contains("write"))
+		{
+			return DecisionType.PERMIT;
+		}
+
+		if (actionIds.contains("delete") || actionIds.contains("purge"))
+		{
+			return DecisionType.DENY;
+		}
+
+		return level <= 3 ? DecisionType.PERMIT : DecisionType.DENY;
+	}
+
+	@Test
+	public void test() throws IllegalArgumentException, IOException
+	{
+		final File policyFile = tmpFolder.newFile("policy.xml");
+		Files.write(policyFile.toPath(), policyXml().getBytes(StandardCharsets.UTF_8));
+
+		final Pdp jaxbPdp = new Pdp();
+		jaxbPdp.setPartialEvaluation(partialEvaluation);
+		if (partialEvaluation)
+		{
+			final StaticAttribute tenant = new StaticAttribute();
+			tenant.setCategory(TENANT.getCategory());
+			tenant.setId(TENANT.getId());
+			tenant.setValue("${" + TENANT_PROPERTY_NAME + "}");
+			jaxbPdp.getStaticAttributes().add(tenant);
+		}
+
+		final StaticRootPolicyProvider jaxbRootPolicyProvider = new StaticRootPolicyProvider();
+		jaxbRootPolicyProvider.setId("rootPolicyProvider");
+		jaxbRootPolicyProvider.setPolicyLocation(policyFile.toURI().toString());
+		jaxbPdp.setRootPolicyProvider(jaxbRootPolicyProvider);
+
+		final PdpEngineConfiguration pdpEngineConf = new PdpEngineConfiguration(jaxbPdp, new DefaultEnvironmentProperties());
+		final int eliminatedNodeCount = PartialEvaluation.getEliminatedNodeCount(pdpEngineConf.getXacmlExpressionFactory());
+		if (partialEvaluation)
+		{
+			assertTrue("No node eliminated by partial evaluation", eliminatedNodeCount > 0);
+		}
+		else
+		{
+			assertEquals("Nodes eliminated by partial evaluation although disabled", 0, eliminatedNodeCount);
+		}
+
+		try (final BasePdpEngine pdp = new BasePdpEngine(pdpEngineConf))
+		{
+			final Random random = new Random(0);
+			for (int i = 0; i < 500; i++)
+			{
+				final List<String> actionIds = randomValues(random, REQUEST_ACTIONS, 2);
+				final List<String> roles = randomValues(random, REQUEST_ROLES, 2);
+				final int level = 1 + random.nextInt(5);
+
+				final DecisionRequestBuilder<?> requestBuilder = pdp.newRequestBuilder(-1, -1);
+				if (!partialEvaluation)
+				{
+					putStringAttribute(requestBuilder, TENANT, Collections.singletonList("t1"));
+				}
+
+				putStringAttribute(requestBuilder, ACTION_ID, actionIds);
+				putStringAttribute(requestBuilder, ROLE, roles);
+				requestBuilder.putNamedAttributeIfAbsent(LEVEL, Bags.singletonAttributeBag(StandardDatatypes.INTEGER, IntegerValue.valueOf(level)));
+				assertEquals("Wrong decision for request with action-id=" + actionIds + ", role=" + roles + ", level=" + level, getExpectedDecision(actionIds, roles, level),
+				        pdp.evaluate(requestBuilder.build(false)).getDecision());
+			}
+		}
+	}
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.RESOURCE_ID;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+/**
+ * Test of the hot reload of policies (PDP configuration parameter 'policyReloadDelayMillis'): the root policy references a PolicySet loaded by the StaticRefPolicyProvider from a directory
+ * (file path pattern), and the policies are reloaded when the files change, without interrupting the evaluation of requests, and kept when the new ones are invalid.
+ */
+public class PdpPolicyHotReloadTest
+{
+	private static final long RELOAD_TIMEOUT_MILLIS = 30000;
+
+	/*
+	 * Delay of the reload after a policy file change, short enough for the tests waiting for the reload
+	 */
+	private static final long SHORT_RELOAD_DELAY_MILLIS = 50;
+
+	/*
+	 * Delay too long for the reload after a file change to happen during the tests calling reloadPolicies() explicitly, so that it does not interfere
+	 */
+	private static final long LONG_RELOAD_DELAY_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+	private static String refPolicySet(final String version, final String permittedResourceId)
+	{
+		return "<?xml version='1.0' encoding='UTF-8'?><PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='P1' Version='" + version
+		        + "' PolicyCombiningAlgId='urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:first-applicable'><Target/><Policy PolicyId='P1-policy' Version='1.0'"
+		        + " RuleCombiningAlgId='urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-unless-permit'><Target/><Rule RuleId='permit' Effect='Permit'><Target><AnyOf><AllOf>"
+		        + "<Match MatchId='urn:oasis:names:tc:xacml:1.0:function:string-equal'><AttributeValue DataType='http://www.w3.org/2001/XMLSchema#string'>" + permittedResourceId
+		        + "</AttributeValue><AttributeDesignator Category='" + RESOURCE_ID.getCategory() + "' AttributeId='" + RESOURCE_ID.getId()
+		        + "' DataType='http://www.w3.org/2001/XMLSchema#string' MustBePresent='false'/></Match></AllOf></AnyOf></Target></Rule></Policy></PolicySet>";
+	}
+
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private File rootPolicyFile;
+	private File refPolicyDirectory;
+	private File refPolicyFile;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		rootPolicyFile = tmpFolder.newFile("root.xml");
+		Files.write(rootPolicyFile.toPath(),
+		        ("<?xml version='1.0' encoding='UTF-8'?><PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='root' Version='1.0'"
+		                + " PolicyCombiningAlgId='urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:first-applicable'><Target/><PolicySetIdReference>P1</PolicySetIdReference></PolicySet>")
+		                        .getBytes(StandardCharsets.UTF_8));
+		refPolicyDirectory = tmpFolder.newFolder("policies");
+		refPolicyFile = new File(refPolicyDirectory, "P1.xml");
+		Files.write(refPolicyFile.toPath(), refPolicySet("1.0", "r1").getBytes(StandardCharsets.UTF_8));
+	}
+
+	private BasePdpEngine newPdpEngine(final long policyReloadDelayMillis) throws IllegalArgumentException, IOException
+	{
+		return newPdpEngine(policyReloadDelayMillis, "");
+	}
+
+	private BasePdpEngine newPdpEngine(final long policyReloadDelayMillis, final String decisionCacheConf) throws IllegalArgumentException, IOException
+	{
+		final File pdpConfFile = tmpFolder.newFile("pdp.xml");
+		final String pdpConf = "<?xml version='1.0' encoding='UTF-8'?><pdp xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xmlns='http://authzforce.github.io/core/xmlns/pdp/6.0' version='6.0.1'"
+		        + " policyReloadDelayMillis='" + policyReloadDelayMillis + "'><refPolicyProvider id='refPolicyProvider' xsi:type='StaticRefPolicyProvider'><policyLocation>"
+		        + refPolicyDirectory.toURI() + "*.xml</policyLocation></refPolicyProvider><rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRootPolicyProvider' policyLocation='"
+		        + rootPolicyFile.toURI() + "'/>" + decisionCacheConf + "</pdp>";
+		Files.write(pdpConfFile.toPath(), pdpConf.getBytes(StandardCharsets.UTF_8));
+		final PdpEngineConfiguration pdpEngineConf = PdpEngineConfiguration.getInstance(pdpConfFile.toURI().toString());
+		assertEquals(policyReloadDelayMillis, pdpEngineConf.getPolicyReloadDelayMillis());
+		return new BasePdpEngine(pdpEngineConf);
+	}
+
+	private static DecisionType evaluate(final BasePdpEngine pdp, final String resourceId)
+	{
+		final DecisionRequestBuilder<?> requestBuilder = pdp.newRequestBuilder(-1, -1);
+		requestBuilder.putNamedAttributeIfAbsent(RESOURCE_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue(resourceId)));
+		return pdp.evaluate(requestBuilder.build(false)).getDecision();
+	}
+
+	private static void waitFor(final BooleanSupplier condition) throws InterruptedException
+	{
+		final long deadline = System.currentTimeMillis() + RELOAD_TIMEOUT_MILLIS;
+		while (!condition.getAsBoolean())
+		{
+			assertTrue("Policies not reloaded after " + RELOAD_TIMEOUT_MILLIS + " ms", System.currentTimeMillis() < deadline);
+			TimeUnit.MILLISECONDS.sleep(20);
+		}
+	}
+
+	@Test
+	public void testReloadOnPolicyFileChange() throws IllegalArgumentException, IOException, InterruptedException
+	{
+		try (final BasePdpEngine pdp = newPdpEngine(SHORT_RELOAD_DELAY_MILLIS))
+		{
+			assertEquals(DecisionType.PERMIT, evaluate(pdp, "r1"));
+			assertEquals(DecisionType.DENY, evaluate(pdp, "r2"));
+
+			// modified file
+			Files.write(refPolicyFile.toPath(), refPolicySet("1.0", "r2").getBytes(StandardCharsets.UTF_8));
+			waitFor(() -> evaluate(pdp, "r2") == DecisionType.PERMIT);
+			assertEquals(DecisionType.DENY, evaluate(pdp, "r1"));
+
+			// new file matching the location pattern, with a newer version of the referenced PolicySet
+			Files.write(new File(refPolicyDirectory, "P1-v2.xml").toPath(), refPolicySet("2.0", "r3").getBytes(StandardCharsets.UTF_8));
+			waitFor(() -> evaluate(pdp, "r3") == DecisionType.PERMIT);
+			assertEquals(DecisionType.DENY, evaluate(pdp, "r2"));
+
+			// a reload may have failed while a file was being written, in which case the file is reloaded again
+			waitFor(() -> !pdp.getPolicyReloadStatistics().get().getLastReloadError().isPresent());
+			assertTrue(pdp.getPolicyReloadStatistics().get().getSuccessCount() >= 2);
+		}
+	}
+
+	@Test
+	public void testFailedReloadKeepsPreviousPolicies() throws IllegalArgumentException, IOException, InterruptedException
+	{
+		try (final BasePdpEngine pdp = newPdpEngine(LONG_RELOAD_DELAY_MILLIS))
+		{
+			Files.write(refPolicyFile.toPath(), "<PolicySet".getBytes(StandardCharsets.UTF_8));
+			assertFalse(pdp.reloadPolicies());
+			assertTrue(pdp.getPolicyReloadStatistics().get().getFailureCount() >= 1);
+			assertTrue(pdp.getPolicyReloadStatistics().get().getLastReloadError().isPresent());
+			assertEquals(DecisionType.PERMIT, evaluate(pdp, "r1"));
+
+			// fixed
+			Files.write(refPolicyFile.toPath(), refPolicySet("1.0", "r2").getBytes(StandardCharsets.UTF_8));
+			assertTrue(pdp.reloadPolicies());
+			assertFalse(pdp.getPolicyReloadStatistics().get().getLastReloadError().isPresent());
+			assertEquals(DecisionType.PERMIT, evaluate(pdp, "r2"));
+		}
+	}
+
+	/**
+	 * The decisions cached before a reload must not be returned afterwards
+	 */
+	@Test
+	public void testReloadInvalidatesDecisionCache() throws IllegalArgumentException, IOException
+	{
+		for (final String decisionCacheType : new String[] { "InMemoryDecisionCache", "RelevantAttributesDecisionCache" })
+		{
+			try (final BasePdpEngine pdp = newPdpEngine(LONG_RELOAD_DELAY_MILLIS,
+			        "<decisionCache id='decisionCache' xsi:type='" + decisionCacheType + "' maxElementsInMemory='10' timeToLiveSec='3600'/>"))
+			{
+				assertEquals(DecisionType.PERMIT, evaluate(pdp, "r1"));
+				// cached
+				assertEquals(DecisionType.PERMIT, evaluate(pdp, "r1"));
+
+				Files.write(refPolicyFile.toPath(), refPolicySet("1.0", "r2").getBytes(StandardCharsets.UTF_8));
+				assertTrue(pdp.reloadPolicies());
+				assertEquals(decisionCacheType, DecisionType.DENY, evaluate(pdp, "r1"));
+				assertEquals(decisionCacheType, DecisionType.PERMIT, evaluate(pdp, "r2"));
+			}
+
+			Files.write(refPolicyFile.toPath(), refPolicySet("1.0", "r1").getBytes(StandardCharsets.UTF_8));
+			Files.delete(new File(tmpFolder.getRoot(), "pdp.xml").toPath());
+		}
+	}
+
+	/**
+	 * Requests evaluated during reloads must be evaluated with either the previous or the new policies, without error
+	 */
+	@Test
+	public void testEvaluationDuringReloads() throws IllegalArgumentException, IOException, InterruptedException
+	{
+		try (final BasePdpEngine pdp = newPdpEngine(LONG_RELOAD_DELAY_MILLIS))
+		{
+			final AtomicBoolean reloading = new AtomicBoolean(true);
+			final AtomicInteger unexpectedDecisionCount = new AtomicInteger();
+			final AtomicInteger evaluationCount = new AtomicInteger();
+			final Queue<Throwable> evaluationErrors = new ConcurrentLinkedQueue<>();
+			final List<Thread> evaluatingThreads = new ArrayList<>();
+			for (int i = 0; i < 4; i++)
+			{
+				final Thread thread = new Thread(() -> {
+					try
+					{
+						while (reloading.get())
+						{
+							// r1 is permitted by all versions of the policies
+							if (evaluate(pdp, "r1") != DecisionType.PERMIT)
+							{
+								unexpectedDecisionCount.incrementAndGet();
+							}
+
+							evaluationCount.incrementAndGet();
+						}
+					}
+					catch (final Throwable e)
+					{
+						evaluationErrors.add(e);
+					}
+				});
+				evaluatingThreads.add(thread);
+				thread.start();
+			}
+
+			try
+			{
+				for (int i = 0; i < 20; i++)
+				{
+					Files.write(refPolicyFile.toPath(), refPolicySet("1." + i, "r1").getBytes(StandardCharsets.UTF_8));
+					assertTrue(pdp.reloadPolicies());
+				}
+			}
+			finally
+			{
+				reloading.set(false);
+				for (final Thread thread : evaluatingThreads)
+				{
+					thread.join();
+				}
+			}
+
+			assertTrue("Errors in evaluating threads: " + evaluationErrors, evaluationErrors.isEmpty());
+			assertEquals(0, unexpectedDecisionCount.get());
+			assertTrue(evaluationCount.get() > 0);
+			assertTrue(pdp.getPolicyReloadStatistics().get().getSuccessCount() >= 20);
+		}
+	}
+}
@@ -0,0 +1,326 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.RESOURCE_ID;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.pdp.impl.policy.PolicySnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+/**
+ * Test of the PolicySnapshotRootPolicyProvider loading policies from a snapshot created by {@link PolicySnapshot} from a PDP configuration with XML policy files: Policies P-i permitting resource
+ * r-i, referenced by a PolicySet PS, itself referenced by the root PolicySet. The loading times from the XML files and from the snapshot are logged.
+ */
+public class PdpPolicySnapshotTest
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(PdpPolicySnapshotTest.class);
+
+	private static final int POLICY_COUNT = 500;
+
+	/*
+	 * Magic number, format version, environment and payload SHA-256 digests
+	 */
+	private static final int PAYLOAD_LENGTH_OFFSET = 4 + 4 + 32 + 32;
+
+	private static final String XACML_HEADER = "<?xml version='1.0' encoding='UTF-8'?>";
+
+	private static final String PDP_CONF_HEADER_START = "<?xml version='1.0' encoding='UTF-8'?><pdp xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xmlns='http://authzforce.github.io/core/xmlns/pdp/6.0' version='6.0.1'";
+
+	private static String policy(final int index)
+	{
+		return XACML_HEADER + "<Policy xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicyId='P-" + index
+		        + "' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-unless-permit'><Target/><Rule RuleId='permit' Effect='Permit'><Condition>"
+		        + "<Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:string-is-in'><AttributeValue DataType='http://www.w3.org/2001/XMLSchema#string'>r-" + index
+		        + "</AttributeValue><AttributeDesignator Category='" + RESOURCE_ID.getCategory() + "' AttributeId='" + RESOURCE_ID.getId()
+		        + "' DataType='http://www.w3.org/2001/XMLSchema#string' MustBePresent='false'/></Apply></Condition></Rule></Policy>";
+	}
+
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private File policyDirectory;
+	private File rootPolicyFile;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		policyDirectory = tmpFolder.newFolder("policies");
+		final StringBuilder policySet = new StringBuilder(XACML_HEADER).append(
+		        "<PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='PS' Version='1.0' PolicyCombiningAlgId='urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-unless-permit'><Target/>");
+		for (int i = 0; i < POLICY_COUNT; i++)
+		{
+			Files.write(new File(policyDirectory, "P-" + i + ".xml").toPath(), policy(i).getBytes(StandardCharsets.UTF_8));
+			policySet.append("<PolicyIdReference>P-").append(i).append("</PolicyIdReference>");
+		}
+
+		policySet.append("</PolicySet>");
+		Files.write(new File(policyDirectory, "PS.xml").toPath(), policySet.toString().getBytes(StandardCharsets.UTF_8));
+
+		rootPolicyFile = tmpFolder.newFile("root.xml");
+		Files.write(rootPolicyFile.toPath(), (XACML_HEADER + "<PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='root' Version='1.0'"
+		        + " PolicyCombiningAlgId='urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-unless-permit'><Target/><PolicySetIdReference>PS</PolicySetIdReference></PolicySet>")
+		                .getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String refPolicyProviderConf()
+	{
+		return "<refPolicyProvider id='refPolicyProvider' xsi:type='StaticRefPolicyProvider'><policyLocation>" + policyDirectory.toURI() + "*.xml</policyLocation></refPolicyProvider>";
+	}
+
+	private File newPdpConfFile(final String filename, final String pdpAttributes, final String policyProvidersConf) throws IOException
+	{
+		final File pdpConfFile = tmpFolder.newFile(filename);
+		Files.write(pdpConfFile.toPath(), (PDP_CONF_HEADER_START + pdpAttributes + ">" + policyProvidersConf + "</pdp>").getBytes(StandardCharsets.UTF_8));
+		return pdpConfFile;
+	}
+
+	private File newPdpConfFile(final String filename, final String policyProvidersConf) throws IOException
+	{
+		return newPdpConfFile(filename, "", policyProvidersConf);
+	}
+
+	private File newSnapshot(final File pdpConfFile) throws IllegalArgumentException, IOException
+	{
+		final File snapshotFile = tmpFolder.newFile(pdpConfFile.getName() + ".snapshot");
+		try (final OutputStream out = new FileOutputStream(snapshotFile))
+		{
+			PolicySnapshot.write(pdpConfFile, null, null, out);
+		}
+
+		return snapshotFile;
+	}
+
+	private File newSnapshotPdpConfFile(final File snapshotFile, final String pdpAttributes) throws IOException
+	{
+		return newPdpConfFile("pdp-snapshot" + pdpAttributes.hashCode() + ".xml", pdpAttributes,
+		        "<rootPolicyProvider id='rootPolicyProvider' xsi:type='PolicySnapshotRootPolicyProvider' snapshotLocation='" + snapshotFile.toURI() + "'/>");
+	}
+
+	private File newSnapshotPdpConfFile(final File snapshotFile) throws IOException
+	{
+		return newSnapshotPdpConfFile(snapshotFile, "");
+	}
+
+	private static BasePdpEngine newPdpEngine(final File pdpConfFile) throws IllegalArgumentException, IOException
+	{
+		final long startTime = System.nanoTime();
+		final BasePdpEngine pdp = new BasePdpEngine(PdpEngineConfiguration.getInstance(pdpConfFile.toURI().toString()));
+		LOGGER.info("PDP loaded from {} in {} ms", pdpConfFile.getName(), (System.nanoTime() - startTime) / 1000000);
+		return pdp;
+	}
+
+	private static DecisionType evaluate(final BasePdpEngine pdp, final String resourceId)
+	{
+		final DecisionRequestBuilder<?> requestBuilder = pdp.newRequestBuilder(-1, -1);
+		requestBuilder.putNamedAttributeIfAbsent(RESOURCE_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue(resourceId)));
+		return pdp.evaluate(requestBuilder.build(false)).getDecision();
+	}
+
+	private static void assertSameDecisions(final BasePdpEngine expectedPdp, final BasePdpEngine actualPdp)
+	{
+		for (final String resourceId : new String[] { "r-0", "r-" + POLICY_COUNT / 2, "r-" + (POLICY_COUNT - 1), "r-" + POLICY_COUNT })
+		{
+			final DecisionType expectedDecision = evaluate(expectedPdp, resourceId);
+			assertEquals("Wrong decision for resource " + resourceId, expectedDecision, evaluate(actualPdp, resourceId));
+		}
+
+		assertEquals(DecisionType.PERMIT, evaluate(actualPdp, "r-0"));
+		assertEquals(DecisionType.DENY, evaluate(actualPdp, "r-" + POLICY_COUNT));
+	}
+
+	@Test
+	public void testSnapshotWithRootPolicyFile() throws IllegalArgumentException, IOException
+	{
+		final File xmlPdpConfFile = newPdpConfFile("pdp.xml",
+		        refPolicyProviderConf() + "<rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRootPolicyProvider' policyLocation='" + rootPolicyFile.toURI() + "'/>");
+		final File snapshotPdpConfFile = newSnapshotPdpConfFile(newSnapshot(xmlPdpConfFile));
+		try (final BasePdpEngine xmlPdp = newPdpEngine(xmlPdpConfFile); final BasePdpEngine snapshotPdp = newPdpEngine(snapshotPdpConfFile))
+		{
+			assertSameDecisions(xmlPdp, snapshotPdp);
+		}
+	}
+
+	@Test
+	public void testSnapshotWithRootPolicyRef() throws IllegalArgumentException, IOException
+	{
+		final File xmlPdpConfFile = newPdpConfFile("pdp.xml",
+		        refPolicyProviderConf() + "<rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRefBasedRootPolicyProvider'><policyRef>PS</policyRef></rootPolicyProvider>");
+		final File snapshotPdpConfFile = newSnapshotPdpConfFile(newSnapshot(xmlPdpConfFile));
+		try (final BasePdpEngine xmlPdp = newPdpEngine(xmlPdpConfFile); final BasePdpEngine snapshotPdp = newPdpEngine(snapshotPdpConfFile))
+		{
+			assertSameDecisions(xmlPdp, snapshotPdp);
+		}
+	}
+
+	@Test
+	public void testSnapshotLoadedWithPdpMaxPolicyRefDepth() throws IllegalArgumentException, IOException
+	{
+		// created without limit
+		final File snapshotFile = newSnapshot(newPdpConfFile("pdp.xml",
+		        refPolicyProviderConf() + "<rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRootPolicyProvider' policyLocation='" + rootPolicyFile.toURI() + "'/>"));
+		try
+		{
+			// root PolicySet -> PS -> P-i: policy reference depth 2
+			PdpEngineConfiguration.getInstance(newSnapshotPdpConfFile(snapshotFile, " maxPolicyRefDepth='1'").toURI().toString());
+			fail("Policy reference depth of the policies in the snapshot not checked against the maxPolicyRefDepth of the PDP loading it");
+		}
+		catch (final IllegalArgumentException e)
+		{
+			LOGGER.debug("Expected error", e);
+		}
+
+		try (final BasePdpEngine snapshotPdp = new BasePdpEngine(PdpEngineConfiguration.getInstance(newSnapshotPdpConfFile(snapshotFile, " maxPolicyRefDepth='2'").toURI().toString())))
+		{
+			assertEquals(DecisionType.PERMIT, evaluate(snapshotPdp, "r-0"));
+		}
+	}
+
+	@Test
+	public void testSnapshotRejectedInDifferentEnvironment() throws IllegalArgumentException, IOException
+	{
+		final File snapshotFile = newSnapshot(newPdpConfFile("pdp.xml",
+		        refPolicyProviderConf() + "<rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRootPolicyProvider' policyLocation='" + rootPolicyFile.toURI() + "'/>"));
+		for (final String pdpAttributes : new String[] { " enableXPath='true'", " strictAttributeIssuerMatch='true'", " maxVariableRefDepth='5'" })
+		{
+			try
+			{
+				PdpEngineConfiguration.getInstance(newSnapshotPdpConfFile(snapshotFile, pdpAttributes).toURI().toString());
+				fail("Policy snapshot loaded in a different environment than the one it was created in (PDP attributes:" + pdpAttributes + ")");
+			}
+			catch (final IllegalArgumentException e)
+			{
+				assertTrue("Unexpected error: " + e.getMessage(), e.getMessage().contains("was created with a different"));
+			}
+		}
+	}
+
+	@Test
+	public void testCorruptedSnapshotRejected() throws IllegalArgumentException, IOException
+	{
+		final File xmlPdpConfFile = newPdpConfFile("pdp.xml",
+		        refPolicyProviderConf() + "<rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRootPolicyProvider' policyLocation='" + rootPolicyFile.toURI() + "'/>");
+		final File snapshotFile = newSnapshot(xmlPdpConfFile);
+		final byte[] snapshot = Files.readAllBytes(snapshotFile.toPath());
+		snapshot[snapshot.length - 10] ^= 1;
+		Files.write(snapshotFile.toPath(), snapshot);
+		try
+		{
+			PdpEngineConfiguration.getInstance(newSnapshotPdpConfFile(snapshotFile).toURI().toString());
+			fail("Corrupted policy snapshot not rejected");
+		}
+		catch (final IllegalArgumentException e)
+		{
+			assertTrue("Unexpected error: " + e.getMessage(), e.getMessage().startsWith("Corrupted policy snapshot"));
+		}
+	}
+
+	@Test
+	public void testInvalidPayloadLengthRejected() throws IllegalArgumentException, IOException
+	{
+		final File xmlPdpConfFile = newPdpConfFile("pdp.xml",
+		        refPolicyProviderConf() + "<rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRootPolicyProvider' policyLocation='" + rootPolicyFile.toURI() + "'/>");
+		final File snapshotFile = newSnapshot(xmlPdpConfFile);
+		final byte[] snapshot = Files.readAllBytes(snapshotFile.toPath());
+		// payload length (after magic number, format version and the two digests) way bigger than the actual payload
+		ByteBuffer.wrap(snapshot).putInt(PAYLOAD_LENGTH_OFFSET, Integer.MAX_VALUE - 8);
+		Files.write(snapshotFile.toPath(), snapshot);
+		try
+		{
+			PdpEngineConfiguration.getInstance(newSnapshotPdpConfFile(snapshotFile).toURI().toString());
+			fail("Policy snapshot with invalid payload length not rejected");
+		}
+		catch (final IllegalArgumentException e)
+		{
+			assertTrue("Unexpected error: " + e.getMessage(), e.getMessage().startsWith("Corrupted policy snapshot"));
+		}
+	}
+
+	@Test
+	public void testClassNotAllowedRejected() throws IllegalArgumentException, IOException, NoSuchAlgorithmException
+	{
+		final File xmlPdpConfFile = newPdpConfFile("pdp.xml",
+		        refPolicyProviderConf() + "<rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRootPolicyProvider' policyLocation='" + rootPolicyFile.toURI() + "'/>");
+		final File snapshotFile = newSnapshot(xmlPdpConfFile);
+		final byte[] snapshot = Files.readAllBytes(snapshotFile.toPath());
+
+		/*
+		 * Replace the payload with a valid one (digest included) holding a standard class that is not part of the XACML model
+		 */
+		final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		try (final ObjectOutputStream payloadOut = new ObjectOutputStream(payload))
+		{
+			payloadOut.writeObject(new TreeMap<>(Collections.singletonMap("k", "v")));
+		}
+
+		final byte[] payloadBytes = payload.toByteArray();
+		final byte[] payloadDigest = MessageDigest.getInstance("SHA-256").digest(payloadBytes);
+		final ByteBuffer tamperedSnapshot = ByteBuffer.allocate(PAYLOAD_LENGTH_OFFSET + 4 + payloadBytes.length);
+		tamperedSnapshot.put(snapshot, 0, PAYLOAD_LENGTH_OFFSET - payloadDigest.length).put(payloadDigest).putInt(payloadBytes.length).put(payloadBytes);
+		Files.write(snapshotFile.toPath(), tamperedSnapshot.array());
+		try
+		{
+			PdpEngineConfiguration.getInstance(newSnapshotPdpConfFile(snapshotFile).toURI().toString());
+			fail("Policy snapshot with class not allowed not rejected");
+		}
+		catch (final IllegalArgumentException e)
+		{
+			assertTrue("Unexpected error: " + e, e.getCause() instanceof InvalidClassException);
+			assertEquals(TreeMap.class.getName(), ((InvalidClassException) e.getCause()).classname);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedPolicyProvider() throws IllegalArgumentException, IOException
+	{
+		final File snapshotFile = newSnapshot(newPdpConfFile("pdp.xml", refPolicyProviderConf() + "<rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRootPolicyProvider' policyLocation='"
+		        + rootPolicyFile.toURI() + "'/>"));
+		// the snapshot cannot be used to create another one
+		newSnapshot(newSnapshotPdpConfFile(snapshotFile));
+	}
+}
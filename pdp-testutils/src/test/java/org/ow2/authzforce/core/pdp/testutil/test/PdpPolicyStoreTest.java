@@ -0,0 +1,260 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.RESOURCE_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.stdEnvAttributePolicy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.pdp.impl.StandardEnvironmentAttribute;
+import org.ow2.authzforce.core.pdp.impl.policy.PolicyStore;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+/**
+ * Test of the PolicyStoreRefPolicyProvider loading policies from a {@link PolicyStore} created from XML policy files: Policies P-i permitting resource r-i, referenced by a PolicySet PS, used as
+ * root policy.
+ */
+public class PdpPolicyStoreTest
+{
+	private static final int POLICY_COUNT = 100;
+
+	private static final String XACML_HEADER = "<?xml version='1.0' encoding='UTF-8'?>";
+
+	private static final String PDP_CONF_HEADER = "<?xml version='1.0' encoding='UTF-8'?><pdp xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xmlns='http://authzforce.github.io/core/xmlns/pdp/6.0' version='6.0.1'>";
+
+	private static final String ROOT_POLICY_PROVIDER_CONF = "<rootPolicyProvider id='rootPolicyProvider' xsi:type='StaticRefBasedRootPolicyProvider'><policyRef>PS</policyRef></rootPolicyProvider>";
+
+	private static String policy(final int index, final String effect)
+	{
+		return XACML_HEADER + "<Policy xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicyId='P-" + index
+		        + "' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:1.0:rule-combining-algorithm:first-applicable'><Target/><Rule RuleId='rule' Effect='" + effect + "'><Condition>"
+		        + "<Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:string-is-in'><AttributeValue DataType='http://www.w3.org/2001/XMLSchema#string'>r-" + index
+		        + "</AttributeValue><AttributeDesignator Category='" + RESOURCE_ID.getCategory() + "' AttributeId='" + RESOURCE_ID.getId()
+		        + "' DataType='http://www.w3.org/2001/XMLSchema#string' MustBePresent='false'/></Apply></Condition></Rule></Policy>";
+	}
+
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private File policyDirectory;
+	private File storeFile;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		policyDirectory = tmpFolder.newFolder("policies");
+		storeFile = new File(tmpFolder.getRoot(), "policies.store");
+	}
+
+	/*
+	 * Writes policies P-i (with given Rule effect) and PolicySet PS referring to them
+	 */
+	private void writePolicies(final String effect) throws IOException
+	{
+		final StringBuilder policySet = new StringBuilder(XACML_HEADER).append(
+		        "<PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='PS' Version='1.0' PolicyCombiningAlgId='urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-unless-permit'><Target/>");
+		for (int i = 0; i < POLICY_COUNT; i++)
+		{
+			Files.write(new File(policyDirectory, "P-" + i + ".xml").toPath(), policy(i, effect).getBytes(StandardCharsets.UTF_8));
+			policySet.append("<PolicyIdReference>P-").append(i).append("</PolicyIdReference>");
+		}
+
+		policySet.append("</PolicySet>");
+		Files.write(new File(policyDirectory, "PS.xml").toPath(), policySet.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void writeStore() throws IllegalArgumentException, IOException
+	{
+		PolicyStore.write(Collections.singletonList(policyDirectory.toURI() + "*.xml"), false, storeFile);
+	}
+
+	private BasePdpEngine newPdpEngine(final String refPolicyProviderConf) throws IllegalArgumentException, IOException
+	{
+		final File pdpConfFile = tmpFolder.newFile();
+		Files.write(pdpConfFile.toPath(), (PDP_CONF_HEADER + refPolicyProviderConf + ROOT_POLICY_PROVIDER_CONF + "</pdp>").getBytes(StandardCharsets.UTF_8));
+		return new BasePdpEngine(PdpEngineConfiguration.getInstance(pdpConfFile.toURI().toString()));
+	}
+
+	private BasePdpEngine newStorePdpEngine(final String cacheConf) throws IllegalArgumentException, IOException
+	{
+		return newPdpEngine("<refPolicyProvider id='refPolicyProvider' xsi:type='PolicyStoreRefPolicyProvider' storeLocation='" + storeFile.toURI() + "'" + cacheConf + "/>");
+	}
+
+	private static DecisionType evaluate(final BasePdpEngine pdp, final String resourceId)
+	{
+		final DecisionRequestBuilder<?> requestBuilder = pdp.newRequestBuilder(-1, -1);
+		requestBuilder.putNamedAttributeIfAbsent(RESOURCE_ID, Bags.singletonAttributeBag(StandardDatatypes.STRING, new StringValue(resourceId)));
+		return pdp.evaluate(requestBuilder.build(false)).getDecision();
+	}
+
+	/**
+	 * The PDP must issue the standard environment attributes read by policies decoded and compiled from the store on demand, i.e. after the PDP is initialized
+	 */
+	@Test
+	public void testStdEnvAttributesInStoredPolicies() throws IllegalArgumentException, IOException
+	{
+		Files.write(new File(policyDirectory, "P-date.xml").toPath(), stdEnvAttributePolicy("P-date", StandardEnvironmentAttribute.CURRENT_DATE, "date").getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(policyDirectory, "P-time.xml").toPath(), stdEnvAttributePolicy("P-time", StandardEnvironmentAttribute.CURRENT_TIME, "time").getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(policyDirectory, "PS.xml").toPath(), (XACML_HEADER
+		        + "<PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='PS' Version='1.0' PolicyCombiningAlgId='urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-overrides'><Target/>"
+		        + "<PolicyIdReference>P-date</PolicyIdReference><PolicyIdReference>P-time</PolicyIdReference></PolicySet>").getBytes(StandardCharsets.UTF_8));
+		writeStore();
+		try (final BasePdpEngine storePdp = newStorePdpEngine(""))
+		{
+			// Deny if any of the attributes is missing
+			assertEquals(DecisionType.PERMIT, evaluate(storePdp, "r-0"));
+		}
+	}
+
+	@Test
+	public void testSameDecisionsAsStaticRefPolicyProvider() throws IllegalArgumentException, IOException
+	{
+		writePolicies("Permit");
+		writeStore();
+		try (final BasePdpEngine xmlPdp = newPdpEngine("<refPolicyProvider id='refPolicyProvider' xsi:type='StaticRefPolicyProvider'><policyLocation>" + policyDirectory.toURI()
+		        + "*.xml</policyLocation></refPolicyProvider>"); final BasePdpEngine storePdp = newStorePdpEngine(" maxCachedPolicies='10'"))
+		{
+			// twice, to evaluate compiled policies from the cache (or decoded again if evicted)
+			for (int round = 0; round < 2; round++)
+			{
+				for (final String resourceId : new String[] { "r-0", "r-" + POLICY_COUNT / 2, "r-" + (POLICY_COUNT - 1), "r-" + POLICY_COUNT })
+				{
+					assertEquals("Wrong decision for resource " + resourceId, evaluate(xmlPdp, resourceId), evaluate(storePdp, resourceId));
+				}
+			}
+
+			assertEquals(DecisionType.PERMIT, evaluate(storePdp, "r-0"));
+			assertEquals(DecisionType.DENY, evaluate(storePdp, "r-" + POLICY_COUNT));
+		}
+	}
+
+	@Test
+	public void testStoreReplacement() throws IllegalArgumentException, IOException
+	{
+		writePolicies("Permit");
+		writeStore();
+		try (final BasePdpEngine pdp = newStorePdpEngine(" maxCachedPolicies='1'"))
+		{
+			assertEquals(DecisionType.PERMIT, evaluate(pdp, "r-1"));
+
+			// replace the store while in use
+			writePolicies("Deny");
+			writeStore();
+
+			// the PDP still uses the (mapped) previous version of the store
+			assertEquals(DecisionType.PERMIT, evaluate(pdp, "r-1"));
+			assertEquals(DecisionType.PERMIT, evaluate(pdp, "r-2"));
+			try (final BasePdpEngine newPdp = newStorePdpEngine(""))
+			{
+				assertEquals(DecisionType.DENY, evaluate(newPdp, "r-1"));
+			}
+		}
+
+		assertEquals("Temporary files left in the store directory", 1, tmpFolder.getRoot().listFiles((dir, name) -> name.startsWith(storeFile.getName())).length);
+	}
+
+	@Test
+	public void testCorruptedStoreRejected() throws IllegalArgumentException, IOException
+	{
+		writePolicies("Permit");
+		writeStore();
+		final byte[] store = Files.readAllBytes(storeFile.toPath());
+		store[0] ^= 1;
+		Files.write(storeFile.toPath(), store);
+		try
+		{
+			newStorePdpEngine("").close();
+			fail("Corrupted policy store not rejected");
+		}
+		catch (final IllegalArgumentException e)
+		{
+			assertTrue("Unexpected error: " + e.getMessage(), e.getMessage().startsWith("Not a policy store"));
+		}
+	}
+
+	private void assertCorruptedStoreRejected(final byte[] store) throws IOException
+	{
+		Files.write(storeFile.toPath(), store);
+		try
+		{
+			newStorePdpEngine("").close();
+			fail("Corrupted policy store not rejected");
+		}
+		catch (final IllegalArgumentException e)
+		{
+			assertTrue("Unexpected error: " + e.getMessage(), e.getMessage().startsWith("Corrupted policy store"));
+		}
+	}
+
+	@Test
+	public void testInvalidIndexCountsRejected() throws IllegalArgumentException, IOException
+	{
+		writePolicies("Permit");
+		writeStore();
+		final byte[] store = Files.readAllBytes(storeFile.toPath());
+		/*
+		 * Header: magic number, format version, XACML model version (UTF), policy count, max policy data length, index length
+		 */
+		final ByteBuffer header = ByteBuffer.wrap(store);
+		final int policyCountOffset = 4 + 4 + 2 + header.getShort(8);
+		final int policyCount = header.getInt(policyCountOffset);
+		header.putInt(policyCountOffset, Integer.MAX_VALUE);
+		assertCorruptedStoreRejected(store);
+
+		/*
+		 * First index entry: policy type, id (UTF), version (UTF), data offset, length and checksum, policy reference count
+		 */
+		header.putInt(policyCountOffset, policyCount);
+		final int idOffset = policyCountOffset + 4 + 4 + 4 + 1;
+		final int versionOffset = idOffset + 2 + header.getShort(idOffset);
+		final int policyRefCountOffset = versionOffset + 2 + header.getShort(versionOffset) + 8 + 4 + 4;
+		header.putInt(policyRefCountOffset, Integer.MAX_VALUE);
+		assertCorruptedStoreRejected(store);
+		header.putInt(policyRefCountOffset, -1);
+		assertCorruptedStoreRejected(store);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPolicyRejected() throws IllegalArgumentException, IOException
+	{
+		// not valid against the XACML schema (missing RuleCombiningAlgId)
+		Files.write(new File(policyDirectory, "invalid.xml").toPath(),
+		        (XACML_HEADER + "<Policy xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicyId='invalid' Version='1.0'><Target/></Policy>").getBytes(StandardCharsets.UTF_8));
+		writeStore();
+	}
+}
@@ -0,0 +1,498 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.ACTION_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.RESOURCE_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.ROLE;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.STRING_EQUAL;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.SUBJECT_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.apply;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.isIn;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.match;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.putStringAttribute;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.randomValues;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.singleValueEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.AttributeFqns;
+import org.ow2.authzforce.core.pdp.api.DecisionRequest;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.DefaultEnvironmentProperties;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualPolicy;
+import org.ow2.authzforce.core.pdp.impl.residual.ResidualPredicate;
+import org.ow2.authzforce.core.xmlns.pdp.Pdp;
+import org.ow2.authzforce.core.xmlns.pdp.StaticRootPolicyProvider;
+import org.ow2.authzforce.xacml.identifiers.XacmlAttributeCategory;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.EffectType;
+
+/**
+ * Test of the partial evaluation of requests with unknown resource attributes ({@link BasePdpEngine#evaluatePartially(DecisionRequest, Set)}): the residual policy, interpreted for each candidate
+ * resource (like a database filter would), must give the same decision as the evaluation of the complete request.
+ */
+public class PdpResidualPolicyTest
+{
+	private static final AttributeFqn RESOURCE_TYPE = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_3_0_RESOURCE.value(), Optional.empty(), "urn:example:resource-type");
+	private static final AttributeFqn CLASSIFICATION = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_3_0_RESOURCE.value(), Optional.empty(), "urn:example:classification");
+
+	private static final Set<String> UNKNOWN_CATEGORIES = Collections.singleton(XacmlAttributeCategory.XACML_3_0_RESOURCE.value());
+
+	private static final List<String> REQUEST_SUBJECTS = Arrays.asList("alice", "bob");
+	private static final List<String> REQUEST_ROLES = Arrays.asList("admin", "r1", "r2", "r3");
+	private static final List<String> REQUEST_ACTIONS = Arrays.asList("read", "write", "delete");
+
+	/*
+	 * Candidate resources (attribute values)
+	 */
+	private static final List<List<String>> RESOURCE_IDS = Arrays.asList(Collections.emptyList(), Arrays.asList("x"), Arrays.asList("y"), Arrays.asList("z"), Arrays.asList("x", "y"),
+	        Arrays.asList("x", "z"), Arrays.asList("y", "z"));
+	private static final List<List<String>> RESOURCE_TYPES = Arrays.asList(Collections.emptyList(), Arrays.asList("doc"), Arrays.asList("img"), Arrays.asList("doc", "img"));
+	private static final List<List<String>> CLASSIFICATIONS = Arrays.asList(Collections.emptyList(), Arrays.asList("secret"), Arrays.asList("public"));
+
+	@Rule
+	public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	/*
+	 * Target with one AnyOf per attribute, matching any of the values
+	 */
+	private static String target(final AttributeFqn attributeFqn, final String... values)
+	{
+		return "<Target><AnyOf>" + Arrays.stream(values).map(value -> "<AllOf>" + match(attributeFqn, value) + "</AllOf>")
+		        .collect(Collectors.joining()) + "</AnyOf></Target>";
+	}
+
+	private static String rule(final String id, final String effect, final String target, final String condition)
+	{
+		return "<Rule RuleId='" + id + "' Effect='" + effect + "'>" + target + (condition == null ? "" : "<Condition>" + condition + "</Condition>") + "</Rule>";
+	}
+
+	private static String combiningAlgId(final String elementType, final String combiningAlg)
+	{
+		return "urn:oasis:names:tc:xacml:" + (combiningAlg.equals("first-applicable") ? "1.0:" : "3.0:") + elementType + "-combining-algorithm:" + combiningAlg;
+	}
+
+	private static String policy(final String id, final String ruleCombiningAlg, final String target, final String... rules)
+	{
+		return "<Policy PolicyId='" + id + "' Version='1.0' RuleCombiningAlgId='" + combiningAlgId("rule", ruleCombiningAlg) + "'>" + target + String.join("", rules) + "</Policy>";
+	}
+
+	private static String policySet(final String id, final String policyCombiningAlg, final String target, final String... policies)
+	{
+		return "<PolicySet PolicySetId='" + id + "' Version='1.0' PolicyCombiningAlgId='" + combiningAlgId("policy", policyCombiningAlg) + "'>" + target + String.join("", policies)
+		        + "</PolicySet>";
+	}
+
+	/**
+	 * Policies with Targets and Conditions on both subject/action attributes and resource attributes, some Indeterminate depending on the request, with all standard combining algorithms (except
+	 * legacy and only-one-applicable ones)
+	 */
+	private static String policyXml()
+	{
+		return "<?xml version='1.0' encoding='UTF-8'?>" + policySet("root", "first-applicable", "<Target/>",
+		        policy("admin", "deny-unless-permit", target(ROLE, "admin"), rule("permitAll", "Permit", "<Target/>", null)),
+		        policySet("documents", "deny-overrides", target(RESOURCE_TYPE, "doc"),
+		                policy("readers", "permit-overrides", target(ACTION_ID, "read", "write"),
+		                        rule("permitOwnDoc", "Permit", "<Target/>", apply("and", singleValueEquals(RESOURCE_ID, "x"), isIn(ROLE, "r1"))),
+		                        rule("permitPublicDocs", "Permit", target(RESOURCE_ID, "x", "y"), isIn(ACTION_ID, "read")),
+		                        rule("denyZ", "Deny", "<Target/>", apply("or", singleValueEquals(RESOURCE_ID, "z"), apply("not", isIn(ROLE, "r2"))))),
+		                policy("secret", "permit-unless-deny", "<Target/>",
+		                        rule("denySecret", "Deny", target(CLASSIFICATION, "secret"), apply("not", isIn(ROLE, "r3"))))),
+		        policy("images", "first-applicable", target(RESOURCE_TYPE, "img"), rule("denyWrite", "Deny", target(ACTION_ID, "write"), null),
+		                rule("permitY", "Permit", "<Target/>", singleValueEquals(RESOURCE_ID, "y"))),
+		        policy("default", "deny-unless-permit", "<Target/>",
+		                rule("permitAlice", "Permit", "<Target/>", apply("and", singleValueEquals(SUBJECT_ID, "alice"), isIn(RESOURCE_ID, "x"))),
+		                rule("permitDelete", "Permit", "<Target/>", apply("or", isIn(ACTION_ID, "delete"), isIn(CLASSIFICATION, "public")))))
+		        .replaceFirst("<PolicySet ", "<PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' ");
+	}
+
+	private BasePdpEngine newPdp() throws IllegalArgumentException, IOException
+	{
+		final File policyFile = tmpFolder.newFile("policy.xml");
+		Files.write(policyFile.toPath(), policyXml().getBytes(StandardCharsets.UTF_8));
+		final Pdp jaxbPdp = new Pdp();
+		// Conditions compiled into structured evaluators (else opaque in residual policies)
+		jaxbPdp.setCompileTargetsAndConditions(true);
+		final StaticRootPolicyProvider jaxbRootPolicyProvider = new StaticRootPolicyProvider();
+		jaxbRootPolicyProvider.setId("rootPolicyProvider");
+		jaxbRootPolicyProvider.setPolicyLocation(policyFile.toURI().toString());
+		jaxbPdp.setRootPolicyProvider(jaxbRootPolicyProvider);
+		return new BasePdpEngine(new PdpEngineConfiguration(jaxbPdp, new DefaultEnvironmentProperties()));
+	}
+
+	private static ResidualPolicy.Decision toDecision(final DecisionResult result)
+	{
+		return ResidualPolicy.valueOf(result.getDecision(), result.getExtendedIndeterminate());
+	}
+
+	/**
+	 * Evaluation of a residual predicate for given values of the unknown attributes (the role of a database filter), in three-valued logic (empty result for Indeterminate)
+	 */
+	private static final class PredicateInterpreter implements ResidualPredicate.Visitor<Optional<Boolean>>
+	{
+		private final Map<AttributeFqn, List<String>> unknownAttributes;
+
+		private PredicateInterpreter(final Map<AttributeFqn, List<String>> unknownAttributes)
+		{
+			this.unknownAttributes = unknownAttributes;
+		}
+
+		private List<String> getValues(final ResidualPredicate.AttributeTest test)
+		{
+			return unknownAttributes.getOrDefault(test.getAttributeFqn(), Collections.emptyList());
+		}
+
+		@Override
+		public Optional<Boolean> visitConstant(final ResidualPredicate.Constant constant)
+		{
+			return constant.getValue();
+		}
+
+		private Optional<Boolean> combine(final List<ResidualPredicate> args, final boolean decisiveValue)
+		{
+			boolean isAnyIndeterminate = false;
+			for (final ResidualPredicate arg : args)
+			{
+				final Optional<Boolean> argValue = arg.accept(this);
+				if (!argValue.isPresent())
+				{
+					isAnyIndeterminate = true;
+				}
+				else if (argValue.get() == decisiveValue)
+				{
+					return argValue;
+				}
+			}
+
+			return isAnyIndeterminate ? Optional.empty() : Optional.of(!decisiveValue);
+		}
+
+		@Override
+		public Optional<Boolean> visitAnd(final ResidualPredicate.And and)
+		{
+			return combine(and.getArgs(), false);
+		}
+
+		@Override
+		public Optional<Boolean> visitOr(final ResidualPredicate.Or or)
+		{
+			return combine(or.getArgs(), true);
+		}
+
+		@Override
+		public Optional<Boolean> visitNot(final ResidualPredicate.Not not)
+		{
+			return not.getArg().accept(this).map(value -> !value);
+		}
+
+		@Override
+		public Optional<Boolean> visitAttributeMatch(final ResidualPredicate.AttributeMatch match)
+		{
+			assertEquals(STRING_EQUAL, match.getMatchFunctionId());
+			return Optional.of(getValues(match).contains(((StringValue) match.getMatchValue()).getUnderlyingValue()));
+		}
+
+		@Override
+		public Optional<Boolean> visitAttributeValueIn(final ResidualPredicate.AttributeValueIn in)
+		{
+			final List<String> values = getValues(in);
+			if (in.isSingleValued() && values.size() != 1)
+			{
+				return Optional.empty();
+			}
+
+			return Optional.of(values.stream().anyMatch(value -> in.getValues().contains(new StringValue(value))));
+		}
+
+		@Override
+		public Optional<Boolean> visitOpaque(final ResidualPredicate.Opaque opaque)
+		{
+			fail("Unexpected opaque predicate in residual policy: " + opaque);
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Evaluation of a residual policy for given values of the unknown attributes
+	 */
+	private static final class PolicyInterpreter implements ResidualPolicy.Visitor<ResidualPolicy.Decision>
+	{
+		private final PredicateInterpreter predicateInterpreter;
+
+		private PolicyInterpreter(final Map<AttributeFqn, List<String>> unknownAttributes)
+		{
+			this.predicateInterpreter = new PredicateInterpreter(unknownAttributes);
+		}
+
+		@Override
+		public ResidualPolicy.Decision visitDecision(final ResidualPolicy.Decision decision)
+		{
+			return decision;
+		}
+
+		@Override
+		public ResidualPolicy.Decision visitRule(final ResidualPolicy.Rule rule)
+		{
+			final ResidualPolicy.Decision indeterminate = rule.getEffect() == EffectType.PERMIT ? ResidualPolicy.INDETERMINATE_P : ResidualPolicy.INDETERMINATE_D;
+			final Optional<Boolean> target = rule.getTarget().accept(predicateInterpreter);
+			if (!target.isPresent())
+			{
+				return indeterminate;
+			}
+
+			if (!target.get())
+			{
+				return ResidualPolicy.NOT_APPLICABLE;
+			}
+
+			final Optional<Boolean> condition = rule.getCondition().accept(predicateInterpreter);
+			if (!condition.isPresent())
+			{
+				return indeterminate;
+			}
+
+			return condition.get() ? (rule.getEffect() == EffectType.PERMIT ? ResidualPolicy.PERMIT : ResidualPolicy.DENY) : ResidualPolicy.NOT_APPLICABLE;
+		}
+
+		/*
+		 * XACML 3.0 deny-overrides (overridingDecision = DENY) or permit-overrides (overridingDecision = PERMIT)
+		 */
+		private ResidualPolicy.Decision combineOverrides(final List<ResidualPolicy> elements, final DecisionType overridingDecision)
+		{
+			final DecisionType overriddenDecision = overridingDecision == DecisionType.DENY ? DecisionType.PERMIT : DecisionType.DENY;
+			boolean isAnyOverridden = false;
+			boolean isAnyErrorOverriding = false;
+			boolean isAnyErrorOverridden = false;
+			boolean isAnyErrorBoth = false;
+			for (final ResidualPolicy element : elements)
+			{
+				final ResidualPolicy.Decision decision = element.accept(this);
+				if (decision.getDecision() == overridingDecision)
+				{
+					return decision;
+				}
+
+				if (decision.getDecision() == overriddenDecision)
+				{
+					isAnyOverridden = true;
+				}
+				else if (decision.getDecision() == DecisionType.INDETERMINATE)
+				{
+					isAnyErrorOverriding = isAnyErrorOverriding || decision.getExtendedIndeterminate() == overridingDecision;
+					isAnyErrorOverridden = isAnyErrorOverridden || decision.getExtendedIndeterminate() == overriddenDecision;
+					isAnyErrorBoth = isAnyErrorBoth || decision.getExtendedIndeterminate() == DecisionType.INDETERMINATE;
+				}
+			}
+
+			if (isAnyErrorBoth || isAnyErrorOverriding && (isAnyErrorOverridden || isAnyOverridden))
+			{
+				return ResidualPolicy.INDETERMINATE_DP;
+			}
+
+			if (isAnyErrorOverriding)
+			{
+				return ResidualPolicy.valueOf(DecisionType.INDETERMINATE, overridingDecision);
+			}
+
+			if (isAnyOverridden)
+			{
+				return ResidualPolicy.valueOf(overriddenDecision, null);
+			}
+
+			return isAnyErrorOverridden ? ResidualPolicy.valueOf(DecisionType.INDETERMINATE, overriddenDecision) : ResidualPolicy.NOT_APPLICABLE;
+		}
+
+		private ResidualPolicy.Decision combine(final String combiningAlgId, final List<ResidualPolicy> elements)
+		{
+			final String combiningAlg = combiningAlgId.substring(combiningAlgId.lastIndexOf(':') + 1);
+			switch (combiningAlg)
+			{
+				case "deny-overrides":
+					return combineOverrides(elements, DecisionType.DENY);
+				case "permit-overrides":
+					return combineOverrides(elements, DecisionType.PERMIT);
+				case "deny-unless-permit":
+					return elements.stream().anyMatch(element -> element.accept(this) == ResidualPolicy.PERMIT) ? ResidualPolicy.PERMIT : ResidualPolicy.DENY;
+				case "permit-unless-deny":
+					return elements.stream().anyMatch(element -> element.accept(this) == ResidualPolicy.DENY) ? ResidualPolicy.DENY : ResidualPolicy.PERMIT;
+				case "first-applicable":
+					for (final ResidualPolicy element : elements)
+					{
+						final ResidualPolicy.Decision decision = element.accept(this);
+						if (decision != ResidualPolicy.NOT_APPLICABLE)
+						{
+							return decision;
+						}
+					}
+
+					return ResidualPolicy.NOT_APPLICABLE;
+				default:
+					fail("Unexpected combining algorithm: " + combiningAlgId);
+					return null;
+			}
+		}
+
+		@Override
+		public ResidualPolicy.Decision visitPolicy(final ResidualPolicy.Policy policy)
+		{
+			final Optional<Boolean> target = policy.getTarget().accept(predicateInterpreter);
+			if (target.isPresent() && !target.get())
+			{
+				return ResidualPolicy.NOT_APPLICABLE;
+			}
+
+			final ResidualPolicy.Decision combiningAlgResult = combine(policy.getCombiningAlgId(), policy.getCombinedElements());
+			if (target.isPresent() || combiningAlgResult.getDecision() == DecisionType.NOT_APPLICABLE)
+			{
+				return combiningAlgResult;
+			}
+
+			// Indeterminate Target
+			return combiningAlgResult.getDecision() == DecisionType.INDETERMINATE ? combiningAlgResult : ResidualPolicy.valueOf(DecisionType.INDETERMINATE, combiningAlgResult.getDecision());
+		}
+
+		@Override
+		public ResidualPolicy.Decision visitOpaque(final ResidualPolicy.Opaque opaque)
+		{
+			fail("Unexpected opaque policy element in residual policy: " + opaque);
+			return null;
+		}
+	}
+
+	/**
+	 * Residual policy for random subject/action attributes, interpreted for all candidate resources, compared to the evaluation of the complete requests
+	 */
+	@Test
+	public void testResidualPolicyForUnknownResource() throws IllegalArgumentException, IOException
+	{
+		try (final BasePdpEngine pdp = newPdp())
+		{
+			final Random random = new Random(0);
+			int nonDecisionResidualCount = 0;
+			for (int i = 0; i < 200; i++)
+			{
+				final List<String> subjectIds = randomValues(random, REQUEST_SUBJECTS, 1);
+				final List<String> roles = randomValues(random, REQUEST_ROLES, 2);
+				final List<String> actionIds = randomValues(random, REQUEST_ACTIONS, 2);
+
+				final DecisionRequestBuilder<?> partialRequestBuilder = pdp.newRequestBuilder(-1, -1);
+				putStringAttribute(partialRequestBuilder, SUBJECT_ID, subjectIds);
+				putStringAttribute(partialRequestBuilder, ROLE, roles);
+				putStringAttribute(partialRequestBuilder, ACTION_ID, actionIds);
+				final ResidualPolicy residualPolicy = pdp.evaluatePartially(partialRequestBuilder.build(false), UNKNOWN_CATEGORIES);
+				if (!(residualPolicy instanceof ResidualPolicy.Decision))
+				{
+					nonDecisionResidualCount++;
+				}
+
+				for (final List<String> resourceIds : RESOURCE_IDS)
+				{
+					for (final List<String> resourceTypes : RESOURCE_TYPES)
+					{
+						for (final List<String> classifications : CLASSIFICATIONS)
+						{
+							final DecisionRequestBuilder<?> requestBuilder = pdp.newRequestBuilder(-1, -1);
+							putStringAttribute(requestBuilder, SUBJECT_ID, subjectIds);
+							putStringAttribute(requestBuilder, ROLE, roles);
+							putStringAttribute(requestBuilder, ACTION_ID, actionIds);
+							putStringAttribute(requestBuilder, RESOURCE_ID, resourceIds);
+							putStringAttribute(requestBuilder, RESOURCE_TYPE, resourceTypes);
+							putStringAttribute(requestBuilder, CLASSIFICATION, classifications);
+							final ResidualPolicy.Decision expectedDecision = toDecision(pdp.evaluate(requestBuilder.build(false)));
+
+							final Map<AttributeFqn, List<String>> resourceAttributes = new HashMap<>();
+							resourceAttributes.put(RESOURCE_ID, resourceIds);
+							resourceAttributes.put(RESOURCE_TYPE, resourceTypes);
+							resourceAttributes.put(CLASSIFICATION, classifications);
+							assertSame(
+							        "Wrong decision from residual policy " + residualPolicy + " for request with subject-id=" + subjectIds + ", role=" + roles + ", action-id=" + actionIds
+							                + ", resource-id=" + resourceIds + ", resource-type=" + resourceTypes + ", classification=" + classifications,
+							        expectedDecision, residualPolicy.accept(new PolicyInterpreter(resourceAttributes)));
+						}
+					}
+				}
+			}
+
+			assertTrue("No residual policy depending on the resource", nonDecisionResidualCount > 0);
+		}
+	}
+
+	/**
+	 * Residual policy when the decision does not depend on the unknown attributes
+	 */
+	@Test
+	public void testDecisionIndependentOfUnknownResource() throws IllegalArgumentException, IOException
+	{
+		try (final BasePdpEngine pdp = newPdp())
+		{
+			final DecisionRequestBuilder<?> partialRequestBuilder = pdp.newRequestBuilder(-1, -1);
+			putStringAttribute(partialRequestBuilder, ROLE, Arrays.asList("admin"));
+			assertSame(ResidualPolicy.PERMIT, pdp.evaluatePartially(partialRequestBuilder.build(false), UNKNOWN_CATEGORIES));
+		}
+	}
+
+	/**
+	 * Residual policy without unknown attribute category: must be the decision
+	 */
+	@Test
+	public void testNoUnknownCategory() throws IllegalArgumentException, IOException
+	{
+		try (final BasePdpEngine pdp = newPdp())
+		{
+			final Random random = new Random(0);
+			for (int i = 0; i < 500; i++)
+			{
+				final DecisionRequestBuilder<?> requestBuilder = pdp.newRequestBuilder(-1, -1);
+				putStringAttribute(requestBuilder, SUBJECT_ID, randomValues(random, REQUEST_SUBJECTS, 1));
+				putStringAttribute(requestBuilder, ROLE, randomValues(random, REQUEST_ROLES, 2));
+				putStringAttribute(requestBuilder, ACTION_ID, randomValues(random, REQUEST_ACTIONS, 2));
+				putStringAttribute(requestBuilder, RESOURCE_ID, RESOURCE_IDS.get(random.nextInt(RESOURCE_IDS.size())));
+				putStringAttribute(requestBuilder, RESOURCE_TYPE, RESOURCE_TYPES.get(random.nextInt(RESOURCE_TYPES.size())));
+				putStringAttribute(requestBuilder, CLASSIFICATION, CLASSIFICATIONS.get(random.nextInt(CLASSIFICATIONS.size())));
+				final DecisionRequest request = requestBuilder.build(false);
+				assertSame(toDecision(pdp.evaluate(request)), pdp.evaluatePartially(request, Collections.emptySet()));
+			}
+		}
+	}
+}
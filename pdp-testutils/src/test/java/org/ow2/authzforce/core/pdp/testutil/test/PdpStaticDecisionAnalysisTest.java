@@ -0,0 +1,154 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.ACTION_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.ROLE;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.SUBJECT_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.describe;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.isIn;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.putStringAttribute;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.randomValues;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.singleValueEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.DefaultEnvironmentProperties;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.xmlns.pdp.Pdp;
+import org.ow2.authzforce.core.xmlns.pdp.StaticRootPolicyProvider;
+
+/**
+ * Test of the evaluation of the children of a PolicySet with deny-overrides/permit-overrides policy-combining algorithm in the order given by static analysis of their possible decisions (children that
+ * may return the overriding decision first, unless the list of applicable policies is requested): the results (decision, obligations, error messages) must be the same as in the order of declaration,
+ * i.e. the same as when the list of applicable policies is requested.
+ */
+@RunWith(value = Parameterized.class)
+public class PdpStaticDecisionAnalysisTest
+{
+	private static final List<String> REQUEST_SUBJECTS = Arrays.asList("alice", "bob", "carol");
+	private static final List<String> REQUEST_ROLES = Arrays.asList("r0", "r1", "r2", "r3", "r4", "r5");
+	private static final List<String> REQUEST_ACTIONS = Arrays.asList("read", "write", "delete", "a0", "a1", "a2");
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> params()
+	{
+		return Arrays.asList(new Object[] { "urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:deny-overrides" },
+		        new Object[] { "urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:permit-overrides" },
+		        new Object[] { "urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:ordered-deny-overrides" },
+		        new Object[] { "urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:ordered-permit-overrides" });
+	}
+
+	@Rule
+	public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private final String rootPolicyCombiningAlgId;
+
+	public PdpStaticDecisionAnalysisTest(final String rootPolicyCombiningAlgId)
+	{
+		this.rootPolicyCombiningAlgId = rootPolicyCombiningAlgId;
+	}
+
+	private static String rule(final String id, final String effect, final String condition, final boolean withObligation)
+	{
+		return "<Rule RuleId='" + id + "' Effect='" + effect + "'><Condition>" + condition + "</Condition>"
+		        + (withObligation ? "<ObligationExpressions><ObligationExpression ObligationId='urn:example:obligation:" + id + "' FulfillOn='" + effect + "'/></ObligationExpressions>" : "")
+		        + "</Rule>";
+	}
+
+	private static String policy(final String id, final String ruleCombiningAlg, final String... rules)
+	{
+		final String ruleCombiningAlgIdPrefix = ruleCombiningAlg.equals("first-applicable") ? "urn:oasis:names:tc:xacml:1.0:rule-combining-algorithm:"
+		        : "urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:";
+		return "<Policy PolicyId='" + id + "' Version='1.0' RuleCombiningAlgId='" + ruleCombiningAlgIdPrefix + ruleCombiningAlg + "'><Target/>" + String.join("", rules) + "</Policy>";
+	}
+
+	/**
+	 * Root PolicySet with children that can only return Permit (not Deny), only Deny (not Permit), or both, interleaved
+	 */
+	private String policyXml()
+	{
+		return "<?xml version='1.0' encoding='UTF-8'?><PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='root' Version='1.0' PolicyCombiningAlgId='"
+		        + rootPolicyCombiningAlgId + "'><Target/>"
+		        // Permit only
+		        + policy("permitOnly1", "deny-overrides", rule("p1a", "Permit", singleValueEquals(ROLE, "r0"), true), rule("p1b", "Permit", isIn(ACTION_ID, "read"), false))
+		        // Deny only
+		        + policy("denyOnly1", "first-applicable", rule("d1a", "Deny", singleValueEquals(SUBJECT_ID, "bob"), true), rule("d1b", "Deny", isIn(ROLE, "r1"), false))
+		        // Permit only, nested
+		        + "<PolicySet PolicySetId='permitOnly2' Version='1.0' PolicyCombiningAlgId='urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:first-applicable'><Target/>"
+		        + policy("permitOnly2a", "permit-overrides", rule("p2a", "Permit", singleValueEquals(ACTION_ID, "write"), true))
+		        + policy("permitOnly2b", "first-applicable", rule("p2b", "Permit", isIn(ROLE, "r2"), false)) + "</PolicySet>"
+		        // Deny only
+		        + policy("denyOnly2", "permit-overrides", rule("d2a", "Deny", singleValueEquals(ROLE, "r3"), true), rule("d2b", "Deny", isIn(ACTION_ID, "a0"), true))
+		        // both
+		        + policy("mixed", "first-applicable", rule("m1", "Permit", singleValueEquals(SUBJECT_ID, "alice"), true), rule("m2", "Deny", isIn(ACTION_ID, "a1"), true))
+		        // Permit only
+		        + policy("permitOnly3", "deny-overrides", rule("p3a", "Permit", singleValueEquals(ROLE, "r4"), true))
+		        // Permit or Deny, never NotApplicable
+		        + policy("denyUnlessPermit", "deny-unless-permit", rule("dup", "Permit", isIn(ACTION_ID, "a2"), true)) + "</PolicySet>";
+	}
+
+	@Test
+	public void test() throws IllegalArgumentException, IOException
+	{
+		final File policyFile = tmpFolder.newFile("policy.xml");
+		Files.write(policyFile.toPath(), policyXml().getBytes(StandardCharsets.UTF_8));
+		final Pdp jaxbPdp = new Pdp();
+		final StaticRootPolicyProvider jaxbRootPolicyProvider = new StaticRootPolicyProvider();
+		jaxbRootPolicyProvider.setId("rootPolicyProvider");
+		jaxbRootPolicyProvider.setPolicyLocation(policyFile.toURI().toString());
+		jaxbPdp.setRootPolicyProvider(jaxbRootPolicyProvider);
+
+		try (final BasePdpEngine pdp = new BasePdpEngine(new PdpEngineConfiguration(jaxbPdp, new DefaultEnvironmentProperties())))
+		{
+			final Random random = new Random(0);
+			for (int i = 0; i < 2000; i++)
+			{
+				final List<String> subjectIds = randomValues(random, REQUEST_SUBJECTS, 2);
+				final List<String> roles = randomValues(random, REQUEST_ROLES, 2);
+				final List<String> actionIds = randomValues(random, REQUEST_ACTIONS, 2);
+				final String requestDescription = "request with subject-id=" + subjectIds + ", role=" + roles + ", action-id=" + actionIds;
+
+				final DecisionRequestBuilder<?> requestBuilder = pdp.newRequestBuilder(-1, -1);
+				putStringAttribute(requestBuilder, SUBJECT_ID, subjectIds);
+				putStringAttribute(requestBuilder, ROLE, roles);
+				putStringAttribute(requestBuilder, ACTION_ID, actionIds);
+				// evaluation in order of declaration (applicable policies requested) as reference
+				final DecisionResult expectedResult = pdp.evaluate(requestBuilder.build(true));
+				assertEquals("Wrong result for " + requestDescription, describe(expectedResult), describe(pdp.evaluate(requestBuilder.build(false))));
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+import org.ow2.authzforce.core.pdp.api.DecisionRequest;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.pdp.testutil.PdpTest;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+/**
+ * Test of the standard environment attributes (current-dateTime, etc.) issued by the PDP from a pluggable clock ({@link BasePdpEngine#BasePdpEngine(PdpEngineConfiguration, Clock)})
+ *
+ */
+public class PdpStdEnvAttributeClockTest
+{
+	/**
+	 * Name of directory that contains test resources
+	 */
+	public final static String TEST_RESOURCES_DIRECTORY_LOCATION = "classpath:custom/StdEnvAttributeClock";
+
+	private static final long NEW_YEAR_2026_EPOCH_MILLIS = Instant.parse("2026-01-01T00:00:00Z").toEpochMilli();
+
+	/**
+	 * Clock that counts its reads
+	 */
+	private static final class MutableClock extends Clock
+	{
+		private volatile long epochMillis;
+		private volatile int readCount = 0;
+
+		private MutableClock(final long epochMillis)
+		{
+			this.epochMillis = epochMillis;
+		}
+
+		@Override
+		public ZoneId getZone()
+		{
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(final ZoneId zone)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long millis()
+		{
+			readCount++;
+			return epochMillis;
+		}
+
+		@Override
+		public Instant instant()
+		{
+			return Instant.ofEpochMilli(millis());
+		}
+	}
+
+	private static DecisionType evaluate(final BasePdpEngine pdp)
+	{
+		final DecisionRequest request = pdp.newRequestBuilder(-1, -1).build(false);
+		return pdp.evaluate(request).getDecision();
+	}
+
+	@Test
+	public void testValuesReusedWithinTick() throws IllegalArgumentException, IOException
+	{
+		final PdpEngineConfiguration pdpEngineConf = PdpEngineConfiguration.getInstance(TEST_RESOURCES_DIRECTORY_LOCATION + "/" + PdpTest.PDP_CONF_FILENAME);
+		assertEquals(1000, pdpEngineConf.getStdEnvAttributeTickMillis());
+		final MutableClock clock = new MutableClock(NEW_YEAR_2026_EPOCH_MILLIS);
+		try (final BasePdpEngine pdp = new BasePdpEngine(pdpEngineConf, clock))
+		{
+			assertEquals(DecisionType.PERMIT, evaluate(pdp));
+
+			// same tick (1s) -> same current-dateTime
+			clock.epochMillis = NEW_YEAR_2026_EPOCH_MILLIS + 999;
+			assertEquals(DecisionType.PERMIT, evaluate(pdp));
+
+			// next tick
+			clock.epochMillis = NEW_YEAR_2026_EPOCH_MILLIS + 1000;
+			assertEquals(DecisionType.DENY, evaluate(pdp));
+		}
+	}
+
+	@Test
+	public void testNoClockReadIfStdEnvAttributesNotUsed() throws IllegalArgumentException, IOException
+	{
+		// policy not using any standard environment attribute
+		final PdpEngineConfiguration pdpEngineConf = PdpEngineConfiguration.getInstance(PdpEvaluateAsyncTest.TEST_RESOURCES_DIRECTORY_LOCATION + "/" + PdpTest.PDP_CONF_FILENAME);
+		final MutableClock clock = new MutableClock(NEW_YEAR_2026_EPOCH_MILLIS);
+		try (final BasePdpEngine pdp = new BasePdpEngine(pdpEngineConf, clock))
+		{
+			evaluate(pdp);
+			assertEquals("PDP clock read although no policy uses the standard environment attributes", 0, clock.readCount);
+		}
+	}
+}
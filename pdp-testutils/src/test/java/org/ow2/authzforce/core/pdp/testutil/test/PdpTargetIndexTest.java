@@ -0,0 +1,203 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.ACTION_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.RESOURCE_ID;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.match;
+import static org.ow2.authzforce.core.pdp.testutil.test.PolicyTestUtils.putStringAttribute;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.impl.BasePdpEngine;
+import org.ow2.authzforce.core.pdp.impl.PdpEngineConfiguration;
+import org.ow2.authzforce.core.pdp.testutil.TestUtils;
+
+import oasis.names.tc.xacml._3_0.core.schema.wd_17.DecisionType;
+
+/**
+ * Test of PolicySets with enough child policies targeting specific resource-id values for the combining algorithm to index them by Target: the decisions must be the same as without index (computed
+ * here by a reference implementation of each algorithm), in particular the original order of children is preserved.
+ */
+@RunWith(value = Parameterized.class)
+public class PdpTargetIndexTest
+{
+	private static final String XACML_1_0_POLICY_COMBINING_ALG_PREFIX = "urn:oasis:names:tc:xacml:1.0:policy-combining-algorithm:";
+	private static final String XACML_3_0_POLICY_COMBINING_ALG_PREFIX = "urn:oasis:names:tc:xacml:3.0:policy-combining-algorithm:";
+
+	/**
+	 * Child policy of the test PolicySet: applicable iff the request has one of the resource IDs in {@code resourceIds} (if not null) and the action ID {@code actionId} (if not null)
+	 */
+	private static final class ChildPolicy
+	{
+		private final String id;
+		private final List<String> resourceIds;
+		private final String actionId;
+		private final DecisionType effect;
+
+		private ChildPolicy(final String id, final List<String> resourceIds, final String actionId, final DecisionType effect)
+		{
+			this.id = id;
+			this.resourceIds = resourceIds;
+			this.actionId = actionId;
+			this.effect = effect;
+		}
+
+		private boolean isApplicable(final Set<String> requestResourceIds, final Set<String> requestActionIds)
+		{
+			return (resourceIds == null || resourceIds.stream().anyMatch(requestResourceIds::contains)) && (actionId == null || requestActionIds.contains(actionId));
+		}
+
+		private String toXml()
+		{
+			final StringBuilder xml = new StringBuilder("<Policy PolicyId='" + id + "' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:1.0:rule-combining-algorithm:first-applicable'><Target>");
+			if (resourceIds != null)
+			{
+				xml.append("<AnyOf>");
+				resourceIds.forEach(resourceId -> xml.append("<AllOf>").append(match(RESOURCE_ID, resourceId)).append("</AllOf>"));
+				xml.append("</AnyOf>");
+			}
+
+			if (actionId != null)
+			{
+				xml.append("<AnyOf><AllOf>").append(match(ACTION_ID, actionId)).append("</AllOf></AnyOf>");
+			}
+
+			return xml.append("</Target><Rule RuleId='rule' Effect='").append(effect == DecisionType.PERMIT ? "Permit" : "Deny").append("'/></Policy>").toString();
+		}
+	}
+
+	private static final List<ChildPolicy> CHILD_POLICIES = new ArrayList<>();
+	static
+	{
+		for (int i = 0; i < 40; i++)
+		{
+			// not indexed (no resource-id constraint) in the middle of indexed ones
+			CHILD_POLICIES.add(i == 2 ? new ChildPolicy("P" + i, null, "write", DecisionType.DENY)
+			        : new ChildPolicy("P" + i, Collections.singletonList("r" + i % 20), null, i < 20 ? DecisionType.PERMIT : DecisionType.DENY));
+		}
+
+		CHILD_POLICIES.add(new ChildPolicy("P40", Arrays.asList("r30", "r31"), null, DecisionType.PERMIT));
+		CHILD_POLICIES.add(new ChildPolicy("P41", Collections.singletonList("r31"), "read", DecisionType.DENY));
+	}
+
+	/**
+	 * Test requests: resource IDs, action IDs
+	 */
+	private static final List<List<List<String>>> REQUESTS = Arrays.asList(Arrays.asList(Arrays.asList("r3"), Arrays.asList("read")), Arrays.asList(Arrays.asList("r3"), Arrays.asList("write")),
+	        Arrays.asList(Arrays.asList("r2"), Arrays.asList("write")), Arrays.asList(Arrays.asList("r5", "r7"), Collections.<String> emptyList()),
+	        Arrays.asList(Arrays.asList("unknown"), Arrays.asList("read")), Arrays.asList(Collections.<String> emptyList(), Arrays.asList("write")),
+	        Arrays.asList(Collections.<String> emptyList(), Collections.<String> emptyList()), Arrays.asList(Arrays.asList("r31"), Arrays.asList("read")),
+	        Arrays.asList(Arrays.asList("r31"), Collections.<String> emptyList()), Arrays.asList(Arrays.asList("r30", "r19"), Arrays.asList("write")));
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> params()
+	{
+		return Arrays.asList(new Object[] { XACML_1_0_POLICY_COMBINING_ALG_PREFIX + "first-applicable" }, new Object[] { XACML_1_0_POLICY_COMBINING_ALG_PREFIX + "only-one-applicable" },
+		        new Object[] { XACML_3_0_POLICY_COMBINING_ALG_PREFIX + "deny-overrides" }, new Object[] { XACML_3_0_POLICY_COMBINING_ALG_PREFIX + "permit-overrides" },
+		        new Object[] { XACML_3_0_POLICY_COMBINING_ALG_PREFIX + "ordered-deny-overrides" }, new Object[] { XACML_3_0_POLICY_COMBINING_ALG_PREFIX + "deny-unless-permit" },
+		        new Object[] { XACML_3_0_POLICY_COMBINING_ALG_PREFIX + "permit-unless-deny" });
+	}
+
+	@Rule
+	public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private final String algId;
+
+	public PdpTargetIndexTest(final String algId)
+	{
+		this.algId = algId;
+	}
+
+	/**
+	 * Reference implementation of the combining algorithm
+	 */
+	private DecisionType getExpectedDecision(final List<DecisionType> applicableEffects)
+	{
+		final String algName = algId.substring(algId.lastIndexOf(':') + 1);
+		switch (algName)
+		{
+			case "first-applicable":
+				return applicableEffects.isEmpty() ? DecisionType.NOT_APPLICABLE : applicableEffects.get(0);
+			case "only-one-applicable":
+				return applicableEffects.isEmpty() ? DecisionType.NOT_APPLICABLE : applicableEffects.size() == 1 ? applicableEffects.get(0) : DecisionType.INDETERMINATE;
+			case "deny-overrides":
+			case "ordered-deny-overrides":
+				return applicableEffects.contains(DecisionType.DENY) ? DecisionType.DENY : applicableEffects.isEmpty() ? DecisionType.NOT_APPLICABLE : DecisionType.PERMIT;
+			case "permit-overrides":
+				return applicableEffects.contains(DecisionType.PERMIT) ? DecisionType.PERMIT : applicableEffects.isEmpty() ? DecisionType.NOT_APPLICABLE : DecisionType.DENY;
+			case "deny-unless-permit":
+				return applicableEffects.contains(DecisionType.PERMIT) ? DecisionType.PERMIT : DecisionType.DENY;
+			case "permit-unless-deny":
+				return applicableEffects.contains(DecisionType.DENY) ? DecisionType.DENY : DecisionType.PERMIT;
+			default:
+				throw new IllegalArgumentException("Unexpected algorithm: " + algId);
+		}
+	}
+
+	@Test
+	public void test() throws IllegalArgumentException, IOException, URISyntaxException, JAXBException
+	{
+		final StringBuilder policySetXml = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?><PolicySet xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicySetId='root' Version='1.0' PolicyCombiningAlgId='"
+		        + algId + "'><Target/>");
+		CHILD_POLICIES.forEach(childPolicy -> policySetXml.append(childPolicy.toXml()));
+		policySetXml.append("</PolicySet>");
+		final File policyFile = tmpFolder.newFile("policy.xml");
+		Files.write(policyFile.toPath(), policySetXml.toString().getBytes(StandardCharsets.UTF_8));
+
+		final PdpEngineConfiguration pdpEngineConf = TestUtils.newPdpEngineConfiguration(policyFile.toURI().toString(), null, false, null, null, null);
+		try (final BasePdpEngine pdp = new BasePdpEngine(pdpEngineConf))
+		{
+			for (final List<List<String>> request : REQUESTS)
+			{
+				final List<String> resourceIds = request.get(0);
+				final List<String> actionIds = request.get(1);
+				final List<DecisionType> applicableEffects = CHILD_POLICIES.stream().filter(childPolicy -> childPolicy.isApplicable(new HashSet<>(resourceIds), new HashSet<>(actionIds)))
+				        .map(childPolicy -> childPolicy.effect).collect(Collectors.toList());
+
+				final DecisionRequestBuilder<?> requestBuilder = pdp.newRequestBuilder(-1, -1);
+				putStringAttribute(requestBuilder, RESOURCE_ID, resourceIds);
+				putStringAttribute(requestBuilder, ACTION_ID, actionIds);
+				assertEquals("Wrong decision for request with resource-id=" + resourceIds + ", action-id=" + actionIds, getExpectedDecision(applicableEffects),
+				        pdp.evaluate(requestBuilder.build(false)).getDecision());
+			}
+		}
+	}
+}
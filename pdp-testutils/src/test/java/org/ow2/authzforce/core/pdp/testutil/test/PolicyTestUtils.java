@@ -0,0 +1,259 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.ow2.authzforce.core.pdp.api.AttributeFqn;
+import org.ow2.authzforce.core.pdp.api.AttributeFqns;
+import org.ow2.authzforce.core.pdp.api.DecisionRequestBuilder;
+import org.ow2.authzforce.core.pdp.api.DecisionResult;
+import org.ow2.authzforce.core.pdp.api.value.Bags;
+import org.ow2.authzforce.core.pdp.api.value.StandardDatatypes;
+import org.ow2.authzforce.core.pdp.api.value.StringValue;
+import org.ow2.authzforce.core.pdp.impl.StandardEnvironmentAttribute;
+import org.ow2.authzforce.xacml.identifiers.XacmlAttributeCategory;
+import org.ow2.authzforce.xacml.identifiers.XacmlAttributeId;
+
+/**
+ * Utilities for the tests generating XACML policies (XML fragments with string attributes) and random requests, e.g. to compare the decisions of optimized and reference evaluations
+ */
+final class PolicyTestUtils
+{
+	/**
+	 * ID of standard function string-equal
+	 */
+	static final String STRING_EQUAL = "urn:oasis:names:tc:xacml:1.0:function:string-equal";
+
+	/*
+	 * Attributes used by the tests (string datatype)
+	 */
+	static final AttributeFqn SUBJECT_ID = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_1_0_ACCESS_SUBJECT.value(), Optional.empty(), XacmlAttributeId.XACML_1_0_SUBJECT_ID.value());
+	static final AttributeFqn ROLE = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_1_0_ACCESS_SUBJECT.value(), Optional.empty(), "urn:example:role");
+	static final AttributeFqn RESOURCE_ID = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_3_0_RESOURCE.value(), Optional.empty(), XacmlAttributeId.XACML_1_0_RESOURCE_ID.value());
+	static final AttributeFqn ACTION_ID = AttributeFqns.newInstance(XacmlAttributeCategory.XACML_3_0_ACTION.value(), Optional.empty(), XacmlAttributeId.XACML_1_0_ACTION_ID.value());
+
+	private PolicyTestUtils()
+	{
+		// prevent instantiation
+	}
+
+	/**
+	 * AttributeDesignator of string attribute
+	 *
+	 * @param attributeFqn
+	 *            attribute name
+	 * @param mustBePresent
+	 *            MustBePresent flag
+	 * @return XML
+	 */
+	static String designator(final AttributeFqn attributeFqn, final boolean mustBePresent)
+	{
+		return "<AttributeDesignator Category='" + attributeFqn.getCategory() + "' AttributeId='" + attributeFqn.getId() + "' DataType='http://www.w3.org/2001/XMLSchema#string' MustBePresent='"
+		        + mustBePresent + "'/>";
+	}
+
+	/**
+	 * Same as {@link #designator(AttributeFqn, boolean)} with MustBePresent=false
+	 *
+	 * @param attributeFqn
+	 *            attribute name
+	 * @return XML
+	 */
+	static String designator(final AttributeFqn attributeFqn)
+	{
+		return designator(attributeFqn, false);
+	}
+
+	/**
+	 * String AttributeValue
+	 *
+	 * @param value
+	 *            string value
+	 * @return XML
+	 */
+	static String value(final String value)
+	{
+		return "<AttributeValue DataType='http://www.w3.org/2001/XMLSchema#string'>" + value + "</AttributeValue>";
+	}
+
+	/**
+	 * string-equal Match
+	 *
+	 * @param attributeFqn
+	 *            attribute name
+	 * @param value
+	 *            value to be matched
+	 * @param mustBePresent
+	 *            MustBePresent flag of the AttributeDesignator
+	 * @return XML
+	 */
+	static String match(final AttributeFqn attributeFqn, final String value, final boolean mustBePresent)
+	{
+		return "<Match MatchId='" + STRING_EQUAL + "'>" + value(value) + designator(attributeFqn, mustBePresent) + "</Match>";
+	}
+
+	/**
+	 * Same as {@link #match(AttributeFqn, String, boolean)} with MustBePresent=false
+	 *
+	 * @param attributeFqn
+	 *            attribute name
+	 * @param value
+	 *            value to be matched
+	 * @return XML
+	 */
+	static String match(final AttributeFqn attributeFqn, final String value)
+	{
+		return match(attributeFqn, value, false);
+	}
+
+	/**
+	 * Apply of standard XACML 1.0 function
+	 *
+	 * @param functionName
+	 *            function name, i.e. function ID without 'urn:oasis:names:tc:xacml:1.0:function:' prefix
+	 * @param args
+	 *            XML of the arguments
+	 * @return XML
+	 */
+	static String apply(final String functionName, final String... args)
+	{
+		return "<Apply FunctionId='urn:oasis:names:tc:xacml:1.0:function:" + functionName + "'>" + String.join("", args) + "</Apply>";
+	}
+
+	/**
+	 * Policy permitting iff a standard environment attribute has a single value, denying otherwise (MustBePresent=true: Indeterminate, therefore Deny, if the attribute is missing)
+	 *
+	 * @param policyId
+	 *            PolicyId
+	 * @param stdEnvAttribute
+	 *            standard environment attribute
+	 * @param datatypeName
+	 *            name of the attribute datatype (XML schema type name: 'dateTime', 'date' or 'time'), also the prefix of the bag-size function
+	 * @return XML
+	 */
+	static String stdEnvAttributePolicy(final String policyId, final StandardEnvironmentAttribute stdEnvAttribute, final String datatypeName)
+	{
+		final AttributeFqn attributeFqn = stdEnvAttribute.getFQN();
+		return "<?xml version='1.0' encoding='UTF-8'?><Policy xmlns='urn:oasis:names:tc:xacml:3.0:core:schema:wd-17' PolicyId='" + policyId
+		        + "' Version='1.0' RuleCombiningAlgId='urn:oasis:names:tc:xacml:3.0:rule-combining-algorithm:deny-unless-permit'><Target/><Rule RuleId='permit' Effect='Permit'><Condition>"
+		        + apply("integer-equal",
+		                apply(datatypeName + "-bag-size", "<AttributeDesignator Category='" + attributeFqn.getCategory() + "' AttributeId='" + attributeFqn.getId()
+		                        + "' DataType='http://www.w3.org/2001/XMLSchema#" + datatypeName + "' MustBePresent='true'/>"),
+		                "<AttributeValue DataType='http://www.w3.org/2001/XMLSchema#integer'>1</AttributeValue>")
+		        + "</Condition></Rule></Policy>";
+	}
+
+	/**
+	 * Condition expression true iff the attribute has a single value equal to {@code value}; Indeterminate if the attribute has no or more than one value
+	 *
+	 * @param attributeFqn
+	 *            attribute name
+	 * @param value
+	 *            expected value
+	 * @return XML
+	 */
+	static String singleValueEquals(final AttributeFqn attributeFqn, final String value)
+	{
+		return apply("string-equal", apply("string-one-and-only", designator(attributeFqn)), value(value));
+	}
+
+	/**
+	 * Condition expression true iff one of the attribute values is equal to {@code value}
+	 *
+	 * @param attributeFqn
+	 *            attribute name
+	 * @param value
+	 *            expected value
+	 * @return XML
+	 */
+	static String isIn(final AttributeFqn attributeFqn, final String value)
+	{
+		return apply("string-is-in", value(value), designator(attributeFqn));
+	}
+
+	/**
+	 * Picks random values
+	 *
+	 * @param random
+	 *            random generator
+	 * @param values
+	 *            candidate values
+	 * @param maxCount
+	 *            maximum number of picks
+	 * @return distinct values picked from {@code values}, at most {@code maxCount}, possibly none
+	 */
+	static List<String> randomValues(final Random random, final List<String> values, final int maxCount)
+	{
+		final int count = random.nextInt(maxCount + 1);
+		final List<String> randomValues = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+		{
+			final String randomValue = values.get(random.nextInt(values.size()));
+			if (!randomValues.contains(randomValue))
+			{
+				randomValues.add(randomValue);
+			}
+		}
+
+		return randomValues;
+	}
+
+	/**
+	 * Adds a string attribute to a request, unless it has no value
+	 *
+	 * @param requestBuilder
+	 *            request builder
+	 * @param attributeFqn
+	 *            attribute name
+	 * @param values
+	 *            attribute values (attribute not added if empty)
+	 */
+	static void putStringAttribute(final DecisionRequestBuilder<?> requestBuilder, final AttributeFqn attributeFqn, final List<String> values)
+	{
+		if (!values.isEmpty())
+		{
+			requestBuilder.putNamedAttributeIfAbsent(attributeFqn, Bags.newAttributeBag(StandardDatatypes.STRING, values.stream().map(StringValue::new).collect(Collectors.toList())));
+		}
+	}
+
+	/**
+	 * Describes everything in a result that may depend on the evaluation order (except applicable policies), for comparison
+	 *
+	 * @param result
+	 *            decision result
+	 * @return description
+	 */
+	static String describe(final DecisionResult result)
+	{
+		final StringBuilder description = new StringBuilder(result.getDecision().toString()).append(", extendedIndeterminate=").append(result.getExtendedIndeterminate())
+		        .append(", pepActions=").append(result.getPepActions());
+		Throwable cause = result.getCauseForIndeterminate().orElse(null);
+		while (cause != null)
+		{
+			description.append(", cause: ").append(cause.getMessage());
+			cause = cause.getCause();
+		}
+
+		return description.toString();
+	}
+}
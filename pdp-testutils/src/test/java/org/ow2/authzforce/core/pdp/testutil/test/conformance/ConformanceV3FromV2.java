@@ -137,11 +137,22 @@ public class ConformanceV3FromV2
 
 	private final String reqFilter;
 
+	private final boolean compileTargetsAndConditions;
+
 	public ConformanceV3FromV2(final String filePathPrefix, final boolean enableXPath, final String requestFilter)
+	{
+		this(filePathPrefix, enableXPath, requestFilter, false);
+	}
+
+	/**
+	 * Creates the test with the Targets and Conditions compiled into type-specialized evaluators or not, the expected responses being the same in both cases
+	 */
+	protected ConformanceV3FromV2(final String filePathPrefix, final boolean enableXPath, final String requestFilter, final boolean compileTargetsAndConditions)
 	{
 		this.testFilePathPrefix = filePathPrefix;
 		this.enableXPath = enableXPath;
 		this.reqFilter = requestFilter;
+		this.compileTargetsAndConditions = compileTargetsAndConditions;
 		this.xacmlParserFactory = XacmlJaxbParsingUtils.getXacmlParserFactory(enableXPath);
 	}
 
@@ -199,7 +210,7 @@ public class ConformanceV3FromV2
 		final PdpEngineConfiguration pdpEngineConf;
 		try
 		{
-			pdpEngineConf = TestUtils.newPdpEngineConfiguration(rootPolicyFilepath, refPoliciesDirLocation, enableXPath, attributeProviderConfLocation, this.reqFilter, null);
+			pdpEngineConf = TestUtils.newPdpEngineConfiguration(rootPolicyFilepath, refPoliciesDirLocation, enableXPath, attributeProviderConfLocation, this.reqFilter, null, compileTargetsAndConditions);
 		}
 		catch (final IllegalArgumentException e)
 		{
@@ -76,6 +76,11 @@ public class ConformanceV3FromV2MandatoryTest extends ConformanceV3FromV2
 		super(filePathPrefix, false, requestFilterId);
 	}
 
+	protected ConformanceV3FromV2MandatoryTest(String filePathPrefix, String requestFilterId, boolean compileTargetsAndConditions)
+	{
+		super(filePathPrefix, false, requestFilterId, compileTargetsAndConditions);
+	}
+
 	@Parameters(name = "{0}")
 	public static Collection<Object[]> data()
 	{
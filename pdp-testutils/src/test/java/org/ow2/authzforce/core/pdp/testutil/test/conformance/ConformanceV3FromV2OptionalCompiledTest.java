@@ -0,0 +1,29 @@
+/**
+ * Copyright 2012-2019 THALES.
+ *
+ * This file is part of AuthzForce CE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ow2.authzforce.core.pdp.testutil.test.conformance;
+
+/**
+ * XACML 3.0 conformance tests for optional features, with the Targets and Conditions compiled into type-specialized evaluators (same expected results as {@link ConformanceV3FromV2OptionalTest})
+ */
+public class ConformanceV3FromV2OptionalCompiledTest extends ConformanceV3FromV2OptionalTest
+{
+	public ConformanceV3FromV2OptionalCompiledTest(String filePathPrefix, String requestFilterId)
+	{
+		super(filePathPrefix, requestFilterId, true);
+	}
+}
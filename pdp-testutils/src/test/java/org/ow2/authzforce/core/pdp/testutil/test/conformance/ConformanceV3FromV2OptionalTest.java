@@ -78,6 +78,11 @@ public class ConformanceV3FromV2OptionalTest extends ConformanceV3FromV2
 		super(filePathPrefix, true, requestFilterId);
 	}
 
+	protected ConformanceV3FromV2OptionalTest(String filePathPrefix, String requestFilterId, boolean compileTargetsAndConditions)
+	{
+		super(filePathPrefix, true, requestFilterId, compileTargetsAndConditions);
+	}
+
 	@Parameters(name = "{0}")
 	public static Collection<Object[]> data()
 	{